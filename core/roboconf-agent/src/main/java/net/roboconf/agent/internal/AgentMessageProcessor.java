@@ -65,6 +65,7 @@ import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeBinding;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeInstanceState;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeLogLevel;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdGatherLogs;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdReassignAgent;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdRemoveInstance;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdResynchronize;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdSendInstances;
@@ -183,6 +184,9 @@ public class AgentMessageProcessor extends AbstractMessageProcessor<IAgentClient
 			else if( message instanceof MsgCmdGatherLogs )
 				processGatherLogs((MsgCmdGatherLogs) message );
 
+			else if( message instanceof MsgCmdReassignAgent )
+				processMsgReassignAgent((MsgCmdReassignAgent) message );
+
 			else
 				this.logger.warning( getName() + " got an undetermined message to process. " + message.getClass().getName());
 
@@ -197,6 +201,46 @@ public class AgentMessageProcessor extends AbstractMessageProcessor<IAgentClient
 	}
 
 
+	/**
+	 * Gives a new identity to the agent.
+	 * <p>
+	 * Only agents without a model can be reassigned. These are
+	 * agents that run on idle machines, created in advance by the DM.
+	 * </p>
+	 *
+	 * @param message the incoming message
+	 */
+	void processMsgReassignAgent( MsgCmdReassignAgent message ) {
+
+		if( this.scopedInstance != null ) {
+			this.logger.warning( "The agent already manages " + this.agent.getScopedInstancePath() + ". Reassignment is dropped." );
+
+		} else {
+			this.logger.info( "The agent is reassigned to " + message.getScopedInstancePath() + " in application " + message.getApplicationName() + "." );
+			this.agent.setApplicationName( message.getApplicationName());
+			this.agent.setScopedInstancePath( message.getScopedInstancePath());
+
+			// Keep the new identity if the agent restarts
+			try {
+				AgentUtils.saveAgentIdentity(
+						this.agent.karafEtc,
+						this.agent.getApplicationName(),
+						this.agent.getScopedInstancePath(),
+						this.agent.getDomain(),
+						this.agent.getIpAddress());
+
+			} catch( IOException e ) {
+				this.logger.warning( "The new identity of the agent could not be saved. It will be lost if the agent restarts. " + e.getMessage());
+				Utils.logException( this.logger, e );
+			}
+
+			// The new messaging connection sends a heart beat to the DM.
+			// It indicates the agent needs its model.
+			this.agent.reconfigure();
+		}
+	}
+
+
 	/**
 	 * Gathers the main log files and sends them to the DM.
 	 * @param message the incoming message
@@ -181,6 +181,46 @@ public final class AgentUtils {
 	}
 
 
+	/**
+	 * Saves the identity of the agent in its configuration file.
+	 * <p>
+	 * This is used when an agent is given a new identity by the DM.
+	 * User data are then ignored: they still contain the initial identity.
+	 * </p>
+	 *
+	 * @param etcDir Karaf's etc directory (can be null)
+	 * @param applicationName the application name
+	 * @param scopedInstancePath the scoped instance path
+	 * @param domain the domain (can be null)
+	 * @param ipAddress the IP address (can be null)
+	 * @throws IOException if the configuration file could not be written
+	 */
+	public static void saveAgentIdentity(
+			String etcDir,
+			String applicationName,
+			String scopedInstancePath,
+			String domain,
+			String ipAddress )
+	throws IOException {
+
+		if( ! Utils.isEmptyOrWhitespaces( etcDir )) {
+
+			File f = new File( etcDir, UserDataHelper.CONF_FILE_AGENT );
+			Properties props = Utils.readPropertiesFileQuietly( f, Logger.getLogger( AgentUtils.class.getName()));
+			props.put( "application-name", applicationName );
+			props.put( "scoped-instance-path", scopedInstancePath );
+			props.put( "override-properties-with-user-data", "false" );
+			if( domain != null )
+				props.put( "domain", domain );
+
+			if( ! Utils.isEmptyOrWhitespaces( ipAddress ))
+				props.put( "ip-address-of-the-agent", ipAddress );
+
+			Utils.writePropertiesFile( props, f );
+		}
+	}
+
+
 	/**
 	 * Collect the main log files into a map.
 	 * @param karafData the Karaf's data directory
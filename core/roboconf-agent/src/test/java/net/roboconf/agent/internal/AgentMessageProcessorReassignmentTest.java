@@ -0,0 +1,133 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.agent.internal;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.roboconf.agent.internal.misc.UserDataHelper;
+import net.roboconf.agent.internal.test.AgentTestUtils;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.messaging.api.MessagingConstants;
+import net.roboconf.messaging.api.factory.MessagingClientFactoryRegistry;
+import net.roboconf.messaging.api.internal.client.test.TestClient;
+import net.roboconf.messaging.api.internal.client.test.TestClientFactory;
+import net.roboconf.messaging.api.messages.Message;
+import net.roboconf.messaging.api.messages.from_agent_to_dm.MsgNotifHeartbeat;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdReassignAgent;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class AgentMessageProcessorReassignmentTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Agent agent;
+
+
+	@Before
+	public void initializeAgent() throws Exception {
+
+		final MessagingClientFactoryRegistry registry = new MessagingClientFactoryRegistry();
+		registry.addMessagingClientFactory(new TestClientFactory());
+		this.agent = new Agent();
+
+		this.agent.karafEtc = this.folder.newFolder().getAbsolutePath();
+		this.agent.karafData = this.folder.newFolder().getAbsolutePath();
+		this.agent.setApplicationName( "warm-pool" );
+		this.agent.setScopedInstancePath( "/machine-1" );
+
+		this.agent.setMessagingType(MessagingConstants.FACTORY_TEST);
+		this.agent.start();
+
+		this.agent.getMessagingClient().setRegistry(registry);
+		this.agent.reconfigure();
+		Thread.sleep( 200 );
+	}
+
+
+	@After
+	public void stopAgent() {
+		this.agent.stop();
+	}
+
+
+	@Test
+	public void testReassignment() throws Exception {
+
+		AgentMessageProcessor processor = (AgentMessageProcessor) this.agent.getMessagingClient().getMessageProcessor();
+		processor.processMessage( new MsgCmdReassignAgent( "app", "/vm" ));
+
+		Assert.assertEquals( "app", this.agent.getApplicationName());
+		Assert.assertEquals( "/vm", this.agent.getScopedInstancePath());
+
+		// The messaging client was replaced: a heart beat was sent with the new identity
+		TestClient client = AgentTestUtils.getInternalClient( this.agent.getMessagingClient());
+		Assert.assertEquals( 1, client.messagesForTheDm.size());
+
+		Message msg = client.messagesForTheDm.get( 0 );
+		Assert.assertEquals( MsgNotifHeartbeat.class, msg.getClass());
+		Assert.assertEquals( "app", ((MsgNotifHeartbeat) msg).getApplicationName());
+		Assert.assertEquals( "/vm", ((MsgNotifHeartbeat) msg).getScopedInstancePath());
+		Assert.assertTrue(((MsgNotifHeartbeat) msg).isModelRequired());
+
+		// The new identity was saved
+		File f = new File( this.agent.karafEtc, UserDataHelper.CONF_FILE_AGENT );
+		Assert.assertTrue( f.exists());
+
+		Properties props = Utils.readPropertiesFile( f );
+		Assert.assertEquals( "app", props.get( "application-name" ));
+		Assert.assertEquals( "/vm", props.get( "scoped-instance-path" ));
+		Assert.assertEquals( "false", props.get( "override-properties-with-user-data" ));
+	}
+
+
+	@Test
+	public void testReassignment_agentWithModel() throws Exception {
+
+		AgentMessageProcessor processor = (AgentMessageProcessor) this.agent.getMessagingClient().getMessageProcessor();
+		processor.scopedInstance = new Instance( "machine-1" );
+
+		TestClient client = AgentTestUtils.getInternalClient( this.agent.getMessagingClient());
+		client.clearMessages();
+		processor.processMessage( new MsgCmdReassignAgent( "app", "/vm" ));
+
+		Assert.assertEquals( "warm-pool", this.agent.getApplicationName());
+		Assert.assertEquals( "/machine-1", this.agent.getScopedInstancePath());
+		Assert.assertEquals( 0, client.messagesForTheDm.size());
+		Assert.assertFalse( new File( this.agent.karafEtc, UserDataHelper.CONF_FILE_AGENT ).exists());
+	}
+}
@@ -120,6 +120,14 @@ public interface Constants {
 	 */
 	String TARGET_PROPERTY_DESCRIPTION = "description";
 
+	/**
+	 * The {@value #TARGET_PROPERTY_POOL_SIZE} property in {@value #TARGET_PROPERTIES_FILE_NAME} files.
+	 * <p>
+	 * It indicates how many idle machines the DM should keep ready for this target (optional).
+	 * </p>
+	 */
+	String TARGET_PROPERTY_POOL_SIZE = "pool.size";
+
 	/**
 	 * The heart beat period (in milliseconds).
 	 */
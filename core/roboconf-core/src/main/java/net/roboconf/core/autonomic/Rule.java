@@ -44,6 +44,13 @@ public class Rule {
 	private int timingWindow = NO_TIMING_WINDOW;
 	private int delayBetweenSucceedingInvocations = 0;
 
+	// Windowed conditions (evaluated within the timing window)
+	private int minOccurrences = 1;
+	private long minRateCount = 0;
+	private long minRateUnit = 1;
+	private int minAgents = 0;
+	private boolean countPerAgent = false;
+
 
 	/**
 	 * @return the rule name
@@ -77,6 +84,61 @@ public class Rule {
 		return this.timingWindow;
 	}
 
+	/**
+	 * @return the minimum number of events that must occur within the timing window (1 by default)
+	 */
+	public int getMinOccurrences() {
+		return this.minOccurrences;
+	}
+
+	/**
+	 * @return the minimum event rate (in events per second) within the timing window (0 for no rate condition)
+	 */
+	public double getMinRate() {
+		return (double) this.minRateCount / this.minRateUnit;
+	}
+
+	/**
+	 * @return the minimum number of distinct agents that must have sent the event within the timing window (0 to ignore)
+	 */
+	public int getMinAgents() {
+		return this.minAgents;
+	}
+
+	/**
+	 * @return true if occurrences and rates are evaluated for every agent separately, false if all the agents are considered together
+	 */
+	public boolean isCountPerAgent() {
+		return this.countPerAgent;
+	}
+
+	/**
+	 * @return true if this rule defines conditions about several events within its timing window
+	 */
+	public boolean hasWindowedConditions() {
+		return this.minOccurrences > 1 || this.minRateCount > 0 || this.minAgents > 1;
+	}
+
+	/**
+	 * Finds the number of events that must be found within the timing window.
+	 * <p>
+	 * Rates are converted into a number of occurrences. This is computed with integers,
+	 * so that 31 events per minute within 60 seconds require 31 events, and not 32.
+	 * </p>
+	 *
+	 * @return the number of events that must occur within the timing window (at least 1)
+	 */
+	public int getRequiredOccurrences() {
+
+		int result = Math.max( 1, this.minOccurrences );
+		if( this.minRateCount > 0 && this.timingWindow > 0 ) {
+			long occurrences = (this.minRateCount * this.timingWindow + this.minRateUnit - 1) / this.minRateUnit;
+			result = (int) Math.max( result, Math.min( occurrences, Integer.MAX_VALUE ));
+		}
+
+		return result;
+	}
+
 	/**
 	 * @return a non-null list of (ordered) commands to invoke
 	 */
@@ -98,6 +160,41 @@ public class Rule {
 		this.delayBetweenSucceedingInvocations = delayBetweenSucceedingInvocations;
 	}
 
+	/**
+	 * @param minOccurrences the minOccurrences to set
+	 */
+	public void setMinOccurrences( int minOccurrences ) {
+		this.minOccurrences = minOccurrences;
+	}
+
+	/**
+	 * Sets the minimum rate, as a number of events per period.
+	 * <p>
+	 * As an example, 6 events per minute is set with <code>setMinRate( 6, 60 )</code>.
+	 * </p>
+	 *
+	 * @param count the number of events (0 for no rate condition)
+	 * @param unit the period during which these events must occur (in seconds, at least 1)
+	 */
+	public void setMinRate( long count, long unit ) {
+		this.minRateCount = count;
+		this.minRateUnit = Math.max( 1, unit );
+	}
+
+	/**
+	 * @param minAgents the minAgents to set
+	 */
+	public void setMinAgents( int minAgents ) {
+		this.minAgents = minAgents;
+	}
+
+	/**
+	 * @param countPerAgent the countPerAgent to set
+	 */
+	public void setCountPerAgent( boolean countPerAgent ) {
+		this.countPerAgent = countPerAgent;
+	}
+
 	/**
 	 * @param eventName the eventName to set
 	 */
@@ -29,6 +29,8 @@ import static net.roboconf.core.errors.ErrorDetails.file;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -47,6 +49,10 @@ public class RuleParser {
 	private static final Pattern RULE_PATTERN = Pattern.compile( "(?is)^\\s*rule\\s+\"([^\"]*)\"\\s+(.*)when\\s+(.+)\\s+then\\s+(.+)\\s+end\\s*$" );
 	private static final Pattern SLEEP_PERIOD_PATTERN = Pattern.compile( "(?i)\\bsleep period is\\s+(\\d+)s?" );
 	private static final Pattern TIME_WINDOW_PATTERN = Pattern.compile( "(?i)\\btime window is\\s+(\\d+)s?" );
+	private static final Pattern MIN_OCCURRENCES_PATTERN = Pattern.compile( "(?i)\\bmin occurrences is\\s+(\\d+)" );
+	private static final Pattern MIN_RATE_PATTERN = Pattern.compile( "(?i)\\bmin rate is\\s+(\\d+(?:\\.\\d+)?)\\s*/\\s*(s|min)\\b" );
+	private static final Pattern MIN_AGENTS_PATTERN = Pattern.compile( "(?i)\\bmin agents is\\s+(\\d+)" );
+	private static final Pattern AGGREGATION_PATTERN = Pattern.compile( "(?i)\\baggregation is\\s+(per agent|global)\\b" );
 
 	private static final String SINGLE_COMMENT_PATTERN = "//.*\r?\n";
 	private static final String SINGLE_SHARP_COMMENT_PATTERN = "#.*\r?\n";
@@ -95,6 +101,24 @@ public class RuleParser {
 				if(( m = SLEEP_PERIOD_PATTERN.matcher( properties )).find())
 					this.rule.setDelayBetweenSucceedingInvocations( Integer.parseInt( m.group( 1 )));
 
+				if(( m = MIN_OCCURRENCES_PATTERN.matcher( properties )).find())
+					this.rule.setMinOccurrences( Integer.parseInt( m.group( 1 )));
+
+				if(( m = MIN_RATE_PATTERN.matcher( properties )).find()) {
+					// Rates are kept as integers: 0.5/s => 5 events every 10 seconds
+					BigDecimal count = new BigDecimal( m.group( 1 ));
+					long unit = "min".equalsIgnoreCase( m.group( 2 )) ? 60 : 1;
+					unit *= BigInteger.TEN.pow( count.scale()).longValue();
+
+					this.rule.setMinRate( count.unscaledValue().longValue(), unit );
+				}
+
+				if(( m = MIN_AGENTS_PATTERN.matcher( properties )).find())
+					this.rule.setMinAgents( Integer.parseInt( m.group( 1 )));
+
+				if(( m = AGGREGATION_PATTERN.matcher( properties )).find())
+					this.rule.setCountPerAgent( "per agent".equalsIgnoreCase( m.group( 1 )));
+
 				// Validate the rule
 				if( Utils.isEmptyOrWhitespaces( ruleName ))
 					this.parsingErrors.add( new ParsingError( ErrorCode.RULE_EMPTY_NAME, ruleFile, -1, details ));
@@ -104,6 +128,11 @@ public class RuleParser {
 
 				if( this.rule.getCommandsToInvoke().isEmpty())
 					this.parsingErrors.add( new ParsingError( ErrorCode.RULE_EMPTY_THEN, ruleFile, -1, details ));
+
+				// Windowed conditions only make sense with a timing window
+				if( this.rule.hasWindowedConditions()
+						&& this.rule.getTimingWindow() <= 0 )
+					this.parsingErrors.add( new ParsingError( ErrorCode.RULE_WINDOWED_CONDITION_WITHOUT_WINDOW, ruleFile, -1, details ));
 			}
 
 		} catch( IOException e ) {
@@ -225,6 +225,7 @@ public enum ErrorCode {
 	RULE_EMPTY_WHEN( ErrorLevel.SEVERE, ErrorCategory.RULES ),
 	RULE_EMPTY_THEN( ErrorLevel.SEVERE, ErrorCategory.RULES ),
 	RULE_UNKNOWN_COMMAND( ErrorLevel.SEVERE, ErrorCategory.RULES ),
+	RULE_WINDOWED_CONDITION_WITHOUT_WINDOW( ErrorLevel.SEVERE, ErrorCategory.RULES ),
 
 	// REST Errors
 	REST_TARGET_CONTAINS_ERROR( ErrorLevel.SEVERE, ErrorCategory.REST ),
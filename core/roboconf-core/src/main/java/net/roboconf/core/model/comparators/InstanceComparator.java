@@ -40,10 +40,28 @@ public class InstanceComparator implements Serializable, Comparator<Instance> {
 
 	@Override
 	public int compare( Instance o1, Instance o2 ) {
+		return comparePaths(
+				InstanceHelpers.computeInstancePath( o1 ),
+				InstanceHelpers.computeInstancePath( o2 ));
+	}
+
+
+	/**
+	 * Compares two instance paths, segment by segment.
+	 * <p>
+	 * This way, an instance is always followed by its children.
+	 * </p>
+	 *
+	 * @param path1 a non-null instance path
+	 * @param path2 a non-null instance path
+	 * @return a negative integer, zero, or a positive integer as the first path is less than,
+	 * equal to, or greater than the second
+	 */
+	public static int comparePaths( String path1, String path2 ) {
 
-		// Find the instance paths...
-		String[] p1 = InstanceHelpers.computeInstancePath( o1 ).substring( 1 ).split( "/" );
-		String[] p2 = InstanceHelpers.computeInstancePath( o2 ).substring( 1 ).split( "/" );
+		// Split the instance paths...
+		String[] p1 = path1.substring( 1 ).split( "/" );
+		String[] p2 = path2.substring( 1 ).split( "/" );
 		int segmentsToCompare = Math.min( p1.length, p2.length );
 
 		// ...  and compare their segments
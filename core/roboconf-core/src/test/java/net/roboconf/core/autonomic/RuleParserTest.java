@@ -153,4 +153,101 @@ public class RuleParserTest {
 		Assert.assertEquals( 1, parser.getRule().getCommandsToInvoke().size());
 		Assert.assertEquals( "cmd1" , parser.getRule().getCommandsToInvoke().get( 0 ));
 	}
+
+
+	@Test
+	public void testRuleFileWithWindowedConditions() throws Exception {
+
+		File ruleFile = TestUtils.findTestFile( "/rules.autonomic/rule-with-windowed-conditions.drl" );
+		RuleParser parser = new RuleParser( ruleFile );
+
+		Assert.assertNotNull( parser.getRule());
+		Assert.assertEquals( 0, parser.getParsingErrors().size());
+
+		Rule rule = parser.getRule();
+		Assert.assertEquals( "event-1", rule.getEventName());
+		Assert.assertEquals( 60, rule.getTimingWindow());
+		Assert.assertEquals( 5, rule.getMinOccurrences());
+		Assert.assertEquals( 0.1, rule.getMinRate(), 0.0001 );
+		Assert.assertEquals( 2, rule.getMinAgents());
+		Assert.assertTrue( rule.isCountPerAgent());
+		Assert.assertTrue( rule.hasWindowedConditions());
+
+		// 6 events per minute over 60 seconds => 6 events
+		Assert.assertEquals( 6, rule.getRequiredOccurrences());
+	}
+
+
+	@Test
+	public void testRuleFileWithMinRate() throws Exception {
+
+		File ruleFile = TestUtils.findTestFile( "/rules.autonomic/rule-with-min-rate.drl" );
+		RuleParser parser = new RuleParser( ruleFile );
+
+		Assert.assertNotNull( parser.getRule());
+		Assert.assertEquals( 0, parser.getParsingErrors().size());
+
+		// 31 events per minute over 60 seconds => 31 events (not 32)
+		Rule rule = parser.getRule();
+		Assert.assertEquals( 60, rule.getTimingWindow());
+		Assert.assertEquals( 31.0 / 60, rule.getMinRate(), 0.0001 );
+		Assert.assertEquals( 31, rule.getRequiredOccurrences());
+	}
+
+
+	@Test
+	public void testRequiredOccurrences() throws Exception {
+
+		Rule rule = new Rule();
+		rule.setTimingWindow( 60 );
+
+		rule.setMinRate( 31, 60 );
+		Assert.assertEquals( 31, rule.getRequiredOccurrences());
+
+		// 31 events per minute over 30 seconds => 15.5, rounded up
+		rule.setTimingWindow( 30 );
+		Assert.assertEquals( 16, rule.getRequiredOccurrences());
+
+		// 0.5 event per second over 30 seconds
+		rule.setMinRate( 5, 10 );
+		Assert.assertEquals( 15, rule.getRequiredOccurrences());
+
+		// Min occurrences prevail when they are higher
+		rule.setMinOccurrences( 20 );
+		Assert.assertEquals( 20, rule.getRequiredOccurrences());
+
+		// No rate condition
+		rule.setMinRate( 0, 1 );
+		rule.setMinOccurrences( 1 );
+		Assert.assertEquals( 1, rule.getRequiredOccurrences());
+		Assert.assertFalse( rule.hasWindowedConditions());
+	}
+
+
+	@Test
+	public void testRuleFileWithWindowedConditionsButNoWindow() throws Exception {
+
+		File ruleFile = TestUtils.findTestFile( "/rules.autonomic/rule-with-windowed-conditions-without-window.drl" );
+		RuleParser parser = new RuleParser( ruleFile );
+
+		Assert.assertNotNull( parser.getRule());
+		Assert.assertEquals( 1, parser.getParsingErrors().size());
+		Assert.assertEquals( ErrorCode.RULE_WINDOWED_CONDITION_WITHOUT_WINDOW, parser.getParsingErrors().get( 0 ).getErrorCode());
+	}
+
+
+	@Test
+	public void testDefaultWindowedConditions() throws Exception {
+
+		File ruleFile = TestUtils.findTestFile( "/rules.autonomic/rule-with-time-constraints.drl" );
+		RuleParser parser = new RuleParser( ruleFile );
+
+		Rule rule = parser.getRule();
+		Assert.assertEquals( 1, rule.getMinOccurrences());
+		Assert.assertEquals( 0, rule.getMinRate(), 0.0001 );
+		Assert.assertEquals( 0, rule.getMinAgents());
+		Assert.assertFalse( rule.isCountPerAgent());
+		Assert.assertFalse( rule.hasWindowedConditions());
+		Assert.assertEquals( 1, rule.getRequiredOccurrences());
+	}
 }
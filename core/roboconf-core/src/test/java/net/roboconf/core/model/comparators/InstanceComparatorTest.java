@@ -141,6 +141,17 @@ public class InstanceComparatorTest {
 	}
 
 
+	@Test
+	public void testComparePaths() {
+
+		// Raw string comparison would put "/vm-1" before "/vm/app" ('-' < '/')
+		Assert.assertTrue( InstanceComparator.comparePaths( "/vm", "/vm/app" ) < 0 );
+		Assert.assertTrue( InstanceComparator.comparePaths( "/vm/app", "/vm-1" ) < 0 );
+		Assert.assertTrue( InstanceComparator.comparePaths( "/vm-1", "/vm/app" ) > 0 );
+		Assert.assertEquals( 0, InstanceComparator.comparePaths( "/vm/app", "/vm/app" ));
+	}
+
+
 	@Test
 	public void testWithInvalidInstancePath() {
 
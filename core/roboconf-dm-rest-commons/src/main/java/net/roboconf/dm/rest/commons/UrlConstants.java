@@ -39,4 +39,5 @@ public interface UrlConstants {
 	String AUTHENTICATION = "auth";
 
 	String SESSION_ID = "roboconf-sid";
+	String NEXT_CURSOR = "Roboconf-Next-Cursor";
 }
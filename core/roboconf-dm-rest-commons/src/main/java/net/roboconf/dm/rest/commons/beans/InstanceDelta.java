@@ -0,0 +1,89 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.commons.beans;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A compact description of the changes that occurred on an instance.
+ * <p>
+ * It is sent on the web socket instead of the whole instance, to clients that asked for it.
+ * Only the data that changed since the last notification are included. Removed
+ * data are associated with a null value.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class InstanceDelta {
+
+	private final String applicationName;
+	private final String path;
+	private final String status;
+	private final Map<String,String> changedData = new LinkedHashMap<> ();
+
+
+	/**
+	 * Constructor.
+	 * @param applicationName
+	 * @param path
+	 * @param status
+	 */
+	public InstanceDelta( String applicationName, String path, String status ) {
+		this.applicationName = applicationName;
+		this.path = path;
+		this.status = status;
+	}
+
+	/**
+	 * @return the applicationName
+	 */
+	public String getApplicationName() {
+		return this.applicationName;
+	}
+
+	/**
+	 * @return the path
+	 */
+	public String getPath() {
+		return this.path;
+	}
+
+	/**
+	 * @return the status
+	 */
+	public String getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * @return the changed data (never null)
+	 */
+	public Map<String,String> getChangedData() {
+		return this.changedData;
+	}
+}
@@ -40,6 +40,7 @@ public class WebSocketMessage {
 	private EventType eventType;
 	private ApplicationTemplate applicationTemplate;
 	private Instance instance;
+	private InstanceDelta instanceDelta;
 	private String message;
 
 
@@ -75,6 +76,16 @@ public class WebSocketMessage {
 		this.instance = instance;
 	}
 
+	/**
+	 * Constructor.
+	 * @param instanceDelta
+	 * @param eventType
+	 */
+	public WebSocketMessage( InstanceDelta instanceDelta, EventType eventType ) {
+		this.instanceDelta = instanceDelta;
+		this.eventType = eventType;
+	}
+
 	/**
 	 * Constructor.
 	 * @param message
@@ -111,6 +122,13 @@ public class WebSocketMessage {
 		return this.instance;
 	}
 
+	/**
+	 * @return the instanceDelta
+	 */
+	public InstanceDelta getInstanceDelta() {
+		return this.instanceDelta;
+	}
+
 	/**
 	 * @return the message
 	 */
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -38,7 +39,6 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.core.Version;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonDeserializer;
@@ -67,6 +67,7 @@ import net.roboconf.dm.rest.commons.Diagnostic;
 import net.roboconf.dm.rest.commons.Diagnostic.DependencyInformation;
 import net.roboconf.dm.rest.commons.beans.ApplicationBindings;
 import net.roboconf.dm.rest.commons.beans.ApplicationBindings.ApplicationBindingItem;
+import net.roboconf.dm.rest.commons.beans.InstanceDelta;
 import net.roboconf.dm.rest.commons.beans.TargetAssociation;
 import net.roboconf.dm.rest.commons.beans.WebSocketMessage;
 
@@ -189,6 +190,7 @@ public final class JSonBindingUtils {
 	private static final String WS_TPL = "tpl";
 	private static final String WS_INST = "inst";
 	private static final String WS_MSG = "msg";
+	private static final String WS_DELTA = "delta";
 
 
 	/**
@@ -767,8 +769,7 @@ public final class JSonBindingUtils {
 
 			if(( n = node.get( DIAG_DEPENDENCIES )) != null ) {
 				for( JsonNode arrayNodeItem : n ) {
-					ObjectMapper mapper = createObjectMapper();
-					DependencyInformation info = mapper.readValue( arrayNodeItem.toString(), DependencyInformation.class );
+					DependencyInformation info = oc.treeToValue( arrayNodeItem, DependencyInformation.class );
 					diag.getDependenciesInformation().add( info );
 				}
 			}
@@ -889,6 +890,30 @@ public final class JSonBindingUtils {
 			if( wsm.getInstance() != null )
 				generator.writeObjectField( WS_INST, wsm.getInstance());
 
+			// Deltas are written directly, they are never deserialized
+			InstanceDelta delta = wsm.getInstanceDelta();
+			if( delta != null ) {
+				generator.writeObjectFieldStart( WS_DELTA );
+				if( delta.getApplicationName() != null )
+					generator.writeStringField( WS_APP, delta.getApplicationName());
+
+				if( delta.getPath() != null )
+					generator.writeStringField( PATH, delta.getPath());
+
+				if( delta.getStatus() != null )
+					generator.writeStringField( INST_STATUS, delta.getStatus());
+
+				if( ! delta.getChangedData().isEmpty()) {
+					generator.writeObjectFieldStart( INST_DATA );
+					for( Map.Entry<String,String> entry : delta.getChangedData().entrySet())
+						generator.writeStringField( entry.getKey(), entry.getValue());
+
+					generator.writeEndObject();
+				}
+
+				generator.writeEndObject();
+			}
+
 			if( wsm.getMessage() != null )
 				generator.writeObjectField( WS_MSG, wsm.getMessage());
 
@@ -932,7 +957,7 @@ public final class JSonBindingUtils {
 				// We do not expect it for deserialization
 				Map<String,String> externalExports = app.getTemplate().externalExports;
 				if( ! externalExports.isEmpty())
-					generator.writeObjectField( EXT_VARS, new MapWrapper( externalExports ));
+					writeStringMap( generator, EXT_VARS, externalExports, true );
 			}
 
 			// Read-only information.
@@ -967,7 +992,7 @@ public final class JSonBindingUtils {
 			}
 
 			if( info != null )
-				generator.writeObjectField( APP_INFO, info );
+				generator.writeStringField( APP_INFO, info );
 
 			generator.writeEndObject();
 		}
@@ -1041,8 +1066,11 @@ public final class JSonBindingUtils {
 			if( instance.getStatus() != null )
 				generator.writeStringField( INST_STATUS, String.valueOf( instance.getStatus()));
 
-			if( instance.getComponent() != null )
-				generator.writeObjectField( INST_COMPONENT, instance.getComponent());
+			ComponentCache cache = ComponentCache.get( provider );
+			if( instance.getComponent() != null ) {
+				generator.writeFieldName( INST_COMPONENT );
+				writeComponent( generator, instance.getComponent(), cache );
+			}
 
 			if( ! instance.channels.isEmpty()) {
 				generator.writeArrayFieldStart( INST_CHANNELS );
@@ -1054,26 +1082,24 @@ public final class JSonBindingUtils {
 
 			// All exports are serialized in the same object (overridden or not).
 			// Will be necessary in external apps, like web console (eg. to edit exports).
-			Map<String, String> exports = InstanceHelpers.findAllExportedVariables(instance);
-			if( ! exports.isEmpty()) {
-				generator.writeFieldName( INST_EXPORTS );
-				generator.writeStartObject();
-				for( Map.Entry<String,String> entry : exports.entrySet())
-					generator.writeObjectField( entry.getKey(), entry.getValue());
-
-				generator.writeEndObject();
-			}
+			// Most instances do not override exports: their component's ones are written directly.
+			Map<String,String> exports;
+			if( ! instance.overriddenExports.isEmpty())
+				exports = InstanceHelpers.findAllExportedVariables( instance );
+			else if( instance.getComponent() != null )
+				exports = cache.findExports( instance.getComponent());
+			else
+				exports = Collections.emptyMap();
+
+			if( ! exports.isEmpty())
+				writeStringMap( generator, INST_EXPORTS, exports, false );
 
 			// Write some meta-data (useful for web clients).
 			// De-serializing this information is useless for the moment.
-			if( ! instance.data.isEmpty()) {
-
-				generator.writeFieldName( INST_DATA );
-				generator.writeStartObject();
-				for( Map.Entry<String,String> entry : instance.data.entrySet())
-					generator.writeObjectField( entry.getKey(), entry.getValue());
-
-				generator.writeEndObject();
+			// Iterating over a synchronized map requires to hold its lock.
+			synchronized( instance.data ) {
+				if( ! instance.data.isEmpty())
+					writeStringMap( generator, INST_DATA, instance.data, false );
 			}
 
 			generator.writeEndObject();
@@ -1106,17 +1132,18 @@ public final class JSonBindingUtils {
 					instance.channels.add( arrayNodeItem.textValue());
 			}
 
-			ObjectMapper mapper = createObjectMapper();
-
 			// Consider all exports as overridden. This will be fixed later
 			// (e.g. by comparison with component exports).
 			if(( n = node.get( INST_EXPORTS )) != null ) {
-				Map<String, String> exports = mapper.readValue( n.toString(), new TypeReference<HashMap<String,String>>(){});
-				instance.overriddenExports.putAll(exports);
+				for( Iterator<Map.Entry<String,JsonNode>> it = n.fields(); it.hasNext(); ) {
+					Map.Entry<String,JsonNode> entry = it.next();
+					instance.overriddenExports.put( entry.getKey(), entry.getValue().isNull() ? null : entry.getValue().asText());
+				}
 			}
 
+			// The codec is the mapper being used, with our deserializers
 			if(( n = node.get( INST_COMPONENT )) != null ) {
-				Component instanceComponent = mapper.readValue( n.toString(), Component.class );
+				Component instanceComponent = oc.treeToValue( n, Component.class );
 				instance.setComponent( instanceComponent );
 			}
 
@@ -1147,15 +1174,7 @@ public final class JSonBindingUtils {
 				SerializerProvider provider )
 		throws IOException {
 
-			generator.writeStartObject();
-			if( component.getName() != null )
-				generator.writeStringField( NAME, component.getName());
-
-			String installerName = ComponentHelpers.findComponentInstaller( component );
-			if( installerName != null )
-				generator.writeStringField( COMP_INSTALLER, installerName );
-
-			generator.writeEndObject();
+			writeComponent( generator, component, ComponentCache.get( provider ));
 		}
 	}
 
@@ -1183,4 +1202,125 @@ public final class JSonBindingUtils {
 			return component;
 		}
 	}
+
+
+	/**
+	 * Writes a component.
+	 * @param generator the generator
+	 * @param component a non-null component
+	 * @param cache a cache for the current serialization
+	 * @throws IOException
+	 */
+	static void writeComponent( JsonGenerator generator, Component component, ComponentCache cache )
+	throws IOException {
+
+		generator.writeStartObject();
+		if( component.getName() != null )
+			generator.writeStringField( NAME, component.getName());
+
+		String installerName = cache.findInstaller( component );
+		if( installerName != null )
+			generator.writeStringField( COMP_INSTALLER, installerName );
+
+		generator.writeEndObject();
+	}
+
+
+	/**
+	 * Writes a map of strings as a JSon object.
+	 * @param generator the generator
+	 * @param fieldName the field name
+	 * @param map a non-null map
+	 * @param noNull true to replace null keys and values by empty strings
+	 * @throws IOException
+	 */
+	static void writeStringMap( JsonGenerator generator, String fieldName, Map<String,String> map, boolean noNull )
+	throws IOException {
+
+		generator.writeObjectFieldStart( fieldName );
+		for( Map.Entry<String,String> entry : map.entrySet()) {
+			String key = entry.getKey(), value = entry.getValue();
+			if( noNull ) {
+				key = key == null ? "" : key;
+				value = value == null ? "" : value;
+			}
+
+			generator.writeStringField( key, value );
+		}
+
+		generator.writeEndObject();
+	}
+
+
+	/**
+	 * Caches information about components during a serialization.
+	 * <p>
+	 * Resolving the installer and the exports of a component implies
+	 * to walk through its hierarchy and its facets. When an application is
+	 * serialized, many instances share the same components. The cache lives
+	 * as long as the serialization (it is stored in the serializer provider),
+	 * so that model changes are always visible to the next serialization.
+	 * </p>
+	 *
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static final class ComponentCache {
+
+		private static final String ATTRIBUTE = ComponentCache.class.getName();
+
+		private final Map<Component,String> installers = new IdentityHashMap<> ();
+		private final Map<Component,Map<String,String>> exports = new IdentityHashMap<> ();
+
+
+		/**
+		 * Gets the cache associated with the current serialization.
+		 * @param provider the serializer provider (can be null)
+		 * @return a non-null cache
+		 */
+		static ComponentCache get( SerializerProvider provider ) {
+
+			ComponentCache result = provider == null ? null : (ComponentCache) provider.getAttribute( ATTRIBUTE );
+			if( result == null ) {
+				result = new ComponentCache();
+				if( provider != null )
+					provider.setAttribute( ATTRIBUTE, result );
+			}
+
+			return result;
+		}
+
+
+		/**
+		 * @param component a non-null component
+		 * @return the installer name (can be null)
+		 */
+		String findInstaller( Component component ) {
+
+			String result = this.installers.get( component );
+			if( result == null && ! this.installers.containsKey( component )) {
+				result = ComponentHelpers.findComponentInstaller( component );
+				this.installers.put( component, result );
+			}
+
+			return result;
+		}
+
+
+		/**
+		 * @param component a non-null component
+		 * @return the exported variables (not null, must not be modified)
+		 */
+		Map<String,String> findExports( Component component ) {
+
+			Map<String,String> result = this.exports.get( component );
+			if( result == null ) {
+				// Same construction than InstanceHelpers, to keep the same iteration order
+				result = new HashMap<> ();
+				result.putAll( ComponentHelpers.findAllExportedVariables( component ));
+				this.exports.put( component, result );
+			}
+
+			return result;
+		}
+	}
 }
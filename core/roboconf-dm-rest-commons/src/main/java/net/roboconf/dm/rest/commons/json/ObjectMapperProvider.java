@@ -25,25 +25,82 @@
 
 package net.roboconf.dm.rest.commons.json;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Provider;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Register our Jackson object mapper.
+ * <p>
+ * Building a mapper and its serializers is expensive. So, all the components
+ * share a same instance, whose serializers are resolved when this class is loaded.
+ * Mappers are thread-safe once configured: the shared one must NOT be reconfigured.
+ * Use {@link JSonBindingUtils#createObjectMapper()} to get a mapper with other settings.
+ * </p>
+ *
  * @author Vincent Zurczak - Linagora
  */
 @Provider
 @Produces( MediaType.APPLICATION_JSON )
 public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
 
-	private final ObjectMapper mapper = JSonBindingUtils.createObjectMapper();
+	private static final ObjectMapper MAPPER = JSonBindingUtils.createObjectMapper();
+	private static final ObjectWriter WRITER = MAPPER.writer();
+	private static final Map<Class<?>,ObjectReader> READERS = new ConcurrentHashMap<> ();
+
+	static {
+		// Resolve and cache the serializers of our types now, not on the first request
+		for( Class<?> clazz : JSonBindingUtils.SERIALIZERS.keySet())
+			MAPPER.canSerialize( clazz );
+
+		for( Class<?> clazz : JSonBindingUtils.DESERIALIZERS.keySet())
+			getReader( clazz );
+	}
+
 
 	@Override
 	public ObjectMapper getContext( Class<?> type ) {
-		return this.mapper;
+		return MAPPER;
+	}
+
+
+	/**
+	 * @return the shared mapper (never null, must not be reconfigured)
+	 */
+	public static ObjectMapper getSharedMapper() {
+		return MAPPER;
+	}
+
+
+	/**
+	 * @return a writer based on the shared mapper (never null)
+	 */
+	public static ObjectWriter getWriter() {
+		return WRITER;
+	}
+
+
+	/**
+	 * Gets a reader for a given type.
+	 * @param clazz a class
+	 * @return a cached reader based on the shared mapper (never null)
+	 */
+	public static ObjectReader getReader( Class<?> clazz ) {
+
+		ObjectReader result = READERS.get( clazz );
+		if( result == null ) {
+			result = MAPPER.reader( clazz );
+			READERS.put( clazz, result );
+		}
+
+		return result;
 	}
 }
@@ -61,6 +61,7 @@ import net.roboconf.dm.rest.commons.Diagnostic;
 import net.roboconf.dm.rest.commons.Diagnostic.DependencyInformation;
 import net.roboconf.dm.rest.commons.beans.ApplicationBindings;
 import net.roboconf.dm.rest.commons.beans.ApplicationBindings.ApplicationBindingItem;
+import net.roboconf.dm.rest.commons.beans.InstanceDelta;
 import net.roboconf.dm.rest.commons.beans.TargetAssociation;
 import net.roboconf.dm.rest.commons.beans.WebSocketMessage;
 
@@ -1266,6 +1267,35 @@ public class JSonBindingUtilsTest {
 	}
 
 
+	@Test
+	public void testWebSocketMessage_instanceDelta() throws Exception {
+
+		ObjectMapper mapper = JSonBindingUtils.createObjectMapper();
+		WebSocketMessage wsm = new WebSocketMessage((InstanceDelta) null, null );
+
+		StringWriter writer = new StringWriter();
+		mapper.writeValue( writer, wsm );
+		Assert.assertEquals( "{}", writer.toString());
+
+		InstanceDelta delta = new InstanceDelta( "test", "/vm/server", "DEPLOYED_STARTED" );
+		wsm = new WebSocketMessage( delta, EventType.CHANGED );
+		writer = new StringWriter();
+		mapper.writeValue( writer, wsm );
+		Assert.assertEquals(
+				"{\"event\":\"CHANGED\",\"delta\":{\"app\":\"test\",\"path\":\"/vm/server\",\"status\":\"DEPLOYED_STARTED\"}}",
+				writer.toString());
+
+		delta.getChangedData().put( "ip", "127.0.0.1" );
+		delta.getChangedData().put( "removed", null );
+		writer = new StringWriter();
+		mapper.writeValue( writer, wsm );
+		Assert.assertEquals(
+				"{\"event\":\"CHANGED\",\"delta\":{\"app\":\"test\",\"path\":\"/vm/server\",\"status\":\"DEPLOYED_STARTED\","
+				+ "\"data\":{\"ip\":\"127.0.0.1\",\"removed\":null}}}",
+				writer.toString());
+	}
+
+
 	@Test
 	public void testWebSocketMessage_application() throws Exception {
 
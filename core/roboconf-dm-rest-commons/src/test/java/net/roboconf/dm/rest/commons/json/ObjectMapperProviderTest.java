@@ -25,9 +25,19 @@
 
 package net.roboconf.dm.rest.commons.json;
 
+import java.io.StringWriter;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.model.beans.Application;
+import net.roboconf.core.model.beans.Component;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.helpers.InstanceHelpers;
+
 /**
  * @author Vincent Zurczak - Linagora
  */
@@ -40,4 +50,59 @@ public class ObjectMapperProviderTest {
 		Assert.assertNotNull( provider.getContext( null ));
 		Assert.assertNotNull( provider.getContext( String.class ));
 	}
+
+
+	@Test
+	public void testSharedMapper() {
+
+		ObjectMapperProvider provider = new ObjectMapperProvider();
+		Assert.assertSame( ObjectMapperProvider.getSharedMapper(), provider.getContext( null ));
+		Assert.assertSame( ObjectMapperProvider.getSharedMapper(), new ObjectMapperProvider().getContext( Instance.class ));
+		Assert.assertNotNull( ObjectMapperProvider.getWriter());
+
+		Assert.assertSame( ObjectMapperProvider.getReader( Instance.class ), ObjectMapperProvider.getReader( Instance.class ));
+		Assert.assertSame( ObjectMapperProvider.getReader( String.class ), ObjectMapperProvider.getReader( String.class ));
+	}
+
+
+	@Test
+	public void testSerialization_bigApplication() throws Exception {
+
+		// 5,000 instances that share a few components
+		TestApplication app = new TestApplication();
+		Component vmComponent = app.getMySqlVm().getComponent();
+		Component[] components = {
+				app.getMySql().getComponent(),
+				app.getTomcat().getComponent(),
+				app.getWar().getComponent()
+		};
+
+		for( int i=0; i<1250; i++ ) {
+			Instance vm = new Instance( "vm-" + i ).component( vmComponent );
+			app.getRootInstances().add( vm );
+			for( Component c : components ) {
+				Instance child = new Instance( c.getName() + "-" + i ).component( c );
+				child.data.put( "some-key", "some-value-" + i );
+				InstanceHelpers.insertChild( vm, child );
+			}
+		}
+
+		// The shared writer and the former approach (a new mapper per serialization) produce the same result
+		Application[] apps = { app };
+		StringWriter writer = new StringWriter();
+		ObjectMapper oldMapper = JSonBindingUtils.createObjectMapper();
+		oldMapper.writeValue( writer, InstanceHelpers.getAllInstances( app ));
+		oldMapper.writeValue( writer, apps );
+		String expected = writer.toString();
+
+		writer = new StringWriter();
+		ObjectMapperProvider.getWriter().writeValue( writer, InstanceHelpers.getAllInstances( app ));
+		ObjectMapperProvider.getWriter().writeValue( writer, apps );
+		Assert.assertEquals( expected, writer.toString());
+		Assert.assertTrue( expected.contains( "\"path\":\"/vm-1249/tomcat-1249\"" ));
+
+		// Instances can be read again
+		Instance[] instances = ObjectMapperProvider.getReader( Instance[].class ).readValue( expected.substring( 0, expected.lastIndexOf( "][" ) + 1 ));
+		Assert.assertEquals( InstanceHelpers.getAllInstances( app ).size(), instances.length );
+	}
 }
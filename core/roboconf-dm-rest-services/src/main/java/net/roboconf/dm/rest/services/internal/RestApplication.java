@@ -26,6 +26,7 @@
 package net.roboconf.dm.rest.services.internal;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.ops4j.pax.url.mvn.MavenResolver;
@@ -36,6 +37,8 @@ import com.sun.jersey.api.core.ResourceConfig;
 import net.roboconf.dm.management.Manager;
 import net.roboconf.dm.rest.commons.security.AuthenticationManager;
 import net.roboconf.dm.rest.services.cors.ResponseCorsFilter;
+import net.roboconf.dm.rest.services.internal.filters.EntityTagFilter;
+import net.roboconf.dm.rest.services.internal.filters.GzipEncodingFilter;
 import net.roboconf.dm.rest.services.internal.resources.IApplicationResource;
 import net.roboconf.dm.rest.services.internal.resources.IDebugResource;
 import net.roboconf.dm.rest.services.internal.resources.IPreferencesResource;
@@ -67,6 +70,7 @@ public class RestApplication extends DefaultResourceConfig {
 	 * Constructor.
 	 * @param manager
 	 */
+	@SuppressWarnings( "unchecked" )
 	public RestApplication( Manager manager ) {
 		super();
 
@@ -80,6 +84,12 @@ public class RestApplication extends DefaultResourceConfig {
 
 		getFeatures().put( "com.sun.jersey.api.json.POJOMappingFeature", Boolean.TRUE );
 		getFeatures().put( ResourceConfig.FEATURE_DISABLE_WADL, Boolean.TRUE );
+
+		// HTTP caching and compression
+		EntityTagFilter entityTagFilter = new EntityTagFilter( manager );
+		getContainerRequestFilters().add( entityTagFilter );
+		getContainerResponseFilters().add( entityTagFilter );
+		getContainerResponseFilters().add( new GzipEncodingFilter( manager ));
 	}
 
 
@@ -159,11 +169,13 @@ public class RestApplication extends DefaultResourceConfig {
 	 * Enables or disables CORS.
 	 * @param enableCors true to enable it
 	 */
+	@SuppressWarnings( "unchecked" )
 	public void enableCors( boolean enableCors ) {
 
+		// Other response filters are registered, we must preserve them
+		List<Object> filters = getContainerResponseFilters();
+		filters.remove( ResponseCorsFilter.class.getName());
 		if( enableCors )
-			getProperties().put( ResourceConfig.PROPERTY_CONTAINER_RESPONSE_FILTERS, ResponseCorsFilter.class.getName());
-		else
-			getProperties().remove( ResourceConfig.PROPERTY_CONTAINER_RESPONSE_FILTERS );
+			filters.add( ResponseCorsFilter.class.getName());
 	}
 }
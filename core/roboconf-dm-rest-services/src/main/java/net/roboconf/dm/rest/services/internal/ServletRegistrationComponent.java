@@ -350,6 +350,7 @@ public class ServletRegistrationComponent implements RestServicesMBean {
 	// Web socket handlers are not created by us directly.
 	// Static access is the most simple solution.
 	public static final AtomicLong WS_CONNECTION_ERRORS_COUNT = new AtomicLong();
+	public static final AtomicLong WS_DROPPED_MESSAGES_COUNT = new AtomicLong();
 
 
 	@Override
@@ -364,6 +365,12 @@ public class ServletRegistrationComponent implements RestServicesMBean {
 	}
 
 
+	@Override
+	public long getWebSocketDroppedMessagesCount() {
+		return WS_DROPPED_MESSAGES_COUNT.get();
+	}
+
+
 	@Override
 	public long getRestRequestsWithAuthFailureCount() {
 		return this.restRequestsWithAuthFailureCount.get();
@@ -393,5 +400,6 @@ public class ServletRegistrationComponent implements RestServicesMBean {
 		this.restRequestsCount.set( 0 );
 		this.restRequestsWithAuthFailureCount.set( 0 );
 		WS_CONNECTION_ERRORS_COUNT.set( 0 );
+		WS_DROPPED_MESSAGES_COUNT.set( 0 );
 	}
 }
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.filters;
+
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+
+/**
+ * A Jersey filter that associates entity tags with the listings of instances, templates and targets.
+ * <p>
+ * Every managed application maintains a version counter for its instances.
+ * It is incremented every time an instance is created, deleted or modified.
+ * Similarly, the applications, templates and targets managers maintain version counters.
+ * This filter uses them to build an entity tag, without serializing anything.
+ * The query string is part of the tag, since it filters and pages the listed items.
+ * When a client sends the tag it received previously (through the "If-None-Match" header)
+ * and that the version did not change, the request is directly answered with a "304 Not Modified"
+ * response. The resource is not invoked and the instances are not serialized.
+ * </p>
+ * <p>
+ * Polling clients (such as the web administration) are the main beneficiaries.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class EntityTagFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+	static final String ETAG_PROPERTY = EntityTagFilter.class.getName() + ".etag";
+	static final Pattern INSTANCES_PATH = Pattern.compile( "^/?app/([^/]+)/instances(/page)?/?$" );
+	static final Pattern TEMPLATES_PATH = Pattern.compile( "^/?applications/templates/?$" );
+	static final Pattern TARGETS_PATH = Pattern.compile( "^/?targets(/page)?/?$" );
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final Manager manager;
+	private final String epoch = Long.toString( System.currentTimeMillis(), 36 );
+
+
+	/**
+	 * Constructor.
+	 * @param manager the manager
+	 */
+	public EntityTagFilter( Manager manager ) {
+		this.manager = manager;
+	}
+
+
+	@Override
+	public ContainerRequest filter( ContainerRequest request ) {
+
+		EntityTag tag = findEntityTag( request );
+		if( tag != null ) {
+
+			// Compressed responses carry their own tag (see GzipEncodingFilter)
+			String ifNoneMatch = request.getHeaderValue( HttpHeaders.IF_NONE_MATCH );
+			EntityTag matchingTag = null;
+			if( matches( ifNoneMatch, tag ))
+				matchingTag = tag;
+			else if( matches( ifNoneMatch, GzipEncodingFilter.gzipVariant( tag )))
+				matchingTag = GzipEncodingFilter.gzipVariant( tag );
+
+			if( matchingTag != null ) {
+				this.logger.finest( "Resource " + request.getPath() + " was not modified (" + matchingTag + ")." );
+				IMetricsMngr metricsMngr = this.manager.metricsMngr();
+				if( metricsMngr != null )
+					metricsMngr.incrementCounter( IMetricsMngr.REST_NOT_MODIFIED );
+
+				throw new WebApplicationException( Response.notModified( matchingTag ).build());
+			}
+
+			request.getProperties().put( ETAG_PROPERTY, tag );
+		}
+
+		return request;
+	}
+
+
+	@Override
+	public ContainerResponse filter( ContainerRequest request, ContainerResponse response ) {
+
+		Object tag = request.getProperties().get( ETAG_PROPERTY );
+		if( tag != null
+				&& response.getStatus() == Status.OK.getStatusCode()
+				&& ! response.getHttpHeaders().containsKey( HttpHeaders.ETAG ))
+			response.getHttpHeaders().putSingle( HttpHeaders.ETAG, tag );
+
+		return response;
+	}
+
+
+	/**
+	 * Finds the entity tag associated with a request.
+	 * @param request a request
+	 * @return an entity tag, or null if the request's resource is not tagged
+	 */
+	EntityTag findEntityTag( ContainerRequest request ) {
+
+		String version = null;
+		Matcher m;
+		String path = request.getPath();
+		if( "GET".equals( request.getMethod())
+				&& (m = INSTANCES_PATH.matcher( path )).matches()) {
+
+			String appName = m.group( 1 );
+			ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( appName );
+
+			// Versions are reset when the DM restarts or when an application is replaced
+			// by another one with the same name. The epoch and the managed application's identity
+			// prevent clients from reusing tags that were issued for an older model.
+			if( ma != null )
+				version = Integer.toHexString( System.identityHashCode( ma )) + "-" + ma.getInstancesVersion();
+
+		} else if( "GET".equals( request.getMethod())
+				&& TEMPLATES_PATH.matcher( path ).matches()) {
+
+			// Templates list the applications created from them
+			version = "tpl-" + this.manager.applicationTemplateMngr().getTemplatesVersion()
+					+ "-" + this.manager.applicationMngr().getApplicationsVersion();
+
+		} else if( "GET".equals( request.getMethod())
+				&& TARGETS_PATH.matcher( path ).matches()) {
+
+			// Targets can be filtered by application or template
+			version = "tgt-" + this.manager.targetsMngr().getTargetsVersion()
+					+ "-" + this.manager.applicationTemplateMngr().getTemplatesVersion()
+					+ "-" + this.manager.applicationMngr().getApplicationsVersion();
+		}
+
+		EntityTag result = null;
+		if( version != null ) {
+			String value = this.epoch + "-" + version;
+
+			// Different filters or cursors => different tags
+			String query = request.getRequestUri().getRawQuery();
+			if( ! Utils.isEmptyOrWhitespaces( query ))
+				value += "-" + Integer.toHexString( query.hashCode());
+
+			result = new EntityTag( value );
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Determines whether an "If-None-Match" header matches an entity tag.
+	 * @param ifNoneMatch the header's value (can be null)
+	 * @param tag the current entity tag (not null)
+	 * @return true if the header matches the tag
+	 */
+	static boolean matches( String ifNoneMatch, EntityTag tag ) {
+
+		boolean result = false;
+		if( ifNoneMatch != null ) {
+			for( String s : ifNoneMatch.split( "," )) {
+				s = s.trim();
+				if( s.startsWith( "W/" ))
+					s = s.substring( 2 );
+
+				if( "*".equals( s )
+						|| ("\"" + tag.getValue() + "\"").equals( s )) {
+					result = true;
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,361 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response.Status;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+
+import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+
+/**
+ * A Jersey filter that compresses large responses with GZip.
+ * <p>
+ * Small responses are not worth being compressed. So, the response's content
+ * is buffered until it reaches a given threshold. If the response is completely
+ * written before, it is sent as is. Otherwise, it is compressed. The client must
+ * have indicated it supports GZip (through the "Accept-Encoding" header).
+ * </p>
+ * <p>
+ * Since the same resource may be sent compressed or not, responses indicate they
+ * vary with the "Accept-Encoding" header. And the entity tag of a compressed response
+ * is suffixed with {@value #GZIP_TAG_SUFFIX}, so that caches do not mix both representations.
+ * </p>
+ * <p>
+ * The number of bytes produced by the serialization and the number of bytes
+ * effectively sent are recorded by the DM's metrics manager.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class GzipEncodingFilter implements ContainerResponseFilter {
+
+	static final String GZIP = "gzip";
+	static final String GZIP_TAG_SUFFIX = "-gzip";
+	static final int DEFAULT_THRESHOLD = 1024;
+
+	private final Manager manager;
+	private final int threshold;
+
+
+	/**
+	 * Constructor.
+	 * @param manager the manager
+	 */
+	public GzipEncodingFilter( Manager manager ) {
+		this( manager, DEFAULT_THRESHOLD );
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param manager the manager
+	 * @param threshold the minimal size (in bytes) of a response to compress it
+	 */
+	public GzipEncodingFilter( Manager manager, int threshold ) {
+		this.manager = manager;
+		this.threshold = threshold;
+	}
+
+
+	@Override
+	public ContainerResponse filter( ContainerRequest request, ContainerResponse response ) {
+
+		// Whether the client accepts GZip or not, the response may vary with it
+		boolean hasEntity = response.getEntity() != null;
+		if(( hasEntity || response.getStatus() == Status.NOT_MODIFIED.getStatusCode())
+				&& ! response.getHttpHeaders().containsKey( HttpHeaders.CONTENT_ENCODING ))
+			response.getHttpHeaders().add( HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING );
+
+		if( hasEntity
+				&& acceptsGzip( request.getHeaderValue( HttpHeaders.ACCEPT_ENCODING ))
+				&& ! response.getHttpHeaders().containsKey( HttpHeaders.CONTENT_ENCODING )) {
+
+			response.setContainerResponseWriter( new ThresholdGzipWriter(
+					response.getContainerResponseWriter(),
+					this.threshold,
+					this.manager.metricsMngr()));
+		}
+
+		return response;
+	}
+
+
+	/**
+	 * @param acceptEncoding the value of the "Accept-Encoding" header (can be null)
+	 * @return true if it allows GZip
+	 */
+	static boolean acceptsGzip( String acceptEncoding ) {
+
+		boolean result = false;
+		if( acceptEncoding != null ) {
+			for( String s : acceptEncoding.split( "," )) {
+				String[] parts = s.trim().split( ";" );
+				if( GZIP.equalsIgnoreCase( parts[ 0 ].trim())) {
+					result = parts.length < 2 || ! parts[ 1 ].trim().matches( "q\\s*=\\s*0(\\.0*)?" );
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * @param tag an entity tag (not null)
+	 * @return the entity tag of the same resource, once compressed
+	 */
+	static EntityTag gzipVariant( EntityTag tag ) {
+		return new EntityTag( tag.getValue() + GZIP_TAG_SUFFIX, tag.isWeak());
+	}
+
+
+	/**
+	 * A response writer that only compresses the content beyond a given threshold.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class ThresholdGzipWriter implements ContainerResponseWriter {
+
+		private final ContainerResponseWriter delegate;
+		private final IMetricsMngr metricsMngr;
+		private final int threshold;
+		private ThresholdOutputStream out;
+
+
+		/**
+		 * Constructor.
+		 * @param delegate the writer to use to send the response
+		 * @param threshold the minimal size (in bytes) of a response to compress it
+		 * @param metricsMngr the metrics manager (can be null)
+		 */
+		ThresholdGzipWriter( ContainerResponseWriter delegate, int threshold, IMetricsMngr metricsMngr ) {
+			this.delegate = delegate;
+			this.threshold = threshold;
+			this.metricsMngr = metricsMngr;
+		}
+
+
+		@Override
+		public OutputStream writeStatusAndHeaders( long contentLength, ContainerResponse response )
+		throws IOException {
+
+			// The size is known and small enough: nothing to do
+			OutputStream result;
+			if( contentLength >= 0 && contentLength < this.threshold ) {
+				result = this.delegate.writeStatusAndHeaders( contentLength, response );
+				record( contentLength, contentLength, -1 );
+
+			} else {
+				this.out = new ThresholdOutputStream( response );
+				result = this.out;
+			}
+
+			return result;
+		}
+
+
+		@Override
+		public void finish() throws IOException {
+
+			if( this.out != null )
+				this.out.done();
+
+			this.delegate.finish();
+		}
+
+
+		/**
+		 * Records metrics about the response.
+		 * @param rawBytes the number of bytes produced by the serialization
+		 * @param sentBytes the number of bytes effectively sent
+		 * @param durationNanos the time spent to write the response (negative if unknown)
+		 */
+		void record( long rawBytes, long sentBytes, long durationNanos ) {
+
+			if( this.metricsMngr != null ) {
+				this.metricsMngr.addToCounter( IMetricsMngr.REST_BYTES_RAW, rawBytes );
+				this.metricsMngr.addToCounter( IMetricsMngr.REST_BYTES_SENT, sentBytes );
+				if( durationNanos >= 0 )
+					this.metricsMngr.recordDuration( IMetricsMngr.REST_WRITING, durationNanos );
+			}
+		}
+
+
+		/**
+		 * A stream that buffers the content until a decision can be made about the compression.
+		 * @author Vincent Zurczak - Linagora
+		 */
+		private class ThresholdOutputStream extends OutputStream {
+
+			private final ContainerResponse response;
+			private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			private CountingOutputStream sent;
+			private GZIPOutputStream gzip;
+			private long rawBytes, start = -1;
+			private boolean done = false;
+
+
+			/**
+			 * Constructor.
+			 * @param response the response
+			 */
+			ThresholdOutputStream( ContainerResponse response ) {
+				this.response = response;
+			}
+
+
+			@Override
+			public void write( int b ) throws IOException {
+				write( new byte[] {(byte) b}, 0, 1 );
+			}
+
+
+			@Override
+			public void write( byte[] b, int off, int len ) throws IOException {
+
+				if( this.start < 0 )
+					this.start = System.nanoTime();
+
+				this.rawBytes += len;
+				if( this.gzip != null ) {
+					this.gzip.write( b, off, len );
+
+				} else {
+					this.buffer.write( b, off, len );
+					if( this.buffer.size() >= ThresholdGzipWriter.this.threshold ) {
+						this.response.getHttpHeaders().putSingle( HttpHeaders.CONTENT_ENCODING, GZIP );
+						Object tag = this.response.getHttpHeaders().getFirst( HttpHeaders.ETAG );
+						if( tag instanceof EntityTag )
+							this.response.getHttpHeaders().putSingle( HttpHeaders.ETAG, gzipVariant((EntityTag) tag ));
+
+						OutputStream os = ThresholdGzipWriter.this.delegate.writeStatusAndHeaders( -1, this.response );
+						this.sent = new CountingOutputStream( os );
+						this.gzip = new GZIPOutputStream( this.sent );
+						this.buffer.writeTo( this.gzip );
+						this.buffer.reset();
+					}
+				}
+			}
+
+
+			@Override
+			public void flush() throws IOException {
+				if( this.gzip != null )
+					this.gzip.flush();
+			}
+
+
+			@Override
+			public void close() throws IOException {
+				done();
+			}
+
+
+			/**
+			 * Completes the response.
+			 * <p>
+			 * The underlying stream is not closed, this is the container's job.
+			 * </p>
+			 *
+			 * @throws IOException if something went wrong
+			 */
+			void done() throws IOException {
+
+				if( this.done )
+					return;
+
+				this.done = true;
+				long sentBytes;
+				if( this.gzip != null ) {
+					this.gzip.finish();
+					this.gzip.flush();
+					sentBytes = this.sent.count;
+
+				} else {
+					OutputStream os = ThresholdGzipWriter.this.delegate.writeStatusAndHeaders( this.buffer.size(), this.response );
+					this.buffer.writeTo( os );
+					sentBytes = this.buffer.size();
+				}
+
+				long duration = this.start < 0 ? -1 : System.nanoTime() - this.start;
+				record( this.rawBytes, sentBytes, duration );
+			}
+		}
+	}
+
+
+	/**
+	 * An output stream that counts the written bytes.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class CountingOutputStream extends OutputStream {
+
+		private final OutputStream out;
+		long count = 0;
+
+
+		/**
+		 * Constructor.
+		 * @param out the stream to write into
+		 */
+		CountingOutputStream( OutputStream out ) {
+			this.out = out;
+		}
+
+
+		@Override
+		public void write( int b ) throws IOException {
+			this.out.write( b );
+			this.count ++;
+		}
+
+
+		@Override
+		public void write( byte[] b, int off, int len ) throws IOException {
+			this.out.write( b, off, len );
+			this.count += len;
+		}
+
+
+		@Override
+		public void flush() throws IOException {
+			this.out.flush();
+		}
+	}
+}
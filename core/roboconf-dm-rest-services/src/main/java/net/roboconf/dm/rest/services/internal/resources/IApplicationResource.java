@@ -280,6 +280,41 @@ public interface IApplicationResource {
 			@QueryParam("all-children") boolean allChildren );
 
 
+	/**
+	 * Lists instances of a given application, page by page.
+	 * <p>
+	 * Instances are sorted by path. The response's body is a JSon array, written
+	 * in a streaming fashion. When there are more instances, the cursor to get the
+	 * next page is sent in the "Roboconf-Next-Cursor" header.
+	 * </p>
+	 *
+	 * @param applicationName the application name
+	 * @param instancePath the instance path (null to consider the whole application)
+	 * @param allChildren true to get all the children, false to only get the direct children
+	 * @param componentName a component name to filter instances (null to not filter)
+	 * @param status an instance status to filter instances (null to not filter)
+	 * @param pathPrefix a path prefix to filter instances (null to not filter)
+	 * @param cursor the path of the last instance of the previous page (null for the first page)
+	 * @param limit the maximal number of instances in the page (0 for the default value)
+	 * @return a response
+	 *
+	 * @HTTP 200 Everything went fine.
+	 * @HTTP 404 The application was not found.
+	 */
+	@GET
+	@Path( "/instances/page" )
+	@Produces( MediaType.APPLICATION_JSON )
+	Response listChildrenInstancesPage(
+			@PathParam("name") String applicationName,
+			@QueryParam("instance-path") String instancePath,
+			@QueryParam("all-children") boolean allChildren,
+			@QueryParam("component") String componentName,
+			@QueryParam("status") String status,
+			@QueryParam("path-prefix") String pathPrefix,
+			@QueryParam("cursor") String cursor,
+			@QueryParam("limit") int limit );
+
+
 	/**
 	 * Lists the available components in this application.
 	 * @param applicationName the application name
@@ -26,6 +26,7 @@
 package net.roboconf.dm.rest.services.internal.resources;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -149,4 +150,21 @@ public interface IDebugResource {
 	@Produces( MediaType.APPLICATION_JSON )
 	@Path("/diagnose-application")
 	List<Diagnostic> diagnoseApplication( @QueryParam("application-name") String applicationName );
+
+
+	/**
+	 * Gets the metrics collected by the DM.
+	 * <p>
+	 * The result contains three entries: "counters", "gauges" and "histograms".
+	 * Histograms values are expressed in milliseconds.
+	 * </p>
+	 *
+	 * @return a non-null map
+	 *
+	 * @HTTP 200 Everything went fine.
+	 */
+	@GET
+	@Produces( MediaType.APPLICATION_JSON )
+	@Path("/metrics")
+	Map<String,Object> getMetrics();
 }
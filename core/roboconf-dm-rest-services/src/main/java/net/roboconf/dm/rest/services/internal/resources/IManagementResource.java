@@ -241,6 +241,25 @@ public interface IManagementResource {
 	List<Application> listApplications();
 
 
+	/**
+	 * Lists applications, page by page.
+	 * <p>
+	 * Applications are sorted by name. The response's body is a JSon array, written
+	 * in a streaming fashion. When there are more applications, the cursor to get the
+	 * next page is sent in the "Roboconf-Next-Cursor" header.
+	 * </p>
+	 *
+	 * @param cursor the name of the last application of the previous page (null for the first page)
+	 * @param limit the maximal number of applications in the page (0 for the default value)
+	 * @return a response
+	 * @HTTP 200 Everything went fine.
+	 */
+	@GET
+	@Path("/page")
+	@Produces( MediaType.APPLICATION_JSON )
+	Response listApplicationsPage( @QueryParam("cursor") String cursor, @QueryParam("limit") int limit );
+
+
 	/**
 	 * Shutdowns an application.
 	 * <p>
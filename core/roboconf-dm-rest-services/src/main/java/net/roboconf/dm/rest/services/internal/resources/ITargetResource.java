@@ -84,6 +84,32 @@ public interface ITargetResource {
 			@QueryParam("qualifier") String qualifier );
 
 
+	/**
+	 * Lists targets, page by page.
+	 * <p>
+	 * Targets are sorted by ID. The response's body is a JSon array, written
+	 * in a streaming fashion. When there are more targets, the cursor to get the
+	 * next page is sent in the "Roboconf-Next-Cursor" header.
+	 * </p>
+	 *
+	 * @param applicationName an optional application name
+	 * @param qualifier an optional qualifier, if we want to list targets for a given application template
+	 * @param cursor the ID of the last target of the previous page (null for the first page)
+	 * @param limit the maximal number of targets in the page (0 for the default value)
+	 * @return a response
+	 *
+	 * @HTTP 200 Everything went fine.
+	 */
+	@GET
+	@Path( "page" )
+	@Produces( MediaType.APPLICATION_JSON )
+	Response listTargetsPage(
+			@QueryParam("name") String applicationName,
+			@QueryParam("qualifier") String qualifier,
+			@QueryParam("cursor") String cursor,
+			@QueryParam("limit") int limit );
+
+
 	/**
 	 * Creates or updates a target.
 	 * @param rawProperties the target's properties
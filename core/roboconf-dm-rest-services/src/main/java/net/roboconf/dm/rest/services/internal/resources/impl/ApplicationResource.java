@@ -65,6 +65,7 @@ import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.model.helpers.VariableHelpers;
 import net.roboconf.core.model.runtime.TargetWrapperDescriptor;
 import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.management.InstancesSnapshot;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
 import net.roboconf.dm.management.exceptions.CommandException;
@@ -75,6 +76,7 @@ import net.roboconf.dm.rest.commons.beans.ApplicationBindings.ApplicationBinding
 import net.roboconf.dm.rest.commons.beans.TargetAssociation;
 import net.roboconf.dm.rest.services.internal.errors.RestError;
 import net.roboconf.dm.rest.services.internal.resources.IApplicationResource;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils;
 import net.roboconf.dm.rest.services.internal.utils.RestServicesUtils;
 import net.roboconf.target.api.TargetException;
 
@@ -312,7 +314,7 @@ public class ApplicationResource implements IApplicationResource {
 	public List<Instance> listChildrenInstances( String applicationName, String instancePath, boolean allChildren ) {
 
 		List<Instance> result = new ArrayList<> ();
-		Application app = this.manager.applicationMngr().findApplicationByName( applicationName );
+		ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( applicationName );
 
 		// Log
 		if( instancePath == null )
@@ -320,23 +322,19 @@ public class ApplicationResource implements IApplicationResource {
 		else
 			this.logger.fine( "Request: list " + (allChildren ? "all" : "direct") + " children instances for " + instancePath + " in " + applicationName + "." );
 
-		// Find the instances
-		Instance inst;
-		if( app != null ) {
+		// Find the instances.
+		// We read a snapshot rather than walking the live model, which may be updated concurrently.
+		if( ma != null ) {
+			InstancesSnapshot snapshot = ma.getInstancesSnapshot();
 			if( instancePath == null ) {
 				if( allChildren )
-					result.addAll( InstanceHelpers.getAllInstances( app ));
+					result.addAll( snapshot.getAllInstances());
 				else
-					result.addAll( app.getRootInstances());
+					result.addAll( snapshot.getRootInstances());
 			}
 
-			else if(( inst = InstanceHelpers.findInstanceByPath( app, instancePath )) != null ) {
-				if( allChildren ) {
-					result.addAll( InstanceHelpers.buildHierarchicalList( inst ));
-					result.remove( inst );
-				} else {
-					result.addAll( inst.getChildren());
-				}
+			else {
+				result.addAll( snapshot.findChildren( instancePath, allChildren ));
 			}
 		}
 
@@ -346,6 +344,91 @@ public class ApplicationResource implements IApplicationResource {
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.roboconf.dm.rest.services.internal.resources.IApplicationResource
+	 * #listChildrenInstancesPage(java.lang.String, java.lang.String, boolean,
+	 * java.lang.String, java.lang.String, java.lang.String, java.lang.String, int)
+	 */
+	@Override
+	public Response listChildrenInstancesPage(
+			String applicationName,
+			String instancePath,
+			boolean allChildren,
+			String componentName,
+			String status,
+			String pathPrefix,
+			String cursor,
+			int limit ) {
+
+		this.logger.fine( "Request: list a page of instances for " + applicationName + " (cursor: " + cursor + ")." );
+		Response response;
+		ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( applicationName );
+		if( ma == null ) {
+			response = handleError(
+					Status.NOT_FOUND,
+					new RestError( REST_INEXISTING, application( applicationName )),
+					lang( this.manager )).build();
+
+		} else {
+			// Paths are sorted, so all the descendants of an instance are contiguous.
+			// We only scan the range that can match, and we stop as soon as the page is complete.
+			InstancesSnapshot snapshot = ma.getInstancesSnapshot();
+			List<String> sortedPaths = snapshot.getSortedPaths();
+
+			String scopePrefix = instancePath == null ? "/" : instancePath + "/";
+			String prefix = pathPrefix == null ? scopePrefix : pathPrefix;
+			String lowerBound = scopePrefix.compareTo( prefix ) > 0 ? scopePrefix : prefix;
+
+			int index = Collections.binarySearch( sortedPaths, lowerBound );
+			if( index < 0 )
+				index = - index - 1;
+
+			if( cursor != null ) {
+				int cursorIndex = Collections.binarySearch( sortedPaths, cursor );
+				cursorIndex = cursorIndex < 0 ? - cursorIndex - 1 : cursorIndex + 1;
+				index = Math.max( index, cursorIndex );
+			}
+
+			int pageSize = PaginationUtils.limit( limit );
+			List<Instance> page = new ArrayList<> ();
+			String nextCursor = null;
+			for( ; index < sortedPaths.size(); index ++ ) {
+
+				String path = sortedPaths.get( index );
+				if( ! path.startsWith( scopePrefix )
+						|| ! path.startsWith( prefix ))
+					break;
+
+				// Direct children only?
+				if( ! allChildren && path.indexOf( '/', scopePrefix.length()) >= 0 )
+					continue;
+
+				Instance instance = snapshot.findInstanceByPath( path );
+				if( componentName != null
+						&& ( instance.getComponent() == null || ! componentName.equals( instance.getComponent().getName())))
+					continue;
+
+				if( status != null
+						&& ! status.equalsIgnoreCase( String.valueOf( instance.getStatus())))
+					continue;
+
+				// There is at least one more instance after a complete page
+				if( page.size() == pageSize ) {
+					nextCursor = InstanceHelpers.computeInstancePath( page.get( page.size() - 1 ));
+					break;
+				}
+
+				page.add( instance );
+			}
+
+			response = PaginationUtils.buildResponse( page, nextCursor );
+		}
+
+		return response;
+	}
+
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.roboconf.dm.rest.services.internal.resources.IApplicationResource
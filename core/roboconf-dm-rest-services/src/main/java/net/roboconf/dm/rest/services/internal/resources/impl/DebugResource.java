@@ -37,6 +37,7 @@ import static net.roboconf.dm.rest.services.internal.utils.RestServicesUtils.lan
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -52,6 +53,7 @@ import net.roboconf.core.model.helpers.ComponentHelpers;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.dm.rest.commons.Diagnostic;
 import net.roboconf.dm.rest.commons.Diagnostic.DependencyInformation;
 import net.roboconf.dm.rest.services.internal.errors.RestError;
@@ -176,6 +178,26 @@ public class DebugResource implements IDebugResource {
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.roboconf.dm.rest.services.internal.resources.IDebugResource
+	 * #getMetrics()
+	 */
+	@Override
+	public Map<String,Object> getMetrics() {
+
+		this.logger.fine( "Request: get the DM's metrics." );
+		IMetricsMngr metricsMngr = this.manager.metricsMngr();
+
+		Map<String,Object> result = new LinkedHashMap<> ();
+		result.put( "counters", metricsMngr.getCounters());
+		result.put( "gauges", metricsMngr.getGauges());
+		result.put( "histograms", metricsMngr.getHistograms());
+
+		return result;
+	}
+
+
 	/**
 	 * Creates a diagnostic for an instance.
 	 * @param instance a non-null instance
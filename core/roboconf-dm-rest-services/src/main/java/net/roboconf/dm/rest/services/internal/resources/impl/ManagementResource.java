@@ -46,6 +46,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -79,6 +80,9 @@ import net.roboconf.dm.management.exceptions.UnauthorizedActionException;
 import net.roboconf.dm.rest.services.internal.errors.RestError;
 import net.roboconf.dm.rest.services.internal.resources.IManagementResource;
 import net.roboconf.dm.rest.services.internal.utils.MavenUrlResolver;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils.KeyResolver;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils.Page;
 import net.roboconf.dm.rest.services.internal.utils.RestServicesUtils;
 
 /**
@@ -423,6 +427,32 @@ public class ManagementResource implements IManagementResource {
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.roboconf.dm.rest.services.internal.resources.IManagementResource
+	 * #listApplicationsPage(java.lang.String, int)
+	 */
+	@Override
+	public Response listApplicationsPage( String cursor, int limit ) {
+
+		this.logger.fine( "Request: list a page of applications (cursor: " + cursor + ")." );
+		Collection<ManagedApplication> mas = this.manager.applicationMngr().getManagedApplications();
+		Page<ManagedApplication> page = PaginationUtils.selectPage( mas, new KeyResolver<ManagedApplication>() {
+			@Override
+			public String key( ManagedApplication item ) {
+				return item.getName();
+			}
+
+		}, cursor, limit );
+
+		List<Application> apps = new ArrayList<>( page.items.size());
+		for( ManagedApplication ma : page.items )
+			apps.add( ma.getApplication());
+
+		return PaginationUtils.buildResponse( apps, page.nextCursor );
+	}
+
+
 	/* (non-Javadoc)
 	 * @see net.roboconf.dm.internal.rest.client.exceptions.server.IApplicationWs
 	 * #deleteApplication(java.lang.String)
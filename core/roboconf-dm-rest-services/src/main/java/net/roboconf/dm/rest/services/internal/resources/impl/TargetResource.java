@@ -60,6 +60,8 @@ import net.roboconf.dm.management.exceptions.UnauthorizedActionException;
 import net.roboconf.dm.rest.commons.json.StringWrapper;
 import net.roboconf.dm.rest.services.internal.errors.RestError;
 import net.roboconf.dm.rest.services.internal.resources.ITargetResource;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils.KeyResolver;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -111,6 +113,24 @@ public class TargetResource implements ITargetResource {
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.roboconf.dm.rest.services.internal.resources.ITargetResource
+	 * #listTargetsPage(java.lang.String, java.lang.String, java.lang.String, int)
+	 */
+	@Override
+	public Response listTargetsPage( String name, String qualifier, String cursor, int limit ) {
+
+		return PaginationUtils.page( listTargets( name, qualifier ), new KeyResolver<TargetWrapperDescriptor>() {
+			@Override
+			public String key( TargetWrapperDescriptor item ) {
+				return item.getId();
+			}
+
+		}, cursor, limit );
+	}
+
+
 	@Override
 	public Response createOrUpdateTarget( String rawProperties, String targetId ) {
 
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import net.roboconf.dm.rest.commons.json.ObjectMapperProvider;
+
+/**
+ * A streaming output that writes a list of objects as a JSon array.
+ * <p>
+ * Items are written one by one with Jackson's streaming API, directly
+ * into the response's stream. The JSon document is never held in memory.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class JSonArrayOutput implements StreamingOutput {
+
+	private static final ObjectWriter WRITER = ObjectMapperProvider.getWriter().without( SerializationFeature.FLUSH_AFTER_WRITE_VALUE );
+
+	private final List<?> items;
+
+
+	/**
+	 * Constructor.
+	 * @param items the items to write (not null)
+	 */
+	public JSonArrayOutput( List<?> items ) {
+		this.items = items;
+	}
+
+
+	@Override
+	public void write( OutputStream os ) throws IOException, WebApplicationException {
+
+		// Do not close the response's stream, only the generator
+		JsonGenerator generator = ObjectMapperProvider.getSharedMapper().getFactory().createGenerator( os, JsonEncoding.UTF8 );
+		generator.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+		try {
+			generator.writeStartArray();
+			for( Object item : this.items )
+				WRITER.writeValue( generator, item );
+
+			generator.writeEndArray();
+
+		} finally {
+			generator.close();
+		}
+	}
+
+
+	/**
+	 * @return the items
+	 */
+	public List<?> getItems() {
+		return this.items;
+	}
+}
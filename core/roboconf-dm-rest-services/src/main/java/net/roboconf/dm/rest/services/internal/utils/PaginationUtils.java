@@ -0,0 +1,204 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import net.roboconf.dm.rest.commons.UrlConstants;
+
+/**
+ * Utilities to paginate REST listings.
+ * <p>
+ * Listings are sorted by a unique key (e.g. an instance path or an application name).
+ * A page is identified by a cursor, which is the key of the last item of the previous page.
+ * When there are more items after a page, the cursor of the next page is sent in the
+ * {@value UrlConstants#NEXT_CURSOR} header. The response's body remains a JSon array.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public final class PaginationUtils {
+
+	/** The number of items in a page when no limit is specified. */
+	public static final int DEFAULT_LIMIT = 500;
+
+	/** The maximum number of items in a page. */
+	public static final int MAX_LIMIT = 5000;
+
+
+	/**
+	 * Private constructor.
+	 */
+	private PaginationUtils() {
+		// nothing
+	}
+
+
+	/**
+	 * Determines the size of a page.
+	 * @param requestedLimit the limit requested by the client (0 or negative if unspecified)
+	 * @return a strictly positive number, lower or equal to {@link #MAX_LIMIT}
+	 */
+	public static int limit( int requestedLimit ) {
+
+		int result = requestedLimit <= 0 ? DEFAULT_LIMIT : requestedLimit;
+		return Math.min( result, MAX_LIMIT );
+	}
+
+
+	/**
+	 * Builds a page from a collection of items.
+	 * @param items the items (not null, in any order)
+	 * @param keyResolver the resolver that provides the (unique) key of every item
+	 * @param cursor the cursor (null for the first page)
+	 * @param requestedLimit the limit requested by the client (0 or negative if unspecified)
+	 * @return a non-null response
+	 */
+	public static <T> Response page( Iterable<T> items, KeyResolver<T> keyResolver, String cursor, int requestedLimit ) {
+		Page<T> page = selectPage( items, keyResolver, cursor, requestedLimit );
+		return buildResponse( page.items, page.nextCursor );
+	}
+
+
+	/**
+	 * Selects the items of a page.
+	 * <p>
+	 * Items are not all sorted. Only the items that follow the cursor are considered, and only
+	 * the smallest ones are kept (in a heap whose size is bounded by the page's size).
+	 * </p>
+	 *
+	 * @param items the items (not null, in any order)
+	 * @param keyResolver the resolver that provides the (unique) key of every item
+	 * @param cursor the cursor (null for the first page)
+	 * @param requestedLimit the limit requested by the client (0 or negative if unspecified)
+	 * @return a non-null page
+	 */
+	public static <T> Page<T> selectPage( Iterable<T> items, KeyResolver<T> keyResolver, String cursor, int requestedLimit ) {
+
+		// One more item than the limit, to know whether there is a next page
+		int limit = limit( requestedLimit );
+		Comparator<T> comparator = new KeyComparator<>( keyResolver );
+		PriorityQueue<T> largestFirst = new PriorityQueue<>( limit + 1, Collections.reverseOrder( comparator ));
+		for( T item : items ) {
+			if( cursor != null && keyResolver.key( item ).compareTo( cursor ) <= 0 )
+				continue;
+
+			if( largestFirst.size() <= limit ) {
+				largestFirst.add( item );
+
+			} else if( comparator.compare( item, largestFirst.peek()) < 0 ) {
+				largestFirst.poll();
+				largestFirst.add( item );
+			}
+		}
+
+		boolean hasNext = largestFirst.size() > limit;
+		if( hasNext )
+			largestFirst.poll();
+
+		Page<T> result = new Page<> ();
+		result.items.addAll( largestFirst );
+		Collections.sort( result.items, comparator );
+		if( hasNext )
+			result.nextCursor = keyResolver.key( result.items.get( result.items.size() - 1 ));
+
+		return result;
+	}
+
+
+	/**
+	 * Builds the response for a page.
+	 * @param page the items of the page (not null)
+	 * @param nextCursor the cursor of the next page (null if this is the last page)
+	 * @return a non-null response whose entity is streamed
+	 */
+	public static Response buildResponse( List<?> page, String nextCursor ) {
+
+		ResponseBuilder builder = Response.ok( new JSonArrayOutput( page ), MediaType.APPLICATION_JSON );
+		if( nextCursor != null )
+			builder = builder.header( UrlConstants.NEXT_CURSOR, nextCursor );
+
+		return builder.build();
+	}
+
+
+	/**
+	 * The items of a page, and the cursor of the next one.
+	 * @param <T> the item's type
+	 * @author Vincent Zurczak - Linagora
+	 */
+	public static class Page<T> {
+		public final List<T> items = new ArrayList<> ();
+		public String nextCursor;
+	}
+
+
+	/**
+	 * Compares items by key.
+	 * @param <T> the item's type
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class KeyComparator<T> implements Comparator<T> {
+		private final KeyResolver<T> keyResolver;
+
+		/**
+		 * Constructor.
+		 * @param keyResolver
+		 */
+		KeyComparator( KeyResolver<T> keyResolver ) {
+			this.keyResolver = keyResolver;
+		}
+
+		@Override
+		public int compare( T o1, T o2 ) {
+			return this.keyResolver.key( o1 ).compareTo( this.keyResolver.key( o2 ));
+		}
+	}
+
+
+	/**
+	 * Resolves the key of an item.
+	 * @param <T> the item's type
+	 * @author Vincent Zurczak - Linagora
+	 */
+	public interface KeyResolver<T> {
+
+		/**
+		 * @param item an item
+		 * @return the item's key (not null)
+		 */
+		String key( T item );
+	}
+}
@@ -25,6 +25,7 @@
 
 package net.roboconf.dm.rest.services.internal.websocket;
 
+import java.io.IOException;
 import java.util.logging.Logger;
 
 import org.eclipse.jetty.websocket.api.Session;
@@ -65,8 +66,16 @@ public class RoboconfWebSocket implements WebSocketListener {
 
 	@Override
 	public void onWebSocketText( String message ) {
-		this.logger.finest( "An unexpected text message was received on the web socket. Session origin: " + this.session.getRemoteAddress());
-		// nothing else, we do not expect requests on the web socket
+
+		// Text messages are subscriptions
+		try {
+			WebSocketHandler.subscribe( this.session, Subscription.parse( message ));
+			this.logger.fine( "A web socket client updated its subscription. Session origin: " + this.session.getRemoteAddress());
+
+		} catch( IOException e ) {
+			this.logger.warning( "An invalid subscription was received on the web socket. Session origin: " + this.session.getRemoteAddress());
+			Utils.logException( this.logger, e );
+		}
 	}
 
 	@Override
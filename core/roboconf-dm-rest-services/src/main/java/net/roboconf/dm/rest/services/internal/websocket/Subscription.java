@@ -0,0 +1,150 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.websocket;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.rest.commons.json.ObjectMapperProvider;
+
+/**
+ * The events a web socket client is interested in.
+ * <p>
+ * By default, clients receive all the events, as full JSon objects.
+ * They can restrict them by sending a subscription on the web socket.
+ * </p>
+ * <pre><code>{
+ *   "applications": [ "app1", "app2" ],
+ *   "kinds": [ "application", "instance" ],
+ *   "deltas": true
+ * }</code></pre>
+ * <p>
+ * All the fields are optional. A missing list means "everything".
+ * Events about templates and raw messages are not related to a given application,
+ * they are only filtered by kind. With "deltas", changes on instances are sent as compact deltas.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public final class Subscription {
+
+	public static final String KIND_APPLICATION = "application";
+	public static final String KIND_TEMPLATE = "applicationTemplate";
+	public static final String KIND_INSTANCE = "instance";
+	public static final String KIND_TEXT = "text";
+
+	/** A subscription to all the events (full JSon objects). */
+	public static final Subscription ALL = new Subscription( null, null, false );
+
+	private final Set<String> applications;
+	private final Set<String> kinds;
+	private final boolean deltas;
+
+
+	/**
+	 * Constructor.
+	 * @param applications the application names (null for all)
+	 * @param kinds the event kinds (null for all)
+	 * @param deltas true to receive deltas for instance changes
+	 */
+	public Subscription( Set<String> applications, Set<String> kinds, boolean deltas ) {
+		this.applications = applications == null ? null : Collections.unmodifiableSet( applications );
+		this.kinds = kinds == null ? null : Collections.unmodifiableSet( kinds );
+		this.deltas = deltas;
+	}
+
+
+	/**
+	 * Parses a subscription.
+	 * @param json a JSon string (can be empty)
+	 * @return a non-null subscription
+	 * @throws IOException if the JSon could not be parsed
+	 */
+	public static Subscription parse( String json ) throws IOException {
+
+		Subscription result = ALL;
+		if( ! Utils.isEmptyOrWhitespaces( json )) {
+			JsonNode root = ObjectMapperProvider.getSharedMapper().readTree( json );
+			if( root == null || ! root.isObject())
+				throw new IOException( "A JSon object was expected." );
+
+			JsonNode deltasNode = root.get( "deltas" );
+			result = new Subscription(
+					readSet( root.get( "applications" )),
+					readSet( root.get( "kinds" )),
+					deltasNode != null && deltasNode.asBoolean());
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Determines whether an event matches this subscription.
+	 * @param kind the event's kind
+	 * @param applicationName the application's name (null if the event is not related to an application)
+	 * @return true if the client should receive it
+	 */
+	public boolean accepts( String kind, String applicationName ) {
+
+		boolean result = this.kinds == null || this.kinds.contains( kind );
+		if( result && applicationName != null && this.applications != null )
+			result = this.applications.contains( applicationName );
+
+		return result;
+	}
+
+
+	/**
+	 * @return true if instance changes should be sent as deltas
+	 */
+	public boolean isDeltas() {
+		return this.deltas;
+	}
+
+
+	/**
+	 * @param node a node (can be null)
+	 * @return a set of strings, or null if the node is null
+	 */
+	private static Set<String> readSet( JsonNode node ) {
+
+		Set<String> result = null;
+		if( node != null && ! node.isNull()) {
+			result = new HashSet<> ();
+			for( JsonNode item : node )
+				result.add( item.asText());
+		}
+
+		return result;
+	}
+}
@@ -26,65 +26,135 @@
 package net.roboconf.dm.rest.services.internal.websocket;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 import org.eclipse.jetty.websocket.api.Session;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 
 import net.roboconf.core.model.beans.Application;
 import net.roboconf.core.model.beans.ApplicationTemplate;
 import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.model.runtime.EventType;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.management.events.IDmListener;
+import net.roboconf.dm.rest.commons.beans.InstanceDelta;
 import net.roboconf.dm.rest.commons.beans.WebSocketMessage;
-import net.roboconf.dm.rest.commons.json.JSonBindingUtils;
+import net.roboconf.dm.rest.commons.json.ObjectMapperProvider;
+import net.roboconf.dm.rest.services.internal.ServletRegistrationComponent;
 
 /**
+ * Propagates the DM's notifications to the web socket clients.
+ * <p>
+ * Every event is serialized once, whatever the number of clients.
+ * Messages are then sent asynchronously. Every session has its own bounded
+ * queue and at most one message being written at a time. This way, a slow client
+ * (e.g. a browser tab that does not read its socket) never delays the DM nor the other
+ * clients. When a session's queue is full, its oldest message is dropped.
+ * </p>
+ * <p>
+ * Clients can restrict the events they receive (see {@link Subscription}).
+ * When a coalescing delay is set, the changes of an instance that occur within
+ * this delay are merged and only its last state is sent. Clients that asked for deltas
+ * then receive the path, the status and the data that changed since the previous notification,
+ * instead of the whole instance.
+ * </p>
+ *
  * @author Vincent Zurczak - Linagora
  */
 public class WebSocketHandler implements IDmListener {
 
-	private final static Set<Session> SESSIONS = new HashSet<> ();
+	static final int QUEUE_CAPACITY = 256;
+
+	private static final Map<Session,SessionSender> SESSIONS = new ConcurrentHashMap<> ();
 
 	private final AtomicBoolean enabled = new AtomicBoolean( false );
 	private final Logger logger = Logger.getLogger( getClass().getName());
 
+	// Coalescing (all guarded by "lock")
+	private final Object lock = new Object();
+	final Map<String,InstanceChange> pendingChanges = new LinkedHashMap<> ();
+	final Map<String,Map<String,String>> lastNotifiedData = new HashMap<> ();
+	private ScheduledExecutorService flushExecutor;
+	private boolean flushScheduled = false;
+	private long coalescingDelay = 0;
+
 
 	// Sessions management
 
 	public static void addSession( Session session ) {
-		synchronized( SESSIONS ) {
-			SESSIONS.add( session );
-		}
+		SESSIONS.put( session, new SessionSender( session, QUEUE_CAPACITY ));
 	}
 
 
 	public static void removeSession( Session session ) {
-		synchronized( SESSIONS ) {
-			SESSIONS.remove( session );
-		}
+
+		SessionSender sender = SESSIONS.remove( session );
+		if( sender != null )
+			sender.clear();
 	}
 
-	static Set<Session> getSessions() {
+	public static void subscribe( Session session, Subscription subscription ) {
 
-		Set<Session> result;
-		synchronized( SESSIONS ) {
-			result = Collections.unmodifiableSet( SESSIONS );
-		}
+		SessionSender sender = SESSIONS.get( session );
+		if( sender != null )
+			sender.subscription = subscription;
+	}
 
-		return result;
+	static Set<Session> getSessions() {
+		return Collections.unmodifiableSet( SESSIONS.keySet());
+	}
+
+	static SessionSender getSessionSender( Session session ) {
+		return SESSIONS.get( session );
 	}
 
 	public static int getSessionsCount() {
-		synchronized( SESSIONS ) {
-			return SESSIONS.size();
+		return SESSIONS.size();
+	}
+
+
+	// Life cycle
+
+	/**
+	 * Sets the delay during which changes on a same instance are merged.
+	 * @param coalescingDelay a delay in milliseconds (0 or negative to send every change immediately)
+	 */
+	public void setCoalescingDelay( long coalescingDelay ) {
+		this.logger.fine( "The coalescing delay for web socket notifications is now " + coalescingDelay + " ms." );
+		this.coalescingDelay = coalescingDelay;
+	}
+
+
+	/**
+	 * Sends the pending changes and stops the coalescing thread.
+	 */
+	public void stop() {
+
+		flushPendingChanges();
+		synchronized( this.lock ) {
+			if( this.flushExecutor != null )
+				this.flushExecutor.shutdownNow();
+
+			this.flushExecutor = null;
+			this.flushScheduled = false;
 		}
 	}
 
@@ -111,25 +181,66 @@ public class WebSocketHandler implements IDmListener {
 
 	@Override
 	public void application( Application application, EventType eventType ) {
+
 		WebSocketMessage message = new WebSocketMessage( application, eventType );
-		String msg = asJson( message );
-		send( msg );
+		synchronized( this.lock ) {
+			flushPendingChanges();
+			if( eventType == EventType.DELETED )
+				forgetNotifiedData( application.getName());
+
+			send( Subscription.KIND_APPLICATION, application.getName(), asJson( message ), null );
+		}
 	}
 
 
 	@Override
 	public void applicationTemplate( ApplicationTemplate tpl, EventType eventType ) {
+
 		WebSocketMessage message = new WebSocketMessage( tpl, eventType );
-		String msg = asJson( message );
-		send( msg );
+		synchronized( this.lock ) {
+			flushPendingChanges();
+			send( Subscription.KIND_TEMPLATE, null, asJson( message ), null );
+		}
 	}
 
 
 	@Override
 	public void instance( Instance instance, Application application, EventType eventType ) {
+
+		// Nobody listens: do not even serialize the instance
+		if( SESSIONS.isEmpty())
+			return;
+
+		// The instance is captured now, it may be modified by the DM later
 		WebSocketMessage message = new WebSocketMessage( instance, application, eventType );
-		String msg = asJson( message );
-		send( msg );
+		InstanceChange change = new InstanceChange(
+				application.getName(),
+				InstanceHelpers.computeInstancePath( instance ),
+				String.valueOf( instance.getStatus()),
+				copyData( instance ),
+				asJson( message ));
+
+		synchronized( this.lock ) {
+			if( eventType == EventType.CHANGED && this.coalescingDelay > 0 ) {
+				this.pendingChanges.remove( change.key());
+				this.pendingChanges.put( change.key(), change );
+				scheduleFlush();
+
+			} else {
+				flushPendingChanges();
+				if( eventType == EventType.CHANGED ) {
+					sendChange( change );
+
+				} else {
+					if( eventType == EventType.DELETED )
+						forgetNotifiedData( change.key() );
+					else if( hasDeltaSubscribers())
+						this.lastNotifiedData.put( change.key(), change.data );
+
+					send( Subscription.KIND_INSTANCE, change.applicationName, change.json, null );
+				}
+			}
+		}
 	}
 
 
@@ -139,8 +250,25 @@ public class WebSocketHandler implements IDmListener {
 		// We do not use "data"
 		if( message != null ) {
 			WebSocketMessage wrappedMessage = new WebSocketMessage( message );
-			String msg = asJson( wrappedMessage );
-			send( msg );
+			synchronized( this.lock ) {
+				flushPendingChanges();
+				send( Subscription.KIND_TEXT, null, asJson( wrappedMessage ), null );
+			}
+		}
+	}
+
+
+	/**
+	 * Sends all the instance changes that are waiting.
+	 */
+	void flushPendingChanges() {
+
+		synchronized( this.lock ) {
+			this.flushScheduled = false;
+			List<InstanceChange> changes = new ArrayList<>( this.pendingChanges.values());
+			this.pendingChanges.clear();
+			for( InstanceChange change : changes )
+				sendChange( change );
 		}
 	}
 
@@ -154,10 +282,7 @@ public class WebSocketHandler implements IDmListener {
 
 		String result = null;
 		try {
-			ObjectMapper mapper = JSonBindingUtils.createObjectMapper();
-			StringWriter writer = new StringWriter();
-			mapper.writeValue( writer, message );
-			result = writer.toString();
+			result = ObjectMapperProvider.getWriter().writeValueAsString( message );
 
 		} catch( IOException e ) {
 			this.logger.severe( "A notification could not be prepare. It will not be sent. " + e.getMessage());
@@ -169,10 +294,119 @@ public class WebSocketHandler implements IDmListener {
 
 
 	/**
-	 * Sends a message to all the connected sessions.
+	 * Copies the data of an instance.
+	 * @param instance an instance
+	 * @return a non-null map
+	 */
+	private static Map<String,String> copyData( Instance instance ) {
+
+		// Iterating over a synchronized map requires to hold its lock
+		synchronized( instance.data ) {
+			return new LinkedHashMap<>( instance.data );
+		}
+	}
+
+
+	/**
+	 * Schedules the sending of the pending changes (must be invoked under the lock).
+	 */
+	private void scheduleFlush() {
+
+		if( ! this.flushScheduled ) {
+			if( this.flushExecutor == null ) {
+				this.flushExecutor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+					@Override
+					public Thread newThread( Runnable r ) {
+						Thread thread = new Thread( r, "Roboconf's Web Socket Notifications" );
+						thread.setDaemon( true );
+						return thread;
+					}
+				});
+			}
+
+			this.flushScheduled = true;
+			this.flushExecutor.schedule( new Runnable() {
+				@Override
+				public void run() {
+					flushPendingChanges();
+				}
+
+			}, this.coalescingDelay, TimeUnit.MILLISECONDS );
+		}
+	}
+
+
+	/**
+	 * Sends an instance change (must be invoked under the lock).
+	 * @param change a change
+	 */
+	private void sendChange( InstanceChange change ) {
+
+		// The notified data are only kept while some clients want deltas
+		String deltaJson = null;
+		if( ! hasDeltaSubscribers()) {
+			this.lastNotifiedData.clear();
+
+		} else {
+			// Compute the delta with respect to the last notification
+			Map<String,String> previousData = this.lastNotifiedData.put( change.key(), change.data );
+			if( previousData == null )
+				previousData = Collections.emptyMap();
+
+			InstanceDelta delta = new InstanceDelta( change.applicationName, change.path, change.status );
+			for( Map.Entry<String,String> entry : change.data.entrySet()) {
+				if( ! Objects.equals( entry.getValue(), previousData.get( entry.getKey())))
+					delta.getChangedData().put( entry.getKey(), entry.getValue());
+			}
+
+			for( String key : previousData.keySet()) {
+				if( ! change.data.containsKey( key ))
+					delta.getChangedData().put( key, null );
+			}
+
+			deltaJson = asJson( new WebSocketMessage( delta, EventType.CHANGED ));
+		}
+
+		send( Subscription.KIND_INSTANCE, change.applicationName, change.json, deltaJson );
+	}
+
+
+	/**
+	 * @return true if at least one session asked for deltas
+	 */
+	private static boolean hasDeltaSubscribers() {
+
+		boolean result = false;
+		for( Iterator<SessionSender> it = SESSIONS.values().iterator(); it.hasNext() && ! result; )
+			result = it.next().subscription.isDeltas();
+
+		return result;
+	}
+
+
+	/**
+	 * Forgets the notified data of instances (must be invoked under the lock).
+	 * @param key the key of an instance, or an application name
+	 */
+	private void forgetNotifiedData( String key ) {
+
+		String prefix = key + "/";
+		for( Iterator<String> it = this.lastNotifiedData.keySet().iterator(); it.hasNext(); ) {
+			String current = it.next();
+			if( current.equals( key ) || current.startsWith( prefix ))
+				it.remove();
+		}
+	}
+
+
+	/**
+	 * Sends a message to all the connected sessions that subscribed to it.
+	 * @param kind the event's kind
+	 * @param applicationName the application's name (null if the event is not related to an application)
 	 * @param message the message to send
+	 * @param deltaMessage the message to send to clients that want deltas (null to send "message")
 	 */
-	private void send( String message ) {
+	private void send( String kind, String applicationName, String message, String deltaMessage ) {
 
 		if( ! this.enabled.get()) {
 			this.logger.finest( "Notifications were disabled by the DM." );
@@ -180,21 +414,179 @@ public class WebSocketHandler implements IDmListener {
 		} else if( message == null ) {
 			this.logger.finest( "No message to send to web socket clients." );
 
-		} else synchronized( SESSIONS ) {
-			for( Session session : SESSIONS ) {
+		} else {
+			// This only queues the message, it does not block
+			for( SessionSender sender : SESSIONS.values()) {
+				Subscription subscription = sender.subscription;
+				if( subscription.accepts( kind, applicationName ))
+					sender.enqueue( deltaMessage != null && subscription.isDeltas() ? deltaMessage : message );
+			}
+		}
+	}
+
+
+	/**
+	 * The state of an instance when a change was notified.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class InstanceChange {
+
+		final String applicationName, path, status, json;
+		final Map<String,String> data;
+
+
+		/**
+		 * Constructor.
+		 * @param applicationName
+		 * @param path
+		 * @param status
+		 * @param data
+		 * @param json
+		 */
+		InstanceChange( String applicationName, String path, String status, Map<String,String> data, String json ) {
+			this.applicationName = applicationName;
+			this.path = path;
+			this.status = status;
+			this.data = data;
+			this.json = json;
+		}
+
+
+		/**
+		 * @return a key that identifies the instance among all the applications
+		 */
+		String key() {
+			return this.applicationName + this.path;
+		}
+	}
+
+
+	/**
+	 * Sends messages to a web socket session, asynchronously and in order.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class SessionSender implements WriteCallback {
+
+		private final Logger logger = Logger.getLogger( getClass().getName());
+		private final Session session;
+		private final int capacity;
+		volatile Subscription subscription = Subscription.ALL;
+
+		private final Deque<String> queue = new ArrayDeque<> ();
+		private boolean sending = false;
+		long droppedMessages = 0;
+
+
+		/**
+		 * Constructor.
+		 * @param session the session
+		 * @param capacity the maximum number of messages waiting to be sent
+		 */
+		SessionSender( Session session, int capacity ) {
+			this.session = session;
+			this.capacity = capacity;
+		}
+
+
+		/**
+		 * Queues a message and starts sending it if nothing is being sent.
+		 * @param message a non-null message
+		 */
+		void enqueue( String message ) {
+
+			boolean startSending = false;
+			synchronized( this ) {
+
+				// Drop the oldest message if the client does not follow
+				if( this.queue.size() >= this.capacity ) {
+					this.queue.poll();
+					this.droppedMessages ++;
+					ServletRegistrationComponent.WS_DROPPED_MESSAGES_COUNT.incrementAndGet();
+				}
+
+				this.queue.add( message );
+				if( ! this.sending ) {
+					this.sending = true;
+					startSending = true;
+				}
+			}
+
+			if( startSending )
+				sendNext();
+		}
+
+
+		/**
+		 * Removes all the messages waiting to be sent.
+		 */
+		synchronized void clear() {
+			this.queue.clear();
+		}
+
+
+		/**
+		 * @return the number of messages waiting to be sent
+		 */
+		synchronized int getPendingMessagesCount() {
+			return this.queue.size();
+		}
+
+
+		@Override
+		public void writeSuccess() {
+			sendNext();
+		}
+
+
+		@Override
+		public void writeFailed( Throwable cause ) {
+
+			// The session is most likely broken: sending the queued messages
+			// would only fail again (and log once per message). Drop them.
+			int dropped;
+			synchronized( this ) {
+				dropped = this.queue.size();
+				this.queue.clear();
+				this.droppedMessages += dropped;
+				this.sending = false;
+			}
+
+			if( dropped > 0 )
+				ServletRegistrationComponent.WS_DROPPED_MESSAGES_COUNT.addAndGet( dropped );
+
+			StringBuilder sb = new StringBuilder( "A notification could not be propagated for session " );
+			sb.append( this.session.getRemoteAddress());
+			sb.append( "." );
+			if( cause != null && ! Utils.isEmptyOrWhitespaces( cause.getMessage()))
+				sb.append( " " + cause.getMessage());
+
+			if( dropped > 0 )
+				sb.append( " " + dropped + " pending notification(s) were dropped." );
+
+			this.logger.severe( sb.toString());
+			Utils.logException( this.logger, new Exception( cause ));
+		}
+
+
+		/**
+		 * Sends the next message of the queue, if any.
+		 */
+		private void sendNext() {
+
+			String message;
+			synchronized( this ) {
+				message = this.queue.poll();
+				if( message == null )
+					this.sending = false;
+			}
+
+			if( message != null ) {
 				try {
 					this.logger.finest( "Sending a message to a web socket client..." );
-					session.getRemote().sendString( message );
-
-				} catch( IOException e ) {
-					StringBuilder sb = new StringBuilder( "A notification could not be propagated for session " );
-					sb.append( session.getRemoteAddress());
-					sb.append( "." );
-					if( ! Utils.isEmptyOrWhitespaces( e.getMessage()))
-						sb.append( " " + e.getMessage());
+					this.session.getRemote().sendString( message, this );
 
-					this.logger.severe( sb.toString());
-					Utils.logException( this.logger, e );
+				} catch( Exception e ) {
+					writeFailed( e );
 				}
 			}
 		}
@@ -63,6 +63,11 @@ public interface RestServicesMBean {
 	 */
 	long getWebSocketConnectionErrorsCount();
 
+	/**
+	 * @return the total number of web socket messages that were dropped because a client did not read them fast enough
+	 */
+	long getWebSocketDroppedMessagesCount();
+
 	/**
 	 * Resets the value of the counters.
 	 */
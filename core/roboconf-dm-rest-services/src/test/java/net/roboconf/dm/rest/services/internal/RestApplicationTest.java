@@ -25,11 +25,16 @@
 
 package net.roboconf.dm.rest.services.internal;
 
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import net.roboconf.dm.rest.services.cors.ResponseCorsFilter;
+import net.roboconf.dm.rest.services.internal.filters.EntityTagFilter;
+import net.roboconf.dm.rest.services.internal.filters.GzipEncodingFilter;
+
 /**
  * @author Vincent Zurczak - Linagora
  */
@@ -47,4 +52,29 @@ public class RestApplicationTest {
 			Assert.assertTrue( o.getClass().getSimpleName(), resourceClasses.contains( o.getClass()));
 		}
 	}
+
+
+	@Test
+	public void testFilters() {
+
+		RestApplication app = new RestApplication( null );
+		List<?> requestFilters = app.getContainerRequestFilters();
+		Assert.assertEquals( 1, requestFilters.size());
+		Assert.assertEquals( EntityTagFilter.class, requestFilters.get( 0 ).getClass());
+
+		List<?> responseFilters = app.getContainerResponseFilters();
+		Assert.assertEquals( 2, responseFilters.size());
+		Assert.assertEquals( EntityTagFilter.class, responseFilters.get( 0 ).getClass());
+		Assert.assertEquals( GzipEncodingFilter.class, responseFilters.get( 1 ).getClass());
+
+		// Enabling CORS does not remove the other filters
+		app.enableCors( true );
+		app.enableCors( true );
+		Assert.assertEquals( 3, app.getContainerResponseFilters().size());
+		Assert.assertTrue( app.getContainerResponseFilters().contains( ResponseCorsFilter.class.getName()));
+
+		app.enableCors( false );
+		Assert.assertEquals( 2, app.getContainerResponseFilters().size());
+		Assert.assertFalse( app.getContainerResponseFilters().contains( ResponseCorsFilter.class.getName()));
+	}
 }
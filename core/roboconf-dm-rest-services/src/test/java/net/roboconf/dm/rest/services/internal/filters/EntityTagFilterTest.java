@@ -0,0 +1,283 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.filters;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IApplicationMngr;
+import net.roboconf.dm.management.api.IApplicationTemplateMngr;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.dm.management.api.ITargetsMngr;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class EntityTagFilterTest {
+
+	private EntityTagFilter filter;
+	private TestApplication app;
+	private ManagedApplication ma;
+	private IMetricsMngr metricsMngr;
+	private IApplicationMngr applicationMngr;
+	private IApplicationTemplateMngr applicationTemplateMngr;
+	private ITargetsMngr targetsMngr;
+	private Map<String,Object> properties;
+	private ContainerRequest request;
+
+
+	@Before
+	public void setup() {
+
+		TestApplication app = new TestApplication();
+		this.app = app;
+		this.ma = new ManagedApplication( app );
+
+		this.applicationMngr = Mockito.mock( IApplicationMngr.class );
+		Mockito.when( this.applicationMngr.findManagedApplicationByName( app.getName())).thenReturn( this.ma );
+
+		this.applicationTemplateMngr = Mockito.mock( IApplicationTemplateMngr.class );
+		this.targetsMngr = Mockito.mock( ITargetsMngr.class );
+
+		this.metricsMngr = Mockito.mock( IMetricsMngr.class );
+		Manager manager = Mockito.mock( Manager.class );
+		Mockito.when( manager.applicationMngr()).thenReturn( this.applicationMngr );
+		Mockito.when( manager.applicationTemplateMngr()).thenReturn( this.applicationTemplateMngr );
+		Mockito.when( manager.targetsMngr()).thenReturn( this.targetsMngr );
+		Mockito.when( manager.metricsMngr()).thenReturn( this.metricsMngr );
+
+		this.filter = new EntityTagFilter( manager );
+		this.properties = new HashMap<> ();
+
+		this.request = Mockito.mock( ContainerRequest.class );
+		Mockito.when( this.request.getMethod()).thenReturn( "GET" );
+		Mockito.when( this.request.getPath()).thenReturn( "app/" + app.getName() + "/instances" );
+		Mockito.when( this.request.getProperties()).thenReturn( this.properties );
+		Mockito.when( this.request.getRequestUri()).thenReturn( URI.create( "http://localhost/app/" + app.getName() + "/instances" ));
+	}
+
+
+	@Test
+	public void testFindEntityTag() {
+
+		EntityTag tag1 = this.filter.findEntityTag( this.request );
+		Assert.assertNotNull( tag1 );
+		Assert.assertEquals( tag1, this.filter.findEntityTag( this.request ));
+
+		// Changing an instance changes the tag
+		this.ma.instanceChanged( this.app.getMySqlVm());
+		EntityTag tag2 = this.filter.findEntityTag( this.request );
+		Assert.assertNotNull( tag2 );
+		Assert.assertFalse( tag1.equals( tag2 ));
+
+		// Pages of instances are tagged too
+		Mockito.when( this.request.getPath()).thenReturn( "app/" + this.ma.getName() + "/instances/page" );
+		Assert.assertEquals( tag2, this.filter.findEntityTag( this.request ));
+
+		// The query string is part of the tag
+		String pageUri = "http://localhost/app/" + this.ma.getName() + "/instances/page";
+		Mockito.when( this.request.getRequestUri()).thenReturn( URI.create( pageUri + "?cursor=%2Fvm-1" ));
+		EntityTag tag3 = this.filter.findEntityTag( this.request );
+		Assert.assertFalse( tag2.equals( tag3 ));
+
+		Mockito.when( this.request.getRequestUri()).thenReturn( URI.create( pageUri + "?cursor=%2Fvm-2" ));
+		EntityTag tag4 = this.filter.findEntityTag( this.request );
+		Assert.assertFalse( tag2.equals( tag4 ));
+		Assert.assertFalse( tag3.equals( tag4 ));
+
+		Mockito.when( this.request.getRequestUri()).thenReturn( URI.create( pageUri + "?cursor=%2Fvm-1" ));
+		Assert.assertEquals( tag3, this.filter.findEntityTag( this.request ));
+
+		// Other resources are not tagged
+		Mockito.when( this.request.getPath()).thenReturn( "app/" + this.ma.getName() + "/components" );
+		Assert.assertNull( this.filter.findEntityTag( this.request ));
+
+		Mockito.when( this.request.getPath()).thenReturn( "app/inexisting/instances" );
+		Assert.assertNull( this.filter.findEntityTag( this.request ));
+
+		Mockito.when( this.request.getPath()).thenReturn( "app/" + this.ma.getName() + "/instances" );
+		Mockito.when( this.request.getMethod()).thenReturn( "POST" );
+		Assert.assertNull( this.filter.findEntityTag( this.request ));
+	}
+
+
+	@Test
+	public void testFindEntityTag_templates() {
+
+		Mockito.when( this.request.getPath()).thenReturn( "applications/templates" );
+		Mockito.when( this.request.getRequestUri()).thenReturn( URI.create( "http://localhost/applications/templates" ));
+
+		EntityTag tag1 = this.filter.findEntityTag( this.request );
+		Assert.assertNotNull( tag1 );
+		Assert.assertEquals( tag1, this.filter.findEntityTag( this.request ));
+
+		// Loading or deleting a template changes the tag
+		Mockito.when( this.applicationTemplateMngr.getTemplatesVersion()).thenReturn( 1L );
+		EntityTag tag2 = this.filter.findEntityTag( this.request );
+		Assert.assertFalse( tag1.equals( tag2 ));
+
+		// So does creating or deleting an application (templates list their applications)
+		Mockito.when( this.applicationMngr.getApplicationsVersion()).thenReturn( 1L );
+		EntityTag tag3 = this.filter.findEntityTag( this.request );
+		Assert.assertFalse( tag2.equals( tag3 ));
+
+		// Other methods are not tagged
+		Mockito.when( this.request.getMethod()).thenReturn( "POST" );
+		Assert.assertNull( this.filter.findEntityTag( this.request ));
+	}
+
+
+	@Test
+	public void testFindEntityTag_targets() {
+
+		Mockito.when( this.request.getPath()).thenReturn( "targets" );
+		Mockito.when( this.request.getRequestUri()).thenReturn( URI.create( "http://localhost/targets" ));
+
+		EntityTag tag1 = this.filter.findEntityTag( this.request );
+		Assert.assertNotNull( tag1 );
+
+		// Pages of targets are tagged too
+		Mockito.when( this.request.getPath()).thenReturn( "targets/page" );
+		Assert.assertEquals( tag1, this.filter.findEntityTag( this.request ));
+
+		// Changing a target changes the tag
+		Mockito.when( this.targetsMngr.getTargetsVersion()).thenReturn( 1L );
+		EntityTag tag2 = this.filter.findEntityTag( this.request );
+		Assert.assertFalse( tag1.equals( tag2 ));
+
+		// Targets can be filtered by application or template
+		Mockito.when( this.applicationMngr.getApplicationsVersion()).thenReturn( 1L );
+		EntityTag tag3 = this.filter.findEntityTag( this.request );
+		Assert.assertFalse( tag2.equals( tag3 ));
+
+		Mockito.when( this.applicationTemplateMngr.getTemplatesVersion()).thenReturn( 1L );
+		EntityTag tag4 = this.filter.findEntityTag( this.request );
+		Assert.assertFalse( tag3.equals( tag4 ));
+
+		// The properties of a single target are not tagged
+		Mockito.when( this.request.getPath()).thenReturn( "targets/some-id" );
+		Assert.assertNull( this.filter.findEntityTag( this.request ));
+	}
+
+
+	@Test
+	public void testRequest_notModified_gzipVariant() {
+
+		EntityTag tag = this.filter.findEntityTag( this.request );
+		EntityTag gzipTag = GzipEncodingFilter.gzipVariant( tag );
+		Mockito.when( this.request.getHeaderValue( HttpHeaders.IF_NONE_MATCH )).thenReturn( "\"" + gzipTag.getValue() + "\"" );
+
+		try {
+			this.filter.filter( this.request );
+			Assert.fail( "A 304 response was expected." );
+
+		} catch( WebApplicationException e ) {
+			Assert.assertEquals( Status.NOT_MODIFIED.getStatusCode(), e.getResponse().getStatus());
+			Assert.assertEquals( gzipTag, e.getResponse().getMetadata().getFirst( HttpHeaders.ETAG ));
+		}
+	}
+
+
+	@Test
+	public void testRequestAndResponse_noIfNoneMatch() {
+
+		ContainerRequest result = this.filter.filter( this.request );
+		Assert.assertSame( this.request, result );
+
+		EntityTag tag = (EntityTag) this.properties.get( EntityTagFilter.ETAG_PROPERTY );
+		Assert.assertNotNull( tag );
+
+		ContainerResponse resp = new ContainerResponse( null, null, null );
+		resp.setStatus( Status.OK.getStatusCode());
+		this.filter.filter( this.request, resp );
+		Assert.assertEquals( tag, resp.getHttpHeaders().getFirst( HttpHeaders.ETAG ));
+
+		// Errors are not tagged
+		resp = new ContainerResponse( null, null, null );
+		resp.setStatus( Status.NOT_FOUND.getStatusCode());
+		this.filter.filter( this.request, resp );
+		Assert.assertNull( resp.getHttpHeaders().getFirst( HttpHeaders.ETAG ));
+		Mockito.verifyZeroInteractions( this.metricsMngr );
+	}
+
+
+	@Test
+	public void testRequest_notModified() {
+
+		EntityTag tag = this.filter.findEntityTag( this.request );
+		Mockito.when( this.request.getHeaderValue( HttpHeaders.IF_NONE_MATCH )).thenReturn( "\"" + tag.getValue() + "\"" );
+
+		try {
+			this.filter.filter( this.request );
+			Assert.fail( "A 304 response was expected." );
+
+		} catch( WebApplicationException e ) {
+			Assert.assertEquals( Status.NOT_MODIFIED.getStatusCode(), e.getResponse().getStatus());
+		}
+
+		Mockito.verify( this.metricsMngr ).incrementCounter( IMetricsMngr.REST_NOT_MODIFIED );
+		Assert.assertEquals( 0, this.properties.size());
+
+		// Once the model has changed, the request goes through
+		this.ma.instancesStructureChanged();
+		Assert.assertSame( this.request, this.filter.filter( this.request ));
+		Assert.assertEquals( 1, this.properties.size());
+	}
+
+
+	@Test
+	public void testMatches() {
+
+		EntityTag tag = new EntityTag( "v1" );
+		Assert.assertFalse( EntityTagFilter.matches( null, tag ));
+		Assert.assertFalse( EntityTagFilter.matches( "", tag ));
+		Assert.assertFalse( EntityTagFilter.matches( "\"v2\"", tag ));
+		Assert.assertFalse( EntityTagFilter.matches( "v1", tag ));
+
+		Assert.assertTrue( EntityTagFilter.matches( "\"v1\"", tag ));
+		Assert.assertTrue( EntityTagFilter.matches( "W/\"v1\"", tag ));
+		Assert.assertTrue( EntityTagFilter.matches( "\"v0\", \"v1\"", tag ));
+		Assert.assertTrue( EntityTagFilter.matches( "*", tag ));
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.dm.rest.services.internal.filters.GzipEncodingFilter.ThresholdGzipWriter;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class GzipEncodingFilterTest {
+
+	private ByteArrayOutputStream sent;
+	private ContainerResponseWriter delegate;
+	private IMetricsMngr metricsMngr;
+
+
+	@Before
+	public void setup() throws Exception {
+
+		this.sent = new ByteArrayOutputStream();
+		this.delegate = Mockito.mock( ContainerResponseWriter.class );
+		Mockito.when( this.delegate.writeStatusAndHeaders(
+				Mockito.anyLong(),
+				Mockito.any( ContainerResponse.class ))).thenReturn( this.sent );
+
+		this.metricsMngr = Mockito.mock( IMetricsMngr.class );
+	}
+
+
+	@Test
+	public void testAcceptsGzip() {
+
+		Assert.assertFalse( GzipEncodingFilter.acceptsGzip( null ));
+		Assert.assertFalse( GzipEncodingFilter.acceptsGzip( "" ));
+		Assert.assertFalse( GzipEncodingFilter.acceptsGzip( "deflate" ));
+		Assert.assertFalse( GzipEncodingFilter.acceptsGzip( "gzip;q=0" ));
+		Assert.assertFalse( GzipEncodingFilter.acceptsGzip( "deflate, gzip; q=0.0" ));
+
+		Assert.assertTrue( GzipEncodingFilter.acceptsGzip( "gzip" ));
+		Assert.assertTrue( GzipEncodingFilter.acceptsGzip( "GZIP" ));
+		Assert.assertTrue( GzipEncodingFilter.acceptsGzip( "gzip, deflate" ));
+		Assert.assertTrue( GzipEncodingFilter.acceptsGzip( "deflate, gzip;q=0.5" ));
+	}
+
+
+	@Test
+	public void testFilter() {
+
+		Manager manager = Mockito.mock( Manager.class );
+		GzipEncodingFilter filter = new GzipEncodingFilter( manager );
+		ContainerRequest req = Mockito.mock( ContainerRequest.class );
+
+		// No entity
+		ContainerResponse resp = new ContainerResponse( null, null, this.delegate );
+		Mockito.when( req.getHeaderValue( HttpHeaders.ACCEPT_ENCODING )).thenReturn( "gzip" );
+		filter.filter( req, resp );
+		Assert.assertSame( this.delegate, resp.getContainerResponseWriter());
+		Assert.assertNull( resp.getHttpHeaders().getFirst( HttpHeaders.VARY ));
+
+		// Entity but the client does not support GZip: the response still varies with the encoding
+		resp.setEntity( "some content" );
+		Mockito.when( req.getHeaderValue( HttpHeaders.ACCEPT_ENCODING )).thenReturn( "deflate" );
+		filter.filter( req, resp );
+		Assert.assertSame( this.delegate, resp.getContainerResponseWriter());
+		Assert.assertEquals( HttpHeaders.ACCEPT_ENCODING, resp.getHttpHeaders().getFirst( HttpHeaders.VARY ));
+
+		// Entity and GZip support
+		resp = new ContainerResponse( null, null, this.delegate );
+		resp.setEntity( "some content" );
+		Mockito.when( req.getHeaderValue( HttpHeaders.ACCEPT_ENCODING )).thenReturn( "gzip, deflate" );
+		filter.filter( req, resp );
+		Assert.assertTrue( resp.getContainerResponseWriter() instanceof ThresholdGzipWriter );
+		Assert.assertEquals( HttpHeaders.ACCEPT_ENCODING, resp.getHttpHeaders().getFirst( HttpHeaders.VARY ));
+
+		// Not modified
+		resp = new ContainerResponse( null, null, this.delegate );
+		resp.setStatus( Status.NOT_MODIFIED.getStatusCode());
+		filter.filter( req, resp );
+		Assert.assertSame( this.delegate, resp.getContainerResponseWriter());
+		Assert.assertEquals( HttpHeaders.ACCEPT_ENCODING, resp.getHttpHeaders().getFirst( HttpHeaders.VARY ));
+	}
+
+
+	@Test
+	public void testWriter_smallResponse() throws Exception {
+
+		ContainerResponse resp = new ContainerResponse( null, null, this.delegate );
+		resp.getHttpHeaders().putSingle( HttpHeaders.ETAG, new EntityTag( "v1" ));
+		ThresholdGzipWriter writer = new ThresholdGzipWriter( this.delegate, 100, this.metricsMngr );
+
+		byte[] content = "small content".getBytes( StandardCharsets.UTF_8 );
+		OutputStream os = writer.writeStatusAndHeaders( -1, resp );
+		os.write( content );
+		writer.finish();
+
+		Assert.assertArrayEquals( content, this.sent.toByteArray());
+		Assert.assertNull( resp.getHttpHeaders().getFirst( HttpHeaders.CONTENT_ENCODING ));
+		Assert.assertEquals( new EntityTag( "v1" ), resp.getHttpHeaders().getFirst( HttpHeaders.ETAG ));
+		Mockito.verify( this.delegate ).writeStatusAndHeaders( content.length, resp );
+		Mockito.verify( this.delegate ).finish();
+
+		Mockito.verify( this.metricsMngr ).addToCounter( IMetricsMngr.REST_BYTES_RAW, content.length );
+		Mockito.verify( this.metricsMngr ).addToCounter( IMetricsMngr.REST_BYTES_SENT, content.length );
+	}
+
+
+	@Test
+	public void testWriter_knownSmallSize() throws Exception {
+
+		ContainerResponse resp = new ContainerResponse( null, null, this.delegate );
+		ThresholdGzipWriter writer = new ThresholdGzipWriter( this.delegate, 100, null );
+
+		OutputStream os = writer.writeStatusAndHeaders( 10, resp );
+		Assert.assertSame( this.sent, os );
+	}
+
+
+	@Test
+	public void testWriter_largeResponse() throws Exception {
+
+		// Something that looks like the instances of a large application
+		StringBuilder sb = new StringBuilder( "[" );
+		for( int i=0; i<5000; i++ ) {
+			if( i > 0 )
+				sb.append( "," );
+
+			sb.append( "{\"name\":\"vm-" + i + "\",\"path\":\"/vm-" + i + "\",\"status\":\"DEPLOYED_STARTED\"," );
+			sb.append( "\"component\":{\"name\":\"VM\",\"installer\":\"target\"},\"data\":{\"ip.address\":\"192.168.1." + (i % 256) + "\"}}" );
+		}
+
+		sb.append( "]" );
+		byte[] content = sb.toString().getBytes( StandardCharsets.UTF_8 );
+
+		ContainerResponse resp = new ContainerResponse( null, null, this.delegate );
+		resp.getHttpHeaders().putSingle( HttpHeaders.ETAG, new EntityTag( "v1" ));
+		ThresholdGzipWriter writer = new ThresholdGzipWriter( this.delegate, GzipEncodingFilter.DEFAULT_THRESHOLD, this.metricsMngr );
+
+		// Write it in several chunks
+		OutputStream os = writer.writeStatusAndHeaders( -1, resp );
+		for( int i=0; i<content.length; i += 512 )
+			os.write( content, i, Math.min( 512, content.length - i ));
+
+		writer.finish();
+
+		Assert.assertEquals( GzipEncodingFilter.GZIP, resp.getHttpHeaders().getFirst( HttpHeaders.CONTENT_ENCODING ));
+
+		// The compressed representation has its own entity tag
+		Assert.assertEquals( new EntityTag( "v1" + GzipEncodingFilter.GZIP_TAG_SUFFIX ), resp.getHttpHeaders().getFirst( HttpHeaders.ETAG ));
+		Mockito.verify( this.delegate ).writeStatusAndHeaders( -1, resp );
+		Mockito.verify( this.delegate ).finish();
+
+		// Far less bytes were sent
+		byte[] compressed = this.sent.toByteArray();
+		Assert.assertTrue( compressed.length * 10 < content.length );
+
+		Mockito.verify( this.metricsMngr ).addToCounter( IMetricsMngr.REST_BYTES_RAW, content.length );
+		Mockito.verify( this.metricsMngr ).addToCounter( IMetricsMngr.REST_BYTES_SENT, compressed.length );
+		Mockito.verify( this.metricsMngr ).recordDuration( Mockito.eq( IMetricsMngr.REST_WRITING ), Mockito.anyLong());
+
+		// And they can be decompressed
+		ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+		Utils.copyStreamSafely( new GZIPInputStream( new ByteArrayInputStream( compressed )), decompressed );
+		Assert.assertArrayEquals( content, decompressed.toByteArray());
+	}
+}
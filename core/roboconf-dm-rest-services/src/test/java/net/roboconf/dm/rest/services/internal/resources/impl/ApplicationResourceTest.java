@@ -25,8 +25,10 @@
 
 package net.roboconf.dm.rest.services.internal.resources.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -36,10 +38,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -48,6 +51,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import net.roboconf.core.Constants;
 import net.roboconf.core.internal.tests.TestApplication;
 import net.roboconf.core.internal.tests.TestUtils;
@@ -58,14 +64,19 @@ import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.helpers.ComponentHelpers;
 import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.rest.commons.UrlConstants;
 import net.roboconf.dm.rest.commons.beans.ApplicationBindings;
 import net.roboconf.dm.rest.commons.beans.ApplicationBindings.ApplicationBindingItem;
 import net.roboconf.dm.rest.commons.beans.TargetAssociation;
+import net.roboconf.dm.rest.commons.json.JSonBindingUtils;
 import net.roboconf.dm.rest.services.internal.resources.IApplicationResource;
+import net.roboconf.dm.rest.services.internal.utils.JSonArrayOutput;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils;
 import net.roboconf.messaging.api.MessagingConstants;
 import net.roboconf.messaging.api.internal.client.test.TestClient;
 import net.roboconf.messaging.api.messages.Message;
@@ -117,7 +128,7 @@ public class ApplicationResourceTest {
 		this.msgClient.clearMessages();
 
 		// Disable the messages timer for predictability
-		TestUtils.getInternalField( this.manager, "timer", Timer.class).cancel();
+		TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class).cancel();
 
 		// Create our resource
 		this.resource = new ApplicationResource( this.manager );
@@ -447,6 +458,137 @@ public class ApplicationResourceTest {
 	}
 
 
+
+	@Test
+	public void testListChildrenInstancesPage() throws Exception {
+
+		// Inexisting application
+		Response resp = this.resource.listChildrenInstancesPage( "inexisting", null, true, null, null, null, null, 0 );
+		Assert.assertEquals( Status.NOT_FOUND.getStatusCode(), resp.getStatus());
+
+		// All the instances, two by two
+		List<String> paths = new ArrayList<> ();
+		String cursor = null;
+		int pages = 0;
+		do {
+			resp = this.resource.listChildrenInstancesPage( this.app.getName(), null, true, null, null, null, cursor, 2 );
+			Assert.assertEquals( Status.OK.getStatusCode(), resp.getStatus());
+
+			List<Instance> page = pageItems( resp );
+			Assert.assertTrue( page.size() <= 2 );
+			paths.addAll( paths( page ));
+
+			cursor = (String) resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR );
+			pages ++;
+
+		} while( cursor != null );
+
+		Assert.assertEquals( 3, pages );
+		Assert.assertEquals( Arrays.asList(
+				"/mysql-vm",
+				"/mysql-vm/mysql-server",
+				"/tomcat-vm",
+				"/tomcat-vm/tomcat-server",
+				"/tomcat-vm/tomcat-server/hello-world" ), paths );
+
+		// Root instances
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), null, false, null, null, null, null, 0 );
+		Assert.assertEquals( Arrays.asList( "/mysql-vm", "/tomcat-vm" ), paths( pageItems( resp )));
+		Assert.assertNull( resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR ));
+
+		// Children
+		String tomcatVmPath = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), tomcatVmPath, false, null, null, null, null, 0 );
+		Assert.assertEquals( Arrays.asList( "/tomcat-vm/tomcat-server" ), paths( pageItems( resp )));
+
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), tomcatVmPath, true, null, null, null, null, 0 );
+		Assert.assertEquals( Arrays.asList( "/tomcat-vm/tomcat-server", "/tomcat-vm/tomcat-server/hello-world" ), paths( pageItems( resp )));
+
+		// Filters
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), null, true, "vm", null, null, null, 0 );
+		Assert.assertEquals( Arrays.asList( "/mysql-vm", "/tomcat-vm" ), paths( pageItems( resp )));
+
+		this.app.getTomcat().setStatus( InstanceStatus.DEPLOYED_STARTED );
+		this.ma.instanceChanged( this.app.getTomcat());
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), null, true, null, "deployed_started", null, null, 0 );
+		Assert.assertEquals( Arrays.asList( "/tomcat-vm/tomcat-server" ), paths( pageItems( resp )));
+
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), null, true, null, null, "/mysql", null, 0 );
+		Assert.assertEquals( Arrays.asList( "/mysql-vm", "/mysql-vm/mysql-server" ), paths( pageItems( resp )));
+
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), tomcatVmPath, true, null, null, "/mysql", null, 0 );
+		Assert.assertEquals( 0, pageItems( resp ).size());
+
+		// The output is valid JSon
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), null, true, null, null, null, null, 0 );
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		((StreamingOutput) resp.getEntity()).write( os );
+
+		ObjectMapper mapper = JSonBindingUtils.createObjectMapper();
+		List<Instance> readInstances = mapper.readValue( os.toString( "UTF-8" ), new TypeReference<List<Instance>>(){});
+		Assert.assertEquals( 5, readInstances.size());
+		Assert.assertEquals( "/mysql-vm", readInstances.get( 0 ).data.get( JSonBindingUtils.AT_INSTANCE_PATH ));
+	}
+
+
+	@Test
+	public void testListChildrenInstancesPage_largeApplication() throws Exception {
+
+		// 50,000 instances: 10,000 VMs with 4 children each
+		Component vmComponent = this.app.getMySqlVm().getComponent();
+		Component childComponent = this.app.getMySql().getComponent();
+		for( int i=0; i<10000; i++ ) {
+			Instance vm = new Instance( "vm-" + i ).component( vmComponent );
+			for( int j=0; j<4; j++ )
+				InstanceHelpers.insertChild( vm, new Instance( "child-" + j ).component( childComponent ));
+
+			this.app.getRootInstances().add( vm );
+		}
+
+		this.ma.instancesStructureChanged();
+		int total = InstanceHelpers.getAllInstances( this.app ).size();
+
+		// Only one page is ever held in memory, and it is streamed.
+		// We count the bytes instead of storing them.
+		final AtomicLong bytes = new AtomicLong();
+		OutputStream countingStream = new OutputStream() {
+			@Override
+			public void write( int b ) throws IOException {
+				bytes.incrementAndGet();
+			}
+
+			@Override
+			public void write( byte[] b, int off, int len ) throws IOException {
+				bytes.addAndGet( len );
+			}
+		};
+
+		int count = 0, pages = 0;
+		String cursor = null;
+		do {
+			Response resp = this.resource.listChildrenInstancesPage( this.app.getName(), null, true, null, null, null, cursor, 0 );
+			List<Instance> page = pageItems( resp );
+			Assert.assertTrue( page.size() <= PaginationUtils.DEFAULT_LIMIT );
+
+			((StreamingOutput) resp.getEntity()).write( countingStream );
+			count += page.size();
+			pages ++;
+			cursor = (String) resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR );
+
+		} while( cursor != null );
+
+		Assert.assertEquals( total, count );
+		Assert.assertEquals((int) Math.ceil((double) total / PaginationUtils.DEFAULT_LIMIT ), pages );
+		Assert.assertTrue( bytes.get() > 0 );
+
+		// Filtered listings only scan the relevant range
+		Response resp = this.resource.listChildrenInstancesPage( this.app.getName(), "/vm-42", true, null, null, null, null, 0 );
+		Assert.assertEquals( 4, pageItems( resp ).size());
+
+		resp = this.resource.listChildrenInstancesPage( this.app.getName(), null, false, "vm", null, "/vm-99", null, 0 );
+		Assert.assertEquals( 11, pageItems( resp ).size());
+	}
+
 	@Test
 	public void testListComponents() throws Exception {
 
@@ -1421,4 +1563,28 @@ public class ApplicationResourceTest {
 		Assert.assertEquals( 0, this.app.getTemplate().getTags().size());
 		Assert.assertEquals( Status.NOT_FOUND.getStatusCode(), resp.getStatus());
 	}
+
+
+	/**
+	 * @param resp a response built for a page
+	 * @return the items of the page
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static List<Instance> pageItems( Response resp ) {
+		return (List<Instance>) ((JSonArrayOutput) resp.getEntity()).getItems();
+	}
+
+
+	/**
+	 * @param instances a list of instances
+	 * @return the list of their paths
+	 */
+	private static List<String> paths( List<Instance> instances ) {
+
+		List<String> result = new ArrayList<> ();
+		for( Instance inst : instances )
+			result.add( InstanceHelpers.computeInstancePath( inst ));
+
+		return result;
+	}
 }
@@ -26,6 +26,7 @@
 package net.roboconf.dm.rest.services.internal.resources.impl;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.ws.rs.core.Response;
@@ -46,6 +47,8 @@ import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.dm.management.api.IMetricsMngr.HistogramSnapshot;
 import net.roboconf.dm.rest.commons.Diagnostic;
 import net.roboconf.dm.rest.commons.Diagnostic.DependencyInformation;
 import net.roboconf.messaging.api.MessagingConstants;
@@ -104,6 +107,28 @@ public class DebugResourceTest {
 	}
 
 
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void testGetMetrics() throws Exception {
+
+		this.manager.metricsMngr().incrementCounter( "test.counter" );
+		this.manager.metricsMngr().recordDuration( "test.histogram", 3000000 );
+
+		Map<String,Object> metrics = this.resource.getMetrics();
+		Assert.assertEquals( 3, metrics.size());
+
+		Map<String,Long> counters = (Map<String,Long>) metrics.get( "counters" );
+		Assert.assertEquals( Long.valueOf( 1 ), counters.get( "test.counter" ));
+
+		Map<String,Long> gauges = (Map<String,Long>) metrics.get( "gauges" );
+		Assert.assertTrue( gauges.containsKey( IMetricsMngr.PENDING_TIMINGS ));
+
+		Map<String,HistogramSnapshot> histograms = (Map<String,HistogramSnapshot>) metrics.get( "histograms" );
+		Assert.assertEquals( 1, histograms.get( "test.histogram" ).getCount());
+		Assert.assertEquals( 3, histograms.get( "test.histogram" ).getMax());
+	}
+
+
 	@Test
 	public void testDiagnoseApplication() throws Exception {
 
@@ -57,8 +57,10 @@ import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.rest.commons.UrlConstants;
 import net.roboconf.dm.rest.commons.json.StringWrapper;
 import net.roboconf.dm.rest.services.internal.resources.ITargetResource;
+import net.roboconf.dm.rest.services.internal.utils.JSonArrayOutput;
 import net.roboconf.messaging.api.MessagingConstants;
 
 
@@ -192,6 +194,26 @@ public class TargetResourceTest {
 	}
 
 
+	@Test
+	public void testListTargetsPage() throws Exception {
+
+		this.resource.createOrUpdateTarget( "id: t1\nhandler: h", null ).getEntity();
+		this.resource.createOrUpdateTarget( "id: t2\nhandler: h", null ).getEntity();
+		this.resource.createOrUpdateTarget( "id: t3\nhandler: h", null ).getEntity();
+
+		Response resp = this.resource.listTargetsPage( null, null, null, 2 );
+		Assert.assertEquals( Status.OK.getStatusCode(), resp.getStatus());
+		Assert.assertEquals( 2, ((JSonArrayOutput) resp.getEntity()).getItems().size());
+
+		String cursor = (String) resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR );
+		Assert.assertNotNull( cursor );
+
+		resp = this.resource.listTargetsPage( null, null, cursor, 2 );
+		Assert.assertEquals( 1, ((JSonArrayOutput) resp.getEntity()).getItems().size());
+		Assert.assertNull( resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR ));
+	}
+
+
 	@Test
 	public void testHints_onTemplate() throws Exception {
 
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.roboconf.dm.rest.commons.UrlConstants;
+import net.roboconf.dm.rest.commons.json.StringWrapper;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils.KeyResolver;
+import net.roboconf.dm.rest.services.internal.utils.PaginationUtils.Page;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class PaginationUtilsTest {
+
+	private static final KeyResolver<StringWrapper> RESOLVER = new KeyResolver<StringWrapper>() {
+		@Override
+		public String key( StringWrapper item ) {
+			return item.toString();
+		}
+	};
+
+
+	@Test
+	public void testLimit() {
+
+		Assert.assertEquals( PaginationUtils.DEFAULT_LIMIT, PaginationUtils.limit( 0 ));
+		Assert.assertEquals( PaginationUtils.DEFAULT_LIMIT, PaginationUtils.limit( -5 ));
+		Assert.assertEquals( 10, PaginationUtils.limit( 10 ));
+		Assert.assertEquals( PaginationUtils.MAX_LIMIT, PaginationUtils.limit( PaginationUtils.MAX_LIMIT + 1 ));
+	}
+
+
+	@Test
+	public void testPage() throws Exception {
+
+		List<StringWrapper> items = Arrays.asList(
+				new StringWrapper( "d" ), new StringWrapper( "b" ),
+				new StringWrapper( "a" ), new StringWrapper( "c" ),
+				new StringWrapper( "e" ));
+
+		// First page
+		Response resp = PaginationUtils.page( items, RESOLVER, null, 2 );
+		Assert.assertEquals( Status.OK.getStatusCode(), resp.getStatus());
+		Assert.assertEquals( "[a, b]", String.valueOf( ((JSonArrayOutput) resp.getEntity()).getItems()));
+		Assert.assertEquals( "b", resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR ));
+
+		// Second page
+		resp = PaginationUtils.page( items, RESOLVER, "b", 2 );
+		Assert.assertEquals( "[c, d]", String.valueOf( ((JSonArrayOutput) resp.getEntity()).getItems()));
+		Assert.assertEquals( "d", resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR ));
+
+		// Last page
+		resp = PaginationUtils.page( items, RESOLVER, "d", 2 );
+		Assert.assertEquals( "[e]", String.valueOf( ((JSonArrayOutput) resp.getEntity()).getItems()));
+		Assert.assertNull( resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR ));
+
+		// A cursor that is not a key
+		resp = PaginationUtils.page( items, RESOLVER, "bb", 0 );
+		Assert.assertEquals( "[c, d, e]", String.valueOf( ((JSonArrayOutput) resp.getEntity()).getItems()));
+
+		// Everything fits in a page
+		resp = PaginationUtils.page( items, RESOLVER, null, 5 );
+		Assert.assertEquals( 5, ((JSonArrayOutput) resp.getEntity()).getItems().size());
+		Assert.assertNull( resp.getMetadata().getFirst( UrlConstants.NEXT_CURSOR ));
+
+		// Streamed output
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		((JSonArrayOutput) resp.getEntity()).write( os );
+		Assert.assertEquals( "[{\"s\":\"a\"},{\"s\":\"b\"},{\"s\":\"c\"},{\"s\":\"d\"},{\"s\":\"e\"}]", os.toString( "UTF-8" ));
+	}
+
+
+	@Test
+	public void testSelectPage_allItemsAreListedOnce() throws Exception {
+
+		List<StringWrapper> items = new ArrayList<> ();
+		List<String> expected = new ArrayList<> ();
+		for( int i=0; i<1000; i++ ) {
+			String key = String.format( "item-%04d", i );
+			items.add( new StringWrapper( key ));
+			expected.add( key );
+		}
+
+		Collections.shuffle( items, new Random( 5 ));
+
+		// Follow the cursors
+		List<String> listed = new ArrayList<> ();
+		String cursor = null;
+		int pages = 0;
+		do {
+			Page<StringWrapper> page = PaginationUtils.selectPage( items, RESOLVER, cursor, 30 );
+			Assert.assertTrue( page.items.size() <= 30 );
+			for( StringWrapper item : page.items )
+				listed.add( item.toString());
+
+			cursor = page.nextCursor;
+			pages ++;
+
+		} while( cursor != null );
+
+		Assert.assertEquals( expected, listed );
+		Assert.assertEquals( 34, pages );
+	}
+}
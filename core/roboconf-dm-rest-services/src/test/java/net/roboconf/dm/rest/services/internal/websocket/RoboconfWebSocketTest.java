@@ -72,4 +72,32 @@ public class RoboconfWebSocketTest {
 		ws2.onWebSocketClose( 1, "whatever" );
 		Assert.assertEquals( 0, WebSocketHandler.getSessions().size());
 	}
+
+
+	@Test
+	public void testSubscription() {
+
+		RoboconfWebSocket ws = new RoboconfWebSocket();
+		Session session = Mockito.mock( Session.class );
+		ws.onWebSocketConnect( session );
+		try {
+			Assert.assertSame( Subscription.ALL, WebSocketHandler.getSessionSender( session ).subscription );
+
+			ws.onWebSocketText( "{\"applications\":[\"app\"],\"deltas\":true}" );
+			Subscription sub = WebSocketHandler.getSessionSender( session ).subscription;
+			Assert.assertTrue( sub.isDeltas());
+			Assert.assertFalse( sub.accepts( Subscription.KIND_INSTANCE, "another-app" ));
+
+			// Invalid subscriptions are ignored
+			ws.onWebSocketText( "oops" );
+			Assert.assertSame( sub, WebSocketHandler.getSessionSender( session ).subscription );
+
+			// Empty ones restore the default behavior
+			ws.onWebSocketText( "" );
+			Assert.assertSame( Subscription.ALL, WebSocketHandler.getSessionSender( session ).subscription );
+
+		} finally {
+			ws.onWebSocketClose( 0, "whatever" );
+		}
+	}
 }
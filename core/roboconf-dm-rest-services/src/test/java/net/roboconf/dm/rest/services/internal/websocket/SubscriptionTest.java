@@ -0,0 +1,90 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.rest.services.internal.websocket;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class SubscriptionTest {
+
+	@Test
+	public void testAll() throws Exception {
+
+		Assert.assertSame( Subscription.ALL, Subscription.parse( null ));
+		Assert.assertSame( Subscription.ALL, Subscription.parse( "  " ));
+
+		Subscription sub = Subscription.parse( "{}" );
+		Assert.assertFalse( sub.isDeltas());
+		Assert.assertTrue( sub.accepts( Subscription.KIND_APPLICATION, "app" ));
+		Assert.assertTrue( sub.accepts( Subscription.KIND_INSTANCE, "app" ));
+		Assert.assertTrue( sub.accepts( Subscription.KIND_TEMPLATE, null ));
+		Assert.assertTrue( sub.accepts( Subscription.KIND_TEXT, null ));
+	}
+
+
+	@Test
+	public void testApplicationsAndKinds() throws Exception {
+
+		Subscription sub = Subscription.parse( "{\"applications\":[\"app1\",\"app2\"],\"kinds\":[\"instance\",\"text\"],\"deltas\":true}" );
+		Assert.assertTrue( sub.isDeltas());
+
+		Assert.assertTrue( sub.accepts( Subscription.KIND_INSTANCE, "app1" ));
+		Assert.assertTrue( sub.accepts( Subscription.KIND_INSTANCE, "app2" ));
+		Assert.assertFalse( sub.accepts( Subscription.KIND_INSTANCE, "app3" ));
+		Assert.assertFalse( sub.accepts( Subscription.KIND_APPLICATION, "app1" ));
+
+		// Events not related to an application are only filtered by kind
+		Assert.assertTrue( sub.accepts( Subscription.KIND_TEXT, null ));
+		Assert.assertFalse( sub.accepts( Subscription.KIND_TEMPLATE, null ));
+	}
+
+
+	@Test
+	public void testEmptyLists() throws Exception {
+
+		Subscription sub = Subscription.parse( "{\"applications\":[],\"kinds\":null}" );
+		Assert.assertFalse( sub.accepts( Subscription.KIND_INSTANCE, "app1" ));
+		Assert.assertTrue( sub.accepts( Subscription.KIND_TEMPLATE, null ));
+	}
+
+
+	@Test( expected = IOException.class )
+	public void testInvalidJson() throws Exception {
+		Subscription.parse( "oops" );
+	}
+
+
+	@Test( expected = IOException.class )
+	public void testNotAnObject() throws Exception {
+		Subscription.parse( "[\"app1\"]" );
+	}
+}
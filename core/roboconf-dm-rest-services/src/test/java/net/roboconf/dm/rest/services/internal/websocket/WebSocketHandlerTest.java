@@ -26,20 +26,33 @@
 package net.roboconf.dm.rest.services.internal.websocket;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import net.roboconf.core.model.beans.Application;
 import net.roboconf.core.model.beans.ApplicationTemplate;
 import net.roboconf.core.model.beans.Component;
 import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.runtime.EventType;
+import net.roboconf.dm.rest.commons.beans.WebSocketMessage;
+import net.roboconf.dm.rest.services.internal.ServletRegistrationComponent;
+import net.roboconf.dm.rest.services.internal.websocket.WebSocketHandler.SessionSender;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -92,7 +105,7 @@ public class WebSocketHandlerTest {
 		handler.enableNotifications();
 		handler.application( app, EventType.CREATED );
 		Mockito.verify( this.remoteEndpoint )
-				.sendString( "{\"event\":\"CREATED\",\"app\":{\"name\":\"test\",\"displayName\":\"test\",\"tplName\":\"test-tpl\"}}" );
+				.sendString( Mockito.eq( "{\"event\":\"CREATED\",\"app\":{\"name\":\"test\",\"displayName\":\"test\",\"tplName\":\"test-tpl\"}}" ), Mockito.any( WriteCallback.class ));
 	}
 
 
@@ -105,7 +118,7 @@ public class WebSocketHandlerTest {
 		handler.enableNotifications();
 		handler.applicationTemplate( template, EventType.DELETED );
 		Mockito.verify( this.remoteEndpoint )
-				.sendString( "{\"event\":\"DELETED\",\"tpl\":{\"name\":\"test-tpl\",\"displayName\":\"test-tpl\",\"apps\":[]}}" );
+				.sendString( Mockito.eq( "{\"event\":\"DELETED\",\"tpl\":{\"name\":\"test-tpl\",\"displayName\":\"test-tpl\",\"apps\":[]}}" ), Mockito.any( WriteCallback.class ));
 	}
 
 
@@ -126,7 +139,7 @@ public class WebSocketHandlerTest {
 				"{\"event\":\"CHANGED\",\"app\":{\"name\":\"test\",\"displayName\":\"test\",\"tplName\":\"test-tpl\"},\"inst\":"
 				+ "{\"name\":\"inst\",\"path\":\"/inst\",\"status\":\"NOT_DEPLOYED\",\"component\":{\"name\":\"comp\"}}}";
 
-		Mockito.verify( this.remoteEndpoint ).sendString( expected );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( expected ), Mockito.any( WriteCallback.class ));
 	}
 
 
@@ -136,7 +149,7 @@ public class WebSocketHandlerTest {
 		WebSocketHandler handler = configuredHandler();
 		handler.enableNotifications();
 		handler.raw( "this is a raw notification" );
-		Mockito.verify( this.remoteEndpoint ).sendString( "{\"msg\":\"this is a raw notification\"}" );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"this is a raw notification\"}" ), Mockito.any( WriteCallback.class ));
 	}
 
 
@@ -146,7 +159,7 @@ public class WebSocketHandlerTest {
 		WebSocketHandler handler = configuredHandler();
 		handler.enableNotifications();
 		handler.raw( null );
-		Mockito.verify( this.remoteEndpoint, Mockito.never()).sendString( Mockito.anyString());
+		Mockito.verify( this.remoteEndpoint, Mockito.never()).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
 	}
 
 
@@ -156,7 +169,7 @@ public class WebSocketHandlerTest {
 		WebSocketHandler handler = configuredHandler();
 		handler.disableNotifications();
 		handler.raw( "this is a raw notification" );
-		Mockito.verify( this.remoteEndpoint, Mockito.never()).sendString( Mockito.anyString());
+		Mockito.verify( this.remoteEndpoint, Mockito.never()).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
 	}
 
 
@@ -166,9 +179,14 @@ public class WebSocketHandlerTest {
 		WebSocketHandler handler = configuredHandler();
 		handler.enableNotifications();
 
-		Mockito.doThrow( new IOException()).when( this.remoteEndpoint ).sendString( Mockito.anyString());
+		// e.g. the session was closed
+		Mockito.doThrow( new RuntimeException()).when( this.remoteEndpoint ).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
 		handler.raw( "this is another raw notification" );
-		Mockito.verify( this.remoteEndpoint ).sendString( "{\"msg\":\"this is another raw notification\"}" );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"this is another raw notification\"}" ), Mockito.any( WriteCallback.class ));
+
+		// Next messages can still be sent
+		handler.raw( "and another one" );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"and another one\"}" ), Mockito.any( WriteCallback.class ));
 	}
 
 
@@ -178,9 +196,437 @@ public class WebSocketHandlerTest {
 		WebSocketHandler handler = configuredHandler();
 		handler.enableNotifications();
 
-		Mockito.doThrow( new IOException( "some reason" )).when( this.remoteEndpoint ).sendString( Mockito.anyString());
+		// The write fails asynchronously
+		Mockito.doAnswer( new Answer<Void>() {
+			@Override
+			public Void answer( InvocationOnMock invocation ) throws Throwable {
+				WriteCallback callback = (WriteCallback) invocation.getArguments()[ 1 ];
+				callback.writeFailed( new IOException( "some reason" ));
+				return null;
+			}
+
+		}).when( this.remoteEndpoint ).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
+
 		handler.raw( "this is another raw notification" );
-		Mockito.verify( this.remoteEndpoint ).sendString( "{\"msg\":\"this is another raw notification\"}" );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"this is another raw notification\"}" ), Mockito.any( WriteCallback.class ));
+
+		handler.raw( "and another one" );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"and another one\"}" ), Mockito.any( WriteCallback.class ));
+		Assert.assertEquals( 0, WebSocketHandler.getSessionSender( this.session ).getPendingMessagesCount());
+	}
+
+
+	@Test
+	public void testNotifications_sendException_queueIsDropped() throws Exception {
+
+		WebSocketHandler handler = configuredHandler();
+		handler.enableNotifications();
+
+		handler.raw( "m1" );
+		handler.raw( "m2" );
+		handler.raw( "m3" );
+
+		ArgumentCaptor<WriteCallback> captor = ArgumentCaptor.forClass( WriteCallback.class );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"m1\"}" ), captor.capture());
+
+		SessionSender sender = WebSocketHandler.getSessionSender( this.session );
+		Assert.assertEquals( 2, sender.getPendingMessagesCount());
+
+		// The first failure drops the waiting messages, they are not even tried
+		captor.getValue().writeFailed( new IOException( "for test" ));
+		Assert.assertEquals( 0, sender.getPendingMessagesCount());
+		Assert.assertEquals( 2, sender.droppedMessages );
+		Mockito.verify( this.remoteEndpoint, Mockito.times( 1 )).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
+
+		// New messages are sent again
+		handler.raw( "m4" );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"m4\"}" ), Mockito.any( WriteCallback.class ));
+	}
+
+
+	@Test
+	public void testMessagesAreSentInOrder() throws Exception {
+
+		WebSocketHandler handler = configuredHandler();
+		handler.enableNotifications();
+
+		// The first message is being written, the others wait
+		handler.raw( "m1" );
+		handler.raw( "m2" );
+		handler.raw( "m3" );
+
+		ArgumentCaptor<WriteCallback> captor = ArgumentCaptor.forClass( WriteCallback.class );
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"m1\"}" ), captor.capture());
+		Mockito.verify( this.remoteEndpoint, Mockito.times( 1 )).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
+
+		SessionSender sender = WebSocketHandler.getSessionSender( this.session );
+		Assert.assertEquals( 2, sender.getPendingMessagesCount());
+
+		// Complete the writes
+		captor.getValue().writeSuccess();
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"m2\"}" ), Mockito.any( WriteCallback.class ));
+		Assert.assertEquals( 1, sender.getPendingMessagesCount());
+
+		captor.getValue().writeSuccess();
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"m3\"}" ), Mockito.any( WriteCallback.class ));
+		Assert.assertEquals( 0, sender.getPendingMessagesCount());
+
+		captor.getValue().writeSuccess();
+		Mockito.verify( this.remoteEndpoint, Mockito.times( 3 )).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
+		Assert.assertEquals( 0, sender.droppedMessages );
+	}
+
+
+	@Test
+	public void testSlowClientDoesNotImpactOthers() throws Exception {
+
+		long droppedBefore = ServletRegistrationComponent.WS_DROPPED_MESSAGES_COUNT.get();
+
+		// This client never reads: its writes never complete
+		Session slowSession = Mockito.mock( Session.class );
+		RemoteEndpoint slowRemote = Mockito.mock( RemoteEndpoint.class );
+		Mockito.when( slowSession.getRemote()).thenReturn( slowRemote );
+		WebSocketHandler.addSession( slowSession );
+
+		// This one reads everything immediately
+		final List<String> received = new ArrayList<> ();
+		WebSocketHandler handler = configuredHandler();
+		Mockito.doAnswer( new Answer<Void>() {
+			@Override
+			public Void answer( InvocationOnMock invocation ) throws Throwable {
+				received.add((String) invocation.getArguments()[ 0 ]);
+				((WriteCallback) invocation.getArguments()[ 1 ]).writeSuccess();
+				return null;
+			}
+
+		}).when( this.remoteEndpoint ).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
+
+		handler.enableNotifications();
+		int count = WebSocketHandler.QUEUE_CAPACITY * 4;
+		long before = System.nanoTime();
+		for( int i=0; i<count; i++ )
+			handler.raw( "message " + i );
+
+		long duration = System.nanoTime() - before;
+
+		// The fast client got everything, in order
+		Assert.assertEquals( count, received.size());
+		Assert.assertEquals( "{\"msg\":\"message 0\"}", received.get( 0 ));
+		Assert.assertEquals( "{\"msg\":\"message " + (count - 1) + "\"}", received.get( count - 1 ));
+
+		// Notifications were never blocked by the slow client
+		Assert.assertTrue( duration < TimeUnit.SECONDS.toNanos( 5 ));
+
+		// The slow client only keeps the most recent messages
+		SessionSender slowSender = WebSocketHandler.getSessionSender( slowSession );
+		Assert.assertEquals( WebSocketHandler.QUEUE_CAPACITY, slowSender.getPendingMessagesCount());
+		Assert.assertEquals( count - 1 - WebSocketHandler.QUEUE_CAPACITY, slowSender.droppedMessages );
+		Assert.assertEquals(
+				droppedBefore + slowSender.droppedMessages,
+				ServletRegistrationComponent.WS_DROPPED_MESSAGES_COUNT.get());
+
+		Mockito.verify( slowRemote, Mockito.times( 1 )).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
+
+		// Removing the session releases its queue
+		WebSocketHandler.removeSession( slowSession );
+		Assert.assertEquals( 0, slowSender.getPendingMessagesCount());
+	}
+
+
+	@Test
+	public void testEventsAreSerializedOnce() throws Exception {
+
+		Session session2 = Mockito.mock( Session.class );
+		RemoteEndpoint remote2 = Mockito.mock( RemoteEndpoint.class );
+		Mockito.when( session2.getRemote()).thenReturn( remote2 );
+		WebSocketHandler.addSession( session2 );
+
+		WebSocketHandler handler = Mockito.spy( configuredHandler());
+		handler.enableNotifications();
+		handler.raw( "hello" );
+
+		Mockito.verify( handler, Mockito.times( 1 )).asJson( Mockito.any( WebSocketMessage.class ));
+		Mockito.verify( this.remoteEndpoint ).sendString( Mockito.eq( "{\"msg\":\"hello\"}" ), Mockito.any( WriteCallback.class ));
+		Mockito.verify( remote2 ).sendString( Mockito.eq( "{\"msg\":\"hello\"}" ), Mockito.any( WriteCallback.class ));
+	}
+
+
+	@Test
+	public void testSubscriptions() throws Exception {
+
+		Application app1 = new Application( "app1", new ApplicationTemplate( "tpl" ));
+		Application app2 = new Application( "app2", new ApplicationTemplate( "tpl" ));
+
+		WebSocketHandler handler = configuredHandler();
+		handler.enableNotifications();
+
+		Session session2 = Mockito.mock( Session.class );
+		RemoteEndpoint remote2 = Mockito.mock( RemoteEndpoint.class );
+		Mockito.when( session2.getRemote()).thenReturn( remote2 );
+		WebSocketHandler.addSession( session2 );
+
+		// Invalid sessions are ignored
+		WebSocketHandler.subscribe( Mockito.mock( Session.class ), Subscription.ALL );
+
+		// The second client only wants instances of "app2"
+		WebSocketHandler.subscribe( session2, Subscription.parse( "{\"applications\":[\"app2\"],\"kinds\":[\"instance\"]}" ));
+
+		handler.application( app1, EventType.CREATED );
+		handler.application( app2, EventType.CREATED );
+		handler.raw( "hello" );
+		handler.instance( new Instance( "i1" ), app1, EventType.CREATED );
+		handler.instance( new Instance( "i2" ), app2, EventType.CREATED );
+
+		ArgumentCaptor<String> captor = ArgumentCaptor.forClass( String.class );
+		Mockito.verify( remote2, Mockito.times( 1 )).sendString( captor.capture(), Mockito.any( WriteCallback.class ));
+		Assert.assertTrue( captor.getValue().contains( "\"path\":\"/i2\"" ));
+		Assert.assertTrue( captor.getValue().contains( "\"name\":\"app2\"" ));
+
+		// The first client still receives everything (its first write never completes)
+		Mockito.verify( this.remoteEndpoint, Mockito.times( 1 )).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
+		Assert.assertEquals( 4, WebSocketHandler.getSessionSender( this.session ).getPendingMessagesCount());
+	}
+
+
+	@Test
+	public void testDeltas() throws Exception {
+
+		Application app = new Application( "test", new ApplicationTemplate( "test-tpl" ));
+		Instance inst = new Instance( "inst" ).component( new Component( "comp" ));
+		inst.data.put( "k1", "v1" );
+		inst.data.put( "k2", "v2" );
+
+		WebSocketHandler handler = configuredHandler();
+		List<String> received = receivedMessages( this.remoteEndpoint );
+		WebSocketHandler.subscribe( this.session, Subscription.parse( "{\"deltas\":true}" ));
+		handler.enableNotifications();
+
+		handler.instance( inst, app, EventType.CREATED );
+		inst.setStatus( InstanceStatus.DEPLOYING );
+		inst.data.put( "k1", "v1'" );
+		inst.data.remove( "k2" );
+		inst.data.put( "k3", "v3" );
+		handler.instance( inst, app, EventType.CHANGED );
+
+		// Nothing changed in the data
+		inst.setStatus( InstanceStatus.DEPLOYED_STARTED );
+		handler.instance( inst, app, EventType.CHANGED );
+
+		Assert.assertEquals( 3, received.size());
+		Assert.assertTrue( received.get( 0 ).contains( "\"inst\":" ));
+		Assert.assertEquals(
+				"{\"event\":\"CHANGED\",\"delta\":{\"app\":\"test\",\"path\":\"/inst\",\"status\":\"DEPLOYING\","
+				+ "\"data\":{\"k1\":\"v1'\",\"k3\":\"v3\",\"k2\":null}}}",
+				received.get( 1 ));
+
+		Assert.assertEquals(
+				"{\"event\":\"CHANGED\",\"delta\":{\"app\":\"test\",\"path\":\"/inst\",\"status\":\"DEPLOYED_STARTED\"}}",
+				received.get( 2 ));
+	}
+
+
+	@Test
+	public void testNotifiedDataAreOnlyKeptForDeltaSubscribers() throws Exception {
+
+		Application app = new Application( "test", new ApplicationTemplate( "test-tpl" ));
+		Instance inst = new Instance( "inst" ).component( new Component( "comp" ));
+		inst.data.put( "k1", "v1" );
+
+		WebSocketHandler handler = configuredHandler();
+		List<String> received = receivedMessages( this.remoteEndpoint );
+		handler.enableNotifications();
+
+		handler.instance( inst, app, EventType.CREATED );
+		handler.instance( inst, app, EventType.CHANGED );
+		Assert.assertEquals( 2, received.size());
+		Assert.assertEquals( 0, handler.lastNotifiedData.size());
+
+		WebSocketHandler.subscribe( this.session, Subscription.parse( "{\"deltas\":true}" ));
+		handler.instance( inst, app, EventType.CHANGED );
+		Assert.assertEquals( 3, received.size());
+		Assert.assertEquals( 1, handler.lastNotifiedData.size());
+
+		// Back to full notifications
+		WebSocketHandler.subscribe( this.session, Subscription.ALL );
+		handler.instance( inst, app, EventType.CHANGED );
+		Assert.assertEquals( 4, received.size());
+		Assert.assertEquals( 0, handler.lastNotifiedData.size());
+	}
+
+
+	@Test
+	public void testNoSession() throws Exception {
+
+		Application app = new Application( "test", new ApplicationTemplate( "test-tpl" ));
+		Instance inst = new Instance( "inst" ).component( new Component( "comp" ));
+
+		WebSocketHandler handler = configuredHandler();
+		WebSocketHandler.removeSession( this.session );
+		handler.setCoalescingDelay( 10000 );
+		handler.enableNotifications();
+
+		handler.instance( inst, app, EventType.CHANGED );
+		Assert.assertEquals( 0, handler.pendingChanges.size());
+		Assert.assertEquals( 0, handler.lastNotifiedData.size());
+		handler.stop();
+	}
+
+
+	@Test
+	public void testCoalescing() throws Exception {
+
+		Application app = new Application( "test", new ApplicationTemplate( "test-tpl" ));
+		Instance inst1 = new Instance( "inst1" ).component( new Component( "comp" ));
+		Instance inst2 = new Instance( "inst2" ).component( new Component( "comp" ));
+
+		WebSocketHandler handler = configuredHandler();
+		List<String> received = receivedMessages( this.remoteEndpoint );
+		handler.setCoalescingDelay( TimeUnit.HOURS.toMillis( 1 ));
+		handler.enableNotifications();
+
+		try {
+			inst1.setStatus( InstanceStatus.DEPLOYING );
+			handler.instance( inst1, app, EventType.CHANGED );
+			inst2.setStatus( InstanceStatus.DEPLOYING );
+			handler.instance( inst2, app, EventType.CHANGED );
+			inst1.setStatus( InstanceStatus.DEPLOYED_STARTED );
+			handler.instance( inst1, app, EventType.CHANGED );
+			Assert.assertEquals( 0, received.size());
+
+			// Other events flush the pending changes first
+			handler.raw( "hello" );
+			Assert.assertEquals( 3, received.size());
+			Assert.assertTrue( received.get( 0 ).contains( "\"path\":\"/inst2\",\"status\":\"DEPLOYING\"" ));
+			Assert.assertTrue( received.get( 1 ).contains( "\"path\":\"/inst1\",\"status\":\"DEPLOYED_STARTED\"" ));
+			Assert.assertEquals( "{\"msg\":\"hello\"}", received.get( 2 ));
+
+			// The captured state is sent, not the current one
+			inst2.setStatus( InstanceStatus.DEPLOYED_STARTED );
+			handler.instance( inst2, app, EventType.CHANGED );
+			inst2.setStatus( InstanceStatus.PROBLEM );
+			handler.flushPendingChanges();
+			Assert.assertEquals( 4, received.size());
+			Assert.assertTrue( received.get( 3 ).contains( "\"path\":\"/inst2\",\"status\":\"DEPLOYED_STARTED\"" ));
+
+		} finally {
+			handler.stop();
+		}
+	}
+
+
+	@Test( timeout = 10000 )
+	public void testCoalescing_scheduledFlush() throws Exception {
+
+		Application app = new Application( "test", new ApplicationTemplate( "test-tpl" ));
+		Instance inst = new Instance( "inst" ).component( new Component( "comp" ));
+
+		WebSocketHandler handler = configuredHandler();
+		List<String> received = receivedMessages( this.remoteEndpoint );
+		handler.setCoalescingDelay( 50 );
+		handler.enableNotifications();
+
+		try {
+			for( InstanceStatus status : InstanceStatus.values()) {
+				inst.setStatus( status );
+				handler.instance( inst, app, EventType.CHANGED );
+			}
+
+			while( received.isEmpty())
+				Thread.sleep( 20 );
+
+			Assert.assertEquals( 1, received.size());
+
+		} finally {
+			handler.stop();
+		}
+	}
+
+
+	@Test
+	public void testBandwidth_deploying1000Instances() throws Exception {
+
+		// Without subscription nor coalescing
+		WebSocketHandler handler = configuredHandler();
+		List<String> fullMessages = receivedMessages( this.remoteEndpoint );
+		handler.enableNotifications();
+		deploy( handler, 1000 );
+
+		WebSocketHandler.removeSession( this.session );
+
+		// With subscriptions and coalescing
+		handler = configuredHandler();
+		List<String> deltaMessages = receivedMessages( this.remoteEndpoint );
+		WebSocketHandler.subscribe( this.session, Subscription.parse( "{\"applications\":[\"test\"],\"deltas\":true}" ));
+
+		Session otherSession = Mockito.mock( Session.class );
+		RemoteEndpoint otherRemote = Mockito.mock( RemoteEndpoint.class );
+		Mockito.when( otherSession.getRemote()).thenReturn( otherRemote );
+		List<String> otherMessages = receivedMessages( otherRemote );
+		WebSocketHandler.addSession( otherSession );
+		WebSocketHandler.subscribe( otherSession, Subscription.parse( "{\"applications\":[\"another-app\"]}" ));
+
+		handler.setCoalescingDelay( TimeUnit.HOURS.toMillis( 1 ));
+		handler.enableNotifications();
+		try {
+			deploy( handler, 1000 );
+
+		} finally {
+			handler.stop();
+		}
+
+		// Compare
+		long fullBytes = countBytes( fullMessages );
+		long deltaBytes = countBytes( deltaMessages );
+
+		Assert.assertEquals( 3000, fullMessages.size());
+		Assert.assertEquals( 1000, deltaMessages.size());
+		Assert.assertEquals( 0, otherMessages.size());
+		Assert.assertTrue( fullBytes + " bytes VS " + deltaBytes + " bytes", deltaBytes * 4 < fullBytes );
+	}
+
+
+	private void deploy( WebSocketHandler handler, int instancesCount ) {
+
+		Application app = new Application( "test", new ApplicationTemplate( "test-tpl" ));
+		for( int i=0; i<instancesCount; i++ ) {
+			Instance inst = new Instance( "vm-" + i ).component( new Component( "vm" ));
+			inst.setStatus( InstanceStatus.DEPLOYING );
+			handler.instance( inst, app, EventType.CHANGED );
+
+			inst.data.put( Instance.IP_ADDRESS, "192.168.1." + (i % 256));
+			inst.data.put( Instance.MACHINE_ID, "machine-" + i );
+			handler.instance( inst, app, EventType.CHANGED );
+
+			inst.setStatus( InstanceStatus.DEPLOYED_STARTED );
+			handler.instance( inst, app, EventType.CHANGED );
+		}
+	}
+
+
+	private static long countBytes( List<String> messages ) {
+
+		long result = 0;
+		for( String message : messages )
+			result += message.getBytes( StandardCharsets.UTF_8 ).length;
+
+		return result;
+	}
+
+
+	private static List<String> receivedMessages( RemoteEndpoint remoteEndpoint ) {
+
+		final List<String> result = Collections.synchronizedList( new ArrayList<String> ());
+		Mockito.doAnswer( new Answer<Void>() {
+			@Override
+			public Void answer( InvocationOnMock invocation ) throws Throwable {
+				result.add((String) invocation.getArguments()[ 0 ]);
+				((WriteCallback) invocation.getArguments()[ 1 ]).writeSuccess();
+				return null;
+			}
+
+		}).when( remoteEndpoint ).sendString( Mockito.anyString(), Mockito.any( WriteCallback.class ));
+
+		return result;
 	}
 
 
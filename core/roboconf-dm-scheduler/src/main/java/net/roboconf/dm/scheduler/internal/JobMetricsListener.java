@@ -0,0 +1,123 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.scheduler.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+
+import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+
+/**
+ * A Quartz listener that records execution metrics for every job.
+ * <p>
+ * For every job, it records the firing lag (the time between the scheduled
+ * and the effective firing), the execution duration and the number of misfires.
+ * These metrics are stored in the DM's metrics manager, with the job ID as suffix.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class JobMetricsListener implements JobListener, TriggerListener {
+
+	static final String NAME = "Roboconf Job Metrics";
+	private final Manager manager;
+
+
+	/**
+	 * Constructor.
+	 * @param manager the DM
+	 */
+	public JobMetricsListener( Manager manager ) {
+		this.manager = manager;
+	}
+
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+
+	@Override
+	public void jobToBeExecuted( JobExecutionContext context ) {
+
+		if( context.getScheduledFireTime() != null && context.getFireTime() != null ) {
+			long lag = context.getFireTime().getTime() - context.getScheduledFireTime().getTime();
+			this.manager.metricsMngr().recordDuration(
+					IMetricsMngr.SCHEDULER_JOB_LAG + context.getJobDetail().getKey().getName(),
+					TimeUnit.MILLISECONDS.toNanos( lag ));
+		}
+	}
+
+
+	@Override
+	public void jobExecutionVetoed( JobExecutionContext context ) {
+		// nothing
+	}
+
+
+	@Override
+	public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
+
+		if( context.getJobRunTime() >= 0 ) {
+			this.manager.metricsMngr().recordDuration(
+					IMetricsMngr.SCHEDULER_JOB_EXECUTION + context.getJobDetail().getKey().getName(),
+					TimeUnit.MILLISECONDS.toNanos( context.getJobRunTime()));
+		}
+	}
+
+
+	@Override
+	public void triggerFired( Trigger trigger, JobExecutionContext context ) {
+		// nothing
+	}
+
+
+	@Override
+	public boolean vetoJobExecution( Trigger trigger, JobExecutionContext context ) {
+		return false;
+	}
+
+
+	@Override
+	public void triggerMisfired( Trigger trigger ) {
+		this.manager.metricsMngr().incrementCounter( IMetricsMngr.SCHEDULER_MISFIRES + trigger.getJobKey().getName());
+	}
+
+
+	@Override
+	public void triggerComplete( Trigger trigger, JobExecutionContext context, CompletedExecutionInstruction triggerInstructionCode ) {
+		// nothing
+	}
+}
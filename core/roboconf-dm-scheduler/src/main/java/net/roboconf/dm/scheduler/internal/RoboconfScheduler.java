@@ -32,8 +32,10 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import org.quartz.CronScheduleBuilder;
@@ -51,10 +53,18 @@ import net.roboconf.core.model.beans.Application;
 import net.roboconf.core.model.runtime.ScheduledJob;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.dm.management.events.IDmListener;
 import net.roboconf.dm.scheduler.IScheduler;
 
 /**
+ * The scheduler, based on Quartz.
+ * <p>
+ * Job definitions are stored as properties files in the DM's configuration directory.
+ * They are indexed in memory when they are loaded, and the index is then updated
+ * on every save and deletion. Listings and look-ups never read the files again.
+ * </p>
+ *
  * @author Vincent Zurczak - Linagora
  */
 public class RoboconfScheduler implements IScheduler {
@@ -66,9 +76,15 @@ public class RoboconfScheduler implements IScheduler {
 	static final String CRON = "cron";
 	static final String MANAGER = "manager";
 	static final String PROJECT_DIR_SCHEDULER = "scheduler";
+	static final int DEFAULT_THREAD_COUNT = 3;
 
 	private final Logger logger = Logger.getLogger( getClass().getName());
 
+	// Key = job ID, value = the job's properties (including the ID)
+	final Map<String,Properties> jobIdToProperties = new ConcurrentHashMap<> ();
+	private volatile boolean jobsIndexed = false;
+
+	private int threadCount = DEFAULT_THREAD_COUNT;
 	IDmListener dmListener;
 	Scheduler scheduler;
 	Manager manager;
@@ -90,7 +106,7 @@ public class RoboconfScheduler implements IScheduler {
 		// Disable Quartz update checks
 		StringBuilder quartzProperties = new StringBuilder();
 		quartzProperties.append( "org.quartz.scheduler.instanceName: Roboconf Quartz Scheduler\n" );
-		quartzProperties.append( "org.quartz.threadPool.threadCount = 3\n" );
+		quartzProperties.append( "org.quartz.threadPool.threadCount = " + this.threadCount + "\n" );
 		quartzProperties.append( "org.quartz.jobStore.class = org.quartz.simpl.RAMJobStore\n" );
 		quartzProperties.append( "org.quartz.scheduler.skipUpdateCheck: false\n" );
 
@@ -102,6 +118,17 @@ public class RoboconfScheduler implements IScheduler {
 		this.scheduler.start();
 		this.scheduler.getContext().put( MANAGER, this.manager );
 
+		// Record execution metrics
+		JobMetricsListener metricsListener = new JobMetricsListener( this.manager );
+		this.scheduler.getListenerManager().addJobListener( metricsListener );
+		this.scheduler.getListenerManager().addTriggerListener( metricsListener );
+		this.manager.metricsMngr().registerGauge( IMetricsMngr.SCHEDULER_JOBS, new IMetricsMngr.Gauge() {
+			@Override
+			public long getValue() {
+				return RoboconfScheduler.this.jobIdToProperties.size();
+			}
+		});
+
 		// Add a listener to the DM
 		this.dmListener = new ManagerListener( this );
 		this.manager.listenerAppears( this.dmListener );
@@ -120,10 +147,11 @@ public class RoboconfScheduler implements IScheduler {
 	public void stop() throws Exception {
 		this.logger.info( "Roboconf's scheduler is stopping..." );
 
-		// Remove the DM listener
+		// Remove the DM listener and our gauge
 		if( this.manager != null ) {
 			this.manager.listenerDisappears( this.dmListener );
 			this.dmListener = null;
+			this.manager.metricsMngr().remove( IMetricsMngr.SCHEDULER_JOBS );
 		}
 
 		// Shutdown the scheduler
@@ -134,6 +162,26 @@ public class RoboconfScheduler implements IScheduler {
 	}
 
 
+	/**
+	 * Sets the number of threads used to execute jobs.
+	 * <p>
+	 * Invoked by iPojo. The new value is used the next time the scheduler starts.
+	 * </p>
+	 *
+	 * @param threadCount the number of threads (values lower than 1 are ignored)
+	 */
+	public void setThreadCount( int threadCount ) {
+
+		if( threadCount < 1 ) {
+			this.logger.warning( "Invalid thread count for the scheduler: " + threadCount + ". It must be a positive integer." );
+
+		} else {
+			this.threadCount = threadCount;
+			this.logger.fine( "The scheduler's thread count was set to " + threadCount + "." );
+		}
+	}
+
+
 	/**
 	 * @param manager the manager to set (to be used outside OSGi environments)
 	 */
@@ -146,22 +194,20 @@ public class RoboconfScheduler implements IScheduler {
 	public void loadJobs() {
 
 		this.logger.fine( "Roboconf's scheduler is loading jobs..." );
-		for( File f : Utils.listAllFiles( getSchedulerDirectory(), Constants.FILE_EXT_PROPERTIES )) {
-			try {
-				Properties props = Utils.readPropertiesFileQuietly( f, this.logger );
-
-				// Inject the ID in the properties
-				props.setProperty( JOB_ID, Utils.removeFileExtension( f.getName()));
+		indexJobs();
 
+		for( Properties props : this.jobIdToProperties.values()) {
+			String fileName = props.getProperty( JOB_ID ) + Constants.FILE_EXT_PROPERTIES;
+			try {
 				// Validate and reload
 				if( validProperties( props ))
 					scheduleJob( props );
 				else
-					this.logger.warning( "Skipped schedule for a job. There are invalid or missing job properties in " + f.getName());
+					this.logger.warning( "Skipped schedule for a job. There are invalid or missing job properties in " + fileName );
 
 			} catch( Exception e ) {
 				// Catch ALL the exceptions. #start() cannot fail.
-				this.logger.warning( "Failed to load a scheduled job from " + f.getName());
+				this.logger.warning( "Failed to load a scheduled job from " + fileName );
 				Utils.logException( this.logger, e );
 			}
 		}
@@ -173,17 +219,8 @@ public class RoboconfScheduler implements IScheduler {
 
 		this.logger.fine( "Roboconf's scheduler is listing jobs..." );
 		List<ScheduledJob> result = new ArrayList<> ();
-		for( File f : Utils.listAllFiles( getSchedulerDirectory(), Constants.FILE_EXT_PROPERTIES )) {
-
-			Properties props = Utils.readPropertiesFileQuietly( f, this.logger );
-			if( props.isEmpty())
-				continue;
-
-			// Inject the ID in the properties
-			props.put( JOB_ID, Utils.removeFileExtension( f.getName()));
-			ScheduledJob job = from( props );
-			result.add( job );
-		}
+		for( Properties props : jobs().values())
+			result.add( from( props ));
 
 		Collections.sort( result );
 		return result;
@@ -233,10 +270,13 @@ public class RoboconfScheduler implements IScheduler {
 				scheduleJob( props );
 				result = jobId;
 
-				// Save the job's information
-				props.remove( JOB_ID );
+				// Save the job's information (write-through)
+				Properties savedProps = new Properties();
+				savedProps.putAll( props );
+				savedProps.remove( JOB_ID );
 				Utils.createDirectory( getSchedulerDirectory());
-				Utils.writePropertiesFile( props, getJobFile( jobId ));
+				Utils.writePropertiesFile( savedProps, getJobFile( jobId ));
+				jobs().put( jobId, props );
 
 				this.logger.fine( "Roboconf's scheduler has just saved a job as " + jobName );
 
@@ -260,6 +300,12 @@ public class RoboconfScheduler implements IScheduler {
 			this.logger.warning( "Failed to remove a scheduled job. Job's id: " + jobId );
 			throw e;
 		}
+
+		// Forget the job's metrics
+		IMetricsMngr metricsMngr = this.manager.metricsMngr();
+		metricsMngr.remove( IMetricsMngr.SCHEDULER_JOB_LAG + jobId );
+		metricsMngr.remove( IMetricsMngr.SCHEDULER_JOB_EXECUTION + jobId );
+		metricsMngr.remove( IMetricsMngr.SCHEDULER_MISFIRES + jobId );
 	}
 
 
@@ -267,16 +313,8 @@ public class RoboconfScheduler implements IScheduler {
 	public ScheduledJob findJobProperties( String jobId ) {
 
 		this.logger.fine( "Roboconf's scheduler is about to find the properties of the job whose ID is " + jobId );
-		ScheduledJob result = null;
-		File f = getJobFile( jobId );
-		if( f.isFile()) {
-			// Inject the ID in the properties
-			Properties props = Utils.readPropertiesFileQuietly( f, this.logger );
-			props.put( JOB_ID, jobId );
-			result = from( props );
-		}
-
-		return result;
+		Properties props = jobs().get( jobId );
+		return props == null ? null : from( props );
 	}
 
 
@@ -349,8 +387,8 @@ public class RoboconfScheduler implements IScheduler {
 
 		File f = getJobFile( jobId );
 		try {
-			if( f.exists()) {
-				Properties props = Utils.readPropertiesFileQuietly( f, this.logger );
+			Properties props = jobs().get( jobId );
+			if( props != null ) {
 				String appName = props.getProperty( APP_NAME, "" );
 				if( ! Utils.isEmptyOrWhitespaces( appName ))
 					this.scheduler.unscheduleJob( TriggerKey.triggerKey( jobId, appName ));
@@ -361,11 +399,56 @@ public class RoboconfScheduler implements IScheduler {
 			throw new IOException( e );
 
 		} finally {
+			this.jobIdToProperties.remove( jobId );
 			Utils.deleteFilesRecursively( f );
 		}
 	}
 
 
+	/**
+	 * @return the index of the jobs, loaded from the job files if necessary
+	 */
+	private Map<String,Properties> jobs() {
+
+		if( ! this.jobsIndexed ) {
+			synchronized( this.jobIdToProperties ) {
+				if( ! this.jobsIndexed )
+					indexJobs();
+			}
+		}
+
+		return this.jobIdToProperties;
+	}
+
+
+	/**
+	 * (Re)builds the index of the jobs from the job files.
+	 * <p>
+	 * Job files without any property are ignored.
+	 * </p>
+	 */
+	private void indexJobs() {
+
+		synchronized( this.jobIdToProperties ) {
+			this.jobIdToProperties.clear();
+			for( File f : Utils.listAllFiles( getSchedulerDirectory(), Constants.FILE_EXT_PROPERTIES )) {
+
+				Properties props = Utils.readPropertiesFileQuietly( f, this.logger );
+				if( props.isEmpty())
+					continue;
+
+				// Inject the ID in the properties
+				String jobId = Utils.removeFileExtension( f.getName());
+				props.setProperty( JOB_ID, jobId );
+				this.jobIdToProperties.put( jobId, props );
+			}
+
+			this.jobsIndexed = true;
+			this.logger.fine( "Roboconf's scheduler indexed " + this.jobIdToProperties.size() + " job(s)." );
+		}
+	}
+
+
 	private ScheduledJob from( Properties props ) {
 
 		ScheduledJob job = new ScheduledJob( props.getProperty( JOB_ID ));
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.scheduler.internal;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+
+import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.dm.management.api.IMetricsMngr.HistogramSnapshot;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class JobMetricsListenerTest {
+
+	private Manager manager;
+	private JobMetricsListener listener;
+
+
+	@Before
+	public void prepare() {
+		this.manager = new Manager();
+		this.manager.metricsMngr().reset();
+		this.listener = new JobMetricsListener( this.manager );
+	}
+
+
+	@Test
+	public void testBasics() {
+
+		Assert.assertEquals( JobMetricsListener.NAME, this.listener.getName());
+		Assert.assertFalse( this.listener.vetoJobExecution( null, null ));
+
+		// Nothing happens
+		this.listener.jobExecutionVetoed( null );
+		this.listener.triggerFired( null, null );
+		this.listener.triggerComplete( null, null, CompletedExecutionInstruction.NOOP );
+
+		Assert.assertEquals( 0, this.manager.metricsMngr().getHistograms().size());
+	}
+
+
+	@Test
+	public void testLagAndDuration() {
+
+		JobDetail jobDetail = Mockito.mock( JobDetail.class );
+		Mockito.when( jobDetail.getKey()).thenReturn( JobKey.jobKey( "job-id", "app" ));
+
+		JobExecutionContext context = Mockito.mock( JobExecutionContext.class );
+		Mockito.when( context.getJobDetail()).thenReturn( jobDetail );
+		Mockito.when( context.getScheduledFireTime()).thenReturn( new Date( 10000 ));
+		Mockito.when( context.getFireTime()).thenReturn( new Date( 10250 ));
+		Mockito.when( context.getJobRunTime()).thenReturn( 1500L );
+
+		this.listener.jobToBeExecuted( context );
+		this.listener.jobWasExecuted( context, null );
+
+		Map<String,HistogramSnapshot> histograms = this.manager.metricsMngr().getHistograms();
+		HistogramSnapshot lag = histograms.get( IMetricsMngr.SCHEDULER_JOB_LAG + "job-id" );
+		Assert.assertNotNull( lag );
+		Assert.assertEquals( 1, lag.getCount());
+		Assert.assertEquals( 250, lag.getMax());
+
+		HistogramSnapshot duration = histograms.get( IMetricsMngr.SCHEDULER_JOB_EXECUTION + "job-id" );
+		Assert.assertNotNull( duration );
+		Assert.assertEquals( 1, duration.getCount());
+		Assert.assertEquals( 1500, duration.getMax());
+	}
+
+
+	@Test
+	public void testMissingInformation() {
+
+		JobExecutionContext context = Mockito.mock( JobExecutionContext.class );
+		Mockito.when( context.getJobRunTime()).thenReturn( -1L );
+
+		this.listener.jobToBeExecuted( context );
+		this.listener.jobWasExecuted( context, null );
+		Assert.assertEquals( 0, this.manager.metricsMngr().getHistograms().size());
+	}
+
+
+	@Test
+	public void testMisfires() {
+
+		Trigger trigger = Mockito.mock( Trigger.class );
+		Mockito.when( trigger.getJobKey()).thenReturn( JobKey.jobKey( "job-id", "app" ));
+
+		this.listener.triggerMisfired( trigger );
+		this.listener.triggerMisfired( trigger );
+
+		Long count = this.manager.metricsMngr().getCounters().get( IMetricsMngr.SCHEDULER_MISFIRES + "job-id" );
+		Assert.assertEquals( Long.valueOf( 2 ), count );
+	}
+}
@@ -31,6 +31,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.logging.Logger;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -54,6 +55,8 @@ import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.dm.management.api.IMetricsMngr.HistogramSnapshot;
 import net.roboconf.dm.management.events.IDmListener;
 
 /**
@@ -117,7 +120,9 @@ public class RoboconfSchedulerTest {
 		String schedulerPath = this.scheduler.getSchedulerDirectory().getAbsolutePath();
 		Assert.assertTrue( schedulerPath.startsWith( dmPath ));
 
+		Assert.assertTrue( this.manager.metricsMngr().getGauges().containsKey( IMetricsMngr.SCHEDULER_JOBS ));
 		this.scheduler.stop();
+		Assert.assertFalse( this.manager.metricsMngr().getGauges().containsKey( IMetricsMngr.SCHEDULER_JOBS ));
 		Mockito.verify( this.manager, Mockito.times( 1 )).listenerAppears( Mockito.any( IDmListener.class ));
 		Mockito.verify( this.manager, Mockito.times( 1 )).listenerDisappears( Mockito.any( IDmListener.class ));
 
@@ -588,4 +593,116 @@ public class RoboconfSchedulerTest {
 		ScheduledJob job = this.scheduler.findJobProperties( "inexisting" );
 		Assert.assertNull( job );
 	}
+
+
+	@Test
+	public void testThreadCount() throws Exception {
+
+		this.scheduler.setThreadCount( 0 );
+		this.scheduler.setThreadCount( -5 );
+		this.scheduler.start();
+		Assert.assertEquals( RoboconfScheduler.DEFAULT_THREAD_COUNT, this.scheduler.scheduler.getMetaData().getThreadPoolSize());
+		this.scheduler.stop();
+
+		this.scheduler.setThreadCount( 7 );
+		this.scheduler.start();
+		Assert.assertEquals( 7, this.scheduler.scheduler.getMetaData().getThreadPoolSize());
+	}
+
+
+	@Test
+	public void testJobsAreIndexed() throws Exception {
+
+		// Start the scheduler and halts triggers
+		this.scheduler.start();
+		this.scheduler.scheduler.standby();
+		File schedulerDirectory = this.scheduler.getSchedulerDirectory();
+
+		String jobId = this.scheduler.saveJob( null, "job", "cmd", "0 0 0 ? 1 *", "app" );
+		Assert.assertEquals( 1, this.scheduler.jobIdToProperties.size());
+		Assert.assertEquals( 1, Utils.listAllFiles( schedulerDirectory ).size());
+
+		// Files are not read anymore once they were indexed
+		Utils.deleteFilesRecursively( schedulerDirectory );
+		Assert.assertEquals( 1, this.scheduler.listJobs().size());
+		Assert.assertNotNull( this.scheduler.findJobProperties( jobId ));
+
+		// Deletions are propagated to the index (and to the metrics)
+		this.manager.metricsMngr().incrementCounter( IMetricsMngr.SCHEDULER_MISFIRES + jobId );
+		this.manager.metricsMngr().recordDuration( IMetricsMngr.SCHEDULER_JOB_EXECUTION + jobId, 10 );
+		this.scheduler.deleteJob( jobId );
+		Assert.assertEquals( 0, this.scheduler.jobIdToProperties.size());
+		Assert.assertFalse( this.manager.metricsMngr().getCounters().containsKey( IMetricsMngr.SCHEDULER_MISFIRES + jobId ));
+		Assert.assertFalse( this.manager.metricsMngr().getHistograms().containsKey( IMetricsMngr.SCHEDULER_JOB_EXECUTION + jobId ));
+		Assert.assertEquals( 0, this.scheduler.listJobs().size());
+		Assert.assertNull( this.scheduler.findJobProperties( jobId ));
+
+		// Loading the jobs reads the files again
+		Properties props = new Properties();
+		props.put( RoboconfScheduler.JOB_NAME, "job" );
+		props.put( RoboconfScheduler.APP_NAME, "app" );
+		props.put( RoboconfScheduler.CMD_NAME, "cmd" );
+		props.put( RoboconfScheduler.CRON, "0 0 0 ? 1 *" );
+
+		Utils.createDirectory( schedulerDirectory );
+		Utils.writePropertiesFile( props, this.scheduler.getJobFile( "new-job" ));
+		Assert.assertEquals( 0, this.scheduler.listJobs().size());
+
+		this.scheduler.loadJobs();
+		Assert.assertEquals( 1, this.scheduler.listJobs().size());
+		Assert.assertEquals( "new-job", this.scheduler.listJobs().get( 0 ).getJobId());
+	}
+
+
+	@Test( timeout = 60000 )
+	public void testManyJobs_listingAndFiring() throws Exception {
+
+		Logger logger = Logger.getLogger( getClass().getName());
+		this.manager.metricsMngr().reset();
+		this.scheduler.setThreadCount( 5 );
+
+		// Start the scheduler and halts triggers
+		this.scheduler.start();
+		this.scheduler.scheduler.standby();
+
+		// Listing 10 jobs
+		for( int i=0; i<10; i++ )
+			this.scheduler.saveJob( null, "job " + i, "cmd", "0 0 0 ? 1 *", "app" );
+
+		long before = System.nanoTime();
+		for( int i=0; i<100; i++ )
+			Assert.assertEquals( 10, this.scheduler.listJobs().size());
+
+		long smallListing = (System.nanoTime() - before) / 100;
+
+		// Listing 2,000 jobs
+		for( int i=10; i<2000; i++ )
+			this.scheduler.saveJob( null, "job " + i, "cmd", "0 0 0 ? 1 *", "app" );
+
+		before = System.nanoTime();
+		for( int i=0; i<100; i++ )
+			Assert.assertEquals( 2000, this.scheduler.listJobs().size());
+
+		long bigListing = (System.nanoTime() - before) / 100;
+		logger.info( "Listing 10 jobs: " + smallListing / 1000 + " us. Listing 2,000 jobs: " + bigListing / 1000 + " us." );
+
+		Assert.assertEquals( 2000, this.scheduler.scheduler.getJobKeys( GroupMatcher.anyJobGroup()).size());
+		Assert.assertEquals( Long.valueOf( 2000 ), this.manager.metricsMngr().getGauges().get( IMetricsMngr.SCHEDULER_JOBS ));
+
+		// A job that fires every second, among the 2,000 others
+		String jobId = this.scheduler.saveJob( null, "frequent job", "cmd", "* * * * * ?", "app" );
+		this.scheduler.scheduler.start();
+
+		String executionKey = IMetricsMngr.SCHEDULER_JOB_EXECUTION + jobId;
+		String lagKey = IMetricsMngr.SCHEDULER_JOB_LAG + jobId;
+		HistogramSnapshot execution;
+		while(( execution = this.manager.metricsMngr().getHistograms().get( executionKey )) == null
+				|| execution.getCount() < 3 )
+			Thread.sleep( 100 );
+
+		HistogramSnapshot lag = this.manager.metricsMngr().getHistograms().get( lagKey );
+		Assert.assertNotNull( lag );
+		logger.info( "Firing lag with 2,000 jobs: " + lag );
+		Assert.assertTrue( lag.toString(), lag.getP99() < 1000 );
+	}
 }
@@ -28,38 +28,83 @@ package net.roboconf.dm.templating.internal;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import net.roboconf.core.model.beans.Application;
 import net.roboconf.core.model.beans.ApplicationTemplate;
 import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.model.runtime.EventType;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.dm.management.events.IDmListener;
+import net.roboconf.dm.templating.internal.templates.GenerationCache;
+import net.roboconf.dm.templating.internal.templates.GenerationReport;
 import net.roboconf.dm.templating.internal.templates.TemplateEntry;
 import net.roboconf.dm.templating.internal.templates.TemplateUtils;
 import net.roboconf.dm.templating.internal.templates.TemplateWatcher;
 
 /**
+ * Generates files from templates when applications change.
+ * <p>
+ * Generations are asynchronous. Requests for a same application that arrive within
+ * the debounce delay (counted from the first pending request) are merged. Generations
+ * are performed one at a time, by a single thread. So, a storm of notifications
+ * (e.g. a deployment) results in a few generations and never blocks the notifier.
+ * </p>
+ * <p>
+ * Rendering is CPU-bound and independent for every template and application.
+ * So, the applications to generate at the same time (new templates, or several
+ * pending generations that are due) and their templates are rendered in parallel,
+ * in a fork/join pool.
+ * </p>
+ *
  * @author Pierre Bourret - Université Joseph Fourier
  * @author Vincent Zurczak - Linagora
  */
 public class TemplatingManager implements IDmListener {
 
 	public static final String ID = "DM's Templating";
+	static final long DEFAULT_DEBOUNCE_DELAY = 200;
+	static final int MAX_GENERATION_ATTEMPTS = 3;
 
 	// Locks
 	private final Object watcherLock = new Object();
 	private final Object generationLock = new Object();
+	private final Object pendingLock = new Object();
 
 	// Injected by iPojo
 	private long pollInterval;
+	private long debounceDelay = DEFAULT_DEBOUNCE_DELAY;
 	Manager dm;
 
+	// Asynchronous generation (guarded by "pendingLock")
+	final Map<String,PendingGeneration> pendingApplications = new HashMap<> ();
+	private ScheduledExecutorService generationExecutor = newGenerationExecutor();
+
+	// Incremental generation (guarded by "generationLock")
+	final GenerationCache generationCache = new GenerationCache();
+
+	// Parallel rendering (guarded by "generationLock")
+	private ForkJoinPool renderingPool;
+	private boolean stopped = false;
+
 	// Fields
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	File templatesDIR, outputDIR;
@@ -72,6 +117,10 @@ public class TemplatingManager implements IDmListener {
 
 	/**
 	 * Sets the poll interval for the template watcher.
+	 * <p>
+	 * It is only used when the file system does not support native notifications.
+	 * </p>
+	 *
 	 * @param pollInterval the poll interval, in milliseconds, for the template watcher
 	 */
 	public void setPollInterval( long pollInterval ) {
@@ -85,6 +134,16 @@ public class TemplatingManager implements IDmListener {
 	}
 
 
+	/**
+	 * Sets the debounce delay.
+	 * @param debounceDelay the delay, in milliseconds, during which generation requests for a same application are merged
+	 */
+	public void setDebounceDelay( long debounceDelay ) {
+		this.logger.fine( "Templating debounce delay set to " + debounceDelay );
+		this.debounceDelay = debounceDelay;
+	}
+
+
 	/**
 	 * Sets the templates directory.
 	 * @param templatesDirectory the templates directory
@@ -152,6 +211,15 @@ public class TemplatingManager implements IDmListener {
 	 */
 	public void start() {
 
+		synchronized( this.generationLock ) {
+			this.stopped = false;
+		}
+
+		synchronized( this.pendingLock ) {
+			if( this.generationExecutor == null )
+				this.generationExecutor = newGenerationExecutor();
+		}
+
 		synchronized( this.watcherLock ) {
 			this.logger.config( "The templating manager is starting..." );
 			resetWatcher();
@@ -168,6 +236,22 @@ public class TemplatingManager implements IDmListener {
 			this.logger.config( "The templating manager is stopping..." );
 			stopWatcher();
 		}
+
+		// Pending generations are still performed (in the executor's thread)
+		synchronized( this.pendingLock ) {
+			if( this.generationExecutor != null )
+				this.generationExecutor.shutdown();
+
+			this.generationExecutor = null;
+		}
+
+		synchronized( this.generationLock ) {
+			if( this.renderingPool != null )
+				this.renderingPool.shutdown();
+
+			this.renderingPool = null;
+			this.stopped = true;
+		}
 	}
 
 
@@ -195,12 +279,17 @@ public class TemplatingManager implements IDmListener {
 			this.logger.warning( "Generation from templates is skipped. Invalid output directory." );
 
 		} else if( eventType == EventType.DELETED ) {
+			synchronized( this.pendingLock ) {
+				this.pendingApplications.remove( application.getName());
+			}
+
 			synchronized( this.generationLock ) {
 				TemplateUtils.deleteGeneratedFiles( application, this.outputDIR );
+				this.generationCache.forget( application.getName());
 			}
 
 		} else {
-			generate( application );
+			scheduleGeneration( application, null );
 		}
 	}
 
@@ -222,7 +311,13 @@ public class TemplatingManager implements IDmListener {
 	 */
 	@Override
 	public void instance( Instance instance, Application application, EventType eventType ) {
-		application( application, EventType.CHANGED );
+
+		// Changes of states only impact the templates that read this instance.
+		// Instances that appear or disappear may impact any template.
+		if( eventType == EventType.CHANGED && this.outputDIR != null )
+			scheduleGeneration( application, InstanceHelpers.computeInstancePath( instance ));
+		else
+			application( application, EventType.CHANGED );
 	}
 
 
@@ -273,10 +368,16 @@ public class TemplatingManager implements IDmListener {
 	public void processNewTemplates( Collection<TemplateEntry> newTemplates ) {
 
 		if( this.dm != null ) {
+			List<PendingGeneration> generations = new ArrayList<> ();
 			for( ManagedApplication ma : this.dm.applicationMngr().getManagedApplications()) {
-				Collection<TemplateEntry> filteredTemplates = TemplateUtils.findTemplatesForApplication( ma.getName(), newTemplates );
-				generate( ma.getApplication(), filteredTemplates );
+				PendingGeneration generation = new PendingGeneration();
+				generation.application = ma.getApplication();
+				generation.templates = TemplateUtils.findTemplatesForApplication( ma.getName(), newTemplates );
+				generation.everythingChanged = true;
+				generations.add( generation );
 			}
+
+			generate( generations );
 		}
 	}
 
@@ -323,24 +424,202 @@ public class TemplatingManager implements IDmListener {
 
 
 	/**
-	 * Generates files from templates for a given application.
+	 * Schedules the generation of files for a given application.
 	 * <p>
-	 * Templates are retrieved from the watcher.
+	 * If a generation is already pending for this application, nothing is scheduled.
+	 * The pending generation will use the application's state at the moment it runs.
 	 * </p>
 	 *
 	 * @param application an application (not null)
+	 * @param changedPath the path of the instance that changed (null if anything may have changed)
 	 */
-	void generate( Application application ) {
+	void scheduleGeneration( final Application application, String changedPath ) {
+
+		boolean coalesced;
+		synchronized( this.pendingLock ) {
+
+			// Once stopped, nothing can be scheduled anymore (until the next start)
+			if( this.generationExecutor == null ) {
+				this.logger.fine( "The templating manager is stopped. No generation is scheduled for " + application.getName() + "." );
+				return;
+			}
+
+			PendingGeneration pending = this.pendingApplications.get( application.getName());
+			coalesced = pending != null;
+			if( ! coalesced ) {
+				pending = new PendingGeneration();
+				pending.dueTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( this.debounceDelay );
+				this.pendingApplications.put( application.getName(), pending );
+			}
+
+			pending.application = application;
+			if( changedPath == null )
+				pending.everythingChanged = true;
+			else
+				pending.changedPaths.add( changedPath );
+
+			if( ! coalesced )
+				scheduleGeneratePending( application.getName());
+		}
+
+		IMetricsMngr metricsMngr = metricsMngr();
+		if( coalesced && metricsMngr != null )
+			metricsMngr.incrementCounter( IMetricsMngr.TEMPLATING_COALESCED );
+	}
+
+
+	/**
+	 * Puts a generation that failed back in the pending ones.
+	 * <p>
+	 * It is merged with the pending generation of the same application, if any.
+	 * After {@link #MAX_GENERATION_ATTEMPTS} failures, the generation is dropped.
+	 * </p>
+	 *
+	 * @param failed the generation that failed (not null)
+	 */
+	void requeue( PendingGeneration failed ) {
+
+		String name = failed.application.getName();
+		if( failed.failures >= MAX_GENERATION_ATTEMPTS ) {
+			this.logger.warning( "Files generation for application " + name + " failed " + failed.failures + " times. It is dropped until the next change." );
+			return;
+		}
+
+		synchronized( this.pendingLock ) {
+			if( this.generationExecutor == null )
+				return;
+
+			PendingGeneration pending = this.pendingApplications.get( name );
+			if( pending == null ) {
+				failed.templates = null;
+				failed.dueTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( this.debounceDelay );
+				this.pendingApplications.put( name, failed );
+				scheduleGeneratePending( name );
+
+			} else {
+				pending.everythingChanged |= failed.everythingChanged;
+				pending.changedPaths.addAll( failed.changedPaths );
+				pending.failures = Math.max( pending.failures, failed.failures );
+			}
+		}
+	}
+
+
+	/**
+	 * Schedules the execution of the pending generation of an application.
+	 * GuardedBy this.pendingLock
+	 * @param applicationName an application name
+	 */
+	private void scheduleGeneratePending( final String applicationName ) {
+
+		this.generationExecutor.schedule( new Runnable() {
+			@Override
+			public void run() {
+				generatePending( applicationName );
+			}
+
+		}, this.debounceDelay, TimeUnit.MILLISECONDS );
+	}
+
+
+	/**
+	 * @return a new executor for the asynchronous generations
+	 */
+	private static ScheduledExecutorService newGenerationExecutor() {
+
+		return Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+			@Override
+			public Thread newThread( Runnable r ) {
+				Thread thread = new Thread( r, "Roboconf's Templating Generation" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		});
+	}
+
+
+	/**
+	 * Performs the pending generation of an application, if any.
+	 * <p>
+	 * Other pending generations that are due are performed at the same time.
+	 * </p>
+	 *
+	 * @param applicationName an application name
+	 */
+	void generatePending( String applicationName ) {
+
+		Map<String,Application> dueApplications = new HashMap<> ();
+		synchronized( this.pendingLock ) {
+			long now = System.nanoTime();
+			for( Map.Entry<String,PendingGeneration> entry : this.pendingApplications.entrySet()) {
+				if( entry.getKey().equals( applicationName ) || entry.getValue().dueTime - now <= 0 )
+					dueApplications.put( entry.getKey(), entry.getValue().application );
+			}
+		}
+
+		// Applications may have been deleted in the meantime.
+		// Templates are retrieved before acquiring the generation lock, as the watcher's lock
+		// must never be acquired while holding the generation one.
+		Map<String,Collection<TemplateEntry>> appToTemplates = new HashMap<> ();
+		for( Map.Entry<String,Application> entry : dueApplications.entrySet())
+			appToTemplates.put( entry.getKey(), findTemplates( entry.getValue()));
+
+		if( ! appToTemplates.isEmpty()) {
+			synchronized( this.generationLock ) {
+				List<PendingGeneration> generations = new ArrayList<> ();
+				synchronized( this.pendingLock ) {
+					for( Map.Entry<String,Collection<TemplateEntry>> entry : appToTemplates.entrySet()) {
+						PendingGeneration pending = this.pendingApplications.remove( entry.getKey());
+						if( pending != null ) {
+							pending.templates = entry.getValue();
+							generations.add( pending );
+						}
+					}
+				}
+
+				generate( generations );
+			}
+		}
+	}
+
+
+	/**
+	 * Finds the templates for a given application.
+	 * @param application an application (not null)
+	 * @return a non-null collection of templates
+	 */
+	private Collection<TemplateEntry> findTemplates( Application application ) {
 
-		// Get the templates
 		Collection<TemplateEntry> templates = Collections.emptyList();
 		synchronized( this.watcherLock ) {
 			if( this.templateWatcher != null )
 				templates = this.templateWatcher.findTemplatesForApplication( application.getName());
 		}
 
-		// Process them
-		generate( application, templates );
+		return templates;
+	}
+
+
+	/**
+	 * @return the DM's metrics manager, or null if the DM is not available
+	 */
+	private IMetricsMngr metricsMngr() {
+		Manager dm = this.dm;
+		return dm == null ? null : dm.metricsMngr();
+	}
+
+
+	/**
+	 * Generates files from templates for a given application.
+	 * <p>
+	 * Templates are retrieved from the watcher.
+	 * </p>
+	 *
+	 * @param application an application (not null)
+	 */
+	void generate( Application application ) {
+
+		generate( application, findTemplates( application ));
 	}
 
 
@@ -354,19 +633,122 @@ public class TemplatingManager implements IDmListener {
 	 * @param templates a non-null collection of templates
 	 */
 	void generate( Application application, Collection<TemplateEntry> templates ) {
+		generate( application, templates, null );
+	}
+
+
+	/**
+	 * Generates files from templates for a given application.
+	 * @param application an application (not null)
+	 * @param templates a non-null collection of templates
+	 * @param changedPaths the paths of the instances that changed (null if anything may have changed)
+	 */
+	void generate( Application application, Collection<TemplateEntry> templates, Set<String> changedPaths ) {
+
+		PendingGeneration generation = new PendingGeneration();
+		generation.application = application;
+		generation.templates = templates;
+		if( changedPaths == null )
+			generation.everythingChanged = true;
+		else
+			generation.changedPaths.addAll( changedPaths );
+
+		generate( Collections.singletonList( generation ));
+	}
+
+
+	/**
+	 * Generates files from templates for several applications, in parallel.
+	 * @param generations a non-null list of generations
+	 */
+	void generate( List<PendingGeneration> generations ) {
 
+		synchronized( this.generationLock ) {
+			final ForkJoinPool pool = renderingPool();
+			List<ForkJoinTask<?>> tasks = new ArrayList<> ();
+			for( final PendingGeneration generation : generations ) {
+				tasks.add( ForkJoinTask.adapt( new Runnable() {
+					@Override
+					public void run() {
+						generate( generation, pool );
+					}
+				}));
+			}
+
+			TemplateUtils.invokeAll( pool, tasks );
+		}
+	}
+
+
+	/**
+	 * Generates files from templates for a given application.
+	 * <p>
+	 * Errors are logged but not rethrown.
+	 * </p>
+	 *
+	 * @param generation the generation to perform (not null)
+	 * @param pool the pool to render templates in parallel (can be null)
+	 */
+	private void generate( PendingGeneration generation, ForkJoinPool pool ) {
+
+		Application application = generation.application;
 		try {
-			synchronized( this.generationLock ) {
-				TemplateUtils.generate( application, this.outputDIR, templates, this.logger );
+			long before = System.nanoTime();
+			GenerationReport report = TemplateUtils.generate(
+					application, this.outputDIR, generation.templates,
+					this.logger, this.generationCache,
+					generation.everythingChanged ? null : generation.changedPaths,
+					pool );
+
+			IMetricsMngr metricsMngr = metricsMngr();
+			if( metricsMngr != null ) {
+				metricsMngr.incrementCounter( IMetricsMngr.TEMPLATING_RENDERED );
+				metricsMngr.recordDuration( IMetricsMngr.TEMPLATING_GENERATION, System.nanoTime() - before );
+				metricsMngr.addToCounter( IMetricsMngr.TEMPLATING_TEMPLATES_RENDERED, report.getRenderedTemplates());
+				metricsMngr.addToCounter( IMetricsMngr.TEMPLATING_TEMPLATES_SKIPPED, report.getSkippedTemplates());
+				metricsMngr.addToCounter( IMetricsMngr.TEMPLATING_FILES_WRITTEN, report.getWrittenFiles());
+				metricsMngr.addToCounter( IMetricsMngr.TEMPLATING_FILES_UNCHANGED, report.getUnchangedFiles());
 			}
 
 		} catch( IOException e ) {
 			this.logger.warning( "An error occurred while generating files from templates for application " + application );
 			Utils.logException( this.logger, e );
+			generation.failures ++;
+			requeue( generation );
 
 		} catch( Throwable e ) {
 			this.logger.warning( "An unexpected error occurred while generating files from templates for application " + application );
 			Utils.logException( this.logger, new UndeclaredThrowableException( e ));
+			generation.failures ++;
+			requeue( generation );
 		}
 	}
+
+
+	/**
+	 * Gets the pool used to render templates, and creates it if necessary.
+	 * GuardedBy this.generationLock
+	 * @return the pool, or null if the manager was stopped (rendering then occurs in the current thread)
+	 */
+	private ForkJoinPool renderingPool() {
+
+		if( this.renderingPool == null && ! this.stopped )
+			this.renderingPool = new ForkJoinPool();
+
+		return this.renderingPool;
+	}
+
+
+	/**
+	 * A generation to perform (possibly waiting for the debounce delay).
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static final class PendingGeneration {
+		Application application;
+		Collection<TemplateEntry> templates;
+		long dueTime;
+		int failures = 0;
+		boolean everythingChanged = false;
+		final Set<String> changedPaths = new HashSet<> ();
+	}
 }
@@ -102,7 +102,13 @@ public final class ContextUtils {
 			}
 
 			// Instance data.
-			for (final Map.Entry<String, String> dataEntry : instance.data.entrySet()) {
+			// The DM may modify them while the context is built: iterate over a copy.
+			final Map<String, String> dataCopy;
+			synchronized (instance.data) {
+				dataCopy = new LinkedHashMap<String, String>(instance.data);
+			}
+
+			for (final Map.Entry<String, String> dataEntry : dataCopy.entrySet()) {
 				final VariableContextBean data = new VariableContextBean();
 				data.name = dataEntry.getKey();
 				data.value = dataEntry.getValue();
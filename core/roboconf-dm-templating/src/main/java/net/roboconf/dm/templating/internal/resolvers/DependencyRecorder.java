@@ -0,0 +1,113 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.templating.internal.resolvers;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.github.jknack.handlebars.ValueResolver;
+
+import net.roboconf.dm.templating.internal.contexts.ApplicationContextBean;
+import net.roboconf.dm.templating.internal.contexts.InstanceContextBean;
+
+/**
+ * A resolver that records the parts of the context a template reads.
+ * <p>
+ * It must be the first resolver of a context. It never resolves anything itself,
+ * it only observes the resolutions. A template that reads properties of some instances
+ * only needs to be rendered again when one of these instances changes.
+ * </p>
+ * <p>
+ * Some properties cannot be associated with given instances. As an example, the imports
+ * of an instance are updated when the instances it depends on change. And the last
+ * modification date of the context changes every time. Reading them makes the template
+ * depend on all the instances.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class DependencyRecorder implements ValueResolver {
+
+	private final Set<String> instancePaths = new HashSet<> ();
+	private boolean allInstances = false;
+
+
+	@Override
+	public Object resolve( Object context ) {
+		return UNRESOLVED;
+	}
+
+
+	@Override
+	public Object resolve( Object context, String name ) {
+
+		if( context instanceof InstanceContextBean ) {
+			if( "imports".equals( name ))
+				this.allInstances = true;
+			else
+				this.instancePaths.add(((InstanceContextBean) context).getPath());
+
+		} else if( context instanceof ApplicationContextBean && "lastModified".equals( name )) {
+			this.allInstances = true;
+		}
+
+		return UNRESOLVED;
+	}
+
+
+	@Override
+	public Set<Entry<String,Object>> propertySet( Object context ) {
+		return Collections.emptySet();
+	}
+
+
+	/**
+	 * Forgets what was recorded.
+	 */
+	public void reset() {
+		this.instancePaths.clear();
+		this.allInstances = false;
+	}
+
+
+	/**
+	 * @return the paths of the instances whose properties were read
+	 */
+	public Set<String> getInstancePaths() {
+		return this.instancePaths;
+	}
+
+
+	/**
+	 * @return true if what was read may depend on any instance
+	 */
+	public boolean isAllInstances() {
+		return this.allInstances;
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.templating.internal.templates;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.jknack.handlebars.Template;
+
+import net.roboconf.dm.templating.internal.resolvers.DependencyRecorder;
+
+/**
+ * Remembers what was generated for the applications, to avoid useless work.
+ * <p>
+ * For every application and template, it stores the instances the template read
+ * during its last rendering. It also stores a hash of every generated file.
+ * </p>
+ * <p>
+ * This class is thread-safe: templates of a same application can be rendered in parallel.
+ * However, an application is not expected to be generated by several threads at once.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class GenerationCache {
+
+	// Key = application name
+	private final ConcurrentMap<String,ConcurrentMap<File,TemplateDependencies>> appToDependencies = new ConcurrentHashMap<> ();
+	private final ConcurrentMap<String,ConcurrentMap<File,String>> appToOutputHashes = new ConcurrentHashMap<> ();
+
+
+	/**
+	 * Determines whether a template must be rendered for an application.
+	 * @param appName the application name
+	 * @param template the template
+	 * @param target the file to generate
+	 * @param changedPaths the paths of the instances that changed (null if anything may have changed)
+	 * @return true if it must be rendered, false if its output would be the same
+	 */
+	boolean mustRender( String appName, TemplateEntry template, File target, Set<String> changedPaths ) {
+
+		boolean result = true;
+		Map<File,TemplateDependencies> map = this.appToDependencies.get( appName );
+		TemplateDependencies deps = map == null ? null : map.get( template.getTemplateFile());
+
+		// The template must not have been modified since the last rendering,
+		// and the generated file must still exist.
+		if( changedPaths != null
+				&& deps != null
+				&& deps.template == template.getTemplate()
+				&& deps.target.equals( target )
+				&& target.exists()) {
+
+			result = deps.allInstances
+					? ! changedPaths.isEmpty()
+					: ! Collections.disjoint( deps.instancePaths, changedPaths );
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Stores what a template read during its rendering.
+	 * @param appName the application name
+	 * @param template the template
+	 * @param target the file to generate
+	 * @param recorder the recorder that observed the rendering
+	 */
+	void recordDependencies( String appName, TemplateEntry template, File target, DependencyRecorder recorder ) {
+
+		Map<File,TemplateDependencies> map = findOrCreate( this.appToDependencies, appName );
+		map.put( template.getTemplateFile(), new TemplateDependencies( template.getTemplate(), target, recorder ));
+	}
+
+
+	/**
+	 * Determines whether an output differs from what was previously generated.
+	 * <p>
+	 * If it differs, the new output's hash is stored.
+	 * </p>
+	 *
+	 * @param appName the application name
+	 * @param target the generated file
+	 * @param output the new output
+	 * @return true if the file must be written, false if it already has this content
+	 */
+	boolean outputChanged( String appName, File target, String output ) {
+
+		Map<File,String> map = findOrCreate( this.appToOutputHashes, appName );
+		String hash = hash( output );
+		boolean result = ! hash.equals( map.get( target )) || ! target.exists();
+		map.put( target, hash );
+
+		return result;
+	}
+
+
+	/**
+	 * Forgets the hash of a generated file.
+	 * <p>
+	 * Useful when a file could not be written after {@link #outputChanged(String, File, String)}.
+	 * </p>
+	 *
+	 * @param appName the application name
+	 * @param target the generated file
+	 */
+	void forgetOutput( String appName, File target ) {
+
+		Map<File,String> map = this.appToOutputHashes.get( appName );
+		if( map != null )
+			map.remove( target );
+	}
+
+
+	/**
+	 * Forgets everything about an application.
+	 * @param appName the application name
+	 */
+	public void forget( String appName ) {
+		this.appToDependencies.remove( appName );
+		this.appToOutputHashes.remove( appName );
+	}
+
+
+	/**
+	 * Finds or creates the map associated with an application.
+	 * @param appToMap a map whose keys are application names
+	 * @param appName an application name
+	 * @return a non-null map
+	 */
+	private static <V> ConcurrentMap<File,V> findOrCreate( ConcurrentMap<String,ConcurrentMap<File,V>> appToMap, String appName ) {
+
+		ConcurrentMap<File,V> result = appToMap.get( appName );
+		if( result == null ) {
+			ConcurrentMap<File,V> newMap = new ConcurrentHashMap<> ();
+			result = appToMap.putIfAbsent( appName, newMap );
+			if( result == null )
+				result = newMap;
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * @param s a non-null string
+	 * @return the SHA-256 hash of this string
+	 */
+	static String hash( String s ) {
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+			byte[] bytes = digest.digest( s.getBytes( StandardCharsets.UTF_8 ));
+			return new BigInteger( 1, bytes ).toString( 16 );
+
+		} catch( NoSuchAlgorithmException e ) {
+			// All the JVMs must support SHA-256
+			throw new IllegalStateException( e );
+		}
+	}
+
+
+	/**
+	 * What a template read during its last rendering.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static final class TemplateDependencies {
+
+		final Template template;
+		final File target;
+		final boolean allInstances;
+		final Set<String> instancePaths;
+
+
+		/**
+		 * Constructor.
+		 * @param template the rendered template
+		 * @param target the generated file
+		 * @param recorder the recorder that observed the rendering
+		 */
+		TemplateDependencies( Template template, File target, DependencyRecorder recorder ) {
+			this.template = template;
+			this.target = target;
+			this.allInstances = recorder.isAllInstances();
+			this.instancePaths = new HashSet<>( recorder.getInstancePaths());
+		}
+	}
+}
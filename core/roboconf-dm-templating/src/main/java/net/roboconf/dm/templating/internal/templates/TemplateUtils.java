@@ -27,8 +27,18 @@ package net.roboconf.dm.templating.internal.templates;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Logger;
 
 import com.github.jknack.handlebars.Context;
@@ -41,6 +51,7 @@ import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.templating.internal.contexts.ApplicationContextBean;
 import net.roboconf.dm.templating.internal.contexts.ContextUtils;
 import net.roboconf.dm.templating.internal.resolvers.ComponentPathResolver;
+import net.roboconf.dm.templating.internal.resolvers.DependencyRecorder;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -101,43 +112,179 @@ public final class TemplateUtils {
 	 */
 	public static void generate( Application app, File outputDirectory, Collection<TemplateEntry> templates, Logger logger )
 	throws IOException {
+		generate( app, outputDirectory, templates, logger, new GenerationCache(), null );
+	}
 
-		// Create the context on the fly
-		ApplicationContextBean appCtx = ContextUtils.toContext( app );
-		Context wrappingCtx = Context
-				.newBuilder( appCtx )
-				.resolver(
-					MapValueResolver.INSTANCE,
-					JavaBeanValueResolver.INSTANCE,
-					MethodValueResolver.INSTANCE,
-					new ComponentPathResolver()
-				).build();
-
-		// Deal with the templates
-		try {
-			for( TemplateEntry template : templates ) {
 
-				logger.fine( "Processing template " + template.getTemplateFile() + " to application " + app + "." );
+	/**
+	 * Generates files from templates for a given application, incrementally.
+	 * <p>
+	 * Templates that did not read any of the changed instances during their previous
+	 * rendering are not rendered again. And files are only written when their content changed.
+	 * </p>
+	 *
+	 * @param app an application (not null)
+	 * @param outputDirectory the output directory (not null)
+	 * @param templates a non-null collection of templates
+	 * @param logger a logger
+	 * @param cache the cache that remembers previous generations (not null)
+	 * @param changedPaths the paths of the instances that changed (null if anything may have changed)
+	 * @return a non-null report
+	 * @throws IOException if something went wrong
+	 */
+	public static GenerationReport generate(
+			Application app,
+			File outputDirectory,
+			Collection<TemplateEntry> templates,
+			Logger logger,
+			GenerationCache cache,
+			Set<String> changedPaths )
+	throws IOException {
+		return generate( app, outputDirectory, templates, logger, cache, changedPaths, null );
+	}
 
-				File target;
-				String targetFilePath = template.getTargetFilePath();
-				if( ! Utils.isEmptyOrWhitespaces( targetFilePath )) {
-					target = new File( targetFilePath.replace( "${app}", app.getName()));
 
-				} else {
-					String filename = template.getTemplateFile().getName().replaceFirst( "\\.tpl$", "" );
-					target = new File( outputDirectory, app.getName() + "/" + filename );
+	/**
+	 * Generates files from templates for a given application, incrementally and in parallel.
+	 * <p>
+	 * Templates that did not read any of the changed instances during their previous
+	 * rendering are not rendered again. And files are only written when their content changed.
+	 * </p>
+	 * <p>
+	 * The application's context is built once and shared by all the templates.
+	 * Templates are then rendered in parallel, in the given fork/join pool.
+	 * Every output file is written atomically.
+	 * </p>
+	 *
+	 * @param app an application (not null)
+	 * @param outputDirectory the output directory (not null)
+	 * @param templates a non-null collection of templates
+	 * @param logger a logger
+	 * @param cache the cache that remembers previous generations (not null)
+	 * @param changedPaths the paths of the instances that changed (null if anything may have changed)
+	 * @param pool the pool to render the templates (null to render them in the current thread)
+	 * @return a non-null report
+	 * @throws IOException if something went wrong
+	 */
+	public static GenerationReport generate(
+			Application app,
+			File outputDirectory,
+			Collection<TemplateEntry> templates,
+			Logger logger,
+			GenerationCache cache,
+			Set<String> changedPaths,
+			ForkJoinPool pool )
+	throws IOException {
+
+		GenerationReport report = new GenerationReport();
+
+		// Find what must be rendered
+		Map<TemplateEntry,File> templateToTarget = new LinkedHashMap<> ();
+		for( TemplateEntry template : templates ) {
+
+			File target;
+			String targetFilePath = template.getTargetFilePath();
+			if( ! Utils.isEmptyOrWhitespaces( targetFilePath )) {
+				target = new File( targetFilePath.replace( "${app}", app.getName()));
+
+			} else {
+				String filename = template.getTemplateFile().getName().replaceFirst( "\\.tpl$", "" );
+				target = new File( outputDirectory, app.getName() + "/" + filename );
+			}
+
+			if( cache.mustRender( app.getName(), template, target, changedPaths )) {
+				templateToTarget.put( template, target );
+
+			} else {
+				logger.finer( "Template " + template.getTemplateFile() + " does not depend on what changed in application " + app + "." );
+				report.skippedTemplates ++;
+			}
+		}
+
+		// Create the context only when something must be rendered
+		if( ! templateToTarget.isEmpty()) {
+			ApplicationContextBean appCtx = ContextUtils.toContext( app );
+			List<RenderingTask> tasks = new ArrayList<> ();
+			for( Map.Entry<TemplateEntry,File> entry : templateToTarget.entrySet())
+				tasks.add( new RenderingTask( app, appCtx, entry.getKey(), entry.getValue(), cache, logger ));
+
+			invokeAll( pool, tasks );
+
+			// Gather the results
+			IOException error = null;
+			for( RenderingTask task : tasks ) {
+				if( task.error != null ) {
+					error = error == null ? task.error : error;
+					continue;
 				}
 
-				Utils.createDirectory( target.getParentFile());
-				String output = template.getTemplate().apply( wrappingCtx );
-				Utils.writeStringInto( output, target );
+				report.renderedTemplates ++;
+				if( task.written )
+					report.writtenFiles ++;
+				else
+					report.unchangedFiles ++;
+			}
+
+			if( error != null )
+				throw error;
+		}
+
+		return report;
+	}
 
-				logger.fine( "Template " + template.getTemplateFile() + " was processed with application " + app + ". Output is in " + target );
+
+	/**
+	 * Executes tasks and waits for their completion.
+	 * @param pool a fork/join pool (null to execute the tasks in the current thread)
+	 * @param tasks the tasks to execute (not null)
+	 */
+	public static void invokeAll( ForkJoinPool pool, final Collection<? extends ForkJoinTask<?>> tasks ) {
+
+		if( pool == null || tasks.size() < 2 ) {
+			for( ForkJoinTask<?> task : tasks )
+				task.invoke();
+
+		} else if( ForkJoinTask.inForkJoinPool()) {
+			ForkJoinTask.invokeAll( tasks );
+
+		} else {
+			pool.invoke( new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll( tasks );
+				}
+			});
+		}
+	}
+
+
+	/**
+	 * Writes a file atomically.
+	 * <p>
+	 * The content is written in a temporary file, located in the same directory,
+	 * and which then replaces the target. Readers never see a partially written file.
+	 * </p>
+	 *
+	 * @param content the content to write
+	 * @param target the target file (its parent directory must exist)
+	 * @throws IOException if something went wrong
+	 */
+	static void writeAtomically( String content, File target ) throws IOException {
+
+		File tempFile = File.createTempFile( "." + target.getName() + ".", ".tmp", target.getParentFile());
+		try {
+			Utils.writeStringInto( content, tempFile );
+			try {
+				Files.move( tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+			} catch( AtomicMoveNotSupportedException e ) {
+				Files.move( tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
 			}
 
 		} finally {
-			wrappingCtx.destroy();
+			Files.deleteIfExists( tempFile.toPath());
 		}
 	}
 
@@ -172,4 +319,100 @@ public final class TemplateUtils {
 
 		return result;
 	}
+
+
+	/**
+	 * Renders a template for an application.
+	 * <p>
+	 * The application's context is shared by several tasks. It must not be modified.
+	 * </p>
+	 *
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static final class RenderingTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Application app;
+		private final ApplicationContextBean appCtx;
+		private final TemplateEntry template;
+		private final File target;
+		private final GenerationCache cache;
+		private final Logger logger;
+
+		boolean written = false;
+		IOException error;
+
+
+		/**
+		 * Constructor.
+		 * @param app the application
+		 * @param appCtx the application's context
+		 * @param template the template to render
+		 * @param target the file to generate
+		 * @param cache the generation cache
+		 * @param logger a logger
+		 */
+		RenderingTask(
+				Application app,
+				ApplicationContextBean appCtx,
+				TemplateEntry template,
+				File target,
+				GenerationCache cache,
+				Logger logger ) {
+
+			this.app = app;
+			this.appCtx = appCtx;
+			this.template = template;
+			this.target = target;
+			this.cache = cache;
+			this.logger = logger;
+		}
+
+
+		@Override
+		protected void compute() {
+
+			// The recorder is specific to this rendering
+			DependencyRecorder recorder = new DependencyRecorder();
+			Context wrappingCtx = Context
+					.newBuilder( this.appCtx )
+					.resolver(
+						recorder,
+						MapValueResolver.INSTANCE,
+						JavaBeanValueResolver.INSTANCE,
+						MethodValueResolver.INSTANCE,
+						new ComponentPathResolver()
+					).build();
+
+			try {
+				this.logger.fine( "Processing template " + this.template.getTemplateFile() + " to application " + this.app + "." );
+				Utils.createDirectory( this.target.getParentFile());
+				String output = this.template.getTemplate().apply( wrappingCtx );
+				this.cache.recordDependencies( this.app.getName(), this.template, this.target, recorder );
+
+				if( this.cache.outputChanged( this.app.getName(), this.target, output )) {
+					try {
+						writeAtomically( output, this.target );
+
+					} catch( IOException e ) {
+						this.cache.forgetOutput( this.app.getName(), this.target );
+						throw e;
+					}
+
+					this.written = true;
+					this.logger.fine( "Template " + this.template.getTemplateFile() + " was processed with application " + this.app + ". Output is in " + this.target );
+
+				} else {
+					this.logger.fine( "Template " + this.template.getTemplateFile() + " was processed with application " + this.app + ". " + this.target + " was already up-to-date." );
+				}
+
+			} catch( IOException e ) {
+				this.error = e;
+
+			} finally {
+				wrappingCtx.destroy();
+			}
+		}
+	}
 }
@@ -25,18 +25,33 @@
 
 package net.roboconf.dm.templating.internal.templates;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -61,10 +76,29 @@ import net.roboconf.dm.templating.internal.helpers.IsKeyHelper;
 
 /**
  * A file system watcher dedicated to the Roboconf application templates.
+ * <p>
+ * The watcher relies on the native notifications of the file system (NIO's {@link WatchService}).
+ * Changes are then processed as soon as they occur, and an idle DM does not scan the templates
+ * directory. Polling (with commons-io) is only used as a fallback, for file systems that
+ * do not support watching.
+ * </p>
+ * <p>
+ * Only the templates that changed are compiled again. Updates are applied to the
+ * in-memory cache at once, so that readers never see a partially updated set of templates.
+ * </p>
+ *
  * @author Pierre Bourret - Université Joseph Fourier
  */
 public class TemplateWatcher extends FileAlterationListenerAdaptor {
 
+	/**
+	 * How long we wait for other file system events before processing the received ones.
+	 * <p>
+	 * Editors and copies usually generate several events for a single file.
+	 * </p>
+	 */
+	static final long COALESCING_DELAY = 50;
+
 	private static final ThreadFactory THREAD_FACTORY = new WatcherThreadFactory();
 
 	private final Logger logger = Logger.getLogger( getClass().getName());
@@ -75,17 +109,26 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 
 	// FIXME: should we REALLY keep pre-compiled templates in memory?
 	private final Map<File,TemplateEntry> fileToTemplate = new HashMap<> ();
+	private final Map<File,String> fileToContentHash = new HashMap<> ();
 
 	private final TemplatingManager manager;
 	private final File templateDir;
 	private final FileAlterationMonitor monitor;
 
+	// Native watching
+	private final Map<WatchKey,File> keyToDirectory = new HashMap<> ();
+	private WatchService watchService;
+	private Thread watchingThread;
+
+	// Can be set to false to force the polling mode
+	boolean nativeWatching = true;
+
 
 	/**
 	 * Constructor.
 	 * @param manager the templating manager, to which event handling is delegated.
 	 * @param templateDir the templates directory to watch.
-	 * @param pollInterval the poll interval.
+	 * @param pollInterval the poll interval, only used when the file system does not support native watching.
 	 * @throws IOException if there is a problem watching the template directory.
 	 */
 	public TemplateWatcher( final TemplatingManager manager, final File templateDir, final long pollInterval ) {
@@ -114,14 +157,12 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 		FileAlterationObserver observer = new FileAlterationObserver( this.templateDir, fileFilter );
 		observer.addListener( this );
 
-		// Create the monitor.
+		// Create the monitor (fallback).
 		this.monitor = new FileAlterationMonitor( pollInterval, observer );
 		this.monitor.setThreadFactory( THREAD_FACTORY );
 
 		this.manager = manager;
-		this.logger.fine( "Template watcher is watching "
-				+ this.templateDir
-				+ " with an interval of " + pollInterval + " ms." );
+		this.logger.fine( "Template watcher was created for " + this.templateDir + "." );
 	}
 
 
@@ -130,7 +171,12 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 	 * GuardedBy this.manager.globalLock.writeLock()
 	 */
 	public void start() {
+
+		if( this.nativeWatching && startNativeWatching())
+			return;
+
 		try {
+			this.logger.fine( "Template watcher is polling " + this.templateDir + " every " + this.monitor.getInterval() + " ms." );
 			this.monitor.start();
 
 		} catch( final Exception e ) {
@@ -145,6 +191,24 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 	 * GuardedBy this.manager.globalLock.writeLock()
 	 */
 	public void stop() {
+
+		if( this.watchService != null ) {
+			try {
+				this.watchService.close();
+				this.watchingThread.interrupt();
+
+			} catch( final IOException e ) {
+				this.logger.warning("Cannot stop template watcher");
+				Utils.logException(this.logger, e);
+
+			} finally {
+				this.watchService = null;
+				this.watchingThread = null;
+			}
+
+			return;
+		}
+
 		try {
 			this.monitor.stop();
 
@@ -155,6 +219,14 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 	}
 
 
+	/**
+	 * @return true if this watcher relies on native file system notifications
+	 */
+	boolean isWatchingNatively() {
+		return this.watchService != null;
+	}
+
+
 	/**
 	 * Finds the templates that can apply to a given application.
 	 * <p>The templates contained in the returned set may have been removed at the time they are accessed.</p>
@@ -177,7 +249,7 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 	}
 
 	//
-	// FileAlterationListener methods.
+	// FileAlterationListener methods (polling mode).
 	//
 
 	@Override
@@ -186,50 +258,31 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 		if( this.alreadyStarted.getAndSet( true ))
 			return;
 
-		this.logger.fine("Initial provisioning of templates...");
-		final Collection<File> templateFiles = FileUtils.listFiles(
-				this.templateDir,
-
-				// Find readable template files.
-				FileFilterUtils.and(
-						FileFilterUtils.suffixFileFilter( ".tpl" ),
-						CanReadFileFilter.CAN_READ),
-
-				// Directory filter: go through the root template directory and its direct children.
-				new TemplateDirectoryFileFilter( this.templateDir ));
-
-		process( templateFiles );
+		provisionTemplates();
 	}
 
 
 	@Override
 	public void onFileCreate( final File file ) {
 		this.logger.fine( "Template file " + file + " has just been created. Generating files..." );
-		process( Collections.singletonList( file ));
+		processChanges( Collections.singleton( file ), Collections.<File>emptySet());
 	}
 
 
 	@Override
 	public void onFileChange( final File file ) {
 		this.logger.fine( "Template file " + file + " changed. Updating the generated files..." );
-		process( Collections.singletonList( file ));
+		processChanges( Collections.singleton( file ), Collections.<File>emptySet());
 	}
 
 
 	@Override
 	public void onFileDelete( final File file ) {
 
-		this.logger.fine( "Template file " + file + " was deleted. Generated files won't be removed automatically." );
-		this.lock.writeLock().lock();
-		try {
-			this.fileToTemplate.remove( file );
-
-		} finally {
-			this.lock.writeLock().unlock();
-		}
-
 		// Since generated files are not removed automatically,
 		// the manager does not need to be notified.
+		this.logger.fine( "Template file " + file + " was deleted. Generated files won't be removed automatically." );
+		processChanges( Collections.<File>emptySet(), Collections.singleton( file ));
 	}
 
 
@@ -242,10 +295,32 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 	 */
 	public TemplateEntry compileTemplate( final File templateFile ) {
 
+		TemplateEntry templateEntry = null;
+		try {
+			templateEntry = compileTemplate( templateFile, Utils.readFileContent( templateFile ));
+
+		} catch( IOException e ) {
+			this.logger.warning("Cannot compile template " + templateFile);
+			Utils.logException(this.logger, e);
+		}
+
+		return templateEntry;
+	}
+
+
+	/**
+	 * Compiles the given template content and create the associated template entry.
+	 * <p>Compile errors are logged but not rethrown.</p>
+	 *
+	 * @param templateFile the template file
+	 * @param templateFileContent the content of this file
+	 * @return the created template entry, or {@code null} if any problem occurred
+	 */
+	private TemplateEntry compileTemplate( final File templateFile, final String templateFileContent ) {
+
 		TemplateEntry templateEntry = null;
 		try {
 			// Parse the template's content and find the (optional) output
-			String templateFileContent = Utils.readFileContent( templateFile );
 			Matcher m = Pattern.compile( "\\{\\{!\\s*roboconf-output:(.*)\\}\\}" ).matcher( templateFileContent.trim());
 
 			String targetFilePath = null;
@@ -273,31 +348,288 @@ public class TemplateWatcher extends FileAlterationListenerAdaptor {
 
 
 	/**
-	 * Processes (compiles and registers) a collection of template files.
-	 * @param templateFiles a non-null collection
+	 * Compiles and registers all the templates found in the templates directory.
+	 * <p>
+	 * The templating manager is always notified, even if there is no template.
+	 * </p>
+	 */
+	private void provisionTemplates() {
+
+		this.logger.fine("Initial provisioning of templates...");
+		final Collection<File> templateFiles = FileUtils.listFiles(
+				this.templateDir,
+
+				// Find readable template files.
+				FileFilterUtils.and(
+						FileFilterUtils.suffixFileFilter( ".tpl" ),
+						CanReadFileFilter.CAN_READ),
+
+				// Directory filter: go through the root template directory and its direct children.
+				new TemplateDirectoryFileFilter( this.templateDir ));
+
+		Collection<TemplateEntry> templateEntries = processChanges( templateFiles, Collections.<File>emptySet());
+		if( templateEntries.isEmpty())
+			this.manager.processNewTemplates( templateEntries );
+	}
+
+
+	/**
+	 * Processes (compiles and registers) created or modified template files, and removes deleted ones.
+	 * <p>
+	 * Templates whose content did not change are not compiled again. All the updates are
+	 * applied at once to the cache. The templating manager is only notified about compiled templates.
+	 * </p>
+	 *
+	 * @param changedFiles the created or modified template files (not null)
+	 * @param deletedFiles the deleted files or template sub-directories (not null)
+	 * @return the new template entries (never null)
 	 */
-	private void process( Collection<File> templateFiles ) {
+	Collection<TemplateEntry> processChanges( Collection<File> changedFiles, Collection<File> deletedFiles ) {
+
+		// Find the templates whose content changed
+		Map<File,String> fileToContent = new HashMap<> ();
+		Map<File,String> fileToNewHash = new HashMap<> ();
+		for( File f : changedFiles ) {
+			try {
+				String content = Utils.readFileContent( f );
+				String hash = GenerationCache.hash( content );
+				fileToContent.put( f, content );
+				fileToNewHash.put( f, hash );
+
+			} catch( IOException e ) {
+				// The file may have been deleted in the meantime
+				this.logger.warning("Cannot compile template " + f);
+				Utils.logException(this.logger, e);
+			}
+		}
+
+		this.lock.readLock().lock();
+		try {
+			for( Iterator<Map.Entry<File,String>> it = fileToNewHash.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<File,String> entry = it.next();
+				if( entry.getValue().equals( this.fileToContentHash.get( entry.getKey()))) {
+					this.logger.finer( "Template file " + entry.getKey() + " did not change. It is not compiled again." );
+					it.remove();
+				}
+			}
 
-		// Compile them all
+		} finally {
+			this.lock.readLock().unlock();
+		}
+
+		// Compile them (outside the lock)
 		Collection<TemplateEntry> templateEntries = new ArrayList<> ();
-		for( File f : templateFiles ) {
-			final TemplateEntry templateEntry = compileTemplate( f );
+		for( File f : fileToNewHash.keySet()) {
+			final TemplateEntry templateEntry = compileTemplate( f, fileToContent.get( f ));
 			if( templateEntry != null )
 				templateEntries.add( templateEntry );
 		}
 
-		// Add all the template entries
+		// Update the cache at once
 		this.lock.writeLock().lock();
 		try {
-			for( final TemplateEntry te : templateEntries )
+			for( File f : deletedFiles ) {
+				for( Iterator<File> it = this.fileToTemplate.keySet().iterator(); it.hasNext(); ) {
+					File templateFile = it.next();
+					if( f.equals( templateFile ) || f.equals( templateFile.getParentFile())) {
+						it.remove();
+						this.fileToContentHash.remove( templateFile );
+					}
+				}
+			}
+
+			for( final TemplateEntry te : templateEntries ) {
 				this.fileToTemplate.put( te.getTemplateFile(), te );
+				this.fileToContentHash.put( te.getTemplateFile(), fileToNewHash.get( te.getTemplateFile()));
+			}
 
 		} finally {
 			this.lock.writeLock().unlock();
 		}
 
 		// Notify the templating manager
-		this.manager.processNewTemplates( templateEntries );
+		if( ! templateEntries.isEmpty())
+			this.manager.processNewTemplates( templateEntries );
+
+		return templateEntries;
+	}
+
+	//
+	// Native watching.
+	//
+
+	/**
+	 * Starts watching the templates directory with the native notifications of the file system.
+	 * @return true if it succeeded, false if polling should be used instead
+	 */
+	private boolean startNativeWatching() {
+
+		boolean result = false;
+		try {
+			this.watchService = this.templateDir.toPath().getFileSystem().newWatchService();
+
+			// Register the root directory first: sub-directories created from now on will be notified
+			register( this.templateDir );
+			File[] subDirectories = this.templateDir.listFiles( (FileFilter) FileFilterUtils.directoryFileFilter());
+			if( subDirectories != null ) {
+				for( File subDirectory : subDirectories )
+					register( subDirectory );
+			}
+
+			final WatchService ws = this.watchService;
+			this.watchingThread = THREAD_FACTORY.newThread( new Runnable() {
+				@Override
+				public void run() {
+					watch( ws );
+				}
+			});
+
+			this.watchingThread.start();
+			this.logger.fine( "Template watcher is watching " + this.templateDir + " with native notifications." );
+			result = true;
+
+		} catch( IOException | UnsupportedOperationException e ) {
+			this.logger.info( "Native watching is not supported for " + this.templateDir + ". Polling will be used instead." );
+			Utils.logException( this.logger, Level.FINE, e );
+
+			try {
+				if( this.watchService != null )
+					this.watchService.close();
+
+			} catch( IOException e1 ) {
+				Utils.logException( this.logger, Level.FINEST, e1 );
+			}
+
+			this.watchService = null;
+			this.keyToDirectory.clear();
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Registers a directory in the watch service.
+	 * @param directory a directory
+	 * @throws IOException if the registration failed
+	 */
+	private void register( File directory ) throws IOException {
+
+		WatchKey key = directory.toPath().register( this.watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE );
+		synchronized( this.keyToDirectory ) {
+			this.keyToDirectory.put( key, directory );
+		}
+	}
+
+
+	/**
+	 * Waits for file system events and processes them (run by the watching thread).
+	 * @param ws the watch service
+	 */
+	void watch( WatchService ws ) {
+
+		if( ! this.alreadyStarted.getAndSet( true ))
+			provisionTemplates();
+
+		try {
+			for( ;; ) {
+
+				// Block until something happens, then wait a little for related events
+				Set<File> changedFiles = new LinkedHashSet<> ();
+				Set<File> deletedFiles = new LinkedHashSet<> ();
+				WatchKey key = ws.take();
+				do {
+					processEvents( key, changedFiles, deletedFiles );
+					key = ws.poll( COALESCING_DELAY, TimeUnit.MILLISECONDS );
+
+				} while( key != null );
+
+				this.logger.fine( changedFiles.size() + " template(s) changed, " + deletedFiles.size() + " deletion(s)." );
+				processChanges( changedFiles, deletedFiles );
+			}
+
+		} catch( InterruptedException | ClosedWatchServiceException e ) {
+			this.logger.fine( "Template watcher stopped watching " + this.templateDir + "." );
+		}
+	}
+
+
+	/**
+	 * Sorts the events associated with a watch key.
+	 * @param key a watch key
+	 * @param changedFiles the template files that were created or modified
+	 * @param deletedFiles the template files or template sub-directories that were deleted
+	 */
+	private void processEvents( WatchKey key, Set<File> changedFiles, Set<File> deletedFiles ) {
+
+		File directory;
+		synchronized( this.keyToDirectory ) {
+			directory = this.keyToDirectory.get( key );
+		}
+
+		if( directory == null ) {
+			key.cancel();
+			return;
+		}
+
+		FileFilter templateFileFilter = FileFilterUtils.and(
+				FileFilterUtils.suffixFileFilter( ".tpl" ),
+				CanReadFileFilter.CAN_READ );
+
+		for( WatchEvent<?> event : key.pollEvents()) {
+
+			// Events were lost: scan the directory again
+			if( event.kind() == OVERFLOW ) {
+				this.logger.fine( "Some events were lost for " + directory + ". Its templates will be reloaded." );
+				File[] files = directory.listFiles( templateFileFilter );
+				if( files != null ) {
+					for( File f : files ) {
+						if( f.isFile())
+							changedFiles.add( f );
+					}
+				}
+
+				continue;
+			}
+
+			File f = new File( directory, ((Path) event.context()).toString());
+			if( event.kind() == ENTRY_DELETE ) {
+				changedFiles.remove( f );
+				deletedFiles.add( f );
+
+			} else if( f.isDirectory()) {
+				// Only the first-level sub-directories contain templates
+				if( event.kind() != ENTRY_CREATE
+						|| ! this.templateDir.equals( directory ))
+					continue;
+
+				try {
+					register( f );
+
+				} catch( IOException e ) {
+					this.logger.warning( "Template directory " + f + " cannot be watched." );
+					Utils.logException( this.logger, e );
+				}
+
+				// Templates may have been created before the registration
+				File[] files = f.listFiles( templateFileFilter );
+				if( files != null )
+					Collections.addAll( changedFiles, files );
+
+			} else if( templateFileFilter.accept( f )) {
+				deletedFiles.remove( f );
+				changedFiles.add( f );
+			}
+		}
+
+		// The directory is not accessible anymore
+		if( ! key.reset()) {
+			synchronized( this.keyToDirectory ) {
+				this.keyToDirectory.remove( key );
+			}
+
+			deletedFiles.add( directory );
+		}
 	}
 
 
@@ -30,6 +30,9 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -43,7 +46,10 @@ import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.dm.templating.internal.TemplatingManager.PendingGeneration;
 import net.roboconf.dm.templating.internal.templates.TemplateEntry;
+import net.roboconf.dm.templating.internal.templates.TemplateWatcher;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -232,4 +238,212 @@ public class TemplatingManagerTest {
 		mngr.generate( app, te );
 		// No exception thrown while we will get a NPE while iterating on the templates.
 	}
+
+
+	@Test( timeout = 20000 )
+	public void testEventsStormIsCoalesced() throws Exception {
+
+		TemplatingManager mngr = new TemplatingManager();
+		mngr.setOutputDirectory( this.folder.newFolder().getAbsolutePath());
+		mngr.setDebounceDelay( 1000 );
+
+		Manager dm = new Manager();
+		mngr.bindManager( dm );
+		dm.metricsMngr().reset();
+
+		// A deployment changes the states of many instances, in two applications
+		TestApplication app1 = new TestApplication();
+		app1.setName( "app1" );
+		TestApplication app2 = new TestApplication();
+		app2.setName( "app2" );
+
+		try {
+			for( int i=0; i<1000; i++ )
+				mngr.instance( app1.getMySql(), app1, EventType.CHANGED );
+
+			for( int i=0; i<500; i++ )
+				mngr.instance( app2.getTomcat(), app2, EventType.CHANGED );
+
+			// Wait for the generations
+			while( getCounter( dm, IMetricsMngr.TEMPLATING_RENDERED ) < 2 )
+				Thread.sleep( 50 );
+
+			Thread.sleep( 300 );
+			Assert.assertEquals( 2, getCounter( dm, IMetricsMngr.TEMPLATING_RENDERED ));
+			Assert.assertEquals( 1498, getCounter( dm, IMetricsMngr.TEMPLATING_COALESCED ));
+			Assert.assertEquals( 0, mngr.pendingApplications.size());
+
+			// New events result in a new generation
+			mngr.instance( app1.getMySql(), app1, EventType.CHANGED );
+			while( getCounter( dm, IMetricsMngr.TEMPLATING_RENDERED ) < 3 )
+				Thread.sleep( 50 );
+
+		} finally {
+			mngr.stop();
+		}
+	}
+
+
+	@Test
+	public void testDeletionCancelsPendingGenerations() throws Exception {
+
+		TemplatingManager mngr = new TemplatingManager();
+		mngr.setOutputDirectory( this.folder.newFolder().getAbsolutePath());
+		mngr.setDebounceDelay( 60000 );
+
+		Manager dm = new Manager();
+		mngr.bindManager( dm );
+		dm.metricsMngr().reset();
+
+		TestApplication app = new TestApplication();
+		try {
+			mngr.application( app, EventType.CREATED );
+			mngr.instance( app.getMySql(), app, EventType.CHANGED );
+			Assert.assertEquals( 1, mngr.pendingApplications.size());
+			Assert.assertEquals( 1, getCounter( dm, IMetricsMngr.TEMPLATING_COALESCED ));
+
+			mngr.application( app, EventType.DELETED );
+			Assert.assertEquals( 0, mngr.pendingApplications.size());
+
+			// The scheduled task has nothing to do
+			mngr.generatePending( app.getName());
+			Assert.assertEquals( 0, getCounter( dm, IMetricsMngr.TEMPLATING_RENDERED ));
+
+		} finally {
+			mngr.stop();
+		}
+	}
+
+
+	@Test
+	public void testFailedGenerationIsRequeued() throws Exception {
+
+		TemplatingManager mngr = new TemplatingManager();
+		mngr.setOutputDirectory( this.folder.newFolder().getAbsolutePath());
+		mngr.setDebounceDelay( 60000 );
+
+		Application app = new Application( "test", null );
+		Collection<TemplateEntry> te = new ArrayList<> ();
+		te.add( null );
+
+		try {
+			// The rendering fails: the generation is pending again
+			mngr.generate( app, te, Collections.singleton( "/vm" ));
+			Assert.assertEquals( 1, mngr.pendingApplications.size());
+
+			PendingGeneration pending = mngr.pendingApplications.get( app.getName());
+			Assert.assertEquals( 1, pending.failures );
+			Assert.assertFalse( pending.everythingChanged );
+			Assert.assertEquals( Collections.singleton( "/vm" ), pending.changedPaths );
+
+			// After too many failures, the generation is dropped
+			mngr.pendingApplications.clear();
+			pending.failures = TemplatingManager.MAX_GENERATION_ATTEMPTS;
+			mngr.requeue( pending );
+			Assert.assertEquals( 0, mngr.pendingApplications.size());
+
+		} finally {
+			mngr.stop();
+		}
+	}
+
+
+	@Test
+	public void testNoGenerationIsScheduledOnceStopped() throws Exception {
+
+		TemplatingManager mngr = new TemplatingManager();
+		mngr.setOutputDirectory( this.folder.newFolder().getAbsolutePath());
+		mngr.setDebounceDelay( 60000 );
+
+		TestApplication app = new TestApplication();
+		try {
+			mngr.stop();
+			mngr.instance( app.getMySql(), app, EventType.CHANGED );
+			Assert.assertEquals( 0, mngr.pendingApplications.size());
+
+			// Restarting allows generations again
+			mngr.start();
+			mngr.instance( app.getMySql(), app, EventType.CHANGED );
+			Assert.assertEquals( 1, mngr.pendingApplications.size());
+
+		} finally {
+			mngr.stop();
+		}
+	}
+
+
+	@Test
+	public void testFullRegeneration_parallel() throws Exception {
+
+		// 20 templates
+		File templatesDirectory = this.folder.newFolder();
+		TemplateWatcher watcher = new TemplateWatcher( null, templatesDirectory, 100 );
+		List<TemplateEntry> templates = new ArrayList<> ();
+		for( int i=0; i<20; i++ ) {
+			File tplFile = new File( templatesDirectory, "t" + i + ".txt.tpl" );
+			Utils.writeStringInto( "Template " + i + "\n{{#all}}{{path}} - {{status}} - {{component}}\n{{/all}}", tplFile );
+			templates.add( watcher.compileTemplate( tplFile ));
+		}
+
+		// 100 applications
+		Manager dm = new Manager();
+		TestManagerWrapper managerWrapper = new TestManagerWrapper( dm );
+		for( int i=0; i<100; i++ ) {
+			TestApplication app = new TestApplication();
+			app.setName( "app-" + i );
+			app.setDirectory( this.folder.newFolder());
+			managerWrapper.addManagedApplication( new ManagedApplication( app ));
+		}
+
+		// Sequential rendering (a stopped manager renders in the current thread)
+		TemplatingManager sequentialMngr = new TemplatingManager();
+		File sequentialOutput = this.folder.newFolder();
+		sequentialMngr.setOutputDirectory( sequentialOutput.getAbsolutePath());
+		sequentialMngr.bindManager( dm );
+		sequentialMngr.stop();
+
+		long before = System.nanoTime();
+		sequentialMngr.processNewTemplates( templates );
+		long sequentialDuration = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - before );
+
+		// Parallel rendering
+		TemplatingManager parallelMngr = new TemplatingManager();
+		File parallelOutput = this.folder.newFolder();
+		parallelMngr.setOutputDirectory( parallelOutput.getAbsolutePath());
+		parallelMngr.bindManager( dm );
+
+		try {
+			before = System.nanoTime();
+			parallelMngr.processNewTemplates( templates );
+			long parallelDuration = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - before );
+
+			Logger logger = Logger.getLogger( getClass().getName());
+			logger.info( "Full regeneration of 100 applications x 20 templates: " + sequentialDuration + " ms (sequential), " + parallelDuration + " ms (parallel)." );
+
+		} finally {
+			parallelMngr.stop();
+		}
+
+		// The same files were generated
+		for( int i=0; i<100; i++ ) {
+			for( int j=0; j<20; j++ ) {
+				String path = "app-" + i + "/t" + j + ".txt";
+				File sequentialFile = new File( sequentialOutput, path );
+				File parallelFile = new File( parallelOutput, path );
+
+				Assert.assertTrue( path, sequentialFile.exists());
+				Assert.assertTrue( path, parallelFile.exists());
+				Assert.assertEquals( path, Utils.readFileContent( sequentialFile ), Utils.readFileContent( parallelFile ));
+			}
+		}
+
+		// No temporary file remains
+		Assert.assertEquals( 20, new File( parallelOutput, "app-0" ).listFiles().length );
+	}
+
+
+	private static long getCounter( Manager dm, String name ) {
+		Long result = dm.metricsMngr().getCounters().get( name );
+		return result == null ? 0 : result;
+	}
 }
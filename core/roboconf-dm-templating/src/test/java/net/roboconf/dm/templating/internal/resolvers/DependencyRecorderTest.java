@@ -0,0 +1,89 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.templating.internal.resolvers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.dm.templating.internal.contexts.ApplicationContextBean;
+import net.roboconf.dm.templating.internal.contexts.ContextUtils;
+import net.roboconf.dm.templating.internal.contexts.InstanceContextBean;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class DependencyRecorderTest {
+
+	@Test
+	public void testRecording() {
+
+		ApplicationContextBean appCtx = ContextUtils.toContext( new TestApplication());
+		InstanceContextBean firstInstance = appCtx.getInstances().iterator().next();
+
+		DependencyRecorder recorder = new DependencyRecorder();
+		Assert.assertTrue( recorder.getInstancePaths().isEmpty());
+		Assert.assertFalse( recorder.isAllInstances());
+
+		// It never resolves anything
+		Assert.assertEquals( DependencyRecorder.UNRESOLVED, recorder.resolve( appCtx ));
+		Assert.assertEquals( DependencyRecorder.UNRESOLVED, recorder.resolve( appCtx, "name" ));
+		Assert.assertEquals( DependencyRecorder.UNRESOLVED, recorder.resolve( firstInstance, "status" ));
+		Assert.assertEquals( DependencyRecorder.UNRESOLVED, recorder.resolve( "some string", "length" ));
+		Assert.assertEquals( DependencyRecorder.UNRESOLVED, recorder.resolve( null, null ));
+		Assert.assertTrue( recorder.propertySet( firstInstance ).isEmpty());
+
+		// Only instances were recorded
+		Assert.assertEquals( 1, recorder.getInstancePaths().size());
+		Assert.assertTrue( recorder.getInstancePaths().contains( firstInstance.getPath()));
+		Assert.assertFalse( recorder.isAllInstances());
+
+		// Reset
+		recorder.reset();
+		Assert.assertTrue( recorder.getInstancePaths().isEmpty());
+		Assert.assertFalse( recorder.isAllInstances());
+	}
+
+
+	@Test
+	public void testPropertiesThatDependOnAllInstances() {
+
+		ApplicationContextBean appCtx = ContextUtils.toContext( new TestApplication());
+		InstanceContextBean firstInstance = appCtx.getInstances().iterator().next();
+
+		// Imports are updated when other instances change
+		DependencyRecorder recorder = new DependencyRecorder();
+		recorder.resolve( firstInstance, "imports" );
+		Assert.assertTrue( recorder.isAllInstances());
+		Assert.assertTrue( recorder.getInstancePaths().isEmpty());
+
+		// The last modification date changes every time
+		recorder.reset();
+		recorder.resolve( appCtx, "lastModified" );
+		Assert.assertTrue( recorder.isAllInstances());
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.dm.templating.internal.templates;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.github.jknack.handlebars.Template;
+
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.templating.internal.contexts.ApplicationContextBean;
+import net.roboconf.dm.templating.internal.contexts.ContextUtils;
+import net.roboconf.dm.templating.internal.contexts.InstanceContextBean;
+import net.roboconf.dm.templating.internal.resolvers.DependencyRecorder;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class GenerationCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void testMustRender() throws Exception {
+
+		File target = this.folder.newFile();
+		TemplateEntry te = new TemplateEntry( new File( "t.tpl" ), null, Mockito.mock( Template.class ), null );
+		GenerationCache cache = new GenerationCache();
+
+		// Nothing was recorded
+		Assert.assertTrue( cache.mustRender( "app", te, target, null ));
+		Assert.assertTrue( cache.mustRender( "app", te, target, Collections.singleton( "/vm" )));
+
+		// The template read one instance
+		DependencyRecorder recorder = new DependencyRecorder();
+		ApplicationContextBean appCtx = ContextUtils.toContext( new TestApplication());
+		InstanceContextBean instanceCtx = appCtx.getInstances().iterator().next();
+		recorder.resolve( instanceCtx, "status" );
+		cache.recordDependencies( "app", te, target, recorder );
+
+		Assert.assertTrue( cache.mustRender( "app", te, target, null ));
+		Assert.assertTrue( cache.mustRender( "app", te, target, Collections.singleton( instanceCtx.getPath())));
+		Assert.assertTrue( cache.mustRender( "app", te, target, new HashSet<>( Arrays.asList( "/other", instanceCtx.getPath()))));
+		Assert.assertFalse( cache.mustRender( "app", te, target, Collections.singleton( "/other" )));
+		Assert.assertFalse( cache.mustRender( "app", te, target, Collections.<String>emptySet()));
+
+		// Other applications, or a modified template, are not concerned
+		Assert.assertTrue( cache.mustRender( "app2", te, target, Collections.singleton( "/other" )));
+		TemplateEntry modifiedTe = new TemplateEntry( te.getTemplateFile(), null, Mockito.mock( Template.class ), null );
+		Assert.assertTrue( cache.mustRender( "app", modifiedTe, target, Collections.singleton( "/other" )));
+
+		// Deleted output files are generated again
+		Utils.deleteFilesRecursively( target );
+		Assert.assertTrue( cache.mustRender( "app", te, target, Collections.singleton( "/other" )));
+
+		// Templates that depend on all the instances
+		recorder.resolve( instanceCtx, "imports" );
+		cache.recordDependencies( "app", te, target, recorder );
+		Utils.writeStringInto( "", target );
+		Assert.assertTrue( cache.mustRender( "app", te, target, Collections.singleton( "/other" )));
+		Assert.assertFalse( cache.mustRender( "app", te, target, Collections.<String>emptySet()));
+
+		// Forget the application
+		cache.forget( "app" );
+		Assert.assertTrue( cache.mustRender( "app", te, target, Collections.<String>emptySet()));
+	}
+
+
+	@Test
+	public void testOutputChanged() throws Exception {
+
+		File target = this.folder.newFile();
+		GenerationCache cache = new GenerationCache();
+
+		Assert.assertTrue( cache.outputChanged( "app", target, "content" ));
+		Assert.assertFalse( cache.outputChanged( "app", target, "content" ));
+		Assert.assertTrue( cache.outputChanged( "app", target, "another content" ));
+		Assert.assertFalse( cache.outputChanged( "app", target, "another content" ));
+
+		// Other applications do not share hashes
+		Assert.assertTrue( cache.outputChanged( "app2", target, "another content" ));
+
+		// Deleted files must be written again
+		Utils.deleteFilesRecursively( target );
+		Assert.assertTrue( cache.outputChanged( "app", target, "another content" ));
+
+		// Forget everything
+		cache.forget( "app" );
+		target.createNewFile();
+		Assert.assertTrue( cache.outputChanged( "app", target, "another content" ));
+	}
+
+
+	@Test
+	public void testHash() {
+
+		Assert.assertEquals( GenerationCache.hash( "test" ), GenerationCache.hash( "test" ));
+		Assert.assertNotEquals( GenerationCache.hash( "test" ), GenerationCache.hash( "test2" ));
+		Assert.assertNotEquals( GenerationCache.hash( "" ), GenerationCache.hash( "test" ));
+	}
+}
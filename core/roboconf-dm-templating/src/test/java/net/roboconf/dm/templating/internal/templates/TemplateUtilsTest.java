@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 import org.junit.Assert;
@@ -42,6 +43,9 @@ import org.junit.rules.TemporaryFolder;
 
 import net.roboconf.core.internal.tests.TestUtils;
 import net.roboconf.core.model.beans.Application;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.beans.Instance.InstanceStatus;
+import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.templating.internal.helpers.GenerationTest;
 
@@ -277,6 +281,143 @@ public class TemplateUtilsTest {
 	}
 
 
+	@Test
+	public void testGenerate_incremental() throws Exception {
+
+		// 50 templates, half of them reading the Apache instance, the other half reading MySQL
+		File dir = this.folder.newFolder();
+		TemplateWatcher watcher = new TemplateWatcher( null, dir, 100 );
+		List<TemplateEntry> templates = new ArrayList<> ();
+		for( int i=0; i<50; i++ ) {
+			String componentPath = i % 2 == 0 ? "/Vm/Apache" : "/Vm/MySql";
+			File tplFile = new File( dir, "t" + i + ".txt.tpl" );
+			Utils.writeStringInto( "{{#all '" + componentPath + "'}}{{name}} ({{status}}){{/all}}", tplFile );
+
+			TemplateEntry te = watcher.compileTemplate( tplFile );
+			Assert.assertNotNull( te );
+			templates.add( te );
+		}
+
+		// 10 applications
+		List<Application> apps = new ArrayList<> ();
+		for( int i=0; i<10; i++ ) {
+			Application app = GenerationTest.testApplicationForTemplates();
+			app.setName( "app-" + i );
+			apps.add( app );
+		}
+
+		Logger logger = Logger.getLogger( getClass().getName());
+		File outputDir = this.folder.newFolder();
+		GenerationCache cache = new GenerationCache();
+
+		// First generation: everything is rendered and written
+		for( Application app : apps ) {
+			GenerationReport report = TemplateUtils.generate( app, outputDir, templates, logger, cache, null );
+			verifyReport( report, 50, 0, 50, 0 );
+		}
+
+		String apachePath = "/ApacheVm/Apache";
+		for( Application app : apps ) {
+
+			// The state of the Apache instance changed: only half of the templates are rendered
+			Instance apache = InstanceHelpers.findInstanceByPath( app, apachePath );
+			Assert.assertNotNull( apache );
+			apache.setStatus( InstanceStatus.DEPLOYED_STARTED );
+
+			GenerationReport report = TemplateUtils.generate( app, outputDir, templates, logger, cache, Collections.singleton( apachePath ));
+			verifyReport( report, 25, 25, 25, 0 );
+			Assert.assertEquals(
+					"Apache (DEPLOYED_STARTED)",
+					Utils.readFileContent( new File( outputDir, app.getName() + "/t0.txt" )));
+
+			// Something changed, but it does not appear in the output: nothing is written
+			apache.data.put( "some", "data" );
+			report = TemplateUtils.generate( app, outputDir, templates, logger, cache, Collections.singleton( apachePath ));
+			verifyReport( report, 25, 25, 0, 25 );
+
+			// An instance no template depends on
+			report = TemplateUtils.generate( app, outputDir, templates, logger, cache, Collections.singleton( "/TomcatVm 1" ));
+			verifyReport( report, 0, 50, 0, 0 );
+
+			// Anything may have changed: everything is rendered, but nothing is written
+			report = TemplateUtils.generate( app, outputDir, templates, logger, cache, null );
+			verifyReport( report, 50, 0, 0, 50 );
+		}
+
+		// Deleted files are generated again
+		File deletedFile = new File( outputDir, "app-0/t1.txt" );
+		Utils.deleteFilesRecursively( deletedFile );
+		Assert.assertFalse( deletedFile.exists());
+
+		GenerationReport report = TemplateUtils.generate( apps.get( 0 ), outputDir, templates, logger, cache, Collections.singleton( apachePath ));
+		verifyReport( report, 26, 24, 1, 25 );
+		Assert.assertTrue( deletedFile.exists());
+		Assert.assertEquals( "MySql (NOT_DEPLOYED)", Utils.readFileContent( deletedFile ));
+	}
+
+
+	@Test
+	public void testGenerate_parallel() throws Exception {
+
+		// 20 templates
+		File dir = this.folder.newFolder();
+		TemplateWatcher watcher = new TemplateWatcher( null, dir, 100 );
+		List<TemplateEntry> templates = new ArrayList<> ();
+		for( int i=0; i<20; i++ ) {
+			File tplFile = new File( dir, "t" + i + ".txt.tpl" );
+			Utils.writeStringInto( "Template " + i + "\n{{#all}}{{path}} ({{status}})\n{{/all}}", tplFile );
+			templates.add( watcher.compileTemplate( tplFile ));
+		}
+
+		Application app = GenerationTest.testApplicationForTemplates();
+		Logger logger = Logger.getLogger( getClass().getName());
+
+		// Sequential rendering
+		File sequentialOutput = this.folder.newFolder();
+		GenerationReport report = TemplateUtils.generate( app, sequentialOutput, templates, logger, new GenerationCache(), null, null );
+		Assert.assertEquals( 20, report.getRenderedTemplates());
+		Assert.assertEquals( 20, report.getWrittenFiles());
+
+		// Parallel rendering
+		File parallelOutput = this.folder.newFolder();
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		try {
+			report = TemplateUtils.generate( app, parallelOutput, templates, logger, new GenerationCache(), null, pool );
+			Assert.assertEquals( 20, report.getRenderedTemplates());
+			Assert.assertEquals( 20, report.getWrittenFiles());
+
+		} finally {
+			pool.shutdown();
+		}
+
+		// Same outputs
+		File[] parallelFiles = new File( parallelOutput, app.getName()).listFiles();
+		Assert.assertNotNull( parallelFiles );
+		Assert.assertEquals( 20, parallelFiles.length );
+		for( File parallelFile : parallelFiles ) {
+			File sequentialFile = new File( sequentialOutput, app.getName() + "/" + parallelFile.getName());
+			Assert.assertEquals( Utils.readFileContent( sequentialFile ), Utils.readFileContent( parallelFile ));
+		}
+	}
+
+
+	@Test
+	public void testWriteAtomically() throws Exception {
+
+		File dir = this.folder.newFolder();
+		File target = new File( dir, "test.txt" );
+
+		TemplateUtils.writeAtomically( "first", target );
+		Assert.assertEquals( "first", Utils.readFileContent( target ));
+
+		TemplateUtils.writeAtomically( "second", target );
+		Assert.assertEquals( "second", Utils.readFileContent( target ));
+
+		// No temporary file remains
+		Assert.assertEquals( 1, dir.listFiles().length );
+	}
+
+
 	@Test( expected = IOException.class )
 	public void testGenerate_io_exception() throws Exception {
 
@@ -289,4 +430,13 @@ public class TemplateUtilsTest {
 		File outputDir = this.folder.newFile();
 		TemplateUtils.generate( app, outputDir, Collections.singleton( te ), logger );
 	}
+
+
+	private static void verifyReport( GenerationReport report, int rendered, int skipped, int written, int unchanged ) {
+
+		Assert.assertEquals( rendered, report.getRenderedTemplates());
+		Assert.assertEquals( skipped, report.getSkippedTemplates());
+		Assert.assertEquals( written, report.getWrittenFiles());
+		Assert.assertEquals( unchanged, report.getUnchangedFiles());
+	}
 }
@@ -27,6 +27,10 @@ package net.roboconf.dm.templating.internal.templates;
 
 import java.io.File;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
 
 import org.junit.Assert;
 import net.roboconf.core.utils.Utils;
@@ -37,6 +41,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 /**
@@ -61,6 +66,7 @@ public class TemplateWatcherWatchingTest {
 		this.templatingMngr = Mockito.mock( TemplatingManager.class );
 
 		this.watcher = new TemplateWatcher( this.templatingMngr, this.templatesDir, DELAY );
+		this.watcher.nativeWatching = useNativeWatching();
 		this.watcher.start();
 
 		// Wait for the watcher to be started
@@ -74,9 +80,18 @@ public class TemplateWatcherWatchingTest {
 	}
 
 
+	/**
+	 * @return true to use native notifications, false to force polling
+	 */
+	protected boolean useNativeWatching() {
+		return true;
+	}
+
+
 	@Test
 	public void testNoTemplate() throws Exception {
 
+		Assert.assertEquals( useNativeWatching(), this.watcher.isWatchingNatively());
 		Assert.assertEquals( 0, this.watcher.findTemplatesForApplication( null ).size());
 		Assert.assertEquals( 0, this.watcher.findTemplatesForApplication( "whatever" ).size());
 	}
@@ -165,4 +180,90 @@ public class TemplateWatcherWatchingTest {
 		Assert.assertEquals( 1, this.watcher.findTemplatesForApplication( null ).size());
 		Assert.assertEquals( 1, this.watcher.findTemplatesForApplication( "any-app-name" ).size());
 	}
+
+
+	@Test
+	public void testManyTemplates_latencyAndIdle() throws Exception {
+
+		// Replace the watcher by one that watches 500 templates
+		this.watcher.stop();
+		for( int i=0; i<500; i++ )
+			Utils.writeStringInto( "Template " + i + ": {{name}}", new File( this.templatesDir, "t" + i + ".txt.tpl" ));
+
+		Mockito.reset( this.templatingMngr );
+		this.watcher = new TemplateWatcher( this.templatingMngr, this.templatesDir, DELAY );
+		this.watcher.nativeWatching = useNativeWatching();
+		this.watcher.start();
+
+		for( int i=0; i<50 && this.watcher.findTemplatesForApplication( null ).size() < 500; i++ )
+			Thread.sleep( 100 );
+
+		Assert.assertEquals( 500, this.watcher.findTemplatesForApplication( null ).size());
+		Mockito.verify( this.templatingMngr, Mockito.times( 1 )).processNewTemplates( Mockito.anyCollectionOf( TemplateEntry.class ));
+		Mockito.reset( this.templatingMngr );
+
+		// At idle, nothing is compiled again.
+		// And with native notifications, the watcher does not consume CPU.
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		long cpuTimeBefore = watcherCpuTime( threadBean );
+		Thread.sleep( DELAY * 3 );
+		long idleCpuTime = watcherCpuTime( threadBean ) - cpuTimeBefore;
+
+		Mockito.verifyZeroInteractions( this.templatingMngr );
+		if( useNativeWatching() && threadBean.isThreadCpuTimeSupported())
+			Assert.assertTrue( "Idle CPU time: " + idleCpuTime + " ns", idleCpuTime < 10000000L );
+
+		// Modify one template and measure the time it takes to be reloaded
+		File modifiedFile = new File( this.templatesDir, "t42.txt.tpl" );
+		TemplateEntry oldEntry = findTemplate( modifiedFile );
+		Assert.assertNotNull( oldEntry );
+
+		long before = System.nanoTime();
+		Utils.writeStringInto( "Template 42 (updated): {{name}}", modifiedFile );
+
+		TemplateEntry newEntry = oldEntry;
+		for( int i=0; i<DELAY * 3 && newEntry == oldEntry; i++ ) {
+			Thread.sleep( 1 );
+			newEntry = findTemplate( modifiedFile );
+		}
+
+		long latency = (System.nanoTime() - before) / 1000000L;
+		Assert.assertNotSame( oldEntry, newEntry );
+		if( useNativeWatching())
+			Assert.assertTrue( "Latency: " + latency + " ms", latency < DELAY );
+
+		// Only the modified template was compiled again
+		@SuppressWarnings( "unchecked" )
+		ArgumentCaptor<Collection<TemplateEntry>> captor = ArgumentCaptor.forClass( (Class<Collection<TemplateEntry>>) (Class<?>) Collection.class );
+		Mockito.verify( this.templatingMngr, Mockito.timeout( DELAY * 2 ).times( 1 )).processNewTemplates( captor.capture());
+		Assert.assertEquals( 1, captor.getValue().size());
+		Assert.assertSame( newEntry, captor.getValue().iterator().next());
+		Assert.assertEquals( 500, this.watcher.findTemplatesForApplication( null ).size());
+	}
+
+
+	private TemplateEntry findTemplate( File templateFile ) {
+
+		TemplateEntry result = null;
+		for( TemplateEntry te : this.watcher.findTemplatesForApplication( null )) {
+			if( templateFile.equals( te.getTemplateFile()))
+				result = te;
+		}
+
+		return result;
+	}
+
+
+	private static long watcherCpuTime( ThreadMXBean threadBean ) {
+
+		long result = 0;
+		if( threadBean.isThreadCpuTimeSupported()) {
+			for( ThreadInfo info : threadBean.getThreadInfo( threadBean.getAllThreadIds())) {
+				if( info != null && "Roboconf's Templates Watcher".equals( info.getThreadName()))
+					result += Math.max( 0, threadBean.getThreadCpuTime( info.getThreadId()));
+			}
+		}
+
+		return result;
+	}
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.api;
+
+import java.util.Collection;
+
+import net.roboconf.core.Constants;
+import net.roboconf.core.model.beans.Application;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.dm.management.ManagedApplication;
+
+/**
+ * A private API to keep idle machines ready for targets (warm pools).
+ * <p>
+ * Targets whose properties define {@value Constants#TARGET_PROPERTY_POOL_SIZE}
+ * have their own pool. Machines in a pool are created with a placeholder identity.
+ * When a scoped instance is deployed on such a target, an idle machine is claimed and
+ * its agent is reassigned to the scoped instance. The pool is then refilled in background.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public interface IWarmPoolMngr {
+
+	/**
+	 * Starts the executor.
+	 */
+	void start();
+
+	/**
+	 * Stops the executor and terminates the idle machines.
+	 */
+	void stop();
+
+	/**
+	 * Adjusts the pools to the sizes found in the targets properties.
+	 * <p>
+	 * Missing machines are created in background. Pools whose size decreased
+	 * (or whose target was deleted) have their extra idle machines terminated.
+	 * </p>
+	 */
+	void refillPools();
+
+	/**
+	 * Claims an idle machine for a scoped instance.
+	 * <p>
+	 * If a machine is available, its agent is asked to work for the scoped instance
+	 * and the pool is refilled in background.
+	 * </p>
+	 *
+	 * @param targetId the ID of the target associated with the scoped instance
+	 * @param ma the managed application
+	 * @param scopedInstance the scoped instance to deploy
+	 * @return the ID of the claimed machine, or null if no idle machine was available
+	 */
+	String claimMachine( String targetId, ManagedApplication ma, Instance scopedInstance );
+
+	/**
+	 * Acknowledges a heart beat sent by the agent of a pooled machine.
+	 * @param applicationName the application name found in the heart beat
+	 * @param scopedInstancePath the scoped instance path found in the heart beat
+	 * @param ipAddress the agent's IP address (can be null)
+	 * @return true if the heart beat was sent by a pooled machine, false otherwise
+	 */
+	boolean acknowledgeHeartBeat( String applicationName, String scopedInstancePath, String ipAddress );
+
+	/**
+	 * @return the placeholder applications whose agents' messages must be listened to (never null)
+	 */
+	Collection<Application> findPoolApplications();
+}
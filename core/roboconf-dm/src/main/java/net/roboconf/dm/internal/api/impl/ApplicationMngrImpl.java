@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import net.roboconf.core.Constants;
@@ -82,6 +83,7 @@ public class ApplicationMngrImpl implements IApplicationMngr {
 	private final IMessagingMngr messagingMngr;
 	private final IRandomMngr randomMngr;
 	private final IAutonomicMngr autonomicMngr;
+	private final AtomicLong applicationsVersion = new AtomicLong();
 
 	private IApplicationTemplateMngr applicationTemplateMngr;
 
@@ -140,6 +142,12 @@ public class ApplicationMngrImpl implements IApplicationMngr {
 	}
 
 
+	@Override
+	public long getApplicationsVersion() {
+		return this.applicationsVersion.get();
+	}
+
+
 	@Override
 	public ManagedApplication createApplication( String name, String description, String tplName, String tplQualifier )
 	throws IOException, AlreadyExistingException, InvalidApplicationException {
@@ -246,6 +254,7 @@ public class ApplicationMngrImpl implements IApplicationMngr {
 		this.logger.info( "Deleting the application called " + app.getName() + "..." );
 		this.nameToManagedApplication.remove( app.getName());
 		app.removeAssociationWithTemplate();
+		this.applicationsVersion.incrementAndGet();
 
 		File targetDirectory = ConfigurationUtils.findApplicationDirectory( app.getName(), this.configurationMngr.getWorkingDirectory());
 		Utils.deleteFilesRecursively( targetDirectory );
@@ -260,6 +269,7 @@ public class ApplicationMngrImpl implements IApplicationMngr {
 		File configurationDirectory = this.configurationMngr.getWorkingDirectory();
 		this.logger.info( "Restoring applications from " + configurationDirectory + "..." );
 		this.nameToManagedApplication.clear();
+		this.applicationsVersion.incrementAndGet();
 
 		File templatesDirectory = new File( configurationDirectory, ConfigurationUtils.APPLICATIONS );
 		for( File dir : Utils.listDirectories( templatesDirectory )) {
@@ -282,6 +292,7 @@ public class ApplicationMngrImpl implements IApplicationMngr {
 
 				ManagedApplication ma = new ManagedApplication( app );
 				this.nameToManagedApplication.put( ma.getName(), ma );
+				this.applicationsVersion.incrementAndGet();
 
 				// Restore the cache for random generation in variables
 				this.randomMngr.restoreRandomValuesCache( app );
@@ -301,6 +312,7 @@ public class ApplicationMngrImpl implements IApplicationMngr {
 
 				ma.getApplication().getRootInstances().clear();
 				ma.getApplication().getRootInstances().addAll( ilr.getRootInstances());
+				ma.instancesStructureChanged();
 
 			} catch( AlreadyExistingException | InvalidApplicationException | IOException e ) {
 				this.logger.warning( "Application restoration failed for directory " + dir + " (" + e.getClass().getSimpleName() + ")." );
@@ -406,6 +418,7 @@ public class ApplicationMngrImpl implements IApplicationMngr {
 		// Register the application
 		ManagedApplication ma = new ManagedApplication( app );
 		this.nameToManagedApplication.put( app.getName(), ma );
+		this.applicationsVersion.incrementAndGet();
 
 		// Save the instances!
 		ConfigurationUtils.saveInstances( ma );
@@ -34,6 +34,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import net.roboconf.core.Constants;
@@ -74,6 +75,7 @@ public class ApplicationTemplateMngrImpl implements IApplicationTemplateMngr {
 	// A set would be enough, but we need to handle concurrent operations.
 	// It is thus more simple to use a concurrent hash map.
 	final Map<ApplicationTemplate,Boolean> templates = new ConcurrentHashMap<> ();
+	private final AtomicLong templatesVersion = new AtomicLong();
 
 	// Loading a new application template involves several other APIs.
 	// To prevent conflicts when several clients load templates, we use a lock.
@@ -106,6 +108,12 @@ public class ApplicationTemplateMngrImpl implements IApplicationTemplateMngr {
 	}
 
 
+	@Override
+	public long getTemplatesVersion() {
+		return this.templatesVersion.get();
+	}
+
+
 	@Override
 	public ApplicationTemplate findTemplate( String name, String version ) {
 
@@ -185,6 +193,7 @@ public class ApplicationTemplateMngrImpl implements IApplicationTemplateMngr {
 
 			// Complete the model
 			this.templates.put( tpl, Boolean.TRUE );
+			this.templatesVersion.incrementAndGet();
 			this.logger.info( "Application template " + tpl.getName() + " was successfully loaded." );
 
 			this.notificationMngr.applicationTemplate( tpl, EventType.CREATED );
@@ -207,6 +216,7 @@ public class ApplicationTemplateMngrImpl implements IApplicationTemplateMngr {
 		} else {
 			this.logger.info( "Deleting the application template called " + tpl.getName() + "..." );
 			this.templates.remove( tpl );
+			this.templatesVersion.incrementAndGet();
 			this.notificationMngr.applicationTemplate( tpl, EventType.DELETED );
 			this.targetsMngr.applicationWasDeleted( tpl );
 
@@ -224,6 +234,7 @@ public class ApplicationTemplateMngrImpl implements IApplicationTemplateMngr {
 		File configurationDirectory = this.configurationMngr.getWorkingDirectory();
 		this.logger.info( "Restoring application templates from " + configurationDirectory + "..." );
 		this.templates.clear();
+		this.templatesVersion.incrementAndGet();
 
 		File templatesDirectory = new File( configurationDirectory, ConfigurationUtils.TEMPLATES );
 		for( File dir : Utils.listDirectories( templatesDirectory )) {
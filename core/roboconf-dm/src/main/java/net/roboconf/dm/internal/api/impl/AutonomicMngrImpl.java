@@ -138,7 +138,7 @@ public class AutonomicMngrImpl implements IAutonomicMngr {
 				this.logger.fine( "No autonomic context was found for application " + ma.getApplication() + "." );
 
 			} else {
-				ctx.registerEvent( event.getEventName());
+				ctx.registerEvent( event.getEventName(), event.getScopedInstancePath());
 				List<Rule> rulesToExecute = ctx.findRulesToExecute();
 				if( rulesToExecute.isEmpty()) {
 					this.logger.fine( "No rule was found after the event '" + event.getEventName() + "' occurred." );
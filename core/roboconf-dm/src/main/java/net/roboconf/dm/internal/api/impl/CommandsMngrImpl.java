@@ -30,15 +30,19 @@ import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Logger;
 
 import net.roboconf.core.Constants;
 import net.roboconf.core.commands.CommandsParser;
 import net.roboconf.core.model.ParsingError;
 import net.roboconf.core.model.beans.Application;
 import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.internal.commands.CommandsCache;
 import net.roboconf.dm.internal.commands.CommandsExecutor;
+import net.roboconf.dm.internal.commands.ParallelRunner;
 import net.roboconf.dm.management.Manager;
 import net.roboconf.dm.management.api.ICommandsMngr;
+import net.roboconf.dm.management.api.IPreferencesMngr;
 import net.roboconf.dm.management.exceptions.CommandException;
 
 /**
@@ -46,7 +50,10 @@ import net.roboconf.dm.management.exceptions.CommandException;
  */
 public class CommandsMngrImpl implements ICommandsMngr {
 
+	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final Manager manager;
+	final CommandsCache commandsCache = new CommandsCache();
+	final ParallelRunner parallelRunner = new ParallelRunner( IPreferencesMngr.Defaults.DEFAULT_COMMANDS_PARALLELISM );
 
 
 	/**
@@ -64,6 +71,7 @@ public class CommandsMngrImpl implements ICommandsMngr {
 		File cmdFile = findCommandFile( app, commandName );
 		Utils.createDirectory( cmdFile.getParentFile());
 		Utils.writeStringInto( commandText, cmdFile );
+		this.commandsCache.invalidate( app, cmdFile );
 	}
 
 
@@ -72,6 +80,7 @@ public class CommandsMngrImpl implements ICommandsMngr {
 
 		File cmdFile = findCommandFile( app, commandName );
 		Utils.deleteFilesRecursively( cmdFile );
+		this.commandsCache.invalidate( app, cmdFile );
 	}
 
 
@@ -123,14 +132,43 @@ public class CommandsMngrImpl implements ICommandsMngr {
 	throws CommandException, NoSuchFileException {
 
 		File cmdFile = findCommandFile( app, commandName );
-		if( ! cmdFile.isFile())
+		if( ! cmdFile.isFile()) {
+			this.commandsCache.invalidate( app, cmdFile );
 			throw new NoSuchFileException( cmdFile.getAbsolutePath());
+		}
+
+		this.parallelRunner.setParallelism( findParallelism());
+		CommandsExecutor executor = new CommandsExecutor(
+				this.manager, app, cmdFile,
+				executionContext,
+				this.commandsCache,
+				this.parallelRunner );
 
-		CommandsExecutor executor = new CommandsExecutor( this.manager, app, cmdFile, executionContext );
 		executor.execute();
 	}
 
 
+	/**
+	 * @return the maximum number of instructions to execute at once (read from the preferences)
+	 */
+	private int findParallelism() {
+
+		int result = IPreferencesMngr.Defaults.DEFAULT_COMMANDS_PARALLELISM;
+		IPreferencesMngr preferencesMngr = this.manager.preferencesMngr();
+		if( preferencesMngr != null ) {
+			String value = preferencesMngr.get( IPreferencesMngr.COMMANDS_PARALLELISM, String.valueOf( IPreferencesMngr.Defaults.DEFAULT_COMMANDS_PARALLELISM ));
+			try {
+				result = Integer.parseInt( value.trim());
+
+			} catch( NumberFormatException e ) {
+				this.logger.warning( "Invalid value for preference " + IPreferencesMngr.COMMANDS_PARALLELISM + ": " + value );
+			}
+		}
+
+		return result;
+	}
+
+
 	private File findCommandFile( Application app, String commandName ) {
 
 		String name = commandName;
@@ -34,6 +34,13 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import net.roboconf.core.model.beans.Application;
@@ -45,12 +52,14 @@ import net.roboconf.core.utils.ResourceUtils;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.internal.api.IRandomMngr;
 import net.roboconf.dm.internal.api.ITargetConfigurator;
+import net.roboconf.dm.internal.api.IWarmPoolMngr;
 import net.roboconf.dm.internal.utils.ConfigurationUtils;
 import net.roboconf.dm.internal.utils.DmUtils;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.api.IAutonomicMngr;
 import net.roboconf.dm.management.api.IInstancesMngr;
 import net.roboconf.dm.management.api.IMessagingMngr;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.dm.management.api.INotificationMngr;
 import net.roboconf.dm.management.api.ITargetHandlerResolver;
 import net.roboconf.dm.management.api.ITargetsMngr;
@@ -67,6 +76,7 @@ import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdUpdateProbeCon
 import net.roboconf.target.api.TargetException;
 import net.roboconf.target.api.TargetHandler;
 import net.roboconf.target.api.TargetHandlerParameters;
+import net.roboconf.target.api.TargetHandlerUtils;
 
 /**
  * @author Noël - LIG
@@ -78,6 +88,8 @@ import net.roboconf.target.api.TargetHandlerParameters;
 public class InstancesMngrImpl implements IInstancesMngr {
 
 	private static final Object LOCK = new Object();
+	static final int MAX_CONCURRENT_CREATIONS = 10;
+
 	private final Logger logger = Logger.getLogger( getClass().getName());
 
 	private final IMessagingMngr messagingMngr;
@@ -88,6 +100,8 @@ public class InstancesMngrImpl implements IInstancesMngr {
 
 	private IAutonomicMngr autonomicMngr;
 	private ITargetHandlerResolver targetHandlerResolver;
+	private IMetricsMngr metricsMngr;
+	private IWarmPoolMngr warmPoolMngr;
 	private String dmDomain;
 
 
@@ -130,6 +144,22 @@ public class InstancesMngrImpl implements IInstancesMngr {
 	}
 
 
+	/**
+	 * @param metricsMngr the metricsMngr to set (can be null)
+	 */
+	public void setMetricsMngr( IMetricsMngr metricsMngr ) {
+		this.metricsMngr = metricsMngr;
+	}
+
+
+	/**
+	 * @param warmPoolMngr the warmPoolMngr to set (can be null)
+	 */
+	public void setWarmPoolMngr( IWarmPoolMngr warmPoolMngr ) {
+		this.warmPoolMngr = warmPoolMngr;
+	}
+
+
 	/**
 	 * @param dmDomain the dmDomain to set
 	 */
@@ -157,7 +187,8 @@ public class InstancesMngrImpl implements IInstancesMngr {
 		// Store the message because we want to make sure the message is not lost
 		ma.storeAwaitingMessage( instance, new MsgCmdAddInstance( scopedInstance ));
 
-		ConfigurationUtils.saveInstances( ma );
+		ConfigurationUtils.saveInstances( ma, this.metricsMngr );
+		ma.instancesStructureChanged();
 		this.notificationMngr.instance( instance, ma.getApplication(), EventType.CREATED );
 	}
 
@@ -165,8 +196,13 @@ public class InstancesMngrImpl implements IInstancesMngr {
 	@Override
 	public void instanceWasUpdated( Instance instance, ManagedApplication ma ) {
 
+		if( this.metricsMngr != null
+				&& instance.getStatus() == InstanceStatus.DEPLOYED_STARTED )
+			this.metricsMngr.stopTiming( IMetricsMngr.INSTANCES_DEPLOY_TO_STARTED, timingKey( ma, instance ));
+
+		ma.instanceChanged( instance );
 		this.notificationMngr.instance( instance, ma.getApplication(), EventType.CHANGED );
-		ConfigurationUtils.saveInstances( ma );
+		ConfigurationUtils.saveInstances( ma, this.metricsMngr );
 	}
 
 
@@ -201,7 +237,8 @@ public class InstancesMngrImpl implements IInstancesMngr {
 
 		// Persist the model and notify
 		this.logger.fine( "Instance " + InstanceHelpers.computeInstancePath( instance ) + " was successfully removed in " + ma.getName() + "." );
-		ConfigurationUtils.saveInstances( ma );
+		ConfigurationUtils.saveInstances( ma, this.metricsMngr );
+		ma.instancesStructureChanged();
 		this.notificationMngr.instance( instance, ma.getApplication(), EventType.DELETED );
 	}
 
@@ -209,6 +246,11 @@ public class InstancesMngrImpl implements IInstancesMngr {
 	@Override
 	public void restoreInstanceStates( ManagedApplication ma, TargetHandler targetHandler ) {
 
+		// Find the machines to check
+		List<Instance> scopedInstancesToCheck = new ArrayList<> ();
+		List<TargetHandlerParameters> parametersToCheck = new ArrayList<> ();
+		List<String> machineIdsToCheck = new ArrayList<> ();
+
 		for( Instance scopedInstance : InstanceHelpers.findAllScopedInstances( ma.getApplication())) {
 			try {
 				// Not associated with a VM? => Everything must be not deployed.
@@ -237,9 +279,40 @@ public class InstancesMngrImpl implements IInstancesMngr {
 						|| ! Objects.equals( targetHandler.getTargetId(), readTargetHandler.getTargetId()))
 					continue;
 
-				// Not a running VM? => Everything must be not deployed.
 				TargetHandlerParameters parameters = parameters( ma, scopedInstance, targetProperties );
-				if( ! targetHandler.isMachineRunning( parameters, machineId )) {
+				scopedInstancesToCheck.add( scopedInstance );
+				parametersToCheck.add( parameters );
+				machineIdsToCheck.add( machineId );
+
+			} catch( Exception e ) {
+				this.logger.severe( "Could not request states for agent " + scopedInstance.getName() + " (I/O exception)." );
+				Utils.logException( this.logger, e );
+			}
+		}
+
+		// Check them all at once (handlers may list machines with a single request)
+		Map<String,Boolean> machineIdToRunning = Collections.emptyMap();
+		if( ! machineIdsToCheck.isEmpty()) {
+			try {
+				machineIdToRunning = TargetHandlerUtils.areMachinesRunning( targetHandler, parametersToCheck, machineIdsToCheck );
+
+			} catch( Exception e ) {
+				this.logger.severe( "Could not determine the state of the machines in " + ma.getName() + "." );
+				Utils.logException( this.logger, e );
+			}
+		}
+
+		for( int i=0; i<scopedInstancesToCheck.size(); i++ ) {
+			Instance scopedInstance = scopedInstancesToCheck.get( i );
+			Boolean running = machineIdToRunning.get( machineIdsToCheck.get( i ));
+			try {
+				// Unknown state? => Keep it as it is.
+				if( running == null ) {
+					this.logger.severe( "Could not request states for agent " + scopedInstance.getName() + " (unknown machine state)." );
+				}
+
+				// Not a running VM? => Everything must be not deployed.
+				else if( ! running ) {
 					DmUtils.markScopedInstanceAsNotDeployed( scopedInstance, ma, this.notificationMngr );
 					releaseLockedTargets( ma.getApplication(), scopedInstance );
 				}
@@ -305,6 +378,12 @@ public class InstancesMngrImpl implements IInstancesMngr {
 					|| newStatus == InstanceStatus.DEPLOYED_STOPPED )
 				instanceResources = ResourceUtils.storeInstanceResources( ma.getTemplateDirectory(), instance );
 
+			// The round trip is timed by the messaging manager, when the message is really sent
+			if( this.metricsMngr != null
+					&& newStatus == InstanceStatus.DEPLOYED_STARTED
+					&& instance.getStatus() != InstanceStatus.DEPLOYED_STARTED )
+				this.metricsMngr.startTiming( IMetricsMngr.INSTANCES_DEPLOY_TO_STARTED, timingKey( ma, instance ));
+
 			MsgCmdChangeInstanceState message = new MsgCmdChangeInstanceState( instance, newStatus, instanceResources );
 			this.messagingMngr.sendMessageSafely( ma, instance, message );
 			this.logger.fine( "A message was (or will be) sent to the agent to change the state of " + instancePath + " in " + ma.getName() + "." );
@@ -322,9 +401,15 @@ public class InstancesMngrImpl implements IInstancesMngr {
 		else
 			initialInstances = ma.getApplication().getRootInstances();
 
+		// Machines are created concurrently, so that target handlers can process them together
 		List<Exception> exceptions = new ArrayList<> ();
+		List<Instance> deployedTargets = deployTargetsConcurrently( ma, initialInstances, exceptions );
+
 		for( Instance initialInstance : initialInstances ) {
 			for( Instance i : InstanceHelpers.buildHierarchicalList( initialInstance )) {
+				if( deployedTargets.contains( i ))
+					continue;
+
 				try {
 					changeInstanceState( ma, i, InstanceStatus.DEPLOYED_STARTED );
 
@@ -392,6 +477,71 @@ public class InstancesMngrImpl implements IInstancesMngr {
 	}
 
 
+	/**
+	 * Deploys several scoped instances concurrently.
+	 * <p>
+	 * Creating a machine may take time. Dispatching the creations concurrently lets target
+	 * handlers process them together (e.g. the jclouds handler can merge them in a single API call).
+	 * </p>
+	 *
+	 * @param ma the managed application
+	 * @param instances the instances to deploy (only the scoped instances are considered)
+	 * @param exceptions a non-null list, to which errors are added
+	 * @return the scoped instances that were processed by this method (never null)
+	 */
+	private List<Instance> deployTargetsConcurrently(
+			final ManagedApplication ma,
+			Collection<Instance> instances,
+			List<Exception> exceptions ) {
+
+		List<Instance> targets = new ArrayList<> ();
+		for( Instance instance : instances ) {
+			if( InstanceHelpers.isTarget( instance ))
+				targets.add( instance );
+		}
+
+		// Nothing to gain with a single machine
+		if( targets.size() < 2 )
+			return Collections.emptyList();
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min( targets.size(), MAX_CONCURRENT_CREATIONS ),
+				new CreationThreadFactory());
+
+		try {
+			List<Future<Void>> futures = new ArrayList<> ();
+			for( final Instance target : targets ) {
+				futures.add( executor.submit( new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						changeInstanceState( ma, target, InstanceStatus.DEPLOYED_STARTED );
+						return null;
+					}
+				}));
+			}
+
+			for( Future<Void> future : futures ) {
+				try {
+					future.get();
+
+				} catch( ExecutionException e ) {
+					Throwable cause = e.getCause();
+					exceptions.add( cause instanceof Exception ? (Exception) cause : e );
+				}
+			}
+
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			exceptions.add( e );
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return targets;
+	}
+
+
 	/**
 	 * Deploys a scoped instance.
 	 * @param ma the managed application
@@ -424,9 +574,13 @@ public class InstancesMngrImpl implements IInstancesMngr {
 		}
 
 		InstanceStatus initialStatus = scopedInstance.getStatus();
+		if( this.metricsMngr != null )
+			this.metricsMngr.startTiming( IMetricsMngr.INSTANCES_DEPLOY_TO_STARTED, timingKey( ma, scopedInstance ));
+
 		try {
 			// State change
 			scopedInstance.setStatus( InstanceStatus.DEPLOYING );
+			ma.instanceChanged( scopedInstance );
 			this.notificationMngr.instance( scopedInstance, ma.getApplication(), EventType.CHANGED );
 
 			// Send the model
@@ -453,35 +607,57 @@ public class InstancesMngrImpl implements IInstancesMngr {
 			TargetHandler targetHandler = this.targetHandlerResolver.findTargetHandler( targetProperties.asMap());
 			TargetHandlerParameters parameters = parameters( ma, scopedInstance, targetProperties );
 
-			// FIXME: there can be many problems here.
-			// Not sure we handle all the possible problems correctly.
-			try {
-				machineId = targetHandler.createMachine( parameters );
-
-			} catch( TargetException e ) {
-				this.targetsMngr.unlockTarget( ma.getApplication(), scopedInstance );
-				throw e;
+			// Is there an idle machine ready for this target?
+			if( this.warmPoolMngr != null ) {
+				String targetId = this.targetsMngr.findTargetId( ma.getApplication(), path );
+				machineId = this.warmPoolMngr.claimMachine( targetId, ma, scopedInstance );
 			}
 
-			scopedInstance.data.put( Instance.MACHINE_ID, machineId );
-			this.logger.fine( "Scoped instance " + path + "'s deployment was successfully requested in " + ma.getName() + ". Machine ID: " + machineId );
+			if( machineId != null ) {
+				// The machine was configured when it was added to the pool.
+				// Its agent will introduce itself with its new identity.
+				// The configuration script (if any) can run right now.
+				scopedInstance.data.put( Instance.MACHINE_ID, machineId );
+				scopedInstance.data.put( Instance.READY_FOR_CFG_MARKER, "true" );
+				this.logger.fine( "Scoped instance " + path + " was assigned an idle machine in " + ma.getName() + ". Machine ID: " + machineId );
 
-			// If the configuration fails, we do not want to mark it as not deployed.
-			// And we want to keep the machine ID.
-			try {
-				targetHandler.configureMachine( parameters, machineId, scopedInstance );
+			} else {
+				// FIXME: there can be many problems here.
+				// Not sure we handle all the possible problems correctly.
+				long start = System.nanoTime();
+				try {
+					machineId = targetHandler.createMachine( parameters );
+					if( this.metricsMngr != null )
+						this.metricsMngr.recordDuration( IMetricsMngr.TARGETS_CREATE_MACHINE + targetHandler.getTargetId(), System.nanoTime() - start );
 
-			} catch( Exception e ) {
-				this.logger.severe( "Configuration for scoped instance '" + path + "' failed in " + ma.getName() + ". " + e.getMessage());
-				Utils.logException( this.logger, e );
+				} catch( TargetException e ) {
+					if( this.metricsMngr != null )
+						this.metricsMngr.incrementCounter( IMetricsMngr.TARGETS_CREATE_MACHINE_FAILURES + targetHandler.getTargetId());
 
-				scopedInstance.setStatus( InstanceStatus.PROBLEM );
-				scopedInstance.data.put( Instance.LAST_PROBLEM, "Machine configuration failed. Reason: " + e.getMessage());
-			}
+					this.targetsMngr.unlockTarget( ma.getApplication(), scopedInstance );
+					throw e;
+				}
+
+				scopedInstance.data.put( Instance.MACHINE_ID, machineId );
+				this.logger.fine( "Scoped instance " + path + "'s deployment was successfully requested in " + ma.getName() + ". Machine ID: " + machineId );
+
+				// If the configuration fails, we do not want to mark it as not deployed.
+				// And we want to keep the machine ID.
+				try {
+					targetHandler.configureMachine( parameters, machineId, scopedInstance );
 
-			this.logger.fine( "Scoped instance " + path + "'s configuration is on its way in " + ma.getName() + "." );
+				} catch( Exception e ) {
+					this.logger.severe( "Configuration for scoped instance '" + path + "' failed in " + ma.getName() + ". " + e.getMessage());
+					Utils.logException( this.logger, e );
 
-			// Schedule post-configuration (script)
+					scopedInstance.setStatus( InstanceStatus.PROBLEM );
+					scopedInstance.data.put( Instance.LAST_PROBLEM, "Machine configuration failed. Reason: " + e.getMessage());
+				}
+
+				this.logger.fine( "Scoped instance " + path + "'s configuration is on its way in " + ma.getName() + "." );
+			}
+
+			// Schedule post-configuration (script), for created and claimed machines
 			this.targetConfigurator.reportCandidate( parameters, scopedInstance );
 
 		} catch( TargetException | IOException e ) {
@@ -493,12 +669,16 @@ public class InstancesMngrImpl implements IInstancesMngr {
 				scopedInstance.data.remove( Instance.TARGET_ACQUIRED );
 			}
 
+			if( this.metricsMngr != null )
+				this.metricsMngr.cancelTiming( IMetricsMngr.INSTANCES_DEPLOY_TO_STARTED, timingKey( ma, scopedInstance ));
+
 			// Restore the state and propagate the exception
 			scopedInstance.setStatus( initialStatus );
 			throw e;
 
 		} finally {
-			ConfigurationUtils.saveInstances( ma );
+			ConfigurationUtils.saveInstances( ma, this.metricsMngr );
+			ma.instanceChanged( scopedInstance );
 			this.notificationMngr.instance( scopedInstance, ma.getApplication(), EventType.CHANGED );
 		}
 	}
@@ -520,6 +700,7 @@ public class InstancesMngrImpl implements IInstancesMngr {
 		try {
 			// State change
 			scopedInstance.setStatus( InstanceStatus.UNDEPLOYING );
+			ma.instanceChanged( scopedInstance );
 			this.notificationMngr.instance( scopedInstance, ma.getApplication(), EventType.CHANGED );
 
 			// Terminate the machine...
@@ -549,6 +730,7 @@ public class InstancesMngrImpl implements IInstancesMngr {
 		} catch( TargetException | IOException e ) {
 			scopedInstance.setStatus( initialStatus );
 			scopedInstance.data.put( Instance.MACHINE_ID, machineId );
+			ma.instanceChanged( scopedInstance );
 			this.notificationMngr.instance( scopedInstance, ma.getApplication(), EventType.CHANGED );
 
 			this.logger.severe( "Failed to undeploy scoped instance '" + path + "' in " + ma.getName() + ". " + e.getMessage());
@@ -557,7 +739,7 @@ public class InstancesMngrImpl implements IInstancesMngr {
 
 		} finally {
 			ma.removeAwaitingMessages( scopedInstance );
-			ConfigurationUtils.saveInstances( ma );
+			ConfigurationUtils.saveInstances( ma, this.metricsMngr );
 		}
 	}
 
@@ -608,6 +790,28 @@ public class InstancesMngrImpl implements IInstancesMngr {
 	}
 
 
+	/**
+	 * Builds the key used to measure operations on an instance.
+	 * @param ma the managed application
+	 * @param instance an instance
+	 * @return a non-null string
+	 */
+	static String timingKey( ManagedApplication ma, Instance instance ) {
+		return timingKey( ma.getName(), InstanceHelpers.computeInstancePath( instance ));
+	}
+
+
+	/**
+	 * Builds the key used to measure operations on an instance.
+	 * @param applicationName the application name
+	 * @param instancePath the instance path
+	 * @return a non-null string
+	 */
+	public static String timingKey( String applicationName, String instancePath ) {
+		return applicationName + " " + instancePath;
+	}
+
+
 	/**
 	 * Reports a set of collections (for bulk actions).
 	 * @param logger
@@ -625,4 +829,22 @@ public class InstancesMngrImpl implements IInstancesMngr {
 			throw new IOException( msg );
 		}
 	}
+
+
+	/**
+	 * A thread factory that creates named daemon threads.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class CreationThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger( 0 );
+
+		@Override
+		public Thread newThread( Runnable r ) {
+
+			Thread t = new Thread( r, "Roboconf - Machine Creations " + this.count.incrementAndGet());
+			t.setDaemon( true );
+			return t;
+		}
+	}
 }
@@ -36,8 +36,10 @@ import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.internal.environment.messaging.RCDm;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.api.IMessagingMngr;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.messaging.api.business.IDmClient;
 import net.roboconf.messaging.api.messages.Message;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeInstanceState;
 
 /**
  * @author Noël - LIG
@@ -49,6 +51,7 @@ public class MessagingMngrImpl implements IMessagingMngr {
 
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private RCDm messagingClient;
+	private IMetricsMngr metricsMngr;
 
 
 	/**
@@ -59,6 +62,14 @@ public class MessagingMngrImpl implements IMessagingMngr {
 	}
 
 
+	/**
+	 * @param metricsMngr the metrics manager (can be null)
+	 */
+	public void setMetricsMngr( IMetricsMngr metricsMngr ) {
+		this.metricsMngr = metricsMngr;
+	}
+
+
 	@Override
 	public void sendMessageSafely( ManagedApplication ma, Instance instance, Message message ) {
 
@@ -73,7 +84,24 @@ public class MessagingMngrImpl implements IMessagingMngr {
 	@Override
 	public void sendMessageDirectly( ManagedApplication ma, Instance scopedInstance, Message message )
 	throws IOException {
-		this.messagingClient.sendMessageToAgent( ma.getApplication(), scopedInstance, message );
+
+		// Round trips are measured from the moment the message is really sent.
+		// Messages that are only stored (the agent is not yet online) are not timed.
+		String timingKey = null;
+		if( this.metricsMngr != null && message instanceof MsgCmdChangeInstanceState ) {
+			timingKey = InstancesMngrImpl.timingKey( ma.getName(), ((MsgCmdChangeInstanceState) message).getInstancePath());
+			this.metricsMngr.startTiming( IMetricsMngr.MESSAGING_AGENT_ROUND_TRIP, timingKey );
+		}
+
+		try {
+			this.messagingClient.sendMessageToAgent( ma.getApplication(), scopedInstance, message );
+
+		} catch( IOException e ) {
+			if( timingKey != null )
+				this.metricsMngr.cancelTiming( IMetricsMngr.MESSAGING_AGENT_ROUND_TRIP, timingKey );
+
+			throw e;
+		}
 	}
 
 
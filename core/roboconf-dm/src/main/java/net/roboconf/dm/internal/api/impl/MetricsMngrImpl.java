@@ -0,0 +1,307 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.internal.api.impl;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import net.roboconf.core.Constants;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.internal.api.impl.beans.Histogram;
+import net.roboconf.dm.jmx.DmMetricsMBean;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.messaging.api.utils.OsgiHelper;
+
+/**
+ * A lightweight metrics registry.
+ * <p>
+ * Timings that are started but never stopped (e.g. an agent that never answered)
+ * are bounded, so that they cannot exhaust the memory. They are also dropped after
+ * several heart beat periods.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class MetricsMngrImpl implements IMetricsMngr, DmMetricsMBean {
+
+	static final int MAX_PENDING_TIMINGS = 10000;
+	static final long PENDING_TIMINGS_MAX_AGE = 10 * Constants.HEARTBEAT_PERIOD;
+	private static final String SEPARATOR = " :: ";
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	final Map<String,AtomicLong> counters = new ConcurrentHashMap<> ();
+	final Map<String,Gauge> gauges = new ConcurrentHashMap<> ();
+	final Map<String,Histogram> histograms = new ConcurrentHashMap<> ();
+	final Map<String,Long> pendingTimings = new ConcurrentHashMap<> ();
+	final AtomicLong lastEviction = new AtomicLong( System.nanoTime());
+	long pendingTimingsMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos( PENDING_TIMINGS_MAX_AGE );
+
+	ServiceRegistration<DmMetricsMBean> serviceReg;
+
+
+	/**
+	 * Constructor.
+	 */
+	public MetricsMngrImpl() {
+
+		registerGauge( PENDING_TIMINGS, new Gauge() {
+			@Override
+			public long getValue() {
+				return MetricsMngrImpl.this.pendingTimings.size();
+			}
+		});
+	}
+
+
+	@Override
+	public void incrementCounter( String name ) {
+		addToCounter( name, 1 );
+	}
+
+
+	@Override
+	public void addToCounter( String name, long delta ) {
+
+		AtomicLong counter = this.counters.get( name );
+		if( counter == null ) {
+			synchronized( this.counters ) {
+				counter = this.counters.get( name );
+				if( counter == null ) {
+					counter = new AtomicLong();
+					this.counters.put( name, counter );
+				}
+			}
+		}
+
+		counter.addAndGet( delta );
+	}
+
+
+	@Override
+	public void registerGauge( String name, Gauge gauge ) {
+		this.gauges.put( name, gauge );
+	}
+
+
+	@Override
+	public void recordDuration( String name, long durationNanos ) {
+
+		Histogram histogram = this.histograms.get( name );
+		if( histogram == null ) {
+			synchronized( this.histograms ) {
+				histogram = this.histograms.get( name );
+				if( histogram == null ) {
+					histogram = new Histogram();
+					this.histograms.put( name, histogram );
+				}
+			}
+		}
+
+		histogram.record( durationNanos );
+	}
+
+
+	@Override
+	public void startTiming( String name, String key ) {
+
+		// Stale timings are looked for once per heart beat period, or when there are too many of them
+		long now = System.nanoTime();
+		long last = this.lastEviction.get();
+		if(( this.pendingTimings.size() >= MAX_PENDING_TIMINGS
+				|| now - last > TimeUnit.MILLISECONDS.toNanos( Constants.HEARTBEAT_PERIOD ))
+				&& this.lastEviction.compareAndSet( last, now ))
+			evictStaleTimings( now );
+
+		if( this.pendingTimings.size() < MAX_PENDING_TIMINGS )
+			this.pendingTimings.put( name + SEPARATOR + key, now );
+		else
+			this.logger.finest( "Too many pending timings. Timing for " + key + " is dropped." );
+	}
+
+
+	@Override
+	public boolean stopTiming( String name, String key ) {
+
+		Long start = this.pendingTimings.remove( name + SEPARATOR + key );
+		if( start != null )
+			recordDuration( name, System.nanoTime() - start );
+
+		return start != null;
+	}
+
+
+	@Override
+	public void cancelTiming( String name, String key ) {
+		this.pendingTimings.remove( name + SEPARATOR + key );
+	}
+
+
+	@Override
+	public Map<String,Long> getCounters() {
+
+		Map<String,Long> result = new TreeMap<> ();
+		for( Map.Entry<String,AtomicLong> entry : this.counters.entrySet())
+			result.put( entry.getKey(), entry.getValue().get());
+
+		return result;
+	}
+
+
+	@Override
+	public Map<String,Long> getGauges() {
+
+		Map<String,Long> result = new TreeMap<> ();
+		for( Map.Entry<String,Gauge> entry : this.gauges.entrySet()) {
+			try {
+				result.put( entry.getKey(), entry.getValue().getValue());
+
+			} catch( Exception e ) {
+				this.logger.fine( "Gauge " + entry.getKey() + " could not be read. " + e.getMessage());
+			}
+		}
+
+		return result;
+	}
+
+
+	@Override
+	public Map<String,HistogramSnapshot> getHistograms() {
+
+		Map<String,HistogramSnapshot> result = new TreeMap<> ();
+		for( Map.Entry<String,Histogram> entry : this.histograms.entrySet())
+			result.put( entry.getKey(), entry.getValue().snapshot());
+
+		return result;
+	}
+
+
+	@Override
+	public Map<String,String> getHistogramSummaries() {
+
+		Map<String,String> result = new TreeMap<> ();
+		for( Map.Entry<String,HistogramSnapshot> entry : getHistograms().entrySet())
+			result.put( entry.getKey(), entry.getValue().toString());
+
+		return result;
+	}
+
+
+	@Override
+	public void remove( String name ) {
+		this.counters.remove( name );
+		this.gauges.remove( name );
+		this.histograms.remove( name );
+	}
+
+
+	@Override
+	public void reset() {
+
+		for( AtomicLong counter : this.counters.values())
+			counter.set( 0 );
+
+		for( Histogram histogram : this.histograms.values())
+			histogram.reset();
+
+		this.pendingTimings.clear();
+	}
+
+
+	/**
+	 * Removes the timings that were started a long time ago.
+	 * @param now the current time, in nanoseconds
+	 */
+	void evictStaleTimings( long now ) {
+
+		int count = 0;
+		for( Iterator<Long> it = this.pendingTimings.values().iterator(); it.hasNext(); ) {
+			if( now - it.next() > this.pendingTimingsMaxAgeNanos ) {
+				it.remove();
+				count ++;
+			}
+		}
+
+		if( count > 0 )
+			this.logger.fine( count + " stale timing(s) were dropped." );
+	}
+
+
+	/**
+	 * Registers this object as a MBean, if we run in an OSGi environment.
+	 * <p>
+	 * Like for the messaging, we register a service in the OSGi registry.
+	 * Apache Aries should then map it to a MBean if the JMX management is available.
+	 * </p>
+	 *
+	 * @param osgiHelper an OSGi helper
+	 */
+	public void registerService( OsgiHelper osgiHelper ) {
+
+		BundleContext bundleCtx = osgiHelper.findBundleContext();
+		if( bundleCtx != null && this.serviceReg == null ) {
+
+			this.logger.fine( "Running in an OSGi environment. Trying to register a MBean for the DM metrics." );
+			Dictionary<String,String> properties = new Hashtable<> ();
+			properties.put( "jmx.objectname", "net.roboconf:type=dm-metrics" );
+			try {
+				this.serviceReg = bundleCtx.registerService( DmMetricsMBean.class, this, properties );
+				this.logger.fine( "A MBean was successfully registered for the DM metrics." );
+
+			} catch( Exception e ) {
+				this.logger.severe( "A MBean could not be registered for the DM metrics." );
+				Utils.logException( this.logger, e );
+			}
+		}
+	}
+
+
+	/**
+	 * Unregisters the MBean, if it was registered.
+	 */
+	public void unregisterService() {
+
+		try {
+			if( this.serviceReg != null )
+				this.serviceReg.unregister();
+
+		} catch( Exception e ) {
+			this.logger.severe( "A MBean could not be unregistered for the DM metrics." );
+			Utils.logException( this.logger, e );
+
+		} finally {
+			this.serviceReg = null;
+		}
+	}
+}
@@ -39,6 +39,8 @@ import net.roboconf.core.userdata.UserDataHelpers;
 import net.roboconf.core.utils.ProgramUtils;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.internal.api.ITargetConfigurator;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.api.IApplicationMngr;
 import net.roboconf.dm.management.api.ITargetHandlerResolver;
 import net.roboconf.target.api.TargetHandler;
 import net.roboconf.target.api.TargetHandlerParameters;
@@ -52,6 +54,7 @@ public class TargetConfiguratorImpl implements ITargetConfigurator {
 	final Map<String,TargetConfiugrationBean> candidates = new ConcurrentHashMap<> ();
 
 	private ITargetHandlerResolver targetHandlerResolver;
+	private IApplicationMngr applicationMngr;
 
 
 	@Override
@@ -79,6 +82,14 @@ public class TargetConfiguratorImpl implements ITargetConfigurator {
 	}
 
 
+	/**
+	 * @param applicationMngr the applicationMngr to set
+	 */
+	public void setApplicationMngr( IApplicationMngr applicationMngr ) {
+		this.applicationMngr = applicationMngr;
+	}
+
+
 	@Override
 	public void reportCandidate( TargetHandlerParameters parameters, Instance scopedInstance ) {
 
@@ -112,6 +123,11 @@ public class TargetConfiguratorImpl implements ITargetConfigurator {
 
 				// Remove the marker
 				scopedInstance.data.remove( Instance.READY_FOR_CFG_MARKER );
+				if( this.applicationMngr != null ) {
+					ManagedApplication ma = this.applicationMngr.findManagedApplicationByName( parameters.getApplicationName());
+					if( ma != null )
+						ma.instanceChanged( scopedInstance );
+				}
 
 				// If there is a script...
 				// If there is a resolver for target handlers...
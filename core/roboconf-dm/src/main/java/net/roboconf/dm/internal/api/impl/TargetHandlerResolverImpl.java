@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import net.roboconf.dm.internal.utils.TargetHelpers;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.dm.management.api.ITargetHandlerResolver;
 import net.roboconf.target.api.TargetException;
 import net.roboconf.target.api.TargetHandler;
@@ -43,6 +44,26 @@ public class TargetHandlerResolverImpl implements ITargetHandlerResolver {
 
 	private final List<TargetHandler> targetHandlers = new ArrayList<> ();
 	private final Logger logger = Logger.getLogger( getClass().getName());
+	private IMetricsMngr metricsMngr;
+
+
+	/**
+	 * @param metricsMngr the metricsMngr to set (can be null)
+	 */
+	public void setMetricsMngr( IMetricsMngr metricsMngr ) {
+		this.metricsMngr = metricsMngr;
+
+		if( metricsMngr != null ) {
+			metricsMngr.registerGauge( IMetricsMngr.TARGETS_HANDLERS, new IMetricsMngr.Gauge() {
+				@Override
+				public long getValue() {
+					synchronized( TargetHandlerResolverImpl.this.targetHandlers ) {
+						return TargetHandlerResolverImpl.this.targetHandlers.size();
+					}
+				}
+			});
+		}
+	}
 
 
 	/**
@@ -101,6 +122,12 @@ public class TargetHandlerResolverImpl implements ITargetHandlerResolver {
 			}
 		}
 
+		if( this.metricsMngr != null ) {
+			this.metricsMngr.incrementCounter( IMetricsMngr.TARGETS_RESOLUTIONS );
+			if( result == null )
+				this.metricsMngr.incrementCounter( IMetricsMngr.TARGETS_RESOLUTION_FAILURES );
+		}
+
 		if( result == null )
 			throw new TargetException( "No deployment handler was found for handler named " + targetId );
 
@@ -39,6 +39,7 @@ import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -96,6 +97,7 @@ public class TargetsMngrImpl implements ITargetsMngr {
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final IConfigurationMngr configurationMngr;
 	private final Map<InstanceContext,String> instanceToCachedId;
+	private final AtomicLong targetsVersion = new AtomicLong();
 
 	final ConcurrentHashMap<String,Boolean> targetIds = new ConcurrentHashMap<> ();
 
@@ -168,6 +170,7 @@ public class TargetsMngrImpl implements ITargetsMngr {
 			Utils.writeStringInto( creator, createdByFile );
 		}
 
+		this.targetsVersion.incrementAndGet();
 		return targetId;
 	}
 
@@ -240,6 +243,7 @@ public class TargetsMngrImpl implements ITargetsMngr {
 			throw new UnauthorizedActionException( "Target " + targetId + " does not exist." );
 
 		Utils.writeStringInto( newTargetContent, targetFile );
+		this.targetsVersion.incrementAndGet();
 	}
 
 
@@ -259,6 +263,7 @@ public class TargetsMngrImpl implements ITargetsMngr {
 		this.targetIds.remove( targetId );
 		File targetDirectory = findTargetDirectory( targetId );
 		Utils.deleteFilesRecursively( targetDirectory );
+		this.targetsVersion.incrementAndGet();
 	}
 
 
@@ -401,6 +406,8 @@ public class TargetsMngrImpl implements ITargetsMngr {
 		// Update the cache
 		for( InstanceContext key : toClean )
 			this.instanceToCachedId.remove( key );
+
+		this.targetsVersion.incrementAndGet();
 	}
 
 
@@ -531,6 +538,12 @@ public class TargetsMngrImpl implements ITargetsMngr {
 	}
 
 
+	@Override
+	public long getTargetsVersion() {
+		return this.targetsVersion.get();
+	}
+
+
 	@Override
 	public TargetWrapperDescriptor findTargetById( String targetId ) {
 
@@ -749,6 +762,8 @@ public class TargetsMngrImpl implements ITargetsMngr {
 
 			this.instanceToCachedId.put( key, targetId );
 		}
+
+		this.targetsVersion.incrementAndGet();
 	}
 
 
@@ -833,6 +848,7 @@ public class TargetsMngrImpl implements ITargetsMngr {
 		}
 
 		writeProperties( props, hintsFile );
+		this.targetsVersion.incrementAndGet();
 	}
 
 
@@ -0,0 +1,734 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.api.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import net.roboconf.core.Constants;
+import net.roboconf.core.model.beans.Application;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.core.model.runtime.TargetWrapperDescriptor;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.internal.api.IWarmPoolMngr;
+import net.roboconf.dm.internal.utils.ConfigurationUtils;
+import net.roboconf.dm.internal.utils.TargetHelpers;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.api.IConfigurationMngr;
+import net.roboconf.dm.management.api.IMessagingMngr;
+import net.roboconf.dm.management.api.ITargetHandlerResolver;
+import net.roboconf.dm.management.api.ITargetsMngr;
+import net.roboconf.dm.management.api.ITargetsMngr.TargetProperties;
+import net.roboconf.messaging.api.business.IDmClient;
+import net.roboconf.messaging.api.business.ListenerCommand;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdReassignAgent;
+import net.roboconf.target.api.TargetException;
+import net.roboconf.target.api.TargetHandler;
+import net.roboconf.target.api.TargetHandlerParameters;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class WarmPoolMngrImpl implements IWarmPoolMngr {
+
+	static final String POOL_APPLICATION_PREFIX = "roboconf-warm-pool-";
+	static final String POOL_FILE_SUFFIX = ".properties";
+	static final String MACHINE_NAME_PREFIX = "machine-";
+	static final long DEFAULT_STARTUP_TIMEOUT = TimeUnit.MINUTES.toMillis( 10 );
+	static final int MAX_THREADS = 10;
+
+	final Map<String,WarmPool> targetIdToPool = new HashMap<> ();
+	long startupTimeout = DEFAULT_STARTUP_TIMEOUT;
+	ExecutorService executor;
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final AtomicLong machineCounter = new AtomicLong();
+	private final IMessagingMngr messagingMngr;
+	private final ITargetsMngr targetsMngr;
+	private final IConfigurationMngr configurationMngr;
+
+	private ITargetHandlerResolver targetHandlerResolver;
+	private String dmDomain;
+
+
+	/**
+	 * Constructor.
+	 * @param messagingMngr
+	 * @param targetsMngr
+	 * @param configurationMngr
+	 */
+	public WarmPoolMngrImpl( IMessagingMngr messagingMngr, ITargetsMngr targetsMngr, IConfigurationMngr configurationMngr ) {
+		this.messagingMngr = messagingMngr;
+		this.targetsMngr = targetsMngr;
+		this.configurationMngr = configurationMngr;
+	}
+
+
+	/**
+	 * @param targetHandlerResolver the targetHandlerResolver to set
+	 */
+	public void setTargetHandlerResolver( ITargetHandlerResolver targetHandlerResolver ) {
+		this.targetHandlerResolver = targetHandlerResolver;
+	}
+
+
+	/**
+	 * @param dmDomain the dmDomain to set
+	 */
+	public void setDmDomain( String dmDomain ) {
+		this.dmDomain = dmDomain;
+	}
+
+
+	@Override
+	public void start() {
+		// Machine creations can be long, several ones can run at once.
+		// Extra tasks are queued.
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				MAX_THREADS, MAX_THREADS,
+				60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable> (),
+				new WarmPoolThreadFactory());
+
+		executor.allowCoreThreadTimeOut( true );
+		this.executor = executor;
+
+		// Idle machines that were not terminated (e.g. the DM crashed) are adopted again
+		restorePools();
+	}
+
+
+	@Override
+	public void stop() {
+
+		if( this.executor != null ) {
+			this.executor.shutdownNow();
+			this.executor = null;
+		}
+
+		// Terminate the idle machines.
+		// Those that could not be terminated remain saved, they will be restored on the next start.
+		List<WarmPool> pools;
+		synchronized( this.targetIdToPool ) {
+			pools = new ArrayList<>( this.targetIdToPool.values());
+			this.targetIdToPool.clear();
+		}
+
+		for( WarmPool pool : pools ) {
+			listen( pool.application, ListenerCommand.STOP );
+
+			List<PooledMachine> machines;
+			synchronized( this.targetIdToPool ) {
+				machines = new ArrayList<>( pool.machines );
+			}
+
+			List<PooledMachine> remaining = new ArrayList<> ();
+			for( PooledMachine machine : machines ) {
+				if( machine.created && ! terminate( machine ))
+					remaining.add( machine );
+			}
+
+			synchronized( this.targetIdToPool ) {
+				pool.machines.retainAll( remaining );
+				savePool( pool );
+			}
+		}
+	}
+
+
+	@Override
+	public void refillPools() {
+
+		// Prevent stupid NPEs
+		if( this.executor == null )
+			return;
+
+		Map<String,Integer> targetIdToSize = new HashMap<> ();
+		for( TargetWrapperDescriptor twd : this.targetsMngr.listAllTargets())
+			targetIdToSize.put( twd.getId(), poolSize( twd.getId()));
+
+		// Pools whose target was deleted must be drained
+		Set<String> targetIds = new HashSet<>( targetIdToSize.keySet());
+		synchronized( this.targetIdToPool ) {
+			targetIds.addAll( this.targetIdToPool.keySet());
+		}
+
+		for( String targetId : targetIds ) {
+			Integer size = targetIdToSize.get( targetId );
+			adjustPool( targetId, size == null ? 0 : size );
+		}
+	}
+
+
+	@Override
+	public String claimMachine( String targetId, ManagedApplication ma, Instance scopedInstance ) {
+
+		PooledMachine claimed = null;
+		synchronized( this.targetIdToPool ) {
+			WarmPool pool = targetId == null ? null : this.targetIdToPool.get( targetId );
+			if( pool != null ) {
+				for( Iterator<PooledMachine> it = pool.machines.iterator(); it.hasNext() && claimed == null; ) {
+					PooledMachine machine = it.next();
+					if( machine.created && machine.ready ) {
+						it.remove();
+						claimed = machine;
+					}
+				}
+
+				if( claimed != null )
+					savePool( pool );
+			}
+		}
+
+		if( claimed == null )
+			return null;
+
+		// Give the agent its new identity
+		String path = InstanceHelpers.computeInstancePath( scopedInstance );
+		String machineId = claimed.instance.data.get( Instance.MACHINE_ID );
+		try {
+			MsgCmdReassignAgent msg = new MsgCmdReassignAgent( ma.getName(), path );
+			this.messagingMngr.getMessagingClient().sendMessageToAgent( claimed.pool.application, claimed.instance, msg );
+			this.logger.fine( "Idle machine " + machineId + " was claimed from the warm pool of target " + targetId + " for " + path + " in " + ma.getName() + "." );
+
+		} catch( IOException e ) {
+			this.logger.warning( "Idle machine " + machineId + " could not be reassigned to " + path + ". It will be terminated. " + e.getMessage());
+			Utils.logException( this.logger, e );
+
+			execute( new TerminationRunnable( claimed ));
+			machineId = null;
+		}
+
+		// Refill the pool in background
+		execute( new RefillRunnable( targetId ));
+		return machineId;
+	}
+
+
+	@Override
+	public boolean acknowledgeHeartBeat( String applicationName, String scopedInstancePath, String ipAddress ) {
+
+		if( applicationName == null
+				|| ! applicationName.startsWith( POOL_APPLICATION_PREFIX ))
+			return false;
+
+		String targetId = applicationName.substring( POOL_APPLICATION_PREFIX.length());
+		synchronized( this.targetIdToPool ) {
+			WarmPool pool = this.targetIdToPool.get( targetId );
+			if( pool != null ) {
+				for( PooledMachine machine : pool.machines ) {
+					if( ! InstanceHelpers.computeInstancePath( machine.instance ).equals( scopedInstancePath ))
+						continue;
+
+					if( ! machine.ready )
+						this.logger.fine( "Idle machine " + scopedInstancePath + " is ready in the warm pool of target " + targetId + "." );
+
+					machine.ready = true;
+					if( ipAddress != null )
+						machine.instance.data.put( Instance.IP_ADDRESS, ipAddress );
+
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+
+	@Override
+	public Collection<Application> findPoolApplications() {
+
+		List<Application> result = new ArrayList<> ();
+		synchronized( this.targetIdToPool ) {
+			for( WarmPool pool : this.targetIdToPool.values())
+				result.add( pool.application );
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Adjusts the number of machines in a pool.
+	 * @param targetId a target ID
+	 * @param size the expected number of machines
+	 */
+	void adjustPool( String targetId, int size ) {
+
+		List<PooledMachine> toCreate = new ArrayList<> ();
+		List<PooledMachine> toTerminate = new ArrayList<> ();
+		Application startListening = null, stopListening = null;
+
+		synchronized( this.targetIdToPool ) {
+			WarmPool pool = this.targetIdToPool.get( targetId );
+			if( pool == null && size > 0 ) {
+				pool = new WarmPool( targetId );
+				this.targetIdToPool.put( targetId, pool );
+				startListening = pool.application;
+			}
+
+			if( pool != null ) {
+
+				// Machines whose agent never showed up are replaced
+				long now = System.currentTimeMillis();
+				for( Iterator<PooledMachine> it = pool.machines.iterator(); it.hasNext(); ) {
+					PooledMachine machine = it.next();
+					if( machine.created
+							&& ! machine.ready
+							&& now - machine.creationTime > this.startupTimeout ) {
+
+						this.logger.warning( "Idle machine " + InstanceHelpers.computeInstancePath( machine.instance ) + " never sent a heart beat. It will be replaced." );
+						it.remove();
+						toTerminate.add( machine );
+					}
+				}
+
+				// Remove the extra machines.
+				// Those being created will be terminated once created.
+				while( pool.machines.size() > size ) {
+					PooledMachine machine = pool.machines.remove( pool.machines.size() - 1 );
+					if( machine.created )
+						toTerminate.add( machine );
+				}
+
+				// Add the missing ones
+				for( int i=pool.machines.size(); i<size; i++ ) {
+					PooledMachine machine = new PooledMachine( pool, MACHINE_NAME_PREFIX + this.machineCounter.incrementAndGet());
+					pool.machines.add( machine );
+					toCreate.add( machine );
+				}
+
+				if( pool.machines.isEmpty()) {
+					this.targetIdToPool.remove( targetId );
+					stopListening = pool.application;
+				}
+
+				if( ! toTerminate.isEmpty())
+					savePool( pool );
+			}
+		}
+
+		if( startListening != null )
+			listen( startListening, ListenerCommand.START );
+
+		for( PooledMachine machine : toTerminate )
+			execute( new TerminationRunnable( machine ));
+
+		for( PooledMachine machine : toCreate )
+			execute( new CreationRunnable( machine ));
+
+		if( stopListening != null )
+			listen( stopListening, ListenerCommand.STOP );
+	}
+
+
+	/**
+	 * Finds the pool size of a given target.
+	 * @param targetId a target ID
+	 * @return a positive integer, or 0 if the target does not need a pool
+	 */
+	int poolSize( String targetId ) {
+
+		String value = this.targetsMngr.findTargetProperties( targetId ).asMap().get( Constants.TARGET_PROPERTY_POOL_SIZE );
+		int result = 0;
+		if( ! Utils.isEmptyOrWhitespaces( value )) {
+			try {
+				result = Math.max( 0, Integer.parseInt( value.trim()));
+
+			} catch( NumberFormatException e ) {
+				this.logger.warning( "Invalid pool size for target " + targetId + ": " + value );
+			}
+		}
+
+		return result;
+	}
+
+
+	private void execute( Runnable runnable ) {
+
+		ExecutorService executor = this.executor;
+		try {
+			if( executor != null )
+				executor.execute( runnable );
+
+		} catch( RejectedExecutionException e ) {
+			this.logger.finest( "The warm pools are being stopped. A task was dropped." );
+		}
+	}
+
+
+	private void listen( Application application, ListenerCommand command ) {
+
+		try {
+			IDmClient client = this.messagingMngr.getMessagingClient();
+			if( client != null )
+				client.listenToAgentMessages( application, command );
+
+		} catch( IOException e ) {
+			this.logger.warning( "Messages from agents in " + application.getName() + " could not be (un)listened to. " + e.getMessage());
+			Utils.logException( this.logger, e );
+		}
+	}
+
+
+	/**
+	 * Terminates an idle machine.
+	 * @param machine a machine
+	 * @return true if it was terminated, false otherwise
+	 */
+	private boolean terminate( PooledMachine machine ) {
+
+		boolean result = false;
+		String machineId = machine.instance.data.get( Instance.MACHINE_ID );
+		try {
+			// Restored machines have no handler yet
+			if( machine.handler == null )
+				prepare( machine );
+
+			machine.handler.terminateMachine( machine.parameters, machineId );
+			this.logger.fine( "Idle machine " + machineId + " was terminated." );
+			result = true;
+
+		} catch( Exception e ) {
+			this.logger.warning( "Idle machine " + machineId + " could not be terminated. " + e.getMessage());
+			Utils.logException( this.logger, e );
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Finds the target handler and the parameters of an idle machine.
+	 * @param machine a machine
+	 * @throws TargetException if no target handler was found
+	 */
+	void prepare( PooledMachine machine ) throws TargetException {
+
+		WarmPool pool = machine.pool;
+		TargetProperties props = this.targetsMngr.findTargetProperties( pool.targetId );
+		Map<String,String> targetProperties = TargetHelpers.expandProperties( machine.instance, props.asMap());
+
+		TargetHandler handler = this.targetHandlerResolver.findTargetHandler( targetProperties );
+		TargetHandlerParameters parameters = new TargetHandlerParameters()
+				.targetProperties( targetProperties )
+				.messagingProperties( this.messagingMngr.getMessagingClient().getConfiguration())
+				.scopedInstancePath( InstanceHelpers.computeInstancePath( machine.instance ))
+				.applicationName( pool.application.getName())
+				.domain( this.dmDomain );
+
+		if( props.getSourceFile() != null )
+			parameters.setTargetPropertiesDirectory( props.getSourceFile().getParentFile());
+
+		machine.handler = handler;
+		machine.parameters = parameters;
+	}
+
+
+	/**
+	 * Saves the IDs of the idle machines of a pool.
+	 * <p>
+	 * This method must be invoked while holding the pools lock.
+	 * </p>
+	 *
+	 * @param pool a pool
+	 */
+	void savePool( WarmPool pool ) {
+
+		Properties props = new Properties();
+		for( PooledMachine machine : pool.machines ) {
+			String machineId = machine.instance.data.get( Instance.MACHINE_ID );
+			if( machine.created && machineId != null )
+				props.setProperty( machine.instance.getName(), machineId );
+		}
+
+		File f = new File( findPoolsDirectory(), pool.targetId + POOL_FILE_SUFFIX );
+		try {
+			if( props.isEmpty()) {
+				Utils.deleteFilesRecursively( f );
+
+			} else {
+				Utils.createDirectory( f.getParentFile());
+				Utils.writePropertiesFile( props, f );
+			}
+
+		} catch( IOException e ) {
+			this.logger.warning( "The idle machines of target " + pool.targetId + " could not be saved. " + e.getMessage());
+			Utils.logException( this.logger, e );
+		}
+	}
+
+
+	/**
+	 * Restores the idle machines that were saved.
+	 * <p>
+	 * Their agent must send a heart beat before the start-up time-out expires.
+	 * Otherwise, they are replaced (and terminated), like new machines.
+	 * Pools that are not needed anymore are drained on the next refill.
+	 * </p>
+	 */
+	void restorePools() {
+
+		File[] files = findPoolsDirectory().listFiles();
+		if( files == null )
+			return;
+
+		for( File f : files ) {
+			if( ! f.getName().endsWith( POOL_FILE_SUFFIX ))
+				continue;
+
+			String targetId = f.getName().substring( 0, f.getName().length() - POOL_FILE_SUFFIX.length());
+			Properties props = Utils.readPropertiesFileQuietly( f, this.logger );
+
+			WarmPool pool;
+			boolean newPool = false;
+			synchronized( this.targetIdToPool ) {
+				pool = this.targetIdToPool.get( targetId );
+				if( pool == null ) {
+					pool = new WarmPool( targetId );
+					this.targetIdToPool.put( targetId, pool );
+					newPool = true;
+				}
+
+				long now = System.currentTimeMillis();
+				for( String name : props.stringPropertyNames()) {
+					PooledMachine machine = new PooledMachine( pool, name );
+					machine.instance.data.put( Instance.MACHINE_ID, props.getProperty( name ));
+					machine.created = true;
+					machine.creationTime = now;
+					pool.machines.add( machine );
+
+					// New machines must not reuse the restored names
+					if( name.startsWith( MACHINE_NAME_PREFIX )) {
+						try {
+							long index = Long.parseLong( name.substring( MACHINE_NAME_PREFIX.length()));
+							if( index > this.machineCounter.get())
+								this.machineCounter.set( index );
+
+						} catch( NumberFormatException e ) {
+							// nothing
+						}
+					}
+				}
+			}
+
+			this.logger.info( props.size() + " idle machine(s) were restored in the warm pool of target " + targetId + "." );
+			if( newPool )
+				listen( pool.application, ListenerCommand.START );
+		}
+	}
+
+
+	private File findPoolsDirectory() {
+		return new File( this.configurationMngr.getWorkingDirectory(), ConfigurationUtils.WARM_POOLS );
+	}
+
+
+	/**
+	 * A thread factory that creates named daemon threads.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class WarmPoolThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger( 0 );
+
+		@Override
+		public Thread newThread( Runnable r ) {
+
+			Thread t = new Thread( r, "Roboconf - Warm Pools " + this.count.incrementAndGet());
+			t.setDaemon( true );
+			return t;
+		}
+	}
+
+
+	/**
+	 * The machines kept ready for a given target.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class WarmPool {
+		final String targetId;
+		final Application application;
+		final List<PooledMachine> machines = new ArrayList<> ();
+
+		/**
+		 * Constructor.
+		 * @param targetId
+		 */
+		WarmPool( String targetId ) {
+			this.targetId = targetId;
+			this.application = new Application( POOL_APPLICATION_PREFIX + targetId, null );
+		}
+	}
+
+
+	/**
+	 * A machine in a warm pool.
+	 * <p>
+	 * The mutable fields are guarded by the pools map.
+	 * </p>
+	 *
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class PooledMachine {
+		final WarmPool pool;
+		final Instance instance;
+		TargetHandler handler;
+		TargetHandlerParameters parameters;
+		boolean created, ready;
+		long creationTime;
+
+		/**
+		 * Constructor.
+		 * @param pool
+		 * @param name
+		 */
+		PooledMachine( WarmPool pool, String name ) {
+			this.pool = pool;
+			this.instance = new Instance( name );
+		}
+	}
+
+
+	/**
+	 * Creates and configures an idle machine.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	class CreationRunnable implements Runnable {
+		private final PooledMachine machine;
+
+		/**
+		 * Constructor.
+		 * @param machine
+		 */
+		CreationRunnable( PooledMachine machine ) {
+			this.machine = machine;
+		}
+
+		@Override
+		public void run() {
+
+			WarmPool pool = this.machine.pool;
+			String path = InstanceHelpers.computeInstancePath( this.machine.instance );
+			try {
+				prepare( this.machine );
+				TargetHandler handler = this.machine.handler;
+				TargetHandlerParameters parameters = this.machine.parameters;
+
+				String machineId = handler.createMachine( parameters );
+				this.machine.instance.data.put( Instance.MACHINE_ID, machineId );
+				handler.configureMachine( parameters, machineId, this.machine.instance );
+
+				boolean stillPooled;
+				synchronized( WarmPoolMngrImpl.this.targetIdToPool ) {
+					this.machine.created = true;
+					this.machine.creationTime = System.currentTimeMillis();
+					stillPooled = pool.machines.contains( this.machine );
+					if( stillPooled )
+						savePool( pool );
+				}
+
+				if( stillPooled )
+					WarmPoolMngrImpl.this.logger.fine( "Idle machine " + path + " was created for target " + pool.targetId + ". Machine ID: " + machineId );
+				else
+					terminate( this.machine );
+
+			} catch( Exception e ) {
+				WarmPoolMngrImpl.this.logger.severe( "Idle machine " + path + " could not be created for target " + pool.targetId + ". " + e.getMessage());
+				Utils.logException( WarmPoolMngrImpl.this.logger, e );
+
+				// It will be created again at the next refill
+				synchronized( WarmPoolMngrImpl.this.targetIdToPool ) {
+					pool.machines.remove( this.machine );
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Terminates an idle machine.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	class TerminationRunnable implements Runnable {
+		private final PooledMachine machine;
+
+		/**
+		 * Constructor.
+		 * @param machine
+		 */
+		TerminationRunnable( PooledMachine machine ) {
+			this.machine = machine;
+		}
+
+		@Override
+		public void run() {
+			terminate( this.machine );
+		}
+	}
+
+
+	/**
+	 * Refills the pool of a given target.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	class RefillRunnable implements Runnable {
+		private final String targetId;
+
+		/**
+		 * Constructor.
+		 * @param targetId
+		 */
+		RefillRunnable( String targetId ) {
+			this.targetId = targetId;
+		}
+
+		@Override
+		public void run() {
+			adjustPool( this.targetId, poolSize( this.targetId ));
+		}
+	}
+}
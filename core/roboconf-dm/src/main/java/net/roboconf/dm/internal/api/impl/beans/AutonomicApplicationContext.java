@@ -52,6 +52,7 @@ public class AutonomicApplicationContext {
 	final Map<String,Long> eventNameToLastRecordTime = new HashMap<> ();
 	final Map<String,Long> ruleNameToLastExecution = new HashMap<> ();
 	final Map<String,String> ruleNameToLastTrigger = new HashMap<> ();
+	final Map<String,RuleWindow> ruleNameToWindow = new HashMap<> ();
 	final AtomicInteger vmCount = new AtomicInteger( 0 );
 
 	private final Logger logger = Logger.getLogger( getClass().getName());
@@ -89,7 +90,40 @@ public class AutonomicApplicationContext {
 	 * @param eventName the vent to register
 	 */
 	public void registerEvent( String eventName ) {
-		this.eventNameToLastRecordTime.put( eventName, System.nanoTime());
+		registerEvent( eventName, null, System.nanoTime());
+	}
+
+
+	/**
+	 * Registers an event sent by a given agent, and its time of registration (in nanoseconds).
+	 * @param eventName the event to register
+	 * @param agentId the ID of the agent that sent the event (e.g. a scoped instance path, can be null)
+	 */
+	public void registerEvent( String eventName, String agentId ) {
+		registerEvent( eventName, agentId, System.nanoTime());
+	}
+
+
+	/**
+	 * Registers an event at a given time.
+	 * <p>
+	 * Rules with windowed conditions (occurrences, rates, agents) keep track of
+	 * the events that concern them.
+	 * </p>
+	 *
+	 * @param eventName the event to register
+	 * @param agentId the ID of the agent that sent the event (can be null)
+	 * @param time the registration time (in nanoseconds)
+	 */
+	public void registerEvent( String eventName, String agentId, long time ) {
+
+		this.eventNameToLastRecordTime.put( eventName, time );
+		for( Rule rule : this.ruleNameToRule.values()) {
+			RuleWindow window;
+			if( eventName.equals( rule.getEventName())
+					&& ( window = findWindow( rule )) != null )
+				window.record( agentId, time );
+		}
 	}
 
 
@@ -107,10 +141,19 @@ public class AutonomicApplicationContext {
 	 * @return a non-null list of rules
 	 */
 	public List<Rule> findRulesToExecute() {
+		return findRulesToExecute( System.nanoTime());
+	}
+
+
+	/**
+	 * Finds the rules to execute after an event was recorded.
+	 * @param now the current time (in nanoseconds)
+	 * @return a non-null list of rules
+	 */
+	public List<Rule> findRulesToExecute( long now ) {
 
 		this.logger.fine( "Looking for rules to execute after an event was recorded for application " + this.app );
 		List<Rule> result = new ArrayList<> ();
-		long now = System.nanoTime();
 
 		/*
 		 * For all the rules, find if there are events that should trigger its execution.
@@ -170,6 +213,18 @@ public class AutonomicApplicationContext {
 				continue;
 			}
 
+			// Check the condition "4", about windowed conditions (occurrences, rates, agents).
+			// A burst of events must only trigger a single execution, so the window is reset.
+			RuleWindow window = findWindow( rule );
+			if( window != null ) {
+				if( ! window.isSatisfied( now )) {
+					this.logger.finer( "Ignoring the rule " + rule.getRuleName() + " since its windowed conditions are not satisfied." );
+					continue;
+				}
+
+				window.reset();
+			}
+
 			this.logger.finer( "Rule " + rule.getRuleName() + " was found following the occurrence of the " + rule.getEventName() + " event." );
 			this.ruleNameToLastTrigger.put( rule.getRuleName(), sbTrigger.toString());
 			result.add( rule );
@@ -209,4 +264,30 @@ public class AutonomicApplicationContext {
 
 		return result;
 	}
+
+
+	/**
+	 * Finds the sliding window associated with a rule.
+	 * <p>
+	 * Windows are created lazily and replaced when a rule is reloaded.
+	 * </p>
+	 *
+	 * @param rule a rule
+	 * @return a window, or null if the rule does not have windowed conditions
+	 */
+	RuleWindow findWindow( Rule rule ) {
+
+		RuleWindow result = null;
+		if( rule.hasWindowedConditions()
+				&& rule.getTimingWindow() > 0 ) {
+
+			result = this.ruleNameToWindow.get( rule.getRuleName());
+			if( result == null || result.getRule() != rule ) {
+				result = new RuleWindow( rule );
+				this.ruleNameToWindow.put( rule.getRuleName(), result );
+			}
+		}
+
+		return result;
+	}
 }
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.internal.api.impl.beans;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.roboconf.dm.management.api.IMetricsMngr.HistogramSnapshot;
+
+/**
+ * A lock-free histogram of durations, with fixed buckets.
+ * <p>
+ * Bucket bounds are expressed in milliseconds and cover durations that go
+ * from local operations (saving files) to remote ones (creating virtual machines).
+ * Memory usage is constant, whatever the number of recorded values.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class Histogram {
+
+	static final long[] BOUNDS = {
+		1, 2, 5, 10, 25, 50, 100, 250, 500,
+		1000, 2500, 5000, 10000, 30000, 60000,
+		120000, 300000, 600000, Long.MAX_VALUE
+	};
+
+	private final AtomicLongArray buckets = new AtomicLongArray( BOUNDS.length );
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong( Long.MAX_VALUE );
+	private final AtomicLong max = new AtomicLong( Long.MIN_VALUE );
+
+
+	/**
+	 * Records a duration.
+	 * @param durationNanos a duration, in nanoseconds (negative values are considered as 0)
+	 */
+	public void record( long durationNanos ) {
+
+		long millis = TimeUnit.NANOSECONDS.toMillis( Math.max( 0, durationNanos ));
+		int index = 0;
+		while( millis > BOUNDS[ index ])
+			index ++;
+
+		this.buckets.incrementAndGet( index );
+		this.count.incrementAndGet();
+		this.sum.addAndGet( millis );
+
+		long current;
+		while(( current = this.min.get()) > millis
+				&& ! this.min.compareAndSet( current, millis )) {
+			// Retry
+		}
+
+		while(( current = this.max.get()) < millis
+				&& ! this.max.compareAndSet( current, millis )) {
+			// Retry
+		}
+	}
+
+
+	/**
+	 * Resets the histogram.
+	 */
+	public void reset() {
+
+		for( int i=0; i<this.buckets.length(); i++ )
+			this.buckets.set( i, 0 );
+
+		this.count.set( 0 );
+		this.sum.set( 0 );
+		this.min.set( Long.MAX_VALUE );
+		this.max.set( Long.MIN_VALUE );
+	}
+
+
+	/**
+	 * @return a non-null snapshot (values are expressed in milliseconds)
+	 */
+	public HistogramSnapshot snapshot() {
+
+		long[] counts = new long[ this.buckets.length()];
+		long total = 0;
+		for( int i=0; i<counts.length; i++ ) {
+			counts[ i ] = this.buckets.get( i );
+			total += counts[ i ];
+		}
+
+		HistogramSnapshot result;
+		if( total == 0 ) {
+			result = new HistogramSnapshot( 0, 0, 0, 0, 0, 0, 0 );
+
+		} else {
+			long minValue = this.min.get();
+			long maxValue = this.max.get();
+			result = new HistogramSnapshot(
+					total, minValue, maxValue,
+					this.sum.get() / Math.max( 1, this.count.get()),
+					percentile( counts, total, 0.5, minValue, maxValue ),
+					percentile( counts, total, 0.95, minValue, maxValue ),
+					percentile( counts, total, 0.99, minValue, maxValue ));
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Approximates a percentile.
+	 * @param counts the bucket counts
+	 * @param total the total count
+	 * @param percentile a percentile (between 0 and 1)
+	 * @param minValue the minimum recorded value
+	 * @param maxValue the maximum recorded value
+	 * @return the upper bound of the bucket the percentile falls in, kept between the minimum and the maximum
+	 */
+	static long percentile( long[] counts, long total, double percentile, long minValue, long maxValue ) {
+
+		long rank = (long) Math.ceil( percentile * total );
+		long cumulated = 0;
+		int index = 0;
+		for( ; index < counts.length - 1; index ++ ) {
+			cumulated += counts[ index ];
+			if( cumulated >= rank )
+				break;
+		}
+
+		return Math.max( minValue, Math.min( maxValue, BOUNDS[ index ]));
+	}
+}
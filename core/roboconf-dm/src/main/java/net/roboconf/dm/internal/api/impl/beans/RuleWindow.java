@@ -0,0 +1,223 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.api.impl.beans;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.roboconf.core.autonomic.Rule;
+
+/**
+ * The sliding window used to evaluate the windowed conditions of a rule.
+ * <p>
+ * Only the last N time stamps matter to determine whether N events occurred within
+ * a time window. So, events are stored in fixed-size ring buffers (one for all the agents,
+ * and one per agent) and registering or evaluating an event implies a constant amount of work.
+ * </p>
+ * <p>
+ * Distinct agents are tracked the same way: we only keep the most recent ones
+ * (as many as the rule requires), sorted by the time of their last event.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class RuleWindow {
+
+	private final Rule rule;
+	private final long windowNanos;
+	private final int requiredOccurrences;
+
+	final RingBuffer allEvents;
+	final Map<String,RingBuffer> agentToEvents = new HashMap<> ();
+	final LinkedHashMap<String,Long> recentAgents = new LinkedHashMap<> ();
+	private String lastAgent;
+
+
+	/**
+	 * Constructor.
+	 * @param rule the rule (not null, with a timing window)
+	 */
+	public RuleWindow( Rule rule ) {
+		this.rule = rule;
+		this.windowNanos = TimeUnit.SECONDS.toNanos( rule.getTimingWindow());
+		this.requiredOccurrences = rule.getRequiredOccurrences();
+		this.allEvents = new RingBuffer( this.requiredOccurrences );
+	}
+
+
+	/**
+	 * @return the rule
+	 */
+	public Rule getRule() {
+		return this.rule;
+	}
+
+
+	/**
+	 * Records an event.
+	 * @param agentId the ID of the agent that sent the event (can be null)
+	 * @param time the time at which the event was received (in nanoseconds)
+	 */
+	public void record( String agentId, long time ) {
+
+		String agent = agentId == null ? "" : agentId;
+		this.lastAgent = agent;
+		this.allEvents.add( time );
+
+		if( this.rule.isCountPerAgent()) {
+			RingBuffer buffer = this.agentToEvents.get( agent );
+			if( buffer == null ) {
+				buffer = new RingBuffer( this.requiredOccurrences );
+				this.agentToEvents.put( agent, buffer );
+			}
+
+			buffer.add( time );
+		}
+
+		if( this.rule.getMinAgents() > 1 ) {
+			// Move the agent at the end (most recent)
+			this.recentAgents.remove( agent );
+			this.recentAgents.put( agent, time );
+
+			// And only keep the most recent ones
+			Iterator<String> it = this.recentAgents.keySet().iterator();
+			while( this.recentAgents.size() > this.rule.getMinAgents()) {
+				it.next();
+				it.remove();
+			}
+		}
+	}
+
+
+	/**
+	 * Determines whether the windowed conditions of the rule are satisfied.
+	 * @param now the current time (in nanoseconds)
+	 * @return true if they are, false otherwise
+	 */
+	public boolean isSatisfied( long now ) {
+
+		long windowStart = now - this.windowNanos;
+
+		// Occurrences and rates
+		RingBuffer buffer = this.allEvents;
+		if( this.rule.isCountPerAgent())
+			buffer = this.agentToEvents.get( this.lastAgent );
+
+		boolean result = buffer != null
+				&& buffer.isFull()
+				&& buffer.oldest() - windowStart >= 0;
+
+		// Distinct agents
+		if( result && this.rule.getMinAgents() > 1 ) {
+			result = this.recentAgents.size() >= this.rule.getMinAgents()
+					&& this.recentAgents.values().iterator().next() - windowStart >= 0;
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Forgets all the recorded events.
+	 * <p>
+	 * This is invoked when the rule is executed, so that a burst of events
+	 * only triggers a single execution.
+	 * </p>
+	 */
+	public void reset() {
+		this.allEvents.clear();
+		this.agentToEvents.clear();
+		this.recentAgents.clear();
+	}
+
+
+	/**
+	 * A fixed-size ring buffer of time stamps.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class RingBuffer {
+
+		private final long[] times;
+		private int next = 0;
+		private int size = 0;
+
+
+		/**
+		 * Constructor.
+		 * @param capacity the buffer's capacity (at least 1)
+		 */
+		RingBuffer( int capacity ) {
+			this.times = new long[ Math.max( 1, capacity )];
+		}
+
+
+		/**
+		 * Adds a time stamp, overwriting the oldest one if the buffer is full.
+		 * @param time a time stamp
+		 */
+		void add( long time ) {
+			this.times[ this.next ] = time;
+			this.next = (this.next + 1) % this.times.length;
+			this.size = Math.min( this.size + 1, this.times.length );
+		}
+
+
+		/**
+		 * @return the oldest time stamp in the buffer (undefined if the buffer is empty)
+		 */
+		long oldest() {
+			return this.size < this.times.length ? this.times[ 0 ] : this.times[ this.next ];
+		}
+
+
+		/**
+		 * @return true if the buffer is full
+		 */
+		boolean isFull() {
+			return this.size == this.times.length;
+		}
+
+
+		/**
+		 * @return the number of time stamps in the buffer
+		 */
+		int size() {
+			return this.size;
+		}
+
+
+		/**
+		 * Clears the buffer.
+		 */
+		void clear() {
+			this.size = 0;
+			this.next = 0;
+		}
+	}
+}
@@ -26,10 +26,13 @@
 package net.roboconf.dm.internal.commands;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import net.roboconf.core.commands.BulkCommandInstructions;
+import net.roboconf.core.commands.BulkCommandInstructions.ChangeStateInstruction;
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.utils.Utils;
@@ -45,6 +48,7 @@ class BulkCommandExecution extends AbstractCommandExecution {
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final BulkCommandInstructions instr;
 	private final Manager manager;
+	private final ParallelRunner parallelRunner;
 
 
 	/**
@@ -53,8 +57,20 @@ class BulkCommandExecution extends AbstractCommandExecution {
 	 * @param manager
 	 */
 	public BulkCommandExecution( BulkCommandInstructions instr, Manager manager ) {
+		this( instr, manager, null );
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param instr
+	 * @param manager
+	 * @param parallelRunner a runner to process instances concurrently (can be null)
+	 */
+	public BulkCommandExecution( BulkCommandInstructions instr, Manager manager, ParallelRunner parallelRunner ) {
 		this.instr = instr;
 		this.manager = manager;
+		this.parallelRunner = parallelRunner;
 	}
 
 
@@ -72,46 +88,103 @@ class BulkCommandExecution extends AbstractCommandExecution {
 			instances.addAll( InstanceHelpers.findInstancesByComponentName( this.instr.getApplication(), this.instr.getComponentName()));
 		}
 
-		// Execute the command
-		try {
-			switch( this.instr.getChangeStateInstruction()) {
-			case DEPLOY_AND_START_ALL:
+		// Deletions modify the model's structure: they are executed in sequence
+		if( this.instr.getChangeStateInstruction() == ChangeStateInstruction.DELETE ) {
+			try {
 				for( Instance inst : instances )
-					this.manager.instancesMngr().deployAndStartAll( ma, inst );
+					this.manager.instancesMngr().removeInstance( ma, inst );
+
+			} catch( Exception e ) {
+				// Ignore errors related to deletion.
+				// If an element cannot be deleted, ignore it (it remains in the model).
+				// "Delete was not designed to be invoked in "batch mode". So, let's make it
+				// fault-tolerant.
+				this.logger.warning( "A DELETE instruction failed to be executed in commands. Application = " + this.instr.getApplication());
+				Utils.logException( this.logger, e );
+			}
 
-				break;
+		} else {
+			List<InstanceExecution> executions = new ArrayList<> ();
+			for( Instance inst : instances )
+				executions.add( new InstanceExecution( ma, inst ));
 
-			case STOP_ALL:
-				for( Instance inst : instances )
-					this.manager.instancesMngr().stopAll( ma, inst );
+			// Instances can be processed concurrently only if their trees are distinct
+			if( this.parallelRunner != null && areDistinctTrees( instances )) {
+				this.parallelRunner.runAll( executions );
 
-				break;
+			} else for( InstanceExecution execution : executions ) {
+				execution.execute();
+			}
+		}
+	}
 
-			case UNDEPLOY_ALL:
-				for( Instance inst : instances )
-					this.manager.instancesMngr().undeployAll( ma, inst );
-
-				break;
-
-			case DELETE:
-				try {
-					for( Instance inst : instances )
-						this.manager.instancesMngr().removeInstance( ma, inst );
-
-				} catch( Exception e ) {
-					// Ignore errors related to deletion.
-					// If an element cannot be deleted, ignore it (it remains in the model).
-					// "Delete was not designed to be invoked in "batch mode". So, let's make it
-					// fault-tolerant.
-					this.logger.warning( "A DELETE instruction failed to be executed in commands. Application = " + this.instr.getApplication());
-					Utils.logException( this.logger, e );
+
+	/**
+	 * Determines whether instances are all located in different trees.
+	 * @param instances a non-null list of instances
+	 * @return true if no instance is the ancestor of another one, false otherwise
+	 */
+	static boolean areDistinctTrees( List<Instance> instances ) {
+
+		Set<String> paths = new HashSet<> ();
+		for( Instance inst : instances )
+			paths.add( InstanceHelpers.computeInstancePath( inst ));
+
+		boolean result = paths.size() == instances.size();
+		for( String path : paths ) {
+			for( int index = path.lastIndexOf( '/' ); result && index > 0; index = path.lastIndexOf( '/', index - 1 ))
+				result = ! paths.contains( path.substring( 0, index ));
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * The execution of the bulk instruction for a single instance.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private class InstanceExecution extends AbstractCommandExecution {
+
+		private final ManagedApplication ma;
+		private final Instance instance;
+
+
+		/**
+		 * Constructor.
+		 * @param ma
+		 * @param instance
+		 */
+		InstanceExecution( ManagedApplication ma, Instance instance ) {
+			this.ma = ma;
+			this.instance = instance;
+		}
+
+
+		@Override
+		void execute() throws CommandException {
+
+			try {
+				switch( BulkCommandExecution.this.instr.getChangeStateInstruction()) {
+				case DEPLOY_AND_START_ALL:
+					BulkCommandExecution.this.manager.instancesMngr().deployAndStartAll( this.ma, this.instance );
+					break;
+
+				case STOP_ALL:
+					BulkCommandExecution.this.manager.instancesMngr().stopAll( this.ma, this.instance );
+					break;
+
+				case UNDEPLOY_ALL:
+					BulkCommandExecution.this.manager.instancesMngr().undeployAll( this.ma, this.instance );
+					break;
+
+				default:
+					break;
 				}
 
-				break;
+			} catch( Exception e ) {
+				throw new CommandException( e );
 			}
-
-		} catch( Exception e ) {
-			throw new CommandException( e );
 		}
 	}
 }
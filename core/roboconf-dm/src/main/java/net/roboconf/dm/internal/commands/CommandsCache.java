@@ -0,0 +1,223 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import net.roboconf.core.commands.AbstractCommandInstruction;
+import net.roboconf.core.commands.CommandsParser;
+import net.roboconf.core.commands.DefineVariableCommandInstruction;
+import net.roboconf.core.errors.RoboconfErrorHelpers;
+import net.roboconf.core.model.beans.Application;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.exceptions.CommandException;
+
+/**
+ * A cache for parsed and validated command instructions.
+ * <p>
+ * Parsing a commands file implies reading it and validating every instruction
+ * against the application's instances. Commands triggered repeatedly (by the autonomic
+ * or by the scheduler) can reuse the result as long as nothing that impacted it changed.
+ * </p>
+ * <p>
+ * A cached entry is reused only if the file was not modified, and if the structure
+ * of the application's instances did not change since the file was parsed. The latter
+ * relies on {@link ManagedApplication#getInstancesStructureVersion()}, so that a cache
+ * hit does not depend on the number of instances. Command files that use dynamic variables
+ * (time, UUID, smart index...) are never cached, since these variables are resolved at parsing time.
+ * </p>
+ *
+ * @author Amadou Diarra - Université Joseph Fourier
+ */
+public class CommandsCache {
+
+	private static final String[] DYNAMIC_VARIABLES = {
+		DefineVariableCommandInstruction.MILLI_TIME,
+		DefineVariableCommandInstruction.NANO_TIME,
+		DefineVariableCommandInstruction.RANDOM_UUID,
+		DefineVariableCommandInstruction.SMART_INDEX,
+		DefineVariableCommandInstruction.FORMATTED_TIME_PREFIX.trim()
+	};
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final ConcurrentHashMap<String,Map<File,CachedInstructions>> appNameToEntries = new ConcurrentHashMap<> ();
+
+	final AtomicInteger hits = new AtomicInteger();
+	final AtomicInteger misses = new AtomicInteger();
+
+
+	/**
+	 * Finds the instructions of a commands file, parsing it only if necessary.
+	 * @param ma a managed application (not null)
+	 * @param commandsFile a file containing commands (not null)
+	 * @return a non-null list of validated instructions
+	 * @throws CommandException if the file contains errors
+	 */
+	public List<AbstractCommandInstruction> findInstructions( ManagedApplication ma, File commandsFile )
+	throws CommandException {
+
+		Map<File,CachedInstructions> entries = this.appNameToEntries.get( ma.getName());
+		if( entries == null ) {
+			entries = new ConcurrentHashMap<> ();
+			Map<File,CachedInstructions> existing = this.appNameToEntries.putIfAbsent( ma.getName(), entries );
+			if( existing != null )
+				entries = existing;
+		}
+
+		// Read the version first: a change made while the file is parsed will result in a new parsing
+		long structureVersion = ma.getInstancesStructureVersion();
+		long lastModified = commandsFile.lastModified();
+		long length = commandsFile.length();
+
+		// Check the cache
+		List<AbstractCommandInstruction> result;
+		CachedInstructions cached = entries.get( commandsFile );
+		boolean sameFile = cached != null
+				&& cached.lastModified == lastModified
+				&& cached.length == length;
+
+		if( sameFile
+				&& cached.instructions != null
+				&& cached.ma == ma
+				&& cached.structureVersion == structureVersion ) {
+
+			this.hits.incrementAndGet();
+			result = cached.instructions;
+
+		} else {
+			// Parse the file
+			this.misses.incrementAndGet();
+			result = parseInstructions( ma.getApplication(), commandsFile );
+
+			// Only cache what does not depend on dynamic variables.
+			// This only depends on the file, so we remember it until the file is modified.
+			boolean cacheable = sameFile ? cached.cacheable : isCacheable( commandsFile );
+			CachedInstructions entry = new CachedInstructions( ma, structureVersion, lastModified, length, cacheable, result );
+			entries.put( commandsFile, entry );
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Invalidates the cache entry associated with a commands file.
+	 * @param app an application (not null)
+	 * @param commandsFile a file containing commands (not null)
+	 */
+	public void invalidate( Application app, File commandsFile ) {
+
+		Map<File,CachedInstructions> entries = this.appNameToEntries.get( app.getName());
+		if( entries != null )
+			entries.remove( commandsFile );
+	}
+
+
+	/**
+	 * Parses a commands file and validates its instructions.
+	 * @param app an application (not null)
+	 * @param commandsFile a file containing commands (not null)
+	 * @return a non-null list of validated instructions
+	 * @throws CommandException if the file contains errors
+	 */
+	public static List<AbstractCommandInstruction> parseInstructions( Application app, File commandsFile )
+	throws CommandException {
+
+		CommandsParser parser = new CommandsParser( app, commandsFile );
+		if( RoboconfErrorHelpers.containsCriticalErrors( parser.getParsingErrors()))
+			throw new CommandException( "Invalid command file. " + commandsFile.getName() + " contains errors." );
+
+		return Collections.unmodifiableList( parser.getInstructions());
+	}
+
+
+	/**
+	 * @param commandsFile a file containing commands (not null)
+	 * @return true if the file's instructions can be cached, false otherwise
+	 */
+	private boolean isCacheable( File commandsFile ) {
+
+		boolean result = true;
+		try {
+			String content = Utils.readFileContent( commandsFile );
+			for( int i=0; result && i<DYNAMIC_VARIABLES.length; i++ )
+				result = ! content.contains( DYNAMIC_VARIABLES[ i ]);
+
+		} catch( IOException e ) {
+			this.logger.fine( "Commands file " + commandsFile.getName() + " could not be read and will not be cached." );
+			result = false;
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * A cache entry.
+	 * @author Amadou Diarra - Université Joseph Fourier
+	 */
+	private static class CachedInstructions {
+
+		final ManagedApplication ma;
+		final long structureVersion, lastModified, length;
+		final boolean cacheable;
+		final List<AbstractCommandInstruction> instructions;
+
+
+		/**
+		 * Constructor.
+		 * @param ma
+		 * @param structureVersion
+		 * @param lastModified
+		 * @param length
+		 * @param cacheable
+		 * @param instructions the instructions (only kept if they are cacheable)
+		 */
+		CachedInstructions(
+				ManagedApplication ma,
+				long structureVersion,
+				long lastModified,
+				long length,
+				boolean cacheable,
+				List<AbstractCommandInstruction> instructions ) {
+
+			this.ma = ma;
+			this.structureVersion = structureVersion;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.cacheable = cacheable;
+			this.instructions = cacheable ? instructions : null;
+		}
+	}
+}
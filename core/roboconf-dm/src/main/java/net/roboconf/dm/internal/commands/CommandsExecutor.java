@@ -26,22 +26,27 @@
 package net.roboconf.dm.internal.commands;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import net.roboconf.core.commands.AbstractCommandInstruction;
 import net.roboconf.core.commands.AppendCommandInstruction;
 import net.roboconf.core.commands.AssociateTargetCommandInstruction;
 import net.roboconf.core.commands.BulkCommandInstructions;
+import net.roboconf.core.commands.BulkCommandInstructions.ChangeStateInstruction;
 import net.roboconf.core.commands.ChangeStateCommandInstruction;
-import net.roboconf.core.commands.CommandsParser;
 import net.roboconf.core.commands.CreateInstanceCommandInstruction;
 import net.roboconf.core.commands.EmailCommandInstruction;
 import net.roboconf.core.commands.ExecuteCommandInstruction;
 import net.roboconf.core.commands.RenameCommandInstruction;
 import net.roboconf.core.commands.ReplicateCommandInstruction;
 import net.roboconf.core.commands.WriteCommandInstruction;
-import net.roboconf.core.errors.RoboconfErrorHelpers;
 import net.roboconf.core.model.beans.Application;
+import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
 import net.roboconf.dm.management.api.ICommandsMngr.CommandExecutionContext;
 import net.roboconf.dm.management.exceptions.CommandException;
@@ -57,6 +62,8 @@ public class CommandsExecutor {
 	private final Application app;
 	private final Manager manager;
 	private final CommandExecutionContext executionContext;
+	private final CommandsCache commandsCache;
+	private final ParallelRunner parallelRunner;
 
 
 	/**
@@ -82,11 +89,33 @@ public class CommandsExecutor {
 			Application app,
 			File commandsFile,
 			CommandExecutionContext executionContext ) {
+		this( manager, app, commandsFile, executionContext, null, null );
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param manager the manager
+	 * @param app an application (not null)
+	 * @param commandsFile a file containing commands (not null)
+	 * @param executionContext an execution context
+	 * @param commandsCache a cache for parsed instructions (null to always parse the file)
+	 * @param parallelRunner a runner for independent instructions (null to execute them in sequence)
+	 */
+	public CommandsExecutor(
+			Manager manager,
+			Application app,
+			File commandsFile,
+			CommandExecutionContext executionContext,
+			CommandsCache commandsCache,
+			ParallelRunner parallelRunner ) {
 
 		this.commandsFile = commandsFile;
 		this.app = app;
 		this.manager = manager;
 		this.executionContext = executionContext;
+		this.commandsCache = commandsCache;
+		this.parallelRunner = parallelRunner;
 	}
 
 
@@ -96,25 +125,38 @@ public class CommandsExecutor {
 	 * It is assumed that {@link #validate()} was invoked first and was
 	 * successful.
 	 * </p>
+	 * <p>
+	 * When a parallel runner is available, consecutive instructions that change the state
+	 * of distinct instance trees are executed at once. All the other instructions
+	 * (creation, deletion, renaming, e-mails, etc) remain executed in sequence and in the
+	 * order they were written.
+	 * </p>
+	 * <p>
+	 * Concurrent executions only rely on the instances manager's state changes
+	 * for distinct instance trees (see {@link net.roboconf.dm.management.api.IInstancesMngr}).
+	 * What they share is synchronized: awaiting messages are stored per application,
+	 * targets are locked by the targets manager and instances are saved per application.
+	 * </p>
 	 *
 	 * @throws CommandException if something went wrong
 	 */
 	public void execute() throws CommandException {
 
 		try {
-			CommandsParser parser = new CommandsParser( this.app, this.commandsFile );
-			if( RoboconfErrorHelpers.containsCriticalErrors( parser.getParsingErrors()))
-				throw new CommandException( "Invalid command file. " + this.commandsFile.getName() + " contains errors." );
-
-			for( AbstractCommandInstruction instr : parser.getInstructions()) {
-				AbstractCommandExecution executor = findExecutor( instr );
-				if( executor == null ) {
-					this.logger.fine( "Skipping non-executable instruction: " + instr.getClass().getSimpleName());
-					continue;
+			List<AbstractCommandInstruction> instructions;
+			ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( this.app.getName());
+			if( this.commandsCache != null && ma != null )
+				instructions = this.commandsCache.findInstructions( ma, this.commandsFile );
+			else
+				instructions = CommandsCache.parseInstructions( this.app, this.commandsFile );
+
+			for( List<AbstractCommandExecution> stage : findStages( instructions )) {
+				if( this.parallelRunner != null ) {
+					this.parallelRunner.runAll( stage );
+
+				} else for( AbstractCommandExecution executor : stage ) {
+					executor.execute();
 				}
-
-				executor.setExecutionContext( this.executionContext );
-				executor.execute();
 			}
 
 		} catch( CommandException e ) {
@@ -127,6 +169,98 @@ public class CommandsExecutor {
 	}
 
 
+	/**
+	 * Splits instructions into stages whose executions do not depend on each other.
+	 * <p>
+	 * The order of stages must be preserved. Inside a stage, executions can be run concurrently.
+	 * </p>
+	 *
+	 * @param instructions a non-null list of instructions
+	 * @return a non-null list of stages
+	 */
+	List<List<AbstractCommandExecution>> findStages( List<AbstractCommandInstruction> instructions ) {
+
+		List<List<AbstractCommandExecution>> result = new ArrayList<> ();
+		List<AbstractCommandExecution> currentStage = new ArrayList<> ();
+		Set<String> currentPaths = new HashSet<> ();
+
+		for( AbstractCommandInstruction instr : instructions ) {
+			AbstractCommandExecution executor = findExecutor( instr );
+			if( executor == null ) {
+				this.logger.fine( "Skipping non-executable instruction: " + instr.getClass().getSimpleName());
+				continue;
+			}
+
+			executor.setExecutionContext( this.executionContext );
+
+			// Instructions that do not work on a given instance tree are executed alone.
+			// Instructions that work on overlapping trees cannot be in the same stage.
+			String path = findImpactedInstancePath( instr );
+			if( ! currentStage.isEmpty()
+					&& ( path == null || overlaps( path, currentPaths ))) {
+				result.add( currentStage );
+				currentStage = new ArrayList<> ();
+				currentPaths.clear();
+			}
+
+			currentStage.add( executor );
+			if( path != null ) {
+				currentPaths.add( path );
+
+			} else {
+				result.add( currentStage );
+				currentStage = new ArrayList<> ();
+			}
+		}
+
+		if( ! currentStage.isEmpty())
+			result.add( currentStage );
+
+		return result;
+	}
+
+
+	/**
+	 * Finds the path of the instance tree impacted by an instruction that does not modify the model's structure.
+	 * @param instr a non-null instruction
+	 * @return the path of the root of the impacted instance tree, or null if the instruction cannot run concurrently
+	 */
+	static String findImpactedInstancePath( AbstractCommandInstruction instr ) {
+
+		String result = null;
+		if( ChangeStateCommandInstruction.class.equals( instr.getClass()))
+			result = ((ChangeStateCommandInstruction) instr).getInstancePath();
+
+		else if( BulkCommandInstructions.class.equals( instr.getClass())
+				&& ((BulkCommandInstructions) instr).getChangeStateInstruction() != ChangeStateInstruction.DELETE )
+			result = ((BulkCommandInstructions) instr).getInstancePath();
+
+		return result;
+	}
+
+
+	/**
+	 * Determines whether an instance tree overlaps other ones.
+	 * @param path an instance path
+	 * @param otherPaths a non-null collection of other instance paths
+	 * @return true if one of the other paths is the same instance, an ancestor or a descendant
+	 */
+	static boolean overlaps( String path, Collection<String> otherPaths ) {
+
+		boolean result = false;
+		for( String otherPath : otherPaths ) {
+			if( path.equals( otherPath )
+					|| path.startsWith( otherPath + "/" )
+					|| otherPath.startsWith( path + "/" )) {
+				result = true;
+				break;
+			}
+		}
+
+		return result;
+	}
+
+
 	/**
 	 * Finds the right executor for an instruction.
 	 * @param instr a non-null instruction
@@ -137,7 +271,7 @@ public class CommandsExecutor {
 		AbstractCommandExecution result = null;
 
 		if( RenameCommandInstruction.class.equals( instr.getClass()))
-			result = new RenameCommandExecution((RenameCommandInstruction) instr);
+			result = new RenameCommandExecution((RenameCommandInstruction) instr, this.manager );
 
 		else if( ReplicateCommandInstruction.class.equals( instr.getClass()))
 			result = new ReplicateCommandExecution((ReplicateCommandInstruction) instr, this.manager );
@@ -146,7 +280,7 @@ public class CommandsExecutor {
 			result = new AssociateTargetCommandExecution((AssociateTargetCommandInstruction) instr, this.manager );
 
 		else if( BulkCommandInstructions.class.equals( instr.getClass()))
-			result = new BulkCommandExecution((BulkCommandInstructions) instr, this.manager );
+			result = new BulkCommandExecution((BulkCommandInstructions) instr, this.manager, this.parallelRunner );
 
 		else if( ChangeStateCommandInstruction.class.equals( instr.getClass()))
 			result = new ChangeStateCommandExecution((ChangeStateCommandInstruction) instr, this.manager );
@@ -69,6 +69,7 @@ class CreateInstanceCommandExecution extends AbstractCommandExecution {
 			Instance instance = new Instance( this.instr.getInstanceName()).component( this.instr.getComponent());
 			this.manager.instancesMngr().addInstance( ma, parentInstance, instance );
 			update( this.executionContext, instance );
+			ma.instanceChanged( instance );
 
 		} catch( Exception e ) {
 			throw new CommandException( e );
@@ -0,0 +1,215 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.commands;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.roboconf.dm.management.exceptions.CommandException;
+
+/**
+ * Runs independent command executions on a bounded pool of threads.
+ * <p>
+ * The thread that submits executions always takes part to their processing.
+ * This way, executions can be nested (e.g. a bulk instruction run from a parallel
+ * stage) without exhausting the pool and dead-locking. The pool's threads are
+ * released when they remain idle.
+ * </p>
+ * <p>
+ * Errors are reported deterministically: all the executions of a batch are run
+ * and the error of the first failing one (in the submission order) is thrown.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class ParallelRunner {
+
+	static final long KEEP_ALIVE_SECONDS = 30;
+
+	private final ThreadPoolExecutor executor;
+	private volatile int parallelism;
+
+
+	/**
+	 * Constructor.
+	 * @param parallelism the maximum number of executions run at once (1 for a sequential processing)
+	 */
+	public ParallelRunner( int parallelism ) {
+
+		this.executor = new ThreadPoolExecutor(
+				1, 1,
+				KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable> (),
+				new CommandsThreadFactory());
+
+		this.executor.allowCoreThreadTimeOut( true );
+		setParallelism( parallelism );
+	}
+
+
+	/**
+	 * @return the maximum number of executions run at once
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+
+	/**
+	 * @param parallelism the maximum number of executions run at once (values lower than 1 are considered as 1)
+	 */
+	public synchronized void setParallelism( int parallelism ) {
+
+		int newParallelism = Math.max( 1, parallelism );
+		if( newParallelism != this.parallelism ) {
+
+			// Core size must remain lower than the maximum size.
+			// The caller thread is one of the workers.
+			int poolSize = Math.max( 1, newParallelism - 1 );
+			if( poolSize > this.executor.getMaximumPoolSize()) {
+				this.executor.setMaximumPoolSize( poolSize );
+				this.executor.setCorePoolSize( poolSize );
+
+			} else {
+				this.executor.setCorePoolSize( poolSize );
+				this.executor.setMaximumPoolSize( poolSize );
+			}
+
+			this.parallelism = newParallelism;
+		}
+	}
+
+
+	/**
+	 * Runs a set of executions and waits for them to complete.
+	 * <p>
+	 * If parallelism is disabled, executions are run in sequence and the first
+	 * failure stops the processing. Otherwise, all the executions are run.
+	 * </p>
+	 *
+	 * @param executions a non-null list of executions
+	 * @throws CommandException the error of the first failing execution (in the list order)
+	 */
+	public void runAll( List<? extends AbstractCommandExecution> executions ) throws CommandException {
+
+		if( this.parallelism < 2 || executions.size() < 2 ) {
+			for( AbstractCommandExecution execution : executions )
+				execution.execute();
+
+		} else {
+			CommandException[] errors = runAllInParallel( executions );
+			for( CommandException error : errors ) {
+				if( error != null )
+					throw error;
+			}
+		}
+	}
+
+
+	/**
+	 * Runs a set of executions in parallel and collects their errors.
+	 * @param executions a non-null list of executions
+	 * @return a non-null array (same size and order than the executions, null when an execution was successful)
+	 * @throws CommandException if the current thread was interrupted
+	 */
+	CommandException[] runAllInParallel( final List<? extends AbstractCommandExecution> executions )
+	throws CommandException {
+
+		final CommandException[] errors = new CommandException[ executions.size()];
+		final CountDownLatch latch = new CountDownLatch( executions.size());
+		final AtomicInteger nextIndex = new AtomicInteger( 0 );
+
+		Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+
+				int index;
+				while(( index = nextIndex.getAndIncrement()) < executions.size()) {
+					try {
+						executions.get( index ).execute();
+
+					} catch( CommandException e ) {
+						errors[ index ] = e;
+
+					} catch( Exception e ) {
+						errors[ index ] = new CommandException( e );
+
+					} finally {
+						latch.countDown();
+					}
+				}
+			}
+		};
+
+		// Solicit the pool (but do not queue more workers than needed)
+		int helpers = Math.min( this.parallelism, executions.size()) - 1;
+		for( int i=0; i<helpers; i++ ) {
+			try {
+				this.executor.execute( worker );
+
+			} catch( RejectedExecutionException e ) {
+				// The current thread will do the job.
+				break;
+			}
+		}
+
+		// And work too
+		worker.run();
+		try {
+			latch.await();
+
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new CommandException( e );
+		}
+
+		return errors;
+	}
+
+
+	/**
+	 * A thread factory that creates named daemon threads.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class CommandsThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger( 0 );
+
+		@Override
+		public Thread newThread( Runnable r ) {
+
+			Thread t = new Thread( r, "Roboconf - Commands Execution " + this.count.incrementAndGet());
+			t.setDaemon( true );
+			return t;
+		}
+	}
+}
@@ -29,6 +29,8 @@ import net.roboconf.core.commands.RenameCommandInstruction;
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.Manager;
 import net.roboconf.dm.management.exceptions.CommandException;
 
 /**
@@ -37,14 +39,17 @@ import net.roboconf.dm.management.exceptions.CommandException;
 class RenameCommandExecution extends AbstractCommandExecution {
 
 	private final RenameCommandInstruction instr;
+	private final Manager manager;
 
 
 	/**
 	 * Constructor.
 	 * @param instr
+	 * @param manager
 	 */
-	public RenameCommandExecution( RenameCommandInstruction instr ) {
+	public RenameCommandExecution( RenameCommandInstruction instr, Manager manager ) {
 		this.instr = instr;
+		this.manager = manager;
 	}
 
 
@@ -57,5 +62,10 @@ class RenameCommandExecution extends AbstractCommandExecution {
 			throw new CommandException( "Only instances that are not yet managed by an agent can be renamed." );
 
 		instance.setName( this.instr.getNewInstanceName());
+
+		// Instance paths changed
+		ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( this.instr.getApplication().getName());
+		if( ma != null )
+			ma.instancesStructureChanged();
 	}
 }
@@ -75,6 +75,7 @@ class ReplicateCommandExecution extends AbstractCommandExecution {
 
 			// Register meta-data
 			CreateInstanceCommandExecution.update( this.executionContext, copy );
+			ma.instanceChanged( copy );
 
 		} catch( Exception e ) {
 			throw new CommandException( e );
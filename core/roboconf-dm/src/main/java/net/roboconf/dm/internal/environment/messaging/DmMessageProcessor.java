@@ -38,9 +38,11 @@ import net.roboconf.core.model.helpers.ImportHelpers;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.utils.DockerAndScriptUtils;
 import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.internal.api.impl.InstancesMngrImpl;
 import net.roboconf.dm.internal.utils.DmUtils;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.messaging.api.AbstractMessageProcessor;
 import net.roboconf.messaging.api.business.IDmClient;
 import net.roboconf.messaging.api.messages.Message;
@@ -90,6 +92,21 @@ public class DmMessageProcessor extends AbstractMessageProcessor<IDmClient> {
 	@Override
 	public void processMessage( Message message ) {
 
+		long start = System.nanoTime();
+		IMetricsMngr metricsMngr = this.manager.metricsMngr();
+		metricsMngr.incrementCounter( IMetricsMngr.MESSAGING_RECEIVED + message.getClass().getSimpleName());
+
+		dispatchMessage( message );
+		metricsMngr.recordDuration( IMetricsMngr.MESSAGING_PROCESSING, System.nanoTime() - start );
+	}
+
+
+	/**
+	 * Dispatches a message to the right processing method.
+	 * @param message a message (not null)
+	 */
+	private void dispatchMessage( Message message ) {
+
 		if( message instanceof MsgNotifMachineDown )
 			processMsgNotifMachineDown((MsgNotifMachineDown) message );
 
@@ -181,7 +198,12 @@ public class DmMessageProcessor extends AbstractMessageProcessor<IDmClient> {
 		Application app = ma == null ? null : ma.getApplication();
 		Instance scopedInstance = InstanceHelpers.findInstanceByPath( app, scopedInstancePath );
 
-		if( scopedInstance == null ) {
+		if( scopedInstance == null
+				&& this.manager.warmPoolMngr() != null
+				&& this.manager.warmPoolMngr().acknowledgeHeartBeat( message.getApplicationName(), scopedInstancePath, message.getIpAddress())) {
+			this.logger.finest( "A heart beat was acknowledged for idle machine " + scopedInstancePath + "." );
+
+		} else if( scopedInstance == null ) {
 			// If 'app' is null, then 'instance' is also null.
 			StringBuilder sb = new StringBuilder();
 			sb.append( "A 'HEART BEAT' was received from an unknown agent: " );
@@ -275,6 +297,9 @@ public class DmMessageProcessor extends AbstractMessageProcessor<IDmClient> {
 			this.logger.warning( sb.toString());
 
 		} else {
+			String key = InstancesMngrImpl.timingKey( ma.getName(), instancePath );
+			this.manager.metricsMngr().stopTiming( IMetricsMngr.MESSAGING_AGENT_ROUND_TRIP, key );
+
 			InstanceStatus oldStatus = instance.getStatus();
 			instance.setStatus( message.getNewStatus());
 			ImportHelpers.updateImports( instance, message.getNewImports());
@@ -317,6 +342,10 @@ public class DmMessageProcessor extends AbstractMessageProcessor<IDmClient> {
 			else
 				instance.getParent().getChildren().remove( instance );
 
+			ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( message.getApplicationName());
+			if( ma != null )
+				ma.instancesStructureChanged();
+
 			this.logger.info( "Instance " + instancePath + " was removed from the model." );
 		}
 	}
@@ -27,6 +27,8 @@ package net.roboconf.dm.internal.environment.messaging;
 
 import java.io.IOException;
 
+import net.roboconf.core.model.beans.Application;
+import net.roboconf.dm.internal.api.IWarmPoolMngr;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.api.IApplicationMngr;
 import net.roboconf.messaging.api.business.ListenerCommand;
@@ -39,6 +41,7 @@ import net.roboconf.messaging.api.reconfigurables.ReconfigurableClientDm;
 public class RCDm extends ReconfigurableClientDm {
 
 	private final IApplicationMngr applicationMngr;
+	private IWarmPoolMngr warmPoolMngr;
 
 
 	/**
@@ -51,6 +54,14 @@ public class RCDm extends ReconfigurableClientDm {
 	}
 
 
+	/**
+	 * @param warmPoolMngr the warmPoolMngr to set
+	 */
+	public void setWarmPoolMngr( IWarmPoolMngr warmPoolMngr ) {
+		this.warmPoolMngr = warmPoolMngr;
+	}
+
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.roboconf.messaging.api.reconfigurables.ReconfigurableClientDm
@@ -61,5 +72,11 @@ public class RCDm extends ReconfigurableClientDm {
 		super.openConnection( newMessagingClient );
 		for( ManagedApplication ma : this.applicationMngr.getManagedApplications())
 			listenToAgentMessages( newMessagingClient, ma.getApplication(), ListenerCommand.START );
+
+		// Agents of idle machines (warm pools) must also be heard
+		if( this.warmPoolMngr != null ) {
+			for( Application app : this.warmPoolMngr.findPoolApplications())
+				listenToAgentMessages( newMessagingClient, app, ListenerCommand.START );
+		}
 	}
 }
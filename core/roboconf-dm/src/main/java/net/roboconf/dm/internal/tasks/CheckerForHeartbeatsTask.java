@@ -25,7 +25,6 @@
 
 package net.roboconf.dm.internal.tasks;
 
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 import net.roboconf.dm.management.ManagedApplication;
@@ -35,7 +34,7 @@ import net.roboconf.dm.management.api.INotificationMngr;
 /**
  * @author Vincent Zurczak - Linagora
  */
-public class CheckerForHeartbeatsTask extends TimerTask {
+public class CheckerForHeartbeatsTask implements Runnable {
 
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final IApplicationMngr appManager;
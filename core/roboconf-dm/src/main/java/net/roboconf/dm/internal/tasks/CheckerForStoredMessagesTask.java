@@ -25,7 +25,6 @@
 
 package net.roboconf.dm.internal.tasks;
 
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 import net.roboconf.core.model.beans.Instance;
@@ -37,7 +36,7 @@ import net.roboconf.dm.management.api.IMessagingMngr;
 /**
  * @author Vincent Zurczak - Linagora
  */
-public class CheckerForStoredMessagesTask extends TimerTask {
+public class CheckerForStoredMessagesTask implements Runnable {
 
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final IMessagingMngr messagingMngr;
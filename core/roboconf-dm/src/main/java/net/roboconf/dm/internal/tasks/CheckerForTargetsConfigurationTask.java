@@ -25,7 +25,6 @@
 
 package net.roboconf.dm.internal.tasks;
 
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 import net.roboconf.dm.internal.api.ITargetConfigurator;
@@ -33,7 +32,7 @@ import net.roboconf.dm.internal.api.ITargetConfigurator;
 /**
  * @author Vincent Zurczak - Linagora
  */
-public class CheckerForTargetsConfigurationTask extends TimerTask {
+public class CheckerForTargetsConfigurationTask implements Runnable {
 
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final ITargetConfigurator targetConfigurator;
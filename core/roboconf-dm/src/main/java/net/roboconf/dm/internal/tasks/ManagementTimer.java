@@ -0,0 +1,211 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.internal.tasks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.management.api.IMetricsMngr;
+
+/**
+ * Runs the DM's periodic tasks.
+ * <p>
+ * Every task runs in its own lane (a single-threaded executor). This way, a slow
+ * execution of one task does not delay the others. Tasks are run with a fixed delay
+ * between the end of an execution and the beginning of the next one. And a task that
+ * fails with an error is not cancelled: it will run again at the next period.
+ * </p>
+ * <p>
+ * Executions are measured. Those that last longer than the task's period are reported
+ * as overruns.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class ManagementTimer {
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final IMetricsMngr metricsMngr;
+	private final Map<String,Lane> nameToLane = new ConcurrentHashMap<> ();
+	private boolean cancelled = false;
+
+
+	/**
+	 * Constructor.
+	 * @param metricsMngr the metrics API (not null)
+	 */
+	public ManagementTimer( IMetricsMngr metricsMngr ) {
+		this.metricsMngr = metricsMngr;
+	}
+
+
+	/**
+	 * Schedules a task.
+	 * <p>
+	 * The first execution starts immediately.
+	 * </p>
+	 *
+	 * @param name the task's name (must be unique)
+	 * @param task the task to run (not null)
+	 * @param period the delay between two executions, in milliseconds (must be positive)
+	 */
+	public synchronized void schedule( String name, Runnable task, long period ) {
+
+		if( this.cancelled )
+			throw new IllegalStateException( "The timer was cancelled." );
+
+		if( this.nameToLane.containsKey( name ))
+			throw new IllegalArgumentException( "A task named " + name + " was already scheduled." );
+
+		Lane lane = new Lane( name, task );
+		this.nameToLane.put( name, lane );
+		lane.start( 0, period );
+	}
+
+
+	/**
+	 * Changes the period of a task.
+	 * <p>
+	 * The next execution occurs after the new period (and never during a running execution).
+	 * Nothing is done if the task does not exist or if the period did not change.
+	 * </p>
+	 *
+	 * @param name the task's name
+	 * @param period the new delay between two executions, in milliseconds (must be positive)
+	 */
+	public synchronized void reschedule( String name, long period ) {
+
+		Lane lane = this.nameToLane.get( name );
+		if( lane != null && lane.period != period && ! this.cancelled ) {
+			this.logger.fine( "The period of the " + name + " task is changed to " + period + " ms." );
+			lane.future.cancel( false );
+			lane.start( period, period );
+		}
+	}
+
+
+	/**
+	 * @param name the task's name
+	 * @return the task's period, or null if the task does not exist
+	 */
+	public Long getPeriod( String name ) {
+		Lane lane = this.nameToLane.get( name );
+		return lane == null ? null : lane.period;
+	}
+
+
+	/**
+	 * Cancels all the tasks.
+	 * <p>
+	 * Running executions are not interrupted.
+	 * </p>
+	 */
+	public synchronized void cancel() {
+
+		this.cancelled = true;
+		for( Lane lane : this.nameToLane.values())
+			lane.executor.shutdown();
+
+		this.nameToLane.clear();
+	}
+
+
+	/**
+	 * A lane, i.e. a task and the thread that runs it.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private class Lane implements Runnable {
+
+		final String name;
+		final Runnable task;
+		final ScheduledExecutorService executor;
+
+		volatile long period;
+		ScheduledFuture<?> future;
+
+
+		/**
+		 * Constructor.
+		 * @param name
+		 * @param task
+		 */
+		Lane( final String name, Runnable task ) {
+			this.name = name;
+			this.task = task;
+			this.executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+				@Override
+				public Thread newThread( Runnable r ) {
+					return new Thread( r, "Roboconf's Management Timer - " + name );
+				}
+			});
+		}
+
+
+		/**
+		 * Schedules the executions.
+		 * @param initialDelay the delay before the first execution (in milliseconds)
+		 * @param period the delay between two executions (in milliseconds)
+		 */
+		void start( long initialDelay, long period ) {
+			this.period = period;
+			this.future = this.executor.scheduleWithFixedDelay( this, initialDelay, period, TimeUnit.MILLISECONDS );
+		}
+
+
+		@Override
+		public void run() {
+
+			long start = System.nanoTime();
+			try {
+				this.task.run();
+
+			} catch( Exception e ) {
+				// An uncaught exception would cancel the next executions.
+				ManagementTimer.this.metricsMngr.incrementCounter( IMetricsMngr.TASKS_FAILURES + this.name );
+				ManagementTimer.this.logger.severe( "An error occurred while running the " + this.name + " task. " + e.getMessage());
+				Utils.logException( ManagementTimer.this.logger, e );
+
+			} finally {
+				long duration = System.nanoTime() - start;
+				ManagementTimer.this.metricsMngr.recordDuration( IMetricsMngr.TASKS_EXECUTION + this.name, duration );
+
+				long durationMs = TimeUnit.NANOSECONDS.toMillis( duration );
+				if( durationMs > this.period ) {
+					ManagementTimer.this.metricsMngr.incrementCounter( IMetricsMngr.TASKS_OVERRUNS + this.name );
+					ManagementTimer.this.logger.warning(
+							"The " + this.name + " task lasted " + durationMs
+							+ " ms, which is longer than its period (" + this.period + " ms)." );
+				}
+			}
+		}
+	}
+}
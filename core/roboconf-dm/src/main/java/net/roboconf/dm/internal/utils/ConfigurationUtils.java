@@ -42,6 +42,7 @@ import net.roboconf.core.model.beans.Graphs;
 import net.roboconf.core.utils.IconUtils;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.api.IMetricsMngr;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -51,6 +52,7 @@ public final class ConfigurationUtils {
 	public static final String TEMPLATES = "application-templates";
 	public static final String APPLICATIONS = "applications";
 	public static final String TARGETS = "targets";
+	public static final String WARM_POOLS = "warm-pools";
 
 	public static final String INSTANCES_FILE = "current.instances";
 	public static final String APP_BINDINGS_FILE = "application-bindings.properties";
@@ -107,6 +109,20 @@ public final class ConfigurationUtils {
 	}
 
 
+	/**
+	 * Saves the instances into a file and records how long it took.
+	 * @param ma the application (not null)
+	 * @param metricsMngr the metrics manager (can be null)
+	 */
+	public static void saveInstances( ManagedApplication ma, IMetricsMngr metricsMngr ) {
+
+		long start = System.nanoTime();
+		saveInstances( ma.getApplication());
+		if( metricsMngr != null )
+			metricsMngr.recordDuration( IMetricsMngr.INSTANCES_SAVE, System.nanoTime() - start );
+	}
+
+
 	/**
 	 * Saves the instances into a file.
 	 * @param app the application (not null)
@@ -114,10 +130,14 @@ public final class ConfigurationUtils {
 	 */
 	public static void saveInstances( Application app ) {
 
+		// Instances may be saved concurrently (e.g. when commands are executed in parallel).
+		// Saves are serialized per application: different applications do not wait for each other.
 		File targetFile = new File( app.getDirectory(), Constants.PROJECT_DIR_INSTANCES + "/" + INSTANCES_FILE );
 		try {
-			Utils.createDirectory( targetFile.getParentFile());
-			RuntimeModelIo.writeInstances( targetFile, app.getRootInstances());
+			synchronized( app ) {
+				Utils.createDirectory( targetFile.getParentFile());
+				RuntimeModelIo.writeInstances( targetFile, app.getRootInstances());
+			}
 
 		} catch( IOException e ) {
 			Logger logger = Logger.getLogger( ConfigurationUtils.class.getName());
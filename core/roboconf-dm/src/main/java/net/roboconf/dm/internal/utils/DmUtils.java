@@ -61,6 +61,7 @@ public final class DmUtils {
 		for( Instance i : InstanceHelpers.buildHierarchicalList( scopedInstance )) {
 			InstanceStatus oldstatus = i.getStatus();
 			i.setStatus( InstanceStatus.NOT_DEPLOYED );
+			ma.instanceChanged( i );
 
 			// Send a notification only if there was a change
 			if( oldstatus != InstanceStatus.NOT_DEPLOYED )
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.jmx;
+
+import java.util.Map;
+
+/**
+ * The interface to monitor the operations of the DM.
+ * @author Vincent Zurczak - Linagora
+ */
+public interface DmMetricsMBean {
+
+	/**
+	 * @return the counters (key = counter name, value = counter value)
+	 */
+	Map<String,Long> getCounters();
+
+	/**
+	 * @return the gauges (key = gauge name, value = gauge value)
+	 */
+	Map<String,Long> getGauges();
+
+	/**
+	 * @return a summary of the histograms (key = histogram name, value = human-readable statistics, in milliseconds)
+	 */
+	Map<String,String> getHistogramSummaries();
+
+	/**
+	 * Resets all the counters and histograms.
+	 */
+	void reset();
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.management;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.roboconf.core.model.beans.Application;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.helpers.InstanceHelpers;
+
+/**
+ * An immutable view of the instances of an application, at a given version.
+ * <p>
+ * Snapshots contain copies of the application's instances. These copies are detached
+ * from the model that the DM updates, so that readers (e.g. the REST API) can browse them
+ * without walking a tree that is modified concurrently. They must not be modified.
+ * </p>
+ * <p>
+ * Copies only have their parent set (so that their path can be computed).
+ * Their children are resolved through the snapshot.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public final class InstancesSnapshot {
+
+	private final long version;
+	private final List<String> orderedPaths;
+	private final List<String> rootPaths;
+	private final Map<String,List<String>> pathToChildrenPaths;
+	private final Map<String,Instance> pathToCopy;
+	private volatile List<String> sortedPaths;
+
+
+	/**
+	 * Constructor.
+	 * @param version
+	 * @param orderedPaths
+	 * @param rootPaths
+	 * @param pathToChildrenPaths
+	 * @param pathToCopy
+	 * @param sortedPaths (can be null, computed on demand)
+	 */
+	private InstancesSnapshot(
+			long version,
+			List<String> orderedPaths,
+			List<String> rootPaths,
+			Map<String,List<String>> pathToChildrenPaths,
+			Map<String,Instance> pathToCopy,
+			List<String> sortedPaths ) {
+
+		this.version = version;
+		this.orderedPaths = orderedPaths;
+		this.rootPaths = rootPaths;
+		this.pathToChildrenPaths = pathToChildrenPaths;
+		this.pathToCopy = pathToCopy;
+		this.sortedPaths = sortedPaths;
+	}
+
+
+	/**
+	 * Builds a snapshot from scratch.
+	 * @param application an application (not null)
+	 * @param version the version of the snapshot
+	 * @return a non-null snapshot
+	 */
+	public static InstancesSnapshot build( Application application, long version ) {
+
+		List<String> orderedPaths = new ArrayList<> ();
+		List<String> rootPaths = new ArrayList<> ();
+		Map<String,List<String>> pathToChildrenPaths = new HashMap<> ();
+		Map<String,Instance> pathToCopy = new HashMap<> ();
+
+		for( Instance rootInstance : application.getRootInstances()) {
+			String rootPath = InstanceHelpers.computeInstancePath( rootInstance );
+			rootPaths.add( rootPath );
+
+			// Same order than InstanceHelpers#buildHierarchicalList.
+			// Parent copies are queued along with the instances.
+			Deque<Instance> toProcess = new ArrayDeque<> ();
+			Deque<String> toProcessPaths = new ArrayDeque<> ();
+			toProcess.add( rootInstance );
+			toProcessPaths.add( rootPath );
+
+			while( ! toProcess.isEmpty()) {
+				Instance current = toProcess.poll();
+				String path = toProcessPaths.poll();
+
+				String parentPath = current.getParent() == null ? null : path.substring( 0, path.lastIndexOf( '/' ));
+				Instance copy = copy( current, parentPath == null ? null : pathToCopy.get( parentPath ));
+				orderedPaths.add( path );
+				pathToCopy.put( path, copy );
+
+				Collection<Instance> children = current.getChildren();
+				List<String> childrenPaths = new ArrayList<>( children.size());
+				for( Instance child : children ) {
+					String childPath = path + "/" + child.getName();
+					childrenPaths.add( childPath );
+					toProcess.add( child );
+					toProcessPaths.add( childPath );
+				}
+
+				pathToChildrenPaths.put( path, Collections.unmodifiableList( childrenPaths ));
+			}
+		}
+
+		return new InstancesSnapshot(
+				version,
+				Collections.unmodifiableList( orderedPaths ),
+				Collections.unmodifiableList( rootPaths ),
+				pathToChildrenPaths,
+				pathToCopy,
+				null );
+	}
+
+
+	/**
+	 * Builds a new snapshot from this one, by only copying again some instances.
+	 * <p>
+	 * This method must only be used when the structure of the application did not change
+	 * (no instance was added, removed or renamed). Other copies are shared between both snapshots.
+	 * </p>
+	 *
+	 * @param application an application (not null)
+	 * @param changedInstances the instances whose state changed (key = instance path, value = instance)
+	 * @param newVersion the version of the new snapshot
+	 * @return a non-null snapshot
+	 */
+	public InstancesSnapshot update( Application application, Map<String,Instance> changedInstances, long newVersion ) {
+
+		Map<String,Instance> newPathToCopy = new HashMap<>( this.pathToCopy );
+		for( Map.Entry<String,Instance> entry : changedInstances.entrySet()) {
+			Instance oldCopy = this.pathToCopy.get( entry.getKey());
+			if( oldCopy == null )
+				return build( application, newVersion );
+
+			// Names do not change, so paths computed from the children remain valid.
+			newPathToCopy.put( entry.getKey(), copy( entry.getValue(), oldCopy.getParent()));
+		}
+
+		return new InstancesSnapshot(
+				newVersion,
+				this.orderedPaths,
+				this.rootPaths,
+				this.pathToChildrenPaths,
+				newPathToCopy,
+				this.sortedPaths );
+	}
+
+
+	/**
+	 * @return the version of this snapshot
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+
+	/**
+	 * @return a non-null list with all the instances (in the same order than {@link InstanceHelpers#getAllInstances(net.roboconf.core.model.beans.AbstractApplication)})
+	 */
+	public List<Instance> getAllInstances() {
+		return resolve( this.orderedPaths );
+	}
+
+
+	/**
+	 * @return a non-null list with the root instances
+	 */
+	public List<Instance> getRootInstances() {
+		return resolve( this.rootPaths );
+	}
+
+
+	/**
+	 * Gets all the instance paths, sorted alphabetically.
+	 * <p>
+	 * In this list, all the descendants of an instance are contiguous.
+	 * It is computed on demand and shared with the snapshots that are derived from this one,
+	 * as long as the application's structure does not change. It is convenient to paginate listings
+	 * (binary searches can be used to find the position of a given path).
+	 * </p>
+	 *
+	 * @return a non-null list of sorted paths
+	 */
+	public List<String> getSortedPaths() {
+
+		// Races are harmless, the result is always the same
+		List<String> result = this.sortedPaths;
+		if( result == null ) {
+			List<String> list = new ArrayList<>( this.orderedPaths );
+			Collections.sort( list );
+			result = Collections.unmodifiableList( list );
+			this.sortedPaths = result;
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * @param instancePath an instance path
+	 * @return the copy of the instance, or null if it was not found
+	 */
+	public Instance findInstanceByPath( String instancePath ) {
+		return this.pathToCopy.get( instancePath );
+	}
+
+
+	/**
+	 * Finds the children of an instance.
+	 * @param instancePath an instance path
+	 * @param allChildren true to get all the descendants, false to only get the direct children
+	 * @return a non-null list (empty if the instance was not found)
+	 */
+	public List<Instance> findChildren( String instancePath, boolean allChildren ) {
+
+		List<String> paths = new ArrayList<> ();
+		Deque<String> toProcess = new ArrayDeque<> ();
+		List<String> childrenPaths = this.pathToChildrenPaths.get( instancePath );
+		if( childrenPaths != null )
+			toProcess.addAll( childrenPaths );
+
+		while( ! toProcess.isEmpty()) {
+			String path = toProcess.poll();
+			paths.add( path );
+			if( allChildren )
+				toProcess.addAll( this.pathToChildrenPaths.get( path ));
+		}
+
+		return resolve( paths );
+	}
+
+
+	/**
+	 * @param paths a non-null list of paths
+	 * @return a non-null list of copies
+	 */
+	private List<Instance> resolve( List<String> paths ) {
+
+		List<Instance> result = new ArrayList<>( paths.size());
+		for( String path : paths )
+			result.add( this.pathToCopy.get( path ));
+
+		return result;
+	}
+
+
+	/**
+	 * Copies the state of an instance.
+	 * @param original the original instance
+	 * @param parentCopy the copy of its parent (can be null)
+	 * @return a non-null copy, without children
+	 */
+	static Instance copy( Instance original, Instance parentCopy ) {
+
+		Instance copy = new Instance( original.getName());
+		copy.setComponent( original.getComponent());
+		copy.setStatus( original.getStatus());
+		copy.setParent( parentCopy );
+		copy.channels.addAll( original.channels );
+		copy.overriddenExports.putAll( original.overriddenExports );
+		synchronized( original.data ) {
+			copy.data.putAll( original.data );
+		}
+
+		return copy;
+	}
+}
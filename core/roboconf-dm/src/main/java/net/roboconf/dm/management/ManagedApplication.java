@@ -30,9 +30,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import net.roboconf.core.model.beans.Application;
@@ -59,6 +62,13 @@ public class ManagedApplication {
 
 	private final Map<Instance,List<Message>> scopedInstanceToAwaitingMessages;
 
+	// Snapshots of the instances
+	private final AtomicLong instancesVersion = new AtomicLong();
+	private final AtomicLong instancesStructureVersion = new AtomicLong();
+	private final Map<String,Instance> changedInstances = new ConcurrentHashMap<> ();
+	private final Object snapshotLock = new Object();
+	private volatile boolean structureChanged = true;
+	private volatile InstancesSnapshot snapshot;
 
 
 	/**
@@ -109,6 +119,88 @@ public class ManagedApplication {
 	}
 
 
+	/**
+	 * @return the version of the instances (incremented on every notified change)
+	 */
+	public long getInstancesVersion() {
+		return this.instancesVersion.get();
+	}
+
+
+	/**
+	 * @return the version of the instances structure (incremented every time instances are added, removed or renamed)
+	 */
+	public long getInstancesStructureVersion() {
+		return this.instancesStructureVersion.get();
+	}
+
+
+	/**
+	 * Indicates the state of an instance changed (status, data...).
+	 * @param instance a non-null instance
+	 */
+	public void instanceChanged( Instance instance ) {
+		this.changedInstances.put( InstanceHelpers.computeInstancePath( instance ), instance );
+		this.instancesVersion.incrementAndGet();
+	}
+
+
+	/**
+	 * Indicates instances were added, removed or renamed.
+	 */
+	public void instancesStructureChanged() {
+		this.structureChanged = true;
+		this.instancesStructureVersion.incrementAndGet();
+		this.instancesVersion.incrementAndGet();
+	}
+
+
+	/**
+	 * Gets a snapshot of the application's instances.
+	 * <p>
+	 * Snapshots are rebuilt lazily: changes are accumulated until the next
+	 * invocation of this method. When only the states of some instances changed,
+	 * only these instances are copied again.
+	 * </p>
+	 *
+	 * @return a non-null snapshot, up-to-date with the notified changes
+	 */
+	public InstancesSnapshot getInstancesSnapshot() {
+
+		InstancesSnapshot result = this.snapshot;
+		if( result == null || result.getVersion() != this.instancesVersion.get()) {
+			synchronized( this.snapshotLock ) {
+
+				// Changes are always recorded before the version is incremented.
+				// So, reading the version first guarantees we do not miss any change.
+				long version = this.instancesVersion.get();
+				result = this.snapshot;
+				if( result == null || result.getVersion() != version ) {
+
+					Map<String,Instance> changed = new HashMap<> ();
+					for( Iterator<Map.Entry<String,Instance>> it = this.changedInstances.entrySet().iterator(); it.hasNext(); ) {
+						Map.Entry<String,Instance> entry = it.next();
+						changed.put( entry.getKey(), entry.getValue());
+						it.remove();
+					}
+
+					if( result == null || this.structureChanged ) {
+						this.structureChanged = false;
+						result = InstancesSnapshot.build( this.application, version );
+
+					} else {
+						result = result.update( this.application, changed, version );
+					}
+
+					this.snapshot = result;
+				}
+			}
+		}
+
+		return result;
+	}
+
+
 	/**
 	 * Stores a message to send once the root instance is online.
 	 * <p>
@@ -181,6 +273,7 @@ public class ManagedApplication {
 
 		scopedInstance.setStatus( InstanceStatus.DEPLOYED_STARTED );
 		scopedInstance.data.remove( MISSED_HEARTBEATS );
+		instanceChanged( scopedInstance );
 	}
 
 
@@ -200,7 +293,9 @@ public class ManagedApplication {
 			if( scopedInstance.getStatus() == InstanceStatus.NOT_DEPLOYED
 					|| scopedInstance.getStatus() == InstanceStatus.DEPLOYING
 					|| scopedInstance.getStatus() == InstanceStatus.UNDEPLOYING ) {
-				scopedInstance.data.remove( MISSED_HEARTBEATS );
+				if( scopedInstance.data.remove( MISSED_HEARTBEATS ) != null )
+					instanceChanged( scopedInstance );
+
 				continue;
 			}
 
@@ -214,6 +309,7 @@ public class ManagedApplication {
 			}
 
 			scopedInstance.data.put( MISSED_HEARTBEATS, String.valueOf( count ));
+			instanceChanged( scopedInstance );
 		}
 	}
 }
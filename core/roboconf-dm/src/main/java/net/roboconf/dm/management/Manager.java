@@ -28,7 +28,6 @@ package net.roboconf.dm.management;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
-import java.util.Timer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +36,7 @@ import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.runtime.IReconfigurable;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.internal.api.IRandomMngr;
+import net.roboconf.dm.internal.api.IWarmPoolMngr;
 import net.roboconf.dm.internal.api.impl.ApplicationMngrImpl;
 import net.roboconf.dm.internal.api.impl.ApplicationTemplateMngrImpl;
 import net.roboconf.dm.internal.api.impl.AutonomicMngrImpl;
@@ -45,17 +45,21 @@ import net.roboconf.dm.internal.api.impl.ConfigurationMngrImpl;
 import net.roboconf.dm.internal.api.impl.DebugMngrImpl;
 import net.roboconf.dm.internal.api.impl.InstancesMngrImpl;
 import net.roboconf.dm.internal.api.impl.MessagingMngrImpl;
+import net.roboconf.dm.internal.api.impl.MetricsMngrImpl;
 import net.roboconf.dm.internal.api.impl.NotificationMngrImpl;
 import net.roboconf.dm.internal.api.impl.PreferencesMngrImpl;
 import net.roboconf.dm.internal.api.impl.RandomMngrImpl;
 import net.roboconf.dm.internal.api.impl.TargetConfiguratorImpl;
 import net.roboconf.dm.internal.api.impl.TargetHandlerResolverImpl;
 import net.roboconf.dm.internal.api.impl.TargetsMngrImpl;
+import net.roboconf.dm.internal.api.impl.WarmPoolMngrImpl;
 import net.roboconf.dm.internal.environment.messaging.DmMessageProcessor;
 import net.roboconf.dm.internal.environment.messaging.RCDm;
 import net.roboconf.dm.internal.tasks.CheckerForHeartbeatsTask;
 import net.roboconf.dm.internal.tasks.CheckerForStoredMessagesTask;
 import net.roboconf.dm.internal.tasks.CheckerForTargetsConfigurationTask;
+import net.roboconf.dm.internal.tasks.CheckerForWarmPoolsTask;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.utils.ConfigurationUtils;
 import net.roboconf.dm.jmx.ManagerMBean;
 import net.roboconf.dm.management.api.IApplicationMngr;
@@ -66,6 +70,7 @@ import net.roboconf.dm.management.api.IConfigurationMngr;
 import net.roboconf.dm.management.api.IDebugMngr;
 import net.roboconf.dm.management.api.IInstancesMngr;
 import net.roboconf.dm.management.api.IMessagingMngr;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.dm.management.api.INotificationMngr;
 import net.roboconf.dm.management.api.IPreferencesMngr;
 import net.roboconf.dm.management.api.ITargetHandlerResolver;
@@ -74,6 +79,7 @@ import net.roboconf.dm.management.events.IDmListener;
 import net.roboconf.messaging.api.business.ListenerCommand;
 import net.roboconf.messaging.api.factory.IMessagingClientFactory;
 import net.roboconf.messaging.api.factory.MessagingClientFactoryRegistry;
+import net.roboconf.messaging.api.utils.OsgiHelper;
 import net.roboconf.target.api.TargetHandler;
 
 /**
@@ -102,16 +108,25 @@ import net.roboconf.target.api.TargetHandler;
 public class Manager implements IReconfigurable, ManagerMBean {
 
 	// Constants
-	private static final long TIMER_PERIOD = 6000;
+	static final long TIMER_PERIOD = 6000;
+	static final String STORED_MESSAGES_TASK = "stored-messages";
+	static final String TARGETS_CONFIGURATION_TASK = "targets-configuration";
+	static final String HEARTBEATS_TASK = "heartbeats";
+	static final String WARM_POOLS_TASK = "warm-pools";
 
 	// Injected by iPojo or Admin Config
 	protected String messagingType;
 	protected String domain = Constants.DEFAULT_DOMAIN;
 	protected IPreferencesMngr preferencesMngr;
 
+	protected long storedMessagesPeriod = TIMER_PERIOD;
+	protected long targetsConfigurationPeriod = TIMER_PERIOD;
+	protected long warmPoolsPeriod = TIMER_PERIOD;
+	protected long heartbeatsPeriod = Constants.HEARTBEAT_PERIOD;
+
 	// Internal fields
 	protected final Logger logger = Logger.getLogger( getClass().getName());
-	protected Timer timer;
+	protected ManagementTimer timer;
 
 	private RCDm messagingClient;
 
@@ -120,6 +135,7 @@ public class Manager implements IReconfigurable, ManagerMBean {
 	private final MessagingMngrImpl messagingMngr;
 	private final ApplicationMngrImpl applicationMngr;
 	private final InstancesMngrImpl instancesMngr;
+	private final MetricsMngrImpl metricsMngr;
 
 	private final IConfigurationMngr configurationMngr;
 	private final IApplicationTemplateMngr applicationTemplateMngr;
@@ -133,6 +149,7 @@ public class Manager implements IReconfigurable, ManagerMBean {
 	// Private API
 	private final IRandomMngr randomMngr;
 	private final TargetConfiguratorImpl targetConfigurator;
+	private final WarmPoolMngrImpl warmPoolMngr;
 
 
 	/**
@@ -144,11 +161,13 @@ public class Manager implements IReconfigurable, ManagerMBean {
 		// Home-made DI.
 		// We do not want to mix N frameworks.
 		this.notificationMngr = new NotificationMngrImpl();
+		this.metricsMngr = new MetricsMngrImpl();
 		this.configurationMngr = new ConfigurationMngrImpl();
 		this.randomMngr = new RandomMngrImpl();
 
 		this.messagingMngr = new MessagingMngrImpl();
 		this.defaultTargetHandlerResolver = new TargetHandlerResolverImpl();
+		this.defaultTargetHandlerResolver.setMetricsMngr( this.metricsMngr );
 		this.targetsMngr = new TargetsMngrImpl( this.configurationMngr );
 		this.debugMngr = new DebugMngrImpl( this.messagingMngr, this.notificationMngr );
 		this.commandsMngr = new CommandsMngrImpl( this );
@@ -164,11 +183,19 @@ public class Manager implements IReconfigurable, ManagerMBean {
 
 		this.targetConfigurator = new TargetConfiguratorImpl();
 		this.targetConfigurator.setTargetHandlerResolver( this.defaultTargetHandlerResolver );
+		this.targetConfigurator.setApplicationMngr( this.applicationMngr );
+
+		this.warmPoolMngr = new WarmPoolMngrImpl( this.messagingMngr, this.targetsMngr, this.configurationMngr );
+		this.warmPoolMngr.setTargetHandlerResolver( this.defaultTargetHandlerResolver );
+		this.warmPoolMngr.setDmDomain( this.domain );
 
 		this.instancesMngr = new InstancesMngrImpl( this.messagingMngr, this.notificationMngr, this.targetsMngr, this.randomMngr, this.targetConfigurator );
 		this.instancesMngr.setTargetHandlerResolver( this.defaultTargetHandlerResolver );
 		this.instancesMngr.setRuleBasedHandler( this.autonomicMngr );
 		this.instancesMngr.setDmDomain( this.domain );
+		this.instancesMngr.setMetricsMngr( this.metricsMngr );
+		this.messagingMngr.setMetricsMngr( this.metricsMngr );
+		this.instancesMngr.setWarmPoolMngr( this.warmPoolMngr );
 
 		// The manager is supposed to be an API.
 		// To make it simple to use in non-OSGi environments, we instantiate a default set of preferences.
@@ -193,19 +220,35 @@ public class Manager implements IReconfigurable, ManagerMBean {
 		DmMessageProcessor messageProcessor = new DmMessageProcessor( this );
 		this.messagingClient = new RCDm( this.applicationMngr );
 		this.messagingClient.setDomain( this.domain );
+		this.messagingClient.setWarmPoolMngr( this.warmPoolMngr );
 		this.messagingClient.associateMessageProcessor( messageProcessor );
 		this.messagingMngr.setMessagingClient( this.messagingClient );
 
-		// Start the target configurator
+		// Start the target configurator and the warm pools
 		this.targetConfigurator.start();
-
-		// Run the timer
-		this.timer = new Timer( "Roboconf's Management Timer", false );
-		this.timer.scheduleAtFixedRate( new CheckerForStoredMessagesTask( this.applicationMngr, this.messagingMngr ), 0, TIMER_PERIOD );
-		this.timer.scheduleAtFixedRate( new CheckerForTargetsConfigurationTask( this.targetConfigurator ), 0, TIMER_PERIOD );
-		this.timer.scheduleAtFixedRate(
+		this.warmPoolMngr.start();
+
+		// Run the timer (one lane per task)
+		this.timer = new ManagementTimer( this.metricsMngr );
+		this.timer.schedule(
+				STORED_MESSAGES_TASK,
+				new CheckerForStoredMessagesTask( this.applicationMngr, this.messagingMngr ),
+				this.storedMessagesPeriod );
+
+		this.timer.schedule(
+				TARGETS_CONFIGURATION_TASK,
+				new CheckerForTargetsConfigurationTask( this.targetConfigurator ),
+				this.targetsConfigurationPeriod );
+
+		this.timer.schedule(
+				WARM_POOLS_TASK,
+				new CheckerForWarmPoolsTask( this.warmPoolMngr ),
+				this.warmPoolsPeriod );
+
+		this.timer.schedule(
+				HEARTBEATS_TASK,
 				new CheckerForHeartbeatsTask( this.applicationMngr, this.notificationMngr ),
-				0, Constants.HEARTBEAT_PERIOD );
+				this.heartbeatsPeriod );
 
 		// Configure the messaging
 		reconfigure();
@@ -220,6 +263,9 @@ public class Manager implements IReconfigurable, ManagerMBean {
 		// Enable notifications to listeners
 		this.notificationMngr.enableNotifications();
 
+		// Expose the metrics through JMX
+		this.metricsMngr.registerService( new OsgiHelper());
+
 		this.logger.info( "The DM was launched." );
 	}
 
@@ -241,13 +287,17 @@ public class Manager implements IReconfigurable, ManagerMBean {
 
 		// Save the instances
 		for( ManagedApplication ma : this.applicationMngr.getManagedApplications())
-			ConfigurationUtils.saveInstances( ma );
+			ConfigurationUtils.saveInstances( ma, this.metricsMngr );
+
+		// Stop exposing the metrics
+		this.metricsMngr.unregisterService();
 
 		// Disable notifications to listeners
 		this.notificationMngr.disableNotifications();
 
-		// Stop the target configurator
+		// Stop the target configurator and terminate idle machines
 		this.targetConfigurator.stop();
+		this.warmPoolMngr.stop();
 
 		// Stops listening to the debug queue.
 		if( this.messagingClient != null ) {
@@ -398,6 +448,7 @@ public class Manager implements IReconfigurable, ManagerMBean {
 			this.domain = domain;
 			this.logger.fine( "Domain set to " + domain );
 			this.instancesMngr.setDmDomain( domain );
+			this.warmPoolMngr.setDmDomain( domain );
 
 			// Explicitly require a reconfiguration.
 			reconfigure();
@@ -405,6 +456,42 @@ public class Manager implements IReconfigurable, ManagerMBean {
 	}
 
 
+	/**
+	 * Sets the period of the task that sends stored messages to agents.
+	 * @param period a period, in milliseconds (ignored if not positive)
+	 */
+	public void setStoredMessagesPeriod( long period ) {
+		this.storedMessagesPeriod = updatePeriod( STORED_MESSAGES_TASK, this.storedMessagesPeriod, period );
+	}
+
+
+	/**
+	 * Sets the period of the task that verifies machines configuration.
+	 * @param period a period, in milliseconds (ignored if not positive)
+	 */
+	public void setTargetsConfigurationPeriod( long period ) {
+		this.targetsConfigurationPeriod = updatePeriod( TARGETS_CONFIGURATION_TASK, this.targetsConfigurationPeriod, period );
+	}
+
+
+	/**
+	 * Sets the period of the task that refills warm pools.
+	 * @param period a period, in milliseconds (ignored if not positive)
+	 */
+	public void setWarmPoolsPeriod( long period ) {
+		this.warmPoolsPeriod = updatePeriod( WARM_POOLS_TASK, this.warmPoolsPeriod, period );
+	}
+
+
+	/**
+	 * Sets the period of the task that checks agents' heart beats.
+	 * @param period a period, in milliseconds (ignored if not positive)
+	 */
+	public void setHeartbeatsPeriod( long period ) {
+		this.heartbeatsPeriod = updatePeriod( HEARTBEATS_TASK, this.heartbeatsPeriod, period );
+	}
+
+
 	/**
 	 * @param preferencesMngr the preferencesMngr to set
 	 */
@@ -423,9 +510,11 @@ public class Manager implements IReconfigurable, ManagerMBean {
 
 		if( targetHandlerResolver == null ) {
 			this.targetConfigurator.setTargetHandlerResolver( this.defaultTargetHandlerResolver );
+			this.warmPoolMngr.setTargetHandlerResolver( this.defaultTargetHandlerResolver );
 			this.instancesMngr.setTargetHandlerResolver( this.defaultTargetHandlerResolver );
 		} else {
 			this.targetConfigurator.setTargetHandlerResolver( targetHandlerResolver );
+			this.warmPoolMngr.setTargetHandlerResolver( targetHandlerResolver );
 			this.instancesMngr.setTargetHandlerResolver( targetHandlerResolver );
 		}
 	}
@@ -518,6 +607,20 @@ public class Manager implements IReconfigurable, ManagerMBean {
 		return this.autonomicMngr;
 	}
 
+	/**
+	 * @return the metrics API
+	 */
+	public IMetricsMngr metricsMngr() {
+		return this.metricsMngr;
+	}
+
+	/**
+	 * @return the warm pools (private API, used to process agents' messages)
+	 */
+	public IWarmPoolMngr warmPoolMngr() {
+		return this.warmPoolMngr;
+	}
+
 
 	// Convenience methods for non-OSGi environments
 
@@ -624,4 +727,32 @@ public class Manager implements IReconfigurable, ManagerMBean {
 		for( ManagedApplication ma : this.applicationMngr.getManagedApplications())
 			instancesMngr().restoreInstanceStates( ma, targetHandler );
 	}
+
+
+	/**
+	 * Updates the period of a periodic task.
+	 * <p>
+	 * If the DM is started, the task is rescheduled.
+	 * </p>
+	 *
+	 * @param taskName the task's name
+	 * @param currentPeriod the current period
+	 * @param newPeriod the new period (in milliseconds)
+	 * @return the period to retain
+	 */
+	private long updatePeriod( String taskName, long currentPeriod, long newPeriod ) {
+
+		long result = currentPeriod;
+		if( newPeriod <= 0 ) {
+			this.logger.warning( "Invalid period for the " + taskName + " task: " + newPeriod + ". It is ignored." );
+
+		} else if( newPeriod != currentPeriod ) {
+			this.logger.fine( "The period of the " + taskName + " task is set to " + newPeriod + " ms." );
+			result = newPeriod;
+			if( this.timer != null )
+				this.timer.reschedule( taskName, newPeriod );
+		}
+
+		return result;
+	}
 }
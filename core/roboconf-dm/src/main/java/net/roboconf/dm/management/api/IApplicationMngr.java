@@ -109,6 +109,11 @@ public interface IApplicationMngr {
 	 */
 	Collection<ManagedApplication> getManagedApplications();
 
+	/**
+	 * @return the version of the applications list (incremented every time an application is created or deleted)
+	 */
+	long getApplicationsVersion();
+
 	/**
 	 * Binds (one-way direction) or unbinds two applications for external exports.
 	 * @param ma the application into which a binding must be created
@@ -68,6 +68,12 @@ public interface IApplicationTemplateMngr {
 	Set<ApplicationTemplate> getApplicationTemplates();
 
 
+	/**
+	 * @return the version of the templates list (incremented every time a template is loaded or deleted)
+	 */
+	long getTemplatesVersion();
+
+
 	/**
 	 * Finds a template.
 	 * <p>
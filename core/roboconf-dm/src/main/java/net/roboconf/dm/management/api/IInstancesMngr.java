@@ -100,6 +100,14 @@ public interface IInstancesMngr {
 
 	/**
 	 * Changes the state of an instance.
+	 * <p>
+	 * This method can be invoked concurrently for instances that belong to
+	 * distinct trees (no instance is the ancestor of another one), even in a same
+	 * application. It must not be invoked concurrently with methods that modify
+	 * the model's structure (e.g. {@link #addInstance(ManagedApplication, Instance, Instance)}
+	 * or {@link #removeInstance(ManagedApplication, Instance)}).
+	 * </p>
+	 *
 	 * @param ma the managed application
 	 * @param instance the instance whose state must be updated
 	 * @param newStatus the new status
@@ -111,6 +119,11 @@ public interface IInstancesMngr {
 
 	/**
 	 * Deploys and starts all the instances of an application.
+	 * <p>
+	 * Like {@link #changeInstanceState(ManagedApplication, Instance, InstanceStatus)},
+	 * this method can be invoked concurrently for distinct instance trees.
+	 * </p>
+	 *
 	 * @param ma an application
 	 * @param instance the instance from which we deploy and start (can be null)
 	 * <p>
@@ -124,6 +137,11 @@ public interface IInstancesMngr {
 
 	/**
 	 * Stops all the started instances of an application.
+	 * <p>
+	 * Like {@link #changeInstanceState(ManagedApplication, Instance, InstanceStatus)},
+	 * this method can be invoked concurrently for distinct instance trees.
+	 * </p>
+	 *
 	 * @param ma an application
 	 * @param instance the instance from which we stop (can be null)
 	 * <p>
@@ -137,6 +155,11 @@ public interface IInstancesMngr {
 
 	/**
 	 * Undeploys all the instances of an application.
+	 * <p>
+	 * Like {@link #changeInstanceState(ManagedApplication, Instance, InstanceStatus)},
+	 * this method can be invoked concurrently for distinct instance trees.
+	 * </p>
+	 *
 	 * @param ma an application
 	 * @param instance the instance from which we undeploy (can be null)
 	 * <p>
@@ -0,0 +1,315 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.management.api;
+
+import java.util.Map;
+
+/**
+ * An API to record and read metrics about the DM's operations.
+ * <p>
+ * Three kinds of metrics are supported: counters, gauges (values computed on demand)
+ * and histograms (durations). Metrics are identified by their name. Names that end with
+ * a dot are prefixes, completed with a discriminant (e.g. a target handler ID).
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public interface IMetricsMngr {
+
+	// Target handlers
+
+	/** The duration of machine creations (histogram prefix, completed with the target handler ID). */
+	String TARGETS_CREATE_MACHINE = "targets.create-machine.";
+
+	/** The number of failed machine creations (counter prefix, completed with the target handler ID). */
+	String TARGETS_CREATE_MACHINE_FAILURES = "targets.create-machine-failures.";
+
+	/** The number of target handler resolutions (counter). */
+	String TARGETS_RESOLUTIONS = "targets.resolutions";
+
+	/** The number of failed target handler resolutions (counter). */
+	String TARGETS_RESOLUTION_FAILURES = "targets.resolution-failures";
+
+	/** The number of available target handlers (gauge). */
+	String TARGETS_HANDLERS = "targets.handlers";
+
+	// Instances
+
+	/** The time between a deployment request and the DEPLOYED_STARTED state (histogram). */
+	String INSTANCES_DEPLOY_TO_STARTED = "instances.deploy-to-started";
+
+	/** The duration of instances persistence (histogram). */
+	String INSTANCES_SAVE = "instances.save";
+
+	// Messaging
+
+	/** The time between a state change request sent to an agent and its acknowledgement (histogram). */
+	String MESSAGING_AGENT_ROUND_TRIP = "messaging.agent-round-trip";
+
+	/** The time spent by the DM to process a message sent by an agent (histogram). */
+	String MESSAGING_PROCESSING = "messaging.processing";
+
+	/** The number of messages received by the DM (counter prefix, completed with the message type). */
+	String MESSAGING_RECEIVED = "messaging.received.";
+
+	/** The number of timings that were started but not yet stopped (gauge). */
+	String PENDING_TIMINGS = "timings.pending";
+
+	// Periodic tasks
+
+	/** The duration of periodic tasks (histogram prefix, completed with the task name). */
+	String TASKS_EXECUTION = "tasks.execution.";
+
+	/** The number of executions that lasted longer than the task's period (counter prefix, completed with the task name). */
+	String TASKS_OVERRUNS = "tasks.overruns.";
+
+	/** The number of executions that failed with an error (counter prefix, completed with the task name). */
+	String TASKS_FAILURES = "tasks.failures.";
+
+	// REST API
+
+	/** The number of requests answered with "304 Not Modified" (counter). */
+	String REST_NOT_MODIFIED = "rest.not-modified";
+
+	/** The number of bytes produced by the serialization of REST responses (counter). */
+	String REST_BYTES_RAW = "rest.bytes.raw";
+
+	/** The number of bytes effectively sent for REST responses, after compression (counter). */
+	String REST_BYTES_SENT = "rest.bytes.sent";
+
+	/** The time spent to serialize and write REST responses (histogram). */
+	String REST_WRITING = "rest.writing";
+
+	// Templating
+
+	/** The number of generation requests merged with a pending one (counter). */
+	String TEMPLATING_COALESCED = "templating.coalesced";
+
+	/** The number of generations from templates, for an application (counter). */
+	String TEMPLATING_RENDERED = "templating.rendered";
+
+	/** The duration of generations from templates, for an application (histogram). */
+	String TEMPLATING_GENERATION = "templating.generation";
+
+	/** The number of templates that were rendered (counter). */
+	String TEMPLATING_TEMPLATES_RENDERED = "templating.templates.rendered";
+
+	/** The number of templates that were not rendered, as they did not depend on what changed (counter). */
+	String TEMPLATING_TEMPLATES_SKIPPED = "templating.templates.skipped";
+
+	/** The number of files written from templates (counter). */
+	String TEMPLATING_FILES_WRITTEN = "templating.files.written";
+
+	/** The number of files generated from templates whose content did not change (counter). */
+	String TEMPLATING_FILES_UNCHANGED = "templating.files.unchanged";
+
+	// Scheduler
+
+	/** The number of scheduled jobs known by the scheduler (gauge). */
+	String SCHEDULER_JOBS = "scheduler.jobs";
+
+	/** The time between the scheduled and the effective firing of a job (histogram prefix, completed with the job ID). */
+	String SCHEDULER_JOB_LAG = "scheduler.job-lag.";
+
+	/** The duration of job executions (histogram prefix, completed with the job ID). */
+	String SCHEDULER_JOB_EXECUTION = "scheduler.job-execution.";
+
+	/** The number of misfired job triggers (counter prefix, completed with the job ID). */
+	String SCHEDULER_MISFIRES = "scheduler.misfires.";
+
+
+	/**
+	 * Increments a counter.
+	 * @param name the counter's name
+	 */
+	void incrementCounter( String name );
+
+
+	/**
+	 * Adds a value to a counter.
+	 * @param name the counter's name
+	 * @param delta the value to add
+	 */
+	void addToCounter( String name, long delta );
+
+
+	/**
+	 * Registers a gauge.
+	 * @param name the gauge's name
+	 * @param gauge the gauge (not null, replaces any gauge with the same name)
+	 */
+	void registerGauge( String name, Gauge gauge );
+
+
+	/**
+	 * Records a duration in a histogram.
+	 * @param name the histogram's name
+	 * @param durationNanos a duration, in nanoseconds
+	 */
+	void recordDuration( String name, long durationNanos );
+
+
+	/**
+	 * Starts measuring an operation that completes asynchronously.
+	 * @param name the histogram's name
+	 * @param key a key that identifies the operation (e.g. an instance path)
+	 */
+	void startTiming( String name, String key );
+
+
+	/**
+	 * Stops measuring an operation and records its duration.
+	 * @param name the histogram's name
+	 * @param key a key that identifies the operation
+	 * @return true if a timing was found and recorded, false otherwise
+	 */
+	boolean stopTiming( String name, String key );
+
+
+	/**
+	 * Stops measuring an operation without recording anything (e.g. when it failed).
+	 * @param name the histogram's name
+	 * @param key a key that identifies the operation
+	 */
+	void cancelTiming( String name, String key );
+
+
+	/**
+	 * Removes a metric (counter, gauge or histogram).
+	 * <p>
+	 * This is useful for metrics related to something that does not exist anymore
+	 * (e.g. a deleted job) or that is not available anymore (e.g. a stopped component).
+	 * </p>
+	 *
+	 * @param name the metric's name
+	 */
+	void remove( String name );
+
+
+	/**
+	 * @return a non-null snapshot of the counters (key = counter name, value = counter value)
+	 */
+	Map<String,Long> getCounters();
+
+
+	/**
+	 * @return a non-null snapshot of the gauges (key = gauge name, value = current gauge value)
+	 */
+	Map<String,Long> getGauges();
+
+
+	/**
+	 * @return a non-null snapshot of the histograms (key = histogram name)
+	 */
+	Map<String,HistogramSnapshot> getHistograms();
+
+
+	/**
+	 * Resets all the counters and histograms.
+	 */
+	void reset();
+
+
+	/**
+	 * A value computed on demand.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	public interface Gauge {
+
+		/**
+		 * @return the gauge's current value
+		 */
+		long getValue();
+	}
+
+
+	/**
+	 * A snapshot of a histogram.
+	 * <p>
+	 * All the durations are expressed in milliseconds. Percentiles are approximated
+	 * (they are the upper bound of the histogram bucket they fall in).
+	 * </p>
+	 *
+	 * @author Vincent Zurczak - Linagora
+	 */
+	public static final class HistogramSnapshot {
+
+		private final long count, min, max, mean, p50, p95, p99;
+
+		/**
+		 * Constructor.
+		 * @param count
+		 * @param min
+		 * @param max
+		 * @param mean
+		 * @param p50
+		 * @param p95
+		 * @param p99
+		 */
+		public HistogramSnapshot( long count, long min, long max, long mean, long p50, long p95, long p99 ) {
+			this.count = count;
+			this.min = min;
+			this.max = max;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p95 = p95;
+			this.p99 = p99;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		public long getMin() {
+			return this.min;
+		}
+
+		public long getMax() {
+			return this.max;
+		}
+
+		public long getMean() {
+			return this.mean;
+		}
+
+		public long getP50() {
+			return this.p50;
+		}
+
+		public long getP95() {
+			return this.p95;
+		}
+
+		public long getP99() {
+			return this.p99;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + this.count + ", min=" + this.min + ", max=" + this.max
+					+ ", mean=" + this.mean + ", p50=" + this.p50 + ", p95=" + this.p95 + ", p99=" + this.p99;
+		}
+	}
+}
@@ -153,6 +153,14 @@ public interface IPreferencesMngr {
 	)
 	String WEB_EXTENSIONS = "web.extensions";
 
+	@PreferenceDescription(
+			desc = "The maximum number of command instructions that can be executed at once.\n"
+			+ "Only instructions that change the state of distinct instance trees (no instance being the ancestor of another one) are executed concurrently.\n"
+			+ "Other instructions (creation, deletion, renaming, e-mails...) are always executed in the order they were written.\n"
+			+ "By default, all the instructions are executed in sequence (strict mode, value 1)."
+	)
+	String COMMANDS_PARALLELISM = "commands.parallelism";
+
 
 
 	/**
@@ -255,6 +263,11 @@ public interface IPreferencesMngr {
 	 */
 	public static final class Defaults {
 
+		/**
+		 * The default value for {@link IPreferencesMngr#COMMANDS_PARALLELISM}.
+		 */
+		public static final int DEFAULT_COMMANDS_PARALLELISM = 1;
+
 		public final Map<String,PreferenceKeyCategory> keyToCategory = new HashMap<> ();
 		public final Map<String,String> keyToDefaultValue = new HashMap<> ();
 
@@ -281,6 +294,7 @@ public interface IPreferencesMngr {
 			this.keyToCategory.put( USER_LANGUAGE, PreferenceKeyCategory.WEB );
 			this.keyToCategory.put( WEB_EXTENSIONS, PreferenceKeyCategory.WEB );
 			this.keyToCategory.put( FORBIDDEN_RANDOM_PORTS, PreferenceKeyCategory.MISCELLANEOUS );
+			this.keyToCategory.put( COMMANDS_PARALLELISM, PreferenceKeyCategory.MISCELLANEOUS );
 
 			// Define default values
 			this.keyToDefaultValue.put( JAVAX_MAIL_FROM, "dm@roboconf.net" );
@@ -290,6 +304,7 @@ public interface IPreferencesMngr {
 			this.keyToDefaultValue.put( JAVAX_MAIL_SSL_TRUST, "smtp.gmail.com" );
 			this.keyToDefaultValue.put( JAVAX_MAIL_START_SSL_ENABLE, "true" );
 			this.keyToDefaultValue.put( USER_LANGUAGE, "EN" );
+			this.keyToDefaultValue.put( COMMANDS_PARALLELISM, String.valueOf( DEFAULT_COMMANDS_PARALLELISM ));
 		}
 	}
 
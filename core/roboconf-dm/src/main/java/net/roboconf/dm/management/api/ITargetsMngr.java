@@ -230,6 +230,17 @@ public interface ITargetsMngr {
 	 */
 	TargetWrapperDescriptor findTargetById( String targetId );
 
+	/**
+	 * Gets the version of the targets.
+	 * <p>
+	 * It is incremented every time a target, an association or a hint is changed
+	 * through this API. Changes made directly on the file system are not tracked.
+	 * </p>
+	 *
+	 * @return the version of the targets
+	 */
+	long getTargetsVersion();
+
 
 	// Definitions and relations with hints (contextual help to reduce the number of choices when associating
 	// a target and an application instance). Indeed, some targets may be very specific
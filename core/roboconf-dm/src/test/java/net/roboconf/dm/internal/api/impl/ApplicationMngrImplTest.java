@@ -171,8 +171,10 @@ public class ApplicationMngrImplTest {
 
 		TestManagerWrapper.addManagedApplication( this.mngr, ma );
 		Assert.assertEquals( 1, this.mngr.getManagedApplications().size());
+		long version = this.mngr.getApplicationsVersion();
 		this.mngr.deleteApplication( ma );
 		Assert.assertEquals( 0, this.mngr.getManagedApplications().size());
+		Assert.assertTrue( version < this.mngr.getApplicationsVersion());
 
 		Mockito.verify( this.autonomicMngr, Mockito.times( 1 )).unloadApplicationRules( ma.getApplication());
 	}
@@ -188,9 +190,11 @@ public class ApplicationMngrImplTest {
 		Mockito.when( this.applicationTemplateMngr.findTemplate( tpl.getName(), tpl.getVersion())).thenReturn( tpl );
 
 		Assert.assertEquals( 0, this.mngr.getManagedApplications().size());
+		long version = this.mngr.getApplicationsVersion();
 		ManagedApplication ma = this.mngr.createApplication( "toto", "desc", tpl.getName(), tpl.getVersion());
 		Assert.assertNotNull( ma );
 		Assert.assertEquals( 1, TestManagerWrapper.getNameToManagedApplication( this.mngr ).size());
+		Assert.assertTrue( version < this.mngr.getApplicationsVersion());
 
 		Assert.assertEquals( ma.getDirectory().getName(), ma.getName());
 		Assert.assertEquals( "toto", ma.getName());
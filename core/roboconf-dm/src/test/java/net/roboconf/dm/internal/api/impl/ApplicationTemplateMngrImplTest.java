@@ -242,13 +242,17 @@ public class ApplicationTemplateMngrImplTest {
 		File directory = TestUtils.findApplicationDirectory( "lamp" );
 		Assert.assertTrue( directory.exists());
 		Assert.assertEquals( 0, this.mngr.getApplicationTemplates().size());
+		long version = this.mngr.getTemplatesVersion();
 
 		ApplicationTemplate tpl = this.mngr.loadApplicationTemplate( directory );
 		Assert.assertNotNull( tpl );
 		Assert.assertEquals( 1, this.mngr.getApplicationTemplates().size());
+		Assert.assertTrue( version < this.mngr.getTemplatesVersion());
 
+		version = this.mngr.getTemplatesVersion();
 		this.mngr.deleteApplicationTemplate( tpl.getName(), tpl.getVersion());
 		Assert.assertEquals( 0, this.mngr.getApplicationTemplates().size());
+		Assert.assertTrue( version < this.mngr.getTemplatesVersion());
 	}
 
 
@@ -41,6 +41,7 @@ import net.roboconf.core.model.ParsingError;
 import net.roboconf.core.model.beans.Application;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IApplicationMngr;
 
 /**
  * @author Amadou Diarra - Université Joseph Fourier
@@ -62,6 +63,7 @@ public class CommandsMngrImplTest {
 		this.app = new TestApplication();
 		this.app.setDirectory( this.folder.newFolder());
 		this.manager = Mockito.mock( Manager.class );
+		Mockito.when( this.manager.applicationMngr()).thenReturn( Mockito.mock( IApplicationMngr.class ));
 
 		this.cmdMngr = new CommandsMngrImpl( this.manager );
 		Assert.assertEquals( "", this.cmdMngr.getCommandInstructions( this.app, "" ));
@@ -140,6 +142,30 @@ public class CommandsMngrImplTest {
 	}
 
 
+	@Test
+	public void testExecute_cachedInstructionsAreInvalidated() throws Exception {
+
+		String cmdName = "my-command";
+		this.cmdMngr.createOrUpdateCommand( this.app, cmdName, "rename /tomcat-vm as tomcat-vm-copy" );
+		this.cmdMngr.execute( this.app, cmdName );
+		Assert.assertNotNull( InstanceHelpers.findInstanceByPath( this.app, "/tomcat-vm-copy" ));
+
+		this.cmdMngr.createOrUpdateCommand( this.app, cmdName, "rename /tomcat-vm-copy as tomcat-vm" );
+		this.cmdMngr.execute( this.app, cmdName );
+		Assert.assertNotNull( InstanceHelpers.findInstanceByPath( this.app, "/tomcat-vm" ));
+		Assert.assertNull( InstanceHelpers.findInstanceByPath( this.app, "/tomcat-vm-copy" ));
+
+		this.cmdMngr.deleteCommand( this.app, cmdName );
+		try {
+			this.cmdMngr.execute( this.app, cmdName );
+			Assert.fail( "The command was deleted." );
+
+		} catch( NoSuchFileException e ) {
+			// nothing
+		}
+	}
+
+
 	@Test( expected = NoSuchFileException.class )
 	public void testExecute_noSuchCommand() throws Exception {
 
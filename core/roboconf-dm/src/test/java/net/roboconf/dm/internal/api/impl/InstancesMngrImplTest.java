@@ -31,6 +31,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -38,6 +40,7 @@ import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -49,6 +52,7 @@ import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.runtime.EventType;
 import net.roboconf.dm.internal.api.IRandomMngr;
 import net.roboconf.dm.internal.api.ITargetConfigurator;
+import net.roboconf.dm.internal.api.IWarmPoolMngr;
 import net.roboconf.dm.internal.api.impl.beans.TargetPropertiesImpl;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.management.ManagedApplication;
@@ -62,6 +66,7 @@ import net.roboconf.dm.management.api.ITargetsMngr.TargetProperties;
 import net.roboconf.messaging.api.business.IDmClient;
 import net.roboconf.messaging.api.messages.Message;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdSendInstances;
+import net.roboconf.target.api.BulkTargetHandler;
 import net.roboconf.target.api.TargetException;
 import net.roboconf.target.api.TargetHandler;
 import net.roboconf.target.api.TargetHandlerParameters;
@@ -330,6 +335,100 @@ public class InstancesMngrImplTest {
 	}
 
 
+	@Test
+	public void testClaimedMachine_configurationIsScheduled() throws Exception {
+
+		// Prepare stuff
+		INotificationMngr notificationMngr = Mockito.mock( INotificationMngr.class );
+		ITargetsMngr targetsMngr = Mockito.mock( ITargetsMngr.class );
+		IRandomMngr randomMngr = Mockito.mock( IRandomMngr.class );
+		ITargetConfigurator targetConfigurator = Mockito.mock( ITargetConfigurator.class );
+		IWarmPoolMngr warmPoolMngr = Mockito.mock( IWarmPoolMngr.class );
+
+		IMessagingMngr messagingMngr = Mockito.mock( IMessagingMngr.class );
+		Mockito.when( messagingMngr.getMessagingClient()).thenReturn( Mockito.mock( IDmClient.class ));
+
+		IConfigurationMngr configurationMngr = new ConfigurationMngrImpl();
+		configurationMngr.setWorkingDirectory( this.folder.newFolder());
+
+		IInstancesMngr mngr = new InstancesMngrImpl( messagingMngr, notificationMngr, targetsMngr, randomMngr, targetConfigurator );
+		((InstancesMngrImpl) mngr).setTargetHandlerResolver( new TestTargetResolver());
+		((InstancesMngrImpl) mngr).setWarmPoolMngr( warmPoolMngr );
+
+		TestApplication app = new TestApplication();
+		app.setDirectory( this.folder.newFolder());
+		ManagedApplication ma = new ManagedApplication( app );
+
+		Mockito.when( targetsMngr.lockAndGetTarget( app, app.getMySqlVm())).thenReturn( new TargetPropertiesImpl());
+		Mockito.when( targetsMngr.findTargetId( Mockito.eq( app ), Mockito.anyString())).thenReturn( "tid" );
+		Mockito.when( warmPoolMngr.claimMachine( "tid", ma, app.getMySqlVm())).thenReturn( "pooled-machine" );
+
+		// Deploy the instance: the idle machine is used
+		mngr.changeInstanceState( ma, app.getMySqlVm(), InstanceStatus.DEPLOYED_STARTED );
+		Assert.assertEquals( InstanceStatus.DEPLOYING, app.getMySqlVm().getStatus());
+		Assert.assertEquals( "pooled-machine", app.getMySqlVm().data.get( Instance.MACHINE_ID ));
+
+		// The configuration script must run, like for machines that were just created
+		Assert.assertEquals( "true", app.getMySqlVm().data.get( Instance.READY_FOR_CFG_MARKER ));
+		Mockito.verify( targetConfigurator ).reportCandidate(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.eq( app.getMySqlVm()));
+	}
+
+
+	@Test
+	public void testDeployAndStartAll_machinesAreCreatedConcurrently() throws Exception {
+
+		// Prepare stuff
+		INotificationMngr notificationMngr = Mockito.mock( INotificationMngr.class );
+		ITargetsMngr targetsMngr = Mockito.mock( ITargetsMngr.class );
+		IRandomMngr randomMngr = Mockito.mock( IRandomMngr.class );
+		ITargetConfigurator targetConfigurator = Mockito.mock( ITargetConfigurator.class );
+
+		IMessagingMngr messagingMngr = Mockito.mock( IMessagingMngr.class );
+		Mockito.when( messagingMngr.getMessagingClient()).thenReturn( Mockito.mock( IDmClient.class ));
+
+		TestApplication app = new TestApplication();
+		app.setDirectory( this.folder.newFolder());
+		ManagedApplication ma = new ManagedApplication( app );
+		Assert.assertEquals( 2, app.getRootInstances().size());
+
+		// Machine creations only complete when both are in progress at the same time
+		final CyclicBarrier barrier = new CyclicBarrier( app.getRootInstances().size());
+		final TargetHandler targetHandler = Mockito.mock( TargetHandler.class );
+		Mockito.when( targetHandler.createMachine( Mockito.any( TargetHandlerParameters.class ))).thenAnswer( new Answer<String>() {
+
+			@Override
+			public String answer( InvocationOnMock invocation ) throws Throwable {
+				TargetHandlerParameters parameters = invocation.getArgumentAt( 0, TargetHandlerParameters.class );
+				barrier.await( 5, TimeUnit.SECONDS );
+				return "machine-for-" + parameters.getScopedInstancePath();
+			}
+		});
+
+		IInstancesMngr mngr = new InstancesMngrImpl( messagingMngr, notificationMngr, targetsMngr, randomMngr, targetConfigurator );
+		((InstancesMngrImpl) mngr).setTargetHandlerResolver( new TestTargetResolver() {
+			@Override
+			public TargetHandler findTargetHandler( Map<String,String> targetProperties ) throws TargetException {
+				return targetHandler;
+			}
+		});
+
+		Mockito.when( targetsMngr.lockAndGetTarget(
+				Mockito.any( Application.class ),
+				Mockito.any( Instance.class ))).thenReturn( new TargetPropertiesImpl());
+
+		// Deploy everything
+		mngr.deployAndStartAll( ma, null );
+
+		Mockito.verify( targetHandler, Mockito.times( 2 )).createMachine( Mockito.any( TargetHandlerParameters.class ));
+		for( Instance rootInstance : app.getRootInstances()) {
+			Assert.assertEquals( InstanceStatus.DEPLOYING, rootInstance.getStatus());
+			Assert.assertEquals( "machine-for-/" + rootInstance.getName(), rootInstance.data.get( Instance.MACHINE_ID ));
+		}
+	}
+
+
 	@Test
 	public void testTargetsLocking_whenCreatingMachines_withExceptionInDeploy() throws Exception {
 
@@ -734,6 +833,130 @@ public class InstancesMngrImplTest {
 	}
 
 
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void testRestoreInstances_rightHandler_bulkHandler() throws Exception {
+
+		// Prepare stuff
+		INotificationMngr notificationMngr = Mockito.mock( INotificationMngr.class );
+		IRandomMngr randomMngr = Mockito.mock( IRandomMngr.class );
+		ITargetConfigurator targetConfigurator = Mockito.mock( ITargetConfigurator.class );
+
+		IMessagingMngr messagingMngr = Mockito.mock( IMessagingMngr.class );
+		Mockito.when( messagingMngr.getMessagingClient()).thenReturn( Mockito.mock( IDmClient.class ));
+
+		ITargetsMngr targetsMngr = Mockito.mock( ITargetsMngr.class );
+		Mockito.when( targetsMngr.findTargetProperties(
+				Mockito.any( Application.class ),
+				Mockito.anyString())).thenReturn( new TargetPropertiesImpl());
+
+		final BulkTargetHandler targetHandlerArgument = Mockito.mock( BulkTargetHandler.class );
+		Mockito.when( targetHandlerArgument.getTargetId()).thenReturn( "some target id" );
+
+		IInstancesMngr mngr = new InstancesMngrImpl( messagingMngr, notificationMngr, targetsMngr, randomMngr, targetConfigurator );
+		((InstancesMngrImpl) mngr).setTargetHandlerResolver( new TestTargetResolver() {
+			@Override
+			public TargetHandler findTargetHandler( Map<String,String> targetProperties ) throws TargetException {
+				return targetHandlerArgument;
+			}
+		});
+
+		TestApplication app = new TestApplication();
+		app.setDirectory( this.folder.newFolder());
+		ManagedApplication ma = new ManagedApplication( app );
+
+		// Both scoped instances have a machine ID, but only one is still running
+		app.getMySqlVm().data.put( Instance.MACHINE_ID, "machine-id-1" );
+		app.getMySqlVm().setStatus( InstanceStatus.DEPLOYED_STARTED );
+		app.getTomcatVm().data.put( Instance.MACHINE_ID, "machine-id-2" );
+		app.getTomcatVm().setStatus( InstanceStatus.DEPLOYED_STARTED );
+
+		Map<String,Boolean> states = new HashMap<> ();
+		states.put( "machine-id-1", true );
+		states.put( "machine-id-2", false );
+		Mockito.when( targetHandlerArgument.areMachinesRunning(
+				Mockito.anyListOf( TargetHandlerParameters.class ),
+				Mockito.anyListOf( String.class ))).thenReturn( states );
+
+		// Try to restore instances
+		mngr.restoreInstanceStates( ma, targetHandlerArgument );
+		Assert.assertEquals( InstanceStatus.DEPLOYED_STARTED, app.getMySqlVm().getStatus());
+		Assert.assertEquals( InstanceStatus.NOT_DEPLOYED, app.getTomcatVm().getStatus());
+
+		// The handler was invoked only once, for both machines
+		ArgumentCaptor<List> machineIds = ArgumentCaptor.forClass( List.class );
+		Mockito.verify( targetHandlerArgument, Mockito.times( 1 )).areMachinesRunning(
+				Mockito.anyListOf( TargetHandlerParameters.class ),
+				machineIds.capture());
+
+		Assert.assertEquals( 2, machineIds.getValue().size());
+		Assert.assertTrue( machineIds.getValue().contains( "machine-id-1" ));
+		Assert.assertTrue( machineIds.getValue().contains( "machine-id-2" ));
+		Mockito.verify( targetHandlerArgument, Mockito.never()).isMachineRunning(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.anyString());
+
+		// A message was sent to the running agent
+		Mockito.verify( messagingMngr ).sendMessageDirectly(
+				Mockito.eq( ma ),
+				Mockito.eq( app.getMySqlVm() ),
+				Mockito.any( MsgCmdSendInstances.class ));
+
+		Mockito.verify( targetsMngr ).unlockTarget( Mockito.eq( app ), Mockito.eq( app.getTomcatVm()));
+		Mockito.verify( targetsMngr, Mockito.never()).unlockTarget( Mockito.eq( app ), Mockito.eq( app.getMySqlVm()));
+	}
+
+
+	@Test
+	public void testRestoreInstances_rightHandler_unknownState() throws Exception {
+
+		// Prepare stuff
+		INotificationMngr notificationMngr = Mockito.mock( INotificationMngr.class );
+		IMessagingMngr messagingMngr = Mockito.mock( IMessagingMngr.class );
+		Mockito.when( messagingMngr.getMessagingClient()).thenReturn( Mockito.mock( IDmClient.class ));
+
+		ITargetsMngr targetsMngr = Mockito.mock( ITargetsMngr.class );
+		Mockito.when( targetsMngr.findTargetProperties(
+				Mockito.any( Application.class ),
+				Mockito.anyString())).thenReturn( new TargetPropertiesImpl());
+
+		final TargetHandler targetHandlerArgument = Mockito.mock( TargetHandler.class );
+		Mockito.when( targetHandlerArgument.getTargetId()).thenReturn( "some target id" );
+		Mockito.when( targetHandlerArgument.isMachineRunning(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.anyString())).thenThrow( new TargetException( "for test" ));
+
+		IInstancesMngr mngr = new InstancesMngrImpl(
+				messagingMngr, notificationMngr, targetsMngr,
+				Mockito.mock( IRandomMngr.class ),
+				Mockito.mock( ITargetConfigurator.class ));
+		((InstancesMngrImpl) mngr).setTargetHandlerResolver( new TestTargetResolver() {
+			@Override
+			public TargetHandler findTargetHandler( Map<String,String> targetProperties ) throws TargetException {
+				return targetHandlerArgument;
+			}
+		});
+
+		TestApplication app = new TestApplication();
+		app.setDirectory( this.folder.newFolder());
+		ManagedApplication ma = new ManagedApplication( app );
+
+		app.getMySqlVm().data.put( Instance.MACHINE_ID, "machine-id" );
+		app.getMySqlVm().setStatus( InstanceStatus.DEPLOYED_STARTED );
+
+		// The state could not be determined => nothing changes
+		mngr.restoreInstanceStates( ma, targetHandlerArgument );
+		Assert.assertEquals( InstanceStatus.DEPLOYED_STARTED, app.getMySqlVm().getStatus());
+		Mockito.verify( targetHandlerArgument ).isMachineRunning(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.eq( "machine-id" ));
+		Mockito.verify( messagingMngr, Mockito.never()).sendMessageDirectly(
+				Mockito.any( ManagedApplication.class ),
+				Mockito.any( Instance.class ),
+				Mockito.any( Message.class ));
+	}
+
+
 	@Test
 	public void testRestoreInstances_noMachineId() throws Exception {
 
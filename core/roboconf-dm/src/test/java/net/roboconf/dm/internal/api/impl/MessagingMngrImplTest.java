@@ -38,7 +38,9 @@ import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.dm.internal.environment.messaging.RCDm;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.api.IMessagingMngr;
+import net.roboconf.dm.management.api.IMetricsMngr;
 import net.roboconf.messaging.api.messages.Message;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeInstanceState;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdRemoveInstance;
 
 import org.junit.Before;
@@ -125,6 +127,60 @@ public class MessagingMngrImplTest {
 	}
 
 
+	@Test
+	public void testSendMessageDirectly_roundTripIsTimed() throws Exception {
+
+		TestApplication app = new TestApplication();
+		ManagedApplication ma = new ManagedApplication( app );
+		Message msg = new MsgCmdChangeInstanceState( "/mysql-vm/mysql-server", InstanceStatus.DEPLOYED_STARTED );
+		String key = InstancesMngrImpl.timingKey( app.getName(), "/mysql-vm/mysql-server" );
+
+		IMetricsMngr metricsMngr = Mockito.mock( IMetricsMngr.class );
+		((MessagingMngrImpl) this.mngr).setMetricsMngr( metricsMngr );
+
+		// Only state changes are timed
+		this.mngr.sendMessageDirectly( ma, app.getMySqlVm(), new MsgCmdRemoveInstance( "/" ));
+		Mockito.verifyZeroInteractions( metricsMngr );
+
+		this.mngr.sendMessageDirectly( ma, app.getMySqlVm(), msg );
+		Mockito.verify( metricsMngr, Mockito.times( 1 )).startTiming( IMetricsMngr.MESSAGING_AGENT_ROUND_TRIP, key );
+		Mockito.verify( metricsMngr, Mockito.never()).cancelTiming( IMetricsMngr.MESSAGING_AGENT_ROUND_TRIP, key );
+
+		// Messaging errors cancel the timing
+		Mockito.doThrow( new IOException( "for test" )).when( this.msgClient ).sendMessageToAgent(
+				Mockito.any( Application.class ),
+				Mockito.any( Instance.class ),
+				Mockito.any( Message.class ));
+
+		try {
+			this.mngr.sendMessageDirectly( ma, app.getMySqlVm(), msg );
+			Assert.fail( "An exception was expected." );
+
+		} catch( IOException e ) {
+			// nothing
+		}
+
+		Mockito.verify( metricsMngr, Mockito.times( 1 )).cancelTiming( IMetricsMngr.MESSAGING_AGENT_ROUND_TRIP, key );
+	}
+
+
+	@Test
+	public void testSendMessageSafely_theMessageIsStoredWhenTheMachineIsNotThere_noTiming() throws Exception {
+
+		TestApplication app = new TestApplication();
+		ManagedApplication ma = new ManagedApplication( app );
+		app.getMySqlVm().setStatus( InstanceStatus.NOT_DEPLOYED );
+
+		IMetricsMngr metricsMngr = Mockito.mock( IMetricsMngr.class );
+		((MessagingMngrImpl) this.mngr).setMetricsMngr( metricsMngr );
+
+		Message msg = new MsgCmdChangeInstanceState( "/mysql-vm/mysql-server", InstanceStatus.DEPLOYED_STARTED );
+		this.mngr.sendMessageSafely( ma, app.getMySqlVm(), msg );
+		Mockito.verifyZeroInteractions( metricsMngr );
+		Assert.assertEquals( 1, ma.getScopedInstanceToAwaitingMessages().get( app.getMySqlVm()).size());
+	}
+
+
 	@Test
 	public void testSendMessageSafely_theMessageIsSentWhenTheMachineIsThere() throws Exception {
 
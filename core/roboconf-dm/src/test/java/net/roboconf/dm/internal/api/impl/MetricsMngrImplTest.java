@@ -0,0 +1,251 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.internal.api.impl;
+
+import java.util.Dictionary;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import net.roboconf.dm.jmx.DmMetricsMBean;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.dm.management.api.IMetricsMngr.Gauge;
+import net.roboconf.messaging.api.utils.OsgiHelper;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class MetricsMngrImplTest {
+
+	@Test
+	public void testCounters() {
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		Assert.assertEquals( 0, mngr.getCounters().size());
+
+		mngr.incrementCounter( "c1" );
+		mngr.incrementCounter( "c1" );
+		mngr.incrementCounter( "c2" );
+
+		Assert.assertEquals( 2, mngr.getCounters().size());
+		Assert.assertEquals( Long.valueOf( 2 ), mngr.getCounters().get( "c1" ));
+		Assert.assertEquals( Long.valueOf( 1 ), mngr.getCounters().get( "c2" ));
+
+		mngr.addToCounter( "c2", 40 );
+		mngr.addToCounter( "c3", 5 );
+		Assert.assertEquals( 3, mngr.getCounters().size());
+		Assert.assertEquals( Long.valueOf( 41 ), mngr.getCounters().get( "c2" ));
+		Assert.assertEquals( Long.valueOf( 5 ), mngr.getCounters().get( "c3" ));
+
+		mngr.reset();
+		Assert.assertEquals( Long.valueOf( 0 ), mngr.getCounters().get( "c1" ));
+	}
+
+
+	@Test
+	public void testGauges() {
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		Assert.assertEquals( 1, mngr.getGauges().size());
+		Assert.assertEquals( Long.valueOf( 0 ), mngr.getGauges().get( IMetricsMngr.PENDING_TIMINGS ));
+
+		mngr.registerGauge( "g", new Gauge() {
+			@Override
+			public long getValue() {
+				return 42;
+			}
+		});
+
+		mngr.registerGauge( "failing", new Gauge() {
+			@Override
+			public long getValue() {
+				throw new RuntimeException( "for test" );
+			}
+		});
+
+		Assert.assertEquals( 2, mngr.getGauges().size());
+		Assert.assertEquals( Long.valueOf( 42 ), mngr.getGauges().get( "g" ));
+	}
+
+
+	@Test
+	public void testTimings() throws Exception {
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		Assert.assertFalse( mngr.stopTiming( "t", "k1" ));
+		Assert.assertEquals( 0, mngr.getHistograms().size());
+
+		mngr.startTiming( "t", "k1" );
+		mngr.startTiming( "t", "k2" );
+		Assert.assertEquals( Long.valueOf( 2 ), mngr.getGauges().get( IMetricsMngr.PENDING_TIMINGS ));
+
+		Thread.sleep( 20 );
+		Assert.assertTrue( mngr.stopTiming( "t", "k1" ));
+		Assert.assertFalse( mngr.stopTiming( "t", "k1" ));
+		mngr.cancelTiming( "t", "k2" );
+		Assert.assertFalse( mngr.stopTiming( "t", "k2" ));
+
+		Assert.assertEquals( 1, mngr.getHistograms().size());
+		Assert.assertEquals( 1, mngr.getHistograms().get( "t" ).getCount());
+		Assert.assertTrue( mngr.getHistograms().get( "t" ).getMin() >= 20 );
+		Assert.assertEquals( 0, mngr.pendingTimings.size());
+
+		Assert.assertEquals( 1, mngr.getHistogramSummaries().size());
+		Assert.assertNotNull( mngr.getHistogramSummaries().get( "t" ));
+	}
+
+
+	@Test
+	public void testPendingTimingsAreBounded() {
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		for( int i=0; i<MetricsMngrImpl.MAX_PENDING_TIMINGS + 10; i++ )
+			mngr.startTiming( "t", "k" + i );
+
+		Assert.assertEquals( MetricsMngrImpl.MAX_PENDING_TIMINGS, mngr.pendingTimings.size());
+		mngr.reset();
+		Assert.assertEquals( 0, mngr.pendingTimings.size());
+	}
+
+
+	@Test
+	public void testStalePendingTimingsAreEvicted() {
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		for( int i=0; i<MetricsMngrImpl.MAX_PENDING_TIMINGS; i++ )
+			mngr.startTiming( "t", "k" + i );
+
+		Assert.assertEquals( MetricsMngrImpl.MAX_PENDING_TIMINGS, mngr.pendingTimings.size());
+
+		// Recent timings are kept
+		mngr.evictStaleTimings( System.nanoTime());
+		Assert.assertEquals( MetricsMngrImpl.MAX_PENDING_TIMINGS, mngr.pendingTimings.size());
+
+		// Old ones are dropped, so that new timings can be started
+		mngr.pendingTimingsMaxAgeNanos = 0;
+		mngr.startTiming( "t", "new" );
+		Assert.assertEquals( 1, mngr.pendingTimings.size());
+	}
+
+
+	@Test
+	public void testRemove() {
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		mngr.incrementCounter( "m" );
+		mngr.recordDuration( "m", 10 );
+		mngr.registerGauge( "m", new Gauge() {
+			@Override
+			public long getValue() {
+				return 5;
+			}
+		});
+
+		Assert.assertTrue( mngr.getCounters().containsKey( "m" ));
+		Assert.assertTrue( mngr.getGauges().containsKey( "m" ));
+		Assert.assertTrue( mngr.getHistograms().containsKey( "m" ));
+
+		mngr.remove( "m" );
+		Assert.assertFalse( mngr.getCounters().containsKey( "m" ));
+		Assert.assertFalse( mngr.getGauges().containsKey( "m" ));
+		Assert.assertFalse( mngr.getHistograms().containsKey( "m" ));
+
+		// No error
+		mngr.remove( "inexisting" );
+	}
+
+
+	@Test
+	public void testRecordDuration() {
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		mngr.recordDuration( "h", TimeUnit.MILLISECONDS.toNanos( 10 ));
+		mngr.recordDuration( "h", TimeUnit.MILLISECONDS.toNanos( 30 ));
+
+		Assert.assertEquals( 2, mngr.getHistograms().get( "h" ).getCount());
+		Assert.assertEquals( 10, mngr.getHistograms().get( "h" ).getMin());
+		Assert.assertEquals( 30, mngr.getHistograms().get( "h" ).getMax());
+
+		mngr.reset();
+		Assert.assertEquals( 0, mngr.getHistograms().get( "h" ).getCount());
+	}
+
+
+	@Test
+	public void testRegisterService_noOsgi() {
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		mngr.registerService( new OsgiHelper());
+		Assert.assertNull( mngr.serviceReg );
+		mngr.unregisterService();
+	}
+
+
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void testRegisterService_mockOsgi() {
+
+		ServiceRegistration<DmMetricsMBean> serviceReg = Mockito.mock( ServiceRegistration.class );
+		BundleContext bundleCtx = Mockito.mock( BundleContext.class );
+		Mockito.when( bundleCtx.registerService(
+				Mockito.eq( DmMetricsMBean.class ),
+				Mockito.any( MetricsMngrImpl.class ),
+				Mockito.any( Dictionary.class ))).thenReturn( serviceReg );
+
+		OsgiHelper osgiHelper = Mockito.mock( OsgiHelper.class );
+		Mockito.when( osgiHelper.findBundleContext()).thenReturn( bundleCtx );
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		mngr.registerService( osgiHelper );
+		Assert.assertEquals( serviceReg, mngr.serviceReg );
+
+		mngr.unregisterService();
+		Mockito.verify( serviceReg ).unregister();
+		Assert.assertNull( mngr.serviceReg );
+	}
+
+
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void testRegisterService_exceptionDuringRegistration() {
+
+		BundleContext bundleCtx = Mockito.mock( BundleContext.class );
+		Mockito.when( bundleCtx.registerService(
+				Mockito.eq( DmMetricsMBean.class ),
+				Mockito.any( MetricsMngrImpl.class ),
+				Mockito.any( Dictionary.class ))).thenThrow( new RuntimeException( "for test" ));
+
+		OsgiHelper osgiHelper = Mockito.mock( OsgiHelper.class );
+		Mockito.when( osgiHelper.findBundleContext()).thenReturn( bundleCtx );
+
+		MetricsMngrImpl mngr = new MetricsMngrImpl();
+		mngr.registerService( osgiHelper );
+		Assert.assertNull( mngr.serviceReg );
+	}
+}
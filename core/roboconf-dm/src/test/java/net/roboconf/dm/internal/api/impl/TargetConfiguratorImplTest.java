@@ -45,6 +45,8 @@ import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.dm.internal.api.impl.TargetConfiguratorImpl.ConfigurationRunnable;
 import net.roboconf.dm.internal.api.impl.TargetConfiguratorImpl.ProgramUtilsProxy;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.api.IApplicationMngr;
 import net.roboconf.dm.management.api.ITargetHandlerResolver;
 import net.roboconf.target.api.TargetException;
 import net.roboconf.target.api.TargetHandler;
@@ -175,6 +177,34 @@ public class TargetConfiguratorImplTest {
 	}
 
 
+	@Test
+	public void testVerifyCandidates_withMarker_applicationIsNotified() throws Exception {
+
+		TestApplication app = new TestApplication();
+		app.setName( "app" );
+		ManagedApplication ma = new ManagedApplication( app );
+
+		IApplicationMngr applicationMngr = Mockito.mock( IApplicationMngr.class );
+		Mockito.when( applicationMngr.findManagedApplicationByName( app.getName())).thenReturn( ma );
+		this.targetConfigurator.setApplicationMngr( applicationMngr );
+
+		TargetHandlerParameters parameters = new TargetHandlerParameters()
+				.applicationName( app.getName())
+				.scopedInstancePath( InstanceHelpers.computeInstancePath( app.getMySqlVm()))
+				.domain( "domain" );
+
+		this.targetConfigurator.reportCandidate( parameters, app.getMySqlVm());
+		app.getMySqlVm().data.put( Instance.READY_FOR_CFG_MARKER, "true" );
+
+		// Removing the marker changes the instance: snapshots and entity tags must be updated
+		long version = ma.getInstancesVersion();
+		this.targetConfigurator.verifyCandidates();
+
+		Assert.assertFalse( app.getMySqlVm().data.containsKey( Instance.READY_FOR_CFG_MARKER ));
+		Assert.assertTrue( ma.getInstancesVersion() > version );
+	}
+
+
 	@Test
 	public void testVerifyCandidates_noExecutor() {
 
@@ -87,8 +87,10 @@ public class TargetsMngrImplTest {
 		Assert.assertEquals( "", props.asString());
 		Assert.assertNull( props.getSourceFile());
 
+		long version = this.mngr.getTargetsVersion();
 		String targetId = this.mngr.createTarget( "id: tid\nprop: ok\nhandler: h" );
 		Assert.assertEquals( "tid", targetId );
+		Assert.assertTrue( version < this.mngr.getTargetsVersion());
 
 		String newTargetId = this.mngr.createTarget( "ok: ok\nid: tok\nhandler: h" );
 		Assert.assertNotNull( newTargetId );
@@ -100,7 +102,9 @@ public class TargetsMngrImplTest {
 		props = this.mngr.findTargetProperties( newTargetId );
 		Assert.assertEquals( "ok: ok\nhandler: h", props.asString().trim());
 
+		version = this.mngr.getTargetsVersion();
 		this.mngr.updateTarget( targetId, "prop2: ko\nprop1: done\nhandler: ok" );
+		Assert.assertTrue( version < this.mngr.getTargetsVersion());
 		props = this.mngr.findTargetProperties( targetId );
 		Assert.assertEquals( "prop2: ko\nprop1: done\nhandler: ok", props.asString());
 
@@ -116,7 +120,9 @@ public class TargetsMngrImplTest {
 		props = this.mngr.findTargetProperties( targetId );
 		Assert.assertEquals( "prop2: ko\nprop1: done\nhandler: ok", props.asString());
 
+		version = this.mngr.getTargetsVersion();
 		this.mngr.deleteTarget( targetId );
+		Assert.assertTrue( version < this.mngr.getTargetsVersion());
 
 		props = this.mngr.findTargetProperties( targetId );
 		Assert.assertNotNull( props );
@@ -596,7 +602,9 @@ public class TargetsMngrImplTest {
 		// Hint between app1 and t1.
 		// t1 has now a scope, which includes app1.
 		// Therefore, t1 should not be listed for app2 (not in the scope).
+		long version = this.mngr.getTargetsVersion();
 		this.mngr.addHint( t1, app1 );
+		Assert.assertTrue( version < this.mngr.getTargetsVersion());
 
 		List<TargetWrapperDescriptor> beans = this.mngr.listPossibleTargets( app1 );
 		Assert.assertEquals( 2, beans.size());
@@ -0,0 +1,388 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.api.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import net.roboconf.core.Constants;
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.model.beans.Application;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.core.model.runtime.TargetWrapperDescriptor;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.internal.api.impl.WarmPoolMngrImpl.PooledMachine;
+import net.roboconf.dm.internal.api.impl.WarmPoolMngrImpl.WarmPool;
+import net.roboconf.dm.internal.api.impl.beans.TargetPropertiesImpl;
+import net.roboconf.dm.internal.utils.ConfigurationUtils;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.api.IConfigurationMngr;
+import net.roboconf.dm.management.api.IMessagingMngr;
+import net.roboconf.dm.management.api.ITargetHandlerResolver;
+import net.roboconf.dm.management.api.ITargetsMngr;
+import net.roboconf.messaging.api.business.IDmClient;
+import net.roboconf.messaging.api.business.ListenerCommand;
+import net.roboconf.messaging.api.messages.Message;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdReassignAgent;
+import net.roboconf.target.api.TargetException;
+import net.roboconf.target.api.TargetHandler;
+import net.roboconf.target.api.TargetHandlerParameters;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class WarmPoolMngrImplTest {
+
+	private static final String TARGET_ID = "tid";
+	private static final String POOL_APP = WarmPoolMngrImpl.POOL_APPLICATION_PREFIX + TARGET_ID;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private WarmPoolMngrImpl warmPoolMngr;
+	private ITargetsMngr targetsMngr;
+	private IMessagingMngr messagingMngr;
+	private IConfigurationMngr configurationMngr;
+	private ITargetHandlerResolver resolver;
+	private IDmClient client;
+	private TargetHandler handler;
+	private Map<String,String> targetProperties;
+
+
+	@Before
+	public void prepare() throws Exception {
+
+		this.targetProperties = new HashMap<> ();
+		this.targetProperties.put( Constants.TARGET_PROPERTY_HANDLER, "test" );
+		this.targetProperties.put( Constants.TARGET_PROPERTY_POOL_SIZE, "2" );
+
+		TargetWrapperDescriptor twd = new TargetWrapperDescriptor();
+		twd.setId( TARGET_ID );
+
+		this.targetsMngr = Mockito.mock( ITargetsMngr.class );
+		Mockito.when( this.targetsMngr.listAllTargets()).thenReturn( Arrays.asList( twd ));
+		Mockito.when( this.targetsMngr.findTargetProperties( TARGET_ID )).thenAnswer( new Answer<TargetPropertiesImpl>() {
+			@Override
+			public TargetPropertiesImpl answer( InvocationOnMock invocation ) throws Throwable {
+				return new TargetPropertiesImpl( new HashMap<>( WarmPoolMngrImplTest.this.targetProperties ), "", null );
+			}
+		});
+
+		this.client = Mockito.mock( IDmClient.class );
+		this.messagingMngr = Mockito.mock( IMessagingMngr.class );
+		Mockito.when( this.messagingMngr.getMessagingClient()).thenReturn( this.client );
+
+		this.configurationMngr = new ConfigurationMngrImpl();
+		this.configurationMngr.setWorkingDirectory( this.folder.newFolder());
+
+		final AtomicInteger machineCounter = new AtomicInteger();
+		this.handler = Mockito.mock( TargetHandler.class );
+		Mockito.when( this.handler.createMachine( Mockito.any( TargetHandlerParameters.class ))).thenAnswer( new Answer<String>() {
+			@Override
+			public String answer( InvocationOnMock invocation ) throws Throwable {
+				return "machine-id-" + machineCounter.incrementAndGet();
+			}
+		});
+
+		this.resolver = Mockito.mock( ITargetHandlerResolver.class );
+		Mockito.when( this.resolver.findTargetHandler( Mockito.anyMapOf( String.class, String.class ))).thenReturn( this.handler );
+
+		this.warmPoolMngr = new WarmPoolMngrImpl( this.messagingMngr, this.targetsMngr, this.configurationMngr );
+		this.warmPoolMngr.setTargetHandlerResolver( this.resolver );
+		this.warmPoolMngr.setDmDomain( "domain" );
+		this.warmPoolMngr.start();
+	}
+
+
+	@After
+	public void stop() {
+		this.warmPoolMngr.stop();
+	}
+
+
+	@Test
+	public void testStartAndStop() throws Exception {
+
+		Assert.assertNotNull( this.warmPoolMngr.executor );
+
+		// Threads are named daemon threads
+		Thread thread = this.warmPoolMngr.executor.submit( new Callable<Thread>() {
+			@Override
+			public Thread call() throws Exception {
+				return Thread.currentThread();
+			}
+		}).get( 5, TimeUnit.SECONDS );
+
+		Assert.assertTrue( thread.isDaemon());
+		Assert.assertTrue( thread.getName().startsWith( "Roboconf - Warm Pools " ));
+
+		this.warmPoolMngr.stop();
+		Assert.assertNull( this.warmPoolMngr.executor );
+
+		// Invoking "stop" several times does not throw any error
+		this.warmPoolMngr.stop();
+
+		// Without executor, nothing is created
+		this.warmPoolMngr.refillPools();
+		Assert.assertEquals( 0, this.warmPoolMngr.targetIdToPool.size());
+	}
+
+
+	@Test
+	public void testPoolLifeCycle() throws Exception {
+
+		// Fill the pool
+		this.warmPoolMngr.refillPools();
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 2 )).createMachine( Mockito.any( TargetHandlerParameters.class ));
+		Mockito.verify( this.client, Mockito.times( 1 )).listenToAgentMessages( Mockito.any( Application.class ), Mockito.eq( ListenerCommand.START ));
+		Assert.assertEquals( 1, this.warmPoolMngr.findPoolApplications().size());
+		Assert.assertEquals( POOL_APP, this.warmPoolMngr.findPoolApplications().iterator().next().getName());
+
+		// Idle machines are created with a placeholder identity
+		ArgumentCaptor<TargetHandlerParameters> captor = ArgumentCaptor.forClass( TargetHandlerParameters.class );
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 2 )).configureMachine( captor.capture(), Mockito.anyString(), Mockito.any( Instance.class ));
+		for( TargetHandlerParameters parameters : captor.getAllValues()) {
+			Assert.assertEquals( POOL_APP, parameters.getApplicationName());
+			Assert.assertEquals( "domain", parameters.getDomain());
+		}
+
+		// Refilling again does not create more machines
+		this.warmPoolMngr.refillPools();
+		Thread.sleep( 100 );
+		Mockito.verify( this.handler, Mockito.times( 2 )).createMachine( Mockito.any( TargetHandlerParameters.class ));
+
+		// No agent has sent a heart beat: nothing can be claimed
+		TestApplication app = new TestApplication();
+		ManagedApplication ma = new ManagedApplication( app );
+		Assert.assertNull( this.warmPoolMngr.claimMachine( TARGET_ID, ma, app.getTomcatVm()));
+		Assert.assertNull( this.warmPoolMngr.claimMachine( "another target", ma, app.getTomcatVm()));
+		Assert.assertNull( this.warmPoolMngr.claimMachine( null, ma, app.getTomcatVm()));
+
+		// Heart beats
+		PooledMachine machine = this.warmPoolMngr.targetIdToPool.get( TARGET_ID ).machines.get( 0 );
+		String path = InstanceHelpers.computeInstancePath( machine.instance );
+		Assert.assertTrue( this.warmPoolMngr.acknowledgeHeartBeat( POOL_APP, path, "192.168.1.4" ));
+		Assert.assertFalse( this.warmPoolMngr.acknowledgeHeartBeat( POOL_APP, "/unknown", "192.168.1.4" ));
+		Assert.assertFalse( this.warmPoolMngr.acknowledgeHeartBeat( app.getName(), path, "192.168.1.4" ));
+		Assert.assertFalse( this.warmPoolMngr.acknowledgeHeartBeat( null, path, "192.168.1.4" ));
+
+		// Claim it
+		String machineId = this.warmPoolMngr.claimMachine( TARGET_ID, ma, app.getTomcatVm());
+		Assert.assertEquals( machine.instance.data.get( Instance.MACHINE_ID ), machineId );
+
+		ArgumentCaptor<Message> msgCaptor = ArgumentCaptor.forClass( Message.class );
+		Mockito.verify( this.client, Mockito.times( 1 )).sendMessageToAgent( Mockito.any( Application.class ), Mockito.eq( machine.instance ), msgCaptor.capture());
+		MsgCmdReassignAgent msg = (MsgCmdReassignAgent) msgCaptor.getValue();
+		Assert.assertEquals( app.getName(), msg.getApplicationName());
+		Assert.assertEquals( InstanceHelpers.computeInstancePath( app.getTomcatVm()), msg.getScopedInstancePath());
+
+		// The pool is refilled in background
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 3 )).createMachine( Mockito.any( TargetHandlerParameters.class ));
+
+		// Drain the pool: idle machines are terminated, the claimed one is not
+		this.targetProperties.remove( Constants.TARGET_PROPERTY_POOL_SIZE );
+		Thread.sleep( 100 );
+		this.warmPoolMngr.refillPools();
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 2 )).terminateMachine( Mockito.any( TargetHandlerParameters.class ), Mockito.anyString());
+		Mockito.verify( this.handler, Mockito.never()).terminateMachine( Mockito.any( TargetHandlerParameters.class ), Mockito.eq( machineId ));
+		Mockito.verify( this.client, Mockito.times( 1 )).listenToAgentMessages( Mockito.any( Application.class ), Mockito.eq( ListenerCommand.STOP ));
+		Assert.assertEquals( 0, this.warmPoolMngr.findPoolApplications().size());
+	}
+
+
+	@Test
+	public void testClaim_messagingError() throws Exception {
+
+		Mockito.doThrow( new IOException( "for test" )).when( this.client ).sendMessageToAgent(
+				Mockito.any( Application.class ),
+				Mockito.any( Instance.class ),
+				Mockito.any( Message.class ));
+
+		this.warmPoolMngr.refillPools();
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 2 )).configureMachine(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.anyString(),
+				Mockito.any( Instance.class ));
+
+		Thread.sleep( 100 );
+		PooledMachine machine = this.warmPoolMngr.targetIdToPool.get( TARGET_ID ).machines.get( 0 );
+		String path = InstanceHelpers.computeInstancePath( machine.instance );
+		Assert.assertTrue( this.warmPoolMngr.acknowledgeHeartBeat( POOL_APP, path, null ));
+
+		// The machine cannot be reassigned: it is terminated
+		TestApplication app = new TestApplication();
+		Assert.assertNull( this.warmPoolMngr.claimMachine( TARGET_ID, new ManagedApplication( app ), app.getTomcatVm()));
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 1 )).terminateMachine(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.eq( machine.instance.data.get( Instance.MACHINE_ID )));
+	}
+
+
+	@Test
+	public void testMachinesWithoutHeartBeatAreReplaced() throws Exception {
+
+		this.warmPoolMngr.startupTimeout = 0;
+		this.warmPoolMngr.refillPools();
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 2 )).configureMachine(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.anyString(),
+				Mockito.any( Instance.class ));
+
+		Thread.sleep( 100 );
+		this.warmPoolMngr.refillPools();
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 2 )).terminateMachine( Mockito.any( TargetHandlerParameters.class ), Mockito.anyString());
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 4 )).createMachine( Mockito.any( TargetHandlerParameters.class ));
+	}
+
+
+	@Test
+	public void testIdleMachinesAreSavedAndRestored() throws Exception {
+
+		this.warmPoolMngr.refillPools();
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 2 )).configureMachine(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.anyString(),
+				Mockito.any( Instance.class ));
+
+		Thread.sleep( 100 );
+		File dir = new File( this.configurationMngr.getWorkingDirectory(), ConfigurationUtils.WARM_POOLS );
+		File f = new File( dir, TARGET_ID + WarmPoolMngrImpl.POOL_FILE_SUFFIX );
+		Assert.assertTrue( f.exists());
+
+		Properties props = Utils.readPropertiesFile( f );
+		Assert.assertEquals( 2, props.size());
+
+		// The DM restarts without having stopped the pools (e.g. a crash): idle machines are adopted again
+		WarmPoolMngrImpl otherMngr = new WarmPoolMngrImpl( this.messagingMngr, this.targetsMngr, this.configurationMngr );
+		otherMngr.setTargetHandlerResolver( this.resolver );
+		otherMngr.setDmDomain( "domain" );
+		otherMngr.start();
+		try {
+			WarmPool pool = otherMngr.targetIdToPool.get( TARGET_ID );
+			Assert.assertNotNull( pool );
+			Assert.assertEquals( 2, pool.machines.size());
+			for( PooledMachine machine : pool.machines ) {
+				Assert.assertTrue( machine.created );
+				Assert.assertFalse( machine.ready );
+				Assert.assertEquals( props.getProperty( machine.instance.getName()), machine.instance.data.get( Instance.MACHINE_ID ));
+			}
+
+			Mockito.verify( this.client, Mockito.times( 2 )).listenToAgentMessages( Mockito.any( Application.class ), Mockito.eq( ListenerCommand.START ));
+
+			// Their agent shows up: they can be claimed
+			PooledMachine machine = pool.machines.get( 0 );
+			String machineId = machine.instance.data.get( Instance.MACHINE_ID );
+			Assert.assertTrue( otherMngr.acknowledgeHeartBeat( POOL_APP, InstanceHelpers.computeInstancePath( machine.instance ), null ));
+
+			TestApplication app = new TestApplication();
+			Assert.assertEquals( machineId, otherMngr.claimMachine( TARGET_ID, new ManagedApplication( app ), app.getTomcatVm()));
+			Assert.assertFalse( Utils.readPropertiesFile( f ).containsValue( machineId ));
+
+			// New machines do not reuse the names of the restored ones
+			Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 3 )).configureMachine(
+					Mockito.any( TargetHandlerParameters.class ),
+					Mockito.anyString(),
+					Mockito.any( Instance.class ));
+
+			Thread.sleep( 100 );
+			Set<String> names = new HashSet<> ();
+			for( PooledMachine m : pool.machines )
+				names.add( m.instance.getName());
+
+			Assert.assertEquals( 2, names.size());
+			Assert.assertEquals( 2, Utils.readPropertiesFile( f ).size());
+
+		} finally {
+			otherMngr.stop();
+		}
+
+		// A graceful stop terminates the idle machines, restored ones included
+		Mockito.verify( this.handler, Mockito.times( 2 )).terminateMachine( Mockito.any( TargetHandlerParameters.class ), Mockito.anyString());
+		Assert.assertFalse( f.exists());
+	}
+
+
+	@Test
+	public void testIdleMachinesThatCouldNotBeTerminatedRemainSaved() throws Exception {
+
+		Mockito.doThrow( new TargetException( "for test" )).when( this.handler ).terminateMachine(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.anyString());
+
+		this.warmPoolMngr.refillPools();
+		Mockito.verify( this.handler, Mockito.timeout( 2000 ).times( 2 )).configureMachine(
+				Mockito.any( TargetHandlerParameters.class ),
+				Mockito.anyString(),
+				Mockito.any( Instance.class ));
+
+		Thread.sleep( 100 );
+		this.warmPoolMngr.stop();
+		Mockito.verify( this.handler, Mockito.times( 2 )).terminateMachine( Mockito.any( TargetHandlerParameters.class ), Mockito.anyString());
+
+		File f = new File( this.configurationMngr.getWorkingDirectory(), ConfigurationUtils.WARM_POOLS + "/" + TARGET_ID + WarmPoolMngrImpl.POOL_FILE_SUFFIX );
+		Assert.assertEquals( 2, Utils.readPropertiesFile( f ).size());
+	}
+
+
+	@Test
+	public void testPoolSize() {
+
+		Assert.assertEquals( 2, this.warmPoolMngr.poolSize( TARGET_ID ));
+
+		this.targetProperties.put( Constants.TARGET_PROPERTY_POOL_SIZE, " 5 " );
+		Assert.assertEquals( 5, this.warmPoolMngr.poolSize( TARGET_ID ));
+
+		this.targetProperties.put( Constants.TARGET_PROPERTY_POOL_SIZE, "-1" );
+		Assert.assertEquals( 0, this.warmPoolMngr.poolSize( TARGET_ID ));
+
+		this.targetProperties.put( Constants.TARGET_PROPERTY_POOL_SIZE, "invalid" );
+		Assert.assertEquals( 0, this.warmPoolMngr.poolSize( TARGET_ID ));
+
+		this.targetProperties.remove( Constants.TARGET_PROPERTY_POOL_SIZE );
+		Assert.assertEquals( 0, this.warmPoolMngr.poolSize( TARGET_ID ));
+	}
+}
@@ -25,10 +25,16 @@
 
 package net.roboconf.dm.internal.api.impl.beans;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import net.roboconf.core.autonomic.Rule;
 import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.internal.tests.TestUtils;
+import net.roboconf.core.utils.Utils;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -296,4 +302,128 @@ public class AutonomicApplicationContextTest {
 		// If we execute it again, it will be skipped because the original event was already processed for this rule.
 		Assert.assertEquals( 0, ctx.findRulesToExecute().size());
 	}
+
+
+	@Test
+	public void testFindRulesToExecute_replayRecordedStream() throws Exception {
+
+		TestApplication app = new TestApplication();
+		AutonomicApplicationContext ctx = new AutonomicApplicationContext( app );
+
+		// Every event triggers this one
+		addRule( ctx, "immediate", "mem-high", Rule.NO_TIMING_WINDOW, 1, 0, 1, 0, false );
+
+		// 3 events within 10 seconds
+		addRule( ctx, "burst", "cpu-high", 10, 3, 0, 1, 0, false );
+
+		// 0.4 events per second within 10 seconds
+		addRule( ctx, "rate", "cpu-high", 10, 1, 4, 10, 0, false );
+
+		// 2 distinct agents within 30 seconds
+		addRule( ctx, "spread", "disk-full", 30, 1, 0, 1, 2, false );
+
+		// 2 events from the same agent within 10 seconds
+		addRule( ctx, "per-agent", "mem-high", 10, 2, 0, 1, 0, true );
+
+		// Replay
+		File streamFile = TestUtils.findTestFile( "/autonomic/event-streams/recorded-stream-1.txt" );
+		List<String> executions = replay( ctx, streamFile );
+
+		// The result is always the same
+		List<String> expected = new ArrayList<> ();
+		expected.add( "2 burst" );
+		expected.add( "3 rate" );
+		expected.add( "5 burst" );
+		expected.add( "80 spread" );
+		expected.add( "81 immediate" );
+		expected.add( "82 immediate" );
+		expected.add( "85 immediate" );
+		expected.add( "85 per-agent" );
+
+		Assert.assertEquals( expected, executions );
+		Assert.assertEquals( expected, replay( new AutonomicApplicationContext( app ), streamFile, ctx ));
+	}
+
+
+	@Test
+	public void testFindRulesToExecute_reloadedRuleGetsNewWindow() throws Exception {
+
+		TestApplication app = new TestApplication();
+		AutonomicApplicationContext ctx = new AutonomicApplicationContext( app );
+		Rule rule = addRule( ctx, "burst", "cpu-high", 10, 3, 0, 1, 0, false );
+
+		ctx.registerEvent( "cpu-high", "/vm1", 1 );
+		ctx.registerEvent( "cpu-high", "/vm1", 2 );
+		RuleWindow window = ctx.ruleNameToWindow.get( rule.getRuleName());
+		Assert.assertNotNull( window );
+		Assert.assertEquals( 2, window.allEvents.size());
+
+		// Reload the rule (e.g. the file was modified)
+		Rule newRule = addRule( ctx, "burst", "cpu-high", 10, 2, 0, 1, 0, false );
+		ctx.registerEvent( "cpu-high", "/vm1", 3 );
+
+		RuleWindow newWindow = ctx.ruleNameToWindow.get( rule.getRuleName());
+		Assert.assertNotSame( window, newWindow );
+		Assert.assertSame( newRule, newWindow.getRule());
+		Assert.assertEquals( 1, newWindow.allEvents.size());
+	}
+
+
+	private static Rule addRule(
+			AutonomicApplicationContext ctx,
+			String ruleName,
+			String eventName,
+			int timingWindow,
+			int minOccurrences,
+			int minRateCount,
+			int minRateUnit,
+			int minAgents,
+			boolean countPerAgent ) {
+
+		Rule rule = new Rule();
+		rule.setRuleName( ruleName );
+		rule.setEventName( eventName );
+		rule.setTimingWindow( timingWindow );
+		rule.setMinOccurrences( minOccurrences );
+		rule.setMinRate( minRateCount, minRateUnit );
+		rule.setMinAgents( minAgents );
+		rule.setCountPerAgent( countPerAgent );
+		rule.getCommandsToInvoke().add( "cmd" );
+
+		ctx.ruleNameToRule.put( ruleName, rule );
+		return rule;
+	}
+
+
+	private static List<String> replay( AutonomicApplicationContext ctx, File streamFile, AutonomicApplicationContext rulesCtx )
+	throws Exception {
+		ctx.ruleNameToRule.putAll( rulesCtx.ruleNameToRule );
+		return replay( ctx, streamFile );
+	}
+
+
+	private static List<String> replay( AutonomicApplicationContext ctx, File streamFile ) throws Exception {
+
+		List<String> result = new ArrayList<> ();
+		for( String line : Utils.readFileContent( streamFile ).split( "\\n" )) {
+
+			line = line.trim();
+			if( line.isEmpty() || line.startsWith( "#" ))
+				continue;
+
+			String[] parts = line.split( "\\s+" );
+			long time = TimeUnit.SECONDS.toNanos( Long.parseLong( parts[ 0 ]));
+			ctx.registerEvent( parts[ 2 ], parts[ 1 ], time );
+
+			List<String> ruleNames = new ArrayList<> ();
+			for( Rule rule : ctx.findRulesToExecute( time ))
+				ruleNames.add( rule.getRuleName());
+
+			Collections.sort( ruleNames );
+			for( String ruleName : ruleNames )
+				result.add( parts[ 0 ] + " " + ruleName );
+		}
+
+		return result;
+	}
 }
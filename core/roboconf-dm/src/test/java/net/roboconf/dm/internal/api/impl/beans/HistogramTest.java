@@ -0,0 +1,113 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.internal.api.impl.beans;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.roboconf.dm.management.api.IMetricsMngr.HistogramSnapshot;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class HistogramTest {
+
+	@Test
+	public void testEmptyHistogram() {
+
+		HistogramSnapshot snapshot = new Histogram().snapshot();
+		Assert.assertEquals( 0, snapshot.getCount());
+		Assert.assertEquals( 0, snapshot.getMin());
+		Assert.assertEquals( 0, snapshot.getMax());
+		Assert.assertEquals( 0, snapshot.getP99());
+	}
+
+
+	@Test
+	public void testRecordAndSnapshot() {
+
+		Histogram histogram = new Histogram();
+		for( int i=1; i<=100; i++ )
+			histogram.record( TimeUnit.MILLISECONDS.toNanos( i ));
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		Assert.assertEquals( 100, snapshot.getCount());
+		Assert.assertEquals( 1, snapshot.getMin());
+		Assert.assertEquals( 100, snapshot.getMax());
+		Assert.assertEquals( 50, snapshot.getMean());
+
+		// Percentiles are approximated by bucket bounds
+		Assert.assertEquals( 50, snapshot.getP50());
+		Assert.assertEquals( 100, snapshot.getP95());
+		Assert.assertEquals( 100, snapshot.getP99());
+		Assert.assertNotNull( snapshot.toString());
+	}
+
+
+	@Test
+	public void testPercentilesRemainBetweenMinAndMax() {
+
+		Histogram histogram = new Histogram();
+		histogram.record( TimeUnit.MILLISECONDS.toNanos( 2600 ));
+		histogram.record( TimeUnit.MILLISECONDS.toNanos( 2700 ));
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		Assert.assertEquals( 2600, snapshot.getMin());
+		Assert.assertEquals( 2700, snapshot.getMax());
+		Assert.assertEquals( 2700, snapshot.getP50());
+	}
+
+
+	@Test
+	public void testExtremeValues() {
+
+		Histogram histogram = new Histogram();
+		histogram.record( -5 );
+		histogram.record( TimeUnit.HOURS.toNanos( 2 ));
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		Assert.assertEquals( 2, snapshot.getCount());
+		Assert.assertEquals( 0, snapshot.getMin());
+		Assert.assertEquals( TimeUnit.HOURS.toMillis( 2 ), snapshot.getMax());
+	}
+
+
+	@Test
+	public void testReset() {
+
+		Histogram histogram = new Histogram();
+		histogram.record( TimeUnit.MILLISECONDS.toNanos( 20 ));
+		Assert.assertEquals( 1, histogram.snapshot().getCount());
+
+		histogram.reset();
+		Assert.assertEquals( 0, histogram.snapshot().getCount());
+
+		histogram.record( TimeUnit.MILLISECONDS.toNanos( 7 ));
+		Assert.assertEquals( 7, histogram.snapshot().getMin());
+		Assert.assertEquals( 7, histogram.snapshot().getMax());
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.api.impl.beans;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.roboconf.core.autonomic.Rule;
+import net.roboconf.dm.internal.api.impl.beans.RuleWindow.RingBuffer;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class RuleWindowTest {
+
+	@Test
+	public void testRingBuffer() {
+
+		RingBuffer buffer = new RingBuffer( 3 );
+		Assert.assertEquals( 0, buffer.size());
+		Assert.assertFalse( buffer.isFull());
+
+		buffer.add( 1 );
+		buffer.add( 2 );
+		Assert.assertEquals( 2, buffer.size());
+		Assert.assertEquals( 1, buffer.oldest());
+		Assert.assertFalse( buffer.isFull());
+
+		buffer.add( 3 );
+		Assert.assertTrue( buffer.isFull());
+		Assert.assertEquals( 1, buffer.oldest());
+
+		buffer.add( 4 );
+		buffer.add( 5 );
+		Assert.assertEquals( 3, buffer.size());
+		Assert.assertEquals( 3, buffer.oldest());
+
+		buffer.clear();
+		Assert.assertEquals( 0, buffer.size());
+		buffer.add( 6 );
+		Assert.assertEquals( 6, buffer.oldest());
+
+		// Capacity is at least 1
+		buffer = new RingBuffer( 0 );
+		buffer.add( 7 );
+		Assert.assertTrue( buffer.isFull());
+	}
+
+
+	@Test
+	public void testOccurrences() {
+
+		Rule rule = new Rule();
+		rule.setTimingWindow( 10 );
+		rule.setMinOccurrences( 3 );
+
+		RuleWindow window = new RuleWindow( rule );
+		window.record( "/vm1", seconds( 1 ));
+		window.record( "/vm2", seconds( 2 ));
+		Assert.assertFalse( window.isSatisfied( seconds( 2 )));
+
+		window.record( null, seconds( 3 ));
+		Assert.assertTrue( window.isSatisfied( seconds( 3 )));
+		Assert.assertTrue( window.isSatisfied( seconds( 11 )));
+		Assert.assertFalse( window.isSatisfied( seconds( 12 )));
+
+		window.reset();
+		Assert.assertFalse( window.isSatisfied( seconds( 3 )));
+	}
+
+
+	@Test
+	public void testOccurrencesPerAgent() {
+
+		Rule rule = new Rule();
+		rule.setTimingWindow( 10 );
+		rule.setMinOccurrences( 2 );
+		rule.setCountPerAgent( true );
+
+		RuleWindow window = new RuleWindow( rule );
+		window.record( "/vm1", seconds( 1 ));
+		window.record( "/vm2", seconds( 2 ));
+		Assert.assertFalse( window.isSatisfied( seconds( 2 )));
+
+		window.record( "/vm2", seconds( 3 ));
+		Assert.assertTrue( window.isSatisfied( seconds( 3 )));
+		Assert.assertEquals( 2, window.agentToEvents.size());
+	}
+
+
+	@Test
+	public void testDistinctAgents() {
+
+		Rule rule = new Rule();
+		rule.setTimingWindow( 10 );
+		rule.setMinAgents( 3 );
+
+		RuleWindow window = new RuleWindow( rule );
+		window.record( "/vm1", seconds( 1 ));
+		window.record( "/vm2", seconds( 2 ));
+		window.record( "/vm2", seconds( 3 ));
+		Assert.assertFalse( window.isSatisfied( seconds( 3 )));
+
+		window.record( "/vm3", seconds( 4 ));
+		Assert.assertTrue( window.isSatisfied( seconds( 4 )));
+		Assert.assertFalse( window.isSatisfied( seconds( 12 )));
+
+		// Only the most recent agents are kept
+		window.record( "/vm1", seconds( 12 ));
+		window.record( "/vm4", seconds( 13 ));
+		Assert.assertEquals( 3, window.recentAgents.size());
+		Assert.assertFalse( window.recentAgents.containsKey( "/vm2" ));
+		Assert.assertTrue( window.isSatisfied( seconds( 13 )));
+	}
+
+
+	private static long seconds( long seconds ) {
+		return TimeUnit.SECONDS.toNanos( seconds );
+	}
+}
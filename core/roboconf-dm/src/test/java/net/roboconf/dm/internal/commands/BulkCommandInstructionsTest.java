@@ -26,16 +26,24 @@
 package net.roboconf.dm.internal.commands;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import net.roboconf.core.commands.BulkCommandInstructions;
 import net.roboconf.core.commands.BulkCommandInstructions.ChangeStateInstruction;
 import net.roboconf.core.commands.CommandsParser;
 import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
@@ -188,12 +196,121 @@ public class BulkCommandInstructionsTest {
 	}
 
 
+	@Test
+	public void testExecute_inParallel() throws Exception {
+
+		// Add 200 root instances
+		final int vmCount = 200;
+		for( int i=0; i<vmCount; i++ ) {
+			Instance vm = new Instance( "vm-" + i ).component( this.app.getTomcatVm().getComponent());
+			this.app.getRootInstances().add( vm );
+		}
+
+		// Simulate a slow target
+		final AtomicInteger running = new AtomicInteger( 0 );
+		final AtomicInteger maxRunning = new AtomicInteger( 0 );
+		final AtomicInteger processed = new AtomicInteger( 0 );
+		Mockito.doAnswer( new Answer<Object>() {
+			@Override
+			public Object answer( InvocationOnMock invocation ) throws Throwable {
+
+				int current = running.incrementAndGet();
+				synchronized( maxRunning ) {
+					maxRunning.set( Math.max( maxRunning.get(), current ));
+				}
+
+				Thread.sleep( 10 );
+				processed.incrementAndGet();
+				running.decrementAndGet();
+				return null;
+			}
+		}).when( this.instancesMngr ).deployAndStartAll( Mockito.any( ManagedApplication.class ), Mockito.any( Instance.class ));
+
+		String command = ChangeStateInstruction.DEPLOY_AND_START_ALL.toString() + " instances of vm";
+		int total = vmCount + 2;
+
+		// In sequence
+		long before = System.nanoTime();
+		buildExecutor( command ).execute();
+		long sequentialDuration = System.nanoTime() - before;
+
+		Assert.assertEquals( total, processed.get());
+		Assert.assertEquals( 1, maxRunning.get());
+
+		// In parallel
+		processed.set( 0 );
+		ParallelRunner runner = new ParallelRunner( 10 );
+		before = System.nanoTime();
+		buildExecutor( command, runner ).execute();
+		long parallelDuration = System.nanoTime() - before;
+
+		Assert.assertEquals( total, processed.get());
+		Assert.assertTrue( maxRunning.get() > 1 );
+		Assert.assertTrue( maxRunning.get() <= 10 );
+		Assert.assertTrue( parallelDuration < sequentialDuration );
+
+		Logger.getLogger( getClass().getName()).info(
+				"Bulk deployment of " + total + " instances. Sequential: " + sequentialDuration / 1000000
+				+ " ms. Parallel (10): " + parallelDuration / 1000000 + " ms." );
+	}
+
+
+	@Test
+	public void testExecute_inParallel_errorsAreDeterministic() throws Exception {
+
+		Mockito.doThrow( new IOException( "tomcat" )).when( this.instancesMngr ).stopAll( this.ma, this.app.getTomcatVm());
+		Mockito.doThrow( new IOException( "mysql" )).when( this.instancesMngr ).stopAll( this.ma, this.app.getMySqlVm());
+
+		// The error depends on the order of the instances in the model
+		List<Instance> vms = new ArrayList<>( this.app.getRootInstances());
+		String command = ChangeStateInstruction.STOP_ALL.toString() + " instances of vm";
+		for( int i=0; i<10; i++ ) {
+			try {
+				buildExecutor( command, new ParallelRunner( 2 )).execute();
+				Assert.fail( "An exception was expected." );
+
+			} catch( CommandException e ) {
+				Assert.assertEquals( vms.get( 0 ) == this.app.getTomcatVm() ? "tomcat" : "mysql", e.getCause().getMessage());
+			}
+		}
+
+		// Both were invoked
+		Mockito.verify( this.instancesMngr, Mockito.times( 10 )).stopAll( this.ma, this.app.getTomcatVm());
+		Mockito.verify( this.instancesMngr, Mockito.times( 10 )).stopAll( this.ma, this.app.getMySqlVm());
+	}
+
+
+	@Test
+	public void testAreDistinctTrees() {
+
+		Assert.assertTrue( BulkCommandExecution.areDistinctTrees( new ArrayList<Instance>( 0 )));
+		Assert.assertTrue( BulkCommandExecution.areDistinctTrees( Arrays.asList( this.app.getTomcatVm())));
+		Assert.assertTrue( BulkCommandExecution.areDistinctTrees( Arrays.asList( this.app.getTomcatVm(), this.app.getMySqlVm())));
+		Assert.assertTrue( BulkCommandExecution.areDistinctTrees( Arrays.asList( this.app.getTomcat(), this.app.getMySql())));
+		Assert.assertTrue( BulkCommandExecution.areDistinctTrees( Arrays.asList( this.app.getWar(), this.app.getMySqlVm())));
+
+		Assert.assertFalse( BulkCommandExecution.areDistinctTrees( Arrays.asList( this.app.getTomcatVm(), this.app.getTomcatVm())));
+		Assert.assertFalse( BulkCommandExecution.areDistinctTrees( Arrays.asList( this.app.getTomcatVm(), this.app.getTomcat())));
+		Assert.assertFalse( BulkCommandExecution.areDistinctTrees( Arrays.asList( this.app.getWar(), this.app.getTomcatVm())));
+	}
+
+
 	private BulkCommandExecution buildExecutor( String command ) {
-		return buildExecutor( command, 0 );
+		return buildExecutor( command, 0, null );
+	}
+
+
+	private BulkCommandExecution buildExecutor( String command, ParallelRunner runner ) {
+		return buildExecutor( command, 0, runner );
 	}
 
 
 	private BulkCommandExecution buildExecutor( String command, int validationError ) {
+		return buildExecutor( command, validationError, null );
+	}
+
+
+	private BulkCommandExecution buildExecutor( String command, int validationError, ParallelRunner runner ) {
 
 		CommandsParser parser = new CommandsParser( this.app, command );
 		Assert.assertEquals( validationError, parser.getParsingErrors().size());
@@ -201,6 +318,6 @@ public class BulkCommandInstructionsTest {
 		Assert.assertEquals( BulkCommandInstructions.class, parser.getInstructions().get( 0 ).getClass());
 
 		BulkCommandInstructions instr = (BulkCommandInstructions) parser.getInstructions().get( 0 );
-		return new BulkCommandExecution( instr, this.manager );
+		return new BulkCommandExecution( instr, this.manager, runner );
 	}
 }
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.commands;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.roboconf.core.commands.AbstractCommandInstruction;
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.exceptions.CommandException;
+
+/**
+ * @author Amadou Diarra - Université Joseph Fourier
+ */
+public class CommandsCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TestApplication app;
+	private ManagedApplication ma;
+	private CommandsCache cache;
+
+
+	@Before
+	public void prepare() throws Exception {
+		this.app = new TestApplication();
+		this.app.setDirectory( this.folder.newFolder());
+		this.ma = new ManagedApplication( this.app );
+		this.cache = new CommandsCache();
+	}
+
+
+	@Test
+	public void testCacheHit() throws Exception {
+
+		File f = this.folder.newFile();
+		Utils.writeStringInto( "deploy and start all /tomcat-vm", f );
+
+		List<AbstractCommandInstruction> instructions1 = this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 1, instructions1.size());
+		Assert.assertEquals( 0, this.cache.hits.get());
+		Assert.assertEquals( 1, this.cache.misses.get());
+
+		for( int i=0; i<10; i++ ) {
+			List<AbstractCommandInstruction> instructions2 = this.cache.findInstructions( this.ma, f );
+			Assert.assertSame( instructions1, instructions2 );
+		}
+
+		Assert.assertEquals( 10, this.cache.hits.get());
+		Assert.assertEquals( 1, this.cache.misses.get());
+	}
+
+
+	@Test
+	public void testFileModification() throws Exception {
+
+		File f = this.folder.newFile();
+		Utils.writeStringInto( "deploy and start all /tomcat-vm", f );
+
+		List<AbstractCommandInstruction> instructions1 = this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 1, instructions1.size());
+
+		Utils.writeStringInto( "deploy and start all /tomcat-vm\nstop all /tomcat-vm", f );
+		List<AbstractCommandInstruction> instructions2 = this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 2, instructions2.size());
+
+		Assert.assertEquals( 0, this.cache.hits.get());
+		Assert.assertEquals( 2, this.cache.misses.get());
+	}
+
+
+	@Test
+	public void testInvalidation() throws Exception {
+
+		File f = this.folder.newFile();
+		Utils.writeStringInto( "deploy and start all /tomcat-vm", f );
+
+		this.cache.findInstructions( this.ma, f );
+		this.cache.invalidate( this.app, f );
+		this.cache.findInstructions( this.ma, f );
+
+		Assert.assertEquals( 0, this.cache.hits.get());
+		Assert.assertEquals( 2, this.cache.misses.get());
+
+		// Invalidating an unknown application or file does not fail
+		this.cache.invalidate( new TestApplication().name( "other" ), f );
+		this.cache.invalidate( this.app, this.folder.newFile());
+		this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 1, this.cache.hits.get());
+	}
+
+
+	@Test
+	public void testInstancesModification() throws Exception {
+
+		File f = this.folder.newFile();
+		Utils.writeStringInto( "deploy and start all /tomcat-vm", f );
+
+		this.cache.findInstructions( this.ma, f );
+		this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 1, this.cache.hits.get());
+		Assert.assertEquals( 1, this.cache.misses.get());
+
+		// Changing the state of an instance does not invalidate anything
+		this.ma.instanceChanged( this.app.getTomcatVm());
+		this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 2, this.cache.hits.get());
+		Assert.assertEquals( 1, this.cache.misses.get());
+
+		// A new instance invalidates the cached instructions
+		Instance newVm = new Instance( "new-vm" ).component( this.app.getTomcatVm().getComponent());
+		this.app.getRootInstances().add( newVm );
+		this.ma.instancesStructureChanged();
+		this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 2, this.cache.hits.get());
+		Assert.assertEquals( 2, this.cache.misses.get());
+
+		// And so does a removal
+		this.app.getRootInstances().remove( newVm );
+		this.ma.instancesStructureChanged();
+		this.cache.findInstructions( this.ma, f );
+		this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 3, this.cache.hits.get());
+		Assert.assertEquals( 3, this.cache.misses.get());
+	}
+
+
+	@Test
+	public void testRemovedInstanceIsNotServedFromTheCache() throws Exception {
+
+		File f = this.folder.newFile();
+		Utils.writeStringInto( "deploy and start all /tomcat-vm", f );
+		this.cache.findInstructions( this.ma, f );
+
+		this.app.getRootInstances().remove( this.app.getTomcatVm());
+		this.ma.instancesStructureChanged();
+		try {
+			this.cache.findInstructions( this.ma, f );
+			Assert.fail( "The instance does not exist anymore, the file should be invalid." );
+
+		} catch( CommandException e ) {
+			// nothing
+		}
+
+		Assert.assertEquals( 0, this.cache.hits.get());
+		Assert.assertEquals( 2, this.cache.misses.get());
+	}
+
+
+	@Test
+	public void testDynamicVariablesAreNotCached() throws Exception {
+
+		File f = this.folder.newFile();
+		Utils.writeStringInto( "define suffix = $(UUID)\ncreate vm as vm-$(suffix)", f );
+
+		List<AbstractCommandInstruction> instructions1 = this.cache.findInstructions( this.ma, f );
+		List<AbstractCommandInstruction> instructions2 = this.cache.findInstructions( this.ma, f );
+		Assert.assertEquals( 2, instructions1.size());
+		Assert.assertEquals( 2, instructions2.size());
+		Assert.assertNotSame( instructions1, instructions2 );
+
+		Assert.assertEquals( 0, this.cache.hits.get());
+		Assert.assertEquals( 2, this.cache.misses.get());
+	}
+
+
+	@Test
+	public void testAnotherManagedApplicationWithTheSameName() throws Exception {
+
+		File f = this.folder.newFile();
+		Utils.writeStringInto( "deploy and start all /tomcat-vm", f );
+
+		this.cache.findInstructions( this.ma, f );
+		this.cache.findInstructions( new ManagedApplication( this.app ), f );
+		Assert.assertEquals( 0, this.cache.hits.get());
+		Assert.assertEquals( 2, this.cache.misses.get());
+	}
+
+
+	@Test( expected = CommandException.class )
+	public void testInvalidFile() throws Exception {
+
+		File f = this.folder.newFile();
+		Utils.writeStringInto( "this is not a command", f );
+		this.cache.findInstructions( this.ma, f );
+	}
+}
@@ -28,7 +28,6 @@ package net.roboconf.dm.internal.commands;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -48,13 +47,22 @@ import net.roboconf.core.commands.ExecuteCommandInstruction;
 import net.roboconf.core.commands.WriteCommandInstruction;
 import net.roboconf.core.internal.tests.TestApplication;
 import net.roboconf.core.internal.tests.TestUtils;
+import net.roboconf.core.model.RuntimeModelIo.InstancesLoadResult;
 import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
+import net.roboconf.dm.internal.test.TestTargetResolver;
+import net.roboconf.dm.internal.utils.ConfigurationUtils;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
 import net.roboconf.dm.management.exceptions.CommandException;
 import net.roboconf.messaging.api.MessagingConstants;
+import net.roboconf.messaging.api.messages.Message;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeInstanceState;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdSetScopedInstance;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -87,7 +95,7 @@ public class CommandsExecutorTest {
 		this.manager.reconfigure();
 
 		// Disable the messages timer for predictability
-		TestUtils.getInternalField( this.manager, "timer", Timer.class).cancel();
+		TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class).cancel();
 	}
 
 
@@ -152,6 +160,69 @@ public class CommandsExecutorTest {
 	}
 
 
+	@Test
+	public void testStateChangesInParallel() throws Exception {
+
+		// Before
+		TestTargetResolver targetResolver = new TestTargetResolver();
+		this.manager.setTargetResolver( targetResolver );
+
+		String targetId = this.manager.targetsMngr().createTarget( "id: tid\nhandler: h" );
+		this.manager.targetsMngr().associateTargetWith( targetId, this.app, null );
+
+		StringBuilder sb = new StringBuilder();
+		for( int i=1; i<4; i++ )
+			sb.append( "replicate /tomcat-vm as vm" + i + "\n" );
+
+		sb.append( "deploy and start all /tomcat-vm\n" );
+		for( int i=1; i<4; i++ )
+			sb.append( "deploy and start all /vm" + i + "\n" );
+
+		sb.append( "deploy and start all /mysql-vm\n" );
+		File f = this.folder.newFile();
+		Utils.writeStringInto( sb.toString(), f );
+
+		// State changes are executed concurrently with the real managers
+		ParallelRunner parallelRunner = new ParallelRunner( 4 );
+		CommandsExecutor executor = new CommandsExecutor( this.manager, this.app, f, null, null, parallelRunner );
+		executor.execute();
+
+		// After
+		ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( this.app.getName());
+		Assert.assertEquals( 5, this.app.getRootInstances().size());
+		for( Instance rootInstance : this.app.getRootInstances()) {
+			String path = InstanceHelpers.computeInstancePath( rootInstance );
+			Assert.assertEquals( path, InstanceStatus.DEPLOYING, rootInstance.getStatus());
+			Assert.assertEquals( path, rootInstance.data.get( Instance.MACHINE_ID ));
+			Assert.assertEquals( path, Integer.valueOf( 1 ), targetResolver.count( rootInstance ));
+
+			// The model, and a state change for every instance under the root
+			List<Message> messages = ma.getScopedInstanceToAwaitingMessages().get( rootInstance );
+			Assert.assertNotNull( path, messages );
+
+			int modelCount = 0, stateChangesCount = 0;
+			for( Message msg : messages ) {
+				if( msg instanceof MsgCmdSetScopedInstance )
+					modelCount ++;
+				else if( msg instanceof MsgCmdChangeInstanceState )
+					stateChangesCount ++;
+			}
+
+			Assert.assertEquals( path, 1, modelCount );
+			Assert.assertEquals( path, InstanceHelpers.buildHierarchicalList( rootInstance ).size() - 1, stateChangesCount );
+		}
+
+		// No save was lost
+		InstancesLoadResult ilr = ConfigurationUtils.restoreInstances( ma );
+		Assert.assertEquals( 0, ilr.getLoadErrors().size());
+		Assert.assertEquals( 5, ilr.getRootInstances().size());
+		for( Instance rootInstance : ilr.getRootInstances()) {
+			String path = InstanceHelpers.computeInstancePath( rootInstance );
+			Assert.assertEquals( path, rootInstance.data.get( Instance.MACHINE_ID ));
+		}
+	}
+
+
 	@Test( expected = CommandException.class )
 	public void testExecutionFailure1() throws Exception {
 
@@ -273,4 +344,59 @@ public class CommandsExecutorTest {
 		CommandsExecutor executor = new CommandsExecutor( this.manager, null, new File( "whatever" ));
 		Assert.assertEquals( ExecuteCommandExecution.class, executor.findExecutor( instr ).getClass());
 	}
+
+
+	@Test
+	public void testFindStages() {
+
+		String content =
+				"change status of /tomcat-vm to DEPLOYED_STARTED\n"
+				+ "change status of /mysql-vm to DEPLOYED_STARTED\n"
+				+ "deploy and start all /mysql-vm/mysql-server\n"
+				+ "create vm as vm-new\n"
+				+ "stop all /tomcat-vm/tomcat-server\n"
+				+ "stop all /tomcat-vm/tomcat-server/hello-world\n"
+				+ "undeploy all instances of vm";
+
+		CommandsParser parser = new CommandsParser( this.app, content );
+		Assert.assertEquals( 0, parser.getParsingErrors().size());
+
+		CommandsExecutor executor = new CommandsExecutor( this.manager, this.app, new File( "whatever" ));
+		List<List<AbstractCommandExecution>> stages = executor.findStages( parser.getInstructions());
+
+		// The two VMs are independent, but the MySQL server is under one of them
+		Assert.assertEquals( 6, stages.size());
+		Assert.assertEquals( 2, stages.get( 0 ).size());
+		Assert.assertEquals( 1, stages.get( 1 ).size());
+
+		// Creations are executed alone
+		Assert.assertEquals( 1, stages.get( 2 ).size());
+		Assert.assertEquals( CreateInstanceCommandExecution.class, stages.get( 2 ).get( 0 ).getClass());
+
+		// Overlapping trees
+		Assert.assertEquals( 1, stages.get( 3 ).size());
+		Assert.assertEquals( 1, stages.get( 4 ).size());
+
+		// Bulk instructions on components are executed alone
+		Assert.assertEquals( 1, stages.get( 5 ).size());
+	}
+
+
+	@Test
+	public void testOverlaps() {
+
+		List<String> paths = new ArrayList<> ();
+		Assert.assertFalse( CommandsExecutor.overlaps( "/vm", paths ));
+
+		paths.add( "/vm/server" );
+		paths.add( "/vm2" );
+		Assert.assertTrue( CommandsExecutor.overlaps( "/vm", paths ));
+		Assert.assertTrue( CommandsExecutor.overlaps( "/vm/server", paths ));
+		Assert.assertTrue( CommandsExecutor.overlaps( "/vm/server/app", paths ));
+		Assert.assertTrue( CommandsExecutor.overlaps( "/vm2/server", paths ));
+
+		Assert.assertFalse( CommandsExecutor.overlaps( "/vm3", paths ));
+		Assert.assertFalse( CommandsExecutor.overlaps( "/vm/server2", paths ));
+		Assert.assertFalse( CommandsExecutor.overlaps( "/vm/serv", paths ));
+	}
 }
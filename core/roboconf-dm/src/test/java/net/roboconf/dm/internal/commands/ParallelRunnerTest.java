@@ -0,0 +1,180 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.dm.internal.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.roboconf.dm.management.exceptions.CommandException;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class ParallelRunnerTest {
+
+	@Test
+	public void testParallelism() {
+
+		ParallelRunner runner = new ParallelRunner( 4 );
+		Assert.assertEquals( 4, runner.getParallelism());
+
+		runner.setParallelism( 10 );
+		Assert.assertEquals( 10, runner.getParallelism());
+
+		runner.setParallelism( 2 );
+		Assert.assertEquals( 2, runner.getParallelism());
+
+		runner.setParallelism( 0 );
+		Assert.assertEquals( 1, runner.getParallelism());
+
+		runner.setParallelism( -5 );
+		Assert.assertEquals( 1, runner.getParallelism());
+	}
+
+
+	@Test
+	public void testRunAll_sequential_stopsAtFirstError() throws Exception {
+
+		AtomicInteger counter = new AtomicInteger();
+		List<TestExecution> executions = Arrays.asList(
+				new TestExecution( counter, false ),
+				new TestExecution( counter, true ),
+				new TestExecution( counter, false ));
+
+		ParallelRunner runner = new ParallelRunner( 1 );
+		try {
+			runner.runAll( executions );
+			Assert.fail( "An exception was expected." );
+
+		} catch( CommandException e ) {
+			Assert.assertSame( executions.get( 1 ).error, e );
+		}
+
+		Assert.assertEquals( 2, counter.get());
+	}
+
+
+	@Test
+	public void testRunAll_parallel_allAreRun() throws Exception {
+
+		AtomicInteger counter = new AtomicInteger();
+		List<TestExecution> executions = new ArrayList<> ();
+		for( int i=0; i<50; i++ )
+			executions.add( new TestExecution( counter, i % 7 == 3 ));
+
+		ParallelRunner runner = new ParallelRunner( 5 );
+		try {
+			runner.runAll( executions );
+			Assert.fail( "An exception was expected." );
+
+		} catch( CommandException e ) {
+			// The error of the first failing execution is reported
+			Assert.assertSame( executions.get( 3 ).error, e );
+		}
+
+		Assert.assertEquals( 50, counter.get());
+	}
+
+
+	@Test
+	public void testRunAll_parallel_noError() throws Exception {
+
+		AtomicInteger counter = new AtomicInteger();
+		List<TestExecution> executions = new ArrayList<> ();
+		for( int i=0; i<20; i++ )
+			executions.add( new TestExecution( counter, false ));
+
+		new ParallelRunner( 3 ).runAll( executions );
+		Assert.assertEquals( 20, counter.get());
+	}
+
+
+	@Test( timeout = 10000 )
+	public void testRunAll_nested() throws Exception {
+
+		final AtomicInteger counter = new AtomicInteger();
+		final ParallelRunner runner = new ParallelRunner( 2 );
+		List<AbstractCommandExecution> executions = new ArrayList<> ();
+		for( int i=0; i<4; i++ ) {
+			executions.add( new AbstractCommandExecution() {
+				@Override
+				void execute() throws CommandException {
+
+					List<TestExecution> nested = new ArrayList<> ();
+					for( int j=0; j<4; j++ )
+						nested.add( new TestExecution( counter, false ));
+
+					runner.runAll( nested );
+				}
+			});
+		}
+
+		runner.runAll( executions );
+		Assert.assertEquals( 16, counter.get());
+	}
+
+
+	/**
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class TestExecution extends AbstractCommandExecution {
+
+		final CommandException error;
+		private final AtomicInteger counter;
+
+
+		/**
+		 * Constructor.
+		 * @param counter
+		 * @param fail
+		 */
+		TestExecution( AtomicInteger counter, boolean fail ) {
+			this.counter = counter;
+			this.error = fail ? new CommandException( "failure" ) : null;
+		}
+
+
+		@Override
+		void execute() throws CommandException {
+
+			try {
+				Thread.sleep( 5 );
+
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+
+			this.counter.incrementAndGet();
+			if( this.error != null )
+				throw this.error;
+		}
+	}
+}
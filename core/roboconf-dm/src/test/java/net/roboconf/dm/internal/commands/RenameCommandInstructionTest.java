@@ -31,10 +31,14 @@ import net.roboconf.core.commands.RenameCommandInstruction;
 import net.roboconf.core.internal.tests.TestApplication;
 import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IApplicationMngr;
 import net.roboconf.dm.management.exceptions.CommandException;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -42,11 +46,20 @@ import org.junit.Test;
 public class RenameCommandInstructionTest {
 
 	private TestApplication app;
+	private ManagedApplication ma;
+	private Manager manager;
 
 
 	@Before
 	public void initialize() throws Exception {
 		this.app = new TestApplication();
+		this.ma = new ManagedApplication( this.app );
+
+		IApplicationMngr applicationMngr = Mockito.mock( IApplicationMngr.class );
+		Mockito.when( applicationMngr.findManagedApplicationByName( this.app.getName())).thenReturn( this.ma );
+
+		this.manager = Mockito.mock( Manager.class );
+		Mockito.when( this.manager.applicationMngr()).thenReturn( applicationMngr );
 	}
 
 
@@ -57,8 +70,14 @@ public class RenameCommandInstructionTest {
 		RenameCommandExecution executor = buildExecutor( "rename " + instancePath + " as toto" );
 
 		Assert.assertEquals( "tomcat-vm", this.app.getTomcatVm().getName());
+		Assert.assertNotNull( this.ma.getInstancesSnapshot().findInstanceByPath( "/tomcat-vm" ));
+
 		executor.execute();
 		Assert.assertEquals( "toto", this.app.getTomcatVm().getName());
+
+		// Snapshots are rebuilt
+		Assert.assertNull( this.ma.getInstancesSnapshot().findInstanceByPath( "/tomcat-vm" ));
+		Assert.assertNotNull( this.ma.getInstancesSnapshot().findInstanceByPath( "/toto" ));
 	}
 
 
@@ -95,6 +114,6 @@ public class RenameCommandInstructionTest {
 		Assert.assertEquals( RenameCommandInstruction.class, parser.getInstructions().get( 0 ).getClass());
 
 		RenameCommandInstruction instr = (RenameCommandInstruction) parser.getInstructions().get( 0 );
-		return new RenameCommandExecution( instr );
+		return new RenameCommandExecution( instr, this.manager );
 	}
 }
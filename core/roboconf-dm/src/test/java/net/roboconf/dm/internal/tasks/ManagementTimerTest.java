@@ -0,0 +1,220 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.internal.tasks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.roboconf.dm.internal.api.impl.MetricsMngrImpl;
+import net.roboconf.dm.management.api.IMetricsMngr;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class ManagementTimerTest {
+
+	private MetricsMngrImpl metricsMngr;
+	private ManagementTimer timer;
+
+
+	@Before
+	public void createTimer() {
+		this.metricsMngr = new MetricsMngrImpl();
+		this.timer = new ManagementTimer( this.metricsMngr );
+	}
+
+
+	@After
+	public void cancelTimer() {
+		this.timer.cancel();
+	}
+
+
+	@Test
+	public void testSlowTaskDoesNotDelayTheOthers() throws Exception {
+
+		// A slow task that checks stored messages...
+		final AtomicInteger slowCount = new AtomicInteger();
+		this.timer.schedule( "stored-messages", new Runnable() {
+			@Override
+			public void run() {
+				slowCount.incrementAndGet();
+				try {
+					Thread.sleep( 1000 );
+
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, 10 );
+
+		// ... and a fast one that checks heart beats
+		final AtomicInteger fastCount = new AtomicInteger();
+		this.timer.schedule( "heartbeats", new Runnable() {
+			@Override
+			public void run() {
+				fastCount.incrementAndGet();
+			}
+		}, 20 );
+
+		Thread.sleep( 500 );
+
+		// The slow task is still running its first execution.
+		// With a single thread, the fast one would have run at most once.
+		Assert.assertEquals( 1, slowCount.get());
+		Assert.assertTrue( "Count was " + fastCount.get(), fastCount.get() > 10 );
+
+		IMetricsMngr.HistogramSnapshot snapshot = this.metricsMngr.getHistograms().get( IMetricsMngr.TASKS_EXECUTION + "heartbeats" );
+		Assert.assertNotNull( snapshot );
+		Assert.assertEquals( fastCount.get(), snapshot.getCount(), 1 );
+	}
+
+
+	@Test
+	public void testOverrunsAreDetected() throws Exception {
+
+		final AtomicInteger count = new AtomicInteger();
+		this.timer.schedule( "slow", new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep( 60 );
+					count.incrementAndGet();
+
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, 20 );
+
+		Thread.sleep( 300 );
+		Assert.assertTrue( count.get() > 1 );
+
+		Long overruns = this.metricsMngr.getCounters().get( IMetricsMngr.TASKS_OVERRUNS + "slow" );
+		Assert.assertNotNull( overruns );
+		Assert.assertTrue( overruns > 1 );
+	}
+
+
+	@Test
+	public void testFailingTaskKeepsRunning() throws Exception {
+
+		final AtomicInteger count = new AtomicInteger();
+		this.timer.schedule( "failing", new Runnable() {
+			@Override
+			public void run() {
+				count.incrementAndGet();
+				throw new RuntimeException( "for test" );
+			}
+		}, 10 );
+
+		Thread.sleep( 200 );
+		Assert.assertTrue( count.get() > 2 );
+
+		Long failures = this.metricsMngr.getCounters().get( IMetricsMngr.TASKS_FAILURES + "failing" );
+		Assert.assertNotNull( failures );
+		Assert.assertTrue( failures > 2 );
+	}
+
+
+	@Test
+	public void testReschedule() throws Exception {
+
+		final AtomicInteger count = new AtomicInteger();
+		this.timer.schedule( "task", new Runnable() {
+			@Override
+			public void run() {
+				count.incrementAndGet();
+			}
+		}, 100000 );
+
+		Thread.sleep( 100 );
+		Assert.assertEquals( 1, count.get());
+		Assert.assertEquals( Long.valueOf( 100000 ), this.timer.getPeriod( "task" ));
+
+		this.timer.reschedule( "task", 10 );
+		Assert.assertEquals( Long.valueOf( 10 ), this.timer.getPeriod( "task" ));
+		Thread.sleep( 200 );
+		Assert.assertTrue( count.get() > 2 );
+
+		// Unknown tasks are ignored
+		this.timer.reschedule( "inexisting", 10 );
+		Assert.assertNull( this.timer.getPeriod( "inexisting" ));
+	}
+
+
+	@Test
+	public void testCancel() throws Exception {
+
+		final AtomicInteger count = new AtomicInteger();
+		this.timer.schedule( "task", new Runnable() {
+			@Override
+			public void run() {
+				count.incrementAndGet();
+			}
+		}, 10 );
+
+		Thread.sleep( 100 );
+		this.timer.cancel();
+		Assert.assertNull( this.timer.getPeriod( "task" ));
+
+		Thread.sleep( 50 );
+		int value = count.get();
+		Thread.sleep( 100 );
+		Assert.assertEquals( value, count.get());
+	}
+
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testScheduleTwice() {
+
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				// nothing
+			}
+		};
+
+		this.timer.schedule( "task", task, 1000 );
+		this.timer.schedule( "task", task, 1000 );
+	}
+
+
+	@Test( expected = IllegalStateException.class )
+	public void testScheduleAfterCancel() {
+
+		this.timer.cancel();
+		this.timer.schedule( "task", new Runnable() {
+			@Override
+			public void run() {
+				// nothing
+			}
+		}, 1000 );
+	}
+}
@@ -25,8 +25,8 @@
 
 package net.roboconf.dm.internal.test;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.helpers.InstanceHelpers;
@@ -40,8 +40,9 @@ import net.roboconf.target.api.TargetHandlerParameters;
  */
 public class TestTargetResolver extends TargetHandlerResolverImpl {
 
-	public final Map<String,Boolean> instancePathToRunningStatus = new HashMap<> ();
-	public final Map<String,Integer> instancePathToRequestsCount = new HashMap<> ();
+	// Machines may be created concurrently
+	public final Map<String,Boolean> instancePathToRunningStatus = new ConcurrentHashMap<> ();
+	public final Map<String,Integer> instancePathToRequestsCount = new ConcurrentHashMap<> ();
 
 
 	@Override
@@ -60,11 +61,14 @@ public class TestTargetResolver extends TargetHandlerResolverImpl {
 
 				String scopedInstancePath = parameters.getScopedInstancePath();
 				TestTargetResolver.this.instancePathToRunningStatus.put( scopedInstancePath, Boolean.TRUE );
-				Integer cpt = TestTargetResolver.this.instancePathToRequestsCount.get( scopedInstancePath );
-				if( cpt == null )
-					cpt = 0;
+				synchronized( TestTargetResolver.this.instancePathToRequestsCount ) {
+					Integer cpt = TestTargetResolver.this.instancePathToRequestsCount.get( scopedInstancePath );
+					if( cpt == null )
+						cpt = 0;
+
+					TestTargetResolver.this.instancePathToRequestsCount.put( scopedInstancePath, ++ cpt );
+				}
 
-				TestTargetResolver.this.instancePathToRequestsCount.put( scopedInstancePath, ++ cpt );
 				return scopedInstancePath;
 			}
 
@@ -0,0 +1,276 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.roboconf.dm.management;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.beans.Instance.InstanceStatus;
+import net.roboconf.core.model.helpers.InstanceHelpers;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class InstancesSnapshotTest {
+
+	private TestApplication app;
+	private ManagedApplication ma;
+
+
+	@Before
+	public void initialize() {
+		this.app = new TestApplication();
+		this.ma = new ManagedApplication( this.app );
+	}
+
+
+	@Test
+	public void testBuild() {
+
+		InstancesSnapshot snapshot = InstancesSnapshot.build( this.app, 5 );
+		Assert.assertEquals( 5, snapshot.getVersion());
+
+		List<Instance> all = InstanceHelpers.getAllInstances( this.app );
+		List<Instance> copies = snapshot.getAllInstances();
+		Assert.assertEquals( all.size(), copies.size());
+		for( int i=0; i<all.size(); i++ ) {
+			Assert.assertNotSame( all.get( i ), copies.get( i ));
+			Assert.assertEquals( InstanceHelpers.computeInstancePath( all.get( i )), InstanceHelpers.computeInstancePath( copies.get( i )));
+			Assert.assertEquals( all.get( i ).getStatus(), copies.get( i ).getStatus());
+			Assert.assertEquals( all.get( i ).getComponent(), copies.get( i ).getComponent());
+			Assert.assertEquals( 0, copies.get( i ).getChildren().size());
+		}
+
+		Assert.assertEquals( this.app.getRootInstances().size(), snapshot.getRootInstances().size());
+		Assert.assertNull( snapshot.findInstanceByPath( "/inexisting" ));
+
+		String tomcatVmPath = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+		Assert.assertEquals( 1, snapshot.findChildren( tomcatVmPath, false ).size());
+		Assert.assertEquals( 2, snapshot.findChildren( tomcatVmPath, true ).size());
+		Assert.assertEquals(
+				InstanceHelpers.computeInstancePath( this.app.getWar()),
+				InstanceHelpers.computeInstancePath( snapshot.findChildren( tomcatVmPath, true ).get( 1 )));
+
+		Assert.assertEquals( 0, snapshot.findChildren( "/inexisting", true ).size());
+	}
+
+
+	@Test
+	public void testCopiesAreDetached() {
+
+		this.app.getTomcatVm().data.put( "key", "value" );
+		InstancesSnapshot snapshot = InstancesSnapshot.build( this.app, 1 );
+		String path = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+
+		this.app.getTomcatVm().setStatus( InstanceStatus.PROBLEM );
+		this.app.getTomcatVm().data.put( "key", "other value" );
+
+		Instance copy = snapshot.findInstanceByPath( path );
+		Assert.assertEquals( InstanceStatus.NOT_DEPLOYED, copy.getStatus());
+		Assert.assertEquals( "value", copy.data.get( "key" ));
+	}
+
+
+	@Test
+	public void testSnapshotsFromTheManagedApplication() {
+
+		InstancesSnapshot snapshot1 = this.ma.getInstancesSnapshot();
+		Assert.assertSame( snapshot1, this.ma.getInstancesSnapshot());
+		Assert.assertEquals( snapshot1.getVersion(), this.ma.getInstancesVersion());
+
+		// A state change => only the changed instance is copied again
+		String tomcatVmPath = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+		String mysqlVmPath = InstanceHelpers.computeInstancePath( this.app.getMySqlVm());
+
+		this.ma.acknowledgeHeartBeat( this.app.getTomcatVm());
+		InstancesSnapshot snapshot2 = this.ma.getInstancesSnapshot();
+		Assert.assertNotSame( snapshot1, snapshot2 );
+		Assert.assertTrue( snapshot2.getVersion() > snapshot1.getVersion());
+
+		Assert.assertEquals( InstanceStatus.NOT_DEPLOYED, snapshot1.findInstanceByPath( tomcatVmPath ).getStatus());
+		Assert.assertEquals( InstanceStatus.DEPLOYED_STARTED, snapshot2.findInstanceByPath( tomcatVmPath ).getStatus());
+		Assert.assertSame( snapshot1.findInstanceByPath( mysqlVmPath ), snapshot2.findInstanceByPath( mysqlVmPath ));
+
+		// Children copies still resolve their paths
+		String tomcatPath = InstanceHelpers.computeInstancePath( this.app.getTomcat());
+		Assert.assertEquals( tomcatPath, InstanceHelpers.computeInstancePath( snapshot2.findInstanceByPath( tomcatPath )));
+
+		// A structure change => everything is copied again
+		Instance newVm = new Instance( "new-vm" ).component( this.app.getMySqlVm().getComponent());
+		this.app.getRootInstances().add( newVm );
+		this.ma.instancesStructureChanged();
+
+		InstancesSnapshot snapshot3 = this.ma.getInstancesSnapshot();
+		Assert.assertNotNull( snapshot3.findInstanceByPath( "/new-vm" ));
+		Assert.assertNull( snapshot2.findInstanceByPath( "/new-vm" ));
+		Assert.assertNotSame( snapshot2.findInstanceByPath( mysqlVmPath ), snapshot3.findInstanceByPath( mysqlVmPath ));
+	}
+
+
+	@Test
+	public void testSortedPaths() {
+
+		InstancesSnapshot snapshot1 = this.ma.getInstancesSnapshot();
+		List<String> sortedPaths = snapshot1.getSortedPaths();
+		Assert.assertSame( sortedPaths, snapshot1.getSortedPaths());
+
+		List<String> expected = new ArrayList<> ();
+		for( Instance inst : InstanceHelpers.getAllInstances( this.app ))
+			expected.add( InstanceHelpers.computeInstancePath( inst ));
+
+		Collections.sort( expected );
+		Assert.assertEquals( expected, sortedPaths );
+
+		// A state change => the sorted paths are shared
+		this.ma.acknowledgeHeartBeat( this.app.getTomcatVm());
+		InstancesSnapshot snapshot2 = this.ma.getInstancesSnapshot();
+		Assert.assertNotSame( snapshot1, snapshot2 );
+		Assert.assertSame( sortedPaths, snapshot2.getSortedPaths());
+
+		// A structure change => they are computed again
+		this.app.getRootInstances().add( new Instance( "a-vm" ).component( this.app.getMySqlVm().getComponent()));
+		this.ma.instancesStructureChanged();
+
+		List<String> newSortedPaths = this.ma.getInstancesSnapshot().getSortedPaths();
+		Assert.assertEquals( sortedPaths.size() + 1, newSortedPaths.size());
+		Assert.assertEquals( "/a-vm", newSortedPaths.get( 0 ));
+	}
+
+
+	@Test
+	public void testUpdateWithUnknownInstanceRebuildsEverything() {
+
+		InstancesSnapshot snapshot1 = InstancesSnapshot.build( this.app, 1 );
+		this.app.getRootInstances().add( new Instance( "new-vm" ).component( this.app.getMySqlVm().getComponent()));
+
+		Map<String,Instance> changedInstances = new HashMap<> ();
+		changedInstances.put( "/new-vm", this.app.getRootInstances().iterator().next());
+		InstancesSnapshot snapshot2 = snapshot1.update( this.app, changedInstances, 2 );
+		Assert.assertNotNull( snapshot2.findInstanceByPath( "/new-vm" ));
+		Assert.assertEquals( snapshot1.getAllInstances().size() + 1, snapshot2.getAllInstances().size());
+	}
+
+
+	@Test
+	public void testConcurrentReadsOnALargeApplication() throws Exception {
+
+		// 10,000 instances: 1,000 VMs with 9 children each
+		this.app.getRootInstances().clear();
+		final List<Instance> vms = new ArrayList<> ();
+		for( int i=0; i<1000; i++ ) {
+			Instance vm = new Instance( "vm-" + i ).component( this.app.getMySqlVm().getComponent()).status( InstanceStatus.DEPLOYED_STARTED );
+			for( int j=0; j<9; j++ )
+				InstanceHelpers.insertChild( vm, new Instance( "child-" + j ).component( this.app.getMySql().getComponent()));
+
+			this.app.getRootInstances().add( vm );
+			vms.add( vm );
+		}
+
+		this.ma.instancesStructureChanged();
+		final int total = InstanceHelpers.getAllInstances( this.app ).size();
+		Assert.assertEquals( 10000, total );
+
+		// Heart beats and status changes flow...
+		final AtomicBoolean running = new AtomicBoolean( true );
+		final AtomicReference<Throwable> error = new AtomicReference<> ();
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				int i = 0;
+				while( running.get()) {
+					Instance vm = vms.get( i ++ % vms.size());
+					ManagedApplication ma = InstancesSnapshotTest.this.ma;
+					ma.acknowledgeHeartBeat( vm );
+
+					Instance child = vm.getChildren().iterator().next();
+					child.setStatus( i % 2 == 0 ? InstanceStatus.DEPLOYED_STARTED : InstanceStatus.DEPLOYED_STOPPED );
+					ma.instanceChanged( child );
+				}
+			}
+		};
+
+		// ... while readers list instances
+		final AtomicInteger reads = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch( 4 );
+		List<Thread> readers = new ArrayList<> ();
+		for( int r=0; r<4; r++ ) {
+			readers.add( new Thread() {
+				@Override
+				public void run() {
+					try {
+						long previousVersion = -1;
+						for( int i=0; i<200; i++ ) {
+							InstancesSnapshot snapshot = InstancesSnapshotTest.this.ma.getInstancesSnapshot();
+							Assert.assertTrue( snapshot.getVersion() >= previousVersion );
+							Assert.assertEquals( total, snapshot.getAllInstances().size());
+							Assert.assertEquals( 9, snapshot.findChildren( "/vm-" + i, false ).size());
+							previousVersion = snapshot.getVersion();
+							reads.incrementAndGet();
+						}
+
+					} catch( Throwable t ) {
+						error.set( t );
+
+					} finally {
+						latch.countDown();
+					}
+				}
+			});
+		}
+
+		writer.start();
+		for( Thread reader : readers )
+			reader.start();
+
+		Assert.assertTrue( latch.await( 60, TimeUnit.SECONDS ));
+		running.set( false );
+		writer.join();
+
+		Assert.assertNull( String.valueOf( error.get()), error.get());
+		Assert.assertEquals( 800, reads.get());
+
+		// Once mutations stopped, the snapshot reflects the model
+		InstancesSnapshot snapshot = this.ma.getInstancesSnapshot();
+		Assert.assertEquals( this.ma.getInstancesVersion(), snapshot.getVersion());
+		for( Instance inst : InstanceHelpers.getAllInstances( this.app )) {
+			Instance copy = snapshot.findInstanceByPath( InstanceHelpers.computeInstancePath( inst ));
+			Assert.assertEquals( inst.getStatus(), copy.getStatus());
+		}
+	}
+}
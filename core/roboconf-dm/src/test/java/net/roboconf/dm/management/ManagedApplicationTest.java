@@ -83,6 +83,23 @@ public class ManagedApplicationTest {
 	}
 
 
+	@Test
+	public void testInstancesVersions() {
+
+		Assert.assertEquals( 0, this.ma.getInstancesVersion());
+		Assert.assertEquals( 0, this.ma.getInstancesStructureVersion());
+
+		// A state change does not change the structure
+		this.ma.instanceChanged( this.app.getTomcatVm());
+		Assert.assertEquals( 1, this.ma.getInstancesVersion());
+		Assert.assertEquals( 0, this.ma.getInstancesStructureVersion());
+
+		this.ma.instancesStructureChanged();
+		Assert.assertEquals( 2, this.ma.getInstancesVersion());
+		Assert.assertEquals( 1, this.ma.getInstancesStructureVersion());
+	}
+
+
 	@Test
 	public void testStoreAwaitingMessage() {
 
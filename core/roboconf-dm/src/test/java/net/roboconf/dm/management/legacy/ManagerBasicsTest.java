@@ -38,7 +38,6 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -57,6 +56,7 @@ import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.internal.environment.messaging.DmMessageProcessor;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.internal.utils.ConfigurationUtils;
@@ -122,7 +122,7 @@ public class ManagerBasicsTest {
 		this.msgClient.clearMessages();
 
 		// Disable the messages timer for predictability
-		TestUtils.getInternalField( this.manager, "timer", Timer.class ).cancel();
+		TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class ).cancel();
 	}
 
 
@@ -140,11 +140,11 @@ public class ManagerBasicsTest {
 	@Test
 	public void testStop() throws Exception {
 
-		Timer timer = TestUtils.getInternalField( this.manager, "timer", Timer.class );
+		ManagementTimer timer = TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class );
 		Assert.assertNotNull( timer );
 		this.manager.stop();
 
-		timer = TestUtils.getInternalField( this.manager, "timer", Timer.class );
+		timer = TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class );
 		Assert.assertNull( timer );
 
 		this.manager.stop();
@@ -152,6 +152,27 @@ public class ManagerBasicsTest {
 	}
 
 
+	@Test
+	public void testPeriodsCanBeChanged() throws Exception {
+
+		// The timer was cancelled, create a new one
+		this.manager.stop();
+		this.manager.setHeartbeatsPeriod( 1000 );
+		this.manager.setStoredMessagesPeriod( -5 );
+		this.manager.start();
+
+		ManagementTimer timer = TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class );
+		Assert.assertEquals( Long.valueOf( 1000 ), timer.getPeriod( "heartbeats" ));
+		Assert.assertEquals( Long.valueOf( 6000 ), timer.getPeriod( "stored-messages" ));
+		Assert.assertEquals( Long.valueOf( 6000 ), timer.getPeriod( "targets-configuration" ));
+
+		// Changes are applied at runtime
+		this.manager.setTargetsConfigurationPeriod( 2000 );
+		Assert.assertEquals( Long.valueOf( 2000 ), timer.getPeriod( "targets-configuration" ));
+		Assert.assertEquals( Long.valueOf( 1000 ), timer.getPeriod( "heartbeats" ));
+	}
+
+
 	@Test
 	public void testStop_invalidConfiguration() throws Exception {
 
@@ -159,11 +180,11 @@ public class ManagerBasicsTest {
 		this.manager.configurationMngr().setWorkingDirectory( this.folder.newFolder());
 		this.managerWrapper = new TestManagerWrapper( this.manager );
 
-		Timer timer = TestUtils.getInternalField( this.manager, "timer", Timer.class );
+		ManagementTimer timer = TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class );
 		Assert.assertNull( timer );
 
 		this.manager.stop();
-		timer = TestUtils.getInternalField( this.manager, "timer", Timer.class );
+		timer = TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class );
 		Assert.assertNull( timer );
 	}
 
@@ -174,11 +195,11 @@ public class ManagerBasicsTest {
 		this.msgClient.failSubscribing.set( true );
 		this.msgClient.failClosingConnection.set( true );
 
-		Timer timer = TestUtils.getInternalField( this.manager, "timer", Timer.class );
+		ManagementTimer timer = TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class );
 		Assert.assertNotNull( timer );
 
 		this.manager.stop();
-		timer = TestUtils.getInternalField( this.manager, "timer", Timer.class );
+		timer = TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class );
 		Assert.assertNull( timer );
 	}
 
@@ -29,7 +29,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -46,6 +45,7 @@ import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.management.ManagedApplication;
@@ -99,7 +99,7 @@ public class ManagerLifeCycleTest {
 		this.msgClient.clearMessages();
 
 		// Disable the messages timer for predictability
-		TestUtils.getInternalField( this.manager, "timer", Timer.class ).cancel();
+		TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class ).cancel();
 
 		// Create an application all the tests can use
 		this.app = new TestApplication();
@@ -27,7 +27,6 @@ package net.roboconf.messaging.api.extensions;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -70,6 +69,11 @@ public abstract class AbstractRoutingClient<T> implements IMessagingClient {
 	 */
 	public static abstract class RoutingContext {
 		public final Map<String,Set<MessagingContext>> subscriptions = new ConcurrentHashMap<> ();
+
+		// Reverse index: publishing a message does not iterate over all the subscribers.
+		// Both maps are modified together, while holding this map's monitor.
+		// Reading them does not require any lock.
+		public final Map<MessagingContext,Set<String>> subscribers = new ConcurrentHashMap<> ();
 	}
 
 
@@ -118,7 +122,13 @@ public abstract class AbstractRoutingClient<T> implements IMessagingClient {
 
 		this.logger.fine( getOwnerId() + " is deleting server artifacts for " + application );
 		getStaticContextToObject().remove( this.ownerId );
-		this.routingContext.subscriptions.remove( this.ownerId );
+		synchronized( this.routingContext.subscribers ) {
+			Set<MessagingContext> subscriptions = this.routingContext.subscriptions.remove( this.ownerId );
+			if( subscriptions != null ) {
+				for( MessagingContext ctx : subscriptions )
+					unindex( this.ownerId, ctx );
+			}
+		}
 	}
 
 
@@ -151,13 +161,13 @@ public abstract class AbstractRoutingClient<T> implements IMessagingClient {
 			return;
 		}
 
-		for( Map.Entry<String,Set<MessagingContext>> entry : this.routingContext.subscriptions.entrySet()) {
-			if( ! entry.getValue().contains( ctx ))
-				continue;
-
-			T obj = getStaticContextToObject().get( entry.getKey());
-			if( obj != null )
-				process( obj, msg );
+		Set<String> subscribers = ctx == null ? null : this.routingContext.subscribers.get( ctx );
+		if( subscribers != null ) {
+			for( String id : subscribers ) {
+				T obj = getStaticContextToObject().get( id );
+				if( obj != null )
+					process( obj, msg );
+			}
 		}
 	}
 
@@ -190,9 +200,16 @@ public abstract class AbstractRoutingClient<T> implements IMessagingClient {
 			if( obj != null )
 				getStaticContextToObject().put( newOwnerId, obj );
 
-			Set<MessagingContext> subscriptions = this.routingContext.subscriptions.remove( oldOwnerId );
-			if( subscriptions != null )
-				this.routingContext.subscriptions.put( newOwnerId, subscriptions );
+			synchronized( this.routingContext.subscribers ) {
+				Set<MessagingContext> subscriptions = this.routingContext.subscriptions.remove( oldOwnerId );
+				if( subscriptions != null ) {
+					this.routingContext.subscriptions.put( newOwnerId, subscriptions );
+					for( MessagingContext ctx : subscriptions ) {
+						unindex( oldOwnerId, ctx );
+						index( newOwnerId, ctx );
+					}
+				}
+			}
 		}
 	}
 
@@ -267,13 +284,17 @@ public abstract class AbstractRoutingClient<T> implements IMessagingClient {
 		if( ! canProceed())
 			return;
 
-		Set<MessagingContext> sub = this.routingContext.subscriptions.get( id );
-		if( sub == null ) {
-			sub = new HashSet<> ();
-			this.routingContext.subscriptions.put( id, sub );
-		}
+		// Subscriptions and their reverse index are updated together
+		synchronized( this.routingContext.subscribers ) {
+			Set<MessagingContext> sub = this.routingContext.subscriptions.get( id );
+			if( sub == null ) {
+				sub = Collections.newSetFromMap( new ConcurrentHashMap<MessagingContext,Boolean> ());
+				this.routingContext.subscriptions.put( id, sub );
+			}
 
-		sub.add( ctx );
+			sub.add( ctx );
+			index( id, ctx );
+		}
 	}
 
 
@@ -288,11 +309,15 @@ public abstract class AbstractRoutingClient<T> implements IMessagingClient {
 		if( ! canProceed())
 			return;
 
-		Set<MessagingContext> sub = this.routingContext.subscriptions.get( id );
-		if( sub != null ) {
-			sub.remove( ctx );
-			if( sub.isEmpty())
-				this.routingContext.subscriptions.remove( id );
+		synchronized( this.routingContext.subscribers ) {
+			Set<MessagingContext> sub = this.routingContext.subscriptions.get( id );
+			if( sub != null ) {
+				if( sub.remove( ctx ))
+					unindex( id, ctx );
+
+				if( sub.isEmpty())
+					this.routingContext.subscriptions.remove( id );
+			}
 		}
 	}
 
@@ -314,6 +339,53 @@ public abstract class AbstractRoutingClient<T> implements IMessagingClient {
 	}
 
 
+	/**
+	 * Adds an ID to the reverse index.
+	 * <p>
+	 * The caller must hold the monitor of {@link RoutingContext#subscribers}.
+	 * </p>
+	 *
+	 * @param id a client ID
+	 * @param ctx a messaging context
+	 */
+	private void index( String id, MessagingContext ctx ) {
+
+		Map<MessagingContext,Set<String>> subscribers = this.routingContext.subscribers;
+		if( ctx != null ) {
+			Set<String> ids = subscribers.get( ctx );
+			if( ids == null ) {
+				ids = Collections.newSetFromMap( new ConcurrentHashMap<String,Boolean> ());
+				subscribers.put( ctx, ids );
+			}
+
+			ids.add( id );
+		}
+	}
+
+
+	/**
+	 * Removes an ID from the reverse index.
+	 * <p>
+	 * The caller must hold the monitor of {@link RoutingContext#subscribers}.
+	 * </p>
+	 *
+	 * @param id a client ID
+	 * @param ctx a messaging context
+	 */
+	private void unindex( String id, MessagingContext ctx ) {
+
+		Map<MessagingContext,Set<String>> subscribers = this.routingContext.subscribers;
+		if( ctx != null ) {
+			Set<String> ids = subscribers.get( ctx );
+			if( ids != null ) {
+				ids.remove( id );
+				if( ids.isEmpty())
+					subscribers.remove( ctx );
+			}
+		}
+	}
+
+
 	protected abstract Map<String,T> getStaticContextToObject();
 	protected abstract void process( T obj, Message message ) throws IOException;
 }
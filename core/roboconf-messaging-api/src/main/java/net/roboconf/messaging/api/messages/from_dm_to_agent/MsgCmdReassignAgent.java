@@ -0,0 +1,68 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.messaging.api.messages.from_dm_to_agent;
+
+import net.roboconf.messaging.api.messages.Message;
+
+/**
+ * A message to give a new identity to an agent that does not have a model yet.
+ * <p>
+ * Such agents run on idle machines that were created in advance (warm pools).
+ * Once reassigned, the agent works for the given application and scoped instance.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class MsgCmdReassignAgent extends Message {
+
+	private static final long serialVersionUID = -3094512218564287790L;
+	private final String applicationName, scopedInstancePath;
+
+
+	/**
+	 * Constructor.
+	 * @param applicationName the name of the application the agent will work for
+	 * @param scopedInstancePath the path of the scoped instance the agent will manage
+	 */
+	public MsgCmdReassignAgent( String applicationName, String scopedInstancePath ) {
+		this.applicationName = applicationName;
+		this.scopedInstancePath = scopedInstancePath;
+	}
+
+	/**
+	 * @return the application name
+	 */
+	public String getApplicationName() {
+		return this.applicationName;
+	}
+
+	/**
+	 * @return the scoped instance path
+	 */
+	public String getScopedInstancePath() {
+		return this.scopedInstancePath;
+	}
+}
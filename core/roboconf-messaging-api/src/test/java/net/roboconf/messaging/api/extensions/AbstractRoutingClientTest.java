@@ -26,11 +26,18 @@
 package net.roboconf.messaging.api.extensions;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import net.roboconf.messaging.api.extensions.AbstractRoutingClient.RoutingContext;
 import net.roboconf.messaging.api.extensions.MessagingContext.RecipientKind;
 import net.roboconf.messaging.api.jmx.RoboconfMessageQueue;
 import net.roboconf.messaging.api.messages.Message;
@@ -61,6 +68,65 @@ public class AbstractRoutingClientTest {
 	}
 
 
+	@Test
+	public void testSubscriptionsAndSubscribersRemainConsistent() throws Exception {
+
+		final CanProceedTest client = new CanProceedTest( false, new RoutingContext() {
+			// nothing
+		});
+
+		// The same client subscribes and unsubscribes concurrently
+		final int threadsCount = 8;
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final AtomicReference<Exception> error = new AtomicReference<> ();
+		List<Thread> threads = new ArrayList<> ();
+		for( int i=0; i<threadsCount; i++ ) {
+
+			final int index = i;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+
+					MessagingContext ctx = new MessagingContext( RecipientKind.AGENTS, null, "app" + index );
+					try {
+						start.await();
+						for( int j=0; j<500; j++ ) {
+							client.subscribe( "id", ctx );
+							client.unsubscribe( "id", ctx );
+						}
+
+						// Keep half of the subscriptions
+						if( index % 2 == 0 )
+							client.subscribe( "id", ctx );
+
+					} catch( Exception e ) {
+						error.set( e );
+					}
+				}
+			};
+
+			threads.add( thread );
+			thread.start();
+		}
+
+		start.countDown();
+		for( Thread thread : threads )
+			thread.join();
+
+		Assert.assertNull( error.get());
+
+		// Both maps must agree
+		Map<String,Set<MessagingContext>> subscriptions = client.getRoutingContext().subscriptions;
+		Map<MessagingContext,Set<String>> subscribers = client.getRoutingContext().subscribers;
+
+		Assert.assertEquals( 1, subscriptions.size());
+		Assert.assertEquals( threadsCount / 2, subscriptions.get( "id" ).size());
+		Assert.assertEquals( threadsCount / 2, subscribers.size());
+		for( MessagingContext ctx : subscriptions.get( "id" ))
+			Assert.assertEquals( Collections.singleton( "id" ), subscribers.get( ctx ));
+	}
+
+
 	/**
 	 * @author Vincent Zurczak - Linagora
 	 */
@@ -71,7 +137,16 @@ public class AbstractRoutingClientTest {
 		 * @param connectionIsRequired
 		 */
 		public CanProceedTest( boolean connectionIsRequired ) {
-			super( null, RecipientKind.DM );
+			this( connectionIsRequired, null );
+		}
+
+		/**
+		 * Constructor.
+		 * @param connectionIsRequired
+		 * @param routingContext
+		 */
+		public CanProceedTest( boolean connectionIsRequired, RoutingContext routingContext ) {
+			super( routingContext, RecipientKind.DM );
 			this.connectionIsRequired = connectionIsRequired;
 		}
 
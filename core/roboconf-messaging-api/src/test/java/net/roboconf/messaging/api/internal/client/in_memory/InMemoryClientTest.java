@@ -25,6 +25,7 @@
 
 package net.roboconf.messaging.api.internal.client.in_memory;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -196,6 +197,14 @@ public class InMemoryClientTest {
 		Assert.assertNotNull( subscribedContexts );
 		Assert.assertEquals( 1, subscribedContexts.size());
 		Assert.assertTrue( subscribedContexts.contains( ctx ));
+
+		// The reverse index was updated too
+		Map<MessagingContext,Set<String>> subscribers = client.getRoutingContext().subscribers;
+		Assert.assertEquals( Collections.singleton( ownerId_2 ), subscribers.get( ctx ));
+
+		client.deleteMessagingServerArtifacts( null );
+		Assert.assertNull( sub.get( ownerId_2 ));
+		Assert.assertNull( subscribers.get( ctx ));
 	}
 
 
@@ -57,6 +57,7 @@ import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeBinding;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeInstanceState;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeLogLevel;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdGatherLogs;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdReassignAgent;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdRemoveInstance;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdResynchronize;
 import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdSendInstances;
@@ -209,6 +210,14 @@ public class SerializationUtilsTest {
 	}
 
 
+	@Test
+	public void testMessage_reassignAgent() throws Exception {
+
+		MsgCmdReassignAgent msg = new MsgCmdReassignAgent( "app", "/root" );
+		checkBasics( msg, MsgCmdReassignAgent.class );
+	}
+
+
 	@Test
 	public void testMessage_updateProbeConfiguration() throws Exception {
 
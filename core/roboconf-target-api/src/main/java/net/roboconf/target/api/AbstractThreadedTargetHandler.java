@@ -30,8 +30,13 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import net.roboconf.core.model.beans.Instance;
@@ -49,28 +54,44 @@ import net.roboconf.core.utils.Utils;
  * A machine configurator is in charge of configuring a machine. There will be one instance per
  * VM instance. This instance will be invoked periodically until the machine configuration is completed.
  * </p>
+ * <p>
+ * Configurators are invoked by a bounded pool of worker threads, so that a slow
+ * configuration (e.g. an SSH connection that takes time) does not delay the other machines.
+ * A given configurator is never invoked concurrently. The delay between two invocations
+ * grows exponentially, from {@link #delay} to {@link #maxDelay} milliseconds. Setting
+ * {@link #maxDelay} to a value lower than {@link #delay} disables this back-off. Configurators
+ * whose configuration is made of several steps should implement {@link SteppedMachineConfigurator}:
+ * the back-off then restarts from {@link #delay} every time a new step is reached.
+ * </p>
  *
  * @author Vincent Zurczak - Linagora
  */
 public abstract class AbstractThreadedTargetHandler implements TargetHandler {
 
 	protected static final int DEFAULT_DELAY = 1000;
+	protected static final int DEFAULT_MAX_DELAY = 16000;
+	protected static final int DEFAULT_CONFIGURATION_THREADS = 5;
 
 	// Protected fields
 	protected final Logger logger = Logger.getLogger( getClass().getName());
 	protected long delay = DEFAULT_DELAY;
+	protected long maxDelay = DEFAULT_MAX_DELAY;
+	protected int configurationThreads = DEFAULT_CONFIGURATION_THREADS;
 
 	// Private fields
 	private ScheduledThreadPoolExecutor timer;
-	private final Map<String,MachineConfigurator> machineIdToConfigurators = new ConcurrentHashMap<> ();
+	private ThreadPoolExecutor workers;
+	private final Map<String,ConfigurationState> machineIdToConfigurators = new ConcurrentHashMap<> ();
 	private final CancelledMachines cancelledMachineIds = new CancelledMachines();
+	private final ConfigurationLatencies latencies = new ConfigurationLatencies();
 
 
 	/**
 	 * Starts a thread to periodically check machines under creation process.
 	 * <p>
 	 * The period is defined by {@link #delay} whose value is expressed in milliseconds
-	 * and whose default value is {@value #DEFAULT_DELAY}.
+	 * and whose default value is {@value #DEFAULT_DELAY}. Configurators are invoked by
+	 * at most {@link #configurationThreads} threads.
 	 * </p>
 	 * <p>
 	 * This method should be made invokable by iPojo.
@@ -78,22 +99,34 @@ public abstract class AbstractThreadedTargetHandler implements TargetHandler {
 	 */
 	public void start() {
 
-		this.timer = new ScheduledThreadPoolExecutor( 1 );
+		int threads = Math.max( 1, this.configurationThreads );
+		this.workers = new ThreadPoolExecutor(
+				threads, threads,
+				60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable> (),
+				new ConfigurationThreadFactory( "Roboconf - Machines Configuration " ));
+		this.workers.allowCoreThreadTimeOut( true );
+
+		this.timer = new ScheduledThreadPoolExecutor( 1, new ConfigurationThreadFactory( "Roboconf - Machines Configuration Timer " ));
 		this.timer.scheduleWithFixedDelay(
-				new CheckingRunnable( this.machineIdToConfigurators, this.cancelledMachineIds ),
+				new CheckingRunnable( this.machineIdToConfigurators, this.cancelledMachineIds, this.workers, this.latencies, this.delay, this.maxDelay ),
 				0, this.delay, TimeUnit.MILLISECONDS );
 	}
 
 
 	/**
-	 * Stops the background thread.
+	 * Stops the background threads.
 	 * <p>
 	 * This method should be made invokable by iPojo.
 	 * </p>
 	 */
 	public void stop() {
+
 		this.timer.shutdownNow();
 		this.timer = null;
+
+		this.workers.shutdownNow();
+		this.workers = null;
 	}
 
 
@@ -102,7 +135,8 @@ public abstract class AbstractThreadedTargetHandler implements TargetHandler {
 	throws TargetException {
 
 		this.logger.fine( "Configuring machine '" + machineId + "'." );
-		this.machineIdToConfigurators.put( machineId, machineConfigurator( parameters, machineId, scopedInstance ));
+		MachineConfigurator configurator = machineConfigurator( parameters, machineId, scopedInstance );
+		this.machineIdToConfigurators.put( machineId, new ConfigurationState( configurator ));
 	}
 
 
@@ -137,6 +171,61 @@ public abstract class AbstractThreadedTargetHandler implements TargetHandler {
 	}
 
 
+	/**
+	 * @return the latencies of the completed configurations (never null)
+	 */
+	public ConfigurationLatencies getConfigurationLatencies() {
+		return this.latencies;
+	}
+
+
+	/**
+	 * Computes the delay before the next invocation of a configurator.
+	 * @param delay the initial delay (in milliseconds)
+	 * @param maxDelay the maximum delay (in milliseconds, a value lower than "delay" disables the backoff)
+	 * @param attempts the number of invocations that already occurred (at least 1)
+	 * @return the delay to wait (in milliseconds), between delay and max( delay, maxDelay )
+	 */
+	static long backoffDelay( long delay, long maxDelay, int attempts ) {
+
+		long result = delay;
+		long max = Math.max( delay, maxDelay );
+		for( int i=1; i<attempts && result < max; i++ )
+			result *= 2;
+
+		return Math.min( result, max );
+	}
+
+
+	/**
+	 * A thread factory that creates named daemon threads.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class ConfigurationThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger( 0 );
+		private final String prefix;
+
+
+		/**
+		 * Constructor.
+		 * @param prefix the prefix of the threads names
+		 */
+		ConfigurationThreadFactory( String prefix ) {
+			this.prefix = prefix;
+		}
+
+
+		@Override
+		public Thread newThread( Runnable r ) {
+
+			Thread t = new Thread( r, this.prefix + this.count.incrementAndGet());
+			t.setDaemon( true );
+			return t;
+		}
+	}
+
+
 	/**
 	 * A class in charge of configuring a machine.
 	 * <p>
@@ -167,12 +256,33 @@ public abstract class AbstractThreadedTargetHandler implements TargetHandler {
 
 
 	/**
+	 * A machine configurator whose configuration is made of several steps.
+	 * <p>
+	 * The back-off between invocations is reset when the current step changes.
+	 * </p>
+	 *
+	 * @author Vincent Zurczak - Linagora
+	 */
+	public interface SteppedMachineConfigurator extends MachineConfigurator {
+
+		/**
+		 * @return the current step (compared with {@link Object#equals(Object)})
+		 */
+		Object getCurrentStep();
+	}
+
+
+	/**
+	 * A class that periodically submits the configurators to invoke to the worker threads.
 	 * @author Vincent Zurczak - Linagora
 	 */
 	static class CheckingRunnable implements Runnable {
 
 		private final CancelledMachines cancelledMachineIds;
-		private final Map<String,MachineConfigurator> machineIdToConfigurators;
+		private final Map<String,ConfigurationState> machineIdToConfigurators;
+		private final ExecutorService workers;
+		private final ConfigurationLatencies latencies;
+		private final long delay, maxDelay;
 		private final Logger logger = Logger.getLogger( getClass().getName());
 
 
@@ -180,12 +290,20 @@ public abstract class AbstractThreadedTargetHandler implements TargetHandler {
 		 * Constructor.
 		 */
 		public CheckingRunnable(
-				Map<String,MachineConfigurator> machineIdToConfigurators,
-				CancelledMachines cancelledMachineIds ) {
+				Map<String,ConfigurationState> machineIdToConfigurators,
+				CancelledMachines cancelledMachineIds,
+				ExecutorService workers,
+				ConfigurationLatencies latencies,
+				long delay,
+				long maxDelay ) {
 
 			super();
 			this.machineIdToConfigurators = machineIdToConfigurators;
 			this.cancelledMachineIds = cancelledMachineIds;
+			this.workers = workers;
+			this.latencies = latencies;
+			this.delay = delay;
+			this.maxDelay = maxDelay;
 		}
 
 
@@ -193,70 +311,272 @@ public abstract class AbstractThreadedTargetHandler implements TargetHandler {
 		public void run() {
 			this.logger.finest( "Periodic check is running." );
 
-			// Deal with cancelled configurations
+			// Deal with cancelled configurations.
+			// Configurators being invoked will be closed once their invocation completes.
 			for( String machineId : this.cancelledMachineIds.removeSnapshot()) {
-				MachineConfigurator handler = this.machineIdToConfigurators.remove( machineId );
-				if( handler != null )
-					closeConfigurator( machineId, handler );
+				ConfigurationState state = this.machineIdToConfigurators.remove( machineId );
+				if( state != null && state.cancel())
+					closeConfigurator( machineId, state.configurator, this.logger );
+			}
+
+			// Submit the configurators whose next invocation is due
+			long now = System.nanoTime();
+			for( Map.Entry<String,ConfigurationState> entry : this.machineIdToConfigurators.entrySet()) {
+
+				ConfigurationState state = entry.getValue();
+				if( now - state.nextInvocation < 0
+						|| ! state.acquire())
+					continue;
+
+				try {
+					this.workers.execute( new ConfigurationTask( entry.getKey(), state, now ));
+
+				} catch( Exception e ) {
+					// Rejected, the pool is being shut down
+					state.release();
+					this.logger.fine( "The configuration of machine '" + entry.getKey() + "' could not be submitted. " + e.getMessage());
+				}
+			}
+		}
+
+
+		/**
+		 * A task that invokes a configurator once.
+		 * @author Vincent Zurczak - Linagora
+		 */
+		private class ConfigurationTask implements Runnable {
+
+			private final String machineId;
+			private final ConfigurationState state;
+			private final long submissionTime;
+
+
+			/**
+			 * Constructor.
+			 */
+			ConfigurationTask( String machineId, ConfigurationState state, long submissionTime ) {
+				this.machineId = machineId;
+				this.state = state;
+				this.submissionTime = submissionTime;
 			}
 
-			// Check the state of all the launchers
-			Set<String> keysToRemove = new HashSet<> ();
-			for( Map.Entry<String,MachineConfigurator> entry : this.machineIdToConfigurators.entrySet()) {
 
-				MachineConfigurator handler = entry.getValue();
+			@Override
+			public void run() {
+
+				Map<String,ConfigurationState> map = CheckingRunnable.this.machineIdToConfigurators;
+				Logger logger = CheckingRunnable.this.logger;
+				boolean close = false;
 				try {
-					if( handler.configure()) {
+					Object stepBefore = currentStep( this.state.configurator );
+					this.state.attempts ++;
+					this.state.stepAttempts ++;
+					if( this.state.configurator.configure()) {
 
 						// Configure is completed, remove it from the things to check
-						keysToRemove.add( entry.getKey());
-						closeConfigurator( entry.getKey(), handler );
+						map.remove( this.machineId, this.state );
+						close = true;
+
+						long latency = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - this.state.creationTime );
+						CheckingRunnable.this.latencies.record( latency );
+						logger.fine( "Machine '" + this.machineId + "' was configured in " + latency + " ms (" + this.state.attempts + " invocations)." );
 
 						// It may require to be configured from the DM => add the right marker
-						Instance scopedInstance = handler.getScopedInstance();
+						Instance scopedInstance = this.state.configurator.getScopedInstance();
 						scopedInstance.data.put( Instance.READY_FOR_CFG_MARKER, "true" );
+
+					} else {
+						// A new step was reached: restart the back-off
+						Object stepAfter = currentStep( this.state.configurator );
+						if( stepBefore == null ? stepAfter != null : ! stepBefore.equals( stepAfter ))
+							this.state.stepAttempts = 0;
+
+						// The next invocation is computed from the submission time, so that it matches a check
+						long backoff = backoffDelay(
+								CheckingRunnable.this.delay,
+								CheckingRunnable.this.maxDelay,
+								Math.max( 1, this.state.stepAttempts ));
+
+						this.state.nextInvocation = this.submissionTime + TimeUnit.MILLISECONDS.toNanos( backoff );
 					}
 
 				} catch( Throwable t ) {
 					// We need to catch ALL the exceptions.
-					// Otherwise, the timer will stop scheduling this runnable,
-					// and this may result in unpredictable behaviors in Roboconf deployments.
-					// That would impact all the VMs on a given target.
-					this.logger.severe( "An error occurred while configuring machine '" + entry.getKey() + "'. " + t.getMessage());
-					Utils.logException( this.logger, t );
-					keysToRemove.add( entry.getKey());
+					// Otherwise, the machine would remain in an unpredictable state.
+					logger.severe( "An error occurred while configuring machine '" + this.machineId + "'. " + t.getMessage());
+					Utils.logException( logger, t );
+					map.remove( this.machineId, this.state );
 
 					// If a problem occurs, try to close the handler anyway
-					closeConfigurator( entry.getKey(), handler );
+					close = true;
 
 					// Update the scoped instance
-					Instance scopedInstance = handler.getScopedInstance();
+					Instance scopedInstance = this.state.configurator.getScopedInstance();
 					if( scopedInstance.getStatus() != InstanceStatus.NOT_DEPLOYED ) {
 						scopedInstance.setStatus( InstanceStatus.PROBLEM );
 						scopedInstance.data.put( Instance.LAST_PROBLEM, "Configuration failed. " + t.getMessage());
 					}
+
+				} finally {
+					// Cancelled while being invoked => close it too
+					if( this.state.release() || close )
+						closeConfigurator( this.machineId, this.state.configurator, logger );
 				}
 			}
+		}
+	}
+
 
-			// Remove old keys
-			this.machineIdToConfigurators.keySet().removeAll( keysToRemove );
+	/**
+	 * @param configurator a configurator
+	 * @return its current step, or null if it does not have steps
+	 */
+	static Object currentStep( MachineConfigurator configurator ) {
+
+		Object result = null;
+		if( configurator instanceof SteppedMachineConfigurator )
+			result = ((SteppedMachineConfigurator) configurator).getCurrentStep();
+
+		return result;
+	}
+
+
+	/**
+	 * Closes a configurator.
+	 * @param machineId
+	 * @param handler
+	 * @param logger
+	 */
+	static void closeConfigurator( String machineId, MachineConfigurator handler, Logger logger ) {
+		try {
+			logger.fine( "Closing the configurator for machine " + machineId );
+			handler.close();
+
+		} catch( Exception e ) {
+			logger.warning( "An error occurred while closing the configurator for machine '" + machineId + "'. " + e.getMessage());
+			Utils.logException( logger, e );
+		}
+	}
+
+
+	/**
+	 * The configuration state of a machine.
+	 * <p>
+	 * It guarantees a configurator is invoked by at most one thread at a time.
+	 * </p>
+	 *
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class ConfigurationState {
+
+		final MachineConfigurator configurator;
+		final long creationTime = System.nanoTime();
+
+		// Only modified by the thread that acquired the state
+		volatile long nextInvocation = this.creationTime;
+		volatile int attempts = 0;
+		volatile int stepAttempts = 0;
+
+		private boolean inProgress = false, cancelled = false;
+
+
+		/**
+		 * Constructor.
+		 * @param configurator
+		 */
+		ConfigurationState( MachineConfigurator configurator ) {
+			this.configurator = configurator;
 		}
 
+		/**
+		 * Marks the configurator as being invoked.
+		 * @return true if it was not already being invoked nor cancelled, false otherwise
+		 */
+		synchronized boolean acquire() {
+
+			boolean result = ! this.inProgress && ! this.cancelled;
+			if( result )
+				this.inProgress = true;
+
+			return result;
+		}
 
 		/**
-		 * Closes the configurator.
-		 * @param machineId
-		 * @param handler
+		 * Marks the configurator as not being invoked anymore.
+		 * @return true if it was cancelled in the meantime (and must be closed), false otherwise
 		 */
-		private void closeConfigurator( String machineId, MachineConfigurator handler ) {
-			try {
-				this.logger.fine( "Closing the configurator for machine " + machineId );
-				handler.close();
-
-			} catch( Exception e ) {
-				this.logger.warning( "An error occurred while closing the configurator for machine '" + machineId + "'. " + e.getMessage());
-				Utils.logException( this.logger, e );
-			}
+		synchronized boolean release() {
+			this.inProgress = false;
+			return this.cancelled;
+		}
+
+		/**
+		 * Cancels the configuration.
+		 * @return true if the configurator is not being invoked (and can be closed now), false otherwise
+		 */
+		synchronized boolean cancel() {
+			this.cancelled = true;
+			return ! this.inProgress;
+		}
+	}
+
+
+	/**
+	 * Statistics about the latencies of the completed configurations.
+	 * <p>
+	 * A latency is the time between the moment a machine configuration was requested
+	 * and the moment its configurator reported it was completed.
+	 * </p>
+	 *
+	 * @author Vincent Zurczak - Linagora
+	 */
+	public static class ConfigurationLatencies {
+
+		private long count, total, min, max;
+
+
+		/**
+		 * Records a latency.
+		 * @param latency a latency, in milliseconds
+		 */
+		synchronized void record( long latency ) {
+
+			if( this.count == 0 || latency < this.min )
+				this.min = latency;
+
+			if( latency > this.max )
+				this.max = latency;
+
+			this.count ++;
+			this.total += latency;
+		}
+
+		/**
+		 * @return the number of completed configurations
+		 */
+		public synchronized long getCount() {
+			return this.count;
+		}
+
+		/**
+		 * @return the smallest latency, in milliseconds (0 if there was no configuration)
+		 */
+		public synchronized long getMin() {
+			return this.min;
+		}
+
+		/**
+		 * @return the biggest latency, in milliseconds (0 if there was no configuration)
+		 */
+		public synchronized long getMax() {
+			return this.max;
+		}
+
+		/**
+		 * @return the average latency, in milliseconds (0 if there was no configuration)
+		 */
+		public synchronized long getAverage() {
+			return this.count == 0 ? 0 : this.total / this.count;
 		}
 	}
 
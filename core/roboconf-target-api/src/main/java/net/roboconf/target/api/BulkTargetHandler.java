@@ -0,0 +1,62 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.api;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A target handler that can determine the state of several machines at once.
+ * <p>
+ * Target handlers that can list machines with a single remote invocation should implement
+ * this interface. The DM uses it when it is restarted, to determine which machines are still running.
+ * Other handlers are invoked machine per machine (see
+ * {@link TargetHandlerUtils#areMachinesRunning(TargetHandler, List, List)}).
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public interface BulkTargetHandler extends TargetHandler {
+
+	/**
+	 * Determines whether machines are running or not.
+	 * <p>
+	 * This method is equivalent to invoking {@link #isMachineRunning(TargetHandlerParameters, String)}
+	 * for every machine.
+	 * </p>
+	 *
+	 * @param parameters the target parameters, one per machine (not null)
+	 * @param machineIds the machine IDs (not null, same size than the parameters)
+	 * @return a non-null map (key = machine ID, value = true if the machine is running, false otherwise)
+	 * <p>
+	 * Machines whose state could not be determined are not contained in the map.
+	 * </p>
+	 *
+	 * @throws TargetException if the states could not be determined at all
+	 */
+	Map<String,Boolean> areMachinesRunning( List<TargetHandlerParameters> parameters, List<String> machineIds )
+	throws TargetException;
+}
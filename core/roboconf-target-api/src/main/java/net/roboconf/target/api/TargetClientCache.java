@@ -0,0 +1,418 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.target.api;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import net.roboconf.core.utils.Utils;
+
+/**
+ * A cache of clients (or contexts) that target handlers can share between their operations.
+ * <p>
+ * Building a client for a cloud API is expensive (dependency injection, HTTP stack...).
+ * This class keeps one client per set of connection properties. The key of a client is
+ * built from the values of the properties given to the constructor. So, when the target
+ * properties change, a new client is created and the previous one is not used anymore.
+ * </p>
+ * <p>
+ * Clients are reference-counted: they must be released once they are not used anymore.
+ * Clients that have not been used for {@link #idleTimeout} milliseconds are closed.
+ * Clients that are invalidated while being used are closed once they have been released.
+ * All the methods are thread-safe.
+ * </p>
+ *
+ * @param <T> the type of the cached clients
+ * @author Vincent Zurczak - Linagora
+ */
+public abstract class TargetClientCache<T> {
+
+	static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis( 5 );
+	private static final int MAX_CAUSE_DEPTH = 20;
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final Map<String,CachedClient<T>> keyToClient = new HashMap<> ();
+	private final Map<T,CachedClient<T>> clientToEntry = new IdentityHashMap<> ();
+	private final List<String> keyProperties;
+	long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+
+	/**
+	 * Constructor.
+	 * @param keyProperties the names of the target properties that identify a client
+	 */
+	public TargetClientCache( String... keyProperties ) {
+		this.keyProperties = Collections.unmodifiableList( Arrays.asList( keyProperties ));
+	}
+
+
+	/**
+	 * Gets a client for given target properties.
+	 * <p>
+	 * The client must be released with {@link #release(Object)}.
+	 * It must NOT be closed.
+	 * </p>
+	 * <p>
+	 * Clients are created outside the cache's lock. While a client is being created,
+	 * other invocations for the same key wait for it, but those for other keys are not blocked.
+	 * </p>
+	 *
+	 * @param targetProperties a non-null map
+	 * @return a client (never null)
+	 * @throws TargetException if the client could not be created
+	 */
+	public T acquire( Map<String,String> targetProperties ) throws TargetException {
+
+		Map<String,String> normalizedProperties = normalize( targetProperties );
+		String key = buildKeyFromNormalized( normalizedProperties );
+
+		CachedClient<T> entry;
+		boolean mustCreate = false;
+		synchronized( this ) {
+			evictIdleClients();
+
+			entry = this.keyToClient.get( key );
+			if( entry == null ) {
+				entry = new CachedClient<> ();
+				this.keyToClient.put( key, entry );
+				mustCreate = true;
+			}
+
+			entry.users ++;
+		}
+
+		// Create the client outside the lock...
+		if( mustCreate ) {
+			T client = null;
+			TargetException error = null;
+			try {
+				this.logger.fine( "Creating a new client in " + getClass().getSimpleName() + "." );
+				client = createClient( normalizedProperties );
+
+			} catch( TargetException e ) {
+				error = e;
+
+			} catch( RuntimeException e ) {
+				error = new TargetException( e );
+			}
+
+			synchronized( this ) {
+				entry.client = client;
+				entry.error = error;
+				entry.created = true;
+				if( error == null )
+					this.clientToEntry.put( client, entry );
+				else if( this.keyToClient.get( key ) == entry )
+					this.keyToClient.remove( key );
+
+				notifyAll();
+			}
+		}
+
+		// ... and wait for it if another thread is creating it
+		synchronized( this ) {
+			boolean interrupted = false;
+			while( ! entry.created && ! interrupted ) {
+				try {
+					wait();
+
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					interrupted = true;
+				}
+			}
+
+			if( ! entry.created || entry.error != null ) {
+				entry.users --;
+				if( entry.error != null )
+					throw entry.error;
+
+				throw new TargetException( "Interrupted while waiting for a client in " + getClass().getSimpleName() + "." );
+			}
+		}
+
+		return entry.client;
+	}
+
+
+	/**
+	 * Releases a client obtained from {@link #acquire(Map)}.
+	 * @param client a client (null or unknown clients are ignored)
+	 */
+	public synchronized void release( T client ) {
+
+		CachedClient<T> entry = client == null ? null : this.clientToEntry.get( client );
+		if( entry != null && entry.users > 0 ) {
+			entry.users --;
+			entry.lastUsed = System.nanoTime();
+
+			if( entry.users == 0 && entry.invalidated ) {
+				this.clientToEntry.remove( client );
+				closeQuietly( client );
+			}
+		}
+	}
+
+
+	/**
+	 * Invalidates the client associated with given target properties.
+	 * <p>
+	 * The next invocation of {@link #acquire(Map)} will create a new client.
+	 * The invalidated client is closed immediately if it is not used, or
+	 * as soon as it has been released otherwise.
+	 * </p>
+	 *
+	 * @param targetProperties a non-null map
+	 */
+	public synchronized void invalidate( Map<String,String> targetProperties ) {
+
+		CachedClient<T> entry = this.keyToClient.remove( buildKey( targetProperties ));
+		if( entry != null ) {
+			entry.invalidated = true;
+			if( entry.users == 0 && entry.client != null ) {
+				this.clientToEntry.remove( entry.client );
+				closeQuietly( entry.client );
+			}
+		}
+	}
+
+
+	/**
+	 * Invalidates the client associated with given target properties if an error shows it cannot be used anymore.
+	 * <p>
+	 * Handlers should invoke this method when an operation performed with a cached client fails.
+	 * Whether the client is invalidated or not is decided by {@link #isClientFailure(Throwable)}.
+	 * </p>
+	 *
+	 * @param targetProperties a non-null map
+	 * @param failure the error raised while using the client (can be null)
+	 * @return true if the client was invalidated, false otherwise
+	 */
+	public boolean invalidateOnFailure( Map<String,String> targetProperties, Throwable failure ) {
+
+		// Look at the error and its causes
+		boolean result = false;
+		Throwable t = failure;
+		for( int depth = 0; t != null && ! result && depth < MAX_CAUSE_DEPTH; depth ++ ) {
+			result = isClientFailure( t );
+			t = t.getCause();
+		}
+
+		if( result ) {
+			this.logger.fine( "Invalidating a client in " + getClass().getSimpleName() + " after a connection or authentication failure." );
+			invalidate( targetProperties );
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Closes the clients that have not been used for a while.
+	 */
+	public synchronized void evictIdleClients() {
+
+		long now = System.nanoTime();
+		List<CachedClient<T>> toClose = new ArrayList<> ();
+		for( Iterator<CachedClient<T>> it = this.keyToClient.values().iterator(); it.hasNext(); ) {
+			CachedClient<T> entry = it.next();
+			if( entry.users == 0
+					&& TimeUnit.NANOSECONDS.toMillis( now - entry.lastUsed ) >= this.idleTimeout ) {
+				it.remove();
+				toClose.add( entry );
+			}
+		}
+
+		for( CachedClient<T> entry : toClose ) {
+			this.logger.fine( "Closing an idle client in " + getClass().getSimpleName() + "." );
+			this.clientToEntry.remove( entry.client );
+			closeQuietly( entry.client );
+		}
+	}
+
+
+	/**
+	 * Closes all the clients, including those that are being used.
+	 */
+	public synchronized void close() {
+
+		for( CachedClient<T> entry : this.clientToEntry.values())
+			closeQuietly( entry.client );
+
+		for( CachedClient<T> entry : this.keyToClient.values())
+			entry.invalidated = true;
+
+		this.keyToClient.clear();
+		this.clientToEntry.clear();
+	}
+
+
+	/**
+	 * @param idleTimeout the time (in milliseconds) after which unused clients are closed
+	 */
+	public synchronized void setIdleTimeout( long idleTimeout ) {
+		this.idleTimeout = idleTimeout;
+	}
+
+
+	/**
+	 * @return the number of cached clients (invalidated ones are not counted)
+	 */
+	public synchronized int size() {
+		return this.keyToClient.size();
+	}
+
+
+	/**
+	 * Creates a new client.
+	 * @param targetProperties a non-null map
+	 * @return a new client (not null)
+	 * @throws TargetException if something went wrong
+	 */
+	protected abstract T createClient( Map<String,String> targetProperties ) throws TargetException;
+
+
+	/**
+	 * Closes a client.
+	 * @param client a non-null client
+	 * @throws Exception if something went wrong
+	 */
+	protected abstract void closeClient( T client ) throws Exception;
+
+
+	/**
+	 * Determines whether an error means that a client cannot be used anymore.
+	 * <p>
+	 * This method is invoked for an error and for each of its causes.
+	 * By default, connection errors (refused connections, unknown hosts...) are considered
+	 * as client failures. Sub-classes should override this method to also consider the
+	 * authentication errors of their API.
+	 * </p>
+	 *
+	 * @param failure a non-null error
+	 * @return true if the client associated with the error should be invalidated
+	 */
+	protected boolean isClientFailure( Throwable failure ) {
+		return failure instanceof ConnectException
+				|| failure instanceof NoRouteToHostException
+				|| failure instanceof UnknownHostException;
+	}
+
+
+	/**
+	 * Normalizes the target properties used to identify and create a client.
+	 * <p>
+	 * The values of the key properties are trimmed, so that meaningless changes in the
+	 * target properties do not result in new clients. Clients are created from the
+	 * normalized properties, so that a client always matches its key.
+	 * </p>
+	 * <p>
+	 * Sub-classes can override this method to handle default values.
+	 * </p>
+	 *
+	 * @param targetProperties a non-null map
+	 * @return a new map
+	 */
+	protected Map<String,String> normalize( Map<String,String> targetProperties ) {
+
+		Map<String,String> result = new HashMap<>( targetProperties );
+		for( String property : this.keyProperties ) {
+			String value = result.get( property );
+			if( value != null )
+				result.put( property, value.trim());
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Builds the key associated with a client.
+	 * <p>
+	 * Two sets of target properties with the same key share the same client.
+	 * Handlers can use it to group operations by client.
+	 * </p>
+	 *
+	 * @param targetProperties a non-null map
+	 * @return a non-null string
+	 */
+	public String buildKey( Map<String,String> targetProperties ) {
+		return buildKeyFromNormalized( normalize( targetProperties ));
+	}
+
+
+	private String buildKeyFromNormalized( Map<String,String> normalizedProperties ) {
+
+		StringBuilder sb = new StringBuilder();
+		for( String property : this.keyProperties ) {
+			String value = normalizedProperties.get( property );
+			sb.append( '\n' );
+			if( value != null )
+				sb.append( value.length()).append( ':' ).append( value );
+		}
+
+		return sb.toString();
+	}
+
+
+	private void closeQuietly( T client ) {
+		try {
+			closeClient( client );
+
+		} catch( Exception e ) {
+			this.logger.warning( "A client could not be closed in " + getClass().getSimpleName() + ". " + e.getMessage());
+			Utils.logException( this.logger, e );
+		}
+	}
+
+
+	/**
+	 * A cached client.
+	 * @param <T> the type of the client
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class CachedClient<T> {
+
+		T client;
+		TargetException error;
+		boolean created = false;
+		int users = 0;
+		boolean invalidated = false;
+		long lastUsed = System.nanoTime();
+	}
+}
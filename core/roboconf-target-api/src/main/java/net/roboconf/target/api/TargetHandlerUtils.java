@@ -0,0 +1,97 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.api;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import net.roboconf.core.utils.Utils;
+
+/**
+ * Utilities related to target handlers.
+ * @author Vincent Zurczak - Linagora
+ */
+public final class TargetHandlerUtils {
+
+	/**
+	 * Private empty constructor.
+	 */
+	private TargetHandlerUtils() {
+		// nothing
+	}
+
+
+	/**
+	 * Determines whether machines are running or not.
+	 * <p>
+	 * If the handler implements {@link BulkTargetHandler}, it is invoked once.
+	 * Otherwise, {@link TargetHandler#isMachineRunning(TargetHandlerParameters, String)}
+	 * is invoked for every machine.
+	 * </p>
+	 *
+	 * @param targetHandler a target handler (not null)
+	 * @param parameters the target parameters, one per machine (not null)
+	 * @param machineIds the machine IDs (not null, same size than the parameters)
+	 * @return a non-null map (key = machine ID, value = true if the machine is running, false otherwise)
+	 * <p>
+	 * Machines whose state could not be determined are not contained in the map.
+	 * </p>
+	 *
+	 * @throws TargetException if the states could not be determined at all
+	 */
+	public static Map<String,Boolean> areMachinesRunning(
+			TargetHandler targetHandler,
+			List<TargetHandlerParameters> parameters,
+			List<String> machineIds )
+	throws TargetException {
+
+		if( parameters.size() != machineIds.size())
+			throw new IllegalArgumentException( "There must be as many target parameters as machine IDs." );
+
+		Map<String,Boolean> result;
+		if( targetHandler instanceof BulkTargetHandler ) {
+			result = ((BulkTargetHandler) targetHandler).areMachinesRunning( parameters, machineIds );
+
+		} else {
+			result = new HashMap<> ();
+			Logger logger = Logger.getLogger( TargetHandlerUtils.class.getName());
+			for( int i=0; i<machineIds.size(); i++ ) {
+				String machineId = machineIds.get( i );
+				try {
+					result.put( machineId, targetHandler.isMachineRunning( parameters.get( i ), machineId ));
+
+				} catch( Exception e ) {
+					logger.severe( "The state of machine " + machineId + " could not be determined. " + e.getMessage());
+					Utils.logException( logger, e );
+				}
+			}
+		}
+
+		return result;
+	}
+}
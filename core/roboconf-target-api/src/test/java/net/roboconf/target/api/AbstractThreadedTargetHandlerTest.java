@@ -25,7 +25,13 @@
 
 package net.roboconf.target.api;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -34,6 +40,8 @@ import net.roboconf.core.internal.tests.TestUtils;
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.target.api.internal.TestAbstractThreadedTargetHandler;
+import net.roboconf.target.api.internal.TestBlockingMachineConfigurator;
+import net.roboconf.target.api.internal.TestSteppedMachineConfigurator;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -214,4 +222,146 @@ public class AbstractThreadedTargetHandlerTest {
 			Assert.assertEquals( 0, scopedInstance.data.size());
 		}
 	}
+
+
+	@Test
+	public void testSlowConfiguratorsDoNotDelayFastOnes() throws Exception {
+
+		// One slow machine (its configurator blocks for a long time),
+		// and several fast ones. Configurators complete on their second invocation.
+		final Map<String,Long> machineIdToBlockingTime = new HashMap<> ();
+		machineIdToBlockingTime.put( "slow", 2000L );
+		for( int i=0; i<8; i++ )
+			machineIdToBlockingTime.put( "fast-" + i, 10L + i * 10 );
+
+		final Map<String,AtomicInteger> machineIdToInvocations = new HashMap<> ();
+		for( String machineId : machineIdToBlockingTime.keySet())
+			machineIdToInvocations.put( machineId, new AtomicInteger());
+
+		final TestAbstractThreadedTargetHandler th = new TestAbstractThreadedTargetHandler( false ) {
+			{
+				this.delay = 100;
+				this.configurationThreads = 3;
+			}
+
+			@Override
+			public MachineConfigurator machineConfigurator( TargetHandlerParameters parameters, String machineId, Instance scopedInstance ) {
+				return new TestBlockingMachineConfigurator(
+						machineIdToBlockingTime.get( machineId ),
+						machineIdToInvocations.get( machineId ),
+						scopedInstance );
+			}
+		};
+
+		Map<?,?> configurators = TestUtils.getInternalField( th, "machineIdToConfigurators", Map.class );
+		Map<String,Instance> machineIdToInstance = new HashMap<> ();
+		for( String machineId : machineIdToBlockingTime.keySet()) {
+			Instance scopedInstance = new Instance( machineId );
+			machineIdToInstance.put( machineId, scopedInstance );
+			th.configureMachine( new TargetHandlerParameters(), machineId, scopedInstance );
+		}
+
+		try {
+			th.start();
+			Thread.sleep( 1500 );
+
+			// The fast machines are configured, while the slow one is still being configured
+			List<String> notConfigured = new ArrayList<> ();
+			for( Map.Entry<String,Instance> entry : machineIdToInstance.entrySet()) {
+				if( ! entry.getValue().data.containsKey( Instance.READY_FOR_CFG_MARKER ))
+					notConfigured.add( entry.getKey());
+			}
+
+			Assert.assertEquals( 1, notConfigured.size());
+			Assert.assertEquals( "slow", notConfigured.get( 0 ));
+			Assert.assertEquals( 1, configurators.size());
+			Assert.assertEquals( 8, th.getConfigurationLatencies().getCount());
+			Assert.assertTrue( th.getConfigurationLatencies().getMax() < 1500 );
+
+			// At most one invocation at a time for a given machine
+			Assert.assertEquals( 1, machineIdToInvocations.get( "slow" ).get());
+			for( int i=0; i<8; i++ )
+				Assert.assertEquals( 2, machineIdToInvocations.get( "fast-" + i ).get());
+
+			// Eventually, the slow one completes too
+			Thread.sleep( 5000 );
+			Assert.assertEquals( 0, configurators.size());
+			Assert.assertEquals( 2, machineIdToInvocations.get( "slow" ).get());
+			Assert.assertTrue( machineIdToInstance.get( "slow" ).data.containsKey( Instance.READY_FOR_CFG_MARKER ));
+			Assert.assertEquals( 9, th.getConfigurationLatencies().getCount());
+			Assert.assertTrue( th.getConfigurationLatencies().getMax() >= 4000 );
+
+		} finally {
+			th.stop();
+		}
+	}
+
+
+	@Test
+	public void testBackoffIsAppliedAndResetOnNewStep() throws Exception {
+
+		// The second step is reached on the 4th invocation, the configuration completes on the 6th.
+		// Expected intervals: 100, 200, 400 (first step), then 100 and 100 again (second step).
+		final List<Long> invocationTimes = Collections.synchronizedList( new ArrayList<Long> ());
+		final TestAbstractThreadedTargetHandler th = new TestAbstractThreadedTargetHandler( false ) {
+			{
+				this.delay = 100;
+				this.maxDelay = 800;
+			}
+
+			@Override
+			public MachineConfigurator machineConfigurator( TargetHandlerParameters parameters, String machineId, Instance scopedInstance ) {
+				return new TestSteppedMachineConfigurator( 4, 6, invocationTimes, scopedInstance );
+			}
+		};
+
+		Instance scopedInstance = new Instance( "test" );
+		th.configureMachine( new TargetHandlerParameters(), "machine-id", scopedInstance );
+		try {
+			th.start();
+			for( int i=0; i<50 && ! scopedInstance.data.containsKey( Instance.READY_FOR_CFG_MARKER ); i++ )
+				Thread.sleep( 100 );
+
+			Assert.assertTrue( scopedInstance.data.containsKey( Instance.READY_FOR_CFG_MARKER ));
+			Assert.assertEquals( 6, invocationTimes.size());
+
+			List<Long> intervals = new ArrayList<> ();
+			for( int i=1; i<invocationTimes.size(); i++ ) {
+				long interval = invocationTimes.get( i ) - invocationTimes.get( i - 1 );
+				intervals.add( TimeUnit.NANOSECONDS.toMillis( interval ));
+			}
+
+			// First step: the delay grows
+			Assert.assertTrue( intervals.toString(), intervals.get( 0 ) >= 80 );
+			Assert.assertTrue( intervals.toString(), intervals.get( 1 ) >= 180 );
+			Assert.assertTrue( intervals.toString(), intervals.get( 2 ) >= 380 );
+			Assert.assertTrue( intervals.toString(), intervals.get( 0 ) < intervals.get( 2 ));
+
+			// Second step: the back-off restarts from the initial delay
+			Assert.assertTrue( intervals.toString(), intervals.get( 3 ) < intervals.get( 2 ));
+			Assert.assertTrue( intervals.toString(), intervals.get( 3 ) < 300 );
+			Assert.assertTrue( intervals.toString(), intervals.get( 4 ) < 300 );
+
+		} finally {
+			th.stop();
+		}
+	}
+
+
+	@Test
+	public void testBackoffDelay() {
+
+		Assert.assertEquals( 1000, AbstractThreadedTargetHandler.backoffDelay( 1000, 16000, 1 ));
+		Assert.assertEquals( 2000, AbstractThreadedTargetHandler.backoffDelay( 1000, 16000, 2 ));
+		Assert.assertEquals( 4000, AbstractThreadedTargetHandler.backoffDelay( 1000, 16000, 3 ));
+		Assert.assertEquals( 16000, AbstractThreadedTargetHandler.backoffDelay( 1000, 16000, 5 ));
+		Assert.assertEquals( 16000, AbstractThreadedTargetHandler.backoffDelay( 1000, 16000, 6 ));
+		Assert.assertEquals( 16000, AbstractThreadedTargetHandler.backoffDelay( 1000, 16000, Integer.MAX_VALUE ));
+
+		// The maximum delay cannot be lower than the initial one
+		Assert.assertEquals( 1000, AbstractThreadedTargetHandler.backoffDelay( 1000, 10, 3 ));
+
+		// No maximum delay => no backoff
+		Assert.assertEquals( 1000, AbstractThreadedTargetHandler.backoffDelay( 1000, 0, 5 ));
+	}
 }
@@ -0,0 +1,342 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.target.api;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class TargetClientCacheTest {
+
+	private TestClientCache cache;
+	private Map<String,String> targetProperties;
+
+
+	@Before
+	public void prepareCache() {
+
+		this.cache = new TestClientCache();
+		this.targetProperties = new HashMap<> ();
+		this.targetProperties.put( "url", "http://localhost" );
+		this.targetProperties.put( "user", "me" );
+		this.targetProperties.put( "whatever", "value" );
+	}
+
+
+	@Test
+	public void testSharedClients() throws Exception {
+
+		Object c1 = this.cache.acquire( this.targetProperties );
+		Object c2 = this.cache.acquire( this.targetProperties );
+		Assert.assertSame( c1, c2 );
+		Assert.assertEquals( 1, this.cache.created.size());
+		Assert.assertEquals( 1, this.cache.size());
+
+		// Properties that are not part of the key do not matter
+		this.targetProperties.put( "whatever", "another value" );
+		Assert.assertSame( c1, this.cache.acquire( this.targetProperties ));
+
+		// Neither do white spaces
+		this.targetProperties.put( "user", " me  " );
+		Assert.assertSame( c1, this.cache.acquire( this.targetProperties ));
+
+		// Changing a key property results in a new client
+		this.targetProperties.put( "user", "you" );
+		Object c3 = this.cache.acquire( this.targetProperties );
+		Assert.assertNotSame( c1, c3 );
+		Assert.assertEquals( 2, this.cache.created.size());
+		Assert.assertEquals( 2, this.cache.size());
+		Assert.assertEquals( 0, this.cache.closed.size());
+	}
+
+
+	@Test
+	public void testIdleClientsAreEvicted() throws Exception {
+
+		Object c1 = this.cache.acquire( this.targetProperties );
+		this.cache.idleTimeout = 0;
+		this.cache.evictIdleClients();
+
+		// Still in use
+		Assert.assertEquals( 1, this.cache.size());
+		Assert.assertEquals( 0, this.cache.closed.size());
+
+		this.cache.release( c1 );
+		this.cache.evictIdleClients();
+		Assert.assertEquals( 0, this.cache.size());
+		Assert.assertEquals( 1, this.cache.closed.size());
+		Assert.assertSame( c1, this.cache.closed.get( 0 ));
+
+		// Releasing it again does not matter
+		this.cache.release( c1 );
+		this.cache.release( null );
+		Assert.assertEquals( 1, this.cache.closed.size());
+	}
+
+
+	@Test
+	public void testInvalidate_clientInUse() throws Exception {
+
+		Object c1 = this.cache.acquire( this.targetProperties );
+		Object c2 = this.cache.acquire( this.targetProperties );
+		this.cache.invalidate( this.targetProperties );
+		Assert.assertEquals( 0, this.cache.size());
+		Assert.assertEquals( 0, this.cache.closed.size());
+
+		// A new client is created
+		Object c3 = this.cache.acquire( this.targetProperties );
+		Assert.assertNotSame( c1, c3 );
+
+		// The invalidated one is closed once it is not used anymore
+		this.cache.release( c1 );
+		Assert.assertEquals( 0, this.cache.closed.size());
+		this.cache.release( c2 );
+		Assert.assertEquals( 1, this.cache.closed.size());
+		Assert.assertSame( c1, this.cache.closed.get( 0 ));
+	}
+
+
+	@Test
+	public void testInvalidate_unusedClient() throws Exception {
+
+		Object c1 = this.cache.acquire( this.targetProperties );
+		this.cache.release( c1 );
+		this.cache.invalidate( this.targetProperties );
+		Assert.assertEquals( 1, this.cache.closed.size());
+
+		// Unknown properties
+		this.targetProperties.put( "url", "http://elsewhere" );
+		this.cache.invalidate( this.targetProperties );
+		Assert.assertEquals( 1, this.cache.closed.size());
+	}
+
+
+	@Test
+	public void testClose() throws Exception {
+
+		this.cache.acquire( this.targetProperties );
+		this.targetProperties.put( "url", "http://elsewhere" );
+		this.cache.acquire( this.targetProperties );
+
+		// Closing errors are only logged
+		this.cache.failOnClose = true;
+		this.cache.close();
+		Assert.assertEquals( 0, this.cache.size());
+		Assert.assertEquals( 2, this.cache.closed.size());
+	}
+
+
+	@Test( expected = TargetException.class )
+	public void testCreationError() throws Exception {
+
+		this.cache.failOnCreate = true;
+		try {
+			this.cache.acquire( this.targetProperties );
+
+		} finally {
+			Assert.assertEquals( 0, this.cache.size());
+		}
+	}
+
+
+	@Test
+	public void testClientIsCreatedFromNormalizedProperties() throws Exception {
+
+		this.targetProperties.put( "user", " me  " );
+		this.cache.acquire( this.targetProperties );
+
+		Assert.assertEquals( 1, this.cache.creationProperties.size());
+		Assert.assertEquals( "me", this.cache.creationProperties.get( 0 ).get( "user" ));
+		Assert.assertEquals( "value", this.cache.creationProperties.get( 0 ).get( "whatever" ));
+		Assert.assertEquals( " me  ", this.targetProperties.get( "user" ));
+	}
+
+
+	@Test( timeout = 10000 )
+	public void testSlowCreationDoesNotBlockOtherKeys() throws Exception {
+
+		this.cache.slowUrl = "http://slow";
+		final Map<String,String> slowProperties = new HashMap<>( this.targetProperties );
+		slowProperties.put( "url", "http://slow" );
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Object> future = executor.submit( new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return TargetClientCacheTest.this.cache.acquire( slowProperties );
+				}
+			});
+
+			// Wait for the slow creation to start
+			Assert.assertTrue( this.cache.slowCreationStarted.await( 5, TimeUnit.SECONDS ));
+
+			// Another key can be acquired while the slow client is being created
+			Object c1 = this.cache.acquire( this.targetProperties );
+			Assert.assertNotNull( c1 );
+			Assert.assertFalse( future.isDone());
+
+			this.cache.slowCreationAllowed.countDown();
+			Object c2 = future.get();
+			Assert.assertNotSame( c1, c2 );
+			Assert.assertEquals( 2, this.cache.size());
+
+		} finally {
+			this.cache.slowCreationAllowed.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+
+	@Test( timeout = 10000 )
+	public void testConcurrentAcquisitionsCreateOneClient() throws Exception {
+
+		this.cache.slowUrl = this.targetProperties.get( "url" );
+		ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try {
+			List<Future<Object>> futures = new ArrayList<> ();
+			for( int i=0; i<4; i++ ) {
+				futures.add( executor.submit( new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						return TargetClientCacheTest.this.cache.acquire( TargetClientCacheTest.this.targetProperties );
+					}
+				}));
+			}
+
+			Assert.assertTrue( this.cache.slowCreationStarted.await( 5, TimeUnit.SECONDS ));
+			this.cache.slowCreationAllowed.countDown();
+
+			Object client = futures.get( 0 ).get();
+			for( Future<Object> future : futures )
+				Assert.assertSame( client, future.get());
+
+			Assert.assertEquals( 1, this.cache.created.size());
+
+			// All the users must release it before it is closed
+			this.cache.invalidate( this.targetProperties );
+			for( int i=0; i<3; i++ )
+				this.cache.release( client );
+
+			Assert.assertEquals( 0, this.cache.closed.size());
+			this.cache.release( client );
+			Assert.assertEquals( 1, this.cache.closed.size());
+
+		} finally {
+			this.cache.slowCreationAllowed.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+
+	@Test
+	public void testInvalidateOnFailure() throws Exception {
+
+		Object c1 = this.cache.acquire( this.targetProperties );
+
+		// Errors that are not related to the connection do not matter
+		Assert.assertFalse( this.cache.invalidateOnFailure( this.targetProperties, null ));
+		Assert.assertFalse( this.cache.invalidateOnFailure( this.targetProperties, new Exception( "for test" )));
+		Assert.assertSame( c1, this.cache.acquire( this.targetProperties ));
+
+		// Connection errors do
+		Exception e = new TargetException( new RuntimeException( new ConnectException( "for test" )));
+		Assert.assertTrue( this.cache.invalidateOnFailure( this.targetProperties, e ));
+		Assert.assertEquals( 0, this.cache.size());
+		Assert.assertNotSame( c1, this.cache.acquire( this.targetProperties ));
+	}
+
+
+	/**
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class TestClientCache extends TargetClientCache<Object> {
+
+		final List<Object> created = Collections.synchronizedList( new ArrayList<> ());
+		final List<Object> closed = Collections.synchronizedList( new ArrayList<> ());
+		final List<Map<String,String>> creationProperties = Collections.synchronizedList( new ArrayList<Map<String,String>> ());
+		final CountDownLatch slowCreationStarted = new CountDownLatch( 1 );
+		final CountDownLatch slowCreationAllowed = new CountDownLatch( 1 );
+		boolean failOnCreate = false, failOnClose = false;
+		String slowUrl;
+
+
+		/**
+		 * Constructor.
+		 */
+		TestClientCache() {
+			super( "url", "user" );
+		}
+
+		@Override
+		protected Object createClient( Map<String,String> targetProperties ) throws TargetException {
+
+			if( this.failOnCreate )
+				throw new TargetException( "for test" );
+
+			this.creationProperties.add( targetProperties );
+			if( targetProperties.get( "url" ).equals( this.slowUrl )) {
+				this.slowCreationStarted.countDown();
+				try {
+					this.slowCreationAllowed.await();
+
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					throw new TargetException( e );
+				}
+			}
+
+			Object client = new Object();
+			this.created.add( client );
+			return client;
+		}
+
+		@Override
+		protected void closeClient( Object client ) throws Exception {
+
+			this.closed.add( client );
+			if( this.failOnClose )
+				throw new Exception( "for test" );
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.target.api.internal.TestAbstractThreadedTargetHandler;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class TargetHandlerUtilsTest {
+
+	@Test
+	public void testAreMachinesRunning_fallback() throws Exception {
+
+		// One invocation per machine
+		final List<String> invokedIds = new ArrayList<> ();
+		TargetHandler handler = new TestAbstractThreadedTargetHandler( false ) {
+			@Override
+			public boolean isMachineRunning( TargetHandlerParameters parameters, String machineId )
+			throws TargetException {
+
+				invokedIds.add( machineId );
+				if( "error".equals( machineId ))
+					throw new TargetException( "for test" );
+
+				return machineId.startsWith( "running" );
+			}
+		};
+
+		List<TargetHandlerParameters> parameters = Arrays.asList(
+				new TargetHandlerParameters(), new TargetHandlerParameters(), new TargetHandlerParameters());
+
+		Map<String,Boolean> result = TargetHandlerUtils.areMachinesRunning(
+				handler, parameters,
+				Arrays.asList( "running-1", "stopped", "error" ));
+
+		Assert.assertEquals( Arrays.asList( "running-1", "stopped", "error" ), invokedIds );
+		Assert.assertEquals( 2, result.size());
+		Assert.assertTrue( result.get( "running-1" ));
+		Assert.assertFalse( result.get( "stopped" ));
+		Assert.assertNull( result.get( "error" ));
+	}
+
+
+	@Test
+	public void testAreMachinesRunning_bulk() throws Exception {
+
+		final Map<String,Boolean> expected = new HashMap<> ();
+		expected.put( "m1", true );
+
+		TestBulkTargetHandler handler = new TestBulkTargetHandler( expected );
+		Map<String,Boolean> result = TargetHandlerUtils.areMachinesRunning(
+				handler,
+				Arrays.asList( new TargetHandlerParameters()),
+				Arrays.asList( "m1" ));
+
+		Assert.assertSame( expected, result );
+		Assert.assertEquals( 1, handler.bulkInvocations );
+	}
+
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testAreMachinesRunning_invalidArguments() throws Exception {
+
+		TargetHandlerUtils.areMachinesRunning(
+				new TestAbstractThreadedTargetHandler( false ),
+				new ArrayList<TargetHandlerParameters>( 0 ),
+				Arrays.asList( "m1" ));
+	}
+
+
+	/**
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class TestBulkTargetHandler extends TestAbstractThreadedTargetHandler implements BulkTargetHandler {
+
+		private final Map<String,Boolean> result;
+		int bulkInvocations = 0;
+
+
+		/**
+		 * Constructor.
+		 * @param result
+		 */
+		public TestBulkTargetHandler( Map<String,Boolean> result ) {
+			super( false );
+			this.result = result;
+		}
+
+		@Override
+		public Map<String,Boolean> areMachinesRunning( List<TargetHandlerParameters> parameters, List<String> machineIds )
+		throws TargetException {
+			this.bulkInvocations ++;
+			return this.result;
+		}
+
+		@Override
+		public boolean isMachineRunning( TargetHandlerParameters parameters, String machineId )
+		throws TargetException {
+			throw new TargetException( "Should not be invoked." );
+		}
+
+		@Override
+		public MachineConfigurator machineConfigurator( TargetHandlerParameters parameters, String machineId, Instance scopedInstance ) {
+			return null;
+		}
+	}
+}
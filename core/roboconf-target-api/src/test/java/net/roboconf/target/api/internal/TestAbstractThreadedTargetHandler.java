@@ -46,6 +46,9 @@ public class TestAbstractThreadedTargetHandler extends AbstractThreadedTargetHan
 	 */
 	public TestAbstractThreadedTargetHandler( boolean failConfiguration ) {
 		this.failConfiguration = failConfiguration;
+
+		// Most tests rely on a constant delay between invocations
+		this.maxDelay = 0;
 	}
 
 
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.api.internal;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.target.api.AbstractThreadedTargetHandler.MachineConfigurator;
+import net.roboconf.target.api.TargetException;
+
+/**
+ * A configurator that blocks for a given time on every invocation.
+ * <p>
+ * The configuration is considered as completed on the second invocation.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class TestBlockingMachineConfigurator implements MachineConfigurator {
+
+	private final long blockingTime;
+	private final AtomicInteger invocations;
+	private final Instance scopedInstance;
+
+
+	/**
+	 * Constructor.
+	 * @param blockingTime the time to block on every invocation (in milliseconds)
+	 * @param invocations the number of invocations
+	 * @param scopedInstance
+	 */
+	public TestBlockingMachineConfigurator( long blockingTime, AtomicInteger invocations, Instance scopedInstance ) {
+		this.blockingTime = blockingTime;
+		this.invocations = invocations;
+		this.scopedInstance = scopedInstance;
+	}
+
+	@Override
+	public boolean configure() throws TargetException {
+
+		int cpt = this.invocations.incrementAndGet();
+		try {
+			Thread.sleep( this.blockingTime );
+
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+
+		return cpt == 2;
+	}
+
+	@Override
+	public Instance getScopedInstance() {
+		return this.scopedInstance;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// nothing
+	}
+}
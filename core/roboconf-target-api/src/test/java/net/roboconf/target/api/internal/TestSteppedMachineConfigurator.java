@@ -0,0 +1,96 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.api.internal;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.target.api.AbstractThreadedTargetHandler.SteppedMachineConfigurator;
+import net.roboconf.target.api.TargetException;
+
+/**
+ * A configurator with two steps that records the time of every invocation.
+ * <p>
+ * The second step is reached on a given invocation. The configuration is
+ * considered as completed after a given number of invocations.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class TestSteppedMachineConfigurator implements SteppedMachineConfigurator {
+
+	private final int nextStepInvocation, lastInvocation;
+	private final List<Long> invocationTimes;
+	private final Instance scopedInstance;
+	private int step = 1;
+
+
+	/**
+	 * Constructor.
+	 * @param nextStepInvocation the invocation during which the second step is reached
+	 * @param lastInvocation the invocation that completes the configuration
+	 * @param invocationTimes the times of the invocations (in nanoseconds)
+	 * @param scopedInstance
+	 */
+	public TestSteppedMachineConfigurator(
+			int nextStepInvocation,
+			int lastInvocation,
+			List<Long> invocationTimes,
+			Instance scopedInstance ) {
+
+		this.nextStepInvocation = nextStepInvocation;
+		this.lastInvocation = lastInvocation;
+		this.invocationTimes = invocationTimes;
+		this.scopedInstance = scopedInstance;
+	}
+
+	@Override
+	public boolean configure() throws TargetException {
+
+		this.invocationTimes.add( System.nanoTime());
+		int cpt = this.invocationTimes.size();
+		if( cpt == this.nextStepInvocation )
+			this.step = 2;
+
+		return cpt == this.lastInvocation;
+	}
+
+	@Override
+	public Object getCurrentStep() {
+		return this.step;
+	}
+
+	@Override
+	public Instance getScopedInstance() {
+		return this.scopedInstance;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// nothing
+	}
+}
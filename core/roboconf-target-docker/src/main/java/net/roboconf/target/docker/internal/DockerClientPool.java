@@ -0,0 +1,100 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.target.docker.internal;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.UnauthorizedException;
+
+import net.roboconf.core.utils.Utils;
+import net.roboconf.target.api.TargetClientCache;
+import net.roboconf.target.api.TargetException;
+
+/**
+ * A cache of Docker clients, shared by all the operations of the Docker handler.
+ * <p>
+ * Building a Docker client is expensive: every client comes with its own HTTP
+ * connection stack. This class keeps one client per Docker end-point and credentials.
+ * Clients have their own pool of HTTP connections, so that they can be used concurrently.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class DockerClientPool extends TargetClientCache<DockerClient> {
+
+	/**
+	 * Constructor.
+	 */
+	public DockerClientPool() {
+		super(
+				DockerHandler.ENDPOINT,
+				DockerHandler.USER,
+				DockerHandler.PASSWORD,
+				DockerHandler.EMAIL,
+				DockerHandler.VERSION );
+	}
+
+
+	@Override
+	protected DockerClient createClient( Map<String,String> targetProperties ) throws TargetException {
+		return DockerUtils.createDockerClient( targetProperties );
+	}
+
+
+	@Override
+	protected void closeClient( DockerClient client ) throws IOException {
+		client.close();
+	}
+
+
+	/**
+	 * Normalizes the connection properties.
+	 * <p>
+	 * An empty end-point is replaced by the default one, so that both result in the same client.
+	 * </p>
+	 */
+	@Override
+	protected Map<String,String> normalize( Map<String,String> targetProperties ) {
+
+		Map<String,String> result = super.normalize( targetProperties );
+		if( Utils.isEmptyOrWhitespaces( result.get( DockerHandler.ENDPOINT )))
+			result.put( DockerHandler.ENDPOINT, DockerHandler.DEFAULT_ENDPOINT );
+
+		return result;
+	}
+
+
+	/**
+	 * Considers authentication errors as client failures, in addition to connection errors.
+	 */
+	@Override
+	protected boolean isClientFailure( Throwable failure ) {
+		return failure instanceof UnauthorizedException || super.isClientFailure( failure );
+	}
+}
@@ -28,6 +28,10 @@ package net.roboconf.target.docker.internal;
 import static net.roboconf.target.docker.internal.DockerUtils.extractBoolean;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -40,6 +44,7 @@ import com.github.dockerjava.api.model.Container;
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.target.api.AbstractThreadedTargetHandler;
+import net.roboconf.target.api.BulkTargetHandler;
 import net.roboconf.target.api.TargetException;
 import net.roboconf.target.api.TargetHandlerParameters;
 
@@ -48,7 +53,7 @@ import net.roboconf.target.api.TargetHandlerParameters;
  * @author Pierre Bourret - Université Joseph Fourier
  * @author Amadou Diarra -  Université Joseph Fourier
  */
-public class DockerHandler extends AbstractThreadedTargetHandler {
+public class DockerHandler extends AbstractThreadedTargetHandler implements BulkTargetHandler {
 
 	// Other properties
 	public static final String TARGET_ID = "docker";
@@ -78,6 +83,9 @@ public class DockerHandler extends AbstractThreadedTargetHandler {
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final Map<String,File> containerIdToVolume;
 
+	// Docker clients are shared by all the operations
+	final DockerClientPool clientPool = new DockerClientPool();
+
 	// A directory that is used to store temporary volumes for our containers
 	// (can be overridden for tests)
 	File userDataVolume = new File( System.getProperty( "java.io.tmpdir" ), "rbcf-docker" );
@@ -93,6 +101,16 @@ public class DockerHandler extends AbstractThreadedTargetHandler {
 	}
 
 
+	/**
+	 * Stops the background threads and closes the cached Docker clients.
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		this.clientPool.close();
+	}
+
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.roboconf.target.api.TargetHandler#getTargetId()
@@ -134,7 +152,8 @@ public class DockerHandler extends AbstractThreadedTargetHandler {
 				machineId,
 				scopedInstance,
 				this.userDataVolume,
-				this.containerIdToVolume );
+				this.containerIdToVolume,
+				this.clientPool );
 
 		return configurator;
 	}
@@ -150,14 +169,71 @@ public class DockerHandler extends AbstractThreadedTargetHandler {
 	throws TargetException {
 
 		boolean result = false;
+		DockerClient dockerClient = null;
 		try {
-			DockerClient dockerClient = DockerUtils.createDockerClient( parameters.getTargetProperties());
+			dockerClient = this.clientPool.acquire( parameters.getTargetProperties());
 			ContainerState state = DockerUtils.getContainerState( machineId, dockerClient );
 			result = state != null && extractBoolean( state.getRunning());
 
 		} catch( Exception e ) {
 			// nothing, we consider it is not running
 			Utils.logException( this.logger, e );
+			this.clientPool.invalidateOnFailure( parameters.getTargetProperties(), e );
+
+		} finally {
+			this.clientPool.release( dockerClient );
+		}
+
+		return result;
+	}
+
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.roboconf.target.api.BulkTargetHandler
+	 * #areMachinesRunning(java.util.List, java.util.List)
+	 */
+	@Override
+	public Map<String,Boolean> areMachinesRunning( List<TargetHandlerParameters> parameters, List<String> machineIds )
+	throws TargetException {
+
+		// Group the machines by Docker end-point (and credentials)
+		Map<String,List<Integer>> keyToIndexes = new LinkedHashMap<> ();
+		for( int i=0; i<machineIds.size(); i++ ) {
+			String key = this.clientPool.buildKey( parameters.get( i ).getTargetProperties());
+			List<Integer> indexes = keyToIndexes.get( key );
+			if( indexes == null ) {
+				indexes = new ArrayList<> ();
+				keyToIndexes.put( key, indexes );
+			}
+
+			indexes.add( i );
+		}
+
+		// List the containers once per end-point
+		Map<String,Boolean> result = new HashMap<> ();
+		for( List<Integer> indexes : keyToIndexes.values()) {
+			DockerClient dockerClient = null;
+			try {
+				dockerClient = this.clientPool.acquire( parameters.get( indexes.get( 0 )).getTargetProperties());
+				List<Container> containers = dockerClient.listContainersCmd().withShowAll( true ).exec();
+				for( int index : indexes ) {
+					String machineId = machineIds.get( index );
+					Container container = DockerUtils.findContainerByIdOrByName( machineId, containers );
+
+					// Paused containers are considered as running (same thing than isMachineRunning)
+					result.put( machineId, container != null && DockerUtils.isRunning( container ));
+				}
+
+			} catch( Exception e ) {
+				// These states will remain unknown
+				this.logger.warning( "Containers could not be listed. " + e.getMessage());
+				Utils.logException( this.logger, e );
+				this.clientPool.invalidateOnFailure( parameters.get( indexes.get( 0 )).getTargetProperties(), e );
+
+			} finally {
+				this.clientPool.release( dockerClient );
+			}
 		}
 
 		return result;
@@ -174,9 +250,10 @@ public class DockerHandler extends AbstractThreadedTargetHandler {
 	throws TargetException {
 
 		this.logger.fine( "Terminating machine " + machineId );
+		DockerClient dockerClient = null;
 		try {
 			cancelMachineConfigurator( machineId );
-			DockerClient dockerClient = DockerUtils.createDockerClient( parameters.getTargetProperties());
+			dockerClient = this.clientPool.acquire( parameters.getTargetProperties());
 			Container container = DockerUtils.findContainerByIdOrByName( machineId, dockerClient );
 
 			// The case "container == null" is possible.
@@ -201,7 +278,11 @@ public class DockerHandler extends AbstractThreadedTargetHandler {
 			}
 
 		} catch( Exception e ) {
+			this.clientPool.invalidateOnFailure( parameters.getTargetProperties(), e );
 			throw new TargetException( e );
+
+		} finally {
+			this.clientPool.release( dockerClient );
 		}
 	}
 
@@ -71,12 +71,16 @@ public class DockerMachineConfigurator implements MachineConfigurator {
 	static final String USER_DATA_DIR = "/tmp/user-data/";
 	static final String USER_DATA_FILE = "parameters.properties";
 
+	// Image builds are serialized by end-point and build context digest (guarded by itself)
+	static final Map<String,BuildLock> BUILD_LOCKS = new HashMap<> ();
+
 	private final TargetHandlerParameters parameters;
 	private final Instance scopedInstance;
 	private final String machineId;
 
 	private final File userDataVolume;
 	private final Map<String,File> containerIdToVolume;
+	private final DockerClientPool clientPool;
 
 
 	/**
@@ -86,13 +90,15 @@ public class DockerMachineConfigurator implements MachineConfigurator {
 	 * @param scopedInstance the scoped instance
 	 * @param userDataVolume the directory into which user data volume should be created
 	 * @param containerIdToVolume a map to associate container IDs with user data directories
+	 * @param clientPool the pool Docker clients are obtained from
 	 */
 	public DockerMachineConfigurator(
 			TargetHandlerParameters parameters,
 			String machineId,
 			Instance scopedInstance,
 			File userDataVolume,
-			Map<String,File> containerIdToVolume ) {
+			Map<String,File> containerIdToVolume,
+			DockerClientPool clientPool ) {
 
 		this.parameters = parameters;
 		this.machineId = machineId;
@@ -100,6 +106,7 @@ public class DockerMachineConfigurator implements MachineConfigurator {
 
 		this.userDataVolume = userDataVolume;
 		this.containerIdToVolume = containerIdToVolume;
+		this.clientPool = clientPool;
 	}
 
 
@@ -119,8 +126,12 @@ public class DockerMachineConfigurator implements MachineConfigurator {
 
 	@Override
 	public void close() throws IOException {
-		if( this.dockerClient != null )
-			this.dockerClient.close();
+
+		// The client is shared, we do not close it
+		if( this.dockerClient != null ) {
+			this.clientPool.release( this.dockerClient );
+			this.dockerClient = null;
+		}
 	}
 
 
@@ -133,17 +144,26 @@ public class DockerMachineConfigurator implements MachineConfigurator {
 		// Said differently, this method will be invoked only once!
 
 		Map<String,String> targetProperties = this.parameters.getTargetProperties();
-		this.dockerClient = DockerUtils.createDockerClient( targetProperties );
+		if( this.dockerClient == null )
+			this.dockerClient = this.clientPool.acquire( targetProperties );
 
 		String rbcfVersion = DockerUtils.findDefaultImageVersion( ManifestUtils.findBundleVersion());
 		String imageId = Utils.getValue( targetProperties, IMAGE_ID, DEFAULT_IMAGE + ":" + rbcfVersion );
 		this.logger.fine( "Used image: " + imageId );
 
-		Image img = DockerUtils.findImageByIdOrByTag( imageId, this.dockerClient );
-		if( img == null )
-			createImage( imageId );
+		try {
+			Image img = DockerUtils.findImageByIdOrByTag( imageId, this.dockerClient );
+			if( img == null )
+				createImage( imageId );
+
+			createContainer( imageId );
+
+		} catch( TargetException | RuntimeException e ) {
+			// A broken client must not be reused by the next operations
+			this.clientPool.invalidateOnFailure( targetProperties, e );
+			throw e;
+		}
 
-		createContainer( imageId );
 		return true;
 	}
 
@@ -273,28 +293,135 @@ public class DockerMachineConfigurator implements MachineConfigurator {
 			if( ! dockerFile.exists())
 				throw new TargetException( "No Dockerfile was found at " + dockerFile );
 
-			// Start the build.
-			// This will block the current thread until the creation is complete.
-			String builtImageId;
-			this.logger.fine( "Asking Docker to build the image from our Dockerfile." );
+			// Images are tagged with the digest of their build context.
+			// Concurrent builds of the same context are serialized, so that only one of them occurs.
+			String digestTag;
 			try {
-				builtImageId = this.dockerClient
-					.buildImageCmd( dockerFile )
-					.withTags( Sets.newHashSet( imageId ))
-					.withPull( true )
-					.exec( new RoboconfBuildImageResultCallback())
-					.awaitImageId();
-
-			} catch( Exception e ) {
-				Utils.logException( this.logger, e );
+				digestTag = DockerUtils.buildDigestTag( DockerUtils.computeBuildContextDigest( dockerFile ));
+
+			} catch( IOException e ) {
 				throw new TargetException( e );
 			}
 
-			// No need to store the real image ID... Docker has it.
-			// Besides, we search images by both IDs and tags.
-			// Anyway, we can log the information.
-			this.logger.fine( "Image '" + builtImageId + "' was succesfully generated by Roboconf." );
+			String endpoint = this.parameters.getTargetProperties().get( DockerHandler.ENDPOINT );
+			String lockKey = endpoint + "|" + digestTag;
+			BuildLock lock = acquireBuildLock( lockKey );
+			synchronized( lock ) {
+				try {
+					List<Image> images = this.dockerClient.listImagesCmd().exec();
+					Image cachedImage;
+
+					if( DockerUtils.findImageById( imageId, images ) != null
+							|| DockerUtils.findImageByTag( imageId, images ) != null ) {
+						// Another configurator has just built it
+						this.logger.fine( "Image " + imageId + " was generated in the meantime." );
+
+					} else if(( cachedImage = DockerUtils.findImageByTag( digestTag, images )) != null ) {
+						// An image was already built from the same content, just tag it
+						this.logger.fine( "Reusing image '" + cachedImage.getId() + "' (" + digestTag + ") as " + imageId + "." );
+						String[] parts = DockerUtils.splitImageName( imageId );
+						this.dockerClient.tagImageCmd( cachedImage.getId(), parts[ 0 ], parts[ 1 ]).exec();
+
+					} else {
+						buildImage( dockerFile, imageId, digestTag );
+					}
+
+				} catch( TargetException e ) {
+					throw e;
+
+				} catch( Exception e ) {
+					Utils.logException( this.logger, e );
+					throw new TargetException( e );
+
+				} finally {
+					releaseBuildLock( lockKey, lock );
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Builds an image.
+	 * @param dockerFile the Dockerfile (or the directory that contains it)
+	 * @param imageId the image ID
+	 * @param digestTag the tag associated with the digest of the build context
+	 * @throws TargetException if something went wrong
+	 */
+	private void buildImage( File dockerFile, String imageId, String digestTag ) throws TargetException {
+
+		// Start the build.
+		// This will block the current thread until the creation is complete.
+		String builtImageId;
+		this.logger.fine( "Asking Docker to build the image from our Dockerfile." );
+		try {
+			builtImageId = this.dockerClient
+				.buildImageCmd( dockerFile )
+				.withTags( Sets.newHashSet( imageId, digestTag ))
+				.withPull( true )
+				.exec( new RoboconfBuildImageResultCallback())
+				.awaitImageId();
+
+		} catch( Exception e ) {
+			Utils.logException( this.logger, e );
+			throw new TargetException( e );
 		}
+
+		// No need to store the real image ID... Docker has it.
+		// Besides, we search images by both IDs and tags.
+		// Anyway, we can log the information.
+		this.logger.fine( "Image '" + builtImageId + "' was succesfully generated by Roboconf." );
+	}
+
+
+	/**
+	 * Finds the lock associated with the build of a given content.
+	 * <p>
+	 * Every invocation must be followed by {@link #releaseBuildLock(String, BuildLock)}.
+	 * </p>
+	 *
+	 * @param key a non-null key (end-point and digest)
+	 * @return a non-null object
+	 */
+	static BuildLock acquireBuildLock( String key ) {
+
+		synchronized( BUILD_LOCKS ) {
+			BuildLock lock = BUILD_LOCKS.get( key );
+			if( lock == null ) {
+				lock = new BuildLock();
+				BUILD_LOCKS.put( key, lock );
+			}
+
+			lock.users ++;
+			return lock;
+		}
+	}
+
+
+	/**
+	 * Releases a lock obtained with {@link #acquireBuildLock(String)}.
+	 * <p>
+	 * The lock is forgotten once nobody uses it anymore.
+	 * </p>
+	 *
+	 * @param key a non-null key (end-point and digest)
+	 * @param lock the lock
+	 */
+	static void releaseBuildLock( String key, BuildLock lock ) {
+
+		synchronized( BUILD_LOCKS ) {
+			if( -- lock.users <= 0 )
+				BUILD_LOCKS.remove( key );
+		}
+	}
+
+
+	/**
+	 * A lock for the builds of a given content.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class BuildLock {
+		int users = 0;
 	}
 
 
@@ -25,12 +25,20 @@
 
 package net.roboconf.target.docker.internal;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Logger;
 
 import org.apache.commons.lang.WordUtils;
@@ -45,6 +53,7 @@ import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.core.DefaultDockerClientConfig;
 import com.github.dockerjava.core.DefaultDockerClientConfig.Builder;
 import com.github.dockerjava.core.DockerClientBuilder;
+import com.github.dockerjava.jaxrs.JerseyDockerCmdExecFactory;
 
 import net.roboconf.core.utils.Utils;
 import net.roboconf.target.api.TargetException;
@@ -54,6 +63,19 @@ import net.roboconf.target.api.TargetException;
  */
 public final class DockerUtils {
 
+	/**
+	 * The maximum number of HTTP connections a Docker client can open.
+	 * <p>
+	 * Clients are shared (see {@link DockerClientPool}) and used concurrently.
+	 * </p>
+	 */
+	static final int MAX_CONNECTIONS = 20;
+
+	/**
+	 * The repository used to tag generated images with the digest of their build context.
+	 */
+	public static final String DIGEST_REPOSITORY = "roboconf-generated";
+
 	/**
 	 * Private empty constructor.
 	 */
@@ -88,7 +110,14 @@ public final class DockerUtils {
 				.withApiVersion( targetProperties.get( DockerHandler.VERSION ));
 
 		// Build the client.
-		DockerClientBuilder clientBuilder = DockerClientBuilder.getInstance( config.build());
+		// Connections are pooled, so that concurrent operations can reuse them.
+		JerseyDockerCmdExecFactory execFactory = new JerseyDockerCmdExecFactory()
+				.withMaxTotalConnections( MAX_CONNECTIONS )
+				.withMaxPerRouteConnections( MAX_CONNECTIONS );
+
+		DockerClientBuilder clientBuilder = DockerClientBuilder
+				.getInstance( config.build())
+				.withDockerCmdExecFactory( execFactory );
 
 		return clientBuilder.build();
 	}
@@ -185,9 +214,20 @@ public final class DockerUtils {
 	 * @return a container, or null if none was found
 	 */
 	public static Container findContainerByIdOrByName( String name, DockerClient dockerClient ) {
+		List<Container> containers = dockerClient.listContainersCmd().withShowAll( true ).exec();
+		return findContainerByIdOrByName( name, containers );
+	}
+
+
+	/**
+	 * Finds a container by ID or by name.
+	 * @param name the container ID or name (not null)
+	 * @param containers a non-null list of containers
+	 * @return a container, or null if none was found
+	 */
+	public static Container findContainerByIdOrByName( String name, List<Container> containers ) {
 
 		Container result = null;
-		List<Container> containers = dockerClient.listContainersCmd().withShowAll( true ).exec();
 		for( Container container : containers ) {
 			List<String> names = Arrays.asList( container.getNames());
 
@@ -204,6 +244,22 @@ public final class DockerUtils {
 	}
 
 
+	/**
+	 * Determines whether a listed container is running.
+	 * <p>
+	 * Listings do not contain the container states, only a status
+	 * (e.g. "Up 2 hours", "Up 5 minutes (Paused)" or "Exited (0) 3 days ago").
+	 * </p>
+	 *
+	 * @param container a non-null container
+	 * @return true if the container is running (or paused), false otherwise
+	 */
+	public static boolean isRunning( Container container ) {
+		String status = container.getStatus();
+		return status != null && status.trim().toLowerCase().startsWith( "up" );
+	}
+
+
 	/**
 	 * Gets the state of a container.
 	 * @param containerId the container ID
@@ -418,4 +474,89 @@ public final class DockerUtils {
 
 		return containerName;
 	}
+
+
+	/**
+	 * Computes the digest of a build context.
+	 * <p>
+	 * The digest covers the relative paths and the content of all the files
+	 * contained in the build context (the Dockerfile and all the packages it may add).
+	 * Two contexts with the same files result in the same digest.
+	 * </p>
+	 *
+	 * @param dockerFile a Dockerfile, or the directory that contains it (the build context)
+	 * @return a non-null string (hexadecimal)
+	 * @throws IOException if a file could not be read
+	 */
+	public static String computeBuildContextDigest( File dockerFile ) throws IOException {
+
+		File contextDirectory = dockerFile.isDirectory() ? dockerFile : dockerFile.getParentFile();
+
+		// Sort the files, so that the digest does not depend on the listing order
+		Map<String,File> sortedFiles = new TreeMap<> ();
+		for( File f : Utils.listAllFiles( contextDirectory ))
+			sortedFiles.put( Utils.computeFileRelativeLocation( contextDirectory, f ), f );
+
+		try {
+			// Packages can be big: files are streamed, not loaded in memory
+			MessageDigest md = MessageDigest.getInstance( "SHA-256" );
+			byte[] buffer = new byte[ 8192 ];
+			for( Map.Entry<String,File> entry : sortedFiles.entrySet()) {
+
+				md.update( entry.getKey().getBytes( StandardCharsets.UTF_8 ));
+				md.update((byte) 0 );
+				md.update( String.valueOf( entry.getValue().length()).getBytes( StandardCharsets.UTF_8 ));
+				md.update((byte) 0 );
+
+				try( InputStream in = Files.newInputStream( entry.getValue().toPath())) {
+					int length;
+					while(( length = in.read( buffer )) > 0 )
+						md.update( buffer, 0, length );
+				}
+			}
+
+			StringBuilder sb = new StringBuilder();
+			for( byte b : md.digest())
+				sb.append( String.format( "%02x", b ));
+
+			return sb.toString();
+
+		} catch( NoSuchAlgorithmException e ) {
+			// SHA-256 is supported by all the JVMs
+			throw new IOException( e );
+		}
+	}
+
+
+	/**
+	 * Builds the tag associated with a build context digest.
+	 * @param digest a digest (see {@link #computeBuildContextDigest(File)})
+	 * @return a non-null image name, with a repository and a tag
+	 */
+	public static String buildDigestTag( String digest ) {
+		return DIGEST_REPOSITORY + ":" + digest;
+	}
+
+
+	/**
+	 * Splits an image name into a repository and a tag.
+	 * <p>
+	 * "my-registry:5000/my-image:1.0" results in [ "my-registry:5000/my-image", "1.0" ].
+	 * If there is no tag, {@value #LATEST} is used.
+	 * </p>
+	 *
+	 * @param imageName a non-null image name
+	 * @return a non-null array with two elements (the repository and the tag)
+	 */
+	public static String[] splitImageName( String imageName ) {
+
+		String repository = imageName, tag = LATEST;
+		int index = imageName.lastIndexOf( ':' );
+		if( index > imageName.lastIndexOf( '/' )) {
+			repository = imageName.substring( 0, index );
+			tag = imageName.substring( index + 1 );
+		}
+
+		return new String[] { repository, tag };
+	}
 }
@@ -0,0 +1,290 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.docker.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import net.roboconf.core.utils.Utils;
+
+/**
+ * A HTTP server that mimics a (very small) part of the Docker Remote API.
+ * <p>
+ * It supports listing and inspecting containers, and listing, building and tagging images. It counts requests, builds and connections
+ * (remote addresses).
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class DockerApiStandIn implements HttpHandler {
+
+	final Set<String> connections = Collections.synchronizedSet( new HashSet<String> ());
+	final AtomicInteger requests = new AtomicInteger();
+	final AtomicInteger builds = new AtomicInteger();
+	final AtomicInteger tags = new AtomicInteger();
+	final AtomicInteger containerListings = new AtomicInteger();
+
+	// Key = container ID, value = true if the container is running
+	final Map<String,Boolean> containers = new ConcurrentHashMap<> ();
+
+	// Key = image ID, value = tags
+	final Map<String,List<String>> images = new LinkedHashMap<> ();
+	long buildDuration = 0;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+
+	/**
+	 * Starts the server on a random port.
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+
+		this.executor = Executors.newCachedThreadPool();
+		this.server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		this.server.createContext( "/", this );
+		this.server.setExecutor( this.executor );
+		this.server.start();
+	}
+
+
+	/**
+	 * Stops the server.
+	 */
+	public void stop() {
+
+		if( this.server != null )
+			this.server.stop( 0 );
+
+		if( this.executor != null )
+			this.executor.shutdownNow();
+
+		this.server = null;
+		this.executor = null;
+	}
+
+
+	/**
+	 * @return the end-point to use in target properties
+	 */
+	public String getEndpoint() {
+		return "tcp://localhost:" + this.server.getAddress().getPort();
+	}
+
+
+	/**
+	 * Resets the counters.
+	 */
+	public void reset() {
+		this.connections.clear();
+		this.requests.set( 0 );
+		this.builds.set( 0 );
+		this.tags.set( 0 );
+		this.containerListings.set( 0 );
+	}
+
+
+	@Override
+	public void handle( HttpExchange exchange ) throws IOException {
+
+		this.requests.incrementAndGet();
+		this.connections.add( String.valueOf( exchange.getRemoteAddress()));
+
+		// Always consume the request body
+		InputStream in = exchange.getRequestBody();
+		Utils.copyStreamSafely( in, new ByteArrayOutputStream());
+
+		String path = exchange.getRequestURI().getPath();
+		Map<String,List<String>> query = parseQuery( exchange.getRequestURI().getRawQuery());
+
+		int code = 404;
+		String response = "{\"message\":\"not found\"}";
+		try {
+			if( path.matches( ".*/containers/json" )) {
+				this.containerListings.incrementAndGet();
+				code = 200;
+				response = listContainers();
+
+			} else if( path.matches( ".*/containers/[^/]+/json" )) {
+				String id = path.replaceFirst( ".*/containers/([^/]+)/json", "$1" );
+				Boolean running = this.containers.get( id );
+				if( running != null ) {
+					code = 200;
+					response = "{\"Id\":\"" + id + "\",\"Name\":\"/" + id + "\",\"State\":{\"Running\":" + running + ",\"Paused\":false}}";
+				}
+
+			} else if( path.matches( ".*/images/json" )) {
+				code = 200;
+				response = listImages();
+
+			} else if( path.matches( ".*/build" )) {
+				code = 200;
+				response = buildImage( query.get( "t" ));
+
+			} else if( path.matches( ".*/images/.+/tag" )) {
+				String name = path.replaceFirst( ".*/images/(.+)/tag", "$1" );
+				List<String> repo = query.get( "repo" ), tag = query.get( "tag" );
+				if( repo != null && tagImage( name, repo.get( 0 ) + ":" + ( tag == null ? "latest" : tag.get( 0 )))) {
+					code = 201;
+					response = "";
+				}
+			}
+
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			code = 500;
+		}
+
+		byte[] bytes = response.getBytes( StandardCharsets.UTF_8 );
+		exchange.getResponseHeaders().add( "Content-Type", "application/json" );
+		exchange.sendResponseHeaders( code, bytes.length == 0 ? -1 : bytes.length );
+		OutputStream os = exchange.getResponseBody();
+		try {
+			os.write( bytes );
+
+		} finally {
+			Utils.closeQuietly( os );
+			exchange.close();
+		}
+	}
+
+
+	private String listContainers() {
+
+		StringBuilder sb = new StringBuilder( "[" );
+		for( Map.Entry<String,Boolean> entry : this.containers.entrySet()) {
+			if( sb.length() > 1 )
+				sb.append( "," );
+
+			String status = entry.getValue() ? "Up 5 minutes" : "Exited (0) 2 minutes ago";
+			sb.append( "{\"Id\":\"" ).append( entry.getKey()).append( "\",\"Names\":[\"/" ).append( entry.getKey());
+			sb.append( "\"],\"Image\":\"roboconf/roboconf-agent\",\"Command\":\"\",\"Created\":1,\"Status\":\"" );
+			sb.append( status ).append( "\"}" );
+		}
+
+		return sb.append( "]" ).toString();
+	}
+
+
+	private String listImages() {
+
+		StringBuilder sb = new StringBuilder( "[" );
+		synchronized( this.images ) {
+			for( Map.Entry<String,List<String>> entry : this.images.entrySet()) {
+				if( sb.length() > 1 )
+					sb.append( "," );
+
+				sb.append( "{\"Id\":\"" ).append( entry.getKey()).append( "\",\"ParentId\":\"\",\"RepoTags\":[" );
+				for( int i=0; i<entry.getValue().size(); i++ ) {
+					if( i > 0 )
+						sb.append( "," );
+					sb.append( "\"" ).append( entry.getValue().get( i )).append( "\"" );
+				}
+
+				sb.append( "],\"Created\":1,\"Size\":1,\"VirtualSize\":1}" );
+			}
+		}
+
+		return sb.append( "]" ).toString();
+	}
+
+
+	private String buildImage( List<String> imageTags ) throws InterruptedException {
+
+		this.builds.incrementAndGet();
+		Thread.sleep( this.buildDuration );
+
+		String id = UUID.randomUUID().toString().replace( "-", "" ).substring( 0, 12 );
+		synchronized( this.images ) {
+			this.images.put( id, new ArrayList<>( imageTags == null ? new ArrayList<String>( 0 ) : imageTags ));
+		}
+
+		return "{\"stream\":\"Step 1 : FROM roboconf/roboconf-agent\\n\"}\r\n"
+				+ "{\"stream\":\"Successfully built " + id + "\\n\"}\r\n";
+	}
+
+
+	private boolean tagImage( String imageId, String tag ) {
+
+		boolean result;
+		synchronized( this.images ) {
+			List<String> imageTags = this.images.get( imageId );
+			if(( result = imageTags != null ))
+				imageTags.add( tag );
+		}
+
+		if( result )
+			this.tags.incrementAndGet();
+
+		return result;
+	}
+
+
+	private static Map<String,List<String>> parseQuery( String rawQuery ) throws UnsupportedEncodingException {
+
+		Map<String,List<String>> result = new LinkedHashMap<> ();
+		if( rawQuery != null ) {
+			for( String param : rawQuery.split( "&" )) {
+				String[] parts = param.split( "=", 2 );
+				String key = URLDecoder.decode( parts[ 0 ], "UTF-8" );
+				String value = parts.length > 1 ? URLDecoder.decode( parts[ 1 ], "UTF-8" ) : "";
+
+				List<String> values = result.get( key );
+				if( values == null ) {
+					values = new ArrayList<> ();
+					result.put( key, values );
+				}
+
+				values.add( value );
+			}
+		}
+
+		return result;
+	}
+}
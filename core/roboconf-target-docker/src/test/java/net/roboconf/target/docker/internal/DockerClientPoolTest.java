@@ -0,0 +1,221 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.docker.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.dockerjava.api.DockerClient;
+
+import net.roboconf.target.api.TargetException;
+import net.roboconf.target.api.TargetHandlerParameters;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class DockerClientPoolTest {
+
+	private static final int CONTAINERS_COUNT = 100;
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final DockerApiStandIn standIn = new DockerApiStandIn();
+
+
+	@Before
+	public void startServer() throws Exception {
+		this.standIn.start();
+	}
+
+
+	@After
+	public void stopServer() {
+		this.standIn.stop();
+	}
+
+
+	@Test
+	public void testClientsAreShared() throws Exception {
+
+		TestDockerClientPool pool = new TestDockerClientPool();
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( DockerHandler.ENDPOINT, "tcp://localhost:4243" );
+
+		DockerClient client1 = pool.acquire( targetProperties );
+		DockerClient client2 = pool.acquire( new HashMap<String,String>( targetProperties ));
+		Assert.assertSame( client1, client2 );
+		Assert.assertEquals( 1, pool.size());
+		Assert.assertEquals( 1, pool.createdClients );
+
+		// Other credentials => another client
+		targetProperties.put( DockerHandler.USER, "me" );
+		DockerClient client3 = pool.acquire( targetProperties );
+		Assert.assertNotSame( client1, client3 );
+		Assert.assertEquals( 2, pool.size());
+
+		// Releasing clients does not close them
+		pool.release( client1 );
+		pool.release( client2 );
+		pool.release( client3 );
+		pool.release( null );
+		pool.release( Mockito.mock( DockerClient.class ));
+		Mockito.verify( client1, Mockito.never()).close();
+		Mockito.verify( client3, Mockito.never()).close();
+
+		// Closing the pool closes the clients
+		pool.close();
+		Assert.assertEquals( 0, pool.size());
+		Mockito.verify( client1, Mockito.times( 1 )).close();
+		Mockito.verify( client3, Mockito.times( 1 )).close();
+	}
+
+
+	@Test
+	public void testIdleEviction() throws Exception {
+
+		TestDockerClientPool pool = new TestDockerClientPool();
+		pool.setIdleTimeout( 0 );
+
+		Map<String,String> targetProperties = new HashMap<> ();
+		DockerClient client = pool.acquire( targetProperties );
+
+		// Clients being used are never evicted
+		pool.evictIdleClients();
+		Assert.assertEquals( 1, pool.size());
+		Mockito.verify( client, Mockito.never()).close();
+
+		pool.release( client );
+		pool.evictIdleClients();
+		Assert.assertEquals( 0, pool.size());
+		Mockito.verify( client, Mockito.times( 1 )).close();
+
+		// A new client is created when necessary
+		Assert.assertNotSame( client, pool.acquire( targetProperties ));
+		Assert.assertEquals( 2, pool.createdClients );
+
+		// No eviction before the time-out
+		pool.setIdleTimeout( TimeUnit.HOURS.toMillis( 1 ));
+		DockerClient client2 = pool.acquire( targetProperties );
+		pool.release( client2 );
+		pool.release( client2 );
+		pool.evictIdleClients();
+		Assert.assertEquals( 1, pool.size());
+	}
+
+
+	@Test
+	public void testBuildKey() {
+
+		DockerClientPool pool = new DockerClientPool();
+		Map<String,String> targetProperties = new HashMap<> ();
+		String defaultKey = pool.buildKey( targetProperties );
+
+		targetProperties.put( DockerHandler.ENDPOINT, DockerHandler.DEFAULT_ENDPOINT );
+		Assert.assertEquals( defaultKey, pool.buildKey( targetProperties ));
+
+		targetProperties.put( DockerHandler.PASSWORD, "pwd" );
+		String key = pool.buildKey( targetProperties );
+		Assert.assertNotEquals( defaultKey, key );
+
+		// The values cannot be mixed up
+		targetProperties.remove( DockerHandler.PASSWORD );
+		targetProperties.put( DockerHandler.USER, "pwd" );
+		Assert.assertNotEquals( key, pool.buildKey( targetProperties ));
+	}
+
+
+	@Test
+	public void testStatusPolling_withAndWithoutPool() throws Exception {
+
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( DockerHandler.ENDPOINT, this.standIn.getEndpoint());
+
+		TargetHandlerParameters parameters = new TargetHandlerParameters();
+		parameters.setTargetProperties( targetProperties );
+		for( int i=0; i<CONTAINERS_COUNT; i++ )
+			this.standIn.containers.put( "container-" + i, true );
+
+		// Without the pool: one client (and thus one connection) per request
+		long before = System.nanoTime();
+		for( int i=0; i<CONTAINERS_COUNT; i++ ) {
+			DockerClient client = DockerUtils.createDockerClient( targetProperties );
+			try {
+				Assert.assertNotNull( DockerUtils.getContainerState( "container-" + i, client ));
+			} finally {
+				client.close();
+			}
+		}
+
+		long withoutPool = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - before );
+		int connectionsWithoutPool = this.standIn.connections.size();
+		Assert.assertEquals( CONTAINERS_COUNT, this.standIn.requests.get());
+		Assert.assertTrue( connectionsWithoutPool > DockerUtils.MAX_CONNECTIONS );
+
+		// With the pool (through the handler)
+		this.standIn.reset();
+		DockerHandler handler = new DockerHandler();
+		try {
+			before = System.nanoTime();
+			for( int i=0; i<CONTAINERS_COUNT; i++ )
+				Assert.assertTrue( handler.isMachineRunning( parameters, "container-" + i ));
+
+			long withPool = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - before );
+			this.logger.info( "Polling the status of " + CONTAINERS_COUNT + " containers took " + withoutPool + " ms without pool, " + withPool + " ms with it." );
+
+			Assert.assertEquals( CONTAINERS_COUNT, this.standIn.requests.get());
+			Assert.assertEquals( 1, handler.clientPool.size());
+			Assert.assertTrue( this.standIn.connections.size() <= DockerUtils.MAX_CONNECTIONS );
+			Assert.assertTrue( this.standIn.connections.size() < connectionsWithoutPool );
+
+		} finally {
+			handler.clientPool.close();
+		}
+
+		Assert.assertEquals( 0, handler.clientPool.size());
+	}
+
+
+	/**
+	 * A pool that creates mocked clients.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class TestDockerClientPool extends DockerClientPool {
+		int createdClients = 0;
+
+		@Override
+		protected DockerClient createClient( Map<String,String> targetProperties ) throws TargetException {
+			this.createdClients ++;
+			return Mockito.mock( DockerClient.class );
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.docker.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.roboconf.target.api.TargetHandlerParameters;
+import net.roboconf.target.api.TargetHandlerUtils;
+
+/**
+ * Tests the Docker handler against a Docker API stand-in.
+ * @author Vincent Zurczak - Linagora
+ */
+public class DockerHandlerWithStandInTest {
+
+	private final DockerApiStandIn standIn = new DockerApiStandIn();
+	private final DockerHandler handler = new DockerHandler();
+
+
+	@Before
+	public void startServer() throws Exception {
+		this.standIn.start();
+	}
+
+
+	@After
+	public void stopServer() {
+		this.handler.clientPool.close();
+		this.standIn.stop();
+	}
+
+
+	@Test
+	public void testAreMachinesRunning() throws Exception {
+
+		// 100 containers, one out of three is stopped
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( DockerHandler.ENDPOINT, this.standIn.getEndpoint());
+
+		List<TargetHandlerParameters> parameters = new ArrayList<> ();
+		List<String> machineIds = new ArrayList<> ();
+		for( int i=0; i<100; i++ ) {
+			this.standIn.containers.put( "container-" + i, i % 3 != 0 );
+
+			TargetHandlerParameters p = new TargetHandlerParameters();
+			p.setTargetProperties( targetProperties );
+			parameters.add( p );
+			machineIds.add( "container-" + i );
+		}
+
+		// And one that does not exist
+		parameters.add( parameters.get( 0 ));
+		machineIds.add( "unknown-container" );
+
+		// One single listing
+		Map<String,Boolean> result = TargetHandlerUtils.areMachinesRunning( this.handler, parameters, machineIds );
+		Assert.assertEquals( 1, this.standIn.requests.get());
+		Assert.assertEquals( 1, this.standIn.containerListings.get());
+
+		Assert.assertEquals( 101, result.size());
+		Assert.assertFalse( result.get( "unknown-container" ));
+		for( int i=0; i<100; i++ ) {
+			String machineId = "container-" + i;
+			Assert.assertEquals( machineId, i % 3 != 0, result.get( machineId ));
+
+			// Same result than the machine per machine method
+			Assert.assertEquals( machineId, result.get( machineId ), this.handler.isMachineRunning( parameters.get( i ), machineId ));
+		}
+	}
+
+
+	@Test
+	public void testAreMachinesRunning_unreachableEndpoint() throws Exception {
+
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( DockerHandler.ENDPOINT, "tcp://localhost:1" );
+
+		TargetHandlerParameters p = new TargetHandlerParameters();
+		p.setTargetProperties( targetProperties );
+
+		List<TargetHandlerParameters> parameters = new ArrayList<> ();
+		parameters.add( p );
+		List<String> machineIds = new ArrayList<> ();
+		machineIds.add( "container" );
+
+		// The state remains unknown
+		Map<String,Boolean> result = this.handler.areMachinesRunning( parameters, machineIds );
+		Assert.assertEquals( 0, result.size());
+	}
+}
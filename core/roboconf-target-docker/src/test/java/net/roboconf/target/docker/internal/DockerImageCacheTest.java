@@ -0,0 +1,195 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.docker.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.dockerjava.api.DockerClient;
+
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.target.api.TargetHandlerParameters;
+
+/**
+ * Tests the reuse of generated images, against a Docker API stand-in.
+ * @author Vincent Zurczak - Linagora
+ */
+public class DockerImageCacheTest {
+
+	private static final int CONTAINERS_COUNT = 50;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final DockerApiStandIn standIn = new DockerApiStandIn();
+	private final DockerClientPool clientPool = new DockerClientPool();
+	private File targetDirectory;
+
+
+	@Before
+	public void startServer() throws Exception {
+
+		this.standIn.buildDuration = 500;
+		this.standIn.start();
+
+		this.targetDirectory = this.folder.newFolder();
+		File dockerfileDir = new File( this.targetDirectory, "img" );
+		Utils.createDirectory( new File( dockerfileDir, "packages" ));
+		Utils.writeStringInto( "FROM roboconf/roboconf-agent:latest", new File( dockerfileDir, "Dockerfile" ));
+		Utils.writeStringInto( "some package", new File( dockerfileDir, "packages/some-package.zip" ));
+	}
+
+
+	@After
+	public void stopServer() {
+		this.clientPool.close();
+		this.standIn.stop();
+	}
+
+
+	@Test
+	public void testConcurrentCreations_onlyOneBuild() throws Exception {
+
+		// 50 containers are created at once.
+		// They use 5 different image names, but the same Dockerfile.
+		createContainersConcurrently( "v1" );
+		Assert.assertEquals( 1, this.standIn.builds.get());
+		Assert.assertEquals( 4, this.standIn.tags.get());
+		Assert.assertEquals( 1, this.standIn.images.size());
+
+		List<String> imageTags = this.standIn.images.values().iterator().next();
+		for( int i=0; i<5; i++ )
+			Assert.assertTrue( imageTags.contains( "rbcf-test-" + i + ":v1" ));
+
+		// Other image names, same content => no build
+		this.standIn.reset();
+		createContainersConcurrently( "v2" );
+		Assert.assertEquals( 0, this.standIn.builds.get());
+		Assert.assertEquals( 5, this.standIn.tags.get());
+		Assert.assertEquals( 1, this.standIn.images.size());
+
+		// The content changes => a new build
+		this.standIn.reset();
+		Utils.writeStringInto( "another package", new File( this.targetDirectory, "img/packages/some-package.zip" ));
+		createContainersConcurrently( "v3" );
+		Assert.assertEquals( 1, this.standIn.builds.get());
+		Assert.assertEquals( 4, this.standIn.tags.get());
+		Assert.assertEquals( 2, this.standIn.images.size());
+
+		// Build locks are not kept once the builds are over
+		Assert.assertEquals( 0, DockerMachineConfigurator.BUILD_LOCKS.size());
+	}
+
+
+	@Test
+	public void testBuildLocks() {
+
+		DockerMachineConfigurator.BuildLock lock1 = DockerMachineConfigurator.acquireBuildLock( "key" );
+		DockerMachineConfigurator.BuildLock lock2 = DockerMachineConfigurator.acquireBuildLock( "key" );
+		Assert.assertSame( lock1, lock2 );
+		Assert.assertEquals( 1, DockerMachineConfigurator.BUILD_LOCKS.size());
+
+		DockerMachineConfigurator.releaseBuildLock( "key", lock1 );
+		Assert.assertEquals( 1, DockerMachineConfigurator.BUILD_LOCKS.size());
+
+		DockerMachineConfigurator.releaseBuildLock( "key", lock2 );
+		Assert.assertEquals( 0, DockerMachineConfigurator.BUILD_LOCKS.size());
+	}
+
+
+	/**
+	 * Creates the images for {@value #CONTAINERS_COUNT} containers concurrently.
+	 * <p>
+	 * This is what {@link DockerMachineConfigurator#configure()} does before creating a container.
+	 * </p>
+	 *
+	 * @param version the version of the image names
+	 * @throws Exception
+	 */
+	private void createContainersConcurrently( String version ) throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool( CONTAINERS_COUNT );
+		try {
+			List<Future<Void>> futures = new ArrayList<> ();
+			for( int i=0; i<CONTAINERS_COUNT; i++ ) {
+
+				final String imageId = "rbcf-test-" + ( i % 5 ) + ":" + version;
+				Map<String,String> targetProperties = new HashMap<> ();
+				targetProperties.put( DockerHandler.ENDPOINT, this.standIn.getEndpoint());
+				targetProperties.put( DockerHandler.GENERATE_IMAGE_FROM, "img" );
+				targetProperties.put( DockerHandler.IMAGE_ID, imageId );
+
+				TargetHandlerParameters parameters = new TargetHandlerParameters();
+				parameters.setTargetProperties( targetProperties );
+				parameters.setTargetPropertiesDirectory( this.targetDirectory );
+
+				final DockerMachineConfigurator configurator = new DockerMachineConfigurator(
+						parameters, "machine-" + i, new Instance(),
+						this.folder.getRoot(), new HashMap<String,File> (),
+						this.clientPool );
+
+				futures.add( executor.submit( new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+
+						DockerClient client = DockerImageCacheTest.this.clientPool.acquire( configurator.getParameters().getTargetProperties());
+						configurator.dockerClient = client;
+						try {
+							if( DockerUtils.findImageByIdOrByTag( imageId, client ) == null )
+								configurator.createImage( imageId );
+
+						} finally {
+							configurator.close();
+						}
+
+						return null;
+					}
+				}));
+			}
+
+			for( Future<Void> future : futures )
+				future.get();
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -31,6 +31,7 @@ import static net.roboconf.target.docker.internal.DockerMachineConfigurator.USER
 import static net.roboconf.target.docker.internal.DockerMachineConfigurator.USER_DATA_FILE;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -52,8 +53,11 @@ import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.BuildImageCmd;
 import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.ListImagesCmd;
 import com.github.dockerjava.api.command.StartContainerCmd;
+import com.github.dockerjava.api.command.TagImageCmd;
 import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.api.model.Volume;
 
 import net.roboconf.core.model.beans.Instance;
@@ -72,6 +76,7 @@ public class DockerMachineConfiguratorTest {
 	public TemporaryFolder folder = new TemporaryFolder();
 
 	private DockerClient dockerClient;
+	private DockerClientPool clientPool;
 	private DockerMachineConfigurator configurator;
 	private Map<String,File> containerIdToVolume;
 
@@ -86,12 +91,14 @@ public class DockerMachineConfiguratorTest {
 		parameters.setScopedInstancePath( "/vm" );
 
 		this.containerIdToVolume = new HashMap<> ();
+		this.clientPool = Mockito.mock( DockerClientPool.class );
 		this.configurator = new DockerMachineConfigurator(
 				parameters,
 				"machineId",
 				new Instance(),
 				this.folder.newFolder(),
-				this.containerIdToVolume );
+				this.containerIdToVolume,
+				this.clientPool );
 
 		this.dockerClient = Mockito.mock( DockerClient.class );
 		this.configurator.dockerClient = this.dockerClient;
@@ -102,15 +109,18 @@ public class DockerMachineConfiguratorTest {
 	@Test
 	public void testClose() throws Exception {
 
-		// Docker client is not null
+		// Docker client is not null => it is released, not closed (it is shared)
 		Mockito.verifyZeroInteractions( this.dockerClient );
 		this.configurator.close();
-		Mockito.verify( this.dockerClient, Mockito.times( 1 )).close();
+		Mockito.verify( this.clientPool, Mockito.times( 1 )).release( this.dockerClient );
+		Mockito.verifyZeroInteractions( this.dockerClient );
+		Assert.assertNull( this.configurator.dockerClient );
 
 		// When it is null
-		Mockito.reset( this.dockerClient );
+		Mockito.reset( this.clientPool );
 		this.configurator.dockerClient = null;
 		this.configurator.close();
+		Mockito.verifyZeroInteractions( this.clientPool );
 		Mockito.verifyNoMoreInteractions( this.dockerClient );
 	}
 
@@ -365,6 +375,10 @@ public class DockerMachineConfiguratorTest {
 		Mockito.when( buildImageCmd.exec( Mockito.any( RoboconfBuildImageResultCallback.class ))).thenReturn( cb );
 		Mockito.when( cb.awaitImageId()).thenReturn( "my-img-id" );
 
+		ListImagesCmd listImagesCmd = Mockito.mock( ListImagesCmd.class );
+		Mockito.when( this.dockerClient.listImagesCmd()).thenReturn( listImagesCmd );
+		Mockito.when( listImagesCmd.exec()).thenReturn( new ArrayList<Image>( 0 ));
+
 		// Create the container (mock)
 		final String imageId = "toto";
 		this.configurator.getParameters().setTargetPropertiesDirectory( this.folder.newFolder());
@@ -372,13 +386,17 @@ public class DockerMachineConfiguratorTest {
 
 		File dockerfileDir = new File( this.configurator.getParameters().getTargetPropertiesDirectory(), "img" );
 		Utils.createDirectory( dockerfileDir );
+		Utils.writeStringInto( "FROM ubuntu", new File( dockerfileDir, "Dockerfile" ));
+		String digestTag = DockerUtils.buildDigestTag( DockerUtils.computeBuildContextDigest( dockerfileDir ));
 
 		this.configurator.createImage( imageId );
 
 		// Check the client
-		Mockito.verify( this.dockerClient, Mockito.only()).buildImageCmd( dockerfileDir );
+		Mockito.verify( this.dockerClient ).listImagesCmd();
+		Mockito.verify( this.dockerClient ).buildImageCmd( dockerfileDir );
+		Mockito.verifyNoMoreInteractions( this.dockerClient );
 		Mockito.verify( buildImageCmd ).withPull( true );
-		Mockito.verify( buildImageCmd ).withTags( new HashSet<>( Arrays.asList( imageId )));
+		Mockito.verify( buildImageCmd ).withTags( new HashSet<>( Arrays.asList( imageId, digestTag )));
 		Mockito.verify( buildImageCmd ).exec( Mockito.any( RoboconfBuildImageResultCallback.class ));
 		Mockito.verifyNoMoreInteractions( buildImageCmd );
 		Mockito.verify( cb, Mockito.only()).awaitImageId();
@@ -389,6 +407,9 @@ public class DockerMachineConfiguratorTest {
 	public void testCreateImage_error() throws Exception {
 
 		// Prepare the mocks
+		ListImagesCmd listImagesCmd = Mockito.mock( ListImagesCmd.class );
+		Mockito.when( this.dockerClient.listImagesCmd()).thenReturn( listImagesCmd );
+		Mockito.when( listImagesCmd.exec()).thenReturn( new ArrayList<Image>( 0 ));
 		Mockito.when( this.dockerClient.buildImageCmd( Mockito.any( File.class ))).thenThrow( new RuntimeException( "for test" ));
 
 		// Create the container (mock)
@@ -401,4 +422,61 @@ public class DockerMachineConfiguratorTest {
 
 		this.configurator.createImage( imageId );
 	}
+
+
+	@Test
+	public void testCreateImage_sameContentIsReused() throws Exception {
+
+		// Prepare the build context
+		this.configurator.getParameters().setTargetPropertiesDirectory( this.folder.newFolder());
+		this.configurator.getParameters().getTargetProperties().put( GENERATE_IMAGE_FROM, "img" );
+
+		File dockerfileDir = new File( this.configurator.getParameters().getTargetPropertiesDirectory(), "img" );
+		Utils.createDirectory( dockerfileDir );
+		Utils.writeStringInto( "FROM ubuntu", new File( dockerfileDir, "Dockerfile" ));
+		String digestTag = DockerUtils.buildDigestTag( DockerUtils.computeBuildContextDigest( dockerfileDir ));
+
+		// An image was already built from this content (with another tag)
+		Image img = Mockito.mock( Image.class );
+		Mockito.when( img.getId()).thenReturn( "cached-image-id" );
+		Mockito.when( img.getRepoTags()).thenReturn( new String[] { "old-tag:1.0", digestTag });
+
+		ListImagesCmd listImagesCmd = Mockito.mock( ListImagesCmd.class );
+		Mockito.when( this.dockerClient.listImagesCmd()).thenReturn( listImagesCmd );
+		Mockito.when( listImagesCmd.exec()).thenReturn( Arrays.asList( img ));
+
+		TagImageCmd tagImageCmd = Mockito.mock( TagImageCmd.class );
+		Mockito.when( this.dockerClient.tagImageCmd( Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn( tagImageCmd );
+
+		// The image is tagged, not built
+		this.configurator.createImage( "my-registry:5000/new-tag:2.0" );
+
+		Mockito.verify( this.dockerClient ).listImagesCmd();
+		Mockito.verify( this.dockerClient ).tagImageCmd( "cached-image-id", "my-registry:5000/new-tag", "2.0" );
+		Mockito.verifyNoMoreInteractions( this.dockerClient );
+		Mockito.verify( tagImageCmd ).exec();
+	}
+
+
+	@Test
+	public void testCreateImage_imageCreatedInTheMeantime() throws Exception {
+
+		this.configurator.getParameters().setTargetPropertiesDirectory( this.folder.newFolder());
+		this.configurator.getParameters().getTargetProperties().put( GENERATE_IMAGE_FROM, "img" );
+
+		File dockerfileDir = new File( this.configurator.getParameters().getTargetPropertiesDirectory(), "img" );
+		Utils.createDirectory( dockerfileDir );
+
+		Image img = Mockito.mock( Image.class );
+		Mockito.when( img.getId()).thenReturn( "image-id" );
+		Mockito.when( img.getRepoTags()).thenReturn( new String[] { "toto:latest" });
+
+		ListImagesCmd listImagesCmd = Mockito.mock( ListImagesCmd.class );
+		Mockito.when( this.dockerClient.listImagesCmd()).thenReturn( listImagesCmd );
+		Mockito.when( listImagesCmd.exec()).thenReturn( Arrays.asList( img ));
+
+		// Nothing to build, nothing to tag
+		this.configurator.createImage( "toto" );
+		Mockito.verify( this.dockerClient, Mockito.only()).listImagesCmd();
+	}
 }
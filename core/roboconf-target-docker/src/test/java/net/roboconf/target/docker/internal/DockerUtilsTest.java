@@ -25,18 +25,22 @@
 
 package net.roboconf.target.docker.internal;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.model.Capability;
 
+import net.roboconf.core.utils.Utils;
 import net.roboconf.target.api.TargetException;
 
 /**
@@ -44,6 +48,10 @@ import net.roboconf.target.api.TargetException;
  */
 public class DockerUtilsTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
 	@Test
 	public void testEmptyConfiguration() throws Exception {
 
@@ -240,4 +248,47 @@ public class DockerUtilsTest {
 		Assert.assertEquals( 61, name.length());
 		Assert.assertTrue( name.matches( "^a{61}$" ));
 	}
+
+
+	@Test
+	public void testComputeBuildContextDigest() throws Exception {
+
+		File dir = this.folder.newFolder();
+		File dockerFile = new File( dir, "Dockerfile" );
+		Utils.writeStringInto( "FROM ubuntu", dockerFile );
+		Utils.createDirectory( new File( dir, "packages" ));
+		Utils.writeStringInto( "agent", new File( dir, "packages/agent.tar.gz" ));
+
+		// The directory or the Dockerfile, same thing
+		String digest = DockerUtils.computeBuildContextDigest( dir );
+		Assert.assertEquals( 64, digest.length());
+		Assert.assertEquals( digest, DockerUtils.computeBuildContextDigest( dockerFile ));
+
+		// Same content elsewhere => same digest
+		File otherDir = this.folder.newFolder();
+		Utils.copyDirectory( dir, otherDir );
+		Assert.assertEquals( digest, DockerUtils.computeBuildContextDigest( otherDir ));
+
+		// A package changes => another digest
+		Utils.writeStringInto( "agent 2", new File( dir, "packages/agent.tar.gz" ));
+		String newDigest = DockerUtils.computeBuildContextDigest( dir );
+		Assert.assertNotEquals( digest, newDigest );
+
+		// A new file => another digest
+		Utils.writeStringInto( "", new File( dir, "packages/empty.txt" ));
+		Assert.assertNotEquals( newDigest, DockerUtils.computeBuildContextDigest( dir ));
+
+		Assert.assertEquals( DockerUtils.DIGEST_REPOSITORY + ":" + digest, DockerUtils.buildDigestTag( digest ));
+	}
+
+
+	@Test
+	public void testSplitImageName() {
+
+		Assert.assertArrayEquals( new String[] { "ubuntu", "latest" }, DockerUtils.splitImageName( "ubuntu" ));
+		Assert.assertArrayEquals( new String[] { "ubuntu", "16.04" }, DockerUtils.splitImageName( "ubuntu:16.04" ));
+		Assert.assertArrayEquals( new String[] { "roboconf/agent", "0.9" }, DockerUtils.splitImageName( "roboconf/agent:0.9" ));
+		Assert.assertArrayEquals( new String[] { "localhost:5000/agent", "latest" }, DockerUtils.splitImageName( "localhost:5000/agent" ));
+		Assert.assertArrayEquals( new String[] { "localhost:5000/agent", "1" }, DockerUtils.splitImageName( "localhost:5000/agent:1" ));
+	}
 }
@@ -95,7 +95,8 @@ public class ToRunByHandDockerImageGenerationTest {
 				"machineId",
 				new Instance(),
 				tmpFolder,
-				containerIdToVolume );
+				containerIdToVolume,
+				new DockerClientPool());
 
 		// Test the creation
 		Container container = null;
@@ -54,6 +54,7 @@ import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.userdata.UserDataHelpers;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.target.api.AbstractThreadedTargetHandler;
+import net.roboconf.target.api.TargetClientCache;
 import net.roboconf.target.api.TargetException;
 import net.roboconf.target.api.TargetHandlerParameters;
 
@@ -82,6 +83,33 @@ public class Ec2IaasHandler extends AbstractThreadedTargetHandler {
 		DEFAULTS.put( VOLUME_DELETE_OT_PREFIX, "false" );
 	}
 
+	final TargetClientCache<AmazonEC2> ec2Clients = new TargetClientCache<AmazonEC2>(
+			Ec2Constants.EC2_ENDPOINT,
+			Ec2Constants.EC2_ACCESS_KEY,
+			Ec2Constants.EC2_SECRET_KEY ) {
+
+		@Override
+		protected AmazonEC2 createClient( Map<String,String> targetProperties ) throws TargetException {
+			return createEc2Client( targetProperties );
+		}
+
+		@Override
+		protected void closeClient( AmazonEC2 client ) throws Exception {
+			client.shutdown();
+		}
+	};
+
+
+	/**
+	 * Stops the background threads and closes the cached EC2 clients.
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		this.ec2Clients.close();
+	}
+
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.roboconf.target.api.TargetHandler#getTargetId()
@@ -110,8 +138,11 @@ public class Ec2IaasHandler extends AbstractThreadedTargetHandler {
 
 		// Deal with the creation
 		String instanceId;
+		AmazonEC2 ec2 = null;
 		try {
-			AmazonEC2 ec2 = createEc2Client( parameters.getTargetProperties());
+			// Clients are cached: validate all the properties here
+			parseProperties( parameters.getTargetProperties());
+			ec2 = this.ec2Clients.acquire( parameters.getTargetProperties());
 			String userData = UserDataHelpers.writeUserDataAsString(
 					parameters.getMessagingProperties(),
 					parameters.getDomain(),
@@ -124,7 +155,11 @@ public class Ec2IaasHandler extends AbstractThreadedTargetHandler {
 
 		} catch( Exception e ) {
 			this.logger.severe( "An error occurred while creating a new machine on EC2. " + e.getMessage());
+			this.ec2Clients.invalidateOnFailure( parameters.getTargetProperties(), e );
 			throw new TargetException( e );
+
+		} finally {
+			this.ec2Clients.release( ec2 );
 		}
 
 		return instanceId;
@@ -159,8 +194,8 @@ public class Ec2IaasHandler extends AbstractThreadedTargetHandler {
 	throws TargetException {
 
 		boolean result = false;
+		AmazonEC2 ec2 = this.ec2Clients.acquire( parameters.getTargetProperties());
 		try {
-			AmazonEC2 ec2 = createEc2Client( parameters.getTargetProperties());
 			DescribeInstancesRequest dis = new DescribeInstancesRequest();
 			dis.setInstanceIds(Collections.singletonList(machineId));
 
@@ -172,7 +207,11 @@ public class Ec2IaasHandler extends AbstractThreadedTargetHandler {
 
 		} catch( AmazonClientException e ) {
 			this.logger.severe( "An error occurred while checking whether a machine is running on Amazon EC2. " + e.getMessage());
+			this.ec2Clients.invalidateOnFailure( parameters.getTargetProperties(), e );
 			throw new TargetException( e );
+
+		} finally {
+			this.ec2Clients.release( ec2 );
 		}
 
 		return result;
@@ -189,15 +228,20 @@ public class Ec2IaasHandler extends AbstractThreadedTargetHandler {
 
 		this.logger.fine( "Terminating machine '" + machineId + "'." );
 		cancelMachineConfigurator( machineId );
+		AmazonEC2 ec2 = null;
 		try {
-			AmazonEC2 ec2 = createEc2Client( parameters.getTargetProperties());
+			ec2 = this.ec2Clients.acquire( parameters.getTargetProperties());
 			TerminateInstancesRequest terminateInstancesRequest = new TerminateInstancesRequest();
 			terminateInstancesRequest.withInstanceIds( machineId );
 			ec2.terminateInstances( terminateInstancesRequest );
 
 		} catch( Exception e ) {
 			this.logger.severe( "An error occurred while terminating a machine on Amazon EC2. " + e.getMessage());
+			this.ec2Clients.invalidateOnFailure( parameters.getTargetProperties(), e );
 			throw new TargetException( e );
+
+		} finally {
+			this.ec2Clients.release( ec2 );
 		}
 	}
 
@@ -212,8 +256,9 @@ public class Ec2IaasHandler extends AbstractThreadedTargetHandler {
 	throws TargetException {
 
 		String result = null;
+		AmazonEC2 ec2 = null;
 		try {
-			AmazonEC2 ec2 = createEc2Client( parameters.getTargetProperties());
+			ec2 = this.ec2Clients.acquire( parameters.getTargetProperties());
 			DescribeInstancesRequest dis = new DescribeInstancesRequest();
 			dis.setInstanceIds(Collections.singletonList(machineId));
 
@@ -228,7 +273,11 @@ public class Ec2IaasHandler extends AbstractThreadedTargetHandler {
 
 		} catch( Exception e ) {
 			this.logger.severe( "An error occurred while retrieving a public IP address from Amazon EC2. " + e.getMessage());
+			this.ec2Clients.invalidateOnFailure( parameters.getTargetProperties(), e );
 			throw new TargetException( e );
+
+		} finally {
+			this.ec2Clients.release( ec2 );
 		}
 
 		return result;
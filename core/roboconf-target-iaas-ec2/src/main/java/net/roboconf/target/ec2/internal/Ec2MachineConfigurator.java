@@ -57,14 +57,14 @@ import com.amazonaws.services.ec2.model.Tag;
 
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.utils.Utils;
-import net.roboconf.target.api.AbstractThreadedTargetHandler.MachineConfigurator;
+import net.roboconf.target.api.AbstractThreadedTargetHandler.SteppedMachineConfigurator;
 import net.roboconf.target.api.TargetException;
 
 /**
  * A machine configurator for EC2.
  * @author Vincent Zurczak - Linagora
  */
-public class Ec2MachineConfigurator implements MachineConfigurator {
+public class Ec2MachineConfigurator implements SteppedMachineConfigurator {
 
 	/**
 	 * The steps of a workflow.
@@ -119,6 +119,12 @@ public class Ec2MachineConfigurator implements MachineConfigurator {
 		return this.scopedInstance;
 	}
 
+
+	@Override
+	public Object getCurrentStep() {
+		return this.state;
+	}
+
 	@Override
 	public void close() throws IOException {
 		// nothing
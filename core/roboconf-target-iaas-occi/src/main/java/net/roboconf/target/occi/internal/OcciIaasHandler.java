@@ -53,8 +53,22 @@ public class OcciIaasHandler extends AbstractThreadedTargetHandler {
 	static final String PASSWORD = "occi.password";
 	static final String RENDERING = "occi.rendering"; // http or json, default http
 
+	// VMs are polled from this delay, and then less and less often (exponential back-off)
+	static final int POLLING_DELAY = 250;
+	static final int POLLING_MAX_DELAY = 4000;
+
 	private final Logger logger = Logger.getLogger(getClass().getName());
 
+
+	/**
+	 * Constructor.
+	 */
+	public OcciIaasHandler() {
+		this.delay = POLLING_DELAY;
+		this.maxDelay = POLLING_MAX_DELAY;
+	}
+
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.roboconf.target.api.TargetHandler#getTargetId()
@@ -99,8 +113,7 @@ public class OcciIaasHandler extends AbstractThreadedTargetHandler {
 					userData,
 					targetProperties.get(USER),
 					targetProperties.get(PASSWORD),
-					targetProperties,
-					false);
+					targetProperties);
 			} else {
 				return OcciVMUtils.createVM(targetProperties.get(SERVER_IP_PORT),
 						id.toString(),
@@ -31,14 +31,14 @@ import java.util.Properties;
 import java.util.logging.Logger;
 
 import net.roboconf.core.model.beans.Instance;
-import net.roboconf.target.api.AbstractThreadedTargetHandler.MachineConfigurator;
+import net.roboconf.target.api.AbstractThreadedTargetHandler.SteppedMachineConfigurator;
 import net.roboconf.target.api.TargetException;
 
 /**
  * A machine configurator for OCCI.
  * @author Pierre-Yves Gibello - Linagora
  */
-public class OcciMachineConfigurator implements MachineConfigurator {
+public class OcciMachineConfigurator implements SteppedMachineConfigurator {
 
 	/**
 	 * The steps of a workflow.
@@ -53,6 +53,9 @@ public class OcciMachineConfigurator implements MachineConfigurator {
 	}
 	private State state = State.STARTING_VM;
 
+	// Configurators must not block: do not wait too long for the VM to reply
+	static final int REACHABILITY_TIMEOUT = 1000;
+
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final String machineId;
 	private final Map<String,String> targetProperties;
@@ -80,6 +83,12 @@ public class OcciMachineConfigurator implements MachineConfigurator {
 	}
 
 
+	@Override
+	public Object getCurrentStep() {
+		return this.state;
+	}
+
+
 	@Override
 	public void close() throws IOException {
 		// nothing
@@ -94,7 +103,7 @@ public class OcciMachineConfigurator implements MachineConfigurator {
 			// Is the VM up?
 			if(this.state == State.STARTING_VM) {
 				if(OcciVMUtils.isVMRunning(
-						targetProperties.get(OcciIaasHandler.SERVER_IP_PORT), machineId)) {
+						targetProperties.get(OcciIaasHandler.SERVER_IP_PORT), machineId, REACHABILITY_TIMEOUT)) {
 					this.state = State.RUNNING_VM;
 				}
 			}
@@ -26,9 +26,9 @@
 package net.roboconf.target.occi.internal;
 
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
@@ -38,6 +38,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -49,10 +50,28 @@ import net.roboconf.target.api.TargetException;
 
 /**
  * Utilitary class to create and manage VMs using OCCI.
+ * <p>
+ * Connections are never disconnected explicitly and responses are always
+ * read entirely. This way, the JDK keeps the underlying sockets alive and
+ * reuses them for the next requests sent to the same OCCI server.
+ * </p>
+ * <p>
+ * No method waits for a VM to be ready. Target handlers must poll
+ * the VM state (see {@link OcciMachineConfigurator}).
+ * </p>
+ *
  * @author Pierre-Yves Gibello - Linagora
  */
 public class OcciVMUtils {
 
+	static final int CONNECT_TIMEOUT = 10000;
+	static final int READ_TIMEOUT = 60000;
+	static final int DEFAULT_REACHABILITY_TIMEOUT = 5000;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final AtomicBoolean COOKIE_HANDLER_INSTALLED = new AtomicBoolean( false );
+
+
 	/**
 	 * Creates a VM (OCCI / VMWare) using HTTP rendering.
 	 * @param hostIpPort IP and port of OCCI server (eg. "172.16.225.91:8080")
@@ -80,13 +99,13 @@ public class OcciVMUtils {
 
 		//TODO This is a HACK for CloudAutomation APIs. Expecting interoperable implementation !
 		if(hostIpPort.contains("multi-language-connector")) {
-			return createCloudAutomationVM(hostIpPort, template, title, userData, config, false);
+			return createCloudAutomationVM(hostIpPort, template, title, userData, config);
 		}
 
 		String ret = null;
 		URL url = null;
 		try {
-			CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
+			installCookieHandler();
 			url = new URL("http://" + hostIpPort + "/compute/" + id);
 		} catch (MalformedURLException e) {
 			throw new TargetException(e);
@@ -96,9 +115,8 @@ public class OcciVMUtils {
 		if(Utils.isEmptyOrWhitespaces(summary)) summary = "Generated by Roboconf";
 
 		HttpURLConnection httpURLConnection = null;
-		DataInputStream in = null;
 		try {
-			httpURLConnection = (HttpURLConnection) url.openConnection();
+			httpURLConnection = openConnection(url);
 			httpURLConnection.setRequestMethod("PUT");
 			httpURLConnection.setRequestProperty("Content-Type", "text/occi");
 			httpURLConnection.setRequestProperty("Accept", "*/*");
@@ -160,18 +178,10 @@ public class OcciVMUtils {
 						"password=\"" + password + "\"");
 			}
 
-			in = new DataInputStream(httpURLConnection.getInputStream());
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			Utils.copyStreamSafely(in, out);
-			ret = out.toString( "UTF-8" );
+			ret = readResponse(httpURLConnection);
 
 		} catch (IOException e) {
 			throw new TargetException(e);
-		}  finally {
-			Utils.closeQuietly(in);
-			if (httpURLConnection != null) {
-				httpURLConnection.disconnect();
-			}
 		}
 		return ("OK".equalsIgnoreCase(ret.trim()) ? id : null);
 	}
@@ -188,7 +198,6 @@ public class OcciVMUtils {
 	 * @param user VM credentials (user name)
 	 * @param password VM credentials (password)
 	 * @param config A map of parameters (eg. mixin attributes)
-	 * @param waitForActive If true, wait until VM is active
 	 * @return The VM ID
 	 */
 	public static String createVMJson(
@@ -200,29 +209,27 @@ public class OcciVMUtils {
 			String userData,
 			String user,
 			String password,
-			Map<String,String> config,
-			boolean waitForActive )
+			Map<String,String> config )
 	throws TargetException {
 
 		//TODO This is a HACK for CloudAutomation APIs. Expecting interoperable implementation !
 		if(hostIpPort.contains("multi-language-connector")) {
-			return createCloudAutomationVM(hostIpPort, template, title, userData, config, false);
+			return createCloudAutomationVM(hostIpPort, template, title, userData, config);
 		} else {
 
 			String vmId = null;
 			URL url = null;
 			try {
-				CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
+				installCookieHandler();
 				url = new URL("http://" + hostIpPort + "/vm/");
 			} catch (MalformedURLException e) {
 				throw new TargetException(e);
 			}
 
 			HttpURLConnection httpURLConnection = null;
-			DataInputStream in = null;
 			DataOutputStream output = null;
 			try {
-				httpURLConnection = (HttpURLConnection) url.openConnection();
+				httpURLConnection = openConnection(url);
 				httpURLConnection.setRequestMethod("PUT");
 				httpURLConnection.setRequestProperty("Content-Type", "application/json");
 				httpURLConnection.setRequestProperty("Accept", "application/json");
@@ -278,44 +285,20 @@ public class OcciVMUtils {
 				Utils.closeQuietly(output);
 				output = null;
 
-				in = new DataInputStream(httpURLConnection.getInputStream());
-				ByteArrayOutputStream out = new ByteArrayOutputStream();
-				Utils.copyStreamSafely(in, out);
+				String response = readResponse(httpURLConnection);
 
 				// Parse JSON response to extract VM ID
-				ObjectMapper objectMapper = new ObjectMapper();
-				JsonResponse rsp = objectMapper.readValue(out.toString( "UTF-8" ), JsonResponse.class);
+				JsonResponse rsp = MAPPER.readValue(response, JsonResponse.class);
 				vmId = rsp.getId();
 
-				if(! Utils.isEmptyOrWhitespaces(vmId)) {
-					if(vmId.startsWith("urn:uuid:")) vmId = vmId.substring(9);
-
-					// Wait until VM is active, if requested
-					if(waitForActive) {
-						int retries = 15;
-						boolean active = false;
-						while(! active && retries-- > 0) {
-							logger.finest("retry: " + retries);
-							try {
-								Thread.sleep(10000);  // 10 seconds
-							} catch (InterruptedException e) {
-								// ignore
-							}
-							active = !Utils.isEmptyOrWhitespaces(getVMIP(hostIpPort, vmId));
-							//active = "ACTIVE".equalsIgnoreCase(getVMStatus(hostIpPort, ret));
-						}
-					}
-				}
+				if(! Utils.isEmptyOrWhitespaces(vmId) && vmId.startsWith("urn:uuid:"))
+					vmId = vmId.substring(9);
 
 			} catch (IOException e) {
 				throw new TargetException(e);
 
 			}  finally {
-				Utils.closeQuietly(in);
 				Utils.closeQuietly(output);
-				if (httpURLConnection != null) {
-					httpURLConnection.disconnect();
-				}
 			}
 
 			return (vmId);
@@ -328,7 +311,6 @@ public class OcciVMUtils {
 	 * @param hostIpPort
 	 * @param image The image ID (eg. when backed by OpenStack, the OpenStack image ID).
 	 * @param title
-	 * @param waitForActive If true, return only when VM is active.
 	 * @return The VM ID
 	 * @throws TargetException
 	 */
@@ -337,14 +319,13 @@ public class OcciVMUtils {
 			String image,
 			String title,
 			String userData,
-			Map<String,String> config,
-			boolean waitForActive )
+			Map<String,String> config )
 	throws TargetException {
 
 		String vmId = null;
 		URL url = null;
 		try {
-			CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
+			installCookieHandler();
 			url = new URL("http://" + hostIpPort + "/compute/");
 
 		} catch (MalformedURLException e) {
@@ -352,10 +333,9 @@ public class OcciVMUtils {
 		}
 
 		HttpURLConnection httpURLConnection = null;
-		DataInputStream in = null;
 		DataOutputStream output = null;
 		try {
-			httpURLConnection = (HttpURLConnection) url.openConnection();
+			httpURLConnection = openConnection(url);
 			httpURLConnection.setRequestMethod("POST");
 			httpURLConnection.setRequestProperty("Content-Type", "application/json");
 			httpURLConnection.setRequestProperty("Accept", "application/json");
@@ -395,39 +375,16 @@ public class OcciVMUtils {
 			Utils.closeQuietly(output);
 			output = null;
 
-			in = new DataInputStream(httpURLConnection.getInputStream());
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			Utils.copyStreamSafely(in, out);
+			String response = readResponse(httpURLConnection);
 
 			// Parse JSON response to extract VM ID
-			ObjectMapper objectMapper = new ObjectMapper();
-			JsonResponse rsp = objectMapper.readValue(out.toString( "UTF-8" ), JsonResponse.class);
+			JsonResponse rsp = MAPPER.readValue(response, JsonResponse.class);
 			vmId = rsp.getId();
-
-			// Wait until VM is active
-			if(waitForActive && !Utils.isEmptyOrWhitespaces(vmId)) {
-				int retries = 15;
-				boolean active = false;
-				while(! active && retries-- > 0) {
-					logger.finest("retry: " + retries);
-					try {
-						Thread.sleep(10000);  // 10 seconds
-					} catch (InterruptedException e) {
-						// ignore
-					}
-					active = !Utils.isEmptyOrWhitespaces(getVMIP(hostIpPort, vmId));
-					//active = "ACTIVE".equalsIgnoreCase(getVMStatus(hostIpPort, ret));
-				}
-			}
 		} catch (IOException e) {
 			throw new TargetException(e);
 
 		}  finally {
-			Utils.closeQuietly(in);
 			Utils.closeQuietly(output);
-			if (httpURLConnection != null) {
-				httpURLConnection.disconnect();
-			}
 		}
 
 		return (vmId);
@@ -446,36 +403,26 @@ public class OcciVMUtils {
 		String status = null;
 		URL url = null;
 		try {
-			CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
+			installCookieHandler();
 			url = new URL("http://" + hostIpPort + "/compute/" + id);
 		} catch (MalformedURLException e) {
 			throw new TargetException(e);
 		}
 
 		HttpURLConnection httpURLConnection = null;
-		DataInputStream in = null;
 		try {
-			httpURLConnection = (HttpURLConnection) url.openConnection();
+			httpURLConnection = openConnection(url);
 			httpURLConnection.setRequestMethod("GET");
 			httpURLConnection.setRequestProperty("Accept", "application/json");
 
-			in = new DataInputStream(httpURLConnection.getInputStream());
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			Utils.copyStreamSafely(in, out);
+			String response = readResponse(httpURLConnection);
 
 			// Parse JSON response to extract VM status
-			ObjectMapper objectMapper = new ObjectMapper();
-			JsonResponse rsp = objectMapper.readValue(out.toString( "UTF-8" ), JsonResponse.class);
+			JsonResponse rsp = MAPPER.readValue(response, JsonResponse.class);
 			status = rsp.getState();
 
 		} catch (IOException e) {
 			throw new TargetException(e);
-
-		}  finally {
-			Utils.closeQuietly(in);
-			if (httpURLConnection != null) {
-				httpURLConnection.disconnect();
-			}
 		}
 
 		return status;
@@ -493,7 +440,7 @@ public class OcciVMUtils {
 		String ret = null;
 		URL url = null;
 		try {
-			CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
+			installCookieHandler();
 			//TODO This is a HACK for CloudAutomation APIs. Expecting interoperable implementation !
 			if(hostIpPort.contains("multi-language-connector")) {
 				url = new URL("http://" + hostIpPort + "/compute/" + id);
@@ -505,26 +452,16 @@ public class OcciVMUtils {
 		}
 
 		HttpURLConnection httpURLConnection = null;
-		DataInputStream in = null;
 		try {
-			httpURLConnection = (HttpURLConnection) url.openConnection();
+			httpURLConnection = openConnection(url);
 			httpURLConnection.setRequestMethod("DELETE");
 			httpURLConnection.setRequestProperty("Content-Type", "text/occi");
 			httpURLConnection.setRequestProperty("Accept", "*/*");
 
-			in = new DataInputStream(httpURLConnection.getInputStream());
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			Utils.copyStreamSafely(in, out);
-			ret = out.toString( "UTF-8" );
+			ret = readResponse(httpURLConnection);
 
 		} catch (IOException e) {
 			throw new TargetException(e);
-
-		}  finally {
-			Utils.closeQuietly(in);
-			if (httpURLConnection != null) {
-				httpURLConnection.disconnect();
-			}
 		}
 
 		return ("OK".equalsIgnoreCase(ret));
@@ -542,37 +479,27 @@ public class OcciVMUtils {
 		String vmIp = null;
 		URL url = null;
 		try {
-			CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
+			installCookieHandler();
 			url = new URL("http://" + hostIpPort + "/compute/" + id);
 		} catch (MalformedURLException e) {
 			throw new TargetException(e);
 		}
 
 		HttpURLConnection httpURLConnection = null;
-		DataInputStream in = null;
 		try {
-			httpURLConnection = (HttpURLConnection) url.openConnection();
+			httpURLConnection = openConnection(url);
 			httpURLConnection.setRequestMethod("GET");
 			httpURLConnection.setRequestProperty("Accept", "application/json");
 
-			in = new DataInputStream(httpURLConnection.getInputStream());
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			Utils.copyStreamSafely(in, out);
+			String response = readResponse(httpURLConnection);
 
 			// Parse JSON response to extract VM IP
-			ObjectMapper objectMapper = new ObjectMapper();
-			JsonResponse rsp = objectMapper.readValue(out.toString( "UTF-8" ), JsonResponse.class);
+			JsonResponse rsp = MAPPER.readValue(response, JsonResponse.class);
 			vmIp = rsp.getHostsystemname();
 			if(Utils.isEmptyOrWhitespaces(vmIp)) vmIp = rsp.getHostname();
 
 		} catch (IOException e) {
 			throw new TargetException(e);
-
-		}  finally {
-			Utils.closeQuietly(in);
-			if (httpURLConnection != null) {
-				httpURLConnection.disconnect();
-			}
 		}
 
 		return vmIp;
@@ -586,14 +513,36 @@ public class OcciVMUtils {
 	 * @throws TargetException
 	 */
 	public static boolean isVMRunning(String hostIpPort, String id)
+	throws TargetException {
+		return isVMRunning(hostIpPort, id, DEFAULT_REACHABILITY_TIMEOUT);
+	}
+
+
+	/**
+	 * Checks if VM is running.
+	 * <p>
+	 * A VM is running if it has an IP address and if this address is reachable.
+	 * </p>
+	 *
+	 * @param hostIpPort IP and port of OCCI server (eg. "172.16.225.91:8080")
+	 * @param id Unique VM ID
+	 * @param reachabilityTimeout the time to wait for the VM to reply (in milliseconds)
+	 * @return true if the VM is running, false otherwise
+	 * @throws TargetException
+	 */
+	public static boolean isVMRunning(String hostIpPort, String id, int reachabilityTimeout)
 	throws TargetException {
 
 		boolean result = false;
 
+		// No IP address yet (InetAddress would resolve the local host otherwise)
 		String ip = OcciVMUtils.getVMIP(hostIpPort, id);
+		if(Utils.isEmptyOrWhitespaces(ip))
+			return false;
+
 		try {
 			InetAddress inet = InetAddress.getByName(ip);
-			result = inet.isReachable(5000);
+			result = inet.isReachable(reachabilityTimeout);
 
 		} catch (Exception e) {
 			result = false;
@@ -605,6 +554,63 @@ public class OcciVMUtils {
 	}
 
 
+	/**
+	 * Opens a connection to the OCCI server.
+	 * @param url the URL
+	 * @return a non-null connection
+	 * @throws IOException
+	 */
+	static HttpURLConnection openConnection(URL url) throws IOException {
+
+		HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
+		httpURLConnection.setConnectTimeout(CONNECT_TIMEOUT);
+		httpURLConnection.setReadTimeout(READ_TIMEOUT);
+		return httpURLConnection;
+	}
+
+
+	/**
+	 * Reads the response of a request entirely.
+	 * <p>
+	 * In case of error, the error stream is read too. Either way,
+	 * the connection can then be reused for another request.
+	 * </p>
+	 *
+	 * @param httpURLConnection the connection
+	 * @return the response body (never null)
+	 * @throws IOException if the request failed
+	 */
+	static String readResponse(HttpURLConnection httpURLConnection) throws IOException {
+
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Utils.copyStreamSafely(httpURLConnection.getInputStream(), out);
+			return out.toString( "UTF-8" );
+
+		} catch(IOException e) {
+			InputStream err = httpURLConnection.getErrorStream();
+			if(err != null) {
+				try {
+					Utils.copyStreamSafely(err, new ByteArrayOutputStream());
+				} catch(IOException ignore) {
+					// nothing, the original error matters more
+				}
+			}
+
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Installs a cookie handler, once.
+	 */
+	static void installCookieHandler() {
+		if(COOKIE_HANDLER_INSTALLED.compareAndSet(false, true))
+			CookieHandler.setDefault(new CookieManager(null, CookiePolicy.ACCEPT_ALL));
+	}
+
+
 	/**
 	 * Test main program.
 	 * @param args
@@ -613,7 +619,7 @@ public class OcciVMUtils {
 	/*
 	public static void main(String[] args) throws Exception {
 
-		//String id = createCloudAutomationVM("81.200.35.140:8080/multi-language-connector/occi", "aab7ea48-0585-44b2-afd4-19e99b6581e7", "testCAjava", true);
+		//String id = createCloudAutomationVM("81.200.35.140:8080/multi-language-connector/occi", "aab7ea48-0585-44b2-afd4-19e99b6581e7", "testCAjava");
 		//System.out.println("Created VM on CA:" + id);
 
 		//System.out.println("VM IP:" + getVMIP("172.16.225.91:8080", "6157c4d2-08b3-4204-be85-d1828df74c22"));
@@ -635,7 +641,7 @@ public class OcciVMUtils {
 		System.out.println(userdata);
 
 		System.out.println("Create VM (JSON): " +
-				createVMJson("172.16.225.80:8080", "6157c4d2-08b3-4204-be85-d1828df74c25", "RoboconfAgentOcciware090117", "javaTest", "Java Test", userdata, "ubuntu", "ubuntu", null, false));
+				createVMJson("172.16.225.80:8080", "6157c4d2-08b3-4204-be85-d1828df74c25", "RoboconfAgentOcciware090117", "javaTest", "Java Test", userdata, "ubuntu", "ubuntu", null));
 
 		//System.out.println("IP: " + getVMIP("172.16.225.80:8080", "6157c4d2-08b3-4204-be85-d1828df74c25"));
 		// curl -v -X DELETE http://172.16.225.80:8080/6157c4d2-08b3-4204-be85-d1828df74c25
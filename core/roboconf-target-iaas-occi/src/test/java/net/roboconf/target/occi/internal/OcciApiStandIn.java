@@ -0,0 +1,196 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.target.occi.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import net.roboconf.core.utils.Utils;
+
+/**
+ * A HTTP server that mimics a (very small) part of an OCCI server.
+ * <p>
+ * It supports creating VMs (HTTP and JSON renderings), getting their details and deleting them.
+ * VMs become active (i.e. they get an IP address) {@link #activationDelay} milliseconds after
+ * their creation. It counts requests, status requests and connections (remote addresses).
+ * It also records the time of every status request.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class OcciApiStandIn implements HttpHandler {
+
+	private static final Pattern JSON_ID = Pattern.compile( "\"id\"\\s*:\\s*\"([^\"]+)\"" );
+
+	final Set<String> connections = Collections.synchronizedSet( new HashSet<String> ());
+	final AtomicInteger requests = new AtomicInteger();
+	final AtomicInteger statusRequests = new AtomicInteger();
+	final List<Long> statusRequestTimes = Collections.synchronizedList( new ArrayList<Long> ());
+
+	// Key = VM ID, value = creation time (nano seconds)
+	final Map<String,Long> vms = new ConcurrentHashMap<> ();
+	long activationDelay = 0;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+
+	/**
+	 * Starts the server on a random port.
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+
+		this.executor = Executors.newCachedThreadPool();
+		this.server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		this.server.createContext( "/", this );
+		this.server.setExecutor( this.executor );
+		this.server.start();
+	}
+
+
+	/**
+	 * Stops the server.
+	 */
+	public void stop() {
+
+		if( this.server != null )
+			this.server.stop( 0 );
+
+		if( this.executor != null )
+			this.executor.shutdownNow();
+
+		this.server = null;
+		this.executor = null;
+	}
+
+
+	/**
+	 * @return the IP and port to use in target properties
+	 */
+	public String getServerIpPort() {
+		return "localhost:" + this.server.getAddress().getPort();
+	}
+
+
+	/**
+	 * Resets the counters.
+	 */
+	public void reset() {
+		this.connections.clear();
+		this.requests.set( 0 );
+		this.statusRequests.set( 0 );
+		this.statusRequestTimes.clear();
+	}
+
+
+	@Override
+	public void handle( HttpExchange exchange ) throws IOException {
+
+		this.requests.incrementAndGet();
+		this.connections.add( String.valueOf( exchange.getRemoteAddress()));
+
+		// Always consume the request body
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		Utils.copyStreamSafely( exchange.getRequestBody(), body );
+
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+
+		int code = 404;
+		String contentType = "text/plain";
+		String response = "not found";
+		if( "PUT".equals( method ) && path.matches( "/compute/[^/]+" )) {
+			// HTTP rendering
+			this.vms.put( path.substring( "/compute/".length()), System.nanoTime());
+			code = 200;
+			response = "OK";
+
+		} else if( "PUT".equals( method ) && path.equals( "/vm/" )) {
+			// JSON rendering
+			Matcher m = JSON_ID.matcher( body.toString( "UTF-8" ));
+			if( m.find()) {
+				this.vms.put( m.group( 1 ), System.nanoTime());
+				code = 200;
+				contentType = "application/json";
+				response = "{\"id\":\"urn:uuid:" + m.group( 1 ) + "\"}";
+			}
+
+		} else if( "GET".equals( method ) && path.matches( "/compute/[^/]+" )) {
+			this.statusRequests.incrementAndGet();
+			this.statusRequestTimes.add( System.nanoTime());
+			String id = path.substring( "/compute/".length());
+			Long creationTime = this.vms.get( id );
+			if( creationTime != null ) {
+				boolean active = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - creationTime ) >= this.activationDelay;
+				code = 200;
+				contentType = "application/json";
+				response = "{\"id\":\"" + id + "\",\"occi.compute.state\":\"" + (active ? "active" : "inactive") + "\"";
+				if( active )
+					response += ",\"occi.compute.hostname\":\"127.0.0.1\"";
+
+				response += "}";
+			}
+
+		} else if( "DELETE".equals( method ) && this.vms.remove( path.substring( 1 )) != null ) {
+			code = 200;
+			response = "OK";
+		}
+
+		byte[] bytes = response.getBytes( StandardCharsets.UTF_8 );
+		exchange.getResponseHeaders().add( "Content-Type", contentType );
+		exchange.sendResponseHeaders( code, bytes.length );
+		OutputStream os = exchange.getResponseBody();
+		try {
+			os.write( bytes );
+
+		} finally {
+			Utils.closeQuietly( os );
+			exchange.close();
+		}
+	}
+}
@@ -25,10 +25,19 @@
 
 package net.roboconf.target.occi.internal;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Assert;
 
 import org.junit.Test;
 
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.target.api.TargetHandlerParameters;
+
 /**
  * @author Pierre-Yves Gibello - Linagora
  */
@@ -38,4 +47,103 @@ public class OcciIaasHandlerTest {
 	public void testGetTargetId() {
 		Assert.assertEquals( OcciIaasHandler.TARGET_ID, new OcciIaasHandler().getTargetId());
 	}
+
+
+	@Test
+	public void testMachineConfigurationDoesNotWaitLongerThanNeeded() throws Exception {
+
+		OcciApiStandIn standIn = new OcciApiStandIn();
+		standIn.activationDelay = 1500;
+		standIn.start();
+
+		OcciIaasHandler handler = new OcciIaasHandler();
+		handler.start();
+		try {
+			Map<String,String> targetProperties = new HashMap<> ();
+			targetProperties.put( OcciIaasHandler.SERVER_IP_PORT, standIn.getServerIpPort());
+			targetProperties.put( OcciIaasHandler.IMAGE, "image" );
+			targetProperties.put( OcciIaasHandler.RENDERING, "json" );
+
+			TargetHandlerParameters parameters = new TargetHandlerParameters()
+					.targetProperties( targetProperties )
+					.messagingProperties( new HashMap<String,String>( 0 ))
+					.applicationName( "app" )
+					.domain( "test" )
+					.scopedInstancePath( "/vm" );
+
+			long before = System.nanoTime();
+			String machineId = handler.createMachine( parameters );
+			Assert.assertNotNull( machineId );
+			handler.configureMachine( parameters, machineId, new Instance( "vm" ));
+
+			// The VM is polled from short delays, that increase exponentially
+			for( int i=0; i<100 && handler.getConfigurationLatencies().getCount() == 0; i++ )
+				Thread.sleep( 50 );
+
+			long duration = (System.nanoTime() - before) / 1000000;
+			Assert.assertEquals( 1, handler.getConfigurationLatencies().getCount());
+			Assert.assertTrue( "Duration: " + duration, duration >= standIn.activationDelay );
+			Assert.assertTrue( "Duration: " + duration, duration < standIn.activationDelay + 2500 );
+			Assert.assertTrue( standIn.statusRequests.get() < 10 );
+
+			// One connection was enough
+			Assert.assertEquals( 1, standIn.connections.size());
+
+		} finally {
+			handler.stop();
+			standIn.stop();
+		}
+	}
+
+
+	@Test
+	public void testPollingIntervalGrows() throws Exception {
+
+		OcciApiStandIn standIn = new OcciApiStandIn();
+		standIn.activationDelay = 3000;
+		standIn.start();
+
+		OcciIaasHandler handler = new OcciIaasHandler();
+		handler.start();
+		try {
+			Map<String,String> targetProperties = new HashMap<> ();
+			targetProperties.put( OcciIaasHandler.SERVER_IP_PORT, standIn.getServerIpPort());
+			targetProperties.put( OcciIaasHandler.IMAGE, "image" );
+			targetProperties.put( OcciIaasHandler.RENDERING, "json" );
+
+			TargetHandlerParameters parameters = new TargetHandlerParameters()
+					.targetProperties( targetProperties )
+					.messagingProperties( new HashMap<String,String>( 0 ))
+					.applicationName( "app" )
+					.domain( "test" )
+					.scopedInstancePath( "/vm" );
+
+			String machineId = handler.createMachine( parameters );
+			handler.configureMachine( parameters, machineId, new Instance( "vm" ));
+			for( int i=0; i<200 && handler.getConfigurationLatencies().getCount() == 0; i++ )
+				Thread.sleep( 50 );
+
+			Assert.assertEquals( 1, handler.getConfigurationLatencies().getCount());
+
+			// Polled after 250, 500, 1000 and 2000 ms, instead of every 250 ms
+			List<Long> intervals = new ArrayList<> ();
+			synchronized( standIn.statusRequestTimes ) {
+				for( int i=1; i<standIn.statusRequestTimes.size(); i++ ) {
+					long interval = standIn.statusRequestTimes.get( i ) - standIn.statusRequestTimes.get( i - 1 );
+					intervals.add( TimeUnit.NANOSECONDS.toMillis( interval ));
+				}
+			}
+
+			Assert.assertTrue( intervals.toString(), intervals.size() >= 3 );
+			Assert.assertTrue( intervals.toString(), intervals.size() < 8 );
+			for( int i=1; i<intervals.size(); i++ )
+				Assert.assertTrue( intervals.toString(), intervals.get( i ) > intervals.get( i - 1 ));
+
+			Assert.assertTrue( intervals.toString(), intervals.get( intervals.size() - 1 ) >= 4 * OcciIaasHandler.POLLING_DELAY );
+
+		} finally {
+			handler.stop();
+			standIn.stop();
+		}
+	}
 }
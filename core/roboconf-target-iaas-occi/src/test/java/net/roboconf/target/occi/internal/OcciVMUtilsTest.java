@@ -0,0 +1,108 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.roboconf.target.occi.internal;
+
+import java.util.HashMap;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.roboconf.target.api.TargetException;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class OcciVMUtilsTest {
+
+	private OcciApiStandIn standIn;
+
+
+	@Before
+	public void startStandIn() throws Exception {
+		this.standIn = new OcciApiStandIn();
+		this.standIn.start();
+	}
+
+
+	@After
+	public void stopStandIn() {
+		this.standIn.stop();
+	}
+
+
+	@Test
+	public void testConnectionsAreReused() throws Exception {
+
+		String hostIpPort = this.standIn.getServerIpPort();
+		String id = UUID.randomUUID().toString();
+		Assert.assertEquals( id, OcciVMUtils.createVM( hostIpPort, id, null, "title", "summary", null, null, null, new HashMap<String,String>( 0 )));
+
+		String id2 = UUID.randomUUID().toString();
+		Assert.assertEquals( id2, OcciVMUtils.createVMJson( hostIpPort, id2, "image", "title", "summary", null, "user", "pwd", new HashMap<String,String>( 0 )));
+
+		for( int i=0; i<20; i++ ) {
+			Assert.assertEquals( "active", OcciVMUtils.getVMStatus( hostIpPort, id ));
+			Assert.assertEquals( "127.0.0.1", OcciVMUtils.getVMIP( hostIpPort, id2 ));
+		}
+
+		// Errors do not prevent connections from being reused
+		try {
+			OcciVMUtils.getVMStatus( hostIpPort, "unknown" );
+			Assert.fail( "An exception was expected." );
+
+		} catch( TargetException e ) {
+			// nothing
+		}
+
+		Assert.assertTrue( OcciVMUtils.deleteVM( hostIpPort, id ));
+		Assert.assertTrue( OcciVMUtils.deleteVM( hostIpPort, id2 ));
+
+		Assert.assertEquals( 45, this.standIn.requests.get());
+		Assert.assertEquals( 1, this.standIn.connections.size());
+	}
+
+
+	@Test
+	public void testIsVMRunning() throws Exception {
+
+		this.standIn.activationDelay = 60000;
+		String hostIpPort = this.standIn.getServerIpPort();
+		String id = UUID.randomUUID().toString();
+		OcciVMUtils.createVM( hostIpPort, id, null, "title", "summary", null, null, null, new HashMap<String,String>( 0 ));
+
+		// No IP address yet
+		Assert.assertEquals( "inactive", OcciVMUtils.getVMStatus( hostIpPort, id ));
+		Assert.assertFalse( OcciVMUtils.isVMRunning( hostIpPort, id ));
+
+		// Active
+		this.standIn.activationDelay = 0;
+		Assert.assertTrue( OcciVMUtils.isVMRunning( hostIpPort, id, 1000 ));
+	}
+}
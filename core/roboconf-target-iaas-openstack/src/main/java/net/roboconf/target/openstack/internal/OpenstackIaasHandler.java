@@ -25,7 +25,6 @@
 
 package net.roboconf.target.openstack.internal;
 
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -50,6 +49,7 @@ import org.jclouds.openstack.nova.v2_0.extensions.VolumeAttachmentApi;
 import org.jclouds.openstack.nova.v2_0.options.CreateServerOptions;
 import org.jclouds.openstack.swift.v1.SwiftApi;
 import org.jclouds.openstack.v2_0.domain.Resource;
+import org.jclouds.rest.AuthorizationException;
 
 import com.google.common.base.Predicate;
 
@@ -58,6 +58,7 @@ import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.userdata.UserDataHelpers;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.target.api.AbstractThreadedTargetHandler;
+import net.roboconf.target.api.TargetClientCache;
 import net.roboconf.target.api.TargetException;
 import net.roboconf.target.api.TargetHandlerParameters;
 
@@ -112,6 +113,33 @@ public class OpenstackIaasHandler extends AbstractThreadedTargetHandler {
 		DEFAULTS.put( VOLUME_DELETE_OT_PREFIX, "false" );
 	}
 
+	final TargetClientCache<NovaApi> novaApis = new TargetClientCache<NovaApi>( API_URL, TENANT_NAME, USER, PASSWORD ) {
+
+		@Override
+		protected NovaApi createClient( Map<String,String> targetProperties ) throws TargetException {
+			return novaApi( targetProperties );
+		}
+
+		@Override
+		protected void closeClient( NovaApi novaApi ) throws Exception {
+			novaApi.close();
+		}
+
+		@Override
+		protected boolean isClientFailure( Throwable failure ) {
+			return failure instanceof AuthorizationException || super.isClientFailure( failure );
+		}
+	};
+
+
+	/**
+	 * Stops the background threads and closes the cached Nova clients.
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		this.novaApis.close();
+	}
 
 
 	/*
@@ -144,7 +172,32 @@ public class OpenstackIaasHandler extends AbstractThreadedTargetHandler {
 		validateAll( targetProperties, parameters.getApplicationName(), rootInstanceName );
 
 		// Prepare the work
-		NovaApi novaApi = OpenstackIaasHandler.novaApi( targetProperties );
+		NovaApi novaApi = this.novaApis.acquire( targetProperties );
+		try {
+			return createServer( novaApi, parameters, rootInstanceName );
+
+		} catch( TargetException | RuntimeException e ) {
+			this.novaApis.invalidateOnFailure( targetProperties, e );
+			throw e;
+
+		} finally {
+			this.novaApis.release( novaApi );
+		}
+	}
+
+
+	/**
+	 * Creates a new server.
+	 * @param novaApi the Nova client
+	 * @param parameters the target parameters
+	 * @param rootInstanceName the root instance name
+	 * @return the ID of the new server
+	 * @throws TargetException if something went wrong
+	 */
+	private String createServer( NovaApi novaApi, TargetHandlerParameters parameters, String rootInstanceName )
+	throws TargetException {
+
+		Map<String,String> targetProperties = parameters.getTargetProperties();
 		String zoneName = findZoneName( novaApi, targetProperties );
 		String vmName = parameters.getApplicationName() + "." + rootInstanceName;
 
@@ -197,10 +250,7 @@ public class OpenstackIaasHandler extends AbstractThreadedTargetHandler {
 				options = options.networks( networkId );
 
 			ServerCreated server = novaApi.getServerApiForZone( zoneName ).create( vmName, imageId, flavorId, options);
-			String machineId = server.getId();
-			novaApi.close();
-
-			return machineId;
+			return server.getId();
 
 		} catch( Exception e ) {
 			throw new TargetException( e );
@@ -217,9 +267,19 @@ public class OpenstackIaasHandler extends AbstractThreadedTargetHandler {
 	public boolean isMachineRunning( TargetHandlerParameters parameters, String machineId )
 	throws TargetException {
 
-		NovaApi novaApi = novaApi( parameters.getTargetProperties());
-		String zoneName = findZoneName( novaApi, parameters.getTargetProperties());
-		Server server = novaApi.getServerApiForZone( zoneName ).get( machineId );
+		Server server;
+		NovaApi novaApi = this.novaApis.acquire( parameters.getTargetProperties());
+		try {
+			String zoneName = findZoneName( novaApi, parameters.getTargetProperties());
+			server = novaApi.getServerApiForZone( zoneName ).get( machineId );
+
+		} catch( RuntimeException e ) {
+			this.novaApis.invalidateOnFailure( parameters.getTargetProperties(), e );
+			throw e;
+
+		} finally {
+			this.novaApis.release( novaApi );
+		}
 
 		boolean running = false;
 		if( server != null )
@@ -248,11 +308,11 @@ public class OpenstackIaasHandler extends AbstractThreadedTargetHandler {
 	@Override
 	public void terminateMachine( TargetHandlerParameters parameters, String machineId ) throws TargetException {
 
-		try {
-			this.logger.info( "Terminating Openstack machine. Machine ID: " + machineId );
-			cancelMachineConfigurator( machineId );
+		this.logger.info( "Terminating Openstack machine. Machine ID: " + machineId );
+		cancelMachineConfigurator( machineId );
 
-			NovaApi novaApi = novaApi( parameters.getTargetProperties());
+		NovaApi novaApi = this.novaApis.acquire( parameters.getTargetProperties());
+		try {
 			String zoneName = findZoneName( novaApi, parameters.getTargetProperties());
 
 			// List the attached volumes, if any.
@@ -285,10 +345,12 @@ public class OpenstackIaasHandler extends AbstractThreadedTargetHandler {
 				}
 			}
 
-			novaApi.close();
+		} catch( RuntimeException e ) {
+			this.novaApis.invalidateOnFailure( parameters.getTargetProperties(), e );
+			throw e;
 
-		} catch( IOException e ) {
-			throw new TargetException( e );
+		} finally {
+			this.novaApis.release( novaApi );
 		}
 	}
 
@@ -301,21 +363,29 @@ public class OpenstackIaasHandler extends AbstractThreadedTargetHandler {
 	public String retrievePublicIpAddress( TargetHandlerParameters parameters, String machineId )
 	throws TargetException {
 
-		NovaApi novaApi = novaApi( parameters.getTargetProperties());
-		String zoneName = findZoneName( novaApi, parameters.getTargetProperties());
-
 		String result = null;
-		Server server = novaApi.getServerApiForZone( zoneName ).get( machineId );
-		if( server != null ) {
-			result = server.getAccessIPv4();
-
-			// Nothing found? Check floating IPs
-			if( result == null ) {
-				FloatingIPApi floatingIPApi = novaApi.getFloatingIPExtensionForZone( zoneName ).get();
-				List<FloatingIP> ips = floatingIPApi.list().filter( new InstancePredicate( machineId )).toList();
-				if( ips.size() > 0 )
-					result = ips.get( 0 ).getIp();
+		NovaApi novaApi = this.novaApis.acquire( parameters.getTargetProperties());
+		try {
+			String zoneName = findZoneName( novaApi, parameters.getTargetProperties());
+			Server server = novaApi.getServerApiForZone( zoneName ).get( machineId );
+			if( server != null ) {
+				result = server.getAccessIPv4();
+
+				// Nothing found? Check floating IPs
+				if( result == null ) {
+					FloatingIPApi floatingIPApi = novaApi.getFloatingIPExtensionForZone( zoneName ).get();
+					List<FloatingIP> ips = floatingIPApi.list().filter( new InstancePredicate( machineId )).toList();
+					if( ips.size() > 0 )
+						result = ips.get( 0 ).getIp();
+				}
 			}
+
+		} catch( RuntimeException e ) {
+			this.novaApis.invalidateOnFailure( parameters.getTargetProperties(), e );
+			throw e;
+
+		} finally {
+			this.novaApis.release( novaApi );
 		}
 
 		return result;
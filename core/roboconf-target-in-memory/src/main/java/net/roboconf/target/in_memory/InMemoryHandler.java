@@ -43,11 +43,14 @@ import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.utils.Utils;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.messaging.api.MessagingConstants;
 import net.roboconf.messaging.api.factory.IMessagingClientFactory;
 import net.roboconf.messaging.api.factory.MessagingClientFactoryRegistry;
 import net.roboconf.target.api.TargetException;
 import net.roboconf.target.api.TargetHandler;
 import net.roboconf.target.api.TargetHandlerParameters;
+import net.roboconf.target.in_memory.internal.AgentSimulator;
+import net.roboconf.target.in_memory.internal.LatencyDistribution;
 
 /**
  * A target that runs agents in memory.
@@ -61,6 +64,12 @@ public class InMemoryHandler implements TargetHandler {
 	static final String EXECUTE_REAL_RECIPES = "in-memory.execute-real-recipes";
 	static final String AGENT_IP_ADDRESS = "in-memory.ip-address-of-the-agent";
 
+	// Simulated agents only exchange messages with the DM.
+	// They are much lighter than iPojo agents and allow to test the DM at large scale.
+	static final String SIMULATE_AGENTS = "in-memory.simulate-agents";
+	static final String STARTUP_LATENCY = "in-memory.simulated-agents.startup-latency";
+	static final String RESPONSE_LATENCY = "in-memory.simulated-agents.response-latency";
+
 	// Injected by iPojo
 	Factory agentFactory;
 	Manager manager;
@@ -69,6 +78,7 @@ public class InMemoryHandler implements TargetHandler {
 	private final Logger logger = Logger.getLogger( getClass().getName());
 	private final AtomicLong defaultDelay = new AtomicLong( 0L );
 	private MessagingClientFactoryRegistry registry;
+	final AgentSimulator simulator = new AgentSimulator();
 
 
 
@@ -88,6 +98,14 @@ public class InMemoryHandler implements TargetHandler {
 
 		this.logger.fine( "Creating a new agent in memory." );
 		Map<String,String> targetProperties = preventNull( parameters.getTargetProperties());
+		String machineId = parameters.getScopedInstancePath() + " @ " + parameters.getApplicationName();
+
+		// Simulated agents do not block the caller.
+		// The delay is applied to their startup.
+		if( simulateAgents( targetProperties )) {
+			launchSimulatedAgent( targetProperties, parameters, machineId );
+			return machineId;
+		}
 
 		// Need to wait?
 		try {
@@ -101,7 +119,6 @@ public class InMemoryHandler implements TargetHandler {
 			Utils.logException( this.logger, e );
 		}
 
-		String machineId = parameters.getScopedInstancePath() + " @ " + parameters.getApplicationName();
 		createIPojo(
 				targetProperties,
 				parameters.getMessagingProperties(),
@@ -142,21 +159,22 @@ public class InMemoryHandler implements TargetHandler {
 		Map<String,String> targetProperties = preventNull( parameters.getTargetProperties());
 
 		// No agent factory => no iPojo instance => not running
-		boolean result = false;
-		if( this.agentFactory != null )
+		boolean result = this.simulator.isAgentRunning( machineId );
+		if( ! result && this.agentFactory != null )
 			result = this.agentFactory.getInstancesNames().contains( machineId );
 
 		// On restoration, in-memory agents will ALL have disappeared.
 		// So, it makes sense to recreate them if they do not exist anymore.
 		// To determine whether we should restore them or no, we look for the model in the manager.
-		if( ! result && ! simulatePlugins( targetProperties )) {
+		// Simulated agents are not restored.
+		if( ! result && ! simulatePlugins( targetProperties ) && ! simulateAgents( targetProperties )) {
 
-			Map.Entry<String,String> ctx = parseMachineId( machineId );
+			Map.Entry<String,String> ctx = findAgentIdentity( parameters, machineId );
 			ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( ctx.getValue());
-			Instance scopedInstance = InstanceHelpers.findInstanceByPath( ma.getApplication(), ctx.getKey());
+			Instance scopedInstance = ma == null ? null : InstanceHelpers.findInstanceByPath( ma.getApplication(), ctx.getKey());
 
 			// Is it supposed to be running?
-			if( scopedInstance.getStatus() != InstanceStatus.NOT_DEPLOYED ) {
+			if( scopedInstance != null && scopedInstance.getStatus() != InstanceStatus.NOT_DEPLOYED ) {
 				this.logger.fine( "In-memory agent for " + machineId + " is supposed to be running but is not. It will be restored." );
 				Map<String,String> messagingConfiguration = this.manager.messagingMngr().getMessagingClient().getConfiguration();
 				createIPojo( targetProperties, messagingConfiguration, machineId, ctx.getKey(), ctx.getValue(), this.manager.getDomain());
@@ -183,24 +201,30 @@ public class InMemoryHandler implements TargetHandler {
 		// If we executed real recipes, undeploy everything first.
 		// That's because we do not really terminate the agent's machine, we just kill the agent.
 		// So, it is important to stop and undeploy properly.
-		if( ! simulatePlugins( targetProperties )) {
+		if( ! simulatePlugins( targetProperties ) && ! simulateAgents( targetProperties )) {
 			this.logger.fine( "Stopping instances correctly (real recipes are used)." );
-			Map.Entry<String,String> ctx = parseMachineId( machineId );
+			Map.Entry<String,String> ctx = findAgentIdentity( parameters, machineId );
 			ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( ctx.getValue());
 
 			// We do not want to undeploy the scoped instances, but its children.
+			// Idle machines (warm pools) do not belong to any application.
 			try {
-				Instance scopedInstance = InstanceHelpers.findInstanceByPath( ma.getApplication(), ctx.getKey());
-				for( Instance childrenInstance : scopedInstance.getChildren())
-					this.manager.instancesMngr().changeInstanceState( ma, childrenInstance, InstanceStatus.NOT_DEPLOYED );
+				Instance scopedInstance = ma == null ? null : InstanceHelpers.findInstanceByPath( ma.getApplication(), ctx.getKey());
+				if( scopedInstance != null ) {
+					for( Instance childrenInstance : scopedInstance.getChildren())
+						this.manager.instancesMngr().changeInstanceState( ma, childrenInstance, InstanceStatus.NOT_DEPLOYED );
+				}
 
 			} catch( IOException e ) {
 				throw new TargetException( e );
 			}
 		}
 
-		// Destroy the IPojo
-		if( this.agentFactory != null ) {
+		// Destroy the simulated agent or the IPojo
+		if( this.simulator.terminateAgent( machineId )) {
+			this.logger.fine( "Simulated agent " + machineId + " was terminated." );
+
+		} else if( this.agentFactory != null ) {
 			for( ComponentInstance instance : this.agentFactory.getInstances()) {
 				if( machineId.equals( instance.getInstanceName())) {
 					instance.dispose();
@@ -219,6 +243,17 @@ public class InMemoryHandler implements TargetHandler {
 	}
 
 
+	/**
+	 * Stops all the simulated agents.
+	 * <p>
+	 * Invoked by iPojo when the handler is invalidated.
+	 * </p>
+	 */
+	public void stop() {
+		this.simulator.stop();
+	}
+
+
 	// Getters and setters
 
 	public void setMessagingFactoryRegistry(MessagingClientFactoryRegistry registry) {
@@ -241,6 +276,10 @@ public class InMemoryHandler implements TargetHandler {
 		return ! Boolean.parseBoolean( executeRealRecipesAS );
 	}
 
+	static boolean simulateAgents( Map<String,String> targetProperties ) {
+		return Boolean.parseBoolean( targetProperties.get( SIMULATE_AGENTS ));
+	}
+
 	static Map<String,String> preventNull( Map<String,String> targetProperties ) {
 		return targetProperties != null ? targetProperties : new HashMap<String,String>( 0 );
 	}
@@ -256,9 +295,63 @@ public class InMemoryHandler implements TargetHandler {
 		return new AbstractMap.SimpleEntry<>( key, value );
 	}
 
+	static Map.Entry<String,String> findAgentIdentity( TargetHandlerParameters parameters, String machineId ) {
+
+		// Machines taken from a warm pool keep the ID they were created with.
+		// But their agent was given a new identity. The parameters reflect it.
+		Map.Entry<String,String> result;
+		if( Utils.isEmptyOrWhitespaces( parameters.getApplicationName())
+				|| Utils.isEmptyOrWhitespaces( parameters.getScopedInstancePath()))
+			result = parseMachineId( machineId );
+		else
+			result = new AbstractMap.SimpleEntry<>( parameters.getScopedInstancePath(), parameters.getApplicationName());
+
+		return result;
+	}
+
 
 	// Private methods
 
+	private void launchSimulatedAgent(
+			Map<String,String> targetProperties,
+			TargetHandlerParameters parameters,
+			String machineId )
+	throws TargetException {
+
+		// Simulated agents only work with in-memory messaging
+		Map<String,String> messagingConfiguration = preventNull( parameters.getMessagingProperties());
+		String messagingType = messagingConfiguration.get( MessagingConstants.MESSAGING_TYPE_PROPERTY );
+		IMessagingClientFactory messagingFactory = this.registry == null ? null : this.registry.getMessagingClientFactory( messagingType );
+		if( ! MessagingConstants.FACTORY_IN_MEMORY.equals( messagingType ) || messagingFactory == null )
+			throw new TargetException( "Simulated agents require the " + MessagingConstants.FACTORY_IN_MEMORY + " messaging. Current messaging type: " + messagingType );
+
+		// Latencies
+		LatencyDistribution startupLatency, responseLatency;
+		try {
+			String delayAsString = targetProperties.get( DELAY );
+			long delay = delayAsString != null ? Long.parseLong( delayAsString ) : this.defaultDelay.get();
+
+			startupLatency = LatencyDistribution.parse( targetProperties.get( STARTUP_LATENCY ), LatencyDistribution.constant( delay ));
+			responseLatency = LatencyDistribution.parse( targetProperties.get( RESPONSE_LATENCY ), LatencyDistribution.constant( 0 ));
+
+		} catch( IllegalArgumentException e ) {
+			throw new TargetException( "Invalid latencies for simulated agents. " + e.getMessage(), e );
+		}
+
+		String ipAddress = targetProperties.get( AGENT_IP_ADDRESS );
+		ipAddress = Utils.isEmptyOrWhitespaces( ipAddress ) ? "localhost" : ipAddress.trim();
+
+		this.logger.fine( "Launching a simulated agent for " + machineId + " (startup latency: " + startupLatency + " ms, response latency: " + responseLatency + " ms)." );
+		this.simulator.launchAgent(
+				machineId, messagingFactory,
+				parameters.getDomain(),
+				parameters.getApplicationName(),
+				parameters.getScopedInstancePath(),
+				ipAddress,
+				startupLatency, responseLatency );
+	}
+
+
 	private void createIPojo(
 			Map<String,String> targetProperties,
 			Map<String,String> messagingConfiguration,
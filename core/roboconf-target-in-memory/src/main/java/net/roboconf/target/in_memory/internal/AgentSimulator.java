@@ -0,0 +1,261 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.in_memory.internal;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import net.roboconf.core.Constants;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.messaging.api.factory.IMessagingClientFactory;
+import net.roboconf.messaging.api.reconfigurables.ReconfigurableClientAgent;
+
+/**
+ * Runs simulated agents.
+ * <p>
+ * All the simulated agents share the same thread pool. It is used to process their
+ * messages, to apply latencies and to send heart beats. Threads are only created when
+ * the first agent is launched.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class AgentSimulator {
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final Map<String,SimulatedAgent> machineIdToAgent = new ConcurrentHashMap<> ();
+	private final int poolSize;
+
+	private ScheduledExecutorService executor;
+	private ReconfigurableClientAgent clientTemplate;
+
+
+	/**
+	 * Constructor.
+	 */
+	public AgentSimulator() {
+		this( Math.max( 2, Runtime.getRuntime().availableProcessors()));
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param poolSize the number of threads shared by the simulated agents
+	 */
+	public AgentSimulator( int poolSize ) {
+		this.poolSize = poolSize;
+	}
+
+
+	/**
+	 * Launches a simulated agent.
+	 * <p>
+	 * The agent connects to the messaging once the startup latency has elapsed.
+	 * This method does not block.
+	 * </p>
+	 *
+	 * @param machineId the machine ID
+	 * @param messagingFactory the factory to create the messaging client (not null)
+	 * @param domain the domain
+	 * @param applicationName the application name
+	 * @param scopedInstancePath the scoped instance path
+	 * @param ipAddress the IP address of the agent
+	 * @param startupLatency the startup latency
+	 * @param responseLatency the latency before answering the DM
+	 * @return the new agent
+	 */
+	public SimulatedAgent launchAgent(
+			String machineId,
+			IMessagingClientFactory messagingFactory,
+			String domain,
+			String applicationName,
+			String scopedInstancePath,
+			String ipAddress,
+			LatencyDistribution startupLatency,
+			LatencyDistribution responseLatency ) {
+
+		ScheduledExecutorService executor;
+		ReconfigurableClientAgent template;
+		synchronized( this ) {
+			if( this.executor == null ) {
+				this.logger.fine( "Starting the simulator of in-memory agents with " + this.poolSize + " threads." );
+				this.executor = createExecutor();
+			}
+
+			// Messaging factories only use it to determine the kind of owner
+			if( this.clientTemplate == null )
+				this.clientTemplate = new ReconfigurableClientAgent();
+
+			executor = this.executor;
+			template = this.clientTemplate;
+		}
+
+		final SimulatedAgent agent = new SimulatedAgent(
+				machineId, domain,
+				applicationName, scopedInstancePath, ipAddress,
+				messagingFactory.createClient( template ),
+				executor, responseLatency );
+
+		this.machineIdToAgent.put( machineId, agent );
+		executor.schedule( new Runnable() {
+			@Override
+			public void run() {
+				startAgent( agent );
+			}
+
+		}, startupLatency.next(), TimeUnit.MILLISECONDS );
+
+		return agent;
+	}
+
+
+	/**
+	 * Stops a simulated agent.
+	 * @param machineId a machine ID
+	 * @return true if a simulated agent was associated with this machine ID, false otherwise
+	 */
+	public boolean terminateAgent( String machineId ) {
+
+		SimulatedAgent agent = this.machineIdToAgent.remove( machineId );
+		if( agent != null )
+			stopAgent( agent );
+
+		return agent != null;
+	}
+
+
+	/**
+	 * @param machineId a machine ID
+	 * @return true if a simulated agent is associated with this machine ID
+	 */
+	public boolean isAgentRunning( String machineId ) {
+		return this.machineIdToAgent.containsKey( machineId );
+	}
+
+
+	/**
+	 * @param machineId a machine ID
+	 * @return the associated simulated agent, or null if there is none
+	 */
+	public SimulatedAgent findAgent( String machineId ) {
+		return this.machineIdToAgent.get( machineId );
+	}
+
+
+	/**
+	 * @return the number of simulated agents
+	 */
+	public int getAgentsCount() {
+		return this.machineIdToAgent.size();
+	}
+
+
+	/**
+	 * Stops all the simulated agents and releases the threads.
+	 */
+	public void stop() {
+
+		for( SimulatedAgent agent : this.machineIdToAgent.values())
+			stopAgent( agent );
+
+		this.machineIdToAgent.clear();
+		synchronized( this ) {
+			if( this.executor != null ) {
+				this.logger.fine( "Stopping the simulator of in-memory agents." );
+				this.executor.shutdownNow();
+				this.executor = null;
+			}
+		}
+	}
+
+
+	/**
+	 * Sends a heart beat for all the started agents.
+	 */
+	void sendHeartbeats() {
+		for( SimulatedAgent agent : this.machineIdToAgent.values())
+			agent.sendHeartbeat();
+	}
+
+
+	private ScheduledExecutorService createExecutor() {
+
+		final AtomicInteger counter = new AtomicInteger();
+		ScheduledThreadPoolExecutor result = new ScheduledThreadPoolExecutor( this.poolSize, new ThreadFactory() {
+			@Override
+			public Thread newThread( Runnable r ) {
+				Thread thread = new Thread( r, "Roboconf - Simulated Agents - " + counter.incrementAndGet());
+				thread.setDaemon( true );
+				return thread;
+			}
+		});
+
+		// One single task for all the heart beats
+		result.scheduleAtFixedRate( new Runnable() {
+			@Override
+			public void run() {
+				sendHeartbeats();
+			}
+
+		}, Constants.HEARTBEAT_PERIOD, Constants.HEARTBEAT_PERIOD, TimeUnit.MILLISECONDS );
+
+		return result;
+	}
+
+
+	private void startAgent( SimulatedAgent agent ) {
+
+		// The agent may have been terminated in the mean time
+		try {
+			if( this.machineIdToAgent.get( agent.getMachineId()) == agent )
+				agent.start();
+
+		} catch( IOException | RejectedExecutionException e ) {
+			this.logger.warning( "Simulated agent " + agent.getMachineId() + " could not be started. " + e.getMessage());
+			Utils.logException( this.logger, e );
+		}
+	}
+
+
+	private void stopAgent( SimulatedAgent agent ) {
+
+		try {
+			agent.stop();
+
+		} catch( IOException e ) {
+			this.logger.warning( "Simulated agent " + agent.getMachineId() + " could not be stopped properly. " + e.getMessage());
+			Utils.logException( this.logger, e );
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.in_memory.internal;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.roboconf.core.utils.Utils;
+
+/**
+ * A distribution of latencies (in milliseconds) for simulated agents.
+ * <p>
+ * Supported syntaxes are:
+ * </p>
+ * <ul>
+ * <li><code>50</code>: always 50 ms.</li>
+ * <li><code>10-200</code>: uniformly distributed between 10 and 200 ms.</li>
+ * <li><code>exp:50</code>: exponentially distributed, with a mean of 50 ms.</li>
+ * </ul>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public final class LatencyDistribution {
+
+	static final String EXPONENTIAL_PREFIX = "exp:";
+
+	private final long min, max;
+	private final boolean exponential;
+
+
+	/**
+	 * Constructor.
+	 * @param min the minimal latency (or the mean for exponential distributions)
+	 * @param max the maximal latency (ignored for exponential distributions)
+	 * @param exponential true for an exponential distribution
+	 */
+	private LatencyDistribution( long min, long max, boolean exponential ) {
+		this.min = min;
+		this.max = max;
+		this.exponential = exponential;
+	}
+
+
+	/**
+	 * @param latency a constant latency, in milliseconds
+	 * @return a distribution that always returns the same latency
+	 */
+	public static LatencyDistribution constant( long latency ) {
+		return new LatencyDistribution( Math.max( 0, latency ), Math.max( 0, latency ), false );
+	}
+
+
+	/**
+	 * Parses a distribution.
+	 * @param s a string (can be null)
+	 * @param defaultValue the value to return if the string is null or empty
+	 * @return a distribution
+	 * @throws IllegalArgumentException if the string is not a valid distribution
+	 */
+	public static LatencyDistribution parse( String s, LatencyDistribution defaultValue ) {
+
+		if( Utils.isEmptyOrWhitespaces( s ))
+			return defaultValue;
+
+		LatencyDistribution result;
+		String value = s.trim().toLowerCase( Locale.ENGLISH );
+		try {
+			int index;
+			if( value.startsWith( EXPONENTIAL_PREFIX )) {
+				long mean = Long.parseLong( value.substring( EXPONENTIAL_PREFIX.length()).trim());
+				result = new LatencyDistribution( mean, mean, true );
+
+			} else if(( index = value.indexOf( '-', 1 )) > 0 ) {
+				long min = Long.parseLong( value.substring( 0, index ).trim());
+				long max = Long.parseLong( value.substring( index + 1 ).trim());
+				result = new LatencyDistribution( min, max, false );
+
+			} else {
+				long latency = Long.parseLong( value );
+				result = new LatencyDistribution( latency, latency, false );
+			}
+
+		} catch( NumberFormatException e ) {
+			throw new IllegalArgumentException( "Invalid latency distribution: " + s, e );
+		}
+
+		if( result.min < 0 || result.max < result.min )
+			throw new IllegalArgumentException( "Invalid latency distribution: " + s );
+
+		return result;
+	}
+
+
+	/**
+	 * @return a latency picked from this distribution, in milliseconds
+	 */
+	public long next() {
+
+		long result;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if( this.exponential )
+			result = Math.round( - this.min * Math.log( 1 - random.nextDouble()));
+		else if( this.min == this.max )
+			result = this.min;
+		else
+			result = this.min + random.nextLong( this.max - this.min + 1 );
+
+		return result;
+	}
+
+
+	@Override
+	public String toString() {
+
+		String result;
+		if( this.exponential )
+			result = EXPONENTIAL_PREFIX + this.min;
+		else if( this.min == this.max )
+			result = String.valueOf( this.min );
+		else
+			result = this.min + "-" + this.max;
+
+		return result;
+	}
+}
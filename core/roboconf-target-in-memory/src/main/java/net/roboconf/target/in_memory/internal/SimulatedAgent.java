@@ -0,0 +1,636 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.in_memory.internal;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.beans.Instance.InstanceStatus;
+import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.core.utils.Utils;
+import net.roboconf.messaging.api.extensions.IMessagingClient;
+import net.roboconf.messaging.api.extensions.MessagingContext;
+import net.roboconf.messaging.api.extensions.MessagingContext.RecipientKind;
+import net.roboconf.messaging.api.jmx.RoboconfMessageQueue;
+import net.roboconf.messaging.api.messages.Message;
+import net.roboconf.messaging.api.messages.from_agent_to_dm.MsgNotifHeartbeat;
+import net.roboconf.messaging.api.messages.from_agent_to_dm.MsgNotifInstanceChanged;
+import net.roboconf.messaging.api.messages.from_agent_to_dm.MsgNotifInstanceRemoved;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdAddInstance;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeInstanceState;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdReassignAgent;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdRemoveInstance;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdSendInstances;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdSetScopedInstance;
+import net.roboconf.messaging.api.messages.from_dm_to_dm.MsgEcho;
+import net.roboconf.messaging.api.utils.MessagingUtils;
+
+/**
+ * A lightweight agent that only simulates the message exchanges with the DM.
+ * <p>
+ * Simulated agents do not have plug-ins, recipes or threads of their own.
+ * Their messages are stored in a queue and processed by a thread pool shared by all
+ * the simulated agents. Messages for a given agent are processed in order, one at a time.
+ * The local model is reduced to the states of the instances, indexed by path.
+ * </p>
+ * <p>
+ * Exports and imports are not simulated.
+ * </p>
+ *
+ * @author Vincent Zurczak - Linagora
+ */
+public class SimulatedAgent {
+
+	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final String machineId, domain, ipAddress;
+	private final IMessagingClient client;
+	private final ScheduledExecutorService executor;
+	private final LatencyDistribution responseLatency;
+
+	private final Mailbox mailbox = new Mailbox();
+	private final AtomicBoolean processingScheduled = new AtomicBoolean( false );
+	private final AtomicBoolean started = new AtomicBoolean( false );
+
+	// Only modified by the thread that processes the messages
+	private volatile String applicationName, scopedInstancePath;
+	private Map<String,InstanceStatus> pathToStatus;
+	private boolean terminated = false;
+
+	// Messages to send to the DM, in order (guarded by "outbox")
+	private final Deque<PendingMessage> outbox = new ArrayDeque<> ();
+	private boolean outboxScheduled = false;
+	private long lastDueTime;
+
+
+
+	/**
+	 * Constructor.
+	 * @param machineId the machine ID
+	 * @param domain the domain
+	 * @param applicationName the application name
+	 * @param scopedInstancePath the scoped instance path
+	 * @param ipAddress the IP address to put in heart beats
+	 * @param client a messaging client, not yet configured
+	 * @param executor the thread pool shared by all the simulated agents
+	 * @param responseLatency the latency to apply before answering the DM
+	 */
+	public SimulatedAgent(
+			String machineId,
+			String domain,
+			String applicationName,
+			String scopedInstancePath,
+			String ipAddress,
+			IMessagingClient client,
+			ScheduledExecutorService executor,
+			LatencyDistribution responseLatency ) {
+
+		this.machineId = machineId;
+		this.domain = domain;
+		this.applicationName = applicationName;
+		this.scopedInstancePath = scopedInstancePath;
+		this.ipAddress = ipAddress;
+		this.client = client;
+		this.executor = executor;
+		this.responseLatency = responseLatency;
+	}
+
+
+	/**
+	 * Connects to the messaging and introduces itself to the DM.
+	 * @throws IOException if something went wrong with the messaging
+	 */
+	public synchronized void start() throws IOException {
+
+		// An agent cannot be restarted
+		if( this.terminated )
+			return;
+
+		// The owner must be set before the queue is registered
+		this.client.setOwnerProperties( RecipientKind.AGENTS, this.domain, this.applicationName, this.scopedInstancePath );
+		this.client.setMessageQueue( this.mailbox );
+		this.client.openConnection();
+		this.client.subscribe( agentContext());
+
+		this.started.set( true );
+		sendHeartbeat();
+	}
+
+
+	/**
+	 * Disconnects from the messaging.
+	 * @throws IOException if something went wrong with the messaging
+	 */
+	public synchronized void stop() throws IOException {
+
+		this.terminated = true;
+		if( this.started.compareAndSet( true, false )) {
+			this.client.unsubscribe( agentContext());
+			this.client.deleteMessagingServerArtifacts( null );
+			this.client.closeConnection();
+		}
+
+		this.mailbox.clear();
+		synchronized( this.outbox ) {
+			this.outbox.clear();
+		}
+	}
+
+
+	/**
+	 * Sends a heart beat to the DM, if this agent was started.
+	 */
+	public void sendHeartbeat() {
+
+		if( this.started.get()) {
+			MsgNotifHeartbeat msg = new MsgNotifHeartbeat( this.applicationName, this.scopedInstancePath, this.ipAddress );
+			msg.setModelRequired( this.pathToStatus == null );
+			send( msg );
+		}
+	}
+
+
+	/**
+	 * @return the machine ID
+	 */
+	public String getMachineId() {
+		return this.machineId;
+	}
+
+
+	/**
+	 * @return the application name
+	 */
+	public String getApplicationName() {
+		return this.applicationName;
+	}
+
+
+	/**
+	 * @return the scoped instance path
+	 */
+	public String getScopedInstancePath() {
+		return this.scopedInstancePath;
+	}
+
+
+	/**
+	 * @return true if this agent was started and not stopped
+	 */
+	public boolean isStarted() {
+		return this.started.get();
+	}
+
+
+	/**
+	 * Processes all the messages of the mailbox.
+	 */
+	void processMessages() {
+
+		Message message;
+		while(( message = this.mailbox.poll()) != null ) {
+			try {
+				processMessage( message );
+
+			} catch( Exception e ) {
+				this.logger.severe( "Simulated agent " + this.machineId + " failed to process a message. " + e.getMessage());
+				Utils.logException( this.logger, e );
+			}
+		}
+
+		// Messages may have arrived in the mean time
+		this.processingScheduled.set( false );
+		if( ! this.mailbox.isEmpty())
+			scheduleProcessing();
+	}
+
+
+	/**
+	 * Processes a message.
+	 * @param message a message sent by the DM
+	 * @throws IOException if something went wrong with the messaging
+	 */
+	void processMessage( Message message ) throws IOException {
+
+		this.logger.finer( "Simulated agent " + this.machineId + " received a " + message.getClass().getSimpleName() + " message." );
+		if( message instanceof MsgCmdSetScopedInstance )
+			processMsgSetScopedInstance((MsgCmdSetScopedInstance) message );
+
+		else if( message instanceof MsgCmdChangeInstanceState )
+			processMsgChangeInstanceState((MsgCmdChangeInstanceState) message );
+
+		else if( message instanceof MsgCmdAddInstance )
+			processMsgAddInstance((MsgCmdAddInstance) message );
+
+		else if( message instanceof MsgCmdRemoveInstance )
+			processMsgRemoveInstance((MsgCmdRemoveInstance) message );
+
+		else if( message instanceof MsgCmdSendInstances )
+			processMsgSendInstances();
+
+		else if( message instanceof MsgEcho )
+			processMsgEcho((MsgEcho) message );
+
+		else if( message instanceof MsgCmdReassignAgent )
+			processMsgReassignAgent((MsgCmdReassignAgent) message );
+
+		else
+			this.logger.finest( "Simulated agent " + this.machineId + " ignores " + message.getClass().getSimpleName() + " messages." );
+	}
+
+
+	/**
+	 * @return the states of the instances (null until the model was received)
+	 */
+	Map<String,InstanceStatus> getPathToStatus() {
+		return this.pathToStatus;
+	}
+
+
+	private void processMsgSetScopedInstance( MsgCmdSetScopedInstance msg ) {
+
+		// The received instance may be the DM's one (in-memory messaging).
+		// So, we only read it.
+		if( this.pathToStatus != null ) {
+			this.logger.finest( "Simulated agent " + this.machineId + " already has a model." );
+
+		} else {
+			// Instances associated with other agents (e.g. containers) are ignored.
+			Map<String,InstanceStatus> map = new LinkedHashMap<> ();
+			List<Instance> toProcess = new ArrayList<> ();
+			toProcess.add( msg.getScopedInstance());
+			while( ! toProcess.isEmpty()) {
+				Instance instance = toProcess.remove( 0 );
+				map.put( InstanceHelpers.computeInstancePath( instance ), instance.getStatus());
+				for( Instance child : instance.getChildren()) {
+					if( ! InstanceHelpers.isTarget( child ))
+						toProcess.add( child );
+				}
+			}
+
+			this.pathToStatus = map;
+			if( map.put( this.scopedInstancePath, InstanceStatus.DEPLOYED_STARTED ) != InstanceStatus.DEPLOYED_STARTED )
+				notifyLater( this.scopedInstancePath, InstanceStatus.DEPLOYED_STARTED, 0 );
+		}
+	}
+
+
+	private void processMsgChangeInstanceState( MsgCmdChangeInstanceState msg ) {
+
+		String path = msg.getInstancePath();
+		InstanceStatus newStatus = msg.getNewState();
+		InstanceStatus currentStatus = this.pathToStatus == null ? null : this.pathToStatus.get( path );
+
+		if( currentStatus == null ) {
+			this.logger.severe( "No instance matched " + path + " on simulated agent " + this.machineId + ". Request to change its state is dropped." );
+
+		} else if( path.equals( this.scopedInstancePath )) {
+			this.logger.severe( "No action on the root instance is permitted." );
+
+		} else if( newStatus != InstanceStatus.NOT_DEPLOYED
+				&& newStatus != InstanceStatus.DEPLOYED_STOPPED
+				&& newStatus != InstanceStatus.DEPLOYED_STARTED ) {
+			this.logger.severe( "Simulated agent " + this.machineId + " cannot reach a transitional state (" + newStatus + ")." );
+
+		} else if( currentStatus != newStatus ) {
+
+			// Notify the transition immediately and the final state after a while.
+			// Undeploying or stopping an instance also affects its children.
+			InstanceStatus transition;
+			if( newStatus == InstanceStatus.NOT_DEPLOYED )
+				transition = InstanceStatus.UNDEPLOYING;
+			else if( newStatus == InstanceStatus.DEPLOYED_STARTED )
+				transition = InstanceStatus.STARTING;
+			else if( currentStatus == InstanceStatus.NOT_DEPLOYED )
+				transition = InstanceStatus.DEPLOYING;
+			else
+				transition = InstanceStatus.STOPPING;
+
+			notifyLater( path, transition, 0 );
+			long latency = this.responseLatency.next();
+			if( newStatus != InstanceStatus.DEPLOYED_STARTED ) {
+				String prefix = path + "/";
+				for( Map.Entry<String,InstanceStatus> entry : this.pathToStatus.entrySet()) {
+					if( ! entry.getKey().startsWith( prefix ))
+						continue;
+
+					InstanceStatus childStatus = entry.getValue();
+					if( childStatus == InstanceStatus.NOT_DEPLOYED
+							|| childStatus == InstanceStatus.DEPLOYED_STOPPED && newStatus == InstanceStatus.DEPLOYED_STOPPED )
+						continue;
+
+					entry.setValue( newStatus );
+					notifyLater( entry.getKey(), newStatus, latency );
+				}
+			}
+
+			this.pathToStatus.put( path, newStatus );
+			notifyLater( path, newStatus, latency );
+		}
+	}
+
+
+	private void processMsgAddInstance( MsgCmdAddInstance msg ) {
+
+		String parentPath = msg.getParentInstancePath();
+		if( this.pathToStatus == null || ! this.pathToStatus.containsKey( parentPath ))
+			this.logger.severe( "The parent instance for " + parentPath + " was not found. The request to add a new instance is dropped." );
+		else
+			this.pathToStatus.put( parentPath + "/" + msg.getInstanceName(), InstanceStatus.NOT_DEPLOYED );
+	}
+
+
+	private void processMsgRemoveInstance( MsgCmdRemoveInstance msg ) {
+
+		String path = msg.getInstancePath();
+		InstanceStatus status = this.pathToStatus == null ? null : this.pathToStatus.get( path );
+		if( status == null ) {
+			this.logger.severe( "No instance matched " + path + " on simulated agent " + this.machineId + ". Request to remove it from the model is dropped." );
+
+		} else if( status != InstanceStatus.NOT_DEPLOYED ) {
+			this.logger.severe( "Instance " + path + " cannot be removed. Instance status: " + status + "." );
+
+		} else if( path.equals( this.scopedInstancePath )) {
+			this.logger.fine( "The root instance " + path + " cannot be removed. The agent must be reboot and/or reconfigured." );
+
+		} else {
+			String prefix = path + "/";
+			for( Iterator<String> it = this.pathToStatus.keySet().iterator(); it.hasNext(); ) {
+				String key = it.next();
+				if( key.equals( path ) || key.startsWith( prefix ))
+					it.remove();
+			}
+
+			send( new MsgNotifInstanceRemoved( this.applicationName, toInstance( path, status )));
+		}
+	}
+
+
+	private void processMsgSendInstances() {
+
+		if( this.pathToStatus != null ) {
+			for( Map.Entry<String,InstanceStatus> entry : this.pathToStatus.entrySet())
+				send( new MsgNotifInstanceChanged( this.applicationName, toInstance( entry.getKey(), entry.getValue())));
+		}
+	}
+
+
+	private void processMsgEcho( MsgEcho msg ) {
+
+		final MsgEcho response = new MsgEcho( msg.getContent().replaceFirst( "^PING:", "PONG:" ), msg.getUuid());
+		sendLater( response, this.responseLatency.next());
+	}
+
+
+	private void processMsgReassignAgent( MsgCmdReassignAgent msg ) throws IOException {
+
+		if( this.pathToStatus != null ) {
+			this.logger.warning( "Simulated agent " + this.machineId + " is already associated with " + this.scopedInstancePath + ". It cannot be reassigned." );
+
+		} else {
+			this.logger.fine( "Simulated agent " + this.machineId + " is being reassigned to " + msg.getScopedInstancePath() + " @ " + msg.getApplicationName());
+			this.client.unsubscribe( agentContext());
+
+			this.applicationName = msg.getApplicationName();
+			this.scopedInstancePath = msg.getScopedInstancePath();
+			this.client.setOwnerProperties( RecipientKind.AGENTS, this.domain, this.applicationName, this.scopedInstancePath );
+
+			this.client.subscribe( agentContext());
+			sendHeartbeat();
+		}
+	}
+
+
+	private void notifyLater( String path, InstanceStatus status, long delay ) {
+		sendLater( new MsgNotifInstanceChanged( this.applicationName, toInstance( path, status )), delay );
+	}
+
+
+	private void sendLater( Message message, long delay ) {
+
+		// Messages must be sent in the order they were created.
+		// The shared pool has several threads, so they are sent one after the other from the outbox.
+		long now = System.currentTimeMillis();
+		long dueTime;
+		boolean sendNow = false;
+		synchronized( this.outbox ) {
+			dueTime = Math.max( now + delay, this.lastDueTime );
+			this.lastDueTime = dueTime;
+
+			// Nothing is waiting => no need to go through the outbox
+			if( dueTime <= now && ! this.outboxScheduled ) {
+				sendNow = true;
+
+			} else {
+				this.outbox.add( new PendingMessage( dueTime, message ));
+				if( this.outboxScheduled )
+					return;
+
+				this.outboxScheduled = true;
+			}
+		}
+
+		if( sendNow )
+			send( message );
+		else
+			scheduleOutbox( dueTime - now );
+	}
+
+
+	/**
+	 * Sends the messages of the outbox that are due.
+	 */
+	void flushOutbox() {
+
+		for( ;; ) {
+			PendingMessage pending;
+			long wait;
+			synchronized( this.outbox ) {
+				pending = this.outbox.peek();
+				if( pending == null ) {
+					this.outboxScheduled = false;
+					return;
+				}
+
+				wait = pending.dueTime - System.currentTimeMillis();
+				if( wait <= 0 )
+					this.outbox.poll();
+			}
+
+			if( wait > 0 ) {
+				scheduleOutbox( wait );
+				return;
+			}
+
+			send( pending.message );
+		}
+	}
+
+
+	private void scheduleOutbox( long delay ) {
+
+		try {
+			this.executor.schedule( new Runnable() {
+				@Override
+				public void run() {
+					flushOutbox();
+				}
+			}, Math.max( 0, delay ), TimeUnit.MILLISECONDS );
+
+		} catch( RejectedExecutionException e ) {
+			synchronized( this.outbox ) {
+				this.outbox.clear();
+				this.outboxScheduled = false;
+			}
+
+			this.logger.finest( "Simulated agent " + this.machineId + " could not schedule a message. The simulator was stopped." );
+		}
+	}
+
+
+	private void send( Message message ) {
+
+		try {
+			if( this.started.get())
+				this.client.publish( new MessagingContext( RecipientKind.DM, this.domain, this.applicationName ), message );
+
+		} catch( IOException e ) {
+			this.logger.warning( "Simulated agent " + this.machineId + " failed to send a message to the DM. " + e.getMessage());
+			Utils.logException( this.logger, e );
+		}
+	}
+
+
+	private void scheduleProcessing() {
+
+		if( this.processingScheduled.compareAndSet( false, true )) {
+			try {
+				this.executor.execute( new Runnable() {
+					@Override
+					public void run() {
+						processMessages();
+					}
+				});
+
+			} catch( RejectedExecutionException e ) {
+				this.processingScheduled.set( false );
+				this.logger.finest( "Simulated agent " + this.machineId + " could not process its messages. The simulator was stopped." );
+			}
+		}
+	}
+
+
+	private MessagingContext agentContext() {
+		String topicName = MessagingUtils.buildTopicNameForAgent( this.scopedInstancePath );
+		return new MessagingContext( RecipientKind.AGENTS, this.domain, topicName, this.applicationName );
+	}
+
+
+	/**
+	 * Builds a transient instance from a path.
+	 * <p>
+	 * Notifications only need the path and the status.
+	 * </p>
+	 *
+	 * @param path an instance path
+	 * @param status the instance status
+	 * @return a new instance, with its ancestors
+	 */
+	static Instance toInstance( String path, InstanceStatus status ) {
+
+		Instance result = null;
+		List<String> names = new ArrayList<> ();
+		for( String name : path.split( "/" )) {
+			if( ! name.isEmpty())
+				names.add( name );
+		}
+
+		for( String name : names ) {
+			Instance instance = new Instance( name );
+			if( result != null )
+				InstanceHelpers.insertChild( result, instance );
+
+			result = instance;
+		}
+
+		if( result != null )
+			result.setStatus( status );
+
+		return result;
+	}
+
+
+	/**
+	 * A message to send to the DM once it is due.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class PendingMessage {
+
+		final long dueTime;
+		final Message message;
+
+
+		/**
+		 * Constructor.
+		 * @param dueTime
+		 * @param message
+		 */
+		PendingMessage( long dueTime, Message message ) {
+			this.dueTime = dueTime;
+			this.message = message;
+		}
+	}
+
+
+	/**
+	 * A message queue that triggers the processing of messages as soon as they arrive.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private class Mailbox extends RoboconfMessageQueue {
+		private static final long serialVersionUID = -2281463906581713066L;
+
+		@Override
+		public boolean offer( Message e ) {
+
+			boolean result = super.offer( e );
+			if( result )
+				scheduleProcessing();
+
+			return result;
+		}
+	}
+}
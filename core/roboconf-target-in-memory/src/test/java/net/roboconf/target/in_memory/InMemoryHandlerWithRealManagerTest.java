@@ -26,11 +26,12 @@
 package net.roboconf.target.in_memory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
 
 import org.apache.felix.ipojo.ComponentInstance;
 import org.apache.felix.ipojo.Factory;
@@ -41,16 +42,29 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.Constants;
 import net.roboconf.core.internal.tests.TestUtils;
+import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.beans.Instance.InstanceStatus;
 import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.internal.api.impl.InstancesMngrImpl;
+import net.roboconf.dm.internal.environment.messaging.DmMessageProcessor;
 import net.roboconf.dm.management.Manager;
+import net.roboconf.dm.management.api.IMetricsMngr;
+import net.roboconf.dm.management.api.IMetricsMngr.HistogramSnapshot;
 import net.roboconf.messaging.api.MessagingConstants;
 import net.roboconf.messaging.api.factory.MessagingClientFactoryRegistry;
+import net.roboconf.messaging.api.internal.client.test.TestClient;
+import net.roboconf.messaging.api.messages.Message;
+import net.roboconf.messaging.api.messages.from_agent_to_dm.MsgNotifHeartbeat;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdReassignAgent;
 import net.roboconf.target.api.TargetHandlerParameters;
 
 /**
@@ -66,6 +80,7 @@ public class InMemoryHandlerWithRealManagerTest {
 	private Factory agentFactory;
 	private InMemoryHandler handler;
 	private TestApplication app;
+	private TestManagerWrapper managerWrapper;
 
 
 	@Before
@@ -92,19 +107,19 @@ public class InMemoryHandlerWithRealManagerTest {
 		this.manager.configurationMngr().setWorkingDirectory( this.folder.newFolder());
 		this.manager.start();
 
-		TestManagerWrapper managerWrapper = new TestManagerWrapper( this.manager );
-		managerWrapper.configureMessagingForTest();
+		this.managerWrapper = new TestManagerWrapper( this.manager );
+		this.managerWrapper.configureMessagingForTest();
 		this.manager.reconfigure();
 
 		// Disable the messages timer for predictability
-		TestUtils.getInternalField( this.manager, "timer", Timer.class).cancel();
+		TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class).cancel();
 
 		// Load an application
 		this.app = new TestApplication();
 		this.app.setDirectory( this.folder.newFolder());
 
 		ManagedApplication ma = new ManagedApplication( this.app );
-		managerWrapper.addManagedApplication( ma );
+		this.managerWrapper.addManagedApplication( ma );
 	}
 
 
@@ -157,4 +172,133 @@ public class InMemoryHandlerWithRealManagerTest {
 		Mockito.verify( this.agentFactory, Mockito.times( 1 )).createComponentInstance( Mockito.any( Dictionary.class ));
 		Mockito.verify( componentInstance, Mockito.times( 1 )).start();
 	}
+
+
+	@Test
+	public void testMetricsAreRecordedForTheMachineCreation() throws Exception {
+
+		// Configure the mocks
+		ComponentInstance componentInstance = Mockito.mock( ComponentInstance.class );
+		Mockito.when( this.agentFactory.createComponentInstance( Mockito.any( Dictionary.class ))).thenReturn( componentInstance );
+		Mockito.when( this.agentFactory.getInstancesNames()).thenReturn( new ArrayList<String>( 0 ));
+
+		// Associate a target that simulates a slow machine creation
+		this.manager.targetAppears( this.handler );
+		String targetId = this.manager.targetsMngr().createTarget(
+				"id: tid\nhandler: " + InMemoryHandler.TARGET_ID + "\n" + InMemoryHandler.DELAY + ": 200" );
+		this.manager.targetsMngr().associateTargetWith( targetId, this.app, null );
+
+		// Deploy a machine
+		ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( this.app.getName());
+		this.manager.instancesMngr().changeInstanceState( ma, this.app.getTomcatVm(), InstanceStatus.DEPLOYED_STARTED );
+		Assert.assertEquals( InstanceStatus.DEPLOYING, this.app.getTomcatVm().getStatus());
+
+		IMetricsMngr metricsMngr = this.manager.metricsMngr();
+		HistogramSnapshot snapshot = metricsMngr.getHistograms().get( IMetricsMngr.TARGETS_CREATE_MACHINE + InMemoryHandler.TARGET_ID );
+		Assert.assertNotNull( snapshot );
+		Assert.assertEquals( 1, snapshot.getCount());
+		Assert.assertTrue( snapshot.getMin() >= 200 );
+		Assert.assertNull( metricsMngr.getHistograms().get( IMetricsMngr.INSTANCES_DEPLOY_TO_STARTED ));
+
+		// Simulate the agent's first heart beat
+		String scopedInstancePath = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+		new DmMessageProcessor( this.manager ).processMessage( new MsgNotifHeartbeat( this.app.getName(), scopedInstancePath, "127.0.0.1" ));
+		Assert.assertEquals( InstanceStatus.DEPLOYED_STARTED, this.app.getTomcatVm().getStatus());
+
+		snapshot = metricsMngr.getHistograms().get( IMetricsMngr.INSTANCES_DEPLOY_TO_STARTED );
+		Assert.assertNotNull( snapshot );
+		Assert.assertEquals( 1, snapshot.getCount());
+		Assert.assertTrue( snapshot.getMin() >= 200 );
+		Assert.assertFalse( metricsMngr.stopTiming(
+				IMetricsMngr.INSTANCES_DEPLOY_TO_STARTED,
+				InstancesMngrImpl.timingKey( this.app.getName(), scopedInstancePath )));
+
+		Assert.assertEquals( Long.valueOf( 1 ), metricsMngr.getCounters().get( IMetricsMngr.MESSAGING_RECEIVED + MsgNotifHeartbeat.class.getSimpleName()));
+	}
+
+
+	@Test
+	public void testWarmPoolShortensTheDeployment() throws Exception {
+
+		// Configure the mocks and keep the configuration of every created agent
+		final List<Dictionary<?,?>> agentConfigurations = Collections.synchronizedList( new ArrayList<Dictionary<?,?>> ());
+		final ComponentInstance componentInstance = Mockito.mock( ComponentInstance.class );
+		Mockito.when( this.agentFactory.createComponentInstance( Mockito.any( Dictionary.class ))).thenAnswer( new Answer<ComponentInstance>() {
+			@Override
+			public ComponentInstance answer( InvocationOnMock invocation ) throws Throwable {
+				agentConfigurations.add((Dictionary<?,?>) invocation.getArguments()[ 0 ]);
+				return componentInstance;
+			}
+		});
+
+		// Associate a target that simulates a slow machine creation, with a warm pool
+		this.manager.targetAppears( this.handler );
+		String targetId = this.manager.targetsMngr().createTarget(
+				"id: tid\nhandler: " + InMemoryHandler.TARGET_ID
+				+ "\n" + InMemoryHandler.DELAY + ": 500"
+				+ "\n" + Constants.TARGET_PROPERTY_POOL_SIZE + ": 2" );
+
+		this.manager.targetsMngr().associateTargetWith( targetId, this.app, null );
+
+		// Fill the pool and simulate the first heart beats of the idle agents
+		this.manager.warmPoolMngr().refillPools();
+		waitForAgents( agentConfigurations, 2 );
+
+		DmMessageProcessor processor = new DmMessageProcessor( this.manager );
+		List<String> idleMachineIds = new ArrayList<> ();
+		for( Dictionary<?,?> cfg : new ArrayList<>( agentConfigurations )) {
+			String appName = (String) cfg.get( "application-name" );
+			String path = (String) cfg.get( "scoped-instance-path" );
+			idleMachineIds.add( path + " @ " + appName );
+			processor.processMessage( new MsgNotifHeartbeat( appName, path, "127.0.0.1" ));
+		}
+
+		// Deploy a machine: an idle one is claimed
+		TestClient msgClient = (TestClient) this.managerWrapper.getInternalMessagingClient();
+		msgClient.clearMessages();
+
+		ManagedApplication ma = this.manager.applicationMngr().findManagedApplicationByName( this.app.getName());
+		this.manager.instancesMngr().changeInstanceState( ma, this.app.getTomcatVm(), InstanceStatus.DEPLOYED_STARTED );
+		Assert.assertEquals( InstanceStatus.DEPLOYING, this.app.getTomcatVm().getStatus());
+		Assert.assertTrue( idleMachineIds.contains( this.app.getTomcatVm().data.get( Instance.MACHINE_ID )));
+
+		String scopedInstancePath = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+		MsgCmdReassignAgent reassignMsg = null;
+		for( Message msg : msgClient.messagesForAgents ) {
+			if( msg instanceof MsgCmdReassignAgent )
+				reassignMsg = (MsgCmdReassignAgent) msg;
+		}
+
+		Assert.assertNotNull( reassignMsg );
+		Assert.assertEquals( this.app.getName(), reassignMsg.getApplicationName());
+		Assert.assertEquals( scopedInstancePath, reassignMsg.getScopedInstancePath());
+
+		// The reassigned agent introduces itself
+		processor.processMessage( new MsgNotifHeartbeat( this.app.getName(), scopedInstancePath, "127.0.0.1" ));
+		Assert.assertEquals( InstanceStatus.DEPLOYED_STARTED, this.app.getTomcatVm().getStatus());
+
+		// The creation delay was not part of the deployment
+		IMetricsMngr metricsMngr = this.manager.metricsMngr();
+		Assert.assertNull( metricsMngr.getHistograms().get( IMetricsMngr.TARGETS_CREATE_MACHINE + InMemoryHandler.TARGET_ID ));
+
+		HistogramSnapshot snapshot = metricsMngr.getHistograms().get( IMetricsMngr.INSTANCES_DEPLOY_TO_STARTED );
+		Assert.assertNotNull( snapshot );
+		Assert.assertEquals( 1, snapshot.getCount());
+		Assert.assertTrue( snapshot.getMax() < 250 );
+
+		// The pool is refilled in background
+		waitForAgents( agentConfigurations, 3 );
+	}
+
+
+	private static void waitForAgents( List<?> agentConfigurations, int expectedCount ) throws InterruptedException {
+
+		for( int i=0; i<50 && agentConfigurations.size() < expectedCount; i++ )
+			Thread.sleep( 100 );
+
+		Assert.assertEquals( expectedCount, agentConfigurations.size());
+
+		// Let the pool register the new machines
+		Thread.sleep( 100 );
+	}
 }
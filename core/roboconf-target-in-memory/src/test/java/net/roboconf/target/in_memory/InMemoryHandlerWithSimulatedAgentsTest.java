@@ -0,0 +1,230 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.in_memory;
+
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.ipojo.Factory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.beans.Instance.InstanceStatus;
+import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.dm.internal.test.TestManagerWrapper;
+import net.roboconf.dm.management.ManagedApplication;
+import net.roboconf.dm.management.Manager;
+import net.roboconf.messaging.api.MessagingConstants;
+import net.roboconf.messaging.api.business.ListenerCommand;
+import net.roboconf.messaging.api.factory.MessagingClientFactoryRegistry;
+import net.roboconf.messaging.api.internal.client.in_memory.InMemoryClientFactory;
+import net.roboconf.target.api.TargetException;
+import net.roboconf.target.api.TargetHandlerParameters;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class InMemoryHandlerWithSimulatedAgentsTest {
+
+	private static final int AGENTS_COUNT = 100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Manager manager;
+	private InMemoryHandler handler;
+	private TestApplication app;
+	private ManagedApplication ma;
+
+
+	@Before
+	public void before() throws Exception {
+
+		// The DM and the simulated agents share the same in-memory messaging
+		InMemoryClientFactory messagingFactory = new InMemoryClientFactory();
+		MessagingClientFactoryRegistry registry = new MessagingClientFactoryRegistry();
+		registry.addMessagingClientFactory( messagingFactory );
+
+		this.manager = new Manager();
+		this.manager.setMessagingType( MessagingConstants.FACTORY_IN_MEMORY );
+		this.manager.configurationMngr().setWorkingDirectory( this.folder.newFolder());
+		this.manager.start();
+		this.manager.addMessagingFactory( messagingFactory );
+		this.manager.reconfigure();
+
+		// Prepare the handler (no iPojo agent should be created)
+		this.handler = new InMemoryHandler();
+		this.handler.setMessagingFactoryRegistry( registry );
+		this.handler.agentFactory = Mockito.mock( Factory.class );
+		this.handler.manager = this.manager;
+		this.manager.targetAppears( this.handler );
+
+		// Load an application with many machines
+		this.app = new TestApplication();
+		this.app.setDirectory( this.folder.newFolder());
+		for( int i=0; i<AGENTS_COUNT; i++ ) {
+			Instance vm = new Instance( "vm-" + i ).component( this.app.getTomcatVm().getComponent());
+			Instance server = new Instance( "server" ).component( this.app.getTomcat().getComponent());
+			InstanceHelpers.insertChild( vm, server );
+			this.app.getRootInstances().add( vm );
+		}
+
+		this.ma = new ManagedApplication( this.app );
+		new TestManagerWrapper( this.manager ).addManagedApplication( this.ma );
+		this.manager.messagingMngr().getMessagingClient().listenToAgentMessages( this.app, ListenerCommand.START );
+	}
+
+
+	@After
+	public void after() {
+		this.handler.stop();
+		this.manager.stop();
+	}
+
+
+	@Test( timeout = 60000 )
+	public void testDeployAndUndeployManyAgents() throws Exception {
+
+		String targetId = this.manager.targetsMngr().createTarget(
+				"id: tid\nhandler: " + InMemoryHandler.TARGET_ID
+				+ "\n" + InMemoryHandler.SIMULATE_AGENTS + ": true"
+				+ "\n" + InMemoryHandler.STARTUP_LATENCY + ": 10-100"
+				+ "\n" + InMemoryHandler.RESPONSE_LATENCY + ": exp:5" );
+
+		this.manager.targetsMngr().associateTargetWith( targetId, this.app, null );
+
+		// Deploy and start everything
+		this.manager.instancesMngr().deployAndStartAll( this.ma, null );
+		Assert.assertEquals( this.app.getRootInstances().size(), this.handler.simulator.getAgentsCount());
+		waitForStatus( InstanceStatus.DEPLOYED_STARTED );
+		Mockito.verifyZeroInteractions( this.handler.agentFactory );
+
+		// Stop the servers
+		this.manager.instancesMngr().stopAll( this.ma, null );
+		waitForStatus( InstanceStatus.DEPLOYED_STOPPED, this.app.getTomcat());
+		Assert.assertEquals( InstanceStatus.DEPLOYED_STARTED, this.app.getTomcatVm().getStatus());
+
+		// Undeploy everything
+		this.manager.instancesMngr().undeployAll( this.ma, null );
+		waitForStatus( InstanceStatus.NOT_DEPLOYED );
+		Assert.assertEquals( 0, this.handler.simulator.getAgentsCount());
+	}
+
+
+	@Test
+	public void testMachineLifeCycle() throws Exception {
+
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( InMemoryHandler.SIMULATE_AGENTS, "true" );
+
+		String path = InstanceHelpers.computeInstancePath( this.app.getMySqlVm());
+		TargetHandlerParameters parameters = new TargetHandlerParameters()
+				.targetProperties( targetProperties )
+				.messagingProperties( this.manager.messagingMngr().getMessagingClient().getConfiguration())
+				.scopedInstancePath( path )
+				.applicationName( this.app.getName())
+				.domain( this.manager.getDomain());
+
+		// The agent introduces itself: the DM considers the machine is running
+		String machineId = this.handler.createMachine( parameters );
+		Assert.assertEquals( path + " @ " + this.app.getName(), machineId );
+		Assert.assertTrue( this.handler.isMachineRunning( parameters, machineId ));
+
+		for( int i=0; i<50 && this.app.getMySqlVm().getStatus() != InstanceStatus.DEPLOYED_STARTED; i++ )
+			Thread.sleep( 100 );
+
+		Assert.assertEquals( InstanceStatus.DEPLOYED_STARTED, this.app.getMySqlVm().getStatus());
+
+		// Termination
+		this.handler.terminateMachine( parameters, machineId );
+		Assert.assertFalse( this.handler.isMachineRunning( parameters, machineId ));
+		Mockito.verify( this.handler.agentFactory, Mockito.never()).createComponentInstance( Mockito.any( Dictionary.class ));
+	}
+
+
+	@Test( expected = TargetException.class )
+	public void testSimulatedAgentsRequireInMemoryMessaging() throws Exception {
+
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( InMemoryHandler.SIMULATE_AGENTS, "true" );
+
+		Map<String,String> messagingProperties = new HashMap<> ();
+		messagingProperties.put( MessagingConstants.MESSAGING_TYPE_PROPERTY, MessagingConstants.FACTORY_TEST );
+
+		TargetHandlerParameters parameters = new TargetHandlerParameters()
+				.targetProperties( targetProperties )
+				.messagingProperties( messagingProperties )
+				.scopedInstancePath( "/vm" )
+				.applicationName( this.app.getName());
+
+		this.handler.createMachine( parameters );
+	}
+
+
+	@Test( expected = TargetException.class )
+	public void testInvalidLatency() throws Exception {
+
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( InMemoryHandler.SIMULATE_AGENTS, "true" );
+		targetProperties.put( InMemoryHandler.RESPONSE_LATENCY, "fast" );
+
+		TargetHandlerParameters parameters = new TargetHandlerParameters()
+				.targetProperties( targetProperties )
+				.messagingProperties( this.manager.messagingMngr().getMessagingClient().getConfiguration())
+				.scopedInstancePath( "/vm" )
+				.applicationName( this.app.getName());
+
+		this.handler.createMachine( parameters );
+	}
+
+
+	private void waitForStatus( InstanceStatus status ) throws InterruptedException {
+		waitForStatus( status, null );
+	}
+
+
+	private void waitForStatus( InstanceStatus status, Instance sample ) throws InterruptedException {
+
+		// Only consider the instances whose component is the same than the sample (if any)
+		List<Instance> instances = InstanceHelpers.getAllInstances( this.app );
+		for( Instance instance : instances ) {
+			if( sample != null && sample.getComponent() != instance.getComponent())
+				continue;
+
+			while( instance.getStatus() != status )
+				Thread.sleep( 20 );
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.in_memory.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class LatencyDistributionTest {
+
+	@Test
+	public void testParsing() {
+
+		LatencyDistribution def = LatencyDistribution.constant( 5 );
+		Assert.assertSame( def, LatencyDistribution.parse( null, def ));
+		Assert.assertSame( def, LatencyDistribution.parse( " ", def ));
+
+		Assert.assertEquals( "50", LatencyDistribution.parse( "50", def ).toString());
+		Assert.assertEquals( "50", LatencyDistribution.parse( " 50 ", def ).toString());
+		Assert.assertEquals( "10-200", LatencyDistribution.parse( "10-200", def ).toString());
+		Assert.assertEquals( "10-200", LatencyDistribution.parse( "10 - 200", def ).toString());
+		Assert.assertEquals( "exp:30", LatencyDistribution.parse( "EXP:30", def ).toString());
+		Assert.assertEquals( "0", LatencyDistribution.constant( -4 ).toString());
+	}
+
+
+	@Test
+	public void testInvalidDistributions() {
+
+		String[] invalid = { "fast", "-5", "200-10", "10-", "exp:", "exp:-2", "1.5" };
+		for( String s : invalid ) {
+			try {
+				LatencyDistribution.parse( s, null );
+				Assert.fail( s + " should not have been parsed." );
+
+			} catch( IllegalArgumentException e ) {
+				// nothing
+			}
+		}
+	}
+
+
+	@Test
+	public void testNext() {
+
+		Assert.assertEquals( 50, LatencyDistribution.parse( "50", null ).next());
+
+		LatencyDistribution uniform = LatencyDistribution.parse( "10-20", null );
+		for( int i=0; i<1000; i++ ) {
+			long value = uniform.next();
+			Assert.assertTrue( value >= 10 && value <= 20 );
+		}
+
+		long sum = 0;
+		LatencyDistribution exponential = LatencyDistribution.parse( "exp:100", null );
+		for( int i=0; i<10000; i++ ) {
+			long value = exponential.next();
+			Assert.assertTrue( value >= 0 );
+			sum += value;
+		}
+
+		long mean = sum / 10000;
+		Assert.assertTrue( String.valueOf( mean ), mean > 80 && mean < 120 );
+	}
+}
@@ -0,0 +1,344 @@
+/**
+ * Copyright 2017 Linagora, Université Joseph Fourier, Floralis
+ *
+ * The present code is developed in the scope of the joint LINAGORA -
+ * Université Joseph Fourier - Floralis research program and is designated
+ * as a "Result" pursuant to the terms and conditions of the LINAGORA
+ * - Université Joseph Fourier - Floralis research program. Each copyright
+ * holder of Results enumerated here above fully & independently holds complete
+ * ownership of the complete Intellectual Property rights applicable to the whole
+ * of said Results, and may freely exploit it in any manner which does not infringe
+ * the moral rights of the other copyright holders.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.roboconf.target.in_memory.internal;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.roboconf.core.internal.tests.TestApplication;
+import net.roboconf.core.model.beans.Instance;
+import net.roboconf.core.model.beans.Instance.InstanceStatus;
+import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.messaging.api.extensions.IMessagingClient;
+import net.roboconf.messaging.api.extensions.MessagingContext;
+import net.roboconf.messaging.api.extensions.MessagingContext.RecipientKind;
+import net.roboconf.messaging.api.internal.client.in_memory.InMemoryClientFactory;
+import net.roboconf.messaging.api.internal.client.test.TestClient;
+import net.roboconf.messaging.api.jmx.RoboconfMessageQueue;
+import net.roboconf.messaging.api.messages.Message;
+import net.roboconf.messaging.api.messages.from_agent_to_dm.MsgNotifHeartbeat;
+import net.roboconf.messaging.api.messages.from_agent_to_dm.MsgNotifInstanceChanged;
+import net.roboconf.messaging.api.messages.from_agent_to_dm.MsgNotifInstanceRemoved;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdAddInstance;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdChangeInstanceState;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdReassignAgent;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdRemoveInstance;
+import net.roboconf.messaging.api.messages.from_dm_to_agent.MsgCmdSetScopedInstance;
+import net.roboconf.messaging.api.messages.from_dm_to_dm.MsgEcho;
+import net.roboconf.messaging.api.reconfigurables.ReconfigurableClientAgent;
+import net.roboconf.messaging.api.reconfigurables.ReconfigurableClientDm;
+import net.roboconf.messaging.api.utils.MessagingUtils;
+
+/**
+ * @author Vincent Zurczak - Linagora
+ */
+public class SimulatedAgentTest {
+
+	private ScheduledExecutorService executor;
+	private TestClient client;
+	private TestApplication app;
+	private SimulatedAgent agent;
+
+
+	@Before
+	public void before() throws Exception {
+
+		this.executor = Executors.newScheduledThreadPool( 1 );
+		this.client = new TestClient();
+		this.app = new TestApplication();
+
+		// No latency: answers are sent synchronously
+		this.agent = new SimulatedAgent(
+				"machine", "domain", this.app.getName(),
+				InstanceHelpers.computeInstancePath( this.app.getTomcatVm()),
+				"127.0.0.1", this.client, this.executor,
+				LatencyDistribution.constant( 0 ));
+
+		this.agent.start();
+	}
+
+
+	@After
+	public void after() throws Exception {
+		this.agent.stop();
+		this.executor.shutdownNow();
+	}
+
+
+	@Test
+	public void testStartAndStop() throws Exception {
+
+		Assert.assertTrue( this.agent.isStarted());
+		Assert.assertTrue( this.client.isConnected());
+		Assert.assertEquals( 1, this.client.subscriptions.size());
+
+		MessagingContext ctx = this.client.subscriptions.iterator().next();
+		Assert.assertEquals( RecipientKind.AGENTS, ctx.getKind());
+		Assert.assertEquals( this.app.getName(), ctx.getApplicationName());
+		Assert.assertEquals( MessagingUtils.buildTopicNameForAgent( this.app.getTomcatVm()), ctx.getComponentOrFacetName());
+
+		Assert.assertEquals( 1, this.client.messagesForTheDm.size());
+		MsgNotifHeartbeat heartbeat = (MsgNotifHeartbeat) this.client.messagesForTheDm.get( 0 );
+		Assert.assertTrue( heartbeat.isModelRequired());
+		Assert.assertEquals( "127.0.0.1", heartbeat.getIpAddress());
+
+		this.agent.stop();
+		Assert.assertFalse( this.agent.isStarted());
+		Assert.assertFalse( this.client.isConnected());
+		Assert.assertEquals( 0, this.client.subscriptions.size());
+
+		// Stopped agents cannot be restarted and do not send heart beats
+		this.agent.start();
+		this.agent.sendHeartbeat();
+		Assert.assertFalse( this.agent.isStarted());
+		Assert.assertEquals( 1, this.client.messagesForTheDm.size());
+	}
+
+
+	@Test
+	public void testModelAndStateChanges() throws Exception {
+
+		String vmPath = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+		String tomcatPath = InstanceHelpers.computeInstancePath( this.app.getTomcat());
+		String warPath = InstanceHelpers.computeInstancePath( this.app.getWar());
+
+		// Receive the model (the DM's instances must not be modified)
+		this.client.clearMessages();
+		Assert.assertNull( this.agent.getPathToStatus());
+		this.agent.processMessage( new MsgCmdSetScopedInstance( this.app.getTomcatVm()));
+
+		Assert.assertEquals( InstanceStatus.NOT_DEPLOYED, this.app.getTomcatVm().getStatus());
+		Assert.assertEquals( 3, this.agent.getPathToStatus().size());
+		Assert.assertEquals( InstanceStatus.DEPLOYED_STARTED, this.agent.getPathToStatus().get( vmPath ));
+		verifyNotifications( vmPath, InstanceStatus.DEPLOYED_STARTED );
+
+		// A second model is ignored
+		this.agent.processMessage( new MsgCmdSetScopedInstance( this.app.getTomcatVm()));
+		Assert.assertEquals( 0, this.client.messagesForTheDm.size());
+
+		// The model is not required anymore
+		this.agent.sendHeartbeat();
+		Assert.assertFalse(((MsgNotifHeartbeat) this.client.messagesForTheDm.get( 0 )).isModelRequired());
+		this.client.clearMessages();
+
+		// Deploy and start
+		this.agent.processMessage( new MsgCmdChangeInstanceState( tomcatPath, InstanceStatus.DEPLOYED_STARTED, null ));
+		this.agent.processMessage( new MsgCmdChangeInstanceState( warPath, InstanceStatus.DEPLOYED_STARTED, null ));
+		verifyNotifications(
+				tomcatPath, InstanceStatus.STARTING, tomcatPath, InstanceStatus.DEPLOYED_STARTED,
+				warPath, InstanceStatus.STARTING, warPath, InstanceStatus.DEPLOYED_STARTED );
+
+		// Same state => nothing
+		this.agent.processMessage( new MsgCmdChangeInstanceState( warPath, InstanceStatus.DEPLOYED_STARTED, null ));
+		verifyNotifications();
+
+		// Stop: children are stopped too
+		this.agent.processMessage( new MsgCmdChangeInstanceState( tomcatPath, InstanceStatus.DEPLOYED_STOPPED, null ));
+		verifyNotifications(
+				tomcatPath, InstanceStatus.STOPPING,
+				warPath, InstanceStatus.DEPLOYED_STOPPED,
+				tomcatPath, InstanceStatus.DEPLOYED_STOPPED );
+
+		// Undeploy: children are undeployed too
+		this.agent.processMessage( new MsgCmdChangeInstanceState( tomcatPath, InstanceStatus.NOT_DEPLOYED, null ));
+		verifyNotifications(
+				tomcatPath, InstanceStatus.UNDEPLOYING,
+				warPath, InstanceStatus.NOT_DEPLOYED,
+				tomcatPath, InstanceStatus.NOT_DEPLOYED );
+
+		// Deploy only
+		this.agent.processMessage( new MsgCmdChangeInstanceState( tomcatPath, InstanceStatus.DEPLOYED_STOPPED, null ));
+		verifyNotifications( tomcatPath, InstanceStatus.DEPLOYING, tomcatPath, InstanceStatus.DEPLOYED_STOPPED );
+
+		// Invalid requests
+		this.agent.processMessage( new MsgCmdChangeInstanceState( vmPath, InstanceStatus.NOT_DEPLOYED, null ));
+		this.agent.processMessage( new MsgCmdChangeInstanceState( "/inexisting", InstanceStatus.NOT_DEPLOYED, null ));
+		this.agent.processMessage( new MsgCmdChangeInstanceState( warPath, InstanceStatus.STARTING, null ));
+		verifyNotifications();
+		Assert.assertEquals( InstanceStatus.NOT_DEPLOYED, this.agent.getPathToStatus().get( warPath ));
+	}
+
+
+	@Test
+	public void testAddAndRemoveInstances() throws Exception {
+
+		String vmPath = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+		String tomcatPath = InstanceHelpers.computeInstancePath( this.app.getTomcat());
+		String warPath = InstanceHelpers.computeInstancePath( this.app.getWar());
+
+		// No model yet
+		this.agent.processMessage( new MsgCmdAddInstance( new Instance( "other" ).parent( this.app.getTomcatVm())));
+		Assert.assertNull( this.agent.getPathToStatus());
+
+		// With a model
+		this.agent.processMessage( new MsgCmdSetScopedInstance( this.app.getTomcatVm()));
+		this.agent.processMessage( new MsgCmdAddInstance(
+				new Instance( "other" ).component( this.app.getTomcat().getComponent()).parent( this.app.getTomcatVm())));
+
+		Assert.assertEquals( 4, this.agent.getPathToStatus().size());
+		Assert.assertEquals( InstanceStatus.NOT_DEPLOYED, this.agent.getPathToStatus().get( vmPath + "/other" ));
+
+		// Started instances and the root instance cannot be removed
+		this.client.clearMessages();
+		this.agent.processMessage( new MsgCmdChangeInstanceState( tomcatPath, InstanceStatus.DEPLOYED_STARTED, null ));
+		this.agent.processMessage( new MsgCmdRemoveInstance( tomcatPath ));
+		this.agent.processMessage( new MsgCmdRemoveInstance( vmPath ));
+		Assert.assertEquals( 4, this.agent.getPathToStatus().size());
+
+		// Remove a tree
+		this.agent.processMessage( new MsgCmdChangeInstanceState( tomcatPath, InstanceStatus.NOT_DEPLOYED, null ));
+		this.client.clearMessages();
+		this.agent.processMessage( new MsgCmdRemoveInstance( tomcatPath ));
+
+		Assert.assertEquals( 2, this.agent.getPathToStatus().size());
+		Assert.assertFalse( this.agent.getPathToStatus().containsKey( warPath ));
+		Assert.assertEquals( 1, this.client.messagesForTheDm.size());
+		Assert.assertEquals( tomcatPath, ((MsgNotifInstanceRemoved) this.client.messagesForTheDm.get( 0 )).getInstancePath());
+	}
+
+
+	@Test
+	public void testEcho() throws Exception {
+
+		this.client.clearMessages();
+		MsgEcho ping = new MsgEcho( "PING:hey" );
+		this.agent.processMessage( ping );
+
+		Assert.assertEquals( 1, this.client.messagesForTheDm.size());
+		MsgEcho pong = (MsgEcho) this.client.messagesForTheDm.get( 0 );
+		Assert.assertEquals( "PONG:hey", pong.getContent());
+		Assert.assertEquals( ping.getUuid(), pong.getUuid());
+	}
+
+
+	@Test
+	public void testReassignment() throws Exception {
+
+		this.client.clearMessages();
+		this.agent.processMessage( new MsgCmdReassignAgent( "app2", "/vm2" ));
+
+		Assert.assertEquals( "app2", this.agent.getApplicationName());
+		Assert.assertEquals( "/vm2", this.agent.getScopedInstancePath());
+		Assert.assertEquals( 1, this.client.subscriptions.size());
+		Assert.assertEquals( "app2", this.client.subscriptions.iterator().next().getApplicationName());
+
+		Assert.assertEquals( 1, this.client.messagesForTheDm.size());
+		MsgNotifHeartbeat heartbeat = (MsgNotifHeartbeat) this.client.messagesForTheDm.get( 0 );
+		Assert.assertEquals( "app2", heartbeat.getApplicationName());
+		Assert.assertEquals( "/vm2", heartbeat.getScopedInstancePath());
+		Assert.assertTrue( heartbeat.isModelRequired());
+
+		// Once a model was received, the agent cannot be reassigned anymore
+		Instance vm2 = new Instance( "vm2" ).component( this.app.getTomcatVm().getComponent());
+		this.agent.processMessage( new MsgCmdSetScopedInstance( vm2 ));
+		this.agent.processMessage( new MsgCmdReassignAgent( "app3", "/vm3" ));
+		Assert.assertEquals( "app2", this.agent.getApplicationName());
+	}
+
+
+	@Test( timeout = 10000 )
+	public void testMessagesAreProcessedInOrderWithLatencies() throws Exception {
+
+		// Use real in-memory messaging between a DM and the agent
+		InMemoryClientFactory factory = new InMemoryClientFactory();
+		IMessagingClient dmClient = factory.createClient( new ReconfigurableClientDm());
+		RoboconfMessageQueue dmQueue = new RoboconfMessageQueue();
+		dmClient.setOwnerProperties( RecipientKind.DM, "domain", null, null );
+		dmClient.setMessageQueue( dmQueue );
+		dmClient.openConnection();
+		dmClient.subscribe( new MessagingContext( RecipientKind.DM, "domain", this.app.getName()));
+
+		String vmPath = InstanceHelpers.computeInstancePath( this.app.getTomcatVm());
+		this.agent.stop();
+		this.agent = new SimulatedAgent(
+				"machine", "domain", this.app.getName(), vmPath, "127.0.0.1",
+				factory.createClient( new ReconfigurableClientAgent()),
+				this.executor, LatencyDistribution.parse( "0-30", null ));
+
+		this.agent.start();
+		Assert.assertEquals( MsgNotifHeartbeat.class, dmQueue.take().getClass());
+
+		// Messages are queued and processed by the executor
+		MessagingContext agentCtx = new MessagingContext(
+				RecipientKind.AGENTS, "domain",
+				MessagingUtils.buildTopicNameForAgent( vmPath ),
+				this.app.getName());
+
+		String tomcatPath = InstanceHelpers.computeInstancePath( this.app.getTomcat());
+		dmClient.publish( agentCtx, new MsgCmdSetScopedInstance( this.app.getTomcatVm()));
+		for( int i=0; i<10; i++ ) {
+			dmClient.publish( agentCtx, new MsgCmdChangeInstanceState( tomcatPath, InstanceStatus.DEPLOYED_STARTED, null ));
+			dmClient.publish( agentCtx, new MsgCmdChangeInstanceState( tomcatPath, InstanceStatus.NOT_DEPLOYED, null ));
+		}
+
+		// 1 for the root instance + 10 * 2 * 2 for the server (transition and final state)
+		MsgNotifInstanceChanged notif = (MsgNotifInstanceChanged) dmQueue.take();
+		Assert.assertEquals( vmPath, notif.getInstancePath());
+
+		InstanceStatus[] expected = {
+				InstanceStatus.STARTING, InstanceStatus.DEPLOYED_STARTED,
+				InstanceStatus.UNDEPLOYING, InstanceStatus.NOT_DEPLOYED
+		};
+
+		for( int i=0; i<40; i++ ) {
+			notif = (MsgNotifInstanceChanged) dmQueue.take();
+			Assert.assertEquals( tomcatPath, notif.getInstancePath());
+			Assert.assertEquals( expected[ i % 4 ], notif.getNewStatus());
+		}
+
+		Assert.assertEquals( 0, dmQueue.size());
+	}
+
+
+	@Test
+	public void testToInstance() {
+
+		Instance instance = SimulatedAgent.toInstance( "/vm/server/app", InstanceStatus.STARTING );
+		Assert.assertEquals( "/vm/server/app", InstanceHelpers.computeInstancePath( instance ));
+		Assert.assertEquals( InstanceStatus.STARTING, instance.getStatus());
+		Assert.assertEquals( InstanceStatus.NOT_DEPLOYED, instance.getParent().getStatus());
+	}
+
+
+	private void verifyNotifications( Object... pathsAndStatus ) {
+
+		List<Message> messages = this.client.messagesForTheDm;
+		Assert.assertEquals( pathsAndStatus.length / 2, messages.size());
+		for( int i=0; i<messages.size(); i++ ) {
+			MsgNotifInstanceChanged msg = (MsgNotifInstanceChanged) messages.get( i );
+			Assert.assertEquals( pathsAndStatus[ 2 * i ], msg.getInstancePath());
+			Assert.assertEquals( pathsAndStatus[ 2 * i + 1 ], msg.getNewStatus());
+		}
+
+		this.client.clearMessages();
+	}
+}
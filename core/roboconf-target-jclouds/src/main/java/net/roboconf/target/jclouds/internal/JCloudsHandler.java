@@ -26,8 +26,17 @@
 package net.roboconf.target.jclouds.internal;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import org.jclouds.ContextBuilder;
@@ -38,12 +47,15 @@ import org.jclouds.compute.domain.Hardware;
 import org.jclouds.compute.domain.Image;
 import org.jclouds.compute.domain.NodeMetadata;
 import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.predicates.NodePredicates;
+import org.jclouds.rest.AuthorizationException;
 
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.utils.Utils;
+import net.roboconf.target.api.BulkTargetHandler;
+import net.roboconf.target.api.TargetClientCache;
 import net.roboconf.target.api.TargetException;
-import net.roboconf.target.api.TargetHandler;
 import net.roboconf.target.api.TargetHandlerParameters;
 
 /**
@@ -53,7 +65,7 @@ import net.roboconf.target.api.TargetHandlerParameters;
  *
  * @author Vincent ZURCZAK - Linagora
  */
-public class JCloudsHandler implements TargetHandler {
+public class JCloudsHandler implements BulkTargetHandler {
 
 	public static final String TARGET_ID = "jclouds";
 
@@ -65,8 +77,42 @@ public class JCloudsHandler implements TargetHandler {
 	static final String SECURITY_GROUP = "jclouds.security-group";
 	static final String KEY_PAIR = "jclouds.key-pair";
 	static final String HARDWARE_NAME = "jclouds.hardware-name";
+	static final String AGGREGATION_WINDOW = "jclouds.aggregation-window";
+
+	static final long DEFAULT_AGGREGATION_WINDOW = 0;
+	static final int DEFAULT_MAX_BATCH_SIZE = 50;
 
 	private final Logger logger = Logger.getLogger( getClass().getName());
+	private final Map<String,CreationBatch> keyToPendingBatch = new HashMap<> ();
+	long aggregationWindow = DEFAULT_AGGREGATION_WINDOW;
+	int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	final TargetClientCache<ComputeServiceContext> contexts =
+			new TargetClientCache<ComputeServiceContext>( PROVIDER_ID, ENDPOINT, IDENTITY, CREDENTIAL ) {
+
+		@Override
+		protected ComputeServiceContext createClient( Map<String,String> targetProperties ) throws TargetException {
+			return jcloudContext( targetProperties );
+		}
+
+		@Override
+		protected void closeClient( ComputeServiceContext context ) throws Exception {
+			context.close();
+		}
+
+		@Override
+		protected boolean isClientFailure( Throwable failure ) {
+			return failure instanceof AuthorizationException || super.isClientFailure( failure );
+		}
+	};
+
+
+	/**
+	 * Stops the handler and closes the cached contexts.
+	 */
+	public void stop() {
+		this.contexts.close();
+	}
 
 
 	/*
@@ -88,74 +134,219 @@ public class JCloudsHandler implements TargetHandler {
 	public String createMachine( TargetHandlerParameters parameters ) throws TargetException {
 
 		this.logger.fine( "Creating a new machine." );
+
+		// Contexts may be cached: validate all the properties here
 		Map<String,String> targetProperties = parameters.getTargetProperties();
-		final String providerId = targetProperties.get( PROVIDER_ID );
-		ComputeService computeService = jcloudContext( targetProperties );
+		validate( targetProperties );
 
 		// For IaaS, we only expect root instance names to be passed
 		if( InstanceHelpers.countInstances( parameters.getScopedInstancePath()) > 1 )
 			throw new TargetException( "Only root instances can be passed in arguments." );
 
+		// Concurrent requests with the same properties can be merged (opt-in).
+		// The first request of a batch waits a little bit for other ones, and then creates all the nodes.
 		String rootInstanceName = InstanceHelpers.findRootInstancePath( parameters.getScopedInstancePath());
-		String machineId = null;
-		try {
-			// Create a template from an image and a flavor/hardware
-			Image image = null;
-			String imageName = targetProperties.get( IMAGE_NAME );
-			for( Image i : computeService.listImages()) {
-				if( i.getName().equalsIgnoreCase( imageName )) {
-					image = i;
-					break;
-				}
-			}
+		CreationRequest request = new CreationRequest( parameters, rootInstanceName );
+		long window = findAggregationWindow( targetProperties );
+		if( window <= 0 ) {
+			createNodes( Collections.singletonList( request ));
+			return request.waitForMachineId();
+		}
 
-			if( image == null )
-				throw new TargetException( "No image named '" + imageName + "' was found." );
+		String key = buildCreationKey( parameters );
 
-			Hardware hardware = null;
-			String hardwareName = targetProperties.get( HARDWARE_NAME );
-			for( Hardware h : computeService.listHardwareProfiles()) {
-				if( h.getName().equalsIgnoreCase( hardwareName )) {
-					hardware = h;
-					break;
-				}
+		CreationBatch batch;
+		boolean firstRequest = false;
+		synchronized( this.keyToPendingBatch ) {
+			batch = this.keyToPendingBatch.get( key );
+			if( batch == null ) {
+				batch = new CreationBatch();
+				this.keyToPendingBatch.put( key, batch );
+				firstRequest = true;
 			}
 
-			if( hardware == null )
-				throw new TargetException( "No hardware named '" + hardwareName + "' was found." );
+			batch.requests.add( request );
+			if( batch.requests.size() >= this.maxBatchSize ) {
+				this.keyToPendingBatch.remove( key );
+				this.keyToPendingBatch.notifyAll();
+			}
+		}
 
-			Template template = computeService.templateBuilder().fromImage( image ).hardwareId( hardware.getId()).build();
-			template.getOptions().securityGroups( targetProperties.get( SECURITY_GROUP ));
-			template.getOptions().userMetadata( "Application Name", parameters.getApplicationName());
-			template.getOptions().userMetadata( "Root Instance Name", rootInstanceName );
-			template.getOptions().userMetadata( "Domain", parameters.getDomain());
-			template.getOptions().userMetadata( "Created by", "Roboconf" );
+		if( firstRequest ) {
+			waitForOtherRequests( key, batch, window );
+			createNodes( batch.requests );
+		}
 
-			// Specify our own key pair if the current provider supports it
-			String keyPairName = targetProperties.get( KEY_PAIR );
-			try {
-				if( ! Utils.isEmptyOrWhitespaces( keyPairName )) {
-					Method keyPairMethod = template.getOptions().getClass().getMethod( "keyPair", String.class );
-					keyPairMethod.invoke( template.getOptions(), keyPairName );
-				}
+		return request.waitForMachineId();
+	}
 
-			} catch( Exception e ) {
-				throw new TargetException( "Provider: " + providerId + " does not support specifying key pairs.", e );
+
+	/**
+	 * Waits for the aggregation window to expire, or for the batch to be full.
+	 * <p>
+	 * Once this method has returned, no request can be added to the batch anymore.
+	 * </p>
+	 *
+	 * @param key the creation key
+	 * @param batch the batch
+	 * @param window the aggregation window, in milliseconds
+	 */
+	private void waitForOtherRequests( String key, CreationBatch batch, long window ) {
+
+		synchronized( this.keyToPendingBatch ) {
+			try {
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( window );
+				long remaining;
+				while( this.keyToPendingBatch.get( key ) == batch
+						&& (remaining = deadline - System.nanoTime()) > 0 )
+					TimeUnit.NANOSECONDS.timedWait( this.keyToPendingBatch, remaining );
+
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
 			}
 
-			String vmName = (parameters.getApplicationName() + "." + rootInstanceName).replaceAll( "\\.|\\s+", "-" );
-			Set<? extends NodeMetadata> nodes = computeService.createNodesInGroup( vmName, 1, template );
-			machineId = nodes.iterator().next().getId();
+			if( this.keyToPendingBatch.get( key ) == batch )
+				this.keyToPendingBatch.remove( key );
+		}
+	}
+
+
+	/**
+	 * Creates the nodes for a batch of requests, with a single invocation of the provider's API.
+	 * <p>
+	 * This method never throws exceptions: every request is completed, with a machine ID or with an error.
+	 * </p>
+	 *
+	 * @param requests a non-empty list of requests, that all share the same creation key
+	 */
+	void createNodes( List<CreationRequest> requests ) {
+
+		this.logger.fine( "Creating " + requests.size() + " node(s) with a single request." );
+		TargetHandlerParameters parameters = requests.get( 0 ).parameters;
+		Map<String,String> targetProperties = parameters.getTargetProperties();
+		final String providerId = targetProperties.get( PROVIDER_ID );
+
+		// Single requests keep the names and metadata of their machine.
+		// Batched ones are grouped under the application's name.
+		String rootInstanceName = requests.size() == 1 ? requests.get( 0 ).rootInstanceName : null;
+		String groupName = parameters.getApplicationName();
+		if( rootInstanceName != null )
+			groupName += "." + rootInstanceName;
+
+		groupName = groupName.replaceAll( "\\.|\\s+", "-" );
+
+		ComputeServiceContext context = null;
+		TargetException error = null;
+		Iterator<? extends NodeMetadata> nodes = Collections.<NodeMetadata>emptySet().iterator();
+		try {
+			context = this.contexts.acquire( targetProperties );
+			ComputeService computeService = context.getComputeService();
+			Template template = buildTemplate( computeService, parameters, rootInstanceName );
+			nodes = createNodesInGroup( computeService, groupName, requests.size(), template ).iterator();
 
 		} catch( RunNodesException e ) {
-			throw new TargetException( "An error occurred while creating a new node with JClouds on provider " + providerId + ".", e );
+			error = new TargetException( "An error occurred while creating new nodes with JClouds on provider " + providerId + ".", e );
+			nodes = e.getSuccessfulNodes().iterator();
+
+		} catch( TargetException e ) {
+			error = e;
+
+		} catch( Exception e ) {
+			error = new TargetException( e );
 
 		} finally {
-			if( computeService != null )
-				computeService.getContext().close();
+			this.contexts.invalidateOnFailure( targetProperties, error );
+			this.contexts.release( context );
 		}
 
-		return machineId;
+		// Map the nodes to the requests
+		for( CreationRequest request : requests ) {
+			if( nodes.hasNext())
+				request.complete( nodes.next().getId(), null );
+			else if( error != null )
+				request.complete( null, error );
+			else
+				request.complete( null, new TargetException( "No node was created for " + request.rootInstanceName + "." ));
+		}
+	}
+
+
+	/**
+	 * Creates nodes.
+	 * @param computeService the compute service
+	 * @param groupName the group name
+	 * @param count the number of nodes to create
+	 * @param template the template to use
+	 * @return the created nodes
+	 * @throws RunNodesException if some nodes could not be created
+	 */
+	Set<? extends NodeMetadata> createNodesInGroup( ComputeService computeService, String groupName, int count, Template template )
+	throws RunNodesException {
+		return computeService.createNodesInGroup( groupName, count, template );
+	}
+
+
+	/**
+	 * Builds the template for new nodes.
+	 * @param computeService the compute service
+	 * @param parameters the target parameters
+	 * @param rootInstanceName the root instance name (null if the template is shared by several root instances)
+	 * @return a non-null template
+	 * @throws TargetException if the image or the hardware was not found
+	 */
+	private Template buildTemplate( ComputeService computeService, TargetHandlerParameters parameters, String rootInstanceName )
+	throws TargetException {
+
+		Map<String,String> targetProperties = parameters.getTargetProperties();
+		final String providerId = targetProperties.get( PROVIDER_ID );
+
+		// Create a template from an image and a flavor/hardware
+		Image image = null;
+		String imageName = targetProperties.get( IMAGE_NAME );
+		for( Image i : computeService.listImages()) {
+			if( i.getName().equalsIgnoreCase( imageName )) {
+				image = i;
+				break;
+			}
+		}
+
+		if( image == null )
+			throw new TargetException( "No image named '" + imageName + "' was found." );
+
+		Hardware hardware = null;
+		String hardwareName = targetProperties.get( HARDWARE_NAME );
+		for( Hardware h : computeService.listHardwareProfiles()) {
+			if( h.getName().equalsIgnoreCase( hardwareName )) {
+				hardware = h;
+				break;
+			}
+		}
+
+		if( hardware == null )
+			throw new TargetException( "No hardware named '" + hardwareName + "' was found." );
+
+		Template template = computeService.templateBuilder().fromImage( image ).hardwareId( hardware.getId()).build();
+		template.getOptions().securityGroups( targetProperties.get( SECURITY_GROUP ));
+		template.getOptions().userMetadata( "Application Name", parameters.getApplicationName());
+		if( rootInstanceName != null )
+			template.getOptions().userMetadata( "Root Instance Name", rootInstanceName );
+
+		template.getOptions().userMetadata( "Domain", parameters.getDomain());
+		template.getOptions().userMetadata( "Created by", "Roboconf" );
+
+		// Specify our own key pair if the current provider supports it
+		String keyPairName = targetProperties.get( KEY_PAIR );
+		try {
+			if( ! Utils.isEmptyOrWhitespaces( keyPairName )) {
+				Method keyPairMethod = template.getOptions().getClass().getMethod( "keyPair", String.class );
+				keyPairMethod.invoke( template.getOptions(), keyPairName );
+			}
+
+		} catch( Exception e ) {
+			throw new TargetException( "Provider: " + providerId + " does not support specifying key pairs.", e );
+		}
+
+		return template;
 	}
 
 
@@ -183,8 +374,73 @@ public class JCloudsHandler implements TargetHandler {
 	public boolean isMachineRunning( TargetHandlerParameters parameters, String machineId )
 	throws TargetException {
 
-		ComputeService computeService = jcloudContext( parameters.getTargetProperties());
-		return computeService.getNodeMetadata( machineId ) != null;
+		ComputeServiceContext context = this.contexts.acquire( parameters.getTargetProperties());
+		try {
+			return context.getComputeService().getNodeMetadata( machineId ) != null;
+
+		} catch( RuntimeException e ) {
+			this.contexts.invalidateOnFailure( parameters.getTargetProperties(), e );
+			throw e;
+
+		} finally {
+			this.contexts.release( context );
+		}
+	}
+
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.roboconf.target.api.BulkTargetHandler
+	 * #areMachinesRunning(java.util.List, java.util.List)
+	 */
+	@Override
+	public Map<String,Boolean> areMachinesRunning( List<TargetHandlerParameters> parameters, List<String> machineIds )
+	throws TargetException {
+
+		// Group the machines by provider, end-point and credentials
+		Map<String,List<Integer>> keyToIndexes = new LinkedHashMap<> ();
+		for( int i=0; i<machineIds.size(); i++ ) {
+			String key = this.contexts.buildKey( parameters.get( i ).getTargetProperties());
+			List<Integer> indexes = keyToIndexes.get( key );
+			if( indexes == null ) {
+				indexes = new ArrayList<> ();
+				keyToIndexes.put( key, indexes );
+			}
+
+			indexes.add( i );
+		}
+
+		// List the nodes once per group
+		Map<String,Boolean> result = new HashMap<> ();
+		for( List<Integer> indexes : keyToIndexes.values()) {
+
+			Set<String> ids = new HashSet<> ();
+			for( int index : indexes )
+				ids.add( machineIds.get( index ));
+
+			ComputeServiceContext context = null;
+			try {
+				context = this.contexts.acquire( parameters.get( indexes.get( 0 )).getTargetProperties());
+				Set<String> foundIds = new HashSet<> ();
+				for( NodeMetadata node : context.getComputeService().listNodesDetailsMatching( NodePredicates.withIds( ids.toArray( new String[ ids.size()]))))
+					foundIds.add( node.getId());
+
+				// Same thing than isMachineRunning: a machine is running if it exists
+				for( String id : ids )
+					result.put( id, foundIds.contains( id ));
+
+			} catch( Exception e ) {
+				// These states will remain unknown
+				this.logger.warning( "Nodes could not be listed. " + e.getMessage());
+				Utils.logException( this.logger, e );
+				this.contexts.invalidateOnFailure( parameters.get( indexes.get( 0 )).getTargetProperties(), e );
+
+			} finally {
+				this.contexts.release( context );
+			}
+		}
+
+		return result;
 	}
 
 
@@ -197,9 +453,17 @@ public class JCloudsHandler implements TargetHandler {
 	public void terminateMachine( TargetHandlerParameters parameters, String machineId ) throws TargetException {
 
 		this.logger.fine( "Terminating machine " + machineId );
-		ComputeService computeService = jcloudContext( parameters.getTargetProperties());
-		computeService.destroyNode( machineId );
-		computeService.getContext().close();
+		ComputeServiceContext context = this.contexts.acquire( parameters.getTargetProperties());
+		try {
+			context.getComputeService().destroyNode( machineId );
+
+		} catch( RuntimeException e ) {
+			this.contexts.invalidateOnFailure( parameters.getTargetProperties(), e );
+			throw e;
+
+		} finally {
+			this.contexts.release( context );
+		}
 	}
 
 
@@ -211,8 +475,18 @@ public class JCloudsHandler implements TargetHandler {
 	public String retrievePublicIpAddress( TargetHandlerParameters parameters, String machineId )
 	throws TargetException {
 
-		ComputeService computeService = jcloudContext( parameters.getTargetProperties());
-		NodeMetadata metadata = computeService.getNodeMetadata( machineId );
+		NodeMetadata metadata;
+		ComputeServiceContext context = this.contexts.acquire( parameters.getTargetProperties());
+		try {
+			metadata = context.getComputeService().getNodeMetadata( machineId );
+
+		} catch( RuntimeException e ) {
+			this.contexts.invalidateOnFailure( parameters.getTargetProperties(), e );
+			throw e;
+
+		} finally {
+			this.contexts.release( context );
+		}
 
 		String result = null;
 		if( metadata != null
@@ -226,20 +500,22 @@ public class JCloudsHandler implements TargetHandler {
 
 	/**
 	 * Creates a JCloud context.
+	 * <p>
+	 * Contexts are expensive to create. Use {@link #contexts} rather than this method.
+	 * </p>
+	 *
 	 * @param targetProperties the target properties
 	 * @return a non-null object
 	 * @throws TargetException if the target properties are invalid
 	 */
-	ComputeService jcloudContext( Map<String,String> targetProperties ) throws TargetException {
+	ComputeServiceContext jcloudContext( Map<String,String> targetProperties ) throws TargetException {
 
 		validate( targetProperties );
-		ComputeServiceContext context = ContextBuilder
+		return ContextBuilder
 				.newBuilder( targetProperties.get( PROVIDER_ID ))
 				.endpoint( targetProperties.get( ENDPOINT ))
 				.credentials( targetProperties.get( IDENTITY ), targetProperties.get( CREDENTIAL ))
 				.buildView( ComputeServiceContext.class );
-
-		return context.getComputeService();
 	}
 
 
@@ -269,4 +545,126 @@ public class JCloudsHandler implements TargetHandler {
 		if( Utils.isEmptyOrWhitespaces( targetProperties.get( propertyName )))
 			throw new TargetException( "Property '" + propertyName + "' must have a value." );
 	}
+
+
+	/**
+	 * Finds the aggregation window to use for creation requests.
+	 * <p>
+	 * Only concurrent requests can be merged. The DM creates the machines of an application
+	 * concurrently when all its instances are deployed at once. Since waiting is useless for
+	 * other requests, there is no window unless the target properties define one.
+	 * </p>
+	 *
+	 * @param targetProperties the target properties
+	 * @return the aggregation window, in milliseconds (0 or less to disable batching)
+	 * @throws TargetException if the property is not a valid number
+	 */
+	long findAggregationWindow( Map<String,String> targetProperties ) throws TargetException {
+
+		long result = this.aggregationWindow;
+		String value = targetProperties.get( AGGREGATION_WINDOW );
+		if( ! Utils.isEmptyOrWhitespaces( value )) {
+			try {
+				result = Long.parseLong( value.trim());
+
+			} catch( NumberFormatException e ) {
+				throw new TargetException( "Property '" + AGGREGATION_WINDOW + "' must be a number of milliseconds.", e );
+			}
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Builds the key that determines which creation requests can be merged.
+	 * @param parameters the target parameters
+	 * @return a non-null string
+	 */
+	static String buildCreationKey( TargetHandlerParameters parameters ) {
+
+		Map<String,String> targetProperties = parameters.getTargetProperties();
+		StringBuilder sb = new StringBuilder();
+		sb.append( parameters.getApplicationName()).append( '\n' );
+		sb.append( parameters.getDomain());
+		for( String property : new String[] {
+				PROVIDER_ID, ENDPOINT, IDENTITY, CREDENTIAL,
+				IMAGE_NAME, HARDWARE_NAME, SECURITY_GROUP, KEY_PAIR }) {
+
+			String value = targetProperties.get( property );
+			sb.append( '\n' );
+			if( value != null )
+				sb.append( value.length()).append( ':' ).append( value );
+		}
+
+		return sb.toString();
+	}
+
+
+	/**
+	 * A request to create a machine.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class CreationRequest {
+
+		final TargetHandlerParameters parameters;
+		final String rootInstanceName;
+		private final CountDownLatch latch = new CountDownLatch( 1 );
+		private String machineId;
+		private TargetException error;
+
+
+		/**
+		 * Constructor.
+		 * @param parameters
+		 * @param rootInstanceName
+		 */
+		CreationRequest( TargetHandlerParameters parameters, String rootInstanceName ) {
+			this.parameters = parameters;
+			this.rootInstanceName = rootInstanceName;
+		}
+
+
+		/**
+		 * Completes the request.
+		 * @param machineId the machine ID (null if the creation failed)
+		 * @param error the error (null if the creation succeeded)
+		 */
+		void complete( String machineId, TargetException error ) {
+			this.machineId = machineId;
+			this.error = error;
+			this.latch.countDown();
+		}
+
+
+		/**
+		 * Waits for the request to be completed.
+		 * @return the machine ID
+		 * @throws TargetException if the creation failed or if the thread was interrupted
+		 */
+		String waitForMachineId() throws TargetException {
+
+			try {
+				this.latch.await();
+
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new TargetException( "Interrupted while waiting for the creation of " + this.rootInstanceName + ".", e );
+			}
+
+			if( this.error != null )
+				throw this.error;
+
+			return this.machineId;
+		}
+	}
+
+
+	/**
+	 * A set of creation requests that will result in a single invocation of the provider's API.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	private static class CreationBatch {
+		final List<CreationRequest> requests = new ArrayList<> ();
+	}
 }
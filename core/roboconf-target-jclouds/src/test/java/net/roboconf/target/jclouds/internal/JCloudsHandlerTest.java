@@ -25,12 +25,30 @@
 
 package net.roboconf.target.jclouds.internal;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
+import org.jclouds.ContextBuilder;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.ComputeServiceContext;
+import org.jclouds.compute.RunNodesException;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.Template;
 import org.junit.Assert;
 import net.roboconf.target.api.TargetException;
+import net.roboconf.target.api.TargetHandlerParameters;
 
 import org.junit.Test;
 
@@ -83,4 +101,299 @@ public class JCloudsHandlerTest {
 
 		JCloudsHandler.validate( new HashMap<String,String>( 0 ));
 	}
+
+
+	@Test
+	public void testAreMachinesRunning() throws Exception {
+
+		// The stub provider stores nodes by identity
+		final String identity = UUID.randomUUID().toString();
+		ComputeServiceContext context = ContextBuilder
+				.newBuilder( "stub" )
+				.credentials( identity, "pwd" )
+				.buildView( ComputeServiceContext.class );
+
+		List<String> machineIds = new ArrayList<> ();
+		try {
+			Set<? extends NodeMetadata> nodes = context.getComputeService().createNodesInGroup( "roboconf", 3 );
+			for( NodeMetadata node : nodes )
+				machineIds.add( node.getId());
+
+			context.getComputeService().destroyNode( machineIds.get( 0 ));
+
+		} finally {
+			context.close();
+		}
+
+		machineIds.add( "unknown" );
+
+		// Use the stub provider in the handler
+		StubJCloudsHandler handler = new StubJCloudsHandler();
+		List<TargetHandlerParameters> parameters = new ArrayList<> ();
+		for( int i=0; i<machineIds.size(); i++ )
+			parameters.add( new TargetHandlerParameters().targetProperties( stubTargetProperties( identity )));
+
+		try {
+			Map<String,Boolean> states = handler.areMachinesRunning( parameters, machineIds );
+			Assert.assertEquals( 4, states.size());
+			Assert.assertFalse( states.get( machineIds.get( 0 )));
+			Assert.assertTrue( states.get( machineIds.get( 1 )));
+			Assert.assertTrue( states.get( machineIds.get( 2 )));
+			Assert.assertFalse( states.get( "unknown" ));
+
+		} finally {
+			handler.stop();
+		}
+	}
+
+
+	@Test
+	public void testContextsAreCached() throws Exception {
+
+		final String identity = UUID.randomUUID().toString();
+		TargetHandlerParameters parameters = new TargetHandlerParameters().targetProperties( stubTargetProperties( identity ));
+		StubJCloudsHandler handler = new StubJCloudsHandler();
+		try {
+			// Reference: the time needed to create a few contexts
+			final int contextsCount = 5;
+			long before = System.nanoTime();
+			for( int i=0; i<contextsCount; i++ )
+				handler.jcloudContext( parameters.getTargetProperties()).close();
+
+			long creationsDuration = System.nanoTime() - before;
+			handler.createdContexts.set( 0 );
+
+			// Now, check the state of a machine many times
+			before = System.nanoTime();
+			for( int i=0; i<500; i++ )
+				Assert.assertFalse( handler.isMachineRunning( parameters, "unknown" ));
+
+			long checksDuration = System.nanoTime() - before;
+			Logger.getLogger( getClass().getName()).info(
+					"Creating " + contextsCount + " contexts took " + TimeUnit.NANOSECONDS.toMillis( creationsDuration )
+					+ " ms. Checking 500 machines took " + TimeUnit.NANOSECONDS.toMillis( checksDuration ) + " ms." );
+
+			Assert.assertEquals( 1, handler.createdContexts.get());
+			Assert.assertEquals( 1, handler.contexts.size());
+			Assert.assertTrue( checksDuration < creationsDuration );
+
+			// Changing the credentials results in a new context
+			parameters.getTargetProperties().put( JCloudsHandler.CREDENTIAL, "another password" );
+			Assert.assertFalse( handler.isMachineRunning( parameters, "unknown" ));
+			Assert.assertEquals( 2, handler.createdContexts.get());
+			Assert.assertEquals( 2, handler.contexts.size());
+
+		} finally {
+			handler.stop();
+		}
+
+		Assert.assertEquals( 0, handler.contexts.size());
+	}
+
+
+	@Test
+	public void testBatchedCreations() throws Exception {
+
+		// Sequential creations, one API call per machine
+		StubJCloudsHandler handler = new StubJCloudsHandler();
+		handler.aggregationWindow = 0;
+		try {
+			long duration = createMachines( handler, 100, 1 );
+			Logger.getLogger( getClass().getName()).info( "Creating 100 nodes one by one took " + duration + " ms." );
+			Assert.assertEquals( 100, handler.createNodesCalls.get());
+			Assert.assertEquals( 100, handler.createdNodes.get());
+
+		} finally {
+			handler.stop();
+		}
+
+		// Concurrent creations
+		handler = new StubJCloudsHandler();
+		handler.aggregationWindow = 200;
+		try {
+			long duration = createMachines( handler, 100, 100 );
+			Logger.getLogger( getClass().getName()).info(
+					"Creating 100 nodes concurrently took " + duration + " ms and "
+					+ handler.createNodesCalls.get() + " API calls." );
+
+			Assert.assertTrue( handler.createNodesCalls.get() < 10 );
+			Assert.assertEquals( 100, handler.createdNodes.get());
+
+		} finally {
+			handler.stop();
+		}
+	}
+
+
+	@Test
+	public void testBatchedCreations_error() throws Exception {
+
+		// The image does not exist: all the requests of the batch fail
+		StubJCloudsHandler handler = new StubJCloudsHandler();
+		try {
+			Map<String,String> targetProperties = stubTargetProperties( UUID.randomUUID().toString());
+			targetProperties.put( JCloudsHandler.IMAGE_NAME, "this image does not exist" );
+			handler.createMachine( new TargetHandlerParameters()
+					.targetProperties( targetProperties )
+					.applicationName( "app" )
+					.domain( "test" )
+					.scopedInstancePath( "/vm" ));
+
+			Assert.fail( "An exception was expected." );
+
+		} catch( TargetException e ) {
+			Assert.assertTrue( e.getMessage().contains( "No image" ));
+
+		} finally {
+			handler.stop();
+		}
+	}
+
+
+	@Test
+	public void testFindAggregationWindow() throws Exception {
+
+		JCloudsHandler handler = new JCloudsHandler();
+		Map<String,String> targetProperties = new HashMap<> ();
+		Assert.assertEquals( 0, handler.findAggregationWindow( targetProperties ));
+
+		targetProperties.put( JCloudsHandler.AGGREGATION_WINDOW, " 100 " );
+		Assert.assertEquals( 100, handler.findAggregationWindow( targetProperties ));
+
+		targetProperties.put( JCloudsHandler.AGGREGATION_WINDOW, "" );
+		handler.aggregationWindow = 20;
+		Assert.assertEquals( 20, handler.findAggregationWindow( targetProperties ));
+	}
+
+
+	@Test( expected = TargetException.class )
+	public void testFindAggregationWindow_invalidValue() throws Exception {
+
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( JCloudsHandler.AGGREGATION_WINDOW, "50 ms" );
+		new JCloudsHandler().findAggregationWindow( targetProperties );
+	}
+
+
+	@Test
+	public void testBuildCreationKey() {
+
+		Map<String,String> targetProperties = stubTargetProperties( "me" );
+		TargetHandlerParameters p1 = new TargetHandlerParameters().targetProperties( targetProperties ).applicationName( "app" );
+		TargetHandlerParameters p2 = new TargetHandlerParameters().targetProperties( new HashMap<>( targetProperties )).applicationName( "app" );
+		Assert.assertEquals( JCloudsHandler.buildCreationKey( p1 ), JCloudsHandler.buildCreationKey( p2 ));
+
+		// Other properties do not matter
+		p2.getTargetProperties().put( "whatever", "value" );
+		Assert.assertEquals( JCloudsHandler.buildCreationKey( p1 ), JCloudsHandler.buildCreationKey( p2 ));
+
+		p2.getTargetProperties().put( JCloudsHandler.HARDWARE_NAME, "large" );
+		Assert.assertNotEquals( JCloudsHandler.buildCreationKey( p1 ), JCloudsHandler.buildCreationKey( p2 ));
+
+		p2 = new TargetHandlerParameters().targetProperties( targetProperties ).applicationName( "app2" );
+		Assert.assertNotEquals( JCloudsHandler.buildCreationKey( p1 ), JCloudsHandler.buildCreationKey( p2 ));
+	}
+
+
+	/**
+	 * Creates machines with the stub provider.
+	 * @param handler the handler
+	 * @param count the number of machines to create
+	 * @param threads the number of threads to use
+	 * @return the total duration, in milliseconds
+	 * @throws Exception
+	 */
+	private static long createMachines( final JCloudsHandler handler, int count, int threads ) throws Exception {
+
+		// Find an image and a hardware profile
+		final Map<String,String> targetProperties = stubTargetProperties( UUID.randomUUID().toString());
+		ComputeServiceContext context = handler.jcloudContext( targetProperties );
+		try {
+			targetProperties.put( JCloudsHandler.IMAGE_NAME, context.getComputeService().listImages().iterator().next().getName());
+			targetProperties.put( JCloudsHandler.HARDWARE_NAME, context.getComputeService().listHardwareProfiles().iterator().next().getName());
+
+		} finally {
+			context.close();
+		}
+
+		// Create the machines
+		ExecutorService executor = Executors.newFixedThreadPool( threads );
+		List<Future<String>> futures = new ArrayList<> ();
+		long before = System.nanoTime();
+		try {
+			for( int i=0; i<count; i++ ) {
+				final String rootInstanceName = "vm" + i;
+				futures.add( executor.submit( new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return handler.createMachine( new TargetHandlerParameters()
+								.targetProperties( targetProperties )
+								.applicationName( "app" )
+								.domain( "test" )
+								.scopedInstancePath( "/" + rootInstanceName ));
+					}
+				}));
+			}
+
+			// All the machines have a different ID
+			Set<String> machineIds = new HashSet<> ();
+			for( Future<String> future : futures )
+				machineIds.add( future.get( 1, TimeUnit.MINUTES ));
+
+			Assert.assertEquals( count, machineIds.size());
+			for( String machineId : machineIds )
+				Assert.assertTrue( machineId, handler.isMachineRunning( new TargetHandlerParameters().targetProperties( targetProperties ), machineId ));
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - before );
+	}
+
+
+	private static Map<String,String> stubTargetProperties( String identity ) {
+
+		Map<String,String> targetProperties = new HashMap<> ();
+		targetProperties.put( JCloudsHandler.PROVIDER_ID, "stub" );
+		targetProperties.put( JCloudsHandler.ENDPOINT, "stub" );
+		targetProperties.put( JCloudsHandler.IDENTITY, identity );
+		targetProperties.put( JCloudsHandler.CREDENTIAL, "pwd" );
+		targetProperties.put( JCloudsHandler.IMAGE_NAME, "image" );
+		targetProperties.put( JCloudsHandler.SECURITY_GROUP, "default" );
+		targetProperties.put( JCloudsHandler.HARDWARE_NAME, "small" );
+
+		return targetProperties;
+	}
+
+
+	/**
+	 * A JClouds handler that uses the stub provider, whatever the target properties.
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class StubJCloudsHandler extends JCloudsHandler {
+		final AtomicInteger createdContexts = new AtomicInteger();
+		final AtomicInteger createNodesCalls = new AtomicInteger();
+		final AtomicInteger createdNodes = new AtomicInteger();
+
+		@Override
+		Set<? extends NodeMetadata> createNodesInGroup( ComputeService computeService, String groupName, int count, Template template )
+		throws RunNodesException {
+
+			this.createNodesCalls.incrementAndGet();
+			Set<? extends NodeMetadata> result = super.createNodesInGroup( computeService, groupName, count, template );
+			this.createdNodes.addAndGet( result.size());
+			return result;
+		}
+
+		@Override
+		ComputeServiceContext jcloudContext( Map<String,String> targetProperties ) throws TargetException {
+
+			this.createdContexts.incrementAndGet();
+			return ContextBuilder
+					.newBuilder( "stub" )
+					.credentials( targetProperties.get( IDENTITY ), targetProperties.get( CREDENTIAL ))
+					.buildView( ComputeServiceContext.class );
+		}
+	}
 }
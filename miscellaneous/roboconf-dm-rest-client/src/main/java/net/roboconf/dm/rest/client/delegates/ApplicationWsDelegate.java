@@ -26,6 +26,8 @@
 package net.roboconf.dm.rest.client.delegates;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -39,9 +41,12 @@ import com.sun.jersey.api.client.WebResource;
 import net.roboconf.core.model.beans.Component;
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.beans.Instance.InstanceStatus;
+import net.roboconf.core.model.comparators.InstanceComparator;
+import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.dm.rest.client.WsClient;
 import net.roboconf.dm.rest.client.exceptions.ApplicationWsException;
 import net.roboconf.dm.rest.commons.UrlConstants;
+import net.roboconf.dm.rest.commons.json.JSonBindingUtils;
 
 /**
  * @author Vincent Zurczak - Linagora
@@ -197,30 +202,59 @@ public class ApplicationWsDelegate {
 	 * @param applicationName the application name
 	 * @param instancePath the instance path (null to get root instances)
 	 * @param all true to list indirect children too, false to only list direct children
-	 * @return a non-null list of instance paths
+	 * @return a non-null list of instances (empty if the application does not exist)
+	 * <p>
+	 * Instances are sorted hierarchically: an instance is followed by its children.
+	 * This is not the order of the former (non-paginated) listing, which was the server's
+	 * breadth-first order.
+	 * </p>
 	 */
 	public List<Instance> listChildrenInstances( String applicationName, String instancePath, boolean all ) {
 		this.logger.finer( "Listing children instances for " + instancePath + " in " + applicationName + "." );
 
-		WebResource path = this.resource
-				.path( UrlConstants.APP ).path( applicationName ).path( "instances" )
-				.queryParam( "all-children", String.valueOf( all ));
+		// Large applications are listed page by page
+		List<Instance> result = new ArrayList<> ();
+		String cursor = null;
+		do {
+			WebResource path = this.resource
+					.path( UrlConstants.APP ).path( applicationName ).path( "instances" ).path( "page" )
+					.queryParam( "all-children", String.valueOf( all ));
 
-		if( instancePath != null )
-			path = path.queryParam( "instance-path", instancePath );
+			if( instancePath != null )
+				path = path.queryParam( "instance-path", instancePath );
 
-		List<Instance> result =
-				this.wsClient.createBuilder( path )
-				.accept( MediaType.APPLICATION_JSON )
-				.type( MediaType.APPLICATION_JSON )
-				.get( new GenericType<List<Instance>> () {});
+			if( cursor != null )
+				path = path.queryParam( "cursor", cursor );
 
-		if( result != null ) {
-			this.logger.finer( result.size() + " children instances were found for " + instancePath + " in " + applicationName + "." );
-		} else {
+			ClientResponse response = this.wsClient.createBuilder( path )
+					.accept( MediaType.APPLICATION_JSON )
+					.get( ClientResponse.class );
+
+			// Inexisting application => empty list
+			cursor = null;
+			if( Family.SUCCESSFUL == response.getStatusInfo().getFamily()) {
+				List<Instance> page = response.getEntity( new GenericType<List<Instance>> () {});
+				if( page != null )
+					result.addAll( page );
+
+				cursor = response.getHeaders().getFirst( UrlConstants.NEXT_CURSOR );
+
+			} else {
+				// Do not return an incomplete listing
+				this.logger.finer( "Instances could not be listed for " + instancePath + " in " + applicationName + ". " + response.getStatusInfo());
+				response.close();
+				result.clear();
+			}
+
+		} while( cursor != null );
+
+		// Pages are ordered by raw path: sort them so that every instance is followed by its children
+		Collections.sort( result, new InstancePathComparator());
+
+		if( result.isEmpty())
 			this.logger.finer( "No child instance was found for " + instancePath + " in " + applicationName + "." );
-			result = new ArrayList<>( 0 );
-		}
+		else
+			this.logger.finer( result.size() + " children instances were found for " + instancePath + " in " + applicationName + "." );
 
 		return result;
 	}
@@ -427,4 +461,25 @@ public class ApplicationWsDelegate {
 			throw new ApplicationWsException( response.getStatusInfo().getStatusCode(), value );
 		}
 	}
+
+
+	/**
+	 * Compares instances received from the REST API by path.
+	 * <p>
+	 * Deserialized instances have no parent, their path is stored in their data.
+	 * </p>
+	 * @author Vincent Zurczak - Linagora
+	 */
+	static class InstancePathComparator implements Comparator<Instance> {
+
+		@Override
+		public int compare( Instance o1, Instance o2 ) {
+			return InstanceComparator.comparePaths( path( o1 ), path( o2 ));
+		}
+
+		private static String path( Instance instance ) {
+			String result = instance.data.get( JSonBindingUtils.AT_INSTANCE_PATH );
+			return result != null ? result : InstanceHelpers.computeInstancePath( instance );
+		}
+	}
 }
@@ -29,8 +29,9 @@ import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Timer;
+import java.util.Set;
 
 import javax.ws.rs.core.UriBuilder;
 
@@ -51,15 +52,18 @@ import net.roboconf.core.internal.tests.TestUtils;
 import net.roboconf.core.model.beans.Component;
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.beans.Instance.InstanceStatus;
+import net.roboconf.core.model.comparators.InstanceComparator;
 import net.roboconf.core.model.helpers.ComponentHelpers;
 import net.roboconf.core.model.helpers.InstanceHelpers;
 import net.roboconf.core.utils.Utils;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.management.ManagedApplication;
 import net.roboconf.dm.management.Manager;
 import net.roboconf.dm.rest.client.WsClient;
 import net.roboconf.dm.rest.client.exceptions.ApplicationWsException;
+import net.roboconf.dm.rest.commons.json.JSonBindingUtils;
 import net.roboconf.dm.rest.services.internal.RestApplication;
 import net.roboconf.messaging.api.MessagingConstants;
 import net.roboconf.messaging.api.internal.client.test.TestClient;
@@ -119,7 +123,7 @@ public class ApplicationWsDelegateTest {
 		this.msgClient.clearMessages();
 
 		// Disable the messages timer for predictability
-		TestUtils.getInternalField( this.manager, "timer", Timer.class).cancel();
+		TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class).cancel();
 
 		URI uri = UriBuilder.fromUri( REST_URI ).build();
 		RestApplication restApp = new RestApplication( this.manager );
@@ -315,6 +319,38 @@ public class ApplicationWsDelegateTest {
 	}
 
 
+	@Test
+	public void testListChildrenInstances_severalPages() throws Exception {
+
+		// More instances than the default page size
+		for( int i=0; i<1200; i++ ) {
+			Instance vm = new Instance( "vm-" + i ).component( this.app.getMySqlVm().getComponent());
+			this.app.getRootInstances().add( vm );
+		}
+
+		this.ma.instancesStructureChanged();
+		List<Instance> instances = this.client.getApplicationDelegate().listChildrenInstances( this.app.getName(), null, true );
+		Assert.assertEquals( InstanceHelpers.getAllInstances( this.app ).size(), instances.size());
+
+		Set<String> paths = new HashSet<> ();
+		for( Instance inst : instances )
+			paths.add( inst.data.get( JSonBindingUtils.AT_INSTANCE_PATH ));
+
+		Assert.assertEquals( instances.size(), paths.size());
+
+		// The hierarchical order is kept: every instance is followed by its children
+		for( int i=1; i<instances.size(); i++ ) {
+			Assert.assertTrue( InstanceComparator.comparePaths(
+					instances.get( i - 1 ).data.get( JSonBindingUtils.AT_INSTANCE_PATH ),
+					instances.get( i ).data.get( JSonBindingUtils.AT_INSTANCE_PATH )) < 0 );
+		}
+
+		// Inexisting application
+		instances = this.client.getApplicationDelegate().listChildrenInstances( "inexisting", null, true );
+		Assert.assertEquals( 0, instances.size());
+	}
+
+
 	@Test
 	public void testListAllComponents() throws Exception {
 
@@ -27,7 +27,6 @@ package net.roboconf.dm.rest.client.delegates;
 
 import java.net.URI;
 import java.util.List;
-import java.util.Timer;
 
 import javax.ws.rs.core.UriBuilder;
 
@@ -45,6 +44,7 @@ import net.roboconf.core.internal.tests.TestApplication;
 import net.roboconf.core.internal.tests.TestUtils;
 import net.roboconf.core.model.beans.Instance;
 import net.roboconf.core.model.helpers.InstanceHelpers;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.management.ManagedApplication;
@@ -100,7 +100,7 @@ public class DebugWsDelegateTest {
 		this.manager.reconfigure();
 
 		// Disable the messages timer for predictability
-		TestUtils.getInternalField( this.manager, "timer", Timer.class).cancel();
+		TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class).cancel();
 
 		// Configure a single application to be used by the tests
 		this.app = new TestApplication();
@@ -28,7 +28,6 @@ package net.roboconf.dm.rest.client.delegates;
 import java.io.File;
 import java.net.URI;
 import java.util.List;
-import java.util.Timer;
 
 import javax.ws.rs.core.UriBuilder;
 
@@ -45,6 +44,7 @@ import com.sun.jersey.api.container.grizzly2.GrizzlyServerFactory;
 import net.roboconf.core.internal.tests.TestApplication;
 import net.roboconf.core.internal.tests.TestUtils;
 import net.roboconf.core.model.runtime.ScheduledJob;
+import net.roboconf.dm.internal.tasks.ManagementTimer;
 import net.roboconf.dm.internal.test.TestManagerWrapper;
 import net.roboconf.dm.internal.test.TestTargetResolver;
 import net.roboconf.dm.management.ManagedApplication;
@@ -108,7 +108,7 @@ public class SchedulerWsDelegateTest {
 		this.manager.reconfigure();
 
 		// Disable the messages timer for predictability
-		TestUtils.getInternalField( this.manager, "timer", Timer.class).cancel();
+		TestUtils.getInternalField( this.manager, "timer", ManagementTimer.class).cancel();
 
 		URI uri = UriBuilder.fromUri( REST_URI ).build();
 		RestApplication restApp = new RestApplication( this.manager );